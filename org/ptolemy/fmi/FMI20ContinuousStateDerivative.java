@@ -82,7 +82,9 @@ public class FMI20ContinuousStateDerivative {
         // Build the list of dependent variables.
         dependentScalarVariables = new LinkedList<FMIScalarVariable>();
 
-        // Get the dependent variables.
+        // Get the dependent variables.  If the attribute is not
+        // present, then the derivative depends on all the knowns.
+        hasDependencies = ((Element) element).hasAttribute("dependencies");
         dependencies = (((Element) element).getAttribute("dependencies"))
                 .split(" ");
         for (int i = 0; i < dependencies.length; i++) {
@@ -113,6 +115,12 @@ public class FMI20ContinuousStateDerivative {
     /** The input ports on which an output has a direct dependency. */
     public String[] dependencies;
 
+    /** True if the Derivative element has a dependencies attribute.
+     *  If it does not, then the derivative may depend on all the
+     *  knowns, and dependentScalarVariables is empty.
+     */
+    public boolean hasDependencies;
+
     /** The list of dependent ScalarVariable elements. */
     public LinkedList<FMIScalarVariable> dependentScalarVariables;
 
@@ -0,0 +1,307 @@
+/* A group of FMI scalar variables of the same type.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package org.ptolemy.fmi;
+
+import java.io.IOException;
+
+import org.ptolemy.fmi.type.FMIBooleanType;
+import org.ptolemy.fmi.type.FMIIntegerType;
+import org.ptolemy.fmi.type.FMIRealType;
+
+import com.sun.jna.Function;
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+
+///////////////////////////////////////////////////////////////////
+//// FMIScalarVariableGroup
+
+/**
+ * A group of scalar variables of the same type whose values are
+ * gotten or set with a single call to fmiGetReal(), fmiSetReal(),
+ * fmiGetInteger(), fmiSetInteger(), fmiGetBoolean() or
+ * fmiSetBoolean().
+ *
+ * <p>The value references and the values are kept in native memory
+ * that is allocated when the group grows and is reused afterwards,
+ * so getting or setting the values of the variables of a step does
+ * not allocate a buffer for each variable, as
+ * {@link FMIScalarVariable#getDouble(Pointer)} and
+ * {@link FMIScalarVariable#setDouble(Pointer, double)} do.  A typical
+ * use is to call {@link #clear()}, then {@link #add(FMIScalarVariable)}
+ * for each variable, and then either set the values and call
+ * {@link #set(Pointer)}, or call {@link #get(Pointer)} and read the
+ * values.</p>
+ *
+ * <p>Variables of type Enumeration are handled as integers.  Strings
+ * are not supported.</p>
+ *
+ * @author Ptolemy II developers
+ * @version $Id$
+ * @since Ptolemy II 11.0
+ * @Pt.ProposedRating Red (cxh)
+ * @Pt.AcceptedRating Red (cxh)
+ */
+public class FMIScalarVariableGroup {
+
+    /** Create an empty group of variables.
+     *  @param fmiModelDescription The model description of the FMU.
+     *  @param typeClass The class of the type of the variables, which
+     *  is FMIRealType, FMIIntegerType or FMIBooleanType.
+     *  @exception IllegalArgumentException If the type is not supported.
+     */
+    public FMIScalarVariableGroup(FMIModelDescription fmiModelDescription,
+            Class<?> typeClass) {
+        _fmiModelDescription = fmiModelDescription;
+        _typeClass = typeClass;
+        if (typeClass == FMIRealType.class) {
+            _typeName = "Real";
+            _valueSize = 8;
+        } else if (typeClass == FMIIntegerType.class) {
+            _typeName = "Integer";
+            _valueSize = 4;
+        } else if (typeClass == FMIBooleanType.class) {
+            _typeName = "Boolean";
+            // fmiBoolean is a char in FMI-1.0 and an int in FMI-2.0.
+            _valueSize = fmiModelDescription.fmiVersion.compareTo("1.5") < 0 ? 1
+                    : 4;
+        } else {
+            throw new IllegalArgumentException("Variables of type "
+                    + typeClass.getName() + " cannot be grouped.");
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Add a variable to the group.
+     *  @param scalar The variable.
+     *  @return The position of the variable in the group, which is
+     *  used to get or set its value.
+     *  @exception IllegalArgumentException If the type of the variable
+     *  is not the type of the group.
+     */
+    public int add(FMIScalarVariable scalar) {
+        if (!_typeClass.isInstance(scalar.type)) {
+            throw new IllegalArgumentException("Variable " + scalar.name
+                    + " is not a " + _typeClass.getName() + ", it is a "
+                    + scalar.type.getClass().getName());
+        }
+        if (_size == _capacity) {
+            _grow(_capacity == 0 ? 16 : 2 * _capacity);
+        }
+        _valueReferences.setInt(4L * _size, (int) scalar.valueReference);
+        return _size++;
+    }
+
+    /** Remove all the variables from the group.  The native memory
+     *  is kept for the variables that are added next.
+     */
+    public void clear() {
+        _size = 0;
+    }
+
+    /** Get the values of all the variables of the group from the FMU
+     *  with one call.
+     *  @param fmiComponent The Functional Mock-up Interface (FMI)
+     *  component that contains the variables.
+     *  @exception RuntimeException If the FMU returns an error.
+     */
+    public void get(Pointer fmiComponent) {
+        if (_fmiGetFunction == null) {
+            _fmiGetFunction = _getFmiFunction("fmiGet");
+        }
+        _invoke(fmiComponent, _fmiGetFunction, "get");
+    }
+
+    /** Return the value of a variable as a boolean.
+     *  @param position The position of the variable in the group.
+     *  @return The value.
+     */
+    public boolean getBoolean(int position) {
+        if (_valueSize == 1) {
+            return _values.getByte(position) != 0;
+        }
+        return _values.getInt(4L * position) != 0;
+    }
+
+    /** Return the value of a variable as a double.  The value of an
+     *  integer variable is cast to a double.
+     *  @param position The position of the variable in the group.
+     *  @return The value.
+     */
+    public double getDouble(int position) {
+        if (_valueSize == 8) {
+            return _values.getDouble(8L * position);
+        }
+        return getInt(position);
+    }
+
+    /** Return the value of a variable as an int.
+     *  @param position The position of the variable in the group.
+     *  @return The value.
+     */
+    public int getInt(int position) {
+        if (_valueSize == 1) {
+            return _values.getByte(position);
+        }
+        return _values.getInt(4L * position);
+    }
+
+    /** Set the values of all the variables of the group in the FMU
+     *  with one call.
+     *  @param fmiComponent The Functional Mock-up Interface (FMI)
+     *  component that contains the variables.
+     *  @exception RuntimeException If the FMU returns an error.
+     */
+    public void set(Pointer fmiComponent) {
+        if (_fmiSetFunction == null) {
+            _fmiSetFunction = _getFmiFunction("fmiSet");
+        }
+        _invoke(fmiComponent, _fmiSetFunction, "set");
+    }
+
+    /** Set the value of a boolean variable.  The value is passed to
+     *  the FMU by {@link #set(Pointer)}.
+     *  @param position The position of the variable in the group.
+     *  @param value The value.
+     */
+    public void setBoolean(int position, boolean value) {
+        if (_valueSize == 1) {
+            _values.setByte(position, value ? (byte) 1 : (byte) 0);
+        } else {
+            _values.setInt(4L * position, value ? 1 : 0);
+        }
+    }
+
+    /** Set the value of a real variable.  The value is passed to
+     *  the FMU by {@link #set(Pointer)}.
+     *  @param position The position of the variable in the group.
+     *  @param value The value.
+     */
+    public void setDouble(int position, double value) {
+        _values.setDouble(8L * position, value);
+    }
+
+    /** Set the value of an integer variable.  The value is passed to
+     *  the FMU by {@link #set(Pointer)}.
+     *  @param position The position of the variable in the group.
+     *  @param value The value.
+     */
+    public void setInt(int position, int value) {
+        _values.setInt(4L * position, value);
+    }
+
+    /** Return the number of variables in the group.
+     *  @return The number of variables.
+     */
+    public int size() {
+        return _size;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Return the fmiGet or fmiSet function for the type of the group. */
+    private Function _getFmiFunction(String prefix) {
+        try {
+            return _fmiModelDescription.getFmiFunction(prefix + _typeName);
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed to find the native library.",
+                    ex);
+        }
+    }
+
+    /** Allocate larger native buffers and copy the value references. */
+    private void _grow(int capacity) {
+        Memory valueReferences = new Memory(4L * capacity);
+        Memory values = new Memory((long) _valueSize * capacity);
+        if (_size > 0) {
+            valueReferences.write(0, _valueReferences.getIntArray(0, _size),
+                    0, _size);
+            values.write(0, _values.getByteArray(0, _valueSize * _size), 0,
+                    _valueSize * _size);
+        }
+        _valueReferences = valueReferences;
+        _values = values;
+        _capacity = capacity;
+    }
+
+    /** Invoke the fmiGet or fmiSet function on the variables. */
+    private void _invoke(Pointer fmiComponent, Function function,
+            String operation) {
+        if (_size == 0) {
+            return;
+        }
+        _arguments[0] = fmiComponent;
+        _arguments[1] = _valueReferences;
+        _arguments[2] = new NativeSizeT(_size);
+        _arguments[3] = _values;
+        int fmiFlag = function.invokeInt(_arguments);
+        if (fmiFlag > FMILibrary.FMIStatus.fmiWarning) {
+            throw new RuntimeException("Could not " + operation + " "
+                    + _size + " variables of type " + _typeName + ": "
+                    + FMULogUtilities.fmiStatusToString(fmiFlag));
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private fields                    ////
+
+    /** The arguments of the fmiGet and fmiSet functions. */
+    private Object[] _arguments = new Object[4];
+
+    /** The number of variables for which memory is allocated. */
+    private int _capacity;
+
+    /** The FMI .c function that gets the values of the variables. */
+    private Function _fmiGetFunction;
+
+    /** The model description of the FMU. */
+    private FMIModelDescription _fmiModelDescription;
+
+    /** The FMI .c function that sets the values of the variables. */
+    private Function _fmiSetFunction;
+
+    /** The number of variables in the group. */
+    private int _size;
+
+    /** The class of the type of the variables. */
+    private Class<?> _typeClass;
+
+    /** The name of the type in the names of the FMI functions. */
+    private String _typeName;
+
+    /** The value references of the variables. */
+    private Memory _valueReferences;
+
+    /** The values of the variables. */
+    private Memory _values;
+
+    /** The size in bytes of the value of a variable. */
+    private int _valueSize;
+}
@@ -0,0 +1,241 @@
+/* Compare getting and setting FMU variables one by one and in groups.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+ */
+package org.ptolemy.fmi.driver.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ptolemy.fmi.FMI20CallbackFunctions;
+import org.ptolemy.fmi.FMIModelDescription;
+import org.ptolemy.fmi.FMIScalarVariable;
+import org.ptolemy.fmi.FMIScalarVariable.Causality;
+import org.ptolemy.fmi.FMIScalarVariableGroup;
+import org.ptolemy.fmi.FMUFile;
+import org.ptolemy.fmi.FMULibrary;
+import org.ptolemy.fmi.NativeSizeT;
+import org.ptolemy.fmi.type.FMIIntegerType;
+import org.ptolemy.fmi.type.FMIRealType;
+
+import com.sun.jna.Function;
+import com.sun.jna.Pointer;
+
+///////////////////////////////////////////////////////////////////
+//// FMIGetSetBenchmark
+
+/**
+ Measure how many times per second the values of a number of FMU
+ variables can be gotten and set, either one variable at a time with
+ {@link FMIScalarVariable#getDouble(Pointer)} and
+ {@link FMIScalarVariable#setInt(Pointer, int)}, or with one call for
+ all the variables with {@link FMIScalarVariableGroup}.
+ <p>
+ The FMU is instantiated as an FMI-2.0 co-simulation FMU.  The
+ variables that are gotten are the Real variables of the FMU and the
+ variables that are set are its Integer inputs, each repeated until
+ the number of variables is reached, so a small FMU can be used.
+ The number of variables goes from 10 to 10000, by factors of 10.
+ <p>
+ To run, use:
+ <pre>
+ java -classpath $PTII org.ptolemy.fmi.driver.test.FMIGetSetBenchmark [-fmu file] [-seconds n]
+ </pre>
+ The FMU defaults to $PTII/org/ptolemy/fmi/fmu/cs/values20.fmu and
+ the time for each measurement to 1 second.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class FMIGetSetBenchmark {
+
+    /** Run the benchmark and print the results.
+     *  @param args Optional "-fmu file" and "-seconds n" arguments.
+     *  @exception Exception If the FMU cannot be loaded or instantiated.
+     */
+    public static void main(String[] args) throws Exception {
+        String fmuFileName = System.getProperty("ptolemy.ptII.dir", ".")
+                + "/org/ptolemy/fmi/fmu/cs/values20.fmu";
+        double seconds = 1.0;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("-fmu")) {
+                fmuFileName = args[i + 1];
+            } else if (args[i].equals("-seconds")) {
+                seconds = Double.parseDouble(args[i + 1]);
+            } else {
+                System.err.println("Usage: java -classpath $PTII "
+                        + "org.ptolemy.fmi.driver.test.FMIGetSetBenchmark "
+                        + "[-fmu file] [-seconds n]");
+                return;
+            }
+        }
+
+        FMIModelDescription fmiModelDescription = FMUFile
+                .parseFMUFile(fmuFileName);
+        Pointer fmiComponent = _instantiate(fmiModelDescription);
+
+        List<FMIScalarVariable> reals = new ArrayList<FMIScalarVariable>();
+        List<FMIScalarVariable> integerInputs = new ArrayList<FMIScalarVariable>();
+        for (FMIScalarVariable scalar : fmiModelDescription.modelVariables) {
+            if (scalar.type instanceof FMIRealType) {
+                reals.add(scalar);
+            } else if (scalar.type instanceof FMIIntegerType
+                    && scalar.causality == Causality.input) {
+                integerInputs.add(scalar);
+            }
+        }
+
+        System.out.println("variables\tget calls/second\tgrouped get calls/second"
+                + "\tset calls/second\tgrouped set calls/second");
+        for (int n = 10; n <= 10000; n *= 10) {
+            System.out.print(n);
+            if (reals.isEmpty()) {
+                System.out.print("\t-\t-");
+            } else {
+                FMIScalarVariable[] scalars = _repeat(reals, n);
+                System.out.print("\t"
+                        + _measure(fmiComponent, scalars, false, false,
+                                seconds)
+                        + "\t"
+                        + _measure(fmiComponent, scalars, false, true,
+                                seconds));
+            }
+            if (integerInputs.isEmpty()) {
+                System.out.println("\t-\t-");
+            } else {
+                FMIScalarVariable[] scalars = _repeat(integerInputs, n);
+                System.out.println("\t"
+                        + _measure(fmiComponent, scalars, true, false,
+                                seconds)
+                        + "\t"
+                        + _measure(fmiComponent, scalars, true, true,
+                                seconds));
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Instantiate and initialize the FMU as an FMI-2.0 co-simulation
+     *  FMU, as FMUCoSimulation does.
+     */
+    private static Pointer _instantiate(
+            FMIModelDescription fmiModelDescription) throws Exception {
+        fmiModelDescription.getNativeLibrary();
+        Pointer fmiEnvironment = fmiModelDescription.getFMUAllocateMemory()
+                .apply(new NativeSizeT(1), new NativeSizeT(Pointer.SIZE));
+        FMI20CallbackFunctions callbacks = new FMI20CallbackFunctions(
+                new FMULibrary.FMULogger(fmiModelDescription),
+                fmiModelDescription.getFMUAllocateMemory(),
+                new FMULibrary.FMUFreeMemory(),
+                new FMULibrary.FMUStepFinished(), fmiEnvironment);
+        Function instantiate = fmiModelDescription
+                .getFmiFunction("fmiInstantiate");
+        Pointer fmiComponent = (Pointer) instantiate.invoke(Pointer.class,
+                new Object[] { fmiModelDescription.modelIdentifier, 1,
+                        fmiModelDescription.guid,
+                        fmiModelDescription.fmuResourceLocation, callbacks,
+                        0, 0 });
+        if (fmiComponent == null || fmiComponent.equals(Pointer.NULL)) {
+            throw new Exception("Could not instantiate "
+                    + fmiModelDescription.modelIdentifier);
+        }
+        fmiModelDescription.getFmiFunction("fmiSetupExperiment").invokeInt(
+                new Object[] { fmiComponent, (byte) 0, 1e-4, 0.0, (byte) 1,
+                        1.0 });
+        fmiModelDescription.getFmiFunction("fmiEnterInitializationMode")
+                .invokeInt(new Object[] { fmiComponent });
+        fmiModelDescription.getFmiFunction("fmiExitInitializationMode")
+                .invokeInt(new Object[] { fmiComponent });
+        return fmiComponent;
+    }
+
+    /** Return the number of times per second that the variables can
+     *  be gotten or set.
+     */
+    private static long _measure(Pointer fmiComponent,
+            FMIScalarVariable[] scalars, boolean set, boolean grouped,
+            double seconds) {
+        FMIScalarVariableGroup group = null;
+        if (grouped) {
+            group = new FMIScalarVariableGroup(
+                    scalars[0].fmiModelDescription,
+                    scalars[0].type.getClass());
+        }
+        long calls = 0;
+        double sum = 0.0;
+        long start = System.nanoTime();
+        long end = start + (long) (seconds * 1.0e9);
+        long now;
+        do {
+            if (grouped) {
+                // Add the variables for every call, as FMUImport does.
+                group.clear();
+                for (FMIScalarVariable scalar : scalars) {
+                    int position = group.add(scalar);
+                    if (set) {
+                        group.setInt(position, (int) calls);
+                    }
+                }
+                if (set) {
+                    group.set(fmiComponent);
+                } else {
+                    group.get(fmiComponent);
+                    for (int i = 0; i < scalars.length; i++) {
+                        sum += group.getDouble(i);
+                    }
+                }
+            } else {
+                for (FMIScalarVariable scalar : scalars) {
+                    if (set) {
+                        scalar.setInt(fmiComponent, (int) calls);
+                    } else {
+                        sum += scalar.getDouble(fmiComponent);
+                    }
+                }
+            }
+            calls++;
+            now = System.nanoTime();
+        } while (now < end);
+        if (Double.isNaN(sum)) {
+            System.err.println("A value was NaN.");
+        }
+        return Math.round(calls * 1.0e9 / (now - start));
+    }
+
+    /** Return an array of the given length that repeats the variables. */
+    private static FMIScalarVariable[] _repeat(
+            List<FMIScalarVariable> scalars, int length) {
+        FMIScalarVariable[] result = new FMIScalarVariable[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = scalars.get(i % scalars.size());
+        }
+        return result;
+    }
+}
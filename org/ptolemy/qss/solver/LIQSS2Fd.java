@@ -274,8 +274,8 @@ public final class LIQSS2Fd extends QSSBase {
         //   However, there is a chance that the continuous state models were
         // formed at different times.  For example:
         // (1) User can reset a single state at any simulation time.
-        // (2) In future, might be possible to avoid updating a
-        // continuous state model if know none of its arguments changed.
+        // (2) A sparse rate-event keeps the continuous state models of the
+        // states for which none of the arguments changed.
         Time tStateMdl = null;
         double dtStateMdl = 0;
         for (int ii = 0; ii < _stateCt; ++ii) {
@@ -302,7 +302,8 @@ public final class LIQSS2Fd extends QSSBase {
         // Update the diagonalized state models.
         //   Note have to do this before update the internal, continuous state models,
         // since need the rate of the old one.
-        for (int ii = 0; ii < _stateCt; ++ii) {
+        for (int jj = 0; jj < _rateEvtStateCt; ++jj) {
+            final int ii = _rateEvtStates[jj];
             final ModelPolynomial qStateMdl = _qStateMdls[ii];
             final ModelPolynomial cStateMdl = _cStateMdls[ii];
             // Estimate the diagonal element of the Jacobian.
@@ -343,7 +344,8 @@ public final class LIQSS2Fd extends QSSBase {
         // current information about the continuous state as possible.
         //   This also updates the rate model, which is just the derivative of
         // the state model.
-        for (int ii = 0; ii < _stateCt; ++ii) {
+        for (int jj = 0; jj < _rateEvtStateCt; ++jj) {
+            final int ii = _rateEvtStates[jj];
             final ModelPolynomial cStateMdl = _cStateMdls[ii];
             cStateMdl.tMdl = _currSimTime;
             cStateMdl.coeffs[0] = _stateVals_xx[ii];
@@ -359,10 +361,11 @@ public final class LIQSS2Fd extends QSSBase {
                 _quantEvtTimeMax);
 
         // Get values, at {tSample}, of arguments to derivative function.
-        //   Note that here, know all continous state models have same time.
-        // Therefore can use same delta-time for all evals.
+        //   Note that models kept by a sparse rate-event may have an
+        // earlier time than the models formed here.
         for (int ii = 0; ii < _stateCt; ++ii) {
-            _stateVals_xx[ii] = _cStateMdls[ii].evaluate(dtSample);
+            _stateVals_xx[ii] = _evaluateContinuousStateModel(ii,
+                    tSample, dtSample);
         }
         for (int ii = 0; ii < _ivCt; ++ii) {
             _ivVals_xx[ii] = _ivMdls[ii].evaluate(tSample);
@@ -377,7 +380,8 @@ public final class LIQSS2Fd extends QSSBase {
 
         // Update the internal, continuous state models.
         final double oneOverTwoDtSample = 0.5 / dtSample;
-        for (int ii = 0; ii < _stateCt; ++ii) {
+        for (int jj = 0; jj < _rateEvtStateCt; ++jj) {
+            final int ii = _rateEvtStates[jj];
             _cStateMdls[ii].coeffs[2] = oneOverTwoDtSample
                     * (_stateDerivsSample_xx[ii] - _stateDerivs_xx[ii]);
         }
@@ -390,10 +394,11 @@ public final class LIQSS2Fd extends QSSBase {
                     _currSimTime.addUnchecked(dtSample2), _quantEvtTimeMax);
 
             // Get values, at {tSample2}, of arguments to derivative function.
-            //   Note that here, know all continuous state models have same time.
-            // Therefore can use same delta-time for all evals.
+            //   Note that models kept by a sparse rate-event may have an
+            // earlier time than the models formed here.
             for (int ii = 0; ii < _stateCt; ++ii) {
-                _stateValsSample2_xx[ii] = _cStateMdls[ii].evaluate(dtSample2);
+                _stateValsSample2_xx[ii] = _evaluateContinuousStateModel(ii,
+                        tSample2, dtSample2);
             }
             for (int ii = 0; ii < _ivCt; ++ii) {
                 _ivValsSample2_xx[ii] = _ivMdls[ii].evaluate(tSample2);
@@ -405,10 +410,11 @@ public final class LIQSS2Fd extends QSSBase {
                     _currSimTime.addUnchecked(dtSample3), _quantEvtTimeMax);
 
             // Get values, at {tSample3}, of arguments to derivative function.
-            //   Note that here, know all continuous state models have same time.
-            // Therefore can use same delta-time for all evals.
+            //   Note that models kept by a sparse rate-event may have an
+            // earlier time than the models formed here.
             for (int ii = 0; ii < _stateCt; ++ii) {
-                _stateValsSample3_xx[ii] = _cStateMdls[ii].evaluate(dtSample3);
+                _stateValsSample3_xx[ii] = _evaluateContinuousStateModel(ii,
+                        tSample3, dtSample3);
             }
             for (int ii = 0; ii < _ivCt; ++ii) {
                 _ivValsSample3_xx[ii] = _ivMdls[ii].evaluate(dtSample3);
@@ -208,8 +208,8 @@ public final class QSS1 extends QSSBase {
         //   However, there is a chance that the continuous state models were
         // formed at different times.  For example:
         // (1) User can reset a single state at any simulation time.
-        // (2) In future, might be possible to avoid updating a
-        // continuous state model if know none of its arguments changed.
+        // (2) A sparse rate-event keeps the continuous state models of the
+        // states for which none of the arguments changed.
         Time tStateMdl = null;
         double dtStateMdl = 0;
         for (int ii = 0; ii < _stateCt; ++ii) {
@@ -236,7 +236,8 @@ public final class QSS1 extends QSSBase {
         // Update the internal, continuous state models.
         //   This also updates the rate model, which is just the derivative of
         // the state model.
-        for (int ii = 0; ii < _stateCt; ++ii) {
+        for (int jj = 0; jj < _rateEvtStateCt; ++jj) {
+            final int ii = _rateEvtStates[jj];
             final ModelPolynomial cStateMdl = _cStateMdls[ii];
             cStateMdl.tMdl = _currSimTime;
             cStateMdl.coeffs[0] = _stateVals_xx[ii];
@@ -257,10 +258,11 @@ public final class QSS1 extends QSSBase {
                     _currSimTime.addUnchecked(dtSample), _quantEvtTimeMax);
 
             // Get values, at {tSample}, of arguments to derivative function.
-            // Note that here, know all continuous state models have same time.
-            // Therefore can use same delta-time for all evals.
+            //   Note that models kept by a sparse rate-event may have an
+            // earlier time than the models formed here.
             for (int ii = 0; ii < _stateCt; ++ii) {
-                _stateValsSample_xx[ii] = _cStateMdls[ii].evaluate(dtSample);
+                _stateValsSample_xx[ii] = _evaluateContinuousStateModel(ii,
+                        tSample, dtSample);
             }
             for (int ii = 0; ii < _ivCt; ++ii) {
                 _ivValsSample_xx[ii] = _ivMdls[ii].evaluate(tSample);
@@ -221,8 +221,8 @@ public final class QSS3Fd extends QSSBase {
         //   However, there is a chance that the continuous state models were
         // formed at different times.  For example:
         // (1) User can reset a single state at any simulation time.
-        // (2) In future, might be possible to avoid updating a
-        // continuous state model if know none of its arguments changed.
+        // (2) A sparse rate-event keeps the continuous state models of the
+        // states for which none of the arguments changed.
         Time tStateMdl = null;
         double dtStateMdl = 0;
         for (int ii = 0; ii < _stateCt; ++ii) {
@@ -253,7 +253,8 @@ public final class QSS3Fd extends QSSBase {
         // current information about the continuous state as possible.
         //   This also updates the rate model, which is just the derivative of
         // the state model.
-        for (int ii = 0; ii < _stateCt; ++ii) {
+        for (int jj = 0; jj < _rateEvtStateCt; ++jj) {
+            final int ii = _rateEvtStates[jj];
             final ModelPolynomial cStateMdl = _cStateMdls[ii];
             cStateMdl.tMdl = _currSimTime;
             cStateMdl.coeffs[0] = _stateVals_xx[ii];
@@ -270,10 +271,11 @@ public final class QSS3Fd extends QSSBase {
                 _quantEvtTimeMax);
 
         // Get values, at {tSample}, of arguments to derivative function.
-        //   Note that here, know all continuous state models have same time.
-        // Therefore can use same delta-time for all evals.
+        //   Note that models kept by a sparse rate-event may have an
+        // earlier time than the models formed here.
         for (int ii = 0; ii < _stateCt; ++ii) {
-            _stateValsSample_xx[ii] = _cStateMdls[ii].evaluate(dtSample);
+            _stateValsSample_xx[ii] = _evaluateContinuousStateModel(ii,
+                    tSample, dtSample);
         }
         for (int ii = 0; ii < _ivCt; ++ii) {
             _ivValsSample_xx[ii] = _ivMdls[ii].evaluate(tSample);
@@ -288,7 +290,8 @@ public final class QSS3Fd extends QSSBase {
 
         // Update the internal, continuous state models.
         final double oneOverDtSample = 1.0 / dtSample;
-        for (int ii = 0; ii < _stateCt; ++ii) {
+        for (int jj = 0; jj < _rateEvtStateCt; ++jj) {
+            final int ii = _rateEvtStates[jj];
             final double rtDeriv = oneOverDtSample
                     * (_stateDerivsSample_xx[ii] - _stateDerivs_xx[ii]);
             _rtDerivs_xx[ii] = rtDeriv;
@@ -302,10 +305,11 @@ public final class QSS3Fd extends QSSBase {
                 _quantEvtTimeMax);
 
         // Get values, at {tSample2}, of arguments to derivative function.
-        //   Note that here, know all continous state models have same time.
-        // Therefore can use same delta-time for all evals.
+        //   Note that models kept by a sparse rate-event may have an
+        // earlier time than the models formed here.
         for (int ii = 0; ii < _stateCt; ++ii) {
-            _stateValsSample2_xx[ii] = _cStateMdls[ii].evaluate(dtSample2);
+            _stateValsSample2_xx[ii] = _evaluateContinuousStateModel(ii,
+                    tSample2, dtSample2);
         }
         for (int ii = 0; ii < _ivCt; ++ii) {
             _ivValsSample2_xx[ii] = _ivMdls[ii].evaluate(tSample2);
@@ -320,7 +324,8 @@ public final class QSS3Fd extends QSSBase {
 
         // Update the internal, continuous state models.
         final double oneOverThreeDtSampleSq = 1.0 / (3 * dtSample2 * dtSample2);
-        for (int ii = 0; ii < _stateCt; ++ii) {
+        for (int jj = 0; jj < _rateEvtStateCt; ++jj) {
+            final int ii = _rateEvtStates[jj];
             _cStateMdls[ii].coeffs[3] = oneOverThreeDtSampleSq
                     * (_stateDerivsSample2_xx[ii] - _stateDerivs_xx[ii]
                             - _rtDerivs_xx[ii] * dtSample2);
@@ -334,10 +339,11 @@ public final class QSS3Fd extends QSSBase {
                     _currSimTime.addUnchecked(dtSample3), _quantEvtTimeMax);
 
             // Get values, at {tSample3}, of arguments to derivative function.
-            //   Note that here, know all continuous state models have same time.
-            // Therefore can use same delta-time for all evals.
+            //   Note that models kept by a sparse rate-event may have an
+            // earlier time than the models formed here.
             for (int ii = 0; ii < _stateCt; ++ii) {
-                _stateValsSample3_xx[ii] = _cStateMdls[ii].evaluate(dtSample3);
+                _stateValsSample3_xx[ii] = _evaluateContinuousStateModel(ii,
+                        tSample3, dtSample3);
             }
             for (int ii = 0; ii < _ivCt; ++ii) {
                 _ivValsSample3_xx[ii] = _ivMdls[ii].evaluate(dtSample3);
@@ -351,10 +357,11 @@ public final class QSS3Fd extends QSSBase {
                     _currSimTime.addUnchecked(dtSample4), _quantEvtTimeMax);
 
             // Get values, at {tSample3}, of arguments to derivative function.
-            //   Note that here, know all continuous state models have same time.
-            // Therefore can use same delta-time for all evals.
+            //   Note that models kept by a sparse rate-event may have an
+            // earlier time than the models formed here.
             for (int ii = 0; ii < _stateCt; ++ii) {
-                _stateValsSample4_xx[ii] = _cStateMdls[ii].evaluate(dtSample4);
+                _stateValsSample4_xx[ii] = _evaluateContinuousStateModel(ii,
+                        tSample4, dtSample4);
             }
             for (int ii = 0; ii < _ivCt; ++ii) {
                 _ivValsSample4_xx[ii] = _ivMdls[ii].evaluate(dtSample4);
@@ -367,10 +374,11 @@ public final class QSS3Fd extends QSSBase {
                     _currSimTime.addUnchecked(dtSample5), _quantEvtTimeMax);
 
             // Get values, at {tSample3}, of arguments to derivative function.
-            //   Note that here, know all continuous state models have same time.
-            // Therefore can use same delta-time for all evals.
+            //   Note that models kept by a sparse rate-event may have an
+            // earlier time than the models formed here.
             for (int ii = 0; ii < _stateCt; ++ii) {
-                _stateValsSample5_xx[ii] = _cStateMdls[ii].evaluate(dtSample5);
+                _stateValsSample5_xx[ii] = _evaluateContinuousStateModel(ii,
+                        tSample5, dtSample5);
             }
             for (int ii = 0; ii < _ivCt; ++ii) {
                 _ivValsSample5_xx[ii] = _ivMdls[ii].evaluate(dtSample5);
@@ -207,8 +207,8 @@ public final class QSS3Pts extends QSSBase {
         //   However, there is a chance that the continuous state models were
         // formed at different times.  For example:
         // (1) User can reset a single state at any simulation time.
-        // (2) In future, might be possible to avoid updating a
-        // continuous state model if know none of its arguments changed.
+        // (2) A sparse rate-event keeps the continuous state models of the
+        // states for which none of the arguments changed.
         Time tStateMdl = null;
         double dtStateMdl = 0;
         for (int ii = 0; ii < _stateCt; ++ii) {
@@ -239,7 +239,8 @@ public final class QSS3Pts extends QSSBase {
         // current information about the continuous state as possible.
         //   This also updates the rate model, which is just the derivative of
         // the state model.
-        for (int ii = 0; ii < _stateCt; ++ii) {
+        for (int jj = 0; jj < _rateEvtStateCt; ++jj) {
+            final int ii = _rateEvtStates[jj];
             final ModelPolynomial cStateMdl = _cStateMdls[ii];
             cStateMdl.tMdl = _currSimTime;
             cStateMdl.coeffs[0] = _stateVals_xx[ii];
@@ -276,10 +277,11 @@ public final class QSS3Pts extends QSSBase {
                 _quantEvtTimeMax);
 
         // Get values, at {tSample}, of arguments to derivative function.
-        //   Note that here, know all continous state models have same time.
-        // Therefore can use same delta-time for all evals.
+        //   Note that models kept by a sparse rate-event may have an
+        // earlier time than the models formed here.
         for (int ii = 0; ii < _stateCt; ++ii) {
-            _stateVals_xx[ii] = _cStateMdls[ii].evaluate(dtSample);
+            _stateVals_xx[ii] = _evaluateContinuousStateModel(ii,
+                    tSample, dtSample);
         }
         for (int ii = 0; ii < _ivCt; ++ii) {
             _ivVals_xx[ii] = _ivMdls[ii].evaluate(tSample);
@@ -294,7 +296,8 @@ public final class QSS3Pts extends QSSBase {
 
         // Update the internal, continuous state models.
         final double oneOverDtSample = 1.0 / dtSample;
-        for (int ii = 0; ii < _stateCt; ++ii) {
+        for (int jj = 0; jj < _rateEvtStateCt; ++jj) {
+            final int ii = _rateEvtStates[jj];
             final double rtDeriv = oneOverDtSample
                     * (_stateDerivsSample_xx[ii] - _stateDerivs_xx[ii]);
             _rtDerivs_xx[ii] = rtDeriv;
@@ -327,10 +330,11 @@ public final class QSS3Pts extends QSSBase {
                 _quantEvtTimeMax);
 
         // Get values, at {tSample2}, of arguments to derivative function.
-        //   Note that here, know all continous state models have same time.
-        // Therefore can use same delta-time for all evals.
+        //   Note that models kept by a sparse rate-event may have an
+        // earlier time than the models formed here.
         for (int ii = 0; ii < _stateCt; ++ii) {
-            _stateVals_xx[ii] = _cStateMdls[ii].evaluate(dtSample2);
+            _stateVals_xx[ii] = _evaluateContinuousStateModel(ii,
+                    tSample2, dtSample2);
         }
         for (int ii = 0; ii < _ivCt; ++ii) {
             _ivVals_xx[ii] = _ivMdls[ii].evaluate(tSample2);
@@ -345,7 +349,8 @@ public final class QSS3Pts extends QSSBase {
 
         // Update the internal, continuous state models.
         final double oneOverThreeDtSampleSq = 1.0 / (3 * dtSample2 * dtSample2);
-        for (int ii = 0; ii < _stateCt; ++ii) {
+        for (int jj = 0; jj < _rateEvtStateCt; ++jj) {
+            final int ii = _rateEvtStates[jj];
             _cStateMdls[ii].coeffs[3] = oneOverThreeDtSampleSq
                     * (_stateDerivsSample_xx[ii] - _stateDerivs_xx[ii]
                             - _rtDerivs_xx[ii] * dtSample2);
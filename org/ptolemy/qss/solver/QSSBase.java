@@ -862,11 +862,18 @@ public abstract class QSSBase {
      *   state models are valid.
      */
     public final int needQuantizationEventIndex() {
-        for (int ii = 0; ii < _stateCt; ++ii) {
+        if (_need_quantEvtCt == 0) {
+            return (-1);
+        }
+        // No state with a lower index than {_need_quantEvtFirst} needs a
+        // quantization-event, so start the search there.
+        for (int ii = _need_quantEvtFirst; ii < _stateCt; ++ii) {
             if (_need_quantEvts[ii]) {
+                _need_quantEvtFirst = ii;
                 return ii;
             }
         }
+        assert (false);
         return (-1);
     }
 
@@ -901,6 +908,32 @@ public abstract class QSSBase {
         return (_need_rateEvt);
     }
 
+    /** Note that the model of an input variable has changed.
+     *
+     * <p>This sets the flag indicating that a rate-event is needed.
+     * If dependencies have been given to the integrator, see method
+     * {@link #setDependencies(int[][], int[][])}, then the next call to
+     * method {@link #triggerSparseRateEvent()} forms new internal,
+     * continuous state models for the states whose derivatives depend on
+     * the input variable.</p>
+     *
+     * @param ivIdx The index of input variable, 0 &le; ivIdx &lt; this.getInputVarCt().
+     */
+    public final void noteInputVariableChange(final int ivIdx) {
+        _need_rateEvt = true;
+        if (_stateDependents == null) {
+            return;
+        }
+        if (_ivDependents == null) {
+            _need_fullRateEvt = true;
+            return;
+        }
+        final int end = _ivDependentStarts[ivIdx + 1];
+        for (int ii = _ivDependentStarts[ivIdx]; ii < end; ++ii) {
+            _noteRateEventState(_ivDependents[ii]);
+        }
+    }
+
     /** Get the predicted quantization-event time for a state.
      *
      * TODO: Get this method under unit test.
@@ -931,30 +964,28 @@ public abstract class QSSBase {
 
     /** Get the earliest predicted quantization-event time for all states.
      *
-     * TODO: Get this method under unit test.
+     * <p>Only the states whose predictions have been invalidated since
+     * the last call are predicted again.
+     * After a rate-event, all the states are predicted again and the
+     * earliest time is found by a scan.
+     * Once only some of the states have been invalidated, for example by
+     * quantization-events, the states are kept in a min-heap ordered by
+     * their predicted quantization-event times, so if <i>k</i> of the
+     * <i>n</i> states have been invalidated, this method takes time
+     * proportional to <i>k</i> log <i>n</i>.</p>
      *
      * @return Earliest predicted quantization-event time from among all states
      *   predicted by the integrator.
      */
     public final Time predictQuantizationEventTimeEarliest() {
-
-        // Initialize.
-        Time predQuantEvtTime = predictQuantizationEventTime(0);
-
-        // Run through remaining elements.
-        for (int ii = 1; ii < _stateCt; ++ii) {
-            final Time newTime = predictQuantizationEventTime(ii);
-            if (newTime.compareTo(predQuantEvtTime) < 0) {
-                predQuantEvtTime = newTime;
-            }
+        _updateHeap();
+        if (_heapValid) {
+            return (_heapTimes[_heap[0]]);
         }
-
-        return (predQuantEvtTime);
+        return (_heapTimes[_earliestStateIdx]);
     }
 
     /** Get the earliest predicted quantization-event time for all states.
-     *
-     * TODO: Get this method under unit test.
      *
      * @param quantEvtElts (output) Vector showing <code>true</code> for those
      *   elements whose predicted quantization-event time is the minimum
@@ -970,8 +1001,7 @@ public abstract class QSSBase {
 
         // Mark matching elements.
         for (int ii = 0; ii < _stateCt; ++ii) {
-            assert (_need_predQuantEvtTimes[ii] == false);
-            if (predQuantEvtTime.compareTo(_predQuantEvtTimes[ii]) == 0) {
+            if (predQuantEvtTime.compareTo(_heapTimes[ii]) == 0) {
                 quantEvtElts[ii] = true;
             } else {
                 quantEvtElts[ii] = false;
@@ -991,13 +1021,63 @@ public abstract class QSSBase {
     public final void setCurrentSimulationTime(final Time newSimTime) {
         // Set status to note future needs.
         _need_rateEvt = true;
-        for (int ii = 0; ii < _stateCt; ++ii) {
-            _need_quantEvts[ii] = true;
-        }
+        _need_fullRateEvt = true;
+        _setAllNeedQuantizationEvents();
 
         _currSimTime = newSimTime;
     }
 
+    /** Give the integrator the dependencies of the derivative function.
+     *
+     * <p>Element <i>i</i> of <i>stateDependencies</i> lists the indexes of
+     * the states on which the derivative of state <i>i</i> depends, and
+     * element <i>i</i> of <i>inputDependencies</i> lists the indexes of the
+     * input variables on which it depends.
+     * The integrator transposes these lists into a sparse incidence map,
+     * so that after a quantization-event in a state, or a change in an
+     * input variable noted by method {@link #noteInputVariableChange(int)},
+     * method {@link #triggerSparseRateEvent()} forms new internal, continuous
+     * state models only for the states whose derivatives depend on what
+     * changed.
+     * The models of the other states, and their predicted
+     * quantization-event times, are kept.</p>
+     *
+     * <p>The derivative function is still evaluated for all states, since
+     * {@link DerivativeFunction} evaluates all the derivatives at once.</p>
+     *
+     * @param stateDependencies The states on which the derivative of each
+     *   state depends, or null if every derivative may depend on every
+     *   state, in which case every rate-event forms all the models.
+     * @param inputDependencies The input variables on which the derivative
+     *   of each state depends, or null if every derivative may depend on
+     *   every input variable.
+     * @exception IllegalArgumentException If an array does not have one
+     *   element for each state, or if an index is out of range.
+     */
+    public final void setDependencies(final int[][] stateDependencies,
+            final int[][] inputDependencies) {
+        _need_fullRateEvt = true;
+        if (stateDependencies == null) {
+            _stateDependentStarts = null;
+            _stateDependents = null;
+            _ivDependentStarts = null;
+            _ivDependents = null;
+            return;
+        }
+        final int[][] starts = new int[2][];
+        _stateDependents = _transposeDependencies(stateDependencies, _stateCt,
+                starts, 0);
+        _stateDependentStarts = starts[0];
+        if (inputDependencies == null) {
+            _ivDependentStarts = null;
+            _ivDependents = null;
+        } else {
+            _ivDependents = _transposeDependencies(inputDependencies, _ivCt,
+                    starts, 1);
+            _ivDependentStarts = starts[1];
+        }
+    }
+
     /** Indicate whether inputs are exact. Calling this with a true argument
      *  asserts that all non-zero derivatives of the input model are provided.
      *  By default, this solver will assume that a zero value for derivatives
@@ -1140,7 +1220,7 @@ public abstract class QSSBase {
         }
 
         // Set status to note future needs.
-        _need_quantEvts[stateIndex] = true;
+        _setNeedQuantizationEvent(stateIndex);
 
         // Change tolerances.
         _dqAbsTols[stateIndex] = absoluteTolerance;
@@ -1209,7 +1289,8 @@ public abstract class QSSBase {
 
         // Set status to note future needs.
         _need_rateEvt = true;
-        _need_quantEvts[stateIdx] = true;
+        _setNeedQuantizationEvent(stateIdx);
+        _noteStateChange(stateIdx);
         // _need_predQuantizationEventTimes[stateIdx] = true;  // This will follow from changes above.
 
         // Make the quantized state model constant at {newValue}.
@@ -1245,9 +1326,7 @@ public abstract class QSSBase {
         }
 
         // Set status to note future needs.
-        for (int ii = 0; ii < _stateCt; ++ii) {
-            _need_quantEvts[ii] = true;
-        }
+        _setAllNeedQuantizationEvents();
 
         _quantEvtTimeMax = quantEvtTimeMax;
 
@@ -1278,19 +1357,13 @@ public abstract class QSSBase {
 
         // Update state models if necessary.
         if (_need_rateEvt) {
-            triggerRateEvent();
+            triggerSparseRateEvent();
             assert (_need_rateEvt == false);
         }
 
         // Determine which, if any, state models will require requantization at
         // the end of this step.
-        for (int ii = 0; ii < _stateCt; ++ii) {
-            assert (_need_quantEvts[ii] == false);
-            final Time predQuantEvtTime = predictQuantizationEventTime(ii);
-            if (predQuantEvtTime.compareTo(nextSimTime) <= 0) {
-                _need_quantEvts[ii] = true;
-            }
-        }
+        _markQuantizationEvents(nextSimTime);
 
         // Take step.
         _currSimTime = nextSimTime;
@@ -1335,13 +1408,7 @@ public abstract class QSSBase {
 
         // Determine which, if any, state models will require requantization at
         // the end of this step.
-        for (int ii = 0; ii < _stateCt; ++ii) {
-            assert (_need_quantEvts[ii] == false);
-            final Time predQuantEvtTime = predictQuantizationEventTime(ii);
-            if (predQuantEvtTime.compareTo(nextSimTime) <= 0) {
-                _need_quantEvts[ii] = true;
-            }
-        }
+        _markQuantizationEvents(nextSimTime);
 
         // Take step.
         _currSimTime = nextSimTime;
@@ -1413,7 +1480,8 @@ public abstract class QSSBase {
 
         // Set status to note future needs.
         _need_rateEvt = true;
-        _need_predQuantEvtTimes[stateIdx] = true;
+        _markPredictionStale(stateIdx);
+        _noteStateChange(stateIdx);
 
         // Perform work defined by specific member of the QSS family.
         _triggerQuantizationEventWorker(stateIdx);
@@ -1424,7 +1492,10 @@ public abstract class QSSBase {
         _dqs[stateIdx] = findQuantum(stateIdx);
 
         // Set status to note satisfied needs.
-        _need_quantEvts[stateIdx] = false;
+        if (_need_quantEvts[stateIdx]) {
+            _need_quantEvts[stateIdx] = false;
+            _need_quantEvtCt--;
+        }
     }
 
     /** Form new external, quantized state models.
@@ -1542,14 +1613,15 @@ public abstract class QSSBase {
     public final void triggerRateEvent() throws Exception {
 
         // Set status to note future needs.
-        for (int ii = 0; ii < _stateCt; ++ii) {
-            _need_predQuantEvtTimes[ii] = true;
-        }
+        _markAllPredictionsStale();
+        _setAllRateEventStates();
 
         // Perform work defined by specific member of the QSS family.
         _triggerRateEventWorker();
 
         // Set status to note satisfied needs.
+        _clearRateEventStates();
+        _need_fullRateEvt = false;
         _need_rateEvt = false;
     }
 
@@ -1571,18 +1643,58 @@ public abstract class QSSBase {
 
         if (numberEventIndicators > 0) {
             // Set status to note future needs.
-            for (int ii = 0; ii < _stateCt; ++ii) {
-                _need_predQuantEvtTimes[ii] = true;
-            }
+            _markAllPredictionsStale();
+            _setAllRateEventStates();
 
             // Perform work defined by specific member of the QSS family.
             _triggerRateEventWorkerEventDetection();
 
             // Set status to note satisfied needs.
+            _clearRateEventStates();
+            _need_fullRateEvt = false;
             _need_rateEvt = false;
         }
     }
 
+    /** Form new internal, continuous state models for the states affected
+     * by changes since the last rate-event.
+     *
+     * <p>If dependencies have been given to the integrator, see method
+     * {@link #setDependencies(int[][], int[][])}, then this method forms
+     * new models only for the states whose derivatives depend on a state
+     * that has had a quantization-event, or whose value has been set, or
+     * on an input variable whose change has been noted by method
+     * {@link #noteInputVariableChange(int)}, since the last rate-event.
+     * Only the predicted quantization-event times of those states are
+     * recalculated.
+     * Otherwise, or if the simulation time has been reset, this method is
+     * the same as method {@link #triggerRateEvent()}.</p>
+     *
+     * <p>Method {@link #stepToTime(Time)} calls this method if a rate-event
+     * is needed.</p>
+     *
+     * @exception Exception If thrown while performing the work defined by
+     * a specific member of the QSS family.
+     */
+    public final void triggerSparseRateEvent() throws Exception {
+        if (_stateDependents == null || _need_fullRateEvt) {
+            triggerRateEvent();
+            return;
+        }
+
+        // Set status to note future needs.
+        for (int ii = 0; ii < _rateEvtStateCt; ++ii) {
+            _markPredictionStale(_rateEvtStates[ii]);
+        }
+
+        // Perform work defined by specific member of the QSS family.
+        _triggerRateEventWorker();
+
+        // Set status to note satisfied needs.
+        _clearRateEventStates();
+        _need_rateEvt = false;
+    }
+
     /** Validate the QSS integrator has been properly set up.
      *
      * <p>This method diagnoses setup problems with the integrator.
@@ -1635,6 +1747,32 @@ public abstract class QSSBase {
     ///////////////////////////////////////////////////////////////////
     ////                         protected methods
 
+    /** Evaluate the internal, continuous state model of a state during a
+     * rate-event.
+     *
+     * <p>The models of the states listed in {@link #_rateEvtStates} are
+     * formed at the current simulation time, so they are evaluated using
+     * <i>dtSimTime</i>, which avoids finding a time difference for each
+     * state.
+     * The models of other states have been kept by a sparse rate-event and
+     * may have been formed at an earlier time, so they are evaluated at
+     * <i>simTime</i>.</p>
+     *
+     * @param stateIdx The state index, 0 <= stateIdx < this.getStateCt().
+     * @param simTime Global simulation time.
+     * @param dtSimTime The difference between <code>simTime</code> and
+     *   the current simulation time.
+     * @return Value of the internal, continuous state model at <code>simTime</code>.
+     */
+    protected final double _evaluateContinuousStateModel(final int stateIdx,
+            final Time simTime, final double dtSimTime) {
+        final ModelPolynomial cStateMdl = _cStateMdls[stateIdx];
+        if (cStateMdl.tMdl == _currSimTime) {
+            return (cStateMdl.evaluate(dtSimTime));
+        }
+        return (cStateMdl.evaluate(simTime));
+    }
+
     /** Initialize object fields (QSS-specific).
      *
      * <p>Perform one-time initializations at the beginning of the object
@@ -2037,6 +2175,18 @@ public abstract class QSSBase {
     /** The simulation time of the last call. */
     protected Time _currSimTime;
 
+    /** The states whose internal, continuous state models are formed by
+     * the current rate-event.  Only the first {@link #_rateEvtStateCt}
+     * elements are used.  Unless a sparse rate-event is being performed,
+     * these are all the states, in order.
+     */
+    protected int[] _rateEvtStates;
+
+    /** The number of states whose internal, continuous state models are
+     * formed by the current rate-event.
+     */
+    protected int _rateEvtStateCt;
+
     ///////////////////////////////////////////////////////////////////
     ////                         private methods
 
@@ -2123,9 +2273,12 @@ public abstract class QSSBase {
 
         // Force quantization-event in all state models.
         _need_quantEvts = new boolean[_stateCt];
-        for (int ii = 0; ii < _stateCt; ++ii) {
-            _need_quantEvts[ii] = true;
-        }
+        _setAllNeedQuantizationEvents();
+
+        // States for the next rate-event.
+        _rateEvtStates = new int[_stateCt];
+        _isRateEvtState = new boolean[_stateCt];
+        _need_fullRateEvt = true;
 
     }
 
@@ -2201,11 +2354,312 @@ public abstract class QSSBase {
         // objects.
         _predQuantEvtTimes = new Time[_stateCt];
 
+        // Heap of the states ordered by predicted quantization-event time.
+        //   The heap gets built when the predicted times are first needed.
+        _heap = new int[_stateCt];
+        _heapPositions = new int[_stateCt];
+        _heapTimes = new Time[_stateCt];
+        _heapWalk = new int[_stateCt];
+        _isStalePrediction = new boolean[_stateCt];
+        _stalePredictions = new int[_stateCt];
+        _stalePredictionCt = 0;
+
         // Force recalculation of quantization-event times.
         _need_predQuantEvtTimes = new boolean[_stateCt];
+        _markAllPredictionsStale();
+    }
+
+    /** Clear the list of states for the rate-event.
+     */
+    private final void _clearRateEventStates() {
+        for (int ii = 0; ii < _rateEvtStateCt; ++ii) {
+            _isRateEvtState[_rateEvtStates[ii]] = false;
+        }
+        _rateEvtStateCt = 0;
+    }
+
+    /** Return true if state <i>stateIdx1</i> belongs above state
+     * <i>stateIdx2</i> in the heap, that is, if its predicted
+     * quantization-event time is earlier, or if the times are equal and
+     * its index is lower.
+     */
+    private final boolean _heapBefore(final int stateIdx1,
+            final int stateIdx2) {
+        final int comparison = _heapTimes[stateIdx1]
+                .compareTo(_heapTimes[stateIdx2]);
+        return (comparison < 0 || comparison == 0 && stateIdx1 < stateIdx2);
+    }
+
+    /** Move the state at a position in the heap down until it is not
+     * after either of its children.
+     */
+    private final void _heapSiftDown(int pos) {
+        final int stateIdx = _heap[pos];
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= _stateCt) {
+                break;
+            }
+            if (child + 1 < _stateCt
+                    && _heapBefore(_heap[child + 1], _heap[child])) {
+                child++;
+            }
+            if (!_heapBefore(_heap[child], stateIdx)) {
+                break;
+            }
+            _heap[pos] = _heap[child];
+            _heapPositions[_heap[pos]] = pos;
+            pos = child;
+        }
+        _heap[pos] = stateIdx;
+        _heapPositions[stateIdx] = pos;
+    }
+
+    /** Move the state at a position in the heap up until it is not
+     * before its parent.
+     */
+    private final void _heapSiftUp(int pos) {
+        final int stateIdx = _heap[pos];
+        while (pos > 0) {
+            final int parent = (pos - 1) / 2;
+            if (!_heapBefore(stateIdx, _heap[parent])) {
+                break;
+            }
+            _heap[pos] = _heap[parent];
+            _heapPositions[_heap[pos]] = pos;
+            pos = parent;
+        }
+        _heap[pos] = stateIdx;
+        _heapPositions[stateIdx] = pos;
+    }
+
+    /** Note that the predicted quantization-event times of all states
+     * must be recalculated, and that the heap is no longer valid.
+     */
+    private final void _markAllPredictionsStale() {
         for (int ii = 0; ii < _stateCt; ++ii) {
             _need_predQuantEvtTimes[ii] = true;
         }
+        _allPredictionsStale = true;
+        _heapValid = false;
+    }
+
+    /** Note that the predicted quantization-event time of a state must
+     * be recalculated, and that the state must then be moved in the heap.
+     *
+     * @param stateIdx The state index, 0 <= stateIdx < this.getStateCt().
+     */
+    private final void _markPredictionStale(final int stateIdx) {
+        _need_predQuantEvtTimes[stateIdx] = true;
+        if (!_allPredictionsStale && !_isStalePrediction[stateIdx]) {
+            _isStalePrediction[stateIdx] = true;
+            _stalePredictions[_stalePredictionCt++] = stateIdx;
+        }
+    }
+
+    /** Add a state to the list of states for the next sparse rate-event.
+     *
+     * @param stateIdx The state index, 0 <= stateIdx < this.getStateCt().
+     */
+    private final void _noteRateEventState(final int stateIdx) {
+        if (!_isRateEvtState[stateIdx]) {
+            _isRateEvtState[stateIdx] = true;
+            _rateEvtStates[_rateEvtStateCt++] = stateIdx;
+        }
+    }
+
+    /** Note that the external, quantized state model of a state has
+     * changed, so the next sparse rate-event must form the models of the
+     * state and of the states whose derivatives depend on it.
+     *
+     * @param stateIdx The state index, 0 <= stateIdx < this.getStateCt().
+     */
+    private final void _noteStateChange(final int stateIdx) {
+        if (_stateDependents == null) {
+            return;
+        }
+        _noteRateEventState(stateIdx);
+        final int end = _stateDependentStarts[stateIdx + 1];
+        for (int ii = _stateDependentStarts[stateIdx]; ii < end; ++ii) {
+            _noteRateEventState(_stateDependents[ii]);
+        }
+    }
+
+    /** Mark the states whose predicted quantization-event time is at or
+     * before the specified time as needing a quantization-event.
+     * If the heap has been built, then only the part of the heap holding
+     * these states is visited.
+     *
+     * @param simTime Global simulation time.
+     */
+    private final void _markQuantizationEvents(final Time simTime) {
+        _updateHeap();
+        if (!_heapValid) {
+            for (int ii = 0; ii < _stateCt; ++ii) {
+                if (_heapTimes[ii].compareTo(simTime) <= 0) {
+                    _setNeedQuantizationEvent(ii);
+                }
+            }
+            return;
+        }
+        int top = 0;
+        _heapWalk[top++] = 0;
+        while (top > 0) {
+            final int pos = _heapWalk[--top];
+            final int stateIdx = _heap[pos];
+            if (_heapTimes[stateIdx].compareTo(simTime) <= 0) {
+                _setNeedQuantizationEvent(stateIdx);
+                final int child = 2 * pos + 1;
+                if (child < _stateCt) {
+                    _heapWalk[top++] = child;
+                }
+                if (child + 1 < _stateCt) {
+                    _heapWalk[top++] = child + 1;
+                }
+            }
+        }
+    }
+
+    /** Make the list of states for the rate-event hold all the states.
+     */
+    private final void _setAllRateEventStates() {
+        for (int ii = 0; ii < _stateCt; ++ii) {
+            _rateEvtStates[ii] = ii;
+            _isRateEvtState[ii] = true;
+        }
+        _rateEvtStateCt = _stateCt;
+    }
+
+    /** Note that all states need a quantization-event.
+     */
+    private final void _setAllNeedQuantizationEvents() {
+        for (int ii = 0; ii < _stateCt; ++ii) {
+            _need_quantEvts[ii] = true;
+        }
+        _need_quantEvtCt = _stateCt;
+        _need_quantEvtFirst = 0;
+    }
+
+    /** Note that a state needs a quantization-event.
+     *
+     * @param stateIdx The state index, 0 <= stateIdx < this.getStateCt().
+     */
+    private final void _setNeedQuantizationEvent(final int stateIdx) {
+        if (!_need_quantEvts[stateIdx]) {
+            _need_quantEvts[stateIdx] = true;
+            _need_quantEvtCt++;
+            if (stateIdx < _need_quantEvtFirst) {
+                _need_quantEvtFirst = stateIdx;
+            }
+        }
+    }
+
+    /** Transpose lists of dependencies into a sparse incidence map,
+     * compressed by row.
+     *
+     * @param dependencies For each state, the indexes on which its
+     *   derivative depends.
+     * @param count The number of states or input variables that can be
+     *   depended on.
+     * @param starts (output) Element <code>startsIdx</code> is set to an
+     *   array of length <code>count+1</code>, such that the derivatives
+     *   that depend on index <i>j</i> are in the returned array from
+     *   <code>starts[startsIdx][j]</code> up to, but not including,
+     *   <code>starts[startsIdx][j+1]</code>.
+     * @param startsIdx The element of <code>starts</code> to set.
+     * @return The states whose derivatives depend on each index.
+     */
+    private final int[] _transposeDependencies(final int[][] dependencies,
+            final int count, final int[][] starts, final int startsIdx) {
+        if (dependencies.length != _stateCt) {
+            throw new IllegalArgumentException("Require dependencies for "
+                    + _stateCt + " states; got " + dependencies.length);
+        }
+        final int[] start = new int[count + 1];
+        for (int ii = 0; ii < _stateCt; ++ii) {
+            for (int jj : dependencies[ii]) {
+                if (jj < 0 || jj >= count) {
+                    throw new IllegalArgumentException("Dependency " + jj
+                            + " of state " + ii + " is out of range");
+                }
+                start[jj + 1]++;
+            }
+        }
+        for (int jj = 0; jj < count; ++jj) {
+            start[jj + 1] += start[jj];
+        }
+        final int[] next = new int[count];
+        System.arraycopy(start, 0, next, 0, count);
+        final int[] dependents = new int[start[count]];
+        for (int ii = 0; ii < _stateCt; ++ii) {
+            for (int jj : dependencies[ii]) {
+                dependents[next[jj]++] = ii;
+            }
+        }
+        starts[startsIdx] = start;
+        return (dependents);
+    }
+
+    /** Recalculate the stale predicted quantization-event times and
+     * restore the heap.
+     *
+     * <p>If all the times are stale, as after a rate-event, then the
+     * heap is not built, because rebuilding it after every rate-event
+     * would cost more than scanning the times.  Instead, the earliest
+     * time is found while recalculating the times.  The heap is built
+     * when only some of the times are stale.</p>
+     */
+    private final void _updateHeap() {
+        if (_allPredictionsStale) {
+            _earliestStateIdx = 0;
+            for (int ii = 0; ii < _stateCt; ++ii) {
+                _heapTimes[ii] = predictQuantizationEventTime(ii);
+                if (_heapTimes[ii]
+                        .compareTo(_heapTimes[_earliestStateIdx]) < 0) {
+                    _earliestStateIdx = ii;
+                }
+            }
+            for (int ii = 0; ii < _stalePredictionCt; ++ii) {
+                _isStalePrediction[_stalePredictions[ii]] = false;
+            }
+            _stalePredictionCt = 0;
+            _allPredictionsStale = false;
+            _heapValid = false;
+            return;
+        }
+        if (_stalePredictionCt == 0) {
+            return;
+        }
+        if (!_heapValid) {
+            for (int ii = 0; ii < _stalePredictionCt; ++ii) {
+                final int stateIdx = _stalePredictions[ii];
+                _isStalePrediction[stateIdx] = false;
+                _heapTimes[stateIdx] = predictQuantizationEventTime(stateIdx);
+            }
+            _stalePredictionCt = 0;
+            for (int ii = 0; ii < _stateCt; ++ii) {
+                _heap[ii] = ii;
+                _heapPositions[ii] = ii;
+            }
+            for (int pos = _stateCt / 2 - 1; pos >= 0; --pos) {
+                _heapSiftDown(pos);
+            }
+            _heapValid = true;
+            return;
+        }
+        // Move each state right after updating its time, so that at most
+        // one state is out of place in the heap.
+        for (int ii = 0; ii < _stalePredictionCt; ++ii) {
+            final int stateIdx = _stalePredictions[ii];
+            _isStalePrediction[stateIdx] = false;
+            _heapTimes[stateIdx] = predictQuantizationEventTime(stateIdx);
+            final int pos = _heapPositions[stateIdx];
+            _heapSiftUp(pos);
+            if (_heap[pos] == stateIdx) {
+                _heapSiftDown(pos);
+            }
+        }
+        _stalePredictionCt = 0;
     }
 
     /** Make a model represent a constant.
@@ -2340,4 +2794,33 @@ public abstract class QSSBase {
     private Time[] _predQuantEvtTimes; // Predicted quantization-event time for each state.
     private boolean[] _need_predQuantEvtTimes; // True if need to recalculate the
     // predicted quantization-event time for the state.
+
+    // Sparse incidence map of the derivative function, compressed by row,
+    // or null if every derivative may depend on every state or input.
+    //   The derivatives that depend on state {jj} are
+    // {_stateDependents[_stateDependentStarts[jj]]} up to, but not
+    // including, {_stateDependents[_stateDependentStarts[jj+1]]}.
+    private int[] _stateDependentStarts, _stateDependents;
+    private int[] _ivDependentStarts, _ivDependents;
+
+    private boolean _need_fullRateEvt; // True if the next rate-event
+    // must form the models of all states, even if dependencies are known.
+    private boolean[] _isRateEvtState; // True if the state is in {_rateEvtStates}.
+
+    // Number of states that need a quantization-event, and a lower bound
+    // on their indexes.
+    private int _need_quantEvtCt, _need_quantEvtFirst;
+
+    // Indexed binary min-heap of the states, ordered by predicted
+    // quantization-event time.
+    private int[] _heap; // State index at each position of the heap.
+    private int[] _heapPositions; // Position of each state in the heap.
+    private Time[] _heapTimes; // Predicted time of each state, as last placed in the heap.
+    private int[] _heapWalk; // Stack of positions for walking the heap.
+    private boolean _allPredictionsStale; // True if need to recalculate all times.
+    private int _earliestStateIdx; // State with the earliest time, if the heap is not valid.
+    private boolean _heapValid; // True if the heap has been built for the current times.
+    private boolean[] _isStalePrediction; // True if the state is in {_stalePredictions}.
+    private int[] _stalePredictions; // States to be moved in the heap.
+    private int _stalePredictionCt;
 }
@@ -0,0 +1,274 @@
+/* Compare full and sparse rate-events of the QSS solvers.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+ */
+package org.ptolemy.qss.test;
+
+import org.ptolemy.qss.solver.QSSBase;
+import org.ptolemy.qss.util.DerivativeFunction;
+
+import ptolemy.actor.Director;
+import ptolemy.actor.util.Time;
+
+///////////////////////////////////////////////////////////////////
+//// SparseRateEventBenchmark
+
+/**
+ Integrate a large model with banded dependencies using full and
+ sparse rate-events and report the time per quantization-event.
+ <p>
+ The model is a chain of first order lags, where the derivative of
+ each state depends on the state itself and on the <i>bandwidth</i>
+ states that precede it, like the dependencies that the ModelStructure
+ element of the model description of an FMU declares.  With full
+ rate-events, every quantization-event re-forms the continuous models
+ of all the states.  With sparse rate-events, the solver is given the
+ dependencies, see {@link QSSBase#setDependencies(int[][], int[][])},
+ and only re-forms the models of the states that depend on the states
+ that had a quantization-event.
+ <p>
+ To run, use:
+ <pre>
+ java -classpath $PTII org.ptolemy.qss.test.SparseRateEventBenchmark [-states n] [-bandwidth n] [-events n] [-solver name]
+ </pre>
+ The number of states defaults to 1000, the bandwidth to 1, the
+ maximum number of quantization-events to 20000, and the solvers are
+ QSS1, QSS2Fd and QSS3Fd.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class SparseRateEventBenchmark {
+
+    /** Integrate the model with each solver and print the results.
+     *  @param args Optional "-states n", "-bandwidth n", "-events n"
+     *   and "-solver name" arguments.
+     *  @exception Exception If a solver cannot be created or fails.
+     */
+    public static void main(String[] args) throws Exception {
+        int states = 1000;
+        int bandwidth = 1;
+        int events = 20000;
+        String[] solvers = { "QSS1", "QSS2Fd", "QSS3Fd" };
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("-states")) {
+                states = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-bandwidth")) {
+                bandwidth = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-events")) {
+                events = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-solver")) {
+                solvers = new String[] { args[i + 1] };
+            } else {
+                System.err.println("Usage: java -classpath $PTII "
+                        + "org.ptolemy.qss.test.SparseRateEventBenchmark "
+                        + "[-states n] [-bandwidth n] [-events n] "
+                        + "[-solver name]");
+                return;
+            }
+        }
+
+        System.out.println("solver\trate-events\tquantization-events"
+                + "\tmicroseconds/event");
+        for (String solver : solvers) {
+            for (boolean sparse : new boolean[] { false, true }) {
+                long[] result = run(solver, states, bandwidth, events,
+                        sparse);
+                System.out.println(solver + "\t"
+                        + (sparse ? "sparse" : "full") + "\t" + result[1]
+                        + "\t" + result[0] * 1.0e-3 / Math.max(1, result[1]));
+            }
+        }
+    }
+
+    /** Integrate the model and return the elapsed time and the number
+     *  of quantization-events.
+     *  @param solver The name of a class in org.ptolemy.qss.solver.
+     *  @param states The number of states.
+     *  @param bandwidth The number of preceding states on which the
+     *   derivative of a state depends.
+     *  @param events The maximum number of quantization-events.
+     *  @param sparse True to use sparse rate-events.
+     *  @return An array with the time in nanoseconds and the number
+     *   of quantization-events.
+     *  @exception Exception If the solver cannot be created or fails.
+     */
+    public static long[] run(String solver, int states, int bandwidth,
+            int events, boolean sparse) throws Exception {
+        Director director = new Director();
+        QSSBase qssSolver = (QSSBase) Class
+                .forName("org.ptolemy.qss.solver." + solver).newInstance();
+        Time stopTime = new Time(director, 10.0);
+        qssSolver.initialize(new Chain(states, bandwidth),
+                new Time(director, 0.0), stopTime, 1.0e-4, 1.0e-4, 0);
+        if (sparse) {
+            int[][] stateDependencies = new int[states][];
+            int[][] inputDependencies = new int[states][0];
+            for (int i = 0; i < states; i++) {
+                int first = Math.max(0, i - bandwidth);
+                stateDependencies[i] = new int[i - first + 1];
+                for (int j = first; j <= i; j++) {
+                    stateDependencies[i][j - first] = j;
+                }
+            }
+            qssSolver.setDependencies(stateDependencies, inputDependencies);
+        }
+        qssSolver.triggerQuantizationEvents(true);
+        qssSolver.triggerRateEvent();
+
+        long count = 0;
+        long start = System.nanoTime();
+        while (count < events) {
+            Time nextTime = qssSolver.predictQuantizationEventTimeEarliest();
+            if (nextTime.compareTo(stopTime) >= 0) {
+                break;
+            }
+            count += qssSolver.advanceToTime(nextTime).size();
+            if (sparse) {
+                qssSolver.triggerSparseRateEvent();
+            } else {
+                qssSolver.triggerRateEvent();
+            }
+        }
+        return new long[] { System.nanoTime() - start, count };
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         inner classes                     ////
+
+    /** A chain of first order lags, where the derivative of each state
+     *  depends on the state and on the average of the states that
+     *  precede it.
+     */
+    public static class Chain implements DerivativeFunction {
+        /** Construct a chain.
+         *  @param states The number of states.
+         *  @param bandwidth The number of preceding states on which the
+         *   derivative of a state depends.
+         */
+        public Chain(int states, int bandwidth) {
+            _states = states;
+            _bandwidth = bandwidth;
+        }
+
+        /** Return 0, since the chain has no event indicators.
+         *  @return 0.
+         */
+        @Override
+        public int evaluateDerivatives(Time time, double[] dtSample,
+                double[] eventIndicatorDerivatives,
+                double[] eventIndicatorDerivatives2,
+                double[] eventIndicatorDerivatives3, int stOrd) {
+            return 0;
+        }
+
+        /** Evaluate the derivatives of the states.
+         *  @param time The simulation time.
+         *  @param xx The states.
+         *  @param uu The input variables, which are not used.
+         *  @param xdot The derivatives of the states.
+         *  @return 0.
+         */
+        @Override
+        public int evaluateDerivatives(Time time, double[] xx, double[] uu,
+                double[] xdot) {
+            for (int i = 0; i < _states; i++) {
+                int first = Math.max(0, i - _bandwidth);
+                double sum = 0.0;
+                for (int j = first; j < i; j++) {
+                    sum += xx[j];
+                }
+                double input = i > first ? sum / (i - first) : 1.0;
+                xdot[i] = input - xx[i];
+            }
+            return 0;
+        }
+
+        /** Return 0, since the chain does not provide directional
+         *  derivatives.
+         *  @return 0.
+         */
+        @Override
+        public double evaluateDirectionalDerivatives(int idx,
+                double[] xx_dot, double[] uu_dot) {
+            return 0.0;
+        }
+
+        /** Return 0, since the chain has no event indicators.
+         *  @return 0.
+         */
+        @Override
+        public int eventIndicatorDerivativeInputs(Time time, double[] xx,
+                double[] uu, Time timeSample, double[] xxSample,
+                double[] uuSample, double dtSample, Time timeSample2,
+                double[] xxSample2, double[] uuSample2, double dtSample2,
+                Time timeSample3, double[] xxSample3, double[] uuSample3,
+                double dtSample3, Time timeSample4, double[] xxSample4,
+                double[] uuSample4, double dtSample4, Time timeSample5,
+                double[] xxSample5, double[] uuSample5, double dtSample5,
+                int stateModelOrder) {
+            return 0;
+        }
+
+        /** Return 0.
+         *  @return 0.
+         */
+        @Override
+        public int getEventIndicatorCount() {
+            return 0;
+        }
+
+        /** Return 0.
+         *  @return 0.
+         */
+        @Override
+        public int getInputVariableCount() {
+            return 0;
+        }
+
+        /** Return false.
+         *  @return false.
+         */
+        @Override
+        public boolean getProvidesDirectionalDerivatives() {
+            return false;
+        }
+
+        /** Return the number of states.
+         *  @return The number of states.
+         */
+        @Override
+        public int getStateCount() {
+            return _states;
+        }
+
+        private int _bandwidth;
+
+        private int _states;
+    }
+}
@@ -0,0 +1,353 @@
+/* Test the ordering of predicted quantization-events of a QSS solver.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+
+package org.ptolemy.qss.test.junit;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+import org.ptolemy.qss.solver.QSS1;
+import org.ptolemy.qss.solver.QSSBase;
+import org.ptolemy.qss.util.DerivativeFunction;
+
+import ptolemy.actor.Director;
+import ptolemy.actor.util.Time;
+
+///////////////////////////////////////////////////////////////////
+//// QuantizationEventHeapJUnitTest
+
+/**
+ * Test the min-heap that QSSBase keeps of the predicted
+ * quantization-event times of the states.
+ *
+ * <p>The derivative of each state is a constant rate, so with an
+ * absolute tolerance of 1 and a relative tolerance of 0, QSS1 predicts
+ * a quantization-event every 1/rate.  The rates are powers of two, so
+ * the predicted times are exact, and the times and states of the
+ * quantization-events can be found by brute force and compared with
+ * those of the solver.  No derivative depends on another state, so
+ * sparse rate-events only invalidate the states that had a
+ * quantization-event, and the solver keeps the other states in the
+ * heap.</p>
+ *
+ * @author Ptolemy II developers
+ * @version $Id$
+ * @since Ptolemy II 11.0
+ * @Pt.ProposedRating Red (cxh)
+ * @Pt.AcceptedRating Red (cxh)
+ */
+public class QuantizationEventHeapJUnitTest {
+
+    /** Check that the states have their quantization-events in the
+     *  order of their predicted times.
+     *  @exception Exception If the solver fails.
+     */
+    @Test
+    public void heapOrder() throws Exception {
+        _initialize(new double[] { 8.0, 1.0, 2.0, 0.5, 16.0, 4.0, 0.25 });
+        for (int i = 0; i < 100; i++) {
+            _step();
+        }
+    }
+
+    /** Check that a state whose predicted time becomes earlier moves
+     *  to the top of the heap.
+     *  @exception Exception If the solver fails.
+     */
+    @Test
+    public void decreaseKey() throws Exception {
+        _initialize(new double[] { 1.0, 2.0, 0.25, 4.0, 0.5 });
+        for (int i = 0; i < 5; i++) {
+            _step();
+        }
+        // State 2 has the latest predicted time.
+        _setRate(2, 32.0);
+        assertEquals(_time + 1.0 / 32.0, _solver
+                .predictQuantizationEventTimeEarliest().getDoubleValue(),
+                1.0e-9);
+        assertEquals("[2]", _step().toString());
+        for (int i = 0; i < 40; i++) {
+            _step();
+        }
+    }
+
+    /** Check that a state that will not have a quantization-event
+     *  is no longer returned, and that it is returned again once it
+     *  will have one.
+     *  @exception Exception If the solver fails.
+     */
+    @Test
+    public void removal() throws Exception {
+        _initialize(new double[] { 4.0, 2.0, 8.0, 1.0 });
+        for (int i = 0; i < 5; i++) {
+            _step();
+        }
+        // State 2 has the earliest predicted time.
+        _setRate(2, 0.0);
+        assertEquals(_MAXIMUM_TIME, _solver.predictQuantizationEventTime(2)
+                .getDoubleValue(), 1.0e-9);
+        for (int i = 0; i < 20; i++) {
+            assertEquals(false, _step().contains(Integer.valueOf(2)));
+        }
+        _setRate(2, 8.0);
+        for (int i = 0; i < 20; i++) {
+            _step();
+        }
+    }
+
+    /** Check that states with identical predicted times have their
+     *  quantization-events together.
+     *  @exception Exception If the solver fails.
+     */
+    @Test
+    public void ties() throws Exception {
+        _initialize(new double[] { 2.0, 4.0, 2.0, 4.0, 1.0, 4.0 });
+        assertEquals("[1, 3, 5]", _step().toString());
+        assertEquals("[0, 1, 2, 3, 5]", _step().toString());
+        assertEquals("[1, 3, 5]", _step().toString());
+        assertEquals("[0, 1, 2, 3, 4, 5]", _step().toString());
+        // Break a tie, then make it again.
+        _setRate(3, 8.0);
+        assertEquals("[3]", _step().toString());
+        assertEquals("[1, 3, 5]", _step().toString());
+        for (int i = 0; i < 40; i++) {
+            _step();
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Create a QSS1 solver for states with the specified rates and
+     *  give it the dependencies, so that it uses sparse rate-events.
+     *  @param rates The derivatives of the states.
+     *  @exception Exception If the solver fails.
+     */
+    private void _initialize(double[] rates) throws Exception {
+        _rates = rates.clone();
+        _nextTimes = new double[rates.length];
+        _time = 0.0;
+        _director = new Director();
+        _solver = new QSS1();
+        _solver.initialize(new Rates(_rates), new Time(_director, 0.0),
+                new Time(_director, _MAXIMUM_TIME), 1.0, 0.0, 0);
+        _solver.setDependencies(new int[rates.length][0],
+                new int[rates.length][0]);
+        _solver.triggerQuantizationEvents(true);
+        _solver.triggerRateEvent();
+        for (int i = 0; i < rates.length; i++) {
+            _nextTimes[i] = _nextTime(i);
+        }
+    }
+
+    /** Return the time of the next quantization-event of a state that
+     *  has one now.
+     *  @param state The state.
+     *  @return The time of the next quantization-event.
+     */
+    private double _nextTime(int state) {
+        if (_rates[state] == 0.0) {
+            return _MAXIMUM_TIME;
+        }
+        return _time + 1.0 / _rates[state];
+    }
+
+    /** Change the rate of a state and give it a quantization-event, so
+     *  that its next quantization-event is predicted with the new rate.
+     *  @param state The state.
+     *  @param rate The new rate.
+     *  @exception Exception If the solver fails.
+     */
+    private void _setRate(int state, double rate) throws Exception {
+        _rates[state] = rate;
+        _solver.triggerQuantizationEvent(state);
+        _solver.triggerSparseRateEvent();
+        _nextTimes[state] = _nextTime(state);
+    }
+
+    /** Advance the solver to its earliest predicted quantization-event
+     *  time and check the time and the states against those found by
+     *  brute force.
+     *  @return The states that had a quantization-event.
+     *  @exception Exception If the solver fails.
+     */
+    private List<Integer> _step() throws Exception {
+        double earliest = Double.POSITIVE_INFINITY;
+        for (double nextTime : _nextTimes) {
+            earliest = Math.min(earliest, nextTime);
+        }
+        List<Integer> expected = new LinkedList<Integer>();
+        for (int i = 0; i < _nextTimes.length; i++) {
+            if (_nextTimes[i] == earliest) {
+                expected.add(Integer.valueOf(i));
+            }
+        }
+
+        Time time = _solver.predictQuantizationEventTimeEarliest();
+        assertEquals(earliest, time.getDoubleValue(), 1.0e-9);
+        boolean[] marked = new boolean[_nextTimes.length];
+        _solver.predictQuantizationEventTimeEarliest(marked);
+        for (int i = 0; i < _nextTimes.length; i++) {
+            assertEquals("State " + i + " at " + earliest,
+                    expected.contains(Integer.valueOf(i)), marked[i]);
+        }
+
+        List<Integer> events = _solver.advanceToTime(time);
+        assertEquals("At " + earliest, expected, events);
+        _solver.triggerSparseRateEvent();
+        _time = earliest;
+        for (Integer state : events) {
+            _nextTimes[state.intValue()] = _nextTime(state.intValue());
+        }
+        return events;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The maximum time for predicted quantization-events. */
+    private static final double _MAXIMUM_TIME = 1000.0;
+
+    /** The director that gives the time resolution. */
+    private Director _director;
+
+    /** The times of the next quantization-events, found by brute force. */
+    private double[] _nextTimes;
+
+    /** The derivatives of the states. */
+    private double[] _rates;
+
+    /** The solver. */
+    private QSSBase _solver;
+
+    /** The time of the last quantization-event. */
+    private double _time;
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         inner classes                     ////
+
+    /** States whose derivatives are constant rates, which may be
+     *  changed between rate-events.
+     */
+    private static class Rates implements DerivativeFunction {
+        /** Construct the derivative function.
+         *  @param rates The derivatives of the states.  The array is
+         *   not copied.
+         */
+        public Rates(double[] rates) {
+            _rates = rates;
+        }
+
+        /** Return 0, since there are no event indicators.
+         *  @return 0.
+         */
+        @Override
+        public int evaluateDerivatives(Time time, double[] dtSample,
+                double[] eventIndicatorDerivatives,
+                double[] eventIndicatorDerivatives2,
+                double[] eventIndicatorDerivatives3, int stOrd) {
+            return 0;
+        }
+
+        /** Set the derivatives of the states to the rates.
+         *  @param time The simulation time.
+         *  @param xx The states, which are not used.
+         *  @param uu The input variables, which are not used.
+         *  @param xdot The derivatives of the states.
+         *  @return 0.
+         */
+        @Override
+        public int evaluateDerivatives(Time time, double[] xx, double[] uu,
+                double[] xdot) {
+            System.arraycopy(_rates, 0, xdot, 0, _rates.length);
+            return 0;
+        }
+
+        /** Return 0, since directional derivatives are not provided.
+         *  @return 0.
+         */
+        @Override
+        public double evaluateDirectionalDerivatives(int idx,
+                double[] xx_dot, double[] uu_dot) {
+            return 0.0;
+        }
+
+        /** Return 0, since there are no event indicators.
+         *  @return 0.
+         */
+        @Override
+        public int eventIndicatorDerivativeInputs(Time time, double[] xx,
+                double[] uu, Time timeSample, double[] xxSample,
+                double[] uuSample, double dtSample, Time timeSample2,
+                double[] xxSample2, double[] uuSample2, double dtSample2,
+                Time timeSample3, double[] xxSample3, double[] uuSample3,
+                double dtSample3, Time timeSample4, double[] xxSample4,
+                double[] uuSample4, double dtSample4, Time timeSample5,
+                double[] xxSample5, double[] uuSample5, double dtSample5,
+                int stateModelOrder) {
+            return 0;
+        }
+
+        /** Return 0.
+         *  @return 0.
+         */
+        @Override
+        public int getEventIndicatorCount() {
+            return 0;
+        }
+
+        /** Return 0.
+         *  @return 0.
+         */
+        @Override
+        public int getInputVariableCount() {
+            return 0;
+        }
+
+        /** Return false.
+         *  @return false.
+         */
+        @Override
+        public boolean getProvidesDirectionalDerivatives() {
+            return false;
+        }
+
+        /** Return the number of states.
+         *  @return The number of states.
+         */
+        @Override
+        public int getStateCount() {
+            return _rates.length;
+        }
+
+        private double[] _rates;
+    }
+}
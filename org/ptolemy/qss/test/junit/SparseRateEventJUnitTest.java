@@ -0,0 +1,295 @@
+/* Compare sparse and full rate-events of the QSS solvers.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+
+package org.ptolemy.qss.test.junit;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.ptolemy.qss.solver.LIQSS2Fd;
+import org.ptolemy.qss.solver.QSS1;
+import org.ptolemy.qss.solver.QSS2Fd;
+import org.ptolemy.qss.solver.QSS3Fd;
+import org.ptolemy.qss.solver.QSSBase;
+import org.ptolemy.qss.util.DerivativeFunction;
+
+import ptolemy.actor.Director;
+import ptolemy.actor.util.Time;
+
+///////////////////////////////////////////////////////////////////
+//// SparseRateEventJUnitTest
+
+/**
+ * Check that sparse rate-events give results that agree with those of
+ * full rate-events.
+ *
+ * <p>Each solver integrates the same model twice, once re-forming the
+ * models of all the states after every quantization-event, and once
+ * given the dependencies of the derivatives, see
+ * {@link QSSBase#setDependencies(int[][], int[][])}, so that it only
+ * re-forms the models of the affected states.  The values of the
+ * states at the stop time must agree within a few quanta.  They are
+ * not identical, since the derivatives are evaluated with the
+ * internal, continuous state models, so a full rate-event also
+ * re-forms the models of the states whose arguments did not have a
+ * quantization-event.  No derivative depends on the last state of the
+ * model, so it has no dependents, not even itself, and one derivative
+ * depends on an input variable.</p>
+ *
+ * @author Ptolemy II developers
+ * @version $Id$
+ * @since Ptolemy II 11.0
+ * @Pt.ProposedRating Red (cxh)
+ * @Pt.AcceptedRating Red (cxh)
+ */
+public class SparseRateEventJUnitTest {
+
+    /** Compare sparse and full rate-events with LIQSS2Fd.
+     *  @exception Exception If the solver fails.
+     */
+    @Test
+    public void liqss2Fd() throws Exception {
+        _compare(new LIQSS2Fd(), new LIQSS2Fd());
+    }
+
+    /** Compare sparse and full rate-events with QSS1.
+     *  @exception Exception If the solver fails.
+     */
+    @Test
+    public void qss1() throws Exception {
+        _compare(new QSS1(), new QSS1());
+    }
+
+    /** Compare sparse and full rate-events with QSS2Fd.
+     *  @exception Exception If the solver fails.
+     */
+    @Test
+    public void qss2Fd() throws Exception {
+        _compare(new QSS2Fd(), new QSS2Fd());
+    }
+
+    /** Compare sparse and full rate-events with QSS3Fd.
+     *  @exception Exception If the solver fails.
+     */
+    @Test
+    public void qss3Fd() throws Exception {
+        _compare(new QSS3Fd(), new QSS3Fd());
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Integrate the model with full and with sparse rate-events and
+     *  compare the results.
+     *  @param fullSolver The solver to use with full rate-events.
+     *  @param sparseSolver A solver of the same class to use with
+     *   sparse rate-events.
+     *  @exception Exception If a solver fails.
+     */
+    private void _compare(QSSBase fullSolver, QSSBase sparseSolver)
+            throws Exception {
+        String name = fullSolver.getClass().getSimpleName();
+        int[] fullEvents = new int[_STATES];
+        double[] full = _run(fullSolver, false, fullEvents);
+        int[] sparseEvents = new int[_STATES];
+        double[] sparse = _run(sparseSolver, true, sparseEvents);
+
+        for (int i = 0; i < _STATES; i++) {
+            assertEquals(name + ": state " + i, full[i], sparse[i],
+                    5 * _TOLERANCE);
+        }
+        // The state without dependents integrates the others, so it
+        // must have moved, and it must have been requantized.
+        assertEquals(true, Math.abs(sparse[_STATES - 1]) > 0.5);
+        assertEquals(true, fullEvents[_STATES - 1] > 0);
+        assertEquals(true, sparseEvents[_STATES - 1] > 0);
+    }
+
+    /** Integrate the model.
+     *  @param qssSolver The solver.
+     *  @param sparse True to use sparse rate-events.
+     *  @param events (output) The number of quantization-events of
+     *   each state.
+     *  @return The values of the states at the stop time.
+     *  @exception Exception If the solver fails.
+     */
+    private double[] _run(QSSBase qssSolver, boolean sparse, int[] events)
+            throws Exception {
+        Director director = new Director();
+        Time stopTime = new Time(director, _STOP_TIME);
+        qssSolver.initialize(new Model(), new Time(director, 0.0), stopTime,
+                _TOLERANCE, _TOLERANCE, 0);
+        qssSolver.setExactInputs(true);
+        qssSolver.getInputVariableModel(0).coeffs[0] = 1.0;
+        if (sparse) {
+            qssSolver.setDependencies(_STATE_DEPENDENCIES,
+                    _INPUT_DEPENDENCIES);
+        }
+        qssSolver.triggerQuantizationEvents(true);
+        qssSolver.triggerRateEvent();
+
+        while (true) {
+            Time nextTime = qssSolver.predictQuantizationEventTimeEarliest();
+            if (nextTime.compareTo(stopTime) >= 0) {
+                break;
+            }
+            for (Integer state : qssSolver.advanceToTime(nextTime)) {
+                events[state.intValue()]++;
+            }
+            if (sparse) {
+                qssSolver.triggerSparseRateEvent();
+            } else {
+                qssSolver.triggerRateEvent();
+            }
+        }
+
+        double[] values = new double[_STATES];
+        for (int i = 0; i < _STATES; i++) {
+            values[i] = qssSolver.evaluateStateModelContinuous(i, stopTime);
+        }
+        return values;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The input variables on which the derivative of each state
+     *  depends.
+     */
+    private static final int[][] _INPUT_DEPENDENCIES = { { 0 }, {}, {}, {},
+            {}, {} };
+
+    /** The states on which the derivative of each state depends. */
+    private static final int[][] _STATE_DEPENDENCIES = { { 0 }, { 0, 1 },
+            { 0, 1, 2 }, { 1, 3 }, { 2, 4 }, { 3, 4 } };
+
+    /** The number of states. */
+    private static final int _STATES = 6;
+
+    /** The stop time. */
+    private static final double _STOP_TIME = 3.0;
+
+    /** The absolute and relative quantization tolerances. */
+    private static final double _TOLERANCE = 1.0e-3;
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         inner classes                     ////
+
+    /** A model whose derivatives depend on the states and on the input
+     *  variable as in _STATE_DEPENDENCIES and _INPUT_DEPENDENCIES.
+     */
+    private static class Model implements DerivativeFunction {
+
+        /** Return 0, since there are no event indicators.
+         *  @return 0.
+         */
+        @Override
+        public int evaluateDerivatives(Time time, double[] dtSample,
+                double[] eventIndicatorDerivatives,
+                double[] eventIndicatorDerivatives2,
+                double[] eventIndicatorDerivatives3, int stOrd) {
+            return 0;
+        }
+
+        /** Evaluate the derivatives of the states.
+         *  @param time The simulation time.
+         *  @param xx The states.
+         *  @param uu The input variables.
+         *  @param xdot The derivatives of the states.
+         *  @return 0.
+         */
+        @Override
+        public int evaluateDerivatives(Time time, double[] xx, double[] uu,
+                double[] xdot) {
+            xdot[0] = uu[0] - xx[0];
+            xdot[1] = xx[0] - 2.0 * xx[1];
+            xdot[2] = 0.5 * xx[0] + xx[1] - xx[2];
+            xdot[3] = xx[1] - 3.0 * xx[3];
+            xdot[4] = xx[2] - 0.5 * xx[4];
+            xdot[5] = xx[3] + xx[4];
+            return 0;
+        }
+
+        /** Return 0, since directional derivatives are not provided.
+         *  @return 0.
+         */
+        @Override
+        public double evaluateDirectionalDerivatives(int idx,
+                double[] xx_dot, double[] uu_dot) {
+            return 0.0;
+        }
+
+        /** Return 0, since there are no event indicators.
+         *  @return 0.
+         */
+        @Override
+        public int eventIndicatorDerivativeInputs(Time time, double[] xx,
+                double[] uu, Time timeSample, double[] xxSample,
+                double[] uuSample, double dtSample, Time timeSample2,
+                double[] xxSample2, double[] uuSample2, double dtSample2,
+                Time timeSample3, double[] xxSample3, double[] uuSample3,
+                double dtSample3, Time timeSample4, double[] xxSample4,
+                double[] uuSample4, double dtSample4, Time timeSample5,
+                double[] xxSample5, double[] uuSample5, double dtSample5,
+                int stateModelOrder) {
+            return 0;
+        }
+
+        /** Return 0.
+         *  @return 0.
+         */
+        @Override
+        public int getEventIndicatorCount() {
+            return 0;
+        }
+
+        /** Return 1.
+         *  @return 1.
+         */
+        @Override
+        public int getInputVariableCount() {
+            return 1;
+        }
+
+        /** Return false.
+         *  @return false.
+         */
+        @Override
+        public boolean getProvidesDirectionalDerivatives() {
+            return false;
+        }
+
+        /** Return the number of states.
+         *  @return The number of states.
+         */
+        @Override
+        public int getStateCount() {
+            return _STATES;
+        }
+    }
+}
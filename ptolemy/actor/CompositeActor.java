@@ -505,7 +505,7 @@ FiringsRecordable {
 
         // Undid this change temporarily since the move of createReceivers breaks HDF
         /*
-         for (Object actor : deepEntityList()) {
+         for (Object actor : unmodifiableDeepEntityList()) {
          ((Actor) actor).createReceivers();
          }
          */
@@ -515,7 +515,7 @@ FiringsRecordable {
      *  @exception IllegalActionException If the schedule can't be created.
      */
     public void createSchedule() throws IllegalActionException {
-        for (Object actor : deepEntityList()) {
+        for (Object actor : unmodifiableDeepEntityList()) {
             if (actor instanceof CompositeActor) {
                 ((CompositeActor) actor).createSchedule();
             }
@@ -849,8 +849,8 @@ FiringsRecordable {
             }
 
             // Clear all of the contained actor's input ports.
-            for (Iterator<?> actors = deepEntityList().iterator(); actors
-                    .hasNext();) {
+            for (Iterator<?> actors = unmodifiableDeepEntityList()
+                    .iterator(); actors.hasNext();) {
                 Entity actor = (Entity) actors.next();
                 Iterator<?> ports = actor.portList().iterator();
 
@@ -345,8 +345,8 @@ public class Director extends Attribute implements Executable {
         Nameable container = getContainer();
 
         if (container instanceof CompositeActor) {
-            Iterator<?> actors = ((CompositeActor) container).deepEntityList()
-                    .iterator();
+            Iterator<?> actors = ((CompositeActor) container)
+                    .unmodifiableDeepEntityList().iterator();
             int iterationCount = 1;
 
             while (actors.hasNext() && !_stopRequested) {
@@ -894,8 +894,8 @@ public class Director extends Attribute implements Executable {
         // Initialize the contained actors.
         Nameable container = getContainer();
         if (container instanceof CompositeActor) {
-            Iterator<?> actors = ((CompositeActor) container).deepEntityList()
-                    .iterator();
+            Iterator<?> actors = ((CompositeActor) container)
+                    .unmodifiableDeepEntityList().iterator();
 
             while (actors.hasNext() && !_stopRequested) {
                 Actor actor = (Actor) actors.next();
@@ -1153,8 +1153,8 @@ public class Director extends Attribute implements Executable {
 
         setModelTime(modifiedTime);
         boolean noNewActors = true;
-        List<TimeRegulator> regulators = getContainer().attributeList(
-                TimeRegulator.class);
+        List<TimeRegulator> regulators = getContainer()
+                .unmodifiableAttributeList(TimeRegulator.class);
         for (TimeRegulator regulator : regulators) {
             noNewActors =  noNewActors && regulator.noNewActors();
         }
@@ -1247,8 +1247,8 @@ public class Director extends Attribute implements Executable {
             }
 
             // Preinitialize all the contained actors.
-            Iterator<?> actors = ((CompositeActor) container).deepEntityList()
-                    .iterator();
+            Iterator<?> actors = ((CompositeActor) container)
+                    .unmodifiableDeepEntityList().iterator();
             while (actors.hasNext()) {
                 Actor actor = (Actor) actors.next();
                 if (_debugging) {
@@ -1504,8 +1504,8 @@ public class Director extends Attribute implements Executable {
         Nameable container = getContainer();
 
         if (container instanceof CompositeActor) {
-            Iterator<?> actors = ((CompositeActor) container).deepEntityList()
-                    .iterator();
+            Iterator<?> actors = ((CompositeActor) container)
+                    .unmodifiableDeepEntityList().iterator();
 
             while (actors.hasNext()) {
                 Actor actor = (Actor) actors.next();
@@ -1536,8 +1536,8 @@ public class Director extends Attribute implements Executable {
         Nameable container = getContainer();
 
         if (container instanceof CompositeActor) {
-            Iterator<?> actors = ((CompositeActor) container).deepEntityList()
-                    .iterator();
+            Iterator<?> actors = ((CompositeActor) container)
+                    .unmodifiableDeepEntityList().iterator();
 
             while (actors.hasNext()) {
                 Actor actor = (Actor) actors.next();
@@ -1613,8 +1613,8 @@ public class Director extends Attribute implements Executable {
         Nameable container = getContainer();
 
         if (container instanceof CompositeActor) {
-            Iterator<?> actors = ((CompositeActor) container).deepEntityList()
-                    .iterator();
+            Iterator<?> actors = ((CompositeActor) container)
+                    .unmodifiableDeepEntityList().iterator();
 
             while (actors.hasNext()) {
                 Actor actor = (Actor) actors.next();
@@ -1714,8 +1714,8 @@ public class Director extends Attribute implements Executable {
         Nameable container = getContainer();
 
         if (container instanceof CompositeActor) {
-            Iterator<?> actors = ((CompositeActor) container).deepEntityList()
-                    .iterator();
+            Iterator<?> actors = ((CompositeActor) container)
+                    .unmodifiableDeepEntityList().iterator();
 
             while (actors.hasNext()) {
                 Actor actor = (Actor) actors.next();
@@ -1760,8 +1760,8 @@ public class Director extends Attribute implements Executable {
     protected Time _consultTimeRegulators(Time proposedTime)
             throws IllegalActionException {
         Time returnValue = proposedTime;
-        List<TimeRegulator> regulators = getContainer().attributeList(
-                TimeRegulator.class);
+        List<TimeRegulator> regulators = getContainer()
+                .unmodifiableAttributeList(TimeRegulator.class);
         for (TimeRegulator regulator : regulators) {
             Time modifiedTime = regulator.proposeTime(returnValue);
             if (modifiedTime.compareTo(returnValue) < 0) {
@@ -2089,7 +2089,8 @@ public class Director extends Attribute implements Executable {
     private void _createReceivers() throws IllegalActionException {
         Nameable container = getContainer();
         if (container instanceof CompositeActor) {
-            for (Object actor : ((CompositeActor) container).deepEntityList()) {
+            for (Object actor : ((CompositeActor) container)
+                    .unmodifiableDeepEntityList()) {
                 ((Actor) actor).createReceivers();
             }
         }
@@ -363,15 +363,18 @@ public class IOPort extends ComponentPort {
         }
 
         try {
-            try {
-                _workspace.getReadAccess();
-                farReceivers = getRemoteReceivers();
+            farReceivers = _getCachedRemoteReceivers();
+            if (farReceivers == null) {
+                try {
+                    _workspace.getReadAccess();
+                    farReceivers = getRemoteReceivers();
 
-                if (farReceivers == null) {
-                    return;
+                    if (farReceivers == null) {
+                        return;
+                    }
+                } finally {
+                    _workspace.doneReading();
                 }
-            } finally {
-                _workspace.doneReading();
             }
 
             // NOTE: This does not call send() here, because send()
@@ -961,31 +964,38 @@ public class IOPort extends ComponentPort {
                     IOPortEvent.GET_BEGIN, channelIndex, true, null));
         }
 
-        try {
-            _workspace.getReadAccess();
+        // If the workspace permits it and the cache is valid,
+        // avoid acquiring read access.
+        localReceivers = _getCachedReceivers();
+        if (localReceivers == null
+                || channelIndex >= localReceivers.length
+                || localReceivers[channelIndex] == null) {
+            try {
+                _workspace.getReadAccess();
 
-            // Note that the getReceivers() method might throw an
-            // IllegalActionException if there's no director.
-            localReceivers = getReceivers();
+                // Note that the getReceivers() method might throw an
+                // IllegalActionException if there's no director.
+                localReceivers = getReceivers();
 
-            if (channelIndex >= localReceivers.length) {
-                if (!isInput()) {
-                    throw new IllegalActionException(this,
-                            "Port is not an input port!");
-                } else {
-                    throw new IllegalActionException(this, "Channel index "
-                            + channelIndex
-                            + " is out of range, because width is only "
-                            + getWidth() + ".");
+                if (channelIndex >= localReceivers.length) {
+                    if (!isInput()) {
+                        throw new IllegalActionException(this,
+                                "Port is not an input port!");
+                    } else {
+                        throw new IllegalActionException(this,
+                                "Channel index " + channelIndex
+                                + " is out of range, because width is only "
+                                + getWidth() + ".");
+                    }
                 }
-            }
 
-            if (localReceivers[channelIndex] == null) {
-                throw new NoTokenException(this, "No receiver at index: "
-                        + channelIndex + ".");
+                if (localReceivers[channelIndex] == null) {
+                    throw new NoTokenException(this, "No receiver at index: "
+                            + channelIndex + ".");
+                }
+            } finally {
+                _workspace.doneReading();
             }
-        } finally {
-            _workspace.doneReading();
         }
 
         // Find the first non-null token in the receiver group.
@@ -1622,6 +1632,10 @@ public class IOPort extends ComponentPort {
      *  @return The local receivers, or an empty array if there are none.
      */
     public Receiver[][] getReceivers() {
+        Receiver[][] cachedReceivers = _getCachedReceivers();
+        if (cachedReceivers != null) {
+            return cachedReceivers;
+        }
         try {
             _workspace.getReadAccess();
 
@@ -1642,7 +1656,10 @@ public class IOPort extends ComponentPort {
                     return _EMPTY_RECEIVER_ARRAY;
                 }
 
-                _localReceivers = new Receiver[width][0];
+                // Populate a local array and assign the cache only when
+                // it is complete, since _getCachedReceivers() reads
+                // the cache without read access on the workspace.
+                Receiver[][] localReceivers = new Receiver[width][0];
 
                 int index = 0;
                 Iterator<?> relations = linkedRelationList().iterator();
@@ -1673,14 +1690,15 @@ public class IOPort extends ComponentPort {
 
                         if (receiverRelation != null) {
                             for (Receiver[] element : receiverRelation) {
-                                _localReceivers[index++] = element;
+                                localReceivers[index++] = element;
                             }
                         }
                     }
                 }
 
+                _localReceivers = localReceivers;
                 _localReceiversVersion = _workspace.getVersion();
-                return _localReceivers;
+                return localReceivers;
             } else {
                 // Transparent port.
                 return deepGetReceivers();
@@ -1783,6 +1801,10 @@ public class IOPort extends ComponentPort {
      *  width of a relation.
      */
     public Receiver[][] getRemoteReceivers() throws IllegalActionException {
+        Receiver[][] cachedReceivers = _getCachedRemoteReceivers();
+        if (cachedReceivers != null) {
+            return cachedReceivers;
+        }
         try {
             _workspace.getReadAccess();
 
@@ -1855,9 +1877,12 @@ public class IOPort extends ComponentPort {
             }
 
             // For an opaque port, cache the result.
+            // The receivers are assigned before the version so that
+            // _getCachedRemoteReceivers() never sees a valid version
+            // with stale receivers.
             if (isOpaque()) {
-                _farReceiversVersion = _workspace.getVersion();
                 _farReceivers = farReceivers;
+                _farReceiversVersion = _workspace.getVersion();
             }
 
             return farReceivers;
@@ -3034,19 +3059,24 @@ public class IOPort extends ComponentPort {
         }
 
         try {
-            try {
-                _workspace.getReadAccess();
-
-                // Note that the getRemoteReceivers() method doesn't throw
-                // any non-runtime exception.
-                farReceivers = getRemoteReceivers();
+            // If the workspace permits it and the cache is valid,
+            // avoid acquiring read access.
+            farReceivers = _getCachedRemoteReceivers();
+            if (farReceivers == null) {
+                try {
+                    _workspace.getReadAccess();
 
-                if (farReceivers == null || farReceivers.length <= channelIndex
-                        || farReceivers[channelIndex] == null) {
-                    return;
+                    // Note that the getRemoteReceivers() method doesn't throw
+                    // any non-runtime exception.
+                    farReceivers = getRemoteReceivers();
+                } finally {
+                    _workspace.doneReading();
                 }
-            } finally {
-                _workspace.doneReading();
+            }
+
+            if (farReceivers == null || farReceivers.length <= channelIndex
+                    || farReceivers[channelIndex] == null) {
+                return;
             }
 
             if (farReceivers[channelIndex].length > 0) {
@@ -4824,6 +4854,46 @@ public class IOPort extends ComponentPort {
         }
     }
 
+    /** Return the cached local receivers if the workspace permits an
+     *  optimistic read and the cache is valid for the current version
+     *  of the workspace.  Otherwise, return null, in which case the
+     *  caller should acquire read access and call getReceivers().
+     *  This method does not acquire read access on the workspace.
+     *  @return The cached local receivers, or null.
+     *  @see ptolemy.kernel.util.Workspace#tryOptimisticRead()
+     */
+    private Receiver[][] _getCachedReceivers() {
+        long stamp = _workspace.tryOptimisticRead();
+        if (stamp < 0L || _localReceiversVersion != stamp) {
+            return null;
+        }
+        Receiver[][] result = _localReceivers;
+        if (result == null || !_workspace.validateOptimisticRead(stamp)) {
+            return null;
+        }
+        return result;
+    }
+
+    /** Return the cached remote receivers if the workspace permits an
+     *  optimistic read and the cache is valid for the current version
+     *  of the workspace.  Otherwise, return null, in which case the
+     *  caller should acquire read access and call getRemoteReceivers().
+     *  This method does not acquire read access on the workspace.
+     *  @return The cached remote receivers, or null.
+     *  @see ptolemy.kernel.util.Workspace#tryOptimisticRead()
+     */
+    private Receiver[][] _getCachedRemoteReceivers() {
+        long stamp = _workspace.tryOptimisticRead();
+        if (stamp < 0L || _farReceiversVersion != stamp) {
+            return null;
+        }
+        Receiver[][] result = _farReceivers;
+        if (result == null || !_workspace.validateOptimisticRead(stamp)) {
+            return null;
+        }
+        return result;
+    }
+
     /** Get the persistent value for the specified channel, if there is one.
      *  If the persistent value is a SmoothToken, the first extrapolate its
      *  value to the current time.
@@ -5253,18 +5323,22 @@ public class IOPort extends ComponentPort {
 
     // A cache of the deeply connected Receivers, and the versions.
     // 'transient' means that the variable will not be serialized.
-    private transient Receiver[][] _farReceivers;
+    // These are volatile because _getCachedRemoteReceivers() reads them
+    // without read access on the workspace.
+    private transient volatile Receiver[][] _farReceivers;
 
-    private transient long _farReceiversVersion = -1;
+    private transient volatile long _farReceiversVersion = -1;
 
     // A cache of the local Receivers, and the version.
     // 'transient' means that the variable will not be serialized.
-    private transient Receiver[][] _localReceivers;
+    // These are volatile because _getCachedReceivers() reads them
+    // without read access on the workspace.
+    private transient volatile Receiver[][] _localReceivers;
 
     // Lists of local receivers, indexed by relation.
     private HashMap<IORelation, List<Receiver[][]>> _localReceiversTable;
 
-    private transient long _localReceiversVersion = -1;
+    private transient volatile long _localReceiversVersion = -1;
 
     // A cache of the local Receivers, and the version.
     // 'transient' means that the variable will not be serialized.
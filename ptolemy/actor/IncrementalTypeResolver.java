@@ -0,0 +1,623 @@
+/* Resolve the types of a model incrementally after mutations.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.actor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ptolemy.data.type.StructuredType;
+import ptolemy.data.type.Type;
+import ptolemy.graph.Inequality;
+import ptolemy.graph.InequalityTerm;
+import ptolemy.kernel.util.IllegalActionException;
+
+///////////////////////////////////////////////////////////////////
+//// IncrementalTypeResolver
+
+/**
+ Resolve the types of a model incrementally after mutations.
+ <p>
+ The first invocation of {@link #resolveTypes(TypedCompositeActor)}
+ solves all the type constraints of the model, like
+ {@link TypedCompositeActor#resolveTypes(TypedCompositeActor)}, and
+ keeps the constraints together with the values of their terms.
+ The following invocations collect the type constraints again and
+ compare them with the kept ones.  The constraints are partitioned
+ into independent groups, where two constraints are in the same group
+ if they share a type variable, directly or through other constraints.
+ Only the groups that contain a constraint that was added or removed,
+ or a term whose value was changed by something other than the type
+ resolution, such as a call to setTypeEquals() on a port, are solved
+ again.  The other groups keep their types, which are still the least
+ solution of their constraints.
+ <p>
+ Type variables that are coupled without appearing together in a
+ constraint, such as the type of a port and the element type of its
+ array type, are kept in the same group.  If nevertheless a constraint
+ is not satisfied after the incremental resolution, then all the
+ constraints are solved again, so that type conflicts are reported
+ exactly as by a resolution from scratch.
+ <p>
+ The Manager uses an instance of this class to resolve types during
+ an execution of a model, for example after a change request changed
+ the model.  The statistics of the resolutions can be obtained from
+ {@link Manager#getTypeResolver()}.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class IncrementalTypeResolver {
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Return the number of resolutions that solved all the type
+     *  constraints, including the first one.
+     *  @return The number of resolutions from scratch.
+     */
+    public int getFullResolutionCount() {
+        return _fullResolutionCount;
+    }
+
+    /** Return the number of type constraints of the last resolution.
+     *  @return The number of type constraints.
+     */
+    public int getLastConstraintCount() {
+        return _lastConstraintCount;
+    }
+
+    /** Return the time that the last resolution took, including the
+     *  time to check the declared types and to collect the type
+     *  constraints.
+     *  @return The time in nanoseconds.
+     */
+    public long getLastResolutionTime() {
+        return _lastResolutionTime;
+    }
+
+    /** Return the number of type constraints that were solved by the
+     *  last resolution.
+     *  @return The number of solved type constraints.
+     */
+    public int getLastSolvedConstraintCount() {
+        return _lastSolvedConstraintCount;
+    }
+
+    /** Return the number of resolutions.
+     *  @return The number of resolutions.
+     */
+    public int getResolutionCount() {
+        return _resolutionCount;
+    }
+
+    /** Return the total time of the resolutions.
+     *  @return The time in nanoseconds.
+     */
+    public long getTotalResolutionTime() {
+        return _totalResolutionTime;
+    }
+
+    /** Forget the type constraints of the previous resolution, so that
+     *  the next resolution solves all the type constraints.  The
+     *  statistics are kept.
+     */
+    public void invalidate() {
+        _records = null;
+        _topLevel = null;
+    }
+
+    /** Do type checking and type resolution on the specified composite
+     *  actor, solving only the type constraints that are affected by
+     *  the changes since the previous invocation.  If the top level is
+     *  not the same as in the previous invocation, then all the type
+     *  constraints are solved.
+     *  @param topLevel The top level TypedCompositeActor.
+     *  @exception IllegalArgumentException If the specified actor is not
+     *   the top level container.
+     *  @exception TypeConflictException If a type conflict is detected.
+     */
+    public void resolveTypes(TypedCompositeActor topLevel)
+            throws TypeConflictException {
+        long startTime = System.nanoTime();
+        try {
+            TypedCompositeActor._resolveTypes(topLevel, this);
+        } finally {
+            _lastResolutionTime = System.nanoTime() - startTime;
+            _totalResolutionTime += _lastResolutionTime;
+            _resolutionCount++;
+        }
+    }
+
+    /** Return a description of the statistics of the resolutions.
+     *  @return A description of the statistics.
+     */
+    @Override
+    public String toString() {
+        return "IncrementalTypeResolver: " + _resolutionCount
+                + " resolutions, " + _fullResolutionCount
+                + " from scratch, " + _totalResolutionTime / 1000000
+                + " ms. Last resolution: " + _lastSolvedConstraintCount
+                + " of " + _lastConstraintCount + " constraints solved, "
+                + _lastResolutionTime / 1000000 + " ms.";
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         package friendly methods          ////
+
+    /** Solve the type constraints that are affected by the changes
+     *  since the previous invocation, and keep the constraints for the
+     *  next invocation.  If the caller finds that a constraint is not
+     *  satisfied after a partial solution, it should call
+     *  {@link #invalidate()} and this method again, so that all the
+     *  constraints are solved.
+     *  @param topLevel The top level TypedCompositeActor.
+     *  @param constraints All the type constraints of the model.
+     *  @return True if only some of the constraints were solved.
+     *  @exception IllegalActionException If the solver throws it.
+     */
+    boolean _solve(TypedCompositeActor topLevel,
+            Collection<Inequality> constraints) throws IllegalActionException {
+        boolean solved = false;
+        try {
+            Inequality[] inequalities = constraints
+                    .toArray(new Inequality[constraints.size()]);
+            _Record[] records = new _Record[inequalities.length];
+            Map<_ConstraintKey, _Record> recordMap = new HashMap<_ConstraintKey, _Record>(
+                    2 * inequalities.length);
+            for (int i = 0; i < inequalities.length; i++) {
+                _ConstraintKey key = new _ConstraintKey(inequalities[i]);
+                _Record record = recordMap.get(key);
+                if (record == null) {
+                    record = new _Record(key);
+                    recordMap.put(key, record);
+                } else {
+                    // Constraints that cannot be told apart are always
+                    // solved.
+                    record.ambiguous = true;
+                }
+                records[i] = record;
+            }
+
+            boolean[] changed = null;
+            _Record[] previousRecords = null;
+            List<InequalityTerm> removedVariables = null;
+            if (_records != null && topLevel == _topLevel) {
+                changed = new boolean[inequalities.length];
+                previousRecords = new _Record[inequalities.length];
+                int matchedCount = 0;
+                for (int i = 0; i < inequalities.length; i++) {
+                    _Record previous = _records.get(records[i].key);
+                    if (previous == null) {
+                        changed[i] = true;
+                        continue;
+                    }
+                    previousRecords[i] = previous;
+                    if (!previous.matched) {
+                        previous.matched = true;
+                        matchedCount++;
+                    }
+                    changed[i] = records[i].ambiguous || previous.ambiguous
+                            || _isChanged(previous.lesserValue,
+                                    inequalities[i].getLesserTerm())
+                            || _isChanged(previous.greaterValue,
+                                    inequalities[i].getGreaterTerm());
+                }
+                if (matchedCount < _records.size()) {
+                    // Some constraints were removed, so the groups of
+                    // their variables may have a smaller solution.
+                    removedVariables = new ArrayList<InequalityTerm>();
+                    for (_Record previous : _records.values()) {
+                        if (!previous.matched) {
+                            removedVariables.addAll(previous.key.variables());
+                        }
+                    }
+                }
+            }
+
+            List<Inequality> affected;
+            if (changed == null) {
+                affected = Arrays.asList(inequalities);
+            } else {
+                affected = _affected(inequalities, changed, removedVariables);
+            }
+
+            if (affected.size() == inequalities.length) {
+                _fullResolutionCount++;
+            }
+            if (affected.size() > 0) {
+                TypedCompositeActor._solveLeast(topLevel, affected);
+            }
+            _lastConstraintCount = inequalities.length;
+            _lastSolvedConstraintCount = affected.size();
+
+            // Keep the values of the terms.  The values of the terms
+            // of the constraints that were not solved have not changed.
+            for (int i = 0; i < inequalities.length; i++) {
+                if (changed == null || changed[i]
+                        || affected.size() == inequalities.length) {
+                    records[i].lesserValue = _copy(inequalities[i]
+                            .getLesserTerm().getValue());
+                    records[i].greaterValue = _copy(inequalities[i]
+                            .getGreaterTerm().getValue());
+                } else {
+                    records[i].lesserValue = previousRecords[i].lesserValue;
+                    records[i].greaterValue = previousRecords[i].greaterValue;
+                }
+            }
+            if (changed != null && affected.size() < inequalities.length) {
+                for (Inequality inequality : affected) {
+                    _Record record = recordMap.get(new _ConstraintKey(
+                            inequality));
+                    record.lesserValue = _copy(inequality.getLesserTerm()
+                            .getValue());
+                    record.greaterValue = _copy(inequality.getGreaterTerm()
+                            .getValue());
+                }
+            }
+            _records = recordMap;
+            _topLevel = topLevel;
+            solved = true;
+            return affected.size() < inequalities.length;
+        } finally {
+            if (!solved) {
+                invalidate();
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Return the constraints in the groups that contain a changed
+     *  constraint or a variable of a removed constraint.
+     */
+    private static List<Inequality> _affected(Inequality[] inequalities,
+            boolean[] changed, List<InequalityTerm> removedVariables)
+            throws IllegalActionException {
+        List<Inequality> affected = new ArrayList<Inequality>();
+        boolean anyChanged = removedVariables != null;
+        for (int i = 0; i < inequalities.length && !anyChanged; i++) {
+            anyChanged = changed[i];
+        }
+        if (!anyChanged) {
+            return affected;
+        }
+
+        _Groups groups = new _Groups();
+        int[] nodes = new int[inequalities.length];
+        for (int i = 0; i < inequalities.length; i++) {
+            nodes[i] = groups.add(inequalities[i]);
+        }
+        boolean[] changedGroups = new boolean[groups.size()];
+        for (int i = 0; i < inequalities.length; i++) {
+            if (changed[i] && nodes[i] >= 0) {
+                changedGroups[groups.find(nodes[i])] = true;
+            }
+        }
+        if (removedVariables != null) {
+            for (InequalityTerm variable : removedVariables) {
+                int node = groups.get(variable);
+                if (node >= 0) {
+                    changedGroups[groups.find(node)] = true;
+                }
+            }
+        }
+        for (int i = 0; i < inequalities.length; i++) {
+            if (nodes[i] >= 0 && changedGroups[groups.find(nodes[i])]) {
+                affected.add(inequalities[i]);
+            }
+        }
+        return affected;
+    }
+
+    /** Return a copy of the value of a term that is not changed when
+     *  the value of the term is updated in place, as structured types
+     *  are.
+     */
+    private static Object _copy(Object value) {
+        if (value instanceof Type) {
+            try {
+                return ((Type) value).clone();
+            } catch (CloneNotSupportedException ex) {
+                return null;
+            }
+        }
+        return value;
+    }
+
+    /** Return true if the value of the term is not equal to the
+     *  previous value.
+     */
+    private static boolean _isChanged(Object previousValue,
+            InequalityTerm term) {
+        if (previousValue == null) {
+            return true;
+        }
+        try {
+            return !previousValue.equals(term.getValue());
+        } catch (IllegalActionException ex) {
+            return true;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The number of resolutions from scratch. */
+    private int _fullResolutionCount;
+
+    /** The number of constraints of the last resolution. */
+    private int _lastConstraintCount;
+
+    /** The time of the last resolution in nanoseconds. */
+    private long _lastResolutionTime;
+
+    /** The number of solved constraints of the last resolution. */
+    private int _lastSolvedConstraintCount;
+
+    /** The number of resolutions. */
+    private int _resolutionCount;
+
+    /** The constraints of the previous resolution, or null if the next
+     *  resolution is from scratch.
+     */
+    private Map<_ConstraintKey, _Record> _records;
+
+    /** The top level of the previous resolution. */
+    private TypedCompositeActor _topLevel;
+
+    /** The total time of the resolutions in nanoseconds. */
+    private long _totalResolutionTime;
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         inner classes                     ////
+
+    /** A key that identifies a constraint across resolutions. */
+    private static class _ConstraintKey {
+        _ConstraintKey(Inequality inequality) {
+            lesser = new _TermKey(inequality.getLesserTerm());
+            greater = new _TermKey(inequality.getGreaterTerm());
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof _ConstraintKey)) {
+                return false;
+            }
+            _ConstraintKey key = (_ConstraintKey) object;
+            return lesser.equals(key.lesser) && greater.equals(key.greater);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * lesser.hashCode() + greater.hashCode();
+        }
+
+        /** Return the variables of both terms. */
+        List<InequalityTerm> variables() {
+            List<InequalityTerm> result = new ArrayList<InequalityTerm>(
+                    Arrays.asList(lesser.variables));
+            result.addAll(Arrays.asList(greater.variables));
+            return result;
+        }
+
+        final _TermKey greater;
+
+        final _TermKey lesser;
+    }
+
+    /** The groups of the constraints, represented by a union-find
+     *  structure over the type variables, the objects that they are
+     *  associated with and their structured types.
+     */
+    private static class _Groups {
+        /** Add the variables of the inequality and return the node of
+         *  its group, or -1 if the inequality has no variables.
+         */
+        int add(Inequality inequality) throws IllegalActionException {
+            int node = -1;
+            node = _add(inequality.getLesserTerm().getVariables(), node);
+            node = _add(inequality.getGreaterTerm().getVariables(), node);
+            return node;
+        }
+
+        /** Return the root of the node. */
+        int find(int node) {
+            while (_parents[node] != node) {
+                _parents[node] = _parents[_parents[node]];
+                node = _parents[node];
+            }
+            return node;
+        }
+
+        /** Return the node of the object, or -1 if it is not in a group. */
+        int get(Object object) {
+            Integer node = _nodes.get(object);
+            return node == null ? -1 : node;
+        }
+
+        /** Return the number of nodes. */
+        int size() {
+            return _nodes.size();
+        }
+
+        /** Add the variables to the group of the node, which may be -1,
+         *  and return the node of the group.
+         */
+        private int _add(InequalityTerm[] variables, int node)
+                throws IllegalActionException {
+            for (InequalityTerm variable : variables) {
+                int variableNode = _node(variable);
+                Object associatedObject = variable.getAssociatedObject();
+                if (associatedObject != null) {
+                    _union(variableNode, _node(associatedObject));
+                }
+                Object value = variable.getValue();
+                if (value instanceof StructuredType) {
+                    // The element types of a structured type are variables
+                    // that are associated with the structured type.
+                    _union(variableNode, _node(value));
+                }
+                if (node < 0) {
+                    node = variableNode;
+                } else {
+                    _union(node, variableNode);
+                }
+            }
+            return node;
+        }
+
+        /** Return the node of the object, adding it if necessary. */
+        private int _node(Object object) {
+            Integer node = _nodes.get(object);
+            if (node == null) {
+                node = _nodes.size();
+                _nodes.put(object, node);
+                if (node == _parents.length) {
+                    _parents = Arrays.copyOf(_parents, 2 * node);
+                }
+                _parents[node] = node;
+            }
+            return node;
+        }
+
+        /** Merge the groups of the two nodes. */
+        private void _union(int node1, int node2) {
+            int root1 = find(node1);
+            int root2 = find(node2);
+            if (root1 != root2) {
+                _parents[root2] = root1;
+            }
+        }
+
+        /** The nodes of the objects. */
+        private IdentityHashMap<Object, Integer> _nodes = new IdentityHashMap<Object, Integer>();
+
+        /** The parent of each node. */
+        private int[] _parents = new int[16];
+    }
+
+    /** A constraint of a resolution and the values of its terms at the
+     *  end of the resolution.
+     */
+    private static class _Record {
+        _Record(_ConstraintKey key) {
+            this.key = key;
+        }
+
+        /** True if another constraint has the same key. */
+        boolean ambiguous;
+
+        /** The value of the greater term. */
+        Object greaterValue;
+
+        final _ConstraintKey key;
+
+        /** The value of the lesser term. */
+        Object lesserValue;
+
+        /** True if the next resolution has a constraint with the key. */
+        boolean matched;
+    }
+
+    /** A key that identifies a term across resolutions.  Type
+     *  constraints are often created with new terms for each
+     *  resolution, so two terms have the same key if they have the
+     *  same class, associated object and variables, and, if they have
+     *  neither an associated object nor variables, the same value.
+     */
+    private static class _TermKey {
+        _TermKey(InequalityTerm term) {
+            _class = term.getClass();
+            _associatedObject = term.getAssociatedObject();
+            variables = term.getVariables();
+            Object value = null;
+            if (_associatedObject == null && variables.length == 0) {
+                try {
+                    value = term.getValue();
+                } catch (IllegalActionException ex) {
+                    value = null;
+                }
+            }
+            _value = value;
+            int hashCode = _class.hashCode();
+            hashCode = 31 * hashCode
+                    + System.identityHashCode(_associatedObject);
+            for (InequalityTerm variable : variables) {
+                hashCode = 31 * hashCode + System.identityHashCode(variable);
+            }
+            if (_value != null) {
+                hashCode = 31 * hashCode + _value.hashCode();
+            }
+            _hashCode = hashCode;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof _TermKey)) {
+                return false;
+            }
+            _TermKey key = (_TermKey) object;
+            if (_hashCode != key._hashCode || _class != key._class
+                    || _associatedObject != key._associatedObject
+                    || variables.length != key.variables.length) {
+                return false;
+            }
+            for (int i = 0; i < variables.length; i++) {
+                if (variables[i] != key.variables[i]) {
+                    return false;
+                }
+            }
+            return _value == null ? key._value == null : _value
+                    .equals(key._value);
+        }
+
+        @Override
+        public int hashCode() {
+            return _hashCode;
+        }
+
+        final InequalityTerm[] variables;
+
+        private final Object _associatedObject;
+
+        private final Class<?> _class;
+
+        private final int _hashCode;
+
+        private final Object _value;
+    }
+}
@@ -31,10 +31,17 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import ptolemy.kernel.ComponentEntity;
 import ptolemy.kernel.ComponentRelation;
@@ -42,6 +49,7 @@ import ptolemy.kernel.CompositeEntity;
 import ptolemy.kernel.Entity;
 import ptolemy.kernel.Port;
 import ptolemy.kernel.util.Attribute;
+import ptolemy.kernel.util.ChangeRequest;
 import ptolemy.kernel.util.IllegalActionException;
 import ptolemy.kernel.util.InternalErrorException;
 import ptolemy.kernel.util.InvalidStateException;
@@ -50,6 +58,7 @@ import ptolemy.kernel.util.NameDuplicationException;
 import ptolemy.kernel.util.NamedObj;
 import ptolemy.kernel.util.Workspace;
 import ptolemy.moml.MoMLParser;
+import ptolemy.util.FileUtilities;
 import ptolemy.util.StringUtilities;
 
 ///////////////////////////////////////////////////////////////////
@@ -134,6 +143,14 @@ import ptolemy.util.StringUtilities;
  you could do that anyway.  An attempt to make such references
  will simply result in the expression failing to evaluate.
 
+ <p>
+ By default, the lazy composites of a model are populated one at a time
+ when preinitialize() reaches them.  To reduce the time it takes to start
+ a run, see populateAll(), which the Manager calls before preinitialize()
+ if setParallelPopulation() has been called, and prefetch(), which
+ the MoML parser calls on the models it parses if setPrefetch() has been
+ called.
+
  <p>
  To convert a preexisting model, see ptolemy.moml.ConvertToLazy.
 
@@ -480,6 +497,24 @@ LazyComposite {
         return super.getRelation(name);
     }
 
+    /** Return true if populateAll() is called by the Manager before
+     *  preinitialize().
+     *  @return True if lazy composites are populated before preinitialize().
+     *  @see #setParallelPopulation(boolean)
+     */
+    public static boolean isParallelPopulation() {
+        return _parallelPopulation;
+    }
+
+    /** Return true if the MoML parser calls prefetch() on the new models
+     *  that it parses.
+     *  @return True if lazy composites are prefetched.
+     *  @see #setPrefetch(boolean)
+     */
+    public static boolean isPrefetching() {
+        return _prefetch;
+    }
+
     /** Return a list that consists of all the atomic entities in a model
      *  that have been already instantiated.
      *  This method differs from {@link #deepEntityList()} in that
@@ -666,10 +701,21 @@ LazyComposite {
      */
     @Override
     public void populate() throws InvalidStateException {
+        boolean gotWriteAccess = false;
         boolean resetPolulatingValue = false;
         try {
+            // Populating modifies the workspace, and another thread,
+            // such as the one started by prefetch(), may be populating
+            // this actor at the same time. Thus, get write access before
+            // examining the state of this actor.  Derived objects and
+            // actors that are already populated do not need it.
+            if (!_configureDone && !_cloning
+                    && getDerivedLevel() == Integer.MAX_VALUE) {
+                workspace().getWriteAccess();
+                gotWriteAccess = true;
+            }
+
             if (_populating) {
-                resetPolulatingValue = true;
                 return;
             }
 
@@ -699,6 +745,7 @@ LazyComposite {
             }
 
             _populating = true;
+            resetPolulatingValue = true;
 
             if (!_configureDone) {
                 // NOTE: If you suspect this is being called prematurely,
@@ -797,10 +844,96 @@ LazyComposite {
             throw new InvalidStateException(this, ex,
                     "Failed to populate contents");
         } finally {
-            _populating = resetPolulatingValue;
+            if (resetPolulatingValue) {
+                _populating = false;
+            }
+            if (gotWriteAccess) {
+                workspace().doneWriting();
+            }
+        }
+    }
+
+    /** Populate the lazy composites contained by the specified container
+     *  and, once they are populated, the lazy composites that they
+     *  contain, until none remains.  The lazy composites are populated
+     *  level by level, and the actors of a level are independent of each
+     *  other.  Before a level is populated, the MoML of its actors,
+     *  including any <i>source</i> files, is read and the Java classes
+     *  that it names are loaded in the threads of a pool.  This does not
+     *  access the model, so it is done concurrently.  The actors of the
+     *  level are then populated one after the other in the calling
+     *  thread, under a single write access to the workspace, because
+     *  a workspace permits only one writer.  If there are fewer than
+     *  two processors, then the classes are loaded while the actors are
+     *  populated, as they would be by populate().
+     *  <p>
+     *  A lazy composite that is derived from a class definition is
+     *  populated by populating the class definition, as in populate().
+     *  @param container The container of the lazy composites.
+     *  @exception InvalidStateException If a lazy composite cannot be
+     *   populated.
+     *  @see #prefetch(NamedObj)
+     */
+    public static void populateAll(CompositeEntity container)
+            throws InvalidStateException {
+        Workspace workspace = container.workspace();
+        Collection<LazyTypedCompositeActor> level = new LinkedHashSet<LazyTypedCompositeActor>();
+        _unpopulatedActors(container, level);
+        while (!level.isEmpty()) {
+            _loadClasses(level);
+            try {
+                workspace.getWriteAccess();
+                for (LazyTypedCompositeActor actor : level) {
+                    actor.populate();
+                }
+            } finally {
+                workspace.doneWriting();
+            }
+            Collection<LazyTypedCompositeActor> next = new LinkedHashSet<LazyTypedCompositeActor>();
+            for (LazyTypedCompositeActor actor : level) {
+                _unpopulatedActors(actor, next);
+            }
+            level = next;
         }
     }
 
+    /** Start populating the lazy composites contained by the specified
+     *  model in a background thread, so that they are populated by the
+     *  time the model is run.  The thread issues a change request
+     *  that calls populateAll(), so if the model is running, they
+     *  are populated between iterations.  Since populate() gets write
+     *  access to the workspace, an actor that is accessed while it is
+     *  populated in the background is waited for, rather than populated
+     *  twice.  Errors are reported to the change listeners of the model,
+     *  and an actor that fails to populate is not populated again.
+     *  If the argument is not a CompositeEntity, then do nothing.
+     *  @param model The model.
+     *  @see #setPrefetch(boolean)
+     */
+    public static void prefetch(final NamedObj model) {
+        if (!(model instanceof CompositeEntity)) {
+            return;
+        }
+        final ChangeRequest request = new ChangeRequest(model,
+                "Populate lazy composites") {
+            @Override
+            protected void _execute() throws Exception {
+                populateAll((CompositeEntity) model);
+            }
+        };
+        // Populating does not modify the model as far as the user is
+        // concerned.
+        request.setPersistent(false);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                model.requestChange(request);
+            }
+        }, "LazyTypedCompositeActor prefetch " + model.getName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     /** List the relations contained by this entity.
      *  The returned list is static in the sense
      *  that it is not affected by any subsequent additions or removals
@@ -843,6 +976,36 @@ LazyComposite {
         }
     }
 
+    /** Specify whether the Manager calls populateAll() on the model
+     *  before preinitialize(), so that the classes that are used by
+     *  independent lazy composites are loaded concurrently, rather than
+     *  populating the lazy composites one at a time as preinitialize()
+     *  reaches them.  The initial value is given by the
+     *  <code>ptolemy.actor.parallelLazyPopulation</code> property, and
+     *  is false if the property is not set.
+     *  @param parallel True to populate lazy composites before
+     *   preinitialize().
+     *  @see #isParallelPopulation()
+     */
+    public static void setParallelPopulation(boolean parallel) {
+        _parallelPopulation = parallel;
+    }
+
+    /** Specify whether the MoML parser calls prefetch() on each new
+     *  model that it parses, other than class definitions, so that its
+     *  lazy composites are populated in the background after the model
+     *  is opened.  This reduces the time it takes to start running the
+     *  model, at the cost of populating lazy composites that may only
+     *  be browsed.  The initial value is given by the
+     *  <code>ptolemy.actor.prefetchLazyComposites</code> property, and
+     *  is false if the property is not set.
+     *  @param prefetch True to prefetch lazy composites.
+     *  @see #isPrefetching()
+     */
+    public static void setPrefetch(boolean prefetch) {
+        _prefetch = prefetch;
+    }
+
     /** Return a name that is guaranteed to not be the name of
      *  any contained attribute, port, class, entity, or relation.
      *  In this implementation, the argument
@@ -871,6 +1034,35 @@ LazyComposite {
         return super.uniqueName(prefix);
     }
 
+    /** Return an unmodifiable list of the opaque entities that are
+     *  directly or indirectly contained by this entity.  This overrides
+     *  the base class to first populate the actor, if necessary, by
+     *  calling populate().  Note that this may result in a runtime
+     *  exception being thrown (if there is an error evaluating the MoML).
+     *  This method is read-synchronized on the workspace.
+     *  @return An unmodifiable list of opaque ComponentEntity objects.
+     */
+    @Override
+    public List unmodifiableDeepEntityList() {
+        populate();
+        return super.unmodifiableDeepEntityList();
+    }
+
+    /** Return an unmodifiable list of the opaque entities that are
+     *  directly or indirectly contained by this entity, not including
+     *  class definitions.  This overrides the base class to first
+     *  populate the actor, if necessary, by calling populate().
+     *  Note that this may result in a runtime exception being thrown
+     *  (if there is an error evaluating the MoML).
+     *  This method is read-synchronized on the workspace.
+     *  @return An unmodifiable list of opaque ComponentEntity objects.
+     */
+    @Override
+    public List unmodifiableDeepOpaqueEntityList() {
+        populate();
+        return super.unmodifiableDeepOpaqueEntityList();
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////                         protected methods                 ////
 
@@ -1056,6 +1248,123 @@ LazyComposite {
     /** Indicator that we are in the midst of populating. */
     protected boolean _populating = false;
 
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Read the MoML of the specified actors and load the Java classes
+     *  that it names in the threads of a pool, and return when they are
+     *  loaded.  The classes are not initialized, so static initializers
+     *  are run in the thread that populates the actors.  Names that are
+     *  not Java classes and MoML that cannot be read are ignored here,
+     *  and reported when the actors are populated.
+     */
+    private static void _loadClasses(Collection<LazyTypedCompositeActor> actors) {
+        if (_LOADING_THREADS < 2) {
+            return;
+        }
+        final ClassLoader loader = MoMLParser.class.getClassLoader();
+        List<Callable<Object>> tasks = new LinkedList<Callable<Object>>();
+        for (LazyTypedCompositeActor actor : actors) {
+            // Read the fields here rather than in the pool.
+            final URL base = actor._base;
+            final String source = actor._configureSource;
+            final String text = actor._configureText;
+            tasks.add(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    if (text != null) {
+                        _loadClasses(text, loader);
+                    }
+                    if (source != null && !source.equals("")) {
+                        try {
+                            URL url = new URL(base, source);
+                            _loadClasses(new String(FileUtilities
+                                    .binaryReadURLToByteArray(url), Charset
+                                    .defaultCharset()), loader);
+                        } catch (IOException ex) {
+                            // Reported by populate().
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        synchronized (LazyTypedCompositeActor.class) {
+            if (_loader == null) {
+                _loader = Executors.newFixedThreadPool(_LOADING_THREADS,
+                        new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable,
+                                "LazyTypedCompositeActor class loader");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+        }
+        try {
+            _loader.invokeAll(tasks);
+        } catch (InterruptedException ex) {
+            // The classes will be loaded when the actors are populated.
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Load the Java classes named by the class attributes of the
+     *  specified MoML with the specified class loader.
+     */
+    private static void _loadClasses(String moml, ClassLoader loader) {
+        int index = moml.indexOf(" class=\"");
+        while (index >= 0) {
+            int start = index + 8;
+            int end = moml.indexOf('"', start);
+            if (end < 0) {
+                break;
+            }
+            try {
+                Class.forName(moml.substring(start, end), false, loader);
+            } catch (Throwable throwable) {
+                // Not a Java class, such as a MoML class.
+            }
+            index = moml.indexOf(" class=\"", end);
+        }
+    }
+
+    /** Add to the specified collection the lazy composites in the
+     *  specified container that are not populated and that can be
+     *  found without populating any, that is, that are not contained
+     *  by lazy composites that are not populated.  For a lazy composite
+     *  that is derived from a class definition, add the actor in the
+     *  class definition that it delegates to.
+     */
+    private static void _unpopulatedActors(CompositeEntity container,
+            Collection<LazyTypedCompositeActor> result) {
+        for (Object entity : container.lazyEntityList()) {
+            if (entity instanceof LazyTypedCompositeActor) {
+                LazyTypedCompositeActor actor = (LazyTypedCompositeActor) entity;
+                if (actor.getDerivedLevel() != Integer.MAX_VALUE) {
+                    try {
+                        List prototypes = actor.getPrototypeList();
+                        if (prototypes != null && prototypes.size() > 0) {
+                            actor = (LazyTypedCompositeActor) prototypes
+                                    .get(prototypes.size() - 1);
+                        }
+                    } catch (IllegalActionException ex) {
+                        // Reported by populate().
+                    }
+                }
+                if (!actor._configureDone) {
+                    result.add(actor);
+                    continue;
+                }
+            }
+            if (entity instanceof CompositeEntity) {
+                _unpopulatedActors((CompositeEntity) entity, result);
+            }
+        }
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////                         private variables                 ////
 
@@ -1071,6 +1380,24 @@ LazyComposite {
     /** Text specified to the configure() method. */
     private String _configureText;
 
+    /** The threads that load the classes used by lazy composites. */
+    private static ExecutorService _loader;
+
+    /** The number of threads that load the classes used by lazy
+     *  composites.
+     */
+    private static final int _LOADING_THREADS = Math.min(4, Runtime
+            .getRuntime().availableProcessors() - 1);
+
+    /** True if the Manager calls populateAll() before preinitialize(). */
+    private static boolean _parallelPopulation = Boolean
+            .parseBoolean(StringUtilities
+                    .getProperty("ptolemy.actor.parallelLazyPopulation"));
+
+    /** True if the MoML parser calls prefetch() on new models. */
+    private static boolean _prefetch = Boolean.parseBoolean(StringUtilities
+            .getProperty("ptolemy.actor.prefetchLazyComposites"));
+
     ///////////////////////////////////////////////////////////////////
     ////                         inner classes                     ////
 
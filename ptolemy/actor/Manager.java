@@ -40,6 +40,7 @@ import java.util.ListIterator;
 import java.util.Map;
 import java.util.WeakHashMap;
 
+import ptolemy.data.expr.SettableValidator;
 import ptolemy.kernel.ComponentEntity;
 import ptolemy.kernel.CompositeEntity;
 import ptolemy.kernel.util.ExceptionHandler;
@@ -626,6 +627,16 @@ public class Manager extends NamedObj implements Runnable {
         return _state;
     }
 
+    /** Return the resolver that resolves the types of the model
+     *  incrementally during an execution, which also keeps the
+     *  statistics of the type resolutions of the execution.
+     *  @return The type resolver, or null if no execution has been
+     *   preinitialized.
+     */
+    public IncrementalTypeResolver getTypeResolver() {
+        return _typeResolver;
+    }
+
     /** Return any messages, such as the amount of time consumed.
      *  This method is called to update the status bar, so the
      *  output should be short.
@@ -991,6 +1002,7 @@ public class Manager extends NamedObj implements Runnable {
             _exitAfterWrapup = false;
             _pauseRequested = false;
             _typesResolved = false;
+            _typeResolver = new IncrementalTypeResolver();
             _iterationCount = 0;
             _executionIdentifier = null;
 
@@ -1010,6 +1022,20 @@ public class Manager extends NamedObj implements Runnable {
             // it would seem counterintuitive to have to do so.
             // _container.validateSettables();
 
+            // If the evaluation of parameters was deferred when the model
+            // was parsed, then validate them now, and execute the change
+            // requests that their containers made, such as the creation
+            // of a director, before preinitialize().
+            if (SettableValidator.validateDeferred(_container.get())) {
+                executeChangeRequests();
+            }
+
+            // Populate the lazy composites before preinitialize() reaches
+            // them one at a time.
+            if (LazyTypedCompositeActor.isParallelPopulation()) {
+                LazyTypedCompositeActor.populateAll(_container.get());
+            }
+
             // Clear the preinitialization analyses... Ensure that
             // We get current analysis.
             if (_nameToAnalysis != null) {
@@ -1183,7 +1209,9 @@ public class Manager extends NamedObj implements Runnable {
 
     /** Check types on all the connections and resolve undeclared types.
      *  If the container is not an instance of TypedCompositeActor,
-     *  do nothing.
+     *  do nothing.  After preinitialization, only the type constraints
+     *  that are affected by the changes since the previous type
+     *  resolution of the execution are solved.
      *  Set the Manager's state to RESOLVING_TYPES.
      *  This method is write-synchronized on the workspace.
      *  @exception TypeConflictException If a type conflict is detected.
@@ -1197,7 +1225,13 @@ public class Manager extends NamedObj implements Runnable {
             _workspace.getReadAccess();
             _setState(RESOLVING_TYPES);
 
-            TypedCompositeActor.resolveTypes((TypedCompositeActor) _container.get());
+            if (_typeResolver == null) {
+                TypedCompositeActor
+                .resolveTypes((TypedCompositeActor) _container.get());
+            } else {
+                _typeResolver
+                .resolveTypes((TypedCompositeActor) _container.get());
+            }
         } finally {
             _workspace.doneReading();
         }
@@ -1500,6 +1534,11 @@ public class Manager extends NamedObj implements Runnable {
         // Wrap up the topology
         _container.get().wrapup();
 
+        // Release the type constraints, but keep the statistics.
+        if (_typeResolver != null) {
+            _typeResolver.invalidate();
+        }
+
         // Process all change requests. If the model reaches this wrap up
         // state due to the occurrence of an exception during execution,
         // some change requests may be pending. If these requests
@@ -1780,6 +1819,9 @@ public class Manager extends NamedObj implements Runnable {
     // a WeakHashMap so that execution identifiers can be garbage collected.
     private Map<Throwable, Object> _throwableToExecutionIdentifier = new WeakHashMap<Throwable, Object>();
 
+    // The resolver of the types during an execution.
+    private IncrementalTypeResolver _typeResolver;
+
     // An indicator of whether type resolution needs to be done.
     private boolean _typesResolved = false;
     
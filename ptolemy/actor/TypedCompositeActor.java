@@ -28,6 +28,7 @@
  */
 package ptolemy.actor;
 
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -43,8 +44,8 @@ import ptolemy.data.type.TypeLattice;
 import ptolemy.data.type.Typeable;
 import ptolemy.graph.CPO;
 import ptolemy.graph.Inequality;
-import ptolemy.graph.InequalitySolver;
 import ptolemy.graph.InequalityTerm;
+import ptolemy.graph.WorklistInequalitySolver;
 import ptolemy.kernel.ComponentEntity;
 import ptolemy.kernel.ComponentRelation;
 import ptolemy.kernel.CompositeEntity;
@@ -317,111 +318,7 @@ public class TypedCompositeActor extends CompositeActor implements TypedActor {
      */
     public static void resolveTypes(TypedCompositeActor topLevel)
             throws TypeConflictException {
-        if (topLevel.getContainer() != null) {
-            throw new IllegalArgumentException(
-                    "TypedCompositeActor.resolveTypes: The specified actor is "
-                            + "not the top level container.");
-        }
-
-        try {
-            List<Inequality> conflicts = new LinkedList<Inequality>();
-            List<InequalityTerm> unacceptable = new LinkedList<InequalityTerm>();
-
-            // Check declared types across all connections.
-            List<Inequality> typeConflicts = topLevel._checkDeclaredTypes();
-            conflicts.addAll(typeConflicts);
-
-            // Collect and solve type constraints.
-            Set<Inequality> constraintList = topLevel.typeConstraints();
-
-            // NOTE: To view all type constraints, uncomment these.
-
-            /*
-            Iterator constraintsIterator = constraintList.iterator();
-            while (constraintsIterator.hasNext()) {
-                System.out.println(constraintsIterator.next().toString());
-            }
-             */
-
-            if (constraintList.size() > 0) {
-                CPO cpo = TypeLattice.lattice();
-                InequalitySolver solver = new InequalitySolver(cpo);
-                Iterator<Inequality> constraints = constraintList.iterator();
-
-                solver.addInequalities(constraints);
-
-                try {
-                    // Find the least solution (most specific types)
-                    solver.solveLeast();
-                } catch (InvalidStateException ex) {
-                    throw new InvalidStateException(topLevel, ex,
-                            "Invalid state in type system. The basic type lattice was: "
-                                    + TypeLattice.basicLattice());
-                }
-
-                // If some inequalities are not satisfied, or type variables
-                // are resolved to unacceptable types, such as
-                // BaseType.UNKNOWN, add the inequalities to the list of type
-                // conflicts.
-                Iterator<Inequality> inequalities = constraintList.iterator();
-
-                while (inequalities.hasNext()) {
-                    Inequality inequality = inequalities.next();
-
-                    if (!inequality.isSatisfied(TypeLattice.lattice())) {
-                        conflicts.add(inequality);
-                    } else {
-                        // Check if type variables are resolved to unacceptable
-                        //types
-                        InequalityTerm[] lesserVariables = inequality
-                                .getLesserTerm().getVariables();
-                        InequalityTerm[] greaterVariables = inequality
-                                .getGreaterTerm().getVariables();
-                        boolean added = false;
-
-                        for (InequalityTerm lesserVariable : lesserVariables) {
-                            InequalityTerm variable = lesserVariable;
-
-                            if (!variable.isValueAcceptable()) {
-                                unacceptable.add(variable);
-                                added = true;
-                                break;
-                            }
-                        }
-
-                        if (added == false) {
-                            for (InequalityTerm greaterVariable : greaterVariables) {
-                                InequalityTerm variable = greaterVariable;
-
-                                if (!variable.isValueAcceptable()) {
-                                    unacceptable.add(variable);
-                                    break;
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-
-            if (conflicts.size() > 0) {
-                throw new TypeConflictException(conflicts,
-                        "Type conflicts occurred in " + topLevel.getFullName()
-                        + " on the following inequalities:");
-            }
-            if (unacceptable.size() > 0) {
-                throw new TypeConflictException(unacceptable,
-                        "Types resolved to unacceptable types in "
-                                + topLevel.getFullName()
-                                + " due to the following objects:");
-            }
-        } catch (IllegalActionException ex) {
-            // This should not happen. The exception means that
-            // _checkDeclaredType or typeConstraints is called on a
-            // transparent actor.
-            throw new InternalErrorException(topLevel, ex,
-                    "Type resolution failed because of an error "
-                            + "during type inference");
-        }
+        _resolveTypes(topLevel, null);
     }
 
     /** Return the type constraints of this typed composite actor.
@@ -455,7 +352,7 @@ public class TypedCompositeActor extends CompositeActor implements TypedActor {
             Set<Inequality> result = new HashSet<Inequality>();
 
             if (isOpaque()) {
-                Iterator<ComponentEntity> entities = deepEntityList()
+                Iterator<?> entities = unmodifiableDeepEntityList()
                         .iterator();
 
                 while (entities.hasNext()) {
@@ -733,6 +630,117 @@ public class TypedCompositeActor extends CompositeActor implements TypedActor {
         return result;
     }
 
+    ///////////////////////////////////////////////////////////////////
+    ////                         package friendly methods          ////
+
+    /** Do type checking and type resolution on the specified composite actor.
+     *  The specified actor must be the top level container of the model.
+     *  If the resolver is not null, then it solves the type constraints,
+     *  otherwise all of them are solved from scratch.
+     *  @param topLevel The top level TypedCompositeActor.
+     *  @param resolver The incremental type resolver, or null.
+     *  @exception IllegalArgumentException If the specified actor is not the
+     *   top level container. That is, its container is not null.
+     *  @exception TypeConflictException If a type conflict is detected.
+     */
+    static void _resolveTypes(TypedCompositeActor topLevel,
+            IncrementalTypeResolver resolver) throws TypeConflictException {
+        if (topLevel.getContainer() != null) {
+            throw new IllegalArgumentException(
+                    "TypedCompositeActor.resolveTypes: The specified actor is "
+                            + "not the top level container.");
+        }
+
+        try {
+            List<Inequality> conflicts = new LinkedList<Inequality>();
+            List<InequalityTerm> unacceptable = new LinkedList<InequalityTerm>();
+
+            // Check declared types across all connections.
+            List<Inequality> typeConflicts = topLevel._checkDeclaredTypes();
+            conflicts.addAll(typeConflicts);
+
+            // Collect and solve type constraints.
+            Set<Inequality> constraintList = topLevel.typeConstraints();
+
+            // NOTE: To view all type constraints, uncomment these.
+
+            /*
+            Iterator constraintsIterator = constraintList.iterator();
+            while (constraintsIterator.hasNext()) {
+                System.out.println(constraintsIterator.next().toString());
+            }
+             */
+
+            boolean partial = false;
+            if (resolver != null) {
+                // Solve only the constraints that are affected by the
+                // changes since the previous resolution.
+                partial = resolver._solve(topLevel, constraintList);
+            } else if (constraintList.size() > 0) {
+                _solveLeast(topLevel, constraintList);
+            }
+
+            List<Inequality> unsatisfied = new LinkedList<Inequality>();
+            _checkTypeConstraints(constraintList, unsatisfied, unacceptable);
+            if (partial && (unsatisfied.size() > 0 || unacceptable.size() > 0)) {
+                // The changes had an effect outside of the constraints
+                // that were solved, so solve all the constraints.
+                resolver.invalidate();
+                resolver._solve(topLevel, constraintList);
+                unsatisfied.clear();
+                unacceptable.clear();
+                _checkTypeConstraints(constraintList, unsatisfied,
+                        unacceptable);
+            }
+            conflicts.addAll(unsatisfied);
+
+            if (resolver != null
+                    && (conflicts.size() > 0 || unacceptable.size() > 0)) {
+                resolver.invalidate();
+            }
+            if (conflicts.size() > 0) {
+                throw new TypeConflictException(conflicts,
+                        "Type conflicts occurred in " + topLevel.getFullName()
+                        + " on the following inequalities:");
+            }
+            if (unacceptable.size() > 0) {
+                throw new TypeConflictException(unacceptable,
+                        "Types resolved to unacceptable types in "
+                                + topLevel.getFullName()
+                                + " due to the following objects:");
+            }
+        } catch (IllegalActionException ex) {
+            // This should not happen. The exception means that
+            // _checkDeclaredType or typeConstraints is called on a
+            // transparent actor.
+            throw new InternalErrorException(topLevel, ex,
+                    "Type resolution failed because of an error "
+                            + "during type inference");
+        }
+    }
+
+    /** Find the least solution of the specified type constraints.
+     *  @param topLevel The top level TypedCompositeActor, which is used
+     *   in error messages.
+     *  @param constraints The type constraints.
+     *  @exception IllegalActionException If the solver throws it.
+     */
+    static void _solveLeast(TypedCompositeActor topLevel,
+            Collection<Inequality> constraints) throws IllegalActionException {
+        CPO cpo = TypeLattice.lattice();
+        WorklistInequalitySolver solver = new WorklistInequalitySolver(cpo);
+        solver.addInequalities(constraints.iterator());
+
+        try {
+            // Find the least solution (most specific types)
+            solver.solveLeast();
+        } catch (InvalidStateException ex) {
+            throw new InvalidStateException(topLevel, ex,
+                    "Invalid state in type system. The basic type lattice was: "
+                            + TypeLattice.basicLattice());
+        }
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////                         private methods                   ////
 
@@ -762,7 +770,7 @@ public class TypedCompositeActor extends CompositeActor implements TypedActor {
 
         List<Inequality> result = new LinkedList<Inequality>();
 
-        Iterator entities = deepEntityList().iterator();
+        Iterator entities = unmodifiableDeepEntityList().iterator();
 
         while (entities.hasNext()) {
             // Check types on contained actors.
@@ -801,6 +809,57 @@ public class TypedCompositeActor extends CompositeActor implements TypedActor {
         return result;
     }
 
+    // Add the type constraints that are not satisfied to the list of
+    // conflicts, and the type variables of the satisfied constraints
+    // that are resolved to unacceptable types to the list of
+    // unacceptable terms.
+    private static void _checkTypeConstraints(Set<Inequality> constraints,
+            List<Inequality> conflicts, List<InequalityTerm> unacceptable)
+            throws IllegalActionException {
+        // If some inequalities are not satisfied, or type variables
+        // are resolved to unacceptable types, such as
+        // BaseType.UNKNOWN, add the inequalities to the list of type
+        // conflicts.
+        Iterator<Inequality> inequalities = constraints.iterator();
+
+        while (inequalities.hasNext()) {
+            Inequality inequality = inequalities.next();
+
+            if (!inequality.isSatisfied(TypeLattice.lattice())) {
+                conflicts.add(inequality);
+            } else {
+                // Check if type variables are resolved to unacceptable
+                //types
+                InequalityTerm[] lesserVariables = inequality
+                        .getLesserTerm().getVariables();
+                InequalityTerm[] greaterVariables = inequality
+                        .getGreaterTerm().getVariables();
+                boolean added = false;
+
+                for (InequalityTerm lesserVariable : lesserVariables) {
+                    InequalityTerm variable = lesserVariable;
+
+                    if (!variable.isValueAcceptable()) {
+                        unacceptable.add(variable);
+                        added = true;
+                        break;
+                    }
+                }
+
+                if (added == false) {
+                    for (InequalityTerm greaterVariable : greaterVariables) {
+                        InequalityTerm variable = greaterVariable;
+
+                        if (!variable.isValueAcceptable()) {
+                            unacceptable.add(variable);
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
     // Return all the ports containing the specified receivers.
     private List _receiverToPort(Receiver[][] receivers) {
         List result = new LinkedList();
@@ -27,6 +27,9 @@
 package ptolemy.actor.lib;
 
 import ptolemy.data.ArrayToken;
+import ptolemy.data.DoubleArrayToken;
+import ptolemy.data.DoubleToken;
+import ptolemy.data.IntArrayToken;
 import ptolemy.data.IntToken;
 import ptolemy.data.Token;
 import ptolemy.data.type.ArrayType;
@@ -108,6 +111,28 @@ public class ArrayAverage extends Transformer {
                 return;
             }
 
+            // Arrays of doubles and ints can be summed without creating
+            // a token for each element.
+            if (token instanceof DoubleArrayToken) {
+                DoubleArrayToken doubleArray = (DoubleArrayToken) token;
+                int length = doubleArray.length();
+                double sum = doubleArray.getDoubleElement(0);
+                for (int i = 1; i < length; i++) {
+                    sum += doubleArray.getDoubleElement(i);
+                }
+                output.send(0, new DoubleToken(sum / length));
+                return;
+            } else if (token instanceof IntArrayToken) {
+                IntArrayToken intArray = (IntArrayToken) token;
+                int length = intArray.length();
+                int sum = intArray.getIntElement(0);
+                for (int i = 1; i < length; i++) {
+                    sum += intArray.getIntElement(i);
+                }
+                output.send(0, new IntToken(sum / length));
+                return;
+            }
+
             Token sum = token.getElement(0);
 
             for (int i = 1; i < token.length(); i++) {
@@ -41,9 +41,10 @@ import ptolemy.data.DoubleToken;
 import ptolemy.data.IntToken;
 import ptolemy.data.Token;
 import ptolemy.data.expr.ASTPtRootNode;
+import ptolemy.data.expr.CompiledExpression;
 import ptolemy.data.expr.ModelScope;
 import ptolemy.data.expr.Parameter;
-import ptolemy.data.expr.ParseTreeEvaluator;
+import ptolemy.data.expr.ParseTreeCompiler;
 import ptolemy.data.expr.ParseTreeFreeVariableCollector;
 import ptolemy.data.expr.ParseTreeTypeInference;
 import ptolemy.data.expr.PtParser;
@@ -104,6 +105,12 @@ import ptolemy.kernel.util.Workspace;
  <p> This actor requires its all of its inputs to be present.  If
  inputs are not all present, then an exception will be thrown.</p>
 
+ <p> If the expression only operates on ints, doubles and booleans,
+ then it is compiled by a {@link ParseTreeCompiler} into code that
+ does not create a token for each intermediate result.  It is compiled
+ again if the type of an input or parameter that it refers to
+ changes.</p>
+
  <p> NOTE: There are a number of limitations in the current
  implementation.  Primarily, multiports are not supported.</p>
 
@@ -163,6 +170,7 @@ public class Expression extends TypedAtomicActor {
             throws IllegalActionException {
         if (attribute == expression) {
             _parseTree = null;
+            _compiledExpression = null;
         }
     }
 
@@ -176,9 +184,10 @@ public class Expression extends TypedAtomicActor {
     @Override
     public Object clone(Workspace workspace) throws CloneNotSupportedException {
         Expression newObject = (Expression) super.clone(workspace);
+        newObject._compiledExpression = null;
         newObject._iterationCount = 1;
         newObject._parseTree = null;
-        newObject._parseTreeEvaluator = null;
+        newObject._parseTreeCompiler = null;
         newObject._scope = null;
         newObject._setOutputTypeConstraint();
         newObject._tokenMap = null;
@@ -223,15 +232,27 @@ public class Expression extends TypedAtomicActor {
                         .getExpression());
             }
 
-            if (_parseTreeEvaluator == null) {
-                _parseTreeEvaluator = new ParseTreeEvaluator();
-            }
-
             if (_scope == null) {
                 _scope = new VariableScope();
             }
 
-            _result = _parseTreeEvaluator.evaluateParseTree(_parseTree, _scope);
+            // Compile the parse tree the first time, and again if the
+            // types of the inputs or parameters that it refers to have
+            // changed, which can only happen if the workspace has
+            // changed.
+            long version = workspace().getVersion();
+            if (_compiledExpression == null
+                    || version != _compiledVersion
+                    && !_compiledExpression.isValid(_scope)) {
+                if (_parseTreeCompiler == null) {
+                    _parseTreeCompiler = new ParseTreeCompiler();
+                }
+                _compiledExpression = _parseTreeCompiler.compileParseTree(
+                        _parseTree, _scope);
+            }
+            _compiledVersion = version;
+
+            _result = _compiledExpression.evaluate(_scope);
         } catch (Throwable throwable) {
             // Chain exceptions to get the actor that threw the exception.
             // Note that if evaluateParseTree does a divide by zero, we
@@ -551,11 +572,15 @@ public class Expression extends TypedAtomicActor {
 
     ///////////////////////////////////////////////////////////////////
     ////                         private variables                 ////
+    private CompiledExpression _compiledExpression = null;
+
+    private long _compiledVersion = -1L;
+
     private int _iterationCount = 1;
 
     private ASTPtRootNode _parseTree = null;
 
-    private ParseTreeEvaluator _parseTreeEvaluator = null;
+    private ParseTreeCompiler _parseTreeCompiler = null;
 
     private VariableScope _scope = null;
 }
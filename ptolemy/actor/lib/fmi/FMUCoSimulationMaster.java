@@ -0,0 +1,340 @@
+/* An attribute that steps co-simulation FMUs concurrently.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.actor.lib.fmi;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import ptolemy.actor.AbstractInitializableAttribute;
+import ptolemy.actor.Director;
+import ptolemy.actor.util.Time;
+import ptolemy.data.IntToken;
+import ptolemy.data.expr.Parameter;
+import ptolemy.data.type.BaseType;
+import ptolemy.kernel.util.IllegalActionException;
+import ptolemy.kernel.util.NameDuplicationException;
+import ptolemy.kernel.util.NamedObj;
+import ptolemy.kernel.util.Workspace;
+
+///////////////////////////////////////////////////////////////////
+//// FMUCoSimulationMaster
+
+/**
+ An attribute that makes the co-simulation FMUs of the composite actor
+ that contains it advance concurrently.
+
+ <p>Between two communication points, the fmiDoStep() calls of
+ co-simulation FMUs are independent: each FMU advances with the inputs
+ that were set the last time it was fired.  When this attribute is
+ present, the {@link FMUImport} actors for co-simulation FMUs that are
+ deeply contained by its container register with it during
+ preinitialize().  When the first of them is fired at a new time or
+ microstep, all the registered FMUs that have the same director are
+ advanced to that time on a pool of threads, and each FMU then uses
+ the result of its own fmiDoStep() when it is fired.  This is suited
+ to directors that fire every actor at each time, such as the
+ ContinuousDirector and the SDFDirector.  With the DEDirector, an FMU
+ that is not fired at a time is nevertheless advanced to it, which
+ adds a communication point but does not change its inputs.</p>
+
+ <p>Step rejection and rollback are handled per FMU as without this
+ attribute.  If an FMU discards a step, it suggests a refined step size
+ when it is fired, and the director rejects the step for all the
+ actors.  When the director then fires the FMUs at an earlier time,
+ each FMU restores its committed state before advancing again.  If an
+ FMU fails, the exception is thrown when that FMU is fired.</p>
+
+ <p>The FMI standard requires that separate instances of an FMU may be
+ used from different threads, but not that a single instance is
+ thread safe.  Each instance is advanced by one thread at a time.</p>
+
+ <p>The time spent in fmiDoStep() is measured for each FMU.  The
+ number of steps and the total step time of each FMU are returned by
+ {@link #getStepTimes()}, and they are reported to the debug listeners
+ of this attribute, together with the average step time, when the
+ model wraps up.</p>
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class FMUCoSimulationMaster extends AbstractInitializableAttribute {
+
+    /** Construct an attribute with the given name contained by the
+     *  specified container.
+     *  @param container The container.
+     *  @param name The name of this attribute.
+     *  @exception IllegalActionException If the attribute is not of an
+     *   acceptable class for the container, or if the name contains a period.
+     *  @exception NameDuplicationException If the name coincides with
+     *   an attribute already in the container.
+     */
+    public FMUCoSimulationMaster(NamedObj container, String name)
+            throws IllegalActionException, NameDuplicationException {
+        super(container, name);
+
+        threads = new Parameter(this, "threads");
+        threads.setTypeEquals(BaseType.INT);
+        threads.setExpression("0");
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                     ports and parameters                  ////
+
+    /** The number of threads that advance the FMUs. If the value is
+     *  0, then the number of available processors is used, and if it
+     *  is 1, then the FMUs are advanced by the thread that fires them,
+     *  one at a time, which can be used to measure the step times
+     *  without concurrency. This is an integer that defaults to 0.
+     */
+    public Parameter threads;
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Clone the attribute into the specified workspace.
+     *  @param workspace The workspace for the new object.
+     *  @return A new attribute.
+     *  @exception CloneNotSupportedException If a derived class contains
+     *   an attribute that cannot be cloned.
+     */
+    @Override
+    public Object clone(Workspace workspace) throws CloneNotSupportedException {
+        FMUCoSimulationMaster newObject = (FMUCoSimulationMaster) super
+                .clone(workspace);
+        newObject._pool = null;
+        newObject._steps = new LinkedHashMap<FMUImport, Step>();
+        return newObject;
+    }
+
+    /** Return the step times of the FMUs that are registered with this
+     *  attribute.  For each FMU, the returned array contains the number
+     *  of calls to fmiDoStep() and the total time of these calls in
+     *  nanoseconds.
+     *  @return A map from the FMUs to their step counts and times.
+     */
+    public synchronized Map<FMUImport, long[]> getStepTimes() {
+        Map<FMUImport, long[]> result = new LinkedHashMap<FMUImport, long[]>();
+        for (Map.Entry<FMUImport, Step> entry : _steps.entrySet()) {
+            result.put(entry.getKey(), new long[] { entry.getValue().count,
+                    entry.getValue().nanoseconds });
+        }
+        return result;
+    }
+
+    /** Forget the FMUs that were registered during the previous
+     *  execution and create the pool of threads.
+     *  @exception IllegalActionException If the parameters cannot be
+     *   evaluated.
+     */
+    @Override
+    public void preinitialize() throws IllegalActionException {
+        super.preinitialize();
+        synchronized (this) {
+            _steps.clear();
+        }
+        int threadCount = ((IntToken) threads.getToken()).intValue();
+        if (threadCount <= 0) {
+            threadCount = Runtime.getRuntime().availableProcessors();
+        }
+        if (_pool != null) {
+            _pool.shutdown();
+            _pool = null;
+        }
+        if (threadCount > 1) {
+            _pool = new ForkJoinPool(threadCount);
+        }
+    }
+
+    /** Report the step times to the debug listeners, if there are
+     *  any, and shut down the pool of threads.
+     *  @exception IllegalActionException If the superclass throws it.
+     */
+    @Override
+    public void wrapup() throws IllegalActionException {
+        try {
+            if (_debugging) {
+                _debug("FMU\tsteps\ttotal step time (ms)"
+                        + "\taverage step time (us)");
+                for (Map.Entry<FMUImport, long[]> entry : getStepTimes()
+                        .entrySet()) {
+                    long[] times = entry.getValue();
+                    _debug(entry.getKey().getFullName() + "\t" + times[0]
+                            + "\t" + times[1] * 1.0e-6 + "\t"
+                            + times[1] * 1.0e-3 / Math.max(1, times[0]));
+                }
+            }
+        } finally {
+            if (_pool != null) {
+                _pool.shutdown();
+                _pool = null;
+            }
+            super.wrapup();
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                   package friendly methods                ////
+
+    /** Advance the specified FMU to the specified time and microstep.
+     *  If the FMUs that have the same director as the specified FMU
+     *  have not yet been advanced to this time and microstep, then
+     *  advance all of them concurrently.
+     *  @param fmu The FMU that is being fired.
+     *  @param time The time.
+     *  @param microstep The microstep.
+     *  @return The result of {@link FMUImport#_fmiDoStep(Time, int)}
+     *   for the specified FMU.
+     *  @exception IllegalActionException If the FMU could not be advanced.
+     */
+    synchronized double doStep(FMUImport fmu, Time time, int microstep)
+            throws IllegalActionException {
+        Step step = _steps.get(fmu);
+        if (step == null) {
+            step = new Step(fmu);
+            _steps.put(fmu, step);
+        }
+        boolean sameTag = step.time != null && step.microstep == microstep
+                && step.time.compareTo(time) == 0;
+        if (!step.pending && sameTag) {
+            // The FMU is fired again at the same time and microstep,
+            // so fmiDoStep() is not called.
+            return fmu._fmiDoStep(time, microstep);
+        }
+        if (!step.pending || !sameTag) {
+            // Advance all the FMUs under the same director.
+            Director director = fmu.getDirector();
+            List<Step> batch = new ArrayList<Step>();
+            for (Step other : _steps.values()) {
+                if (other == step || _pool != null
+                        && other.fmu.getDirector() == director) {
+                    other.pending = true;
+                    other.time = time;
+                    other.microstep = microstep;
+                    other.failure = null;
+                    other.result = -1.0;
+                    batch.add(other);
+                }
+            }
+            if (batch.size() > 1) {
+                _pool.invokeAll(batch);
+            } else {
+                step.call();
+            }
+        }
+        step.pending = false;
+        if (step.failure instanceof IllegalActionException) {
+            throw (IllegalActionException) step.failure;
+        } else if (step.failure instanceof RuntimeException) {
+            throw (RuntimeException) step.failure;
+        } else if (step.failure instanceof Error) {
+            throw (Error) step.failure;
+        } else if (step.failure != null) {
+            throw new IllegalActionException(fmu, step.failure,
+                    "Failed to advance the FMU.");
+        }
+        return step.result;
+    }
+
+    /** Register an FMU to be advanced by this attribute.
+     *  @param fmu The FMU.
+     */
+    synchronized void register(FMUImport fmu) {
+        if (!_steps.containsKey(fmu)) {
+            _steps.put(fmu, new Step(fmu));
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The pool of threads, or null if the FMUs are advanced
+     *  one at a time.
+     */
+    private ForkJoinPool _pool;
+
+    /** The steps of the registered FMUs, in the order of registration. */
+    private Map<FMUImport, Step> _steps = new LinkedHashMap<FMUImport, Step>();
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         inner classes                     ////
+
+    /** The advance of one FMU to a time and microstep. */
+    private static class Step implements Callable<Object> {
+        Step(FMUImport fmu) {
+            this.fmu = fmu;
+        }
+
+        /** Advance the FMU, recording the result or the failure
+         *  and the time that it took.
+         *  @return null.
+         */
+        @Override
+        public Object call() {
+            long start = System.nanoTime();
+            try {
+                result = fmu._fmiDoStep(time, microstep);
+            } catch (Throwable throwable) {
+                failure = throwable;
+            }
+            nanoseconds += System.nanoTime() - start;
+            count++;
+            return null;
+        }
+
+        /** The number of calls to fmiDoStep(). */
+        long count;
+
+        /** The failure, if any. */
+        Throwable failure;
+
+        /** The FMU. */
+        final FMUImport fmu;
+
+        /** The microstep. */
+        int microstep;
+
+        /** The total time of the calls to fmiDoStep() in nanoseconds. */
+        long nanoseconds;
+
+        /** True if the FMU has been advanced but has not yet been fired. */
+        boolean pending;
+
+        /** The result of _fmiDoStep(). */
+        double result;
+
+        /** The time. */
+        Time time;
+    }
+}
@@ -48,6 +48,7 @@ import org.ptolemy.fmi.FMIEventInfo;
 import org.ptolemy.fmi.FMILibrary;
 import org.ptolemy.fmi.FMIModelDescription;
 import org.ptolemy.fmi.FMIScalarVariable;
+import org.ptolemy.fmi.FMIScalarVariableGroup;
 import org.ptolemy.fmi.FMIScalarVariable.Alias;
 import org.ptolemy.fmi.FMIScalarVariable.Causality;
 import org.ptolemy.fmi.FMUFile;
@@ -676,8 +677,14 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
                 // fmiDoStep() with the current data before updating the inputs
                 // of the FMU. The current value of the inputs will be the
                 // values set on the last call to fire().
-                double refinedStepSize = _fmiDoStep(currentTime,
-                        currentMicrostep);
+                double refinedStepSize;
+                if (_coSimulationMaster != null) {
+                    refinedStepSize = _coSimulationMaster.doStep(this,
+                            currentTime, currentMicrostep);
+                } else {
+                    refinedStepSize = _fmiDoStep(currentTime,
+                            currentMicrostep);
+                }
                 if (refinedStepSize >= 0.0) {
                     _stepSizeRejected = true;
                     if (_refinedStepSize < 0.0
@@ -693,6 +700,7 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
         // Iterate through the scalarVariables and set all the inputs
         // that are known.
         int _index;
+        _clearScalarVariableGroups(_inputGroups);
         for (Input input : _getInputs()) {
             // NOTE: Page 27 of the FMI-1.0 CS spec says that for
             // variability==parameter and causality==input, we can
@@ -721,7 +729,7 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
                         }
 
                     } else {
-                        _setFMUScalarVariable(input.scalarVariable, token);
+                        _stageFMUScalarVariable(input.scalarVariable, token);
                     }
                     // If the input is a continuous state, update the newStates
                     // vector.
@@ -773,6 +781,11 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
             }
 
         }
+        if (!_useRawJNI()) {
+            // Set the inputs of type Real, Integer and Boolean with
+            // one call for each type.
+            _setScalarVariableGroups(_inputGroups);
+        }
         if (!_useRawJNI()) {
             // ////////////////////
             // For model exchange.
@@ -973,9 +986,17 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
 
         ////////////////
         // Get the outputs from the FMU and produce them..
-        for (Output output : _getOutputs()) {
+        // First, find the outputs that can be produced.
+        List<Output> outputs = _getOutputs();
+        if (_outputPositions == null
+                || _outputPositions.length != outputs.size()) {
+            _outputPositions = new int[outputs.size()];
+        }
+        _clearScalarVariableGroups(_outputGroups);
+        for (Output output : outputs) {
 
             index++;
+            _outputPositions[index] = -1;
 
             TypedIOPort port = output.port;
 
@@ -1060,15 +1081,45 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
             if (!foundUnknownInputOnWhichOutputDepends) {
                 // Ok to get the output. All the inputs on which
                 // it depends are known.
+                _outputPositions[index] = 0;
+                if (!_useRawJNI()) {
+                    FMIScalarVariableGroup group = _getScalarVariableGroup(
+                            _outputGroups, output.scalarVariable);
+                    if (group != null) {
+                        _outputPositions[index] = group
+                                .add(output.scalarVariable);
+                    }
+                }
+            }
+        }
+
+        // Get the outputs of type Real, Integer and Boolean with one
+        // call for each type, and produce the outputs.
+        if (!_useRawJNI()) {
+            _getScalarVariableGroups(_outputGroups);
+        }
+        index = -1;
+        for (Output output : outputs) {
+
+            index++;
+
+            if (_outputPositions[index] >= 0) {
+                TypedIOPort port = output.port;
                 Token token = null;
                 FMIScalarVariable scalarVariable = output.scalarVariable;
+                FMIScalarVariableGroup group = null;
+                if (!_useRawJNI()) {
+                    group = _getScalarVariableGroup(_outputGroups,
+                            scalarVariable);
+                }
 
                 if (scalarVariable.type instanceof FMIBooleanType) {
                     if (_useRawJNI()) {
                         throw new IllegalActionException(this,
                                 "Using raw JNI is not supported with Booleans.");
                     }
-                    boolean result = scalarVariable.getBoolean(_fmiComponent);
+                    boolean result = group
+                            .getBoolean(_outputPositions[index]);
                     token = new BooleanToken(result);
                 } else if (scalarVariable.type instanceof FMIIntegerType) {
                     if (_useRawJNI()) {
@@ -1076,7 +1127,7 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
                                 "Using raw JNI is not supported with integers.");
                     }
                     // FIXME: handle Enumerations?
-                    int result = scalarVariable.getInt(_fmiComponent);
+                    int result = group.getInt(_outputPositions[index]);
                     token = new IntToken(result);
                 } else if (scalarVariable.type instanceof FMIRealType) {
                     double result;
@@ -1087,7 +1138,7 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
                         result = oo[0];
 
                     } else {
-                        result = scalarVariable.getDouble(_fmiComponent);
+                        result = group.getDouble(_outputPositions[index]);
                     }
                     token = new DoubleToken(result);
                     if (_useQSS) {
@@ -1512,6 +1563,27 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
         _numberOfStateEvents = 0;
         _numberOfStepEvents = 0;
         _numberOfTimeEvents = 0;
+
+        // The groups are created for the current model description
+        // when they are first used.
+        _inputGroups = new FMIScalarVariableGroup[3];
+        _outputGroups = new FMIScalarVariableGroup[3];
+
+        // If a container has an FMUCoSimulationMaster, then register
+        // with it so that it advances this FMU along with the others.
+        _coSimulationMaster = null;
+        if (!_fmiModelDescription.modelExchange && !_useRawJNI()) {
+            NamedObj container = getContainer();
+            while (container != null && _coSimulationMaster == null) {
+                List<FMUCoSimulationMaster> masters = container
+                        .attributeList(FMUCoSimulationMaster.class);
+                if (!masters.isEmpty()) {
+                    _coSimulationMaster = masters.get(0);
+                    _coSimulationMaster.register(this);
+                }
+                container = container.getContainer();
+            }
+        }
         
         // Check if the QSS director is used at the top level.
         // This call initialize the _threshold as well as
@@ -4332,6 +4404,15 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
     /**
      * Set a scalar variable of the FMU to the value of a Ptolemy token.
      *
+     * <p>Note that {@link #fire()} does not call this method for inputs
+     * of type Real, Integer or Boolean.  It stages them with
+     * {@link #_stageFMUScalarVariable(FMIScalarVariable, Token)} and
+     * sets them with one call per type, so a subclass that overrides
+     * this method and uses fire() of this class only sees the inputs
+     * of other types, the start values of the inputs and the
+     * parameters.  Such a subclass should also override
+     * _stageFMUScalarVariable().</p>
+     *
      * @param scalar the FMI scalar to be set.
      * @param token the Ptolemy token that contains the value to be set.
      * @exception IllegalActionException If the scalar is of a type
@@ -4367,6 +4448,47 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
         }
     }
 
+    /**
+     * Stage the value of a Ptolemy token to be set to a scalar variable
+     * of the FMU.  The values of the variables of type Real, Integer
+     * and Boolean that are staged in fire() are set with one call for
+     * each type after all the inputs have been read.  Other variables
+     * are set immediately by {@link #_setFMUScalarVariable(FMIScalarVariable, Token)}.
+     *
+     * @param scalar the FMI scalar to be set.
+     * @param token the Ptolemy token that contains the value to be set.
+     * @exception IllegalActionException If the scalar is of a type
+     * that is not handled or if the type of the token does not match
+     * the type of the scalar.
+     */
+    protected void _stageFMUScalarVariable(FMIScalarVariable scalar,
+            Token token) throws IllegalActionException {
+        FMIScalarVariableGroup group = _getScalarVariableGroup(_inputGroups,
+                scalar);
+        if (group == null) {
+            _setFMUScalarVariable(scalar, token);
+            return;
+        }
+        try {
+            if (scalar.type instanceof FMIBooleanType) {
+                boolean value = ((BooleanToken) token).booleanValue();
+                group.setBoolean(group.add(scalar), value);
+            } else if (scalar.type instanceof FMIIntegerType) {
+                int value = ((IntToken) token).intValue();
+                group.setInt(group.add(scalar), value);
+            } else {
+                double value = ((DoubleToken) token).doubleValue();
+                group.setDouble(group.add(scalar), value);
+            }
+        } catch (ClassCastException ex) {
+            throw new IllegalActionException(this, ex,
+                    "Could not cast a token \"" + token + "\" of type "
+                            + token.getType()
+                            + " to an FMI scalar variable of type "
+                            + scalar.type);
+        }
+    }
+
     /**
      * Return true if outputs are skipped if known. A true value means that only
      * a single output token will be produced in each iteration of this actor. A
@@ -4778,6 +4900,72 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
     ///////////////////////////////////////////////////////////////////
     ////                         private methods                   ////
 
+    /** Remove the variables from the groups, keeping their memory. */
+    private void _clearScalarVariableGroups(FMIScalarVariableGroup[] groups) {
+        for (FMIScalarVariableGroup group : groups) {
+            if (group != null) {
+                group.clear();
+            }
+        }
+    }
+
+    /** Return the group for the type of the scalar variable, creating
+     *  it if necessary, or null if variables of that type are not
+     *  grouped.  The groups are ordered Real, Integer and Boolean.
+     */
+    private FMIScalarVariableGroup _getScalarVariableGroup(
+            FMIScalarVariableGroup[] groups, FMIScalarVariable scalar) {
+        int index;
+        Class<?> typeClass;
+        if (scalar.type instanceof FMIRealType) {
+            index = 0;
+            typeClass = FMIRealType.class;
+        } else if (scalar.type instanceof FMIIntegerType) {
+            index = 1;
+            typeClass = FMIIntegerType.class;
+        } else if (scalar.type instanceof FMIBooleanType) {
+            index = 2;
+            typeClass = FMIBooleanType.class;
+        } else {
+            return null;
+        }
+        if (groups[index] == null) {
+            groups[index] = new FMIScalarVariableGroup(_fmiModelDescription,
+                    typeClass);
+        }
+        return groups[index];
+    }
+
+    /** Get the values of the variables of the groups from the FMU. */
+    private void _getScalarVariableGroups(FMIScalarVariableGroup[] groups)
+            throws IllegalActionException {
+        try {
+            for (FMIScalarVariableGroup group : groups) {
+                if (group != null) {
+                    group.get(_fmiComponent);
+                }
+            }
+        } catch (RuntimeException ex) {
+            throw new IllegalActionException(this, ex,
+                    "Failed to get the outputs of the FMU.");
+        }
+    }
+
+    /** Set the values of the variables of the groups in the FMU. */
+    private void _setScalarVariableGroups(FMIScalarVariableGroup[] groups)
+            throws IllegalActionException {
+        try {
+            for (FMIScalarVariableGroup group : groups) {
+                if (group != null) {
+                    group.set(_fmiComponent);
+                }
+            }
+        } catch (RuntimeException ex) {
+            throw new IllegalActionException(this, ex,
+                    "Failed to set the inputs of the FMU.");
+        }
+    }
+
     /**
      * If functions needed for co-simulation are absent, then thrown an
      * exception with an informative message. The .fmu file may not have a
@@ -5053,9 +5241,19 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
      */
     private long _fmuFileModificationTime = -1;
 
+    /** The attribute that advances this FMU along with other
+     *  co-simulation FMUs, or null if there is none.
+     */
+    private FMUCoSimulationMaster _coSimulationMaster;
+
     /** The inputs of this FMU. */
     private List<Input> _inputs;
 
+    /** The groups of the inputs of type Real, Integer and Boolean
+     *  that are set in fire().
+     */
+    private FMIScalarVariableGroup[] _inputGroups;
+
     /** The workspace version at which the _inputs variable was last updated. */
     private long _inputsVersion = -1;
     
@@ -5070,6 +5268,16 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
     private int _numberOfStepEvents;
     private int _numberOfTimeEvents;
 
+    /** The groups of the outputs of type Real, Integer and Boolean
+     *  that are gotten in fire().
+     */
+    private FMIScalarVariableGroup[] _outputGroups;
+
+    /** For each output, -1 if it is not produced in fire(), or else
+     *  its position in its group.
+     */
+    private int[] _outputPositions;
+
     /** The outputs of this FMU. */
     private List<Output> _outputs;
 
@@ -32,6 +32,7 @@ import java.io.IOException;
 import java.lang.reflect.Method;
 import java.nio.DoubleBuffer;
 import java.nio.IntBuffer;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -125,6 +126,10 @@ public class FMUQSS extends FMUImport implements DerivativeFunction {
         initFMUParameters.setTypeEquals(BaseType.BOOLEAN);
         initFMUParameters.setExpression("true");
 
+        sparseRateEvents = new Parameter(this, "sparseRateEvents");
+        sparseRateEvents.setTypeEquals(BaseType.BOOLEAN);
+        sparseRateEvents.setExpression("false");
+
         // The modelExchange parameter in the parent class is marked
         // as expert, which means it is not usually visible to the
         // user. QSS FMUs are always model exchange, so we change the
@@ -159,6 +164,20 @@ public class FMUQSS extends FMUImport implements DerivativeFunction {
      */
     public Parameter initFMUParameters;
 
+    /**
+     * If true, and if the model description of the FMU declares the
+     * dependencies of every state derivative in its ModelStructure
+     * element, then a rate-event only updates the continuous state
+     * models of the states whose derivatives depend on an input or a
+     * state that changed.  The FMU still computes all the derivatives,
+     * but the models and the predicted quantization-event times of the
+     * other states are kept, which is faster for large models with
+     * sparse dependencies.  Since the models of the other states are
+     * not re-formed, the results may differ slightly from the results
+     * with full rate-events.  The default value is false.
+     */
+    public Parameter sparseRateEvents;
+
     ///////////////////////////////////////////////////////////////////
     ////                         public methods                    ////
 
@@ -1534,6 +1553,12 @@ public class FMUQSS extends FMUImport implements DerivativeFunction {
             _qssSolver.setQuantizationTolerance(ii,
                     modifiedInternalAbsoluteQuantum, _internalRelativeQuantum);
         }
+
+        // Give the solver the dependencies of the state derivatives
+        // so that it can use sparse rate-events.
+        _sparseRateEvents = ((BooleanToken) sparseRateEvents.getToken())
+                .booleanValue() && _setSolverDependencies();
+
         // Diagnostic output.
         if (_debugging) {
 
@@ -1910,36 +1935,37 @@ public class FMUQSS extends FMUImport implements DerivativeFunction {
     private void _getStateDerivativesDependenciesIndexes() {
         // Get the number of continuous states.
         final int numContStates = _fmiModelDescription.numberOfContinuousStates;
-        // Initialize arrays
+        // Map the scalar variables of the inputs and of the continuous
+        // states to their indexes, so that the dependencies of each
+        // derivative can be looked up without searching the lists.
+        final Map<FMIScalarVariable, Integer> inputIndexes = new HashMap<FMIScalarVariable, Integer>();
+        for (int j = 0; j < _inputs.size(); j++) {
+            inputIndexes.put(_inputs.get(j).scalarVariable, j);
+        }
+        final Map<FMIScalarVariable, Integer> stateIndexes = new HashMap<FMIScalarVariable, Integer>();
+        for (int j = 0; j < numContStates; j++) {
+            stateIndexes.put(
+                    _fmiModelDescription.continuousStates.get(j).scalarVariable,
+                    j);
+        }
         for (int i = 0; i < numContStates; i++) {
-            // Initialize the lists.
-            _fmiModelDescription.continuousStateDerivatives.get(i).dependentInputIndexes = new LinkedList<Integer>();
-            _fmiModelDescription.continuousStateDerivatives.get(i).dependentStateIndexes = new LinkedList<Integer>();
             final FMI20ContinuousStateDerivative stateDerivative = _fmiModelDescription.continuousStateDerivatives
                     .get(i);
-            // Get the indexes of the dependent input variables.
-            for (int j = 0; j < _inputs.size(); j++) {
-                final Input input = _inputs.get(j);
-                if (stateDerivative.dependentScalarVariables
-                        .contains(input.scalarVariable)) {
-                    final int index = _inputs.indexOf(input);
-                    _fmiModelDescription.continuousStateDerivatives.get(i).dependentInputIndexes
-                            .add(index);
+            // Initialize the lists.
+            stateDerivative.dependentInputIndexes = new LinkedList<Integer>();
+            stateDerivative.dependentStateIndexes = new LinkedList<Integer>();
+            for (FMIScalarVariable scalar : stateDerivative.dependentScalarVariables) {
+                // Get the index of the dependent input variable.
+                final Integer inputIndex = inputIndexes.get(scalar);
+                if (inputIndex != null) {
+                    stateDerivative.dependentInputIndexes.add(inputIndex);
                 }
-            }
-            // Get the indexes of dependent continuous state variables.
-            for (int j = 0; j < numContStates; j++) {
-                final ContinuousState state = _fmiModelDescription.continuousStates
-                        .get(j);
-                if (stateDerivative.dependentScalarVariables
-                        .contains(state.scalarVariable)) {
-                    final int index = _fmiModelDescription.continuousStates
-                            .indexOf(state);
-                    _fmiModelDescription.continuousStateDerivatives.get(i).dependentStateIndexes
-                            .add(index);
+                // Get the index of the dependent continuous state variable.
+                final Integer stateIndex = stateIndexes.get(scalar);
+                if (stateIndex != null) {
+                    stateDerivative.dependentStateIndexes.add(stateIndex);
                 }
             }
-
         }
     }
 
@@ -2554,7 +2580,41 @@ public class FMUQSS extends FMUImport implements DerivativeFunction {
 
         }
     }
-    
+
+    /**
+     * Give the QSS solver the indexes of the states and of the input
+     * variables on which each state derivative depends, as declared
+     * in the ModelStructure element of the model description.
+     *
+     * @return True if the dependencies were given to the solver, or
+     * false if some derivative does not declare its dependencies, in
+     * which case the solver keeps using full rate-events.
+     */
+    private boolean _setSolverDependencies() {
+        final int stateCt = _qssSolver.getStateCount();
+        if (_fmiModelDescription.continuousStateDerivatives.size() != stateCt) {
+            return false;
+        }
+        for (FMI20ContinuousStateDerivative stateDerivative : _fmiModelDescription.continuousStateDerivatives) {
+            if (!stateDerivative.hasDependencies) {
+                return false;
+            }
+        }
+        _getStateDerivativesDependenciesIndexes();
+        final int[][] stateDependencies = new int[stateCt][];
+        final int[][] inputDependencies = new int[stateCt][];
+        for (int ii = 0; ii < stateCt; ++ii) {
+            final FMI20ContinuousStateDerivative stateDerivative = _fmiModelDescription.continuousStateDerivatives
+                    .get(ii);
+            stateDependencies[ii] = stateDerivative.dependentStateIndexes
+                    .stream().mapToInt(Integer::intValue).toArray();
+            inputDependencies[ii] = stateDerivative.dependentInputIndexes
+                    .stream().mapToInt(Integer::intValue).toArray();
+        }
+        _qssSolver.setDependencies(stateDependencies, inputDependencies);
+        return true;
+    }
+
     /**
      * Calculate the sum of a vector.
      *
@@ -2768,6 +2828,7 @@ public class FMUQSS extends FMUImport implements DerivativeFunction {
                 // Here, have a new value on the input port.
                 final Token token = input.port.get(0);
                 _updateInputModel(input, currentTime, token, curIdx);
+                _qssSolver.noteInputVariableChange(curIdx);
                 //if (!_handleInput(input, currentTime, token, curIdx) && !_firstRound) continue;
                 // Specify input which has changed.
                 // final int modVarIdx = _modelVariableIndexesOfInputsAndContinuousStates.get(input.scalarVariable.name);
@@ -2787,7 +2848,11 @@ public class FMUQSS extends FMUImport implements DerivativeFunction {
                                 updatedInputVarMdl, _qssSolver.needRateEvent()));
             }
             try {
-                _qssSolver.triggerRateEvent();
+                if (_sparseRateEvents && !force) {
+                    _qssSolver.triggerSparseRateEvent();
+                } else {
+                    _qssSolver.triggerRateEvent();
+                }
                 trigger[0] = true;
             } catch (Exception ee) {
                 throw new IllegalActionException(this, ee,
@@ -2940,6 +3005,11 @@ public class FMUQSS extends FMUImport implements DerivativeFunction {
     /** Quantum scale factor. */
     private double _quantumScaleFactor;
 
+    /** True if the QSS solver was given the dependencies of the state
+     *  derivatives and rate-events should be sparse.
+     */
+    private boolean _sparseRateEvents;
+
     /** Vector of state derivative value references. */
     private long[] _stateDerivativeValueReferences;
 
@@ -0,0 +1,106 @@
+# Test FMUCoSimulationMaster
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2016 The Regents of the University of California.
+# All rights reserved.
+#
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+#
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+#
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+#
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Ptolemy II test bed, see $PTII/doc/coding/testing.html for more information.
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then {
+    source testDefs.tcl
+} {}
+
+#set VERBOSE 1
+
+# Parse a model, add a FMUCoSimulationMaster with the given number of
+# threads, run the model and return the number of FMUs that the master
+# stepped and whether each of them was stepped at least once.
+# If a listener is given, then it is added as a debug listener of the
+# master.
+proc runWithMaster {modelFile threads {listener {}}} {
+    set parser [java::new ptolemy.moml.MoMLParser]
+    $parser resetAll
+    $parser setMoMLFilters [java::null]
+    $parser addMoMLFilters \
+	    [java::call ptolemy.moml.filter.BackwardCompatibility allFilters]
+    $parser addMoMLFilter [java::new \
+	    ptolemy.moml.filter.RemoveGraphicalClasses]
+    set toplevel [java::cast ptolemy.actor.TypedCompositeActor [$parser parseFile $modelFile]]
+    set master [java::new ptolemy.actor.lib.fmi.FMUCoSimulationMaster $toplevel master]
+    [java::field $master threads] setExpression $threads
+    if {$listener != {}} {
+	$master addDebugListener $listener
+    }
+    set manager [java::new ptolemy.actor.Manager [$toplevel workspace] manager]
+    $toplevel setManager $manager
+    $manager execute
+    set stepTimes [$master getStepTimes]
+    set allStepped 1
+    set iterator [[$stepTimes values] iterator]
+    while {[$iterator hasNext] == 1} {
+        set counts [java::cast {long[]} [$iterator next]]
+        if {[$counts get 0] <= 0} {
+            set allStepped 0
+        }
+    }
+    set results [list [$stepTimes size] $allStepped]
+    $toplevel setContainer [java::null]
+    # The list of filters is static, so we reset it
+    java::call ptolemy.moml.MoMLParser setMoMLFilters [java::null]
+    return $results
+}
+
+######################################################################
+####
+#
+test FMUCoSimulationMaster-1.1 {Step 30 FMUs in parallel, the Test actors check the results} {
+    runWithMaster auto/FMU30Inc.xml 4
+} {30 1}
+
+######################################################################
+####
+#
+test FMUCoSimulationMaster-1.2 {Step 30 FMUs sequentially} {
+    runWithMaster auto/FMU30Inc.xml 1
+} {30 1}
+
+test FMUCoSimulationMaster-1.3 {The step times are reported to the debug listeners} {
+    set listener [java::new ptolemy.kernel.util.RecorderListener]
+    set results [runWithMaster auto/FMU30Inc.xml 2 $listener]
+    set lines [split [string trim [$listener getMessages]] "\n"]
+    list $results [llength $lines] [lindex [split [lindex $lines 0] "\t"] 0]
+} {{30 1} 31 FMU}
+
+######################################################################
+####
+#
+test FMUCoSimulationMaster-2.1 {Step FMUs in parallel under the Continuous director} {
+    runWithMaster auto/FMUStairs.xml 2
+} {2 1}
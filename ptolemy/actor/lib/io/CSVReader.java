@@ -27,13 +27,19 @@
  */
 package ptolemy.actor.lib.io;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.StringTokenizer;
 
+import ptolemy.data.ArrayToken;
 import ptolemy.data.BooleanToken;
+import ptolemy.data.DoubleArrayToken;
+import ptolemy.data.DoubleToken;
+import ptolemy.data.IntArrayToken;
+import ptolemy.data.IntToken;
 import ptolemy.data.OrderedRecordToken;
 import ptolemy.data.RecordToken;
 import ptolemy.data.StringToken;
@@ -50,12 +56,14 @@ import ptolemy.data.expr.StringParameter;
 import ptolemy.data.expr.Variable;
 import ptolemy.data.type.BaseType;
 import ptolemy.data.type.Type;
+import ptolemy.data.type.TypeLattice;
 import ptolemy.graph.Inequality;
 import ptolemy.kernel.CompositeEntity;
 import ptolemy.kernel.util.Attribute;
 import ptolemy.kernel.util.IllegalActionException;
 import ptolemy.kernel.util.NameDuplicationException;
 import ptolemy.kernel.util.Settable;
+import ptolemy.kernel.util.Workspace;
 
 ///////////////////////////////////////////////////////////////////
 //// CSVReader
@@ -122,6 +130,18 @@ import ptolemy.kernel.util.Settable;
  the first line, which defines the structure of the record.
  line read is produced on the <i>output</i> in the next iteration
  after it is read.
+ </p><p>
+ If <i>memoryMapped</i> is true, then the file, which must be a
+ local file rather than a URL, is mapped into memory, a window at a
+ time, instead of being read through a stream. See {@link MappedCSVFile}.
+ This is much faster for large files, and files larger than the memory
+ can be read.  In this mode, fields that are integer, double or boolean
+ literals are converted directly to tokens, without the expression
+ parser, and the other fields are evaluated as described above.
+ Also, each firing produces <i>batchSize</i> lines. If <i>batchSize</i>
+ is greater than one, then the output is an ordered record whose fields
+ are arrays with the values of the fields of those lines, rather than a
+ record for each line. The arrays of the last firing may be shorter.
  </p>
 
  @see FileParameter
@@ -156,6 +176,14 @@ public class CSVReader extends LineReader {
         trimSpaces.setTypeEquals(BaseType.BOOLEAN);
         trimSpaces.setExpression("true");
 
+        memoryMapped = new Parameter(this, "memoryMapped");
+        memoryMapped.setTypeEquals(BaseType.BOOLEAN);
+        memoryMapped.setExpression("false");
+
+        batchSize = new Parameter(this, "batchSize");
+        batchSize.setTypeEquals(BaseType.INT);
+        batchSize.setExpression("1");
+
         new SingletonParameter(endOfFile, "_showName")
         .setToken(BooleanToken.TRUE);
 
@@ -181,6 +209,21 @@ public class CSVReader extends LineReader {
     ///////////////////////////////////////////////////////////////////
     ////                     ports and parameters                  ////
 
+    /** The number of lines produced in each firing if <i>memoryMapped</i>
+     *  is true.  This is an integer that defaults to 1, in which case a
+     *  record is produced for each line.  If it is greater than 1, then
+     *  the output is a record of arrays, with an element for each line.
+     *  This parameter is ignored if <i>memoryMapped</i> is false.
+     */
+    public Parameter batchSize;
+
+    /** If true, then map the file into memory instead of reading it
+     *  through a stream, and parse the literals in the fields directly.
+     *  This is a boolean that defaults to false.  If it is true, then
+     *  <i>fileOrURL</i> must specify a local file.
+     */
+    public Parameter memoryMapped;
+
     /** A specification of the separator between items in the table.
      *  The default is "comma", which results in assuming that fields
      *  are separated by commas. If the value is changed to "tab", then
@@ -226,11 +269,32 @@ public class CSVReader extends LineReader {
             } else {
                 _delimiter = separator.stringValue();
             }
+        } else if (attribute == batchSize) {
+            if (((IntToken) batchSize.getToken()).intValue() < 1) {
+                throw new IllegalActionException(this,
+                        "The batch size must be at least 1.");
+            }
         } else {
             super.attributeChanged(attribute);
         }
     }
 
+    /** Clone the actor into the specified workspace.
+     *  @param workspace The workspace for the new object.
+     *  @return A new actor.
+     *  @exception CloneNotSupportedException If a derived class contains
+     *   an attribute that cannot be cloned.
+     */
+    @Override
+    public Object clone(Workspace workspace) throws CloneNotSupportedException {
+        CSVReader newObject = (CSVReader) super.clone(workspace);
+        newObject._batch = null;
+        newObject._columns = null;
+        newObject._mappedFile = null;
+        newObject._rowPending = false;
+        return newObject;
+    }
+
     /** Output the data read in the preinitialize() or in the previous
      *  invocation of postfire(), if there is any.
      *  @exception IllegalActionException If there's no director.
@@ -253,6 +317,18 @@ public class CSVReader extends LineReader {
             }
         }
 
+        if (((BooleanToken) memoryMapped.getToken()).booleanValue()) {
+            if (_firstFiring) {
+                _openMappedFile();
+                _firstFiring = false;
+            }
+            if (_batch != null) {
+                output.broadcast(_batch);
+            }
+            endOfFile.broadcast(BooleanToken.getInstance(!_rowPending));
+            return;
+        }
+
         if (_firstFiring) {
             _openAndReadFirstTwoLines();
             _firstFiring = false;
@@ -302,37 +378,7 @@ public class CSVReader extends LineReader {
                 if (((BooleanToken) trimSpaces.getToken()).booleanValue()) {
                     nextToken = nextToken.trim();
                 }
-                if (_parser == null) {
-                    _parser = new PtParser();
-                }
-
-                ASTPtRootNode parseTree = null;
-                try {
-                    parseTree = _parser.generateParseTree(nextToken);
-                } catch (Exception ex) {
-                    // If the field cannot be parsed, then interpret
-                    // the field as a string.
-                    fieldValues[i] = new StringToken(nextToken);
-                }
-                if (parseTree != null) {
-                    if (_parseTreeEvaluator == null) {
-                        _parseTreeEvaluator = new ParseTreeEvaluator();
-                    }
-
-                    if (_scope == null) {
-                        _scope = new ExpressionScope();
-                    }
-
-                    try {
-                        fieldValues[i] = _parseTreeEvaluator.evaluateParseTree(
-                                parseTree, _scope);
-                    } catch (Exception ex) {
-                        // If the field cannot be evaluated, then interpret
-                        // the field as a string.
-                        fieldValues[i] = new StringToken(nextToken);
-                    }
-                }
-
+                fieldValues[i] = _evaluate(nextToken);
                 i++;
             }
             while (i < _fieldNames.length) {
@@ -350,12 +396,50 @@ public class CSVReader extends LineReader {
         }
     }
 
+    /** Close the file if it has been mapped into memory, so that it is
+     *  mapped again in the first firing.
+     *  @exception IllegalActionException If the base class throws it,
+     *   or if the file cannot be closed.
+     */
+    @Override
+    public void initialize() throws IllegalActionException {
+        super.initialize();
+        _closeMappedFile();
+    }
+
+    /** If <i>memoryMapped</i> is true, then read the lines to be
+     *  produced in the next firing, and otherwise, read the next line
+     *  as in the base class.
+     *  @return False if the last line of the file has been produced.
+     *  @exception IllegalActionException If there is a problem reading
+     *   the file.
+     */
+    @Override
+    public boolean postfire() throws IllegalActionException {
+        if (_mappedFile == null) {
+            return super.postfire();
+        }
+        // The base class returns false because there is no reader.
+        if (_debugging) {
+            _debug("Called postfire()");
+        }
+        if (!_rowPending) {
+            _batch = null;
+            return false;
+        }
+        _readBatch();
+        return !_stopRequested;
+    }
+
     /** Wrapup execution of this actor.  This method overrides the
-     *  base class to discard the internal parser to save memory.
+     *  base class to discard the internal parser to save memory,
+     *  and to close the file if it was mapped into memory.
+     *  @exception IllegalActionException If the file cannot be closed.
      */
     @Override
-    public void wrapup() {
+    public void wrapup() throws IllegalActionException {
         _parser = null;
+        _closeMappedFile();
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -369,21 +453,214 @@ public class CSVReader extends LineReader {
         return new HashSet<Inequality>();
     }
 
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Return an array with the first values of a column, which is
+     *  backed by an array of doubles or ints if all the values are
+     *  doubles or ints.
+     */
+    private static ArrayToken _column(Token[] values, int length)
+            throws IllegalActionException {
+        boolean doubles = true;
+        boolean ints = true;
+        Type type = values[0].getType();
+        for (int i = 0; i < length; i++) {
+            Token value = values[i];
+            doubles &= value instanceof DoubleToken;
+            ints &= value instanceof IntToken;
+            type = TypeLattice.leastUpperBound(type, value.getType());
+        }
+        if (doubles) {
+            double[] result = new double[length];
+            for (int i = 0; i < length; i++) {
+                result[i] = ((DoubleToken) values[i]).doubleValue();
+            }
+            return new DoubleArrayToken(result);
+        } else if (ints) {
+            int[] result = new int[length];
+            for (int i = 0; i < length; i++) {
+                result[i] = ((IntToken) values[i]).intValue();
+            }
+            return new IntArrayToken(result);
+        }
+        Token[] result = new Token[length];
+        System.arraycopy(values, 0, result, 0, length);
+        return new ArrayToken(type, result);
+    }
+
+    /** Close the file if it has been mapped into memory. */
+    private void _closeMappedFile() throws IllegalActionException {
+        _batch = null;
+        _rowPending = false;
+        if (_mappedFile != null) {
+            try {
+                _mappedFile.close();
+            } catch (IOException ex) {
+                throw new IllegalActionException(this, ex,
+                        "Failed to close " + fileOrURL.getExpression() + ".");
+            } finally {
+                _mappedFile = null;
+            }
+        }
+    }
+
+    /** Return the value of a field, which is the value of the field as
+     *  an expression, or a string if the field cannot be evaluated.
+     */
+    private Token _evaluate(String field) {
+        if (_parser == null) {
+            _parser = new PtParser();
+        }
+
+        ASTPtRootNode parseTree = null;
+        try {
+            parseTree = _parser.generateParseTree(field);
+        } catch (Exception ex) {
+            // If the field cannot be parsed, then interpret
+            // the field as a string.
+            return new StringToken(field);
+        }
+        if (_parseTreeEvaluator == null) {
+            _parseTreeEvaluator = new ParseTreeEvaluator();
+        }
+
+        if (_scope == null) {
+            _scope = new ExpressionScope();
+        }
+
+        try {
+            return _parseTreeEvaluator.evaluateParseTree(parseTree, _scope);
+        } catch (Exception ex) {
+            // If the field cannot be evaluated, then interpret
+            // the field as a string.
+            return new StringToken(field);
+        }
+    }
+
+    /** Map the file into memory, read the field names from its first
+     *  line after the lines to skip, and read the lines to be
+     *  produced in the first firing.
+     */
+    private void _openMappedFile() throws IllegalActionException {
+        File file = fileOrURL.asFile();
+        if (file == null || !file.isFile()) {
+            throw new IllegalActionException(this, "Cannot map "
+                    + fileOrURL.getExpression() + " into memory. "
+                    + "It is not a file.");
+        }
+        try {
+            _mappedFile = new MappedCSVFile(file, _delimiter,
+                    ((BooleanToken) trimSpaces.getToken()).booleanValue());
+            int linesToSkip = ((IntToken) numberOfLinesToSkip.getToken())
+                    .intValue();
+            for (int i = 0; i <= linesToSkip; i++) {
+                if (!_mappedFile.nextRow()) {
+                    throw new IllegalActionException(this,
+                            "File has no data.");
+                }
+            }
+            _fieldNames = new String[_mappedFile.getFieldCount()];
+            for (int i = 0; i < _fieldNames.length; i++) {
+                _fieldNames[i] = _mappedFile.getString(i);
+            }
+            _rowPending = _mappedFile.nextRow();
+        } catch (IOException ex) {
+            throw new IllegalActionException(this, ex, "Failed to read "
+                    + file + ".");
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalActionException(this, ex, "Cannot map "
+                    + file + " into memory.");
+        }
+        _readBatch();
+    }
+
+    /** Read the lines to be produced in the next firing from the mapped
+     *  file, starting with the pending line, and put the output in
+     *  _batch.  After this, _rowPending is true if there are more lines.
+     */
+    private void _readBatch() throws IllegalActionException {
+        if (!_rowPending) {
+            _batch = null;
+            return;
+        }
+        int size = ((IntToken) batchSize.getToken()).intValue();
+        int fields = _fieldNames.length;
+        if (_columns == null || _columns.length != fields || fields > 0
+                && _columns[0].length != size) {
+            _columns = new Token[fields][size];
+        }
+        int rows = 0;
+        try {
+            while (rows < size && _rowPending) {
+                int count = Math.min(_mappedFile.getFieldCount(), fields);
+                for (int i = 0; i < count; i++) {
+                    Token value = _mappedFile.getToken(i);
+                    if (value == null) {
+                        value = _evaluate(_mappedFile.getString(i));
+                    }
+                    _columns[i][rows] = value;
+                }
+                for (int i = count; i < fields; i++) {
+                    _columns[i][rows] = _EMPTY_STRING;
+                }
+                rows++;
+                _rowPending = _mappedFile.nextRow();
+            }
+        } catch (IOException ex) {
+            throw new IllegalActionException(this, ex, "Failed to read "
+                    + fileOrURL.getExpression() + ".");
+        }
+
+        Token[] values = new Token[fields];
+        for (int i = 0; i < fields; i++) {
+            if (size == 1) {
+                values[i] = _columns[i][0];
+            } else {
+                values[i] = _column(_columns[i], rows);
+            }
+        }
+        _batch = new OrderedRecordToken(_fieldNames, values);
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////                         private members                   ////
 
+    /** The output to be produced in the next firing if the file is
+     *  mapped into memory, or null if there is none.
+     */
+    private Token _batch;
+
+    /** The values of the fields of the lines of a batch, indexed by
+     *  field and then by line.
+     */
+    private Token[][] _columns;
+
     /** The delimiter. */
     private String _delimiter = ",";
 
+    /** The value of fields that are missing from a line. */
+    private static final StringToken _EMPTY_STRING = new StringToken("");
+
     /** Field names for the output record. */
     private String[] _fieldNames;
 
     /** The parse tree evaluator to use. */
     private ParseTreeEvaluator _parseTreeEvaluator = null;
 
+    /** The file mapped into memory, or null if it is read through
+     *  a stream.
+     */
+    private MappedCSVFile _mappedFile;
+
     /** The parser to use. */
     private PtParser _parser = null;
 
+    /** True if the mapped file has a line that has not been read into
+     *  a batch yet.
+     */
+    private boolean _rowPending;
+
     /** The scope for the parser. */
     private ParserScope _scope = null;
 
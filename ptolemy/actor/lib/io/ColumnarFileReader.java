@@ -0,0 +1,432 @@
+/* A reader of binary columnar files of time-stamped records.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.actor.lib.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import ptolemy.data.BooleanToken;
+import ptolemy.data.DoubleToken;
+import ptolemy.data.IntToken;
+import ptolemy.data.LongToken;
+import ptolemy.data.StringToken;
+import ptolemy.data.Token;
+import ptolemy.data.expr.ASTPtRootNode;
+import ptolemy.data.expr.ParseTreeEvaluator;
+import ptolemy.data.expr.PtParser;
+import ptolemy.data.type.Type;
+import ptolemy.kernel.util.IllegalActionException;
+
+///////////////////////////////////////////////////////////////////
+//// ColumnarFileReader
+
+/**
+ A reader of the binary columnar files written by
+ {@link ColumnarFileWriter}.  The rows are read one block at a time,
+ and {@link #nextRow()} advances to the next row.  The reader stops
+ at the end of the last complete block, so a file whose writer was
+ not closed can still be read.
+
+ @see ColumnarFileWriter
+ @see ColumnarReader
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class ColumnarFileReader {
+
+    /** Open the specified file and read its header.
+     *  @param file The file.
+     *  @exception IOException If the file cannot be read, or if it is
+     *   not a columnar file.
+     */
+    public ColumnarFileReader(File file) throws IOException {
+        _file = new RandomAccessFile(file, "r");
+        _channel = _file.getChannel();
+        try {
+            ByteBuffer prefix = ByteBuffer.allocate(10);
+            if (!_read(prefix, 0L)
+                    || prefix.getInt() != ColumnarFileWriter.MAGIC) {
+                throw new IOException(file + " is not a columnar file.");
+            }
+            short version = prefix.getShort();
+            if (version != ColumnarFileWriter.VERSION) {
+                throw new IOException(file + " has version " + version
+                        + ", which is not supported.");
+            }
+            int headerLength = prefix.getInt();
+            ByteBuffer header = ByteBuffer.allocate(headerLength);
+            if (!_read(header, 10L)) {
+                throw new IOException("The header of " + file
+                        + " is incomplete.");
+            }
+            DataInputStream stream = new DataInputStream(
+                    new ByteArrayInputStream(header.array()));
+            int columns = stream.readInt();
+            _names = new String[columns];
+            _typeExpressions = new String[columns];
+            _storage = new byte[columns];
+            _columns = new Object[columns];
+            for (int i = 0; i < columns; i++) {
+                _names[i] = stream.readUTF();
+                _typeExpressions[i] = stream.readUTF();
+                _storage[i] = stream.readByte();
+            }
+            _dataStart = 10L + headerLength;
+            _position = _dataStart;
+        } catch (IOException ex) {
+            _inflater.end();
+            _file.close();
+            throw ex;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Close the file.
+     *  @exception IOException If the file cannot be closed.
+     */
+    public void close() throws IOException {
+        _inflater.end();
+        _file.close();
+    }
+
+    /** Return the names of the columns.
+     *  @return The names of the columns.
+     */
+    public String[] getColumnNames() {
+        return _names.clone();
+    }
+
+    /** Return the types of the columns.
+     *  @return The types of the columns.
+     *  @exception IllegalActionException If the type of a column
+     *   cannot be parsed.
+     */
+    public Type[] getColumnTypes() throws IllegalActionException {
+        if (_types == null) {
+            Type[] types = new Type[_names.length];
+            for (int i = 0; i < types.length; i++) {
+                types[i] = _evaluate(_typeExpressions[i]).getType();
+            }
+            _types = types;
+        }
+        return _types.clone();
+    }
+
+    /** Return the microstep of the current row.
+     *  @return The microstep of the current row.
+     */
+    public int getMicrostep() {
+        return _microsteps[_row];
+    }
+
+    /** Return the double value of the model time of the current row.
+     *  @return The time of the current row.
+     */
+    public double getTime() {
+        return _times[_row];
+    }
+
+    /** Return the value of the specified column in the current row.
+     *  @param column The index of the column.
+     *  @return The value.
+     *  @exception IllegalActionException If the value is stored as
+     *   an expression that cannot be evaluated.
+     */
+    public Token getToken(int column) throws IllegalActionException {
+        switch (_storage[column]) {
+        case ColumnarFileWriter.BOOLEAN:
+            return BooleanToken
+                    .getInstance(((boolean[]) _columns[column])[_row]);
+        case ColumnarFileWriter.INT:
+            return new IntToken(((int[]) _columns[column])[_row]);
+        case ColumnarFileWriter.LONG:
+            return new LongToken(((long[]) _columns[column])[_row]);
+        case ColumnarFileWriter.DOUBLE:
+            return new DoubleToken(((double[]) _columns[column])[_row]);
+        case ColumnarFileWriter.STRING:
+            return new StringToken(((String[]) _columns[column])[_row]);
+        default:
+            return _evaluate(((String[]) _columns[column])[_row]);
+        }
+    }
+
+    /** Return the length of the prefix of the file that consists of
+     *  the header and complete blocks.  This does not change the
+     *  current row.
+     *  @return The length of the valid prefix of the file.
+     *  @exception IOException If the file cannot be read.
+     */
+    public long getValidLength() throws IOException {
+        long position = _dataStart;
+        ByteBuffer header = ByteBuffer.allocate(13);
+        long size = _channel.size();
+        while (true) {
+            header.clear();
+            if (!_read(header, position)) {
+                return position;
+            }
+            header.position(5);
+            long end = position + 13 + header.getInt();
+            if (end > size) {
+                return position;
+            }
+            position = end;
+        }
+    }
+
+    /** Advance to the next row.
+     *  @return True if there is a next row, and false at the end of
+     *   the last complete block.
+     *  @exception IOException If the file cannot be read or a block
+     *   is corrupt.
+     */
+    public boolean nextRow() throws IOException {
+        _row++;
+        while (_row >= _rows) {
+            if (!_readBlock()) {
+                _row = 0;
+                _rows = 0;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Evaluate the specified expression. */
+    private Token _evaluate(String expression) throws IllegalActionException {
+        if (_parser == null) {
+            _parser = new PtParser();
+            _evaluator = new ParseTreeEvaluator();
+        }
+        ASTPtRootNode tree = _parser.generateParseTree(expression);
+        return _evaluator.evaluateParseTree(tree);
+    }
+
+    /** Fill the buffer from the file at the specified position and
+     *  flip it.  Return false if the file ends first.
+     */
+    private boolean _read(ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            int count = _channel.read(buffer,
+                    position + buffer.position());
+            if (count < 0) {
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    /** Read and decode the block at the current position, if it is
+     *  complete, and return true if it was read.
+     */
+    private boolean _readBlock() throws IOException {
+        _blockHeader.clear();
+        if (!_read(_blockHeader, _position)) {
+            return false;
+        }
+        int rows = _blockHeader.getInt();
+        boolean compressed = _blockHeader.get() != 0;
+        int storedLength = _blockHeader.getInt();
+        int rawLength = _blockHeader.getInt();
+        if (_stored == null || _stored.capacity() < storedLength) {
+            _stored = ByteBuffer.allocate(storedLength);
+        }
+        _stored.clear();
+        _stored.limit(storedLength);
+        if (!_read(_stored, _position + 13)) {
+            return false;
+        }
+
+        ByteBuffer raw = _stored;
+        if (compressed) {
+            if (_raw == null || _raw.capacity() < rawLength) {
+                _raw = ByteBuffer.allocate(rawLength);
+            }
+            _inflater.reset();
+            _inflater.setInput(_stored.array(), 0, storedLength);
+            try {
+                if (_inflater.inflate(_raw.array(), 0,
+                        rawLength) != rawLength) {
+                    throw new IOException("The block at position "
+                            + _position + " is corrupt.");
+                }
+            } catch (DataFormatException ex) {
+                throw new IOException("The block at position " + _position
+                        + " is corrupt.", ex);
+            }
+            _raw.clear();
+            _raw.limit(rawLength);
+            raw = _raw;
+        }
+
+        if (_times == null || _times.length < rows) {
+            _times = new double[rows];
+            _microsteps = new int[rows];
+        }
+        raw.asDoubleBuffer().get(_times, 0, rows);
+        raw.position(raw.position() + rows * 8);
+        raw.asIntBuffer().get(_microsteps, 0, rows);
+        raw.position(raw.position() + rows * 4);
+        for (int i = 0; i < _columns.length; i++) {
+            switch (_storage[i]) {
+            case ColumnarFileWriter.BOOLEAN:
+                boolean[] booleans = (boolean[]) _columns[i];
+                if (booleans == null || booleans.length < rows) {
+                    booleans = new boolean[rows];
+                    _columns[i] = booleans;
+                }
+                for (int row = 0; row < rows; row++) {
+                    booleans[row] = raw.get() != 0;
+                }
+                break;
+            case ColumnarFileWriter.INT:
+                int[] ints = (int[]) _columns[i];
+                if (ints == null || ints.length < rows) {
+                    ints = new int[rows];
+                    _columns[i] = ints;
+                }
+                raw.asIntBuffer().get(ints, 0, rows);
+                raw.position(raw.position() + rows * 4);
+                break;
+            case ColumnarFileWriter.LONG:
+                long[] longs = (long[]) _columns[i];
+                if (longs == null || longs.length < rows) {
+                    longs = new long[rows];
+                    _columns[i] = longs;
+                }
+                raw.asLongBuffer().get(longs, 0, rows);
+                raw.position(raw.position() + rows * 8);
+                break;
+            case ColumnarFileWriter.DOUBLE:
+                double[] doubles = (double[]) _columns[i];
+                if (doubles == null || doubles.length < rows) {
+                    doubles = new double[rows];
+                    _columns[i] = doubles;
+                }
+                raw.asDoubleBuffer().get(doubles, 0, rows);
+                raw.position(raw.position() + rows * 8);
+                break;
+            default:
+                String[] strings = (String[]) _columns[i];
+                if (strings == null || strings.length < rows) {
+                    strings = new String[rows];
+                    _columns[i] = strings;
+                }
+                byte[] array = raw.array();
+                for (int row = 0; row < rows; row++) {
+                    int length = raw.getInt();
+                    strings[row] = new String(array, raw.position(), length,
+                            StandardCharsets.UTF_8);
+                    raw.position(raw.position() + length);
+                }
+            }
+        }
+        _position += 13 + storedLength;
+        _row = 0;
+        _rows = rows;
+        return true;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The buffer of block headers. */
+    private ByteBuffer _blockHeader = ByteBuffer.allocate(13);
+
+    /** The channel of the file. */
+    private FileChannel _channel;
+
+    /** The values of each column in the current block. */
+    private Object[] _columns;
+
+    /** The position of the first block. */
+    private long _dataStart;
+
+    /** The evaluator of expressions. */
+    private ParseTreeEvaluator _evaluator;
+
+    /** The file. */
+    private RandomAccessFile _file;
+
+    /** The decompressor. */
+    private Inflater _inflater = new Inflater();
+
+    /** The microsteps of the rows in the current block. */
+    private int[] _microsteps;
+
+    /** The names of the columns. */
+    private String[] _names;
+
+    /** The parser of expressions. */
+    private PtParser _parser;
+
+    /** The position of the next block. */
+    private long _position;
+
+    /** The buffer of decompressed blocks. */
+    private ByteBuffer _raw;
+
+    /** The index of the current row in the current block. */
+    private int _row = -1;
+
+    /** The number of rows in the current block. */
+    private int _rows;
+
+    /** The storage codes of the columns. */
+    private byte[] _storage;
+
+    /** The buffer of stored blocks. */
+    private ByteBuffer _stored;
+
+    /** The times of the rows in the current block. */
+    private double[] _times;
+
+    /** The expressions of the types of the columns. */
+    private String[] _typeExpressions;
+
+    /** The types of the columns, or null if not yet parsed. */
+    private Type[] _types;
+}
@@ -0,0 +1,478 @@
+/* A writer of binary columnar files of time-stamped records.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.actor.lib.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+
+import ptolemy.data.BooleanToken;
+import ptolemy.data.DoubleToken;
+import ptolemy.data.IntToken;
+import ptolemy.data.LongToken;
+import ptolemy.data.StringToken;
+import ptolemy.data.Token;
+import ptolemy.data.type.BaseType;
+import ptolemy.data.type.Type;
+import ptolemy.kernel.util.IllegalActionException;
+
+///////////////////////////////////////////////////////////////////
+//// ColumnarFileWriter
+
+/**
+ A writer of binary columnar files of time-stamped records.
+ A columnar file has a header that gives the names and the types of
+ its columns, followed by blocks of rows.  Each row has a time stamp,
+ given as the double value of the model time and the microstep, and
+ one value for each column.  Within a block, the values are stored
+ column by column: first the time stamps, then the microsteps, and
+ then the values of each column in turn.
+ <p>
+ Columns of type boolean, int, long, double and string are stored as
+ primitive values.  Values of all other types are stored as the
+ expression given by their toString() method and are parsed again by
+ {@link ColumnarFileReader}.</p>
+ <p>
+ Rows are buffered until a block is full, and then the block is
+ written to the file with one write.  If compression is enabled, the
+ block is compressed with {@link Deflater}, unless that does not make
+ it smaller.  If the writer is not closed, for example because the
+ process is killed, then only the rows of the last block are lost;
+ a reader stops at the last complete block, and a writer that appends
+ to the file overwrites an incomplete block.</p>
+ <p>
+ All numbers in the file are big-endian.  The layout of the file is:</p>
+ <pre>
+ int magic number, short version, int header length,
+ header: int column count, then for each column its name and the
+         expression of its type in modified UTF-8, and a byte storage code,
+ blocks: int row count, byte compressed, int stored length,
+         int raw length, stored bytes.
+ </pre>
+
+ @see ColumnarFileReader
+ @see ColumnarWriter
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class ColumnarFileWriter {
+
+    /** Create a writer for the specified file.  If <i>append</i> is
+     *  true and the file is not empty, then the names and the types of
+     *  its columns must be the same as those given, and the rows are
+     *  appended after its last complete block.  Otherwise, the file is
+     *  created, or truncated if it exists.
+     *  @param file The file.
+     *  @param names The names of the columns.
+     *  @param types The types of the columns.
+     *  @param append True to append to an existing file.
+     *  @param compress True to compress the blocks.
+     *  @param blockSize The number of rows in a block.
+     *  @exception IOException If the file cannot be opened or written,
+     *   or if it is appended to and its columns are different.
+     *  @exception IllegalActionException If the types of the columns
+     *   of an existing file cannot be parsed.
+     */
+    public ColumnarFileWriter(File file, String[] names, Type[] types,
+            boolean append, boolean compress, int blockSize)
+                    throws IOException, IllegalActionException {
+        if (names.length != types.length) {
+            throw new IllegalArgumentException("There are " + names.length
+                    + " column names, but " + types.length + " types.");
+        }
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("The block size " + blockSize
+                    + " is not positive.");
+        }
+        _names = names;
+        _blockSize = blockSize;
+        _storage = new byte[types.length];
+        _columns = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            _storage[i] = storageCode(types[i]);
+            _columns[i] = _newColumn(_storage[i], blockSize);
+        }
+        _times = new double[blockSize];
+        _microsteps = new int[blockSize];
+        if (compress) {
+            _deflater = new Deflater(Deflater.BEST_SPEED);
+        }
+
+        long end = 0L;
+        if (append && file.length() > 0) {
+            ColumnarFileReader reader = new ColumnarFileReader(file);
+            try {
+                String[] existingNames = reader.getColumnNames();
+                Type[] existingTypes = reader.getColumnTypes();
+                boolean same = existingNames.length == names.length;
+                for (int i = 0; same && i < names.length; i++) {
+                    same = existingNames[i].equals(names[i])
+                            && existingTypes[i].equals(types[i]);
+                }
+                if (!same) {
+                    throw new IOException("Cannot append to " + file
+                            + ", because its columns are different.");
+                }
+                end = reader.getValidLength();
+            } finally {
+                reader.close();
+            }
+        }
+        _file = new RandomAccessFile(file, "rw");
+        _channel = _file.getChannel();
+        if (end > 0L) {
+            _channel.truncate(end);
+            _channel.position(end);
+        } else {
+            _channel.truncate(0L);
+            _writeHeader(types);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public variables                  ////
+
+    /** The magic number at the start of a columnar file, "PTCF". */
+    public static final int MAGIC = 0x50544346;
+
+    /** The version of the file format. */
+    public static final short VERSION = 1;
+
+    /** The storage code of boolean columns. */
+    public static final byte BOOLEAN = 0;
+
+    /** The storage code of int columns. */
+    public static final byte INT = 1;
+
+    /** The storage code of long columns. */
+    public static final byte LONG = 2;
+
+    /** The storage code of double columns. */
+    public static final byte DOUBLE = 3;
+
+    /** The storage code of string columns. */
+    public static final byte STRING = 4;
+
+    /** The storage code of columns stored as expressions. */
+    public static final byte EXPRESSION = 5;
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Write the buffered rows and close the file.
+     *  @exception IOException If the rows cannot be written.
+     */
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            if (_deflater != null) {
+                _deflater.end();
+            }
+            _file.close();
+        }
+    }
+
+    /** Write the buffered rows, if any, as a block.
+     *  @exception IOException If the rows cannot be written.
+     */
+    public void flush() throws IOException {
+        if (_rows == 0) {
+            return;
+        }
+        int rawLength = _rows * 12;
+        byte[][] strings = new byte[_columns.length][];
+        for (int i = 0; i < _columns.length; i++) {
+            switch (_storage[i]) {
+            case BOOLEAN:
+                rawLength += _rows;
+                break;
+            case INT:
+                rawLength += _rows * 4;
+                break;
+            case LONG:
+            case DOUBLE:
+                rawLength += _rows * 8;
+                break;
+            default:
+                // Encode the strings first to know their lengths.
+                String[] values = (String[]) _columns[i];
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream stream = new DataOutputStream(bytes);
+                for (int row = 0; row < _rows; row++) {
+                    byte[] encoded = values[row]
+                            .getBytes(StandardCharsets.UTF_8);
+                    stream.writeInt(encoded.length);
+                    stream.write(encoded);
+                }
+                strings[i] = bytes.toByteArray();
+                rawLength += strings[i].length;
+            }
+        }
+
+        ByteBuffer raw = _buffer(rawLength);
+        for (int row = 0; row < _rows; row++) {
+            raw.putDouble(_times[row]);
+        }
+        for (int row = 0; row < _rows; row++) {
+            raw.putInt(_microsteps[row]);
+        }
+        for (int i = 0; i < _columns.length; i++) {
+            switch (_storage[i]) {
+            case BOOLEAN:
+                boolean[] booleans = (boolean[]) _columns[i];
+                for (int row = 0; row < _rows; row++) {
+                    raw.put(booleans[row] ? (byte) 1 : (byte) 0);
+                }
+                break;
+            case INT:
+                raw.asIntBuffer().put((int[]) _columns[i], 0, _rows);
+                raw.position(raw.position() + _rows * 4);
+                break;
+            case LONG:
+                raw.asLongBuffer().put((long[]) _columns[i], 0, _rows);
+                raw.position(raw.position() + _rows * 8);
+                break;
+            case DOUBLE:
+                raw.asDoubleBuffer().put((double[]) _columns[i], 0, _rows);
+                raw.position(raw.position() + _rows * 8);
+                break;
+            default:
+                raw.put(strings[i]);
+            }
+        }
+
+        byte[] stored = raw.array();
+        int storedLength = rawLength;
+        boolean compressed = false;
+        if (_deflater != null) {
+            _deflater.reset();
+            _deflater.setInput(stored, 0, rawLength);
+            _deflater.finish();
+            if (_compressed == null || _compressed.length < rawLength) {
+                _compressed = new byte[rawLength];
+            }
+            int length = _deflater.deflate(_compressed);
+            // Keep the block uncompressed if compression does not
+            // make it smaller.
+            if (_deflater.finished() && length < rawLength) {
+                stored = _compressed;
+                storedLength = length;
+                compressed = true;
+            }
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(13);
+        header.putInt(_rows);
+        header.put(compressed ? (byte) 1 : (byte) 0);
+        header.putInt(storedLength);
+        header.putInt(rawLength);
+        header.flip();
+        ByteBuffer[] block = { header,
+                ByteBuffer.wrap(stored, 0, storedLength) };
+        while (block[1].hasRemaining()) {
+            _channel.write(block);
+        }
+        _rows = 0;
+    }
+
+    /** Return the storage code of the specified type.
+     *  @param type The type of a column.
+     *  @return One of {@link #BOOLEAN}, {@link #INT}, {@link #LONG},
+     *   {@link #DOUBLE}, {@link #STRING} and {@link #EXPRESSION}.
+     */
+    public static byte storageCode(Type type) {
+        if (type.equals(BaseType.BOOLEAN)) {
+            return BOOLEAN;
+        } else if (type.equals(BaseType.INT)) {
+            return INT;
+        } else if (type.equals(BaseType.LONG)) {
+            return LONG;
+        } else if (type.equals(BaseType.DOUBLE)) {
+            return DOUBLE;
+        } else if (type.equals(BaseType.STRING)) {
+            return STRING;
+        }
+        return EXPRESSION;
+    }
+
+    /** Add a row.  If the block is full, then write it.
+     *  @param time The double value of the model time of the row.
+     *  @param microstep The microstep of the row.
+     *  @param values The values of the columns, which are converted
+     *   to the types of the columns.
+     *  @exception IllegalActionException If a value cannot be converted
+     *   to the type of its column.
+     *  @exception IOException If the block cannot be written.
+     */
+    public void write(double time, int microstep, Token[] values)
+            throws IllegalActionException, IOException {
+        if (values.length != _columns.length) {
+            throw new IllegalActionException("There are " + values.length
+                    + " values, but " + _columns.length + " columns.");
+        }
+        _times[_rows] = time;
+        _microsteps[_rows] = microstep;
+        for (int i = 0; i < values.length; i++) {
+            Token value = values[i];
+            if (value == null) {
+                throw new IllegalActionException("No value for column "
+                        + _names[i] + ".");
+            }
+            switch (_storage[i]) {
+            case BOOLEAN:
+                ((boolean[]) _columns[i])[_rows] = BooleanToken.convert(value)
+                .booleanValue();
+                break;
+            case INT:
+                ((int[]) _columns[i])[_rows] = IntToken.convert(value)
+                .intValue();
+                break;
+            case LONG:
+                ((long[]) _columns[i])[_rows] = LongToken.convert(value)
+                .longValue();
+                break;
+            case DOUBLE:
+                ((double[]) _columns[i])[_rows] = DoubleToken.convert(value)
+                .doubleValue();
+                break;
+            case STRING:
+                ((String[]) _columns[i])[_rows] = StringToken.convert(value)
+                .stringValue();
+                break;
+            default:
+                ((String[]) _columns[i])[_rows] = value.toString();
+            }
+        }
+        _rows++;
+        if (_rows == _blockSize) {
+            flush();
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Return a buffer with at least the specified capacity, positioned
+     *  at zero.
+     */
+    private ByteBuffer _buffer(int capacity) {
+        if (_raw == null || _raw.capacity() < capacity) {
+            _raw = ByteBuffer.allocate(capacity);
+        }
+        _raw.clear();
+        return _raw;
+    }
+
+    /** Return an array to hold a column with the specified storage code.
+     */
+    private static Object _newColumn(byte storage, int size) {
+        switch (storage) {
+        case BOOLEAN:
+            return new boolean[size];
+        case INT:
+            return new int[size];
+        case LONG:
+            return new long[size];
+        case DOUBLE:
+            return new double[size];
+        default:
+            return new String[size];
+        }
+    }
+
+    /** Write the header of a new file. */
+    private void _writeHeader(Type[] types) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeInt(_names.length);
+        for (int i = 0; i < _names.length; i++) {
+            header.writeUTF(_names[i]);
+            header.writeUTF(types[i].toString());
+            header.writeByte(_storage[i]);
+        }
+        header.flush();
+        ByteBuffer buffer = ByteBuffer.allocate(10 + bytes.size());
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putInt(bytes.size());
+        buffer.put(bytes.toByteArray());
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            _channel.write(buffer);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The number of rows in a block. */
+    private int _blockSize;
+
+    /** The channel of the file. */
+    private FileChannel _channel;
+
+    /** The values of each column in the current block. */
+    private Object[] _columns;
+
+    /** The buffer of compressed blocks. */
+    private byte[] _compressed;
+
+    /** The compressor, or null if the blocks are not compressed. */
+    private Deflater _deflater;
+
+    /** The file. */
+    private RandomAccessFile _file;
+
+    /** The microsteps of the rows in the current block. */
+    private int[] _microsteps;
+
+    /** The names of the columns. */
+    private String[] _names;
+
+    /** The buffer of uncompressed blocks. */
+    private ByteBuffer _raw;
+
+    /** The number of rows in the current block. */
+    private int _rows;
+
+    /** The storage codes of the columns. */
+    private byte[] _storage;
+
+    /** The times of the rows in the current block. */
+    private double[] _times;
+}
@@ -0,0 +1,358 @@
+/* An actor that reads records from a binary columnar file.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.actor.lib.io;
+
+import java.io.File;
+import java.io.IOException;
+
+import ptolemy.actor.Director;
+import ptolemy.actor.SuperdenseTimeDirector;
+import ptolemy.actor.TypedIOPort;
+import ptolemy.actor.lib.Source;
+import ptolemy.actor.util.Time;
+import ptolemy.data.BooleanToken;
+import ptolemy.data.DoubleToken;
+import ptolemy.data.OrderedRecordToken;
+import ptolemy.data.Token;
+import ptolemy.data.expr.FileParameter;
+import ptolemy.data.expr.Parameter;
+import ptolemy.data.expr.SingletonParameter;
+import ptolemy.data.type.BaseType;
+import ptolemy.data.type.RecordType;
+import ptolemy.kernel.CompositeEntity;
+import ptolemy.kernel.util.IllegalActionException;
+import ptolemy.kernel.util.NameDuplicationException;
+import ptolemy.kernel.util.Workspace;
+
+///////////////////////////////////////////////////////////////////
+//// ColumnarReader
+
+/**
+ <p>This actor reads a binary columnar file written by
+ {@link ColumnarWriter} and outputs its rows, one per firing, as
+ ordered records whose fields are the columns of the file.
+ The type of the output is set in preinitialize() from the header
+ of the file, so the file must exist when the model is initialized.
+ The <i>timestamp</i> output produces the model time at which each row
+ was recorded.</p>
+ <p>
+ Before the last row is reached, the <i>endOfFile</i> output produces
+ <i>false</i>.  In the iteration where the last row is produced on the
+ <i>output</i> port, this actor produces <i>true</i> on the
+ <i>endOfFile</i> port, and postfire() returns false.</p>
+ <p>
+ If <i>replay</i> is <i>true</i>, then each row is produced at the
+ model time and microstep at which it was recorded.  The actor calls
+ fireAt() for the time of each row, and prefire() returns false before
+ that time.  This requires a director with a notion of time, such as
+ the DE director.  If <i>replay</i> is <i>false</i> (the default),
+ then the rows are produced one per firing, regardless of time.</p>
+
+ @see ColumnarWriter
+ @see ColumnarFileReader
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class ColumnarReader extends Source {
+    /** Construct an actor with the given container and name.
+     *  @param container The container.
+     *  @param name The name of this actor.
+     *  @exception IllegalActionException If the actor cannot be contained
+     *   by the proposed container.
+     *  @exception NameDuplicationException If the container already has an
+     *   actor with this name.
+     */
+    public ColumnarReader(CompositeEntity container, String name)
+            throws IllegalActionException, NameDuplicationException {
+        super(container, name);
+
+        output.setTypeAtMost(RecordType.EMPTY_RECORD);
+
+        endOfFile = new TypedIOPort(this, "endOfFile", false, true);
+        endOfFile.setTypeEquals(BaseType.BOOLEAN);
+        new SingletonParameter(endOfFile, "_showName")
+        .setToken(BooleanToken.TRUE);
+
+        timestamp = new TypedIOPort(this, "timestamp", false, true);
+        timestamp.setTypeEquals(BaseType.DOUBLE);
+        new SingletonParameter(timestamp, "_showName")
+        .setToken(BooleanToken.TRUE);
+
+        fileOrURL = new FileParameter(this, "fileOrURL");
+
+        replay = new Parameter(this, "replay");
+        replay.setTypeEquals(BaseType.BOOLEAN);
+        replay.setToken(BooleanToken.FALSE);
+
+        _attachText("_iconDescription", "<svg>\n"
+                + "<rect x=\"-25\" y=\"-20\" " + "width=\"50\" height=\"40\" "
+                + "style=\"fill:white\"/>\n"
+                + "<polygon points=\"-15,-10 -12,-10 -8,-14 -1,-14 3,-10"
+                + " 15,-10 15,10, -15,10\" " + "style=\"fill:red\"/>\n"
+                + "<text x=\"-11\" y=\"4\""
+                + "style=\"font-size:11; fill:white; font-family:SansSerif\">"
+                + "BIN</text>\n" + "</svg>\n");
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                     ports and parameters                  ////
+
+    /** An output port that produces <i>false</i> until the last row
+     *  is produced, at which point it produces <i>true</i>. The type
+     *  is boolean.
+     */
+    public TypedIOPort endOfFile;
+
+    /** The file name from which to read.  This is a string with
+     *  any form accepted by FileParameter that names a local file.
+     *  @see FileParameter
+     */
+    public FileParameter fileOrURL;
+
+    /** If <i>true</i>, then produce each row at the model time at which
+     *  it was recorded.  This is a boolean that defaults to <i>false</i>.
+     */
+    public Parameter replay;
+
+    /** An output port that produces the double value of the model time
+     *  at which the current row was recorded.
+     */
+    public TypedIOPort timestamp;
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Clone the actor into the specified workspace.
+     *  @param workspace The workspace for the new object.
+     *  @return A new actor.
+     *  @exception CloneNotSupportedException If a derived class contains
+     *   an attribute that cannot be cloned.
+     */
+    @Override
+    public Object clone(Workspace workspace) throws CloneNotSupportedException {
+        ColumnarReader newObject = (ColumnarReader) super.clone(workspace);
+        newObject.output.setTypeAtMost(RecordType.EMPTY_RECORD);
+        newObject._names = null;
+        newObject._reader = null;
+        newObject._record = null;
+        return newObject;
+    }
+
+    /** Output the current row, its time stamp, and whether it is the
+     *  last row.
+     *  @exception IllegalActionException If the file has no rows.
+     */
+    @Override
+    public void fire() throws IllegalActionException {
+        super.fire();
+        if (_record == null) {
+            throw new IllegalActionException(this, "The file '"
+                    + fileOrURL.stringValue() + "' does not have any data.");
+        }
+        output.broadcast(_record);
+        timestamp.broadcast(new DoubleToken(_time));
+        endOfFile.broadcast(BooleanToken.getInstance(!_rowPending));
+    }
+
+    /** Open the file and read the first row.  If <i>replay</i> is
+     *  true, request a firing at the time of the first row.
+     *  @exception IllegalActionException If the file cannot be read.
+     */
+    @Override
+    public void initialize() throws IllegalActionException {
+        super.initialize();
+        _close();
+        _reader = _openReader();
+        _replay = ((BooleanToken) replay.getToken()).booleanValue();
+        _rowPending = _nextRow();
+        _readRow();
+    }
+
+    /** Read the next row.  If the current row is the last row, then
+     *  return false.
+     *  @exception IllegalActionException If the file cannot be read.
+     */
+    @Override
+    public boolean postfire() throws IllegalActionException {
+        boolean returnValue = super.postfire();
+        if (!_rowPending) {
+            return false;
+        }
+        _readRow();
+        return returnValue;
+    }
+
+    /** If <i>replay</i> is true, return false before the time of the
+     *  current row.  Otherwise, return what the base class returns.
+     *  @return True if the actor is ready to fire.
+     *  @exception IllegalActionException If the base class throws it.
+     */
+    @Override
+    public boolean prefire() throws IllegalActionException {
+        if (_replay && _record != null) {
+            Director director = getDirector();
+            int comparison = director.getModelTime().compareTo(_modelTime);
+            if (comparison < 0 || comparison == 0
+                    && director instanceof SuperdenseTimeDirector
+                    && ((SuperdenseTimeDirector) director)
+                    .getIndex() < _microstep) {
+                return false;
+            }
+        }
+        return super.prefire();
+    }
+
+    /** Read the header of the file and set the type of the output
+     *  to a record type with its columns.
+     *  @exception IllegalActionException If the file cannot be read.
+     */
+    @Override
+    public void preinitialize() throws IllegalActionException {
+        super.preinitialize();
+        ColumnarFileReader reader = _openReader();
+        try {
+            _names = reader.getColumnNames();
+            output.setTypeEquals(new RecordType(_names,
+                    reader.getColumnTypes()));
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException ex) {
+                throw new IllegalActionException(this, ex,
+                        "Failed to close " + fileOrURL.stringValue());
+            }
+        }
+    }
+
+    /** Close the file.
+     *  @exception IllegalActionException If the file cannot be closed.
+     */
+    @Override
+    public void wrapup() throws IllegalActionException {
+        super.wrapup();
+        _close();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Close the reader, if it is open. */
+    private void _close() throws IllegalActionException {
+        if (_reader != null) {
+            try {
+                _reader.close();
+            } catch (IOException ex) {
+                throw new IllegalActionException(this, ex,
+                        "Failed to close " + fileOrURL.stringValue());
+            } finally {
+                _reader = null;
+            }
+        }
+    }
+
+    /** Advance the reader to the next row, and return false if
+     *  there is none.
+     */
+    private boolean _nextRow() throws IllegalActionException {
+        try {
+            return _reader.nextRow();
+        } catch (IOException ex) {
+            throw new IllegalActionException(this, ex, "Failed to read "
+                    + fileOrURL.stringValue());
+        }
+    }
+
+    /** Open the file. */
+    private ColumnarFileReader _openReader() throws IllegalActionException {
+        File file = fileOrURL.asFile();
+        if (file == null || !file.isFile()) {
+            throw new IllegalActionException(this, "The file '"
+                    + fileOrURL.stringValue() + "' does not exist.");
+        }
+        try {
+            return new ColumnarFileReader(file);
+        } catch (IOException ex) {
+            throw new IllegalActionException(this, ex, "Failed to open "
+                    + file);
+        }
+    }
+
+    /** Make the row of the reader the current row, advance the reader,
+     *  and, if <i>replay</i> is true, request a firing at the time of
+     *  the new current row.
+     */
+    private void _readRow() throws IllegalActionException {
+        if (!_rowPending) {
+            _record = null;
+            return;
+        }
+        Token[] values = new Token[_names.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = _reader.getToken(i);
+        }
+        _record = new OrderedRecordToken(_names, values);
+        _time = _reader.getTime();
+        _microstep = _reader.getMicrostep();
+        _rowPending = _nextRow();
+        if (_replay) {
+            Director director = getDirector();
+            _modelTime = new Time(director, _time);
+            director.fireAt(this, _modelTime, _microstep);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The microstep of the current row. */
+    private int _microstep;
+
+    /** The model time of the current row, if replay is true. */
+    private Time _modelTime;
+
+    /** The names of the columns. */
+    private String[] _names;
+
+    /** The reader of the file, or null if it is not open. */
+    private ColumnarFileReader _reader;
+
+    /** The current row, or null if the file has no rows. */
+    private OrderedRecordToken _record;
+
+    /** The value of the replay parameter. */
+    private boolean _replay;
+
+    /** True if there is a row after the current row. */
+    private boolean _rowPending;
+
+    /** The double value of the time of the current row. */
+    private double _time;
+}
@@ -0,0 +1,318 @@
+/* An actor that writes records to a binary columnar file.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.actor.lib.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+
+import ptolemy.actor.Director;
+import ptolemy.actor.SuperdenseTimeDirector;
+import ptolemy.actor.lib.Sink;
+import ptolemy.data.BooleanToken;
+import ptolemy.data.IntToken;
+import ptolemy.data.RecordToken;
+import ptolemy.data.Token;
+import ptolemy.data.expr.FileParameter;
+import ptolemy.data.expr.Parameter;
+import ptolemy.data.type.BaseType;
+import ptolemy.data.type.RecordType;
+import ptolemy.data.type.Type;
+import ptolemy.kernel.CompositeEntity;
+import ptolemy.kernel.util.Attribute;
+import ptolemy.kernel.util.IllegalActionException;
+import ptolemy.kernel.util.NameDuplicationException;
+import ptolemy.kernel.util.Workspace;
+import ptolemy.util.MessageHandler;
+
+///////////////////////////////////////////////////////////////////
+//// ColumnarWriter
+
+/**
+ <p>This actor reads record-valued input tokens and appends them to a
+ binary columnar file, which can be read back by {@link ColumnarReader}.
+ Each field of the record is a column of the file, and each input is
+ a row, which is time stamped with the current model time and
+ microstep.  The names of the columns are the labels of the first
+ input, and their types are the resolved types of the fields of the
+ input.  See {@link ColumnarFileWriter} for the format of the file.</p>
+ <p>
+ Unlike {@link CSVWriter}, this actor does not format the tokens as text.
+ Fields of type boolean, int, long, double and string are buffered as
+ primitive values in columns of <i>blockSize</i> rows, and each full
+ block is written to the file with one write, compressed if
+ <i>compress</i> is true.  The last block is written in wrapup().</p>
+ <p>
+ The file is specified by the <i>fileName</i> attribute
+ using any form acceptable to {@link FileParameter} that names a
+ local file.</p>
+ <p>
+ If the <i>append</i> attribute has value <i>true</i> and the file
+ exists, then the rows are appended to it, and the columns of the
+ file must be the same as those of the input.  If it has value
+ <i>false</i>, then if the file exists and <i>confirmOverwrite</i> is
+ <i>true</i> (the default), the user will be queried for permission
+ to overwrite, and if granted, the file will be overwritten.</p>
+
+ @see ColumnarReader
+ @see CSVWriter
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class ColumnarWriter extends Sink {
+    /** Construct an actor with the given container and name.
+     *  @param container The container.
+     *  @param name The name of this actor.
+     *  @exception IllegalActionException If the actor cannot be contained
+     *   by the proposed container.
+     *  @exception NameDuplicationException If the container already has an
+     *   actor with this name.
+     */
+    public ColumnarWriter(CompositeEntity container, String name)
+            throws IllegalActionException, NameDuplicationException {
+        super(container, name);
+
+        input.setTypeAtMost(RecordType.EMPTY_RECORD);
+
+        fileName = new FileParameter(this, "fileName");
+
+        append = new Parameter(this, "append");
+        append.setTypeEquals(BaseType.BOOLEAN);
+        append.setToken(BooleanToken.FALSE);
+
+        confirmOverwrite = new Parameter(this, "confirmOverwrite");
+        confirmOverwrite.setTypeEquals(BaseType.BOOLEAN);
+        confirmOverwrite.setToken(BooleanToken.TRUE);
+
+        blockSize = new Parameter(this, "blockSize");
+        blockSize.setTypeEquals(BaseType.INT);
+        blockSize.setExpression("4096");
+
+        compress = new Parameter(this, "compress");
+        compress.setTypeEquals(BaseType.BOOLEAN);
+        compress.setToken(BooleanToken.TRUE);
+
+        _attachText("_iconDescription", "<svg>\n"
+                + "<rect x=\"-25\" y=\"-20\" " + "width=\"50\" height=\"40\" "
+                + "style=\"fill:white\"/>\n"
+                + "<polygon points=\"-15,-10 -12,-10 -8,-14 -1,-14 3,-10"
+                + " 15,-10 15,10, -15,10\" " + "style=\"fill:red\"/>\n"
+                + "<text x=\"-11\" y=\"4\""
+                + "style=\"font-size:11; fill:white; font-family:SansSerif\">"
+                + "BIN</text>\n" + "</svg>\n");
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                     ports and parameters                  ////
+
+    /** If <i>true</i>, then append to the specified file.  If <i>false</i>
+     *  (the default), then overwrite any preexisting file after asking
+     *  the user for permission.
+     */
+    public Parameter append;
+
+    /** The number of rows that are buffered and written together.
+     *  This is an int that defaults to 4096, and it must be positive.
+     */
+    public Parameter blockSize;
+
+    /** If <i>true</i> (the default), then compress each block.
+     */
+    public Parameter compress;
+
+    /** If <i>false</i>, then overwrite the specified file if it exists
+     *  without asking.  If <i>true</i> (the default), then if the file
+     *  exists, ask for confirmation before overwriting.
+     */
+    public Parameter confirmOverwrite;
+
+    /** The file name to which to write.  This is a string with
+     *  any form accepted by FileParameter that names a local file.
+     *  @see FileParameter
+     */
+    public FileParameter fileName;
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** If the specified attribute is <i>blockSize</i>, then check that
+     *  it is positive.
+     *  @param attribute The attribute that has changed.
+     *  @exception IllegalActionException If the block size is not
+     *   positive.
+     */
+    @Override
+    public void attributeChanged(Attribute attribute)
+            throws IllegalActionException {
+        if (attribute == blockSize) {
+            if (((IntToken) blockSize.getToken()).intValue() < 1) {
+                throw new IllegalActionException(this,
+                        "The block size must be positive.");
+            }
+        } else {
+            super.attributeChanged(attribute);
+        }
+    }
+
+    /** Clone the actor into the specified workspace.
+     *  @param workspace The workspace for the new object.
+     *  @return A new actor.
+     *  @exception CloneNotSupportedException If a derived class contains
+     *   an attribute that cannot be cloned.
+     */
+    @Override
+    public Object clone(Workspace workspace) throws CloneNotSupportedException {
+        ColumnarWriter newObject = (ColumnarWriter) super.clone(workspace);
+        newObject.input.setTypeAtMost(RecordType.EMPTY_RECORD);
+        newObject._fieldNames = null;
+        newObject._values = null;
+        newObject._writer = null;
+        return newObject;
+    }
+
+    /** Read an input record from each input channel and add it to the
+     *  file as a row.  If the file is not open for writing then open it.
+     *  @exception IllegalActionException If the file cannot be opened
+     *   or written, if the user refuses to overwrite an existing file,
+     *   or if an input does not have the fields of the first input.
+     */
+    @Override
+    public boolean postfire() throws IllegalActionException {
+        Director director = getDirector();
+        double time = director.getModelTime().getDoubleValue();
+        int microstep = 0;
+        if (director instanceof SuperdenseTimeDirector) {
+            microstep = ((SuperdenseTimeDirector) director).getIndex();
+        }
+        for (int i = 0; i < input.getWidth(); i++) {
+            if (input.hasToken(i)) {
+                RecordToken record = (RecordToken) input.get(i);
+                if (_writer == null) {
+                    _open(record);
+                }
+                int column = 0;
+                for (String field : _fieldNames) {
+                    _values[column++] = record.get(field);
+                }
+                try {
+                    _writer.write(time, microstep, _values);
+                } catch (IOException ex) {
+                    throw new IllegalActionException(this, ex,
+                            "Failed to write to " + fileName.stringValue());
+                }
+            }
+        }
+        return super.postfire();
+    }
+
+    /** Write the last block and close the file, if it is open.
+     *  @exception IllegalActionException If the file cannot be written.
+     */
+    @Override
+    public void wrapup() throws IllegalActionException {
+        super.wrapup();
+        if (_writer != null) {
+            try {
+                _writer.close();
+            } catch (IOException ex) {
+                throw new IllegalActionException(this, ex,
+                        "Failed to close " + fileName.stringValue());
+            } finally {
+                _writer = null;
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Open the file, with the columns given by the specified record
+     *  and the resolved type of the input.
+     */
+    private void _open(RecordToken record) throws IllegalActionException {
+        File file = fileName.asFile();
+        if (file == null) {
+            throw new IllegalActionException(this,
+                    "No file name has been specified.");
+        }
+        boolean appendValue = ((BooleanToken) append.getToken())
+                .booleanValue();
+        boolean confirmOverwriteValue = ((BooleanToken) confirmOverwrite
+                .getToken()).booleanValue();
+        // Don't ask for confirmation in append mode, since there
+        // will be no loss of data.
+        if (file.exists() && !appendValue && confirmOverwriteValue) {
+            // FIXME: This should be called in the event thread!
+            // There is a chance of deadlock since it is not.
+            if (!MessageHandler.yesNoQuestion("OK to overwrite " + file
+                    + "?")) {
+                throw new IllegalActionException(this,
+                        "Please select another file name.");
+            }
+        }
+
+        // Note that we get the labelSet from the record, which
+        // may be ordered if this is an OrderedRecordToken.
+        _fieldNames = record.labelSet();
+        String[] names = _fieldNames.toArray(new String[_fieldNames.size()]);
+        Type[] types = new Type[names.length];
+        Type inputType = input.getType();
+        for (int i = 0; i < names.length; i++) {
+            if (inputType instanceof RecordType) {
+                types[i] = ((RecordType) inputType).get(names[i]);
+            }
+            if (types[i] == null || !types[i].isInstantiable()) {
+                types[i] = record.get(names[i]).getType();
+            }
+        }
+        _values = new Token[names.length];
+        try {
+            _writer = new ColumnarFileWriter(file, names, types, appendValue,
+                    ((BooleanToken) compress.getToken()).booleanValue(),
+                    ((IntToken) blockSize.getToken()).intValue());
+        } catch (IOException ex) {
+            throw new IllegalActionException(this, ex, "Failed to open "
+                    + file);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The labels of the first input. */
+    private Set<String> _fieldNames;
+
+    /** The values of the current row. */
+    private Token[] _values;
+
+    /** The writer of the file, or null if it is not open. */
+    private ColumnarFileWriter _writer;
+}
@@ -0,0 +1,445 @@
+/* A reader of delimited text files that maps the file into memory.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.actor.lib.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import ptolemy.data.BooleanToken;
+import ptolemy.data.DoubleToken;
+import ptolemy.data.IntToken;
+import ptolemy.data.Token;
+
+///////////////////////////////////////////////////////////////////
+//// MappedCSVFile
+
+/**
+ A reader of the rows of a delimited text file, such as a CSV file,
+ that maps the file into memory instead of reading it through a
+ stream.
+ <p>
+ The file is mapped one window at a time, so files that are larger
+ than the memory, or than the largest buffer that can be mapped at
+ once, can be read.  When a row crosses the end of a window, the next
+ window starts at the beginning of that row, so a row cannot be longer
+ than a window.  The rows are found and split into fields by scanning
+ the bytes of the window, and a string is created for a field only
+ when it is requested.
+ <p>
+ As with {@link java.util.StringTokenizer}, which is used by
+ {@link CSVReader} when it reads the file through a stream, each
+ character of the delimiters string separates fields, and consecutive
+ delimiters are treated as one.  The delimiters must be ASCII
+ characters, and the file must use an encoding in which ASCII
+ characters are represented by single bytes, such as UTF-8 or
+ ISO-8859-1.  Rows end with a line feed, a carriage return, or a
+ carriage return followed by a line feed.
+ <p>
+ The {@link #getToken(int)} method parses integer, double and boolean
+ literals directly, without the expression parser, and returns the
+ same tokens as the expression parser would for them.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class MappedCSVFile {
+    /** Open a file for reading with windows of 64 megabytes.
+     *  @param file The file.
+     *  @param delimiters The characters that separate fields.
+     *  @param trim True if spaces around the fields are to be removed.
+     *  @exception IOException If the file cannot be opened.
+     */
+    public MappedCSVFile(File file, String delimiters, boolean trim)
+            throws IOException {
+        this(file, delimiters, trim, 64 * 1024 * 1024);
+    }
+
+    /** Open a file for reading with windows of the specified size.
+     *  @param file The file.
+     *  @param delimiters The characters that separate fields.
+     *  @param trim True if spaces around the fields are to be removed.
+     *  @param windowSize The number of bytes of the file that are mapped
+     *   at once, which is also the maximum length of a row.
+     *  @exception IOException If the file cannot be opened.
+     *  @exception IllegalArgumentException If a delimiter is not an
+     *   ASCII character or the window size is not positive.
+     */
+    public MappedCSVFile(File file, String delimiters, boolean trim,
+            int windowSize) throws IOException {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("The window size "
+                    + windowSize + " is not positive.");
+        }
+        for (int i = 0; i < delimiters.length(); i++) {
+            char delimiter = delimiters.charAt(i);
+            if (delimiter >= 128) {
+                throw new IllegalArgumentException("The delimiter '"
+                        + delimiter + "' is not an ASCII character.");
+            }
+            _isDelimiter[delimiter] = true;
+        }
+        _trim = trim;
+        _windowSize = windowSize;
+        _file = new RandomAccessFile(file, "r");
+        _channel = _file.getChannel();
+        _fileSize = _channel.size();
+        _map(0);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Close the file.
+     *  @exception IOException If the file cannot be closed.
+     */
+    public void close() throws IOException {
+        _buffer = null;
+        _file.close();
+    }
+
+    /** Return the number of fields of the current row.
+     *  @return The number of fields.
+     */
+    public int getFieldCount() {
+        return _fieldCount;
+    }
+
+    /** Return a field of the current row as a string.
+     *  @param field The index of the field.
+     *  @return The field.
+     */
+    public String getString(int field) {
+        int start = _fieldStarts[field];
+        int length = _fieldEnds[field] - start;
+        if (_bytes.length < length) {
+            _bytes = new byte[Math.max(length, 2 * _bytes.length)];
+        }
+        for (int i = 0; i < length; i++) {
+            _bytes[i] = _buffer.get(start + i);
+        }
+        return new String(_bytes, 0, length, _CHARSET);
+    }
+
+    /** Return a field of the current row as a token if it is an
+     *  integer, double or boolean literal, and null otherwise.
+     *  The literals that are recognized are decimal integers with at
+     *  most nine digits, which are returned as an IntToken, decimal
+     *  numbers with a fraction or an exponent, which are returned as
+     *  a DoubleToken, and true and false.  The fields that are not
+     *  recognized, such as octal or long integers and expressions,
+     *  should be evaluated by the expression parser.
+     *  @param field The index of the field.
+     *  @return A token, or null if the field is not a literal that
+     *   is recognized.
+     */
+    public Token getToken(int field) {
+        int position = _fieldStarts[field];
+        int end = _fieldEnds[field];
+        if (position == end) {
+            return null;
+        }
+        byte first = _buffer.get(position);
+        if (first == 't' || first == 'f') {
+            return _booleanToken(position, end);
+        }
+        boolean negative = first == '-';
+        if (negative) {
+            position++;
+        }
+        int digitsStart = position;
+        long value = 0;
+        while (position < end) {
+            byte character = _buffer.get(position);
+            if (character < '0' || character > '9') {
+                break;
+            }
+            value = value * 10 + character - '0';
+            position++;
+        }
+        int digits = position - digitsStart;
+        if (position == end) {
+            // An integer.  A leading zero denotes an octal integer, and
+            // the integers with more digits may be longs.
+            if (digits == 0 || digits > 9 || digits > 1
+                    && _buffer.get(digitsStart) == '0') {
+                return null;
+            }
+            return new IntToken((int) (negative ? -value : value));
+        }
+        return _doubleToken(negative, digitsStart, digits, position, end);
+    }
+
+    /** Move to the next row of the file and split it into fields.
+     *  @return False if there are no more rows.
+     *  @exception IOException If the next window of the file cannot
+     *   be mapped, or if the row is longer than a window.
+     */
+    public boolean nextRow() throws IOException {
+        if (_bufferStart + _position >= _fileSize) {
+            _fieldCount = 0;
+            return false;
+        }
+        int end = _findRowEnd();
+        if (end < 0) {
+            // The row crosses the end of the window, so map the next
+            // window from the beginning of the row.
+            _map(_bufferStart + _position);
+            end = _findRowEnd();
+            if (end < 0) {
+                throw new IOException("A row at position "
+                        + (_bufferStart + _position)
+                        + " is longer than " + _windowSize + " bytes.");
+            }
+        }
+        _split(_position, end);
+
+        // Skip the end of the row.
+        int limit = _buffer.limit();
+        _position = end;
+        if (_position < limit && _buffer.get(_position) == '\r') {
+            _position++;
+        }
+        if (_position < limit && _buffer.get(_position) == '\n') {
+            _position++;
+        }
+        return true;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    // Return the boolean token for the field between the two positions,
+    // or null if it is not "true" or "false".
+    private Token _booleanToken(int position, int end) {
+        String literal = end - position == 4 ? "true" : end - position == 5 ? "false"
+                : null;
+        if (literal == null) {
+            return null;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (_buffer.get(position + i) != literal.charAt(i)) {
+                return null;
+            }
+        }
+        return literal.equals("true") ? BooleanToken.TRUE : BooleanToken.FALSE;
+    }
+
+    // Return true if the byte at the specified position is a delimiter.
+    private boolean _delimiterAt(int position) {
+        byte character = _buffer.get(position);
+        return character >= 0 && _isDelimiter[character];
+    }
+
+    // Return the double token for the field that starts with the
+    // specified number of digits, and continues at the specified
+    // position with a fraction or an exponent, or null if the rest of
+    // the field does not have the syntax of a double literal.
+    private Token _doubleToken(boolean negative, int digitsStart,
+            int digits, int position, int end) {
+        if (digits > 1 && _buffer.get(digitsStart) == '0') {
+            return null;
+        }
+        if (_buffer.get(position) == '.') {
+            position++;
+            int fractionStart = position;
+            position = _skipDigits(position, end);
+            if (position == fractionStart) {
+                return null;
+            }
+        } else if (digits == 0) {
+            return null;
+        }
+        if (position < end) {
+            byte character = _buffer.get(position);
+            if (character != 'e' && character != 'E') {
+                return null;
+            }
+            position++;
+            if (position < end) {
+                character = _buffer.get(position);
+                if (character == '+' || character == '-') {
+                    position++;
+                }
+            }
+            int exponentStart = position;
+            position = _skipDigits(position, end);
+            if (position == exponentStart || position < end) {
+                return null;
+            }
+        }
+        int length = end - digitsStart;
+        char[] characters = new char[length];
+        for (int i = 0; i < length; i++) {
+            characters[i] = (char) _buffer.get(digitsStart + i);
+        }
+        double value = Double.parseDouble(new String(characters));
+        // The expression parser negates by subtracting from zero, so
+        // -0.0 is 0.0.
+        return new DoubleToken(negative ? 0.0 - value : value);
+    }
+
+    // Return the position of the end of the row that starts at the
+    // current position, or -1 if the row may continue past the end of
+    // the window.
+    private int _findRowEnd() {
+        int limit = _buffer.limit();
+        for (int i = _position; i < limit; i++) {
+            byte character = _buffer.get(i);
+            if (character == '\n') {
+                return i;
+            }
+            if (character == '\r') {
+                // A carriage return may be followed by a line feed in
+                // the next window.
+                if (i + 1 == limit && _bufferStart + limit < _fileSize) {
+                    return -1;
+                }
+                return i;
+            }
+        }
+        if (_bufferStart + limit < _fileSize) {
+            return -1;
+        }
+        return limit;
+    }
+
+    // Map the window of the file that starts at the specified position.
+    private void _map(long start) throws IOException {
+        long size = Math.min(_windowSize, _fileSize - start);
+        _buffer = _channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        _bufferStart = start;
+        _position = 0;
+    }
+
+    // Return the position of the first character at or after the
+    // specified position that is not a digit.
+    private int _skipDigits(int position, int end) {
+        while (position < end) {
+            byte character = _buffer.get(position);
+            if (character < '0' || character > '9') {
+                break;
+            }
+            position++;
+        }
+        return position;
+    }
+
+    // Split the row between the two positions into fields.
+    private void _split(int start, int end) {
+        _fieldCount = 0;
+        int position = start;
+        while (position < end) {
+            while (position < end && _delimiterAt(position)) {
+                position++;
+            }
+            if (position == end) {
+                break;
+            }
+            int fieldStart = position;
+            while (position < end && !_delimiterAt(position)) {
+                position++;
+            }
+            int fieldEnd = position;
+            if (_trim) {
+                while (fieldStart < fieldEnd
+                        && (_buffer.get(fieldStart) & 0xff) <= ' ') {
+                    fieldStart++;
+                }
+                while (fieldEnd > fieldStart
+                        && (_buffer.get(fieldEnd - 1) & 0xff) <= ' ') {
+                    fieldEnd--;
+                }
+            }
+            if (_fieldCount == _fieldStarts.length) {
+                int[] starts = new int[2 * _fieldCount];
+                int[] ends = new int[2 * _fieldCount];
+                System.arraycopy(_fieldStarts, 0, starts, 0, _fieldCount);
+                System.arraycopy(_fieldEnds, 0, ends, 0, _fieldCount);
+                _fieldStarts = starts;
+                _fieldEnds = ends;
+            }
+            _fieldStarts[_fieldCount] = fieldStart;
+            _fieldEnds[_fieldCount] = fieldEnd;
+            _fieldCount++;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The current window of the file. */
+    private MappedByteBuffer _buffer;
+
+    /** The position in the file of the start of the current window. */
+    private long _bufferStart;
+
+    /** A buffer for the bytes of a field that is decoded. */
+    private byte[] _bytes = new byte[64];
+
+    /** The channel of the file. */
+    private FileChannel _channel;
+
+    /** The encoding of the file, which is the encoding used by
+     *  FileParameter.openForReading().
+     */
+    private static final Charset _CHARSET = Charset.defaultCharset();
+
+    /** The number of fields of the current row. */
+    private int _fieldCount;
+
+    /** The positions in the window of the ends of the fields. */
+    private int[] _fieldEnds = new int[16];
+
+    /** The positions in the window of the starts of the fields. */
+    private int[] _fieldStarts = new int[16];
+
+    /** The file. */
+    private RandomAccessFile _file;
+
+    /** The size of the file. */
+    private long _fileSize;
+
+    /** Whether each ASCII character is a delimiter. */
+    private boolean[] _isDelimiter = new boolean[128];
+
+    /** The position in the window of the start of the next row. */
+    private int _position;
+
+    /** True if spaces around the fields are to be removed. */
+    private boolean _trim;
+
+    /** The maximum number of bytes of the file that are mapped at once. */
+    private int _windowSize;
+}
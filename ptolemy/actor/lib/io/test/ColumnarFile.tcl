@@ -0,0 +1,150 @@
+# Test ColumnarFileWriter and ColumnarFileReader
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2016 The Regents of the University of California.
+# All rights reserved.
+#
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+#
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+#
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+#
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Ptolemy II test bed, see $PTII/doc/coding/testing.html for more information.
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then {
+    source testDefs.tcl
+} {}
+
+# Return a new ColumnarFileWriter for a file with an int column "n"
+# and a string column "s".
+proc _columnarWriter {file append compress blockSize} {
+    set names [java::new {String[]} 2 {n s}]
+    set types [java::new {ptolemy.data.type.Type[]} 2 \
+	    [list [java::field ptolemy.data.type.BaseType INT] \
+		 [java::field ptolemy.data.type.BaseType STRING]]]
+    return [java::new ptolemy.actor.lib.io.ColumnarFileWriter \
+	    $file $names $types $append $compress $blockSize]
+}
+
+# Write rows with n from first to last to the writer.
+proc _columnarWrite {writer first last} {
+    for {set n $first} {$n <= $last} {incr n} {
+	set values [java::new {ptolemy.data.Token[]} 2 \
+		[list [java::new ptolemy.data.IntToken $n] \
+		     [java::new ptolemy.data.StringToken "row$n"]]]
+	$writer write [expr {$n * 0.5}] 0 $values
+    }
+}
+
+# Read all the rows of the file and return them as a list.
+proc _columnarRows {file} {
+    set reader [java::new ptolemy.actor.lib.io.ColumnarFileReader $file]
+    set rows {}
+    while {[$reader nextRow]} {
+	lappend rows [list [$reader getTime] \
+		[[$reader getToken 0] toString] [[$reader getToken 1] toString]]
+    }
+    $reader close
+    return $rows
+}
+
+set file [java::call java.io.File createTempFile columnar .ptcf]
+$file deleteOnExit
+
+######################################################################
+####
+#
+test ColumnarFile-1.1 {Write and read several blocks} {
+    set writer [_columnarWriter $file false true 2]
+    _columnarWrite $writer 1 5
+    $writer close
+    _columnarRows $file
+} {{0.5 1 {"row1"}} {1.0 2 {"row2"}} {1.5 3 {"row3"}} {2.0 4 {"row4"}} {2.5 5 {"row5"}}}
+
+######################################################################
+####
+#
+test ColumnarFile-1.2 {Append to the file without compression} {
+    set writer [_columnarWriter $file true false 2]
+    _columnarWrite $writer 6 7
+    $writer close
+    lrange [_columnarRows $file] 4 end
+} {{2.5 5 {"row5"}} {3.0 6 {"row6"}} {3.5 7 {"row7"}}}
+
+######################################################################
+####
+#
+test ColumnarFile-1.3 {An incomplete block at the end is ignored} {
+    set length [$file length]
+    set raf [java::new java.io.RandomAccessFile $file rw]
+    # Add a block header and part of its data, as if the writer
+    # was killed while writing.
+    $raf seek $length
+    $raf writeInt 3
+    $raf writeByte 0
+    $raf writeInt 100
+    $raf writeInt 100
+    $raf writeInt 42
+    $raf close
+    set rows [llength [_columnarRows $file]]
+    set reader [java::new ptolemy.actor.lib.io.ColumnarFileReader $file]
+    set valid [$reader getValidLength]
+    $reader close
+    list $rows [expr {[$file length] - $valid}]
+} {7 17}
+
+######################################################################
+####
+#
+test ColumnarFile-1.4 {Appending overwrites an incomplete block} {
+    set writer [_columnarWriter $file true true 16]
+    _columnarWrite $writer 8 8
+    $writer close
+    lrange [_columnarRows $file] 6 end
+} {{3.5 7 {"row7"}} {4.0 8 {"row8"}}}
+
+######################################################################
+####
+#
+test ColumnarFile-1.5 {Appending with different columns is an error} {
+    set names [java::new {String[]} 1 {n}]
+    set types [java::new {ptolemy.data.type.Type[]} 1 \
+	    [list [java::field ptolemy.data.type.BaseType DOUBLE]]]
+    catch {java::new ptolemy.actor.lib.io.ColumnarFileWriter \
+	    $file $names $types true true 16} errMsg
+    regsub {append to .* because} $errMsg {append to FILE, because} errMsg
+    list $errMsg
+} {{java.io.IOException: Cannot append to FILE, because its columns are different.}}
+
+######################################################################
+####
+#
+test ColumnarFile-1.6 {A file that is not a columnar file} {
+    set other [java::call java.io.File createTempFile columnar .txt]
+    $other deleteOnExit
+    catch {java::new ptolemy.actor.lib.io.ColumnarFileReader $other} errMsg
+    regsub {: .* is not} $errMsg {: FILE is not} errMsg
+    list $errMsg
+} {{java.io.IOException: FILE is not a columnar file.}}
@@ -0,0 +1,214 @@
+/* Compare the throughput of ColumnarWriter and CSVWriter.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+ */
+package ptolemy.actor.lib.io.test;
+
+import java.io.File;
+
+import ptolemy.actor.Manager;
+import ptolemy.actor.TypedCompositeActor;
+import ptolemy.actor.TypedIOPort;
+import ptolemy.actor.lib.Discard;
+import ptolemy.actor.lib.Ramp;
+import ptolemy.actor.lib.RecordAssembler;
+import ptolemy.actor.lib.Sink;
+import ptolemy.actor.lib.io.CSVReader;
+import ptolemy.actor.lib.io.CSVWriter;
+import ptolemy.actor.lib.io.ColumnarReader;
+import ptolemy.actor.lib.io.ColumnarWriter;
+import ptolemy.actor.lib.io.LineWriter;
+import ptolemy.data.type.BaseType;
+import ptolemy.data.type.RecordType;
+import ptolemy.data.type.Type;
+import ptolemy.domains.sdf.kernel.SDFDirector;
+
+///////////////////////////////////////////////////////////////////
+//// ColumnarWriterBenchmark
+
+/**
+ Write the same records with {@link ColumnarWriter} and {@link CSVWriter},
+ and read them back with {@link ColumnarReader} and {@link CSVReader},
+ and print the time and the size of the file of each.
+ <p>
+ Each record has an int field and two double fields, produced by Ramp
+ actors and a RecordAssembler under an SDF director.  To separate the
+ cost of writing from the cost of producing the records, the model is
+ also run with a Discard actor in place of the writer.
+ <p>
+ To run, use:
+ <pre>
+ java -classpath $PTII ptolemy.actor.lib.io.test.ColumnarWriterBenchmark [-rows n]
+ </pre>
+ The number of rows defaults to 1000000.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class ColumnarWriterBenchmark {
+
+    /** Run the benchmark and print the results.
+     *  @param args Optional "-rows n" arguments.
+     *  @exception Exception If a model cannot be constructed or run.
+     */
+    public static void main(String[] args) throws Exception {
+        int rows = 1000000;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("-rows")) {
+                rows = Integer.parseInt(args[i + 1]);
+            } else {
+                System.err.println("Usage: java -classpath $PTII "
+                        + "ptolemy.actor.lib.io.test.ColumnarWriterBenchmark "
+                        + "[-rows n]");
+                return;
+            }
+        }
+        File csvFile = File.createTempFile("benchmark", ".csv");
+        File columnarFile = File.createTempFile("benchmark", ".ptcf");
+        csvFile.deleteOnExit();
+        columnarFile.deleteOnExit();
+
+        System.out.println("rows: " + rows);
+        System.out.println("sink\twrite (ms)\trows/s\tfile size (bytes)");
+        // Run each model twice, and report the second run, after the
+        // classes are loaded and compiled.
+        for (int run = 0; run < 2; run++) {
+            boolean report = run == 1;
+            _write(rows, "Discard", null, report);
+            _write(rows, "CSVWriter", csvFile, report);
+            _write(rows, "ColumnarWriter", columnarFile, report);
+        }
+        System.out.println("source\tread (ms)\trows/s");
+        for (int run = 0; run < 2; run++) {
+            boolean report = run == 1;
+            _read("CSVReader", csvFile, report);
+            _read("ColumnarReader", columnarFile, report);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Read the file with the specified reader into a Discard actor. */
+    private static void _read(String kind, File file, boolean report)
+            throws Exception {
+        TypedCompositeActor toplevel = new TypedCompositeActor();
+        toplevel.setName("read");
+        SDFDirector director = new SDFDirector(toplevel, "director");
+        director.iterations.setExpression("0");
+        Discard discard = new Discard(toplevel, "discard");
+        if (kind.equals("CSVReader")) {
+            CSVReader reader = new CSVReader(toplevel, "reader");
+            reader.fileOrURL.setExpression(file.getPath());
+            // CSVReader relies on backward type inference for the
+            // type of its output, so declare the type of the records.
+            reader.output.setTypeEquals(new RecordType(_FIELDS,
+                    new Type[] { BaseType.INT, BaseType.DOUBLE,
+                            BaseType.DOUBLE }));
+            toplevel.connect(reader.output, discard.input);
+        } else {
+            ColumnarReader reader = new ColumnarReader(toplevel, "reader");
+            reader.fileOrURL.setExpression(file.getPath());
+            toplevel.connect(reader.output, discard.input);
+        }
+        long elapsed = _run(toplevel);
+        if (report) {
+            System.out.println(kind + "\t" + elapsed / 1000000 + "\t"
+                    + _rate(_rows, elapsed));
+        }
+    }
+
+    /** Return the number of rows per second. */
+    private static long _rate(int rows, long nanoseconds) {
+        return nanoseconds == 0 ? 0 : rows * 1000000000L / nanoseconds;
+    }
+
+    /** Run the model and return the time it took in nanoseconds. */
+    private static long _run(TypedCompositeActor toplevel) throws Exception {
+        Manager manager = new Manager(toplevel.workspace(), "manager");
+        toplevel.setManager(manager);
+        long startTime = System.nanoTime();
+        manager.execute();
+        return System.nanoTime() - startTime;
+    }
+
+    /** Write the records with the specified sink. */
+    private static void _write(int rows, String kind, File file,
+            boolean report) throws Exception {
+        TypedCompositeActor toplevel = new TypedCompositeActor();
+        toplevel.setName("write");
+        SDFDirector director = new SDFDirector(toplevel, "director");
+        director.iterations.setExpression(Integer.toString(rows));
+        director.period.setExpression("0.001");
+
+        RecordAssembler assembler = new RecordAssembler(toplevel, "assembler");
+        String[] steps = { "1", "0.001", "-0.25" };
+        String[] inits = { "0", "0.0", "100.0" };
+        for (int i = 0; i < _FIELDS.length; i++) {
+            Ramp ramp = new Ramp(toplevel, "ramp" + i);
+            ramp.init.setExpression(inits[i]);
+            ramp.step.setExpression(steps[i]);
+            TypedIOPort port = new TypedIOPort(assembler, _FIELDS[i], true,
+                    false);
+            toplevel.connect(ramp.output, port);
+        }
+
+        Sink sink;
+        if (kind.equals("Discard")) {
+            sink = new Discard(toplevel, "sink");
+        } else if (kind.equals("CSVWriter")) {
+            LineWriter writer = new CSVWriter(toplevel, "sink");
+            writer.fileName.setExpression(file.getPath());
+            writer.confirmOverwrite.setExpression("false");
+            sink = writer;
+        } else {
+            ColumnarWriter writer = new ColumnarWriter(toplevel, "sink");
+            writer.fileName.setExpression(file.getPath());
+            writer.confirmOverwrite.setExpression("false");
+            sink = writer;
+        }
+        toplevel.connect(assembler.output, sink.input);
+
+        long elapsed = _run(toplevel);
+        _rows = rows;
+        if (report) {
+            System.out.println(kind + "\t" + elapsed / 1000000 + "\t"
+                    + _rate(rows, elapsed) + "\t"
+                    + (file == null ? "" : Long.toString(file.length())));
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The fields of the records. */
+    private static final String[] _FIELDS = { "n", "position", "velocity" };
+
+    /** The number of rows that were written. */
+    private static int _rows;
+}
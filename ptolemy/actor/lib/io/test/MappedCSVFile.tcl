@@ -0,0 +1,126 @@
+# Test MappedCSVFile
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2016 The Regents of the University of California.
+# All rights reserved.
+#
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+#
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+#
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+#
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Ptolemy II test bed, see $PTII/doc/coding/testing.html for more information.
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then {
+    source testDefs.tcl
+} {}
+
+# Write the given bytes to a temporary file and return the File.
+proc _mappedCSVTestFile {contents} {
+    set file [java::call java.io.File createTempFile mappedCSV .csv]
+    $file deleteOnExit
+    set stream [java::new java.io.FileOutputStream $file]
+    $stream write [[java::new String $contents] getBytes "US-ASCII"]
+    $stream close
+    return $file
+}
+
+# Read all the rows of a MappedCSVFile and return a list of lists of fields.
+proc _mappedCSVRows {mapped} {
+    set rows {}
+    while {[$mapped nextRow]} {
+	set row {}
+	for {set i 0} {$i < [$mapped getFieldCount]} {incr i} {
+	    lappend row [$mapped getString $i]
+	}
+	lappend rows $row
+    }
+    $mapped close
+    return $rows
+}
+
+######################################################################
+####
+#
+test MappedCSVFile-1.1 {Rows that cross the window boundary} {
+    set file [_mappedCSVTestFile "a,b\n12,3.5\r\nxyz\r,,q\nlast"]
+    set mapped [java::new ptolemy.actor.lib.io.MappedCSVFile \
+	    $file "," false 8]
+    _mappedCSVRows $mapped
+} {{a b} {12 3.5} xyz q last}
+
+######################################################################
+####
+#
+test MappedCSVFile-1.2 {Trimming and a multi-character delimiter set} {
+    set file [_mappedCSVTestFile " a ;b\t c\n"]
+    set mapped [java::new ptolemy.actor.lib.io.MappedCSVFile \
+	    $file ";\t" true]
+    _mappedCSVRows $mapped
+} {{a b c}}
+
+######################################################################
+####
+#
+test MappedCSVFile-1.3 {Literal fields agree with the expression parser} {
+    set file [_mappedCSVTestFile "1,-3,010,1.5e3,-0.0,true,abc,2.\n"]
+    set mapped [java::new ptolemy.actor.lib.io.MappedCSVFile \
+	    $file "," false]
+    $mapped nextRow
+    set results {}
+    for {set i 0} {$i < [$mapped getFieldCount]} {incr i} {
+	set token [$mapped getToken $i]
+	if {[java::isnull $token]} {
+	    lappend results null
+	} else {
+	    lappend results [$token toString]
+	}
+    }
+    $mapped close
+    set results
+} {1 -3 null 1500.0 0.0 true null null}
+
+######################################################################
+####
+#
+test MappedCSVFile-1.4 {A row longer than the window is an error} {
+    set file [_mappedCSVTestFile "0123456789\n"]
+    set mapped [java::new ptolemy.actor.lib.io.MappedCSVFile \
+	    $file "," false 4]
+    catch {$mapped nextRow} errMsg
+    $mapped close
+    list $errMsg
+} {{java.io.IOException: A row at position 0 is longer than 4 bytes.}}
+
+######################################################################
+####
+#
+test MappedCSVFile-1.5 {Delimiters must be ASCII} {
+    set file [_mappedCSVTestFile "a\n"]
+    catch {java::new ptolemy.actor.lib.io.MappedCSVFile \
+	    $file "\u00e9" false} errMsg
+    regsub {'.'} $errMsg {'x'} errMsg
+    list $errMsg
+} {{java.lang.IllegalArgumentException: The delimiter 'x' is not an ASCII character.}}
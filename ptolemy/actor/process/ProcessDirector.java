@@ -39,10 +39,15 @@ import ptolemy.actor.IOPort;
 import ptolemy.actor.Initializable;
 import ptolemy.actor.Manager;
 import ptolemy.actor.Receiver;
+import ptolemy.data.IntToken;
+import ptolemy.data.expr.Parameter;
+import ptolemy.data.type.BaseType;
 import ptolemy.kernel.CompositeEntity;
+import ptolemy.kernel.util.Attribute;
 import ptolemy.kernel.util.IllegalActionException;
 import ptolemy.kernel.util.NameDuplicationException;
 import ptolemy.kernel.util.NamedObj;
+import ptolemy.kernel.util.Settable;
 import ptolemy.kernel.util.Workspace;
 
 ///////////////////////////////////////////////////////////////////
@@ -71,6 +76,11 @@ import ptolemy.kernel.util.Workspace;
  models. In order to accommodate hierarchical, heterogeneity the subclass
  CompositeProcessDirector must be used.
  <P>
+ Each process is executed by its own thread. The <i>threadStackSize</i>
+ parameter sets the stack size of these threads. Most actors need only
+ a small part of the default stack size of the virtual machine, so a
+ smaller stack size makes it possible to execute models with many more
+ processes.
  <P>
  @author Mudit Goel, Neil Smyth, John S. Davis II
  @version $Id$
@@ -89,6 +99,7 @@ public class ProcessDirector extends Director {
     public ProcessDirector() throws IllegalActionException,
     NameDuplicationException {
         super();
+        _init();
     }
 
     /** Construct a director in the workspace with an empty name.
@@ -101,6 +112,7 @@ public class ProcessDirector extends Director {
     public ProcessDirector(Workspace workspace) throws IllegalActionException,
     NameDuplicationException {
         super(workspace);
+        _init();
     }
 
     /** Construct a director in the given container with the given name.
@@ -119,8 +131,21 @@ public class ProcessDirector extends Director {
     public ProcessDirector(CompositeEntity container, String name)
             throws IllegalActionException, NameDuplicationException {
         super(container, name);
+        _init();
     }
 
+    ///////////////////////////////////////////////////////////////////
+    ////                         parameters                        ////
+
+    /** The stack size of the threads that execute the processes, in
+     *  bytes.  This is an integer that defaults to 0, which means that
+     *  the default stack size of the virtual machine is used.  Note
+     *  that the virtual machine may round the value up or ignore it.
+     *  Changes to this parameter take effect when the threads are
+     *  created, which is in initialize().
+     */
+    public Parameter threadStackSize;
+
     ///////////////////////////////////////////////////////////////////
     ////                         public methods                    ////
 
@@ -148,6 +173,28 @@ public class ProcessDirector extends Director {
         notifyAll();
     }
 
+    /** If the argument is the <i>threadStackSize</i> parameter, then
+     *  check that it is not negative.
+     *  @param attribute The attribute that changed.
+     *  @exception IllegalActionException If the stack size is negative,
+     *   or if the base class throws it.
+     */
+    @Override
+    public void attributeChanged(Attribute attribute)
+            throws IllegalActionException {
+        if (attribute == threadStackSize) {
+            int stackSize = ((IntToken) threadStackSize.getToken()).intValue();
+            if (stackSize < 0) {
+                throw new IllegalActionException(this,
+                        "threadStackSize must not be negative. It was: "
+                                + stackSize);
+            }
+            _threadStackSize = stackSize;
+        } else {
+            super.attributeChanged(attribute);
+        }
+    }
+
     /** Clone the director into the specified workspace. The new object is
      *  <i>not</i> added to the directory of that workspace (It must be added
      *  by the user if he wants it to be there).
@@ -844,9 +891,28 @@ public class ProcessDirector extends Director {
      */
     protected boolean _notDone = true;
 
+    ///////////////////////////////////////////////////////////////////
+    ////                         package friendly methods          ////
+
+    /** Return the stack size of the threads that execute the processes.
+     *  @return The value of the <i>threadStackSize</i> parameter.
+     */
+    long _getThreadStackSize() {
+        return _threadStackSize;
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////                         private methods                   ////
 
+    /** Create the parameters. */
+    private void _init() throws IllegalActionException,
+            NameDuplicationException {
+        threadStackSize = new Parameter(this, "threadStackSize",
+                new IntToken(0));
+        threadStackSize.setTypeEquals(BaseType.INT);
+        threadStackSize.setVisibility(Settable.EXPERT);
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////                         protected variables               ////
 
@@ -863,4 +929,7 @@ public class ProcessDirector extends Director {
      *  stopFire().
      */
     private boolean _stopFireRequested = false;
+
+    /** The value of the threadStackSize parameter. */
+    private long _threadStackSize = 0L;
 }
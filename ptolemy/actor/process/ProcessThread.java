@@ -84,21 +84,19 @@ public class ProcessThread extends PtolemyThread {
      *  the actor.
      */
     public ProcessThread(Actor actor, ProcessDirector director) {
-        super();
+        // Set the name of the thread to the full name of the actor,
+        // and the stack size to the one given by the director.
+        super(null, null, _threadName(actor), director
+                ._getThreadStackSize());
         _actor = actor;
         _director = director;
         _manager = actor.getManager();
+        _name = getName();
 
         if (_actor instanceof NamedObj) {
-            _name = ((NamedObj) _actor).getFullName();
             addDebugListener((NamedObj) _actor);
-        } else {
-            _name = "Unnamed";
         }
 
-        // Set the name of the thread to the full name of the actor.
-        setName(_name);
-
         // This method is called here and not in the run() method as the
         // count should be incremented before any thread is started
         // or made active. This is because the second started thread might
@@ -366,6 +364,19 @@ public class ProcessThread extends PtolemyThread {
     /** The Manager of the actor. */
     protected Manager _manager;
 
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Return the full name of the actor, or "Unnamed" if it is not
+     *  a NamedObj.
+     */
+    private static String _threadName(Actor actor) {
+        if (actor instanceof NamedObj) {
+            return ((NamedObj) actor).getFullName();
+        }
+        return "Unnamed";
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////                         private variables                 ////
 
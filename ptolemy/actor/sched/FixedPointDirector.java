@@ -416,7 +416,7 @@ SuperdenseTimeDirector {
         if (container == null) {
             return false;
         }
-        Iterator actors = container.deepEntityList().iterator();
+        Iterator actors = container.unmodifiableDeepEntityList().iterator();
 
         while (result && actors.hasNext() && !_stopRequested) {
             Actor actor = (Actor) actors.next();
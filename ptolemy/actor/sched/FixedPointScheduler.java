@@ -100,7 +100,7 @@ public class FixedPointScheduler extends Scheduler {
         try {
             sortedActors = causality.topologicalSort();
         } catch (IllegalActionException ex) {
-            sortedActors = compositeActor.deepEntityList();
+            sortedActors = compositeActor.unmodifiableDeepEntityList();
         }
         Schedule schedule = new Schedule();
         if (_debugging) {
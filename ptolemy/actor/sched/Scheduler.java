@@ -333,7 +333,7 @@ public class Scheduler extends Attribute {
         StaticSchedulingDirector director = (StaticSchedulingDirector) getContainer();
         CompositeActor compositeActor = (CompositeActor) director
                 .getContainer();
-        List actors = compositeActor.deepEntityList();
+        List actors = compositeActor.unmodifiableDeepEntityList();
         Schedule schedule = new Schedule();
         Iterator actorIterator = actors.iterator();
 
@@ -0,0 +1,150 @@
+/* Measure the throughput of IOPort.send() and get() versus thread count.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+ */
+package ptolemy.actor.test;
+
+import ptolemy.actor.CompositeActor;
+import ptolemy.actor.Director;
+import ptolemy.actor.IORelation;
+import ptolemy.data.IntToken;
+import ptolemy.data.Token;
+import ptolemy.kernel.util.Workspace;
+
+///////////////////////////////////////////////////////////////////
+//// IOPortThroughput
+
+/**
+ Measure the throughput of IOPort.send() and IOPort.get() as a function
+ of the number of threads that share one workspace, with and without
+ optimistic reads enabled in the workspace.
+ Each thread owns an IdentityActor whose output is connected to its
+ own input, and repeatedly sends a token and gets it back, so the only
+ shared state is the workspace.
+ <p>
+ To run, use:
+ <pre>
+ java -classpath $PTII ptolemy.actor.test.IOPortThroughput [maxThreads [iterations]]
+ </pre>
+ The number of threads is doubled from 1 up to <i>maxThreads</i>,
+ which defaults to the number of available processors.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class IOPortThroughput {
+
+    /** Run the measurement and print the number of send/get pairs per
+     *  second for each thread count.
+     *  @param args An optional maximum number of threads followed by
+     *   an optional number of iterations per thread.
+     *  @exception Exception If the model cannot be constructed or a
+     *   thread fails.
+     */
+    public static void main(String[] args) throws Exception {
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        int iterations = 1000000;
+        if (args.length > 0) {
+            maxThreads = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            iterations = Integer.parseInt(args[1]);
+        }
+        System.out.println("threads\tlocking (ops/s)\toptimistic (ops/s)");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            double locking = measure(threads, iterations, false);
+            double optimistic = measure(threads, iterations, true);
+            System.out.println(threads + "\t" + Math.round(locking) + "\t"
+                    + Math.round(optimistic));
+        }
+    }
+
+    /** Return the aggregate number of send/get pairs per second.
+     *  @param threads The number of threads.
+     *  @param iterations The number of send/get pairs per thread.
+     *  @param optimistic True to enable optimistic reads in the workspace.
+     *  @return The number of send/get pairs per second.
+     *  @exception Exception If the model cannot be constructed or a
+     *   thread fails.
+     */
+    public static double measure(int threads, final int iterations,
+            boolean optimistic) throws Exception {
+        Workspace workspace = new Workspace("w");
+        CompositeActor top = new CompositeActor(workspace);
+        top.setName("top");
+        new Director(top, "director");
+
+        final IdentityActor[] actors = new IdentityActor[threads];
+        for (int i = 0; i < threads; i++) {
+            actors[i] = new IdentityActor(top, "actor" + i);
+            IORelation relation = (IORelation) top.connect(actors[i].output,
+                    actors[i].input);
+            relation.setWidth(1);
+            actors[i].input.createReceivers();
+        }
+        workspace.setOptimisticReadsEnabled(optimistic);
+
+        final Exception[] failure = new Exception[1];
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final IdentityActor actor = actors[i];
+            workers[i] = new Thread() {
+                @Override
+                public void run() {
+                    Token token = new IntToken(1);
+                    try {
+                        for (int j = 0; j < iterations; j++) {
+                            actor.output.send(0, token);
+                            actor.input.get(0);
+                        }
+                    } catch (Exception ex) {
+                        synchronized (failure) {
+                            failure[0] = ex;
+                        }
+                    }
+                }
+            };
+        }
+
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        synchronized (failure) {
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+        return (double) threads * iterations * 1.0e9 / elapsed;
+    }
+}
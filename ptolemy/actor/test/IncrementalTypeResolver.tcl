@@ -0,0 +1,177 @@
+# Tests for the IncrementalTypeResolver class
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2016 The Regents of the University of California.
+# All rights reserved.
+#
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+#
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+#
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+#
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Ptolemy II test bed, see $PTII/doc/coding/testing.html for more information.
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then {
+    source testDefs.tcl
+} {}
+
+# Uncomment this to get a full report, or set in your Tcl shell window.
+# set VERBOSE 1
+
+# Return the types of the ports in the global list ports.
+proc portTypes {} {
+    global ports
+    set result {}
+    foreach port $ports {
+        lappend result [[$port getType] toString]
+    }
+    return $result
+}
+
+# Return the statistics of the last resolution of the resolver.
+proc lastResolution {resolver} {
+    list [$resolver getResolutionCount] \
+	[$resolver getFullResolutionCount] \
+	[$resolver getLastSolvedConstraintCount] \
+	[$resolver getLastConstraintCount]
+}
+
+######################################################################
+####
+#
+test IncrementalTypeResolver-1.1 {Resolve all the types the first time} {
+    # Two independent chains: E1 -> E2 -> E3 and E4 -> E5.
+    set e0 [java::new ptolemy.actor.TypedCompositeActor]
+    $e0 setName E0
+    $e0 setDirector [java::new ptolemy.actor.Director]
+    set tDouble [[java::new ptolemy.data.DoubleToken] getType]
+    set tInt [[java::new ptolemy.data.IntToken] getType]
+
+    set e1 [java::new ptolemy.actor.TypedAtomicActor $e0 E1]
+    set p1 [java::new ptolemy.actor.TypedIOPort $e1 P1 false true]
+    $p1 setTypeEquals $tDouble
+    set e2 [java::new ptolemy.actor.TypedAtomicActor $e0 E2]
+    set p21 [java::new ptolemy.actor.TypedIOPort $e2 P21 true false]
+    set p22 [java::new ptolemy.actor.TypedIOPort $e2 P22 false true]
+    set e3 [java::new ptolemy.actor.TypedAtomicActor $e0 E3]
+    set p31 [java::new ptolemy.actor.TypedIOPort $e3 P31 true false]
+    set p32 [java::new ptolemy.actor.TypedIOPort $e3 P32 false true]
+    set e4 [java::new ptolemy.actor.TypedAtomicActor $e0 E4]
+    set p4 [java::new ptolemy.actor.TypedIOPort $e4 P4 false true]
+    $p4 setTypeEquals $tInt
+    set e5 [java::new ptolemy.actor.TypedAtomicActor $e0 E5]
+    set p5 [java::new ptolemy.actor.TypedIOPort $e5 P5 true false]
+
+    set r12 [$e0 connect $p1 $p21 R12]
+    set r23 [$e0 connect $p22 $p31 R23]
+    set r45 [$e0 connect $p4 $p5 R45]
+    set ports [list $p1 $p21 $p22 $p31 $p32 $p4 $p5]
+
+    set resolver [java::new ptolemy.actor.IncrementalTypeResolver]
+    $resolver resolveTypes $e0
+    list [portTypes] [lastResolution $resolver]
+} {{double double double double double int int} {1 1 5 5}}
+
+######################################################################
+####
+#
+test IncrementalTypeResolver-1.2 {Resolve again without changes} {
+    # Uses the setup above.
+    $resolver resolveTypes $e0
+    list [portTypes] [lastResolution $resolver]
+} {{double double double double double int int} {2 1 0 5}}
+
+######################################################################
+####
+#
+test IncrementalTypeResolver-1.3 {Change a declared type} {
+    # Only the constraints of the first chain are solved.
+    $p1 setTypeEquals $tInt
+    $resolver resolveTypes $e0
+    set incremental [portTypes]
+    set statistics [lastResolution $resolver]
+    java::call ptolemy.actor.TypedCompositeActor resolveTypes $e0
+    list $incremental [portTypes] $statistics
+} {{int int int int int int int} {int int int int int int int} {3 1 4 5}}
+
+######################################################################
+####
+#
+test IncrementalTypeResolver-1.4 {Remove a connection} {
+    # The types of E3 are reset, because they are now unconstrained.
+    $p22 unlink $r23
+    $resolver resolveTypes $e0
+    set incremental [portTypes]
+    set statistics [lastResolution $resolver]
+    java::call ptolemy.actor.TypedCompositeActor resolveTypes $e0
+    list $incremental [portTypes] $statistics
+} {{int int int unknown unknown int int} {int int int unknown unknown int int} {4 1 3 4}}
+
+######################################################################
+####
+#
+test IncrementalTypeResolver-1.5 {A type conflict is reported} {
+    # Reconnect E2 to E3, and declare the input of E3 to be boolean,
+    # which is not greater than or equal to int.
+    $p22 link $r23
+    $p31 setTypeEquals [java::field ptolemy.data.type.BaseType BOOLEAN]
+    catch {$resolver resolveTypes $e0} msg
+    list $msg
+} {{ptolemy.actor.TypeConflictException: Type conflicts occurred in .E0 on the following inequalities:
+  (port .E0.E2.P22: int) <= (port .E0.E3.P31: boolean)
+}}
+
+######################################################################
+####
+#
+test IncrementalTypeResolver-1.6 {After a conflict, all the types are resolved} {
+    $p31 setTypeEquals [java::field ptolemy.data.type.BaseType UNKNOWN]
+    $resolver resolveTypes $e0
+    list [portTypes] [lastResolution $resolver]
+} {{int int int int int int int} {6 3 5 5}}
+
+######################################################################
+####
+#
+test IncrementalTypeResolver-2.1 {The Manager resolves types incrementally} {
+    set e0 [sdfModel 3]
+    set manager [$e0 getManager]
+    set ramp [java::new ptolemy.actor.lib.Ramp $e0 ramp]
+    set rec [java::new ptolemy.actor.lib.Recorder $e0 rec]
+    $e0 connect \
+	[java::field [java::cast ptolemy.actor.lib.Source $ramp] output] \
+	[java::field [java::cast ptolemy.actor.lib.Sink $rec] input]
+    $manager initialize
+    # Change the type of the ramp while the model is running.
+    set step [getParameter $ramp step]
+    $step setExpression 0.5
+    $manager invalidateResolvedTypes
+    $manager iterate
+    $manager iterate
+    $manager wrapup
+    set resolver [$manager getTypeResolver]
+    list [enumToTokenValues [$rec getRecord 0]] \
+	[$resolver getResolutionCount] [$resolver getFullResolutionCount]
+} {{0.0 0.5} 2 1}
@@ -0,0 +1,180 @@
+/* Measure the time it takes to start running a model with lazy composites.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+ */
+package ptolemy.actor.test;
+
+import ptolemy.actor.CompositeActor;
+import ptolemy.actor.LazyTypedCompositeActor;
+import ptolemy.actor.Manager;
+import ptolemy.kernel.util.Workspace;
+import ptolemy.moml.MoMLParser;
+
+///////////////////////////////////////////////////////////////////
+//// LazyPopulationBenchmark
+
+/**
+ Build a model with many lazy composites and print the time it takes
+ to parse it and the time it takes to preinitialize it, which is when
+ lazy composites are populated.  The <i>mode</i> is one of
+ <ul>
+ <li> "serial": the lazy composites are populated by preinitialize(),
+ which is the default;
+ <li> "parallel": the Manager calls
+ {@link LazyTypedCompositeActor#populateAll(ptolemy.kernel.CompositeEntity)}
+ before preinitialize();
+ <li> "prefetch": the lazy composites are populated in the background
+ after the model is parsed, and the benchmark waits for a given number
+ of milliseconds before preinitializing, as a user would before running
+ the model.
+ </ul>
+ <p>
+ Each lazy composite contains a lazy composite and actors of a number
+ of different classes.  Since a class is loaded only once, each mode
+ should be run in its own JVM, and the first run is the one that
+ matters.
+ <p>
+ To run, use:
+ <pre>
+ java -classpath $PTII ptolemy.actor.test.LazyPopulationBenchmark [-composites n] [-actors n] [-mode serial|parallel|prefetch] [-wait ms]
+ </pre>
+ The number of composites defaults to 200, the number of actors of
+ each composite to 20, the mode to serial and the wait to 1000.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class LazyPopulationBenchmark {
+
+    /** Run the benchmark and print the results.
+     *  @param args Optional "-composites n", "-actors n", "-mode m" and
+     *   "-wait ms" arguments.
+     *  @exception Exception If the model cannot be built or
+     *   preinitialized.
+     */
+    public static void main(String[] args) throws Exception {
+        int composites = 200;
+        int actors = 20;
+        String mode = "serial";
+        long wait = 1000;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("-composites")) {
+                composites = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-actors")) {
+                actors = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-mode")) {
+                mode = args[i + 1];
+            } else if (args[i].equals("-wait")) {
+                wait = Long.parseLong(args[i + 1]);
+            } else {
+                System.err.println("Usage: java -classpath $PTII "
+                        + "ptolemy.actor.test.LazyPopulationBenchmark "
+                        + "[-composites n] [-actors n] "
+                        + "[-mode serial|parallel|prefetch] [-wait ms]");
+                return;
+            }
+        }
+
+        StringBuffer moml = new StringBuffer("<entity name=\"top\" "
+                + "class=\"ptolemy.actor.TypedCompositeActor\">\n"
+                + "<property name=\"director\" "
+                + "class=\"ptolemy.actor.Director\"/>\n");
+        for (int i = 0; i < composites; i++) {
+            moml.append("<entity name=\"c" + i + "\" "
+                    + "class=\"ptolemy.actor.LazyTypedCompositeActor\">\n"
+                    + "<configure><group>\n"
+                    + "<entity name=\"inner\" "
+                    + "class=\"ptolemy.actor.LazyTypedCompositeActor\">\n"
+                    + "<configure><group>\n");
+            _appendActors(moml, actors, i);
+            moml.append("</group></configure>\n</entity>\n");
+            _appendActors(moml, actors, i + 1);
+            moml.append("</group></configure>\n</entity>\n");
+        }
+        moml.append("</entity>\n");
+
+        LazyTypedCompositeActor.setParallelPopulation(mode.equals("parallel"));
+        LazyTypedCompositeActor.setPrefetch(mode.equals("prefetch"));
+
+        Workspace workspace = new Workspace();
+        MoMLParser parser = new MoMLParser(workspace);
+        long startTime = System.nanoTime();
+        CompositeActor toplevel = (CompositeActor) parser.parse(moml
+                .toString());
+        long parseTime = System.nanoTime() - startTime;
+
+        if (mode.equals("prefetch")) {
+            Thread.sleep(wait);
+        }
+
+        Manager manager = new Manager(workspace, "manager");
+        toplevel.setManager(manager);
+        startTime = System.nanoTime();
+        manager.preinitializeAndResolveTypes();
+        long preinitializeTime = System.nanoTime() - startTime;
+        manager.wrapup();
+
+        System.out.println("actors: "
+                + toplevel.lazyAllAtomicEntityList().size());
+        System.out.println("mode\tparse (ms)\tpreinitialize (ms)");
+        System.out.println(mode + "\t" + parseTime / 1000000 + "\t"
+                + preinitializeTime / 1000000);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Append MoML for the specified number of actors, whose classes
+     *  are taken in turn from _CLASSES, starting at the specified offset.
+     */
+    private static void _appendActors(StringBuffer moml, int actors,
+            int offset) {
+        for (int i = 0; i < actors; i++) {
+            moml.append("<entity name=\"a" + i + "\" class=\""
+                    + _CLASSES[(offset + i) % _CLASSES.length] + "\"/>\n");
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    // The classes of the actors in the lazy composites.
+    private static final String[] _CLASSES = {
+            "ptolemy.actor.lib.AbsoluteValue",
+            "ptolemy.actor.lib.Accumulator", "ptolemy.actor.lib.AddSubtract",
+            "ptolemy.actor.lib.Average", "ptolemy.actor.lib.Const",
+            "ptolemy.actor.lib.Counter", "ptolemy.actor.lib.Discard",
+            "ptolemy.actor.lib.Limiter", "ptolemy.actor.lib.Maximum",
+            "ptolemy.actor.lib.Minimum", "ptolemy.actor.lib.MultiplyDivide",
+            "ptolemy.actor.lib.Pulse", "ptolemy.actor.lib.Quantizer",
+            "ptolemy.actor.lib.Ramp", "ptolemy.actor.lib.Scale",
+            "ptolemy.actor.lib.Sequence", "ptolemy.actor.lib.TrigFunction",
+            "ptolemy.actor.lib.conversions.BooleanToAnything",
+            "ptolemy.actor.lib.logic.Comparator",
+            "ptolemy.actor.lib.logic.LogicGate" };
+}
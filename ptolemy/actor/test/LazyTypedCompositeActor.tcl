@@ -183,3 +183,97 @@ test LazyTypedCompositeActor-12.1 {deepConnectedIn(out)Ports} {
     </configure>
 </class>
 }
+
+set lazyMoML {<?xml version="1.0" standalone="no"?>
+<!DOCTYPE entity PUBLIC "-//UC Berkeley//DTD MoML 1//EN"
+    "http://ptolemy.eecs.berkeley.edu/xml/dtd/MoML_1.dtd">
+<entity name="top" class="ptolemy.actor.TypedCompositeActor">
+    <property name="director" class="ptolemy.actor.Director"/>
+    <class name="C" extends="ptolemy.actor.LazyTypedCompositeActor">
+        <configure>
+            <group>
+                <entity name="ramp" class="ptolemy.actor.lib.Ramp"/>
+            </group>
+        </configure>
+    </class>
+    <entity name="A" class="ptolemy.actor.LazyTypedCompositeActor">
+        <configure>
+            <group>
+                <entity name="const" class="ptolemy.actor.lib.Const"/>
+                <entity name="B" class="ptolemy.actor.LazyTypedCompositeActor">
+                    <configure>
+                        <group>
+                            <entity name="ramp" class="ptolemy.actor.lib.Ramp"/>
+                        </group>
+                    </configure>
+                </entity>
+            </group>
+        </configure>
+    </entity>
+    <entity name="D" class=".top.C"/>
+</entity>
+}
+
+# Return the names of the atomic entities that are deeply contained by
+# a composite and that are instantiated.
+proc lazyDeepNames {composite} {
+    set result {}
+    set entities [$composite lazyDeepEntityList]
+    for {set i 0} {$i < [$entities size]} {incr i} {
+	lappend result [[java::cast ptolemy.kernel.util.NamedObj \
+		[$entities get $i]] getFullName]
+    }
+    return [lsort $result]
+}
+
+######################################################################
+####
+#
+test LazyTypedCompositeActor-13.1 {populateAll populates nested lazy composites} {
+    set parser [java::new ptolemy.moml.MoMLParser]
+    set toplevel [java::cast ptolemy.actor.CompositeActor \
+	    [$parser parse $lazyMoML]]
+    set before [lazyDeepNames $toplevel]
+    java::call ptolemy.actor.LazyTypedCompositeActor populateAll $toplevel
+    list $before [lazyDeepNames $toplevel]
+} {{} {.top.A.B.ramp .top.A.const .top.D.ramp}}
+
+######################################################################
+####
+#
+test LazyTypedCompositeActor-13.2 {The Manager populates lazy composites before preinitialize} {
+    java::call ptolemy.actor.LazyTypedCompositeActor setParallelPopulation true
+    set parser [java::new ptolemy.moml.MoMLParser]
+    set toplevel [java::cast ptolemy.actor.CompositeActor \
+	    [$parser parse $lazyMoML]]
+    set manager [java::new ptolemy.actor.Manager [$toplevel workspace] \
+	    manager]
+    $toplevel setManager $manager
+    catch {$manager preinitializeAndResolveTypes} errMsg
+    $manager wrapup
+    java::call ptolemy.actor.LazyTypedCompositeActor setParallelPopulation false
+    list [java::call ptolemy.actor.LazyTypedCompositeActor \
+	      isParallelPopulation] [lazyDeepNames $toplevel]
+} {0 {.top.A.B.ramp .top.A.const .top.D.ramp}}
+
+######################################################################
+####
+#
+test LazyTypedCompositeActor-13.3 {Prefetch lazy composites after a model is parsed} {
+    java::call ptolemy.actor.LazyTypedCompositeActor setPrefetch true
+    set parser [java::new ptolemy.moml.MoMLParser]
+    set toplevel [java::cast ptolemy.actor.CompositeActor \
+	    [$parser parse $lazyMoML]]
+    java::call ptolemy.actor.LazyTypedCompositeActor setPrefetch false
+    # Wait for the background thread.
+    for {set i 0} {$i < 100} {incr i} {
+	if {[llength [lazyDeepNames $toplevel]] == 3} {
+	    break
+	}
+	after 100
+    }
+    # Accessing the contents does not populate them again.
+    set a [java::cast ptolemy.kernel.CompositeEntity \
+	       [$toplevel getEntity A]]
+    list [lazyDeepNames $toplevel] [$a numberOfEntities]
+} {{.top.A.B.ramp .top.A.const .top.D.ramp} 2}
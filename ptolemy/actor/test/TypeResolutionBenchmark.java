@@ -0,0 +1,169 @@
+/* Compare type resolution from scratch and incremental type resolution.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+ */
+package ptolemy.actor.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ptolemy.actor.Director;
+import ptolemy.actor.IncrementalTypeResolver;
+import ptolemy.actor.TypedCompositeActor;
+import ptolemy.actor.TypedIOPort;
+import ptolemy.actor.TypedIORelation;
+import ptolemy.actor.lib.Const;
+import ptolemy.actor.lib.Scale;
+import ptolemy.data.type.Type;
+import ptolemy.moml.MoMLChangeRequest;
+
+///////////////////////////////////////////////////////////////////
+//// TypeResolutionBenchmark
+
+/**
+ Mutate a large generated model and compare the time to resolve its
+ types from scratch with {@link TypedCompositeActor#resolveTypes(TypedCompositeActor)}
+ with the time to resolve them with an {@link IncrementalTypeResolver}.
+ <p>
+ The model consists of chains of actors, each with a Const followed by
+ Scale actors, none of which has declared types.  Each mutation is a
+ MoMLChangeRequest that changes the value of the Const of one chain
+ from an int to a double, or back, which changes the types of the
+ whole chain.  After each mutation, the types are resolved incrementally,
+ and then from scratch, and the types of all the ports are compared.
+ <p>
+ To run, use:
+ <pre>
+ java -classpath $PTII ptolemy.actor.test.TypeResolutionBenchmark [-chains n] [-length n] [-mutations n]
+ </pre>
+ The number of chains defaults to 1000, the number of actors of each
+ chain to 20 and the number of mutations to 20.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class TypeResolutionBenchmark {
+
+    /** Run the benchmark and print the results.
+     *  @param args Optional "-chains n", "-length n" and "-mutations n"
+     *   arguments.
+     *  @exception Exception If the model cannot be constructed or its
+     *   types cannot be resolved.
+     */
+    public static void main(String[] args) throws Exception {
+        int chains = 1000;
+        int length = 20;
+        int mutations = 20;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("-chains")) {
+                chains = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-length")) {
+                length = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-mutations")) {
+                mutations = Integer.parseInt(args[i + 1]);
+            } else {
+                System.err.println("Usage: java -classpath $PTII "
+                        + "ptolemy.actor.test.TypeResolutionBenchmark "
+                        + "[-chains n] [-length n] [-mutations n]");
+                return;
+            }
+        }
+
+        TypedCompositeActor toplevel = new TypedCompositeActor();
+        toplevel.setName("toplevel");
+        new Director(toplevel, "director");
+        List<TypedIOPort> ports = new ArrayList<TypedIOPort>();
+        for (int chain = 0; chain < chains; chain++) {
+            Const source = new Const(toplevel, "const" + chain);
+            ports.add(source.output);
+            TypedIOPort output = source.output;
+            for (int i = 1; i < length; i++) {
+                Scale scale = new Scale(toplevel, "scale" + chain + "_" + i);
+                // Name the relation, because generating unique names
+                // for many relations is slow.
+                TypedIORelation relation = new TypedIORelation(toplevel,
+                        "relation" + chain + "_" + i);
+                output.link(relation);
+                scale.input.link(relation);
+                ports.add(scale.input);
+                ports.add(scale.output);
+                output = scale.output;
+            }
+        }
+
+        IncrementalTypeResolver resolver = new IncrementalTypeResolver();
+        resolver.resolveTypes(toplevel);
+        System.out.println("actors: " + chains * length + ", constraints: "
+                + resolver.getLastConstraintCount()
+                + ", first resolution: "
+                + resolver.getLastResolutionTime() / 1000000 + " ms");
+        System.out.println("mutation\tsolved constraints"
+                + "\tincremental (ms)\tfrom scratch (ms)");
+
+        long incrementalTime = 0;
+        long fullTime = 0;
+        for (int mutation = 0; mutation < mutations; mutation++) {
+            // Change a chain to double, and then back to int.
+            int chain = mutation / 2 * 7919 % chains;
+            String value = mutation % 2 == 0 ? "1.5" : "1";
+            toplevel.requestChange(new MoMLChangeRequest(toplevel, toplevel,
+                    "<entity name=\"const" + chain
+                    + "\"><property name=\"value\" value=\"" + value
+                    + "\"/></entity>"));
+
+            resolver.resolveTypes(toplevel);
+            Type[] types = new Type[ports.size()];
+            for (int i = 0; i < types.length; i++) {
+                types[i] = ports.get(i).getType();
+            }
+
+            long startTime = System.nanoTime();
+            TypedCompositeActor.resolveTypes(toplevel);
+            long elapsed = System.nanoTime() - startTime;
+
+            for (int i = 0; i < types.length; i++) {
+                if (!types[i].equals(ports.get(i).getType())) {
+                    throw new Exception("The incremental type of "
+                            + ports.get(i).getFullName() + " is " + types[i]
+                            + ", but it should be "
+                            + ports.get(i).getType());
+                }
+            }
+            incrementalTime += resolver.getLastResolutionTime();
+            fullTime += elapsed;
+            System.out.println(mutation + "\t"
+                    + resolver.getLastSolvedConstraintCount() + "\t"
+                    + resolver.getLastResolutionTime() / 1000000 + "\t"
+                    + elapsed / 1000000);
+        }
+        if (mutations > 0) {
+            System.out.println("average\t\t" + incrementalTime / mutations
+                    / 1000000 + "\t" + fullTime / mutations / 1000000);
+        }
+    }
+}
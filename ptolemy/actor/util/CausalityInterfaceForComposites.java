@@ -154,7 +154,8 @@ public class CausalityInterfaceForComposites extends DefaultCausalityInterface {
     public String describeDepths() throws IllegalActionException {
         _computeActorDepth();
         StringBuffer result = new StringBuffer();
-        List<Actor> actors = ((CompositeEntity) _actor).deepEntityList();
+        List<Actor> actors = ((CompositeEntity) _actor)
+                .unmodifiableDeepEntityList();
         for (Actor actor : actors) {
             result.append(actor.getFullName());
             result.append(": ");
@@ -434,7 +435,8 @@ public class CausalityInterfaceForComposites extends DefaultCausalityInterface {
     public List<Actor> topologicalSort() throws IllegalActionException {
         // Ensure the cache is up to date and check for cycles.
         checkForCycles();
-        List<Actor> actors = ((CompositeEntity) _actor).deepEntityList();
+        List<Actor> actors = ((CompositeEntity) _actor)
+                .unmodifiableDeepEntityList();
         // Create a copy to sort.
         // FIXME: Would it be more efficient to just create a TreeSet?
         List<Actor> sorted = new LinkedList<Actor>(actors);
@@ -505,7 +507,8 @@ public class CausalityInterfaceForComposites extends DefaultCausalityInterface {
         // graphs. If the actors happen to be ordered in topological
         // sort order, then this will be quite efficient.
         // Otherwise, many actors will be visited twice.
-        List<Actor> actors = ((CompositeEntity) _actor).deepEntityList();
+        List<Actor> actors = ((CompositeEntity) _actor)
+                .unmodifiableDeepEntityList();
         for (Actor actor : actors) {
             // If the actor already has a depth, skip it.
             Integer actorDepth = _actorToDepth.get(actor);
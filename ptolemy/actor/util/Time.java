@@ -61,6 +61,12 @@ import ptolemy.util.DoubleUtilities;
  * the time increases (unlike floating point numbers). This is because
  * Time is represented internally as a multiple of the resolution, and
  * the multiple is not constrained to any limited magnitude.
+ * The multiple is stored as a primitive long whenever it fits, so that
+ * the common operations (add, compareTo, and subtractToDouble) neither
+ * allocate BigIntegers nor perform arbitrary-precision arithmetic.
+ * Only if the multiple overflows a long is it represented as a
+ * BigInteger, so the results are exactly the same as if the multiple
+ * were always a BigInteger.
  * <p>
  * The time value can be retrieved in three ways, the {@link #toString()}method
  * and the {@link #getDoubleValue()}method and the {@link #getLongValue()}
@@ -119,7 +125,7 @@ public class Time implements Comparable {
      */
     public Time(Director director) {
         _director = director;
-        _timeValue = BigInteger.ZERO;
+        _timeValue = 0L;
     }
 
     /** Construct a Time object with the specified double value as its
@@ -141,8 +147,6 @@ public class Time implements Comparable {
         }
 
         if (Double.isInfinite(timeValue)) {
-            _timeValue = null;
-
             if (timeValue < 0) {
                 _isNegativeInfinite = true;
             } else {
@@ -160,7 +164,7 @@ public class Time implements Comparable {
      */
     public Time(Director director, long timeValue) {
         _director = director;
-        _timeValue = new BigInteger(Long.toString(timeValue));
+        _timeValue = timeValue;
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -172,12 +176,17 @@ public class Time implements Comparable {
      *  which provides the necessary information for quantization.
      *  This constructor is private and can only be accessed by the methods
      *  defined inside this class.
+     *  If the value fits in a long, then it is stored as a long.
      *  @param director The director with which this time object is associated.
      *  @param timeValue The multiple of the precision that is the time value.
      */
     private Time(Director director, BigInteger timeValue) {
         _director = director;
-        _timeValue = timeValue;
+        if (timeValue.bitLength() < Long.SIZE) {
+            _timeValue = timeValue.longValue();
+        } else {
+            _bigTimeValue = timeValue;
+        }
     }
 
     /** Construct a Time object with value that is one of _POSITIVE_INFINITY
@@ -186,13 +195,11 @@ public class Time implements Comparable {
      */
     private Time(int value) {
         if (value == _POSITIVE_INFINITY) {
-            _timeValue = null;
             _isPositiveInfinite = true;
         } else if (value == _NEGATIVE_INFINITY) {
-            _timeValue = null;
             _isNegativeInfinite = true;
         } else {
-            _timeValue = BigInteger.ZERO;
+            _timeValue = 0L;
         }
     }
 
@@ -264,7 +271,7 @@ public class Time implements Comparable {
         } else if (isInfinite()) {
             return this;
         } else {
-            BigInteger quantizedValue;
+            long quantizedValue;
 
             try {
                 quantizedValue = _doubleToMultiple(timeValue);
@@ -279,7 +286,7 @@ public class Time implements Comparable {
                         + "parameter caused this exception.");
             }
 
-            return new Time(_director, _timeValue.add(quantizedValue));
+            return _add(_director, quantizedValue);
         }
     }
 
@@ -339,7 +346,10 @@ public class Time implements Comparable {
             throw new InternalErrorException(e);
         }
 
-        return new Time(director, _timeValue.add(time._timeValue));
+        if (time._bigTimeValue == null) {
+            return _add(director, time._timeValue);
+        }
+        return new Time(director, _bigValue().add(time._bigTimeValue));
     }
 
     /** Add the specified double to this time without checking whether the
@@ -402,8 +412,7 @@ public class Time implements Comparable {
 
         final double precision = _timeResolution();
         final long multiple = Math.round(timeValue / precision);
-        final BigInteger quantizedValue = BigInteger.valueOf(multiple);
-        return new Time(_director, _timeValue.add(quantizedValue));
+        return _add(_director, multiple);
     }
 
     /** Return -1, 0, or 1 if this time object is less than, equal to, or
@@ -452,7 +461,16 @@ public class Time implements Comparable {
         double resolution = _timeResolution();
 
         if (resolution == castTime._timeResolution()) {
-            return _timeValue.compareTo(castTime._timeValue);
+            if (_bigTimeValue == null && castTime._bigTimeValue == null) {
+                if (_timeValue < castTime._timeValue) {
+                    return -1;
+                } else if (_timeValue > castTime._timeValue) {
+                    return 1;
+                } else {
+                    return 0;
+                }
+            }
+            return _bigValue().compareTo(castTime._bigValue());
         } else {
             double thisValue = getDoubleValue();
             double thatValue = castTime.getDoubleValue();
@@ -500,7 +518,13 @@ public class Time implements Comparable {
             // execution time... Could instead use longValue(), but the
             // result would not necessarily be accurate.
             //return _timeValue.doubleValue() * _timeResolution();
-            return DoubleUtilities.bigToDouble(_timeValue) * _timeResolution();
+            if (_bigTimeValue == null) {
+                // Conversion of a long to a double is correctly rounded,
+                // as is DoubleUtilities.bigToDouble().
+                return _timeValue * _timeResolution();
+            }
+            return DoubleUtilities.bigToDouble(_bigTimeValue)
+                    * _timeResolution();
         }
     }
 
@@ -516,8 +540,10 @@ public class Time implements Comparable {
             return Long.MAX_VALUE;
         } else if (_isNegativeInfinite) {
             return Long.MIN_VALUE;
+        } else if (_bigTimeValue != null) {
+            return _bigTimeValue.longValue();
         } else {
-            return _timeValue.longValue();
+            return _timeValue;
         }
     }
 
@@ -533,8 +559,17 @@ public class Time implements Comparable {
             return Integer.MIN_VALUE;
         } else if (_isPositiveInfinite) {
             return Integer.MAX_VALUE;
+        } else if (_bigTimeValue != null) {
+            return _bigTimeValue.hashCode();
         } else {
-            return _timeValue.hashCode();
+            // Return the same value as BigInteger.hashCode() so that
+            // the hash code does not depend on the representation.
+            // Math.abs(Long.MIN_VALUE) is Long.MIN_VALUE, which is
+            // the correct magnitude when treated as unsigned.
+            long magnitude = Math.abs(_timeValue);
+            int high = (int) (magnitude >>> 32);
+            int low = (int) magnitude;
+            return (31 * high + low) * Long.signum(_timeValue);
         }
     }
 
@@ -549,16 +584,26 @@ public class Time implements Comparable {
         return _isNegativeInfinite || _isPositiveInfinite;
     }
 
+    /** Return true if the current time value is finite and
+     *  {@link #getLongValue()} returns it exactly, without wrapping.
+     *  Two such time objects with the same resolution compare
+     *  in the same order as their long values.
+     *  @return true if the long value of this time object is exact.
+     */
+    public final boolean isLongValueExact() {
+        return _bigTimeValue == null && !isInfinite();
+    }
+
     /** Return true if the current time value is a negative value
      *  (including negative infinity).
      *  @return true if the current time value is a negative value
      *  (including negative infinity).
      */
     public final boolean isNegative() {
-        if (_timeValue != null) {
-            return _timeValue.signum() == -1;
+        if (isInfinite()) {
+            return _isNegativeInfinite;
         }
-        return _isNegativeInfinite;
+        return _signum() == -1;
     }
 
     /** Return true if the current time value is a negative infinity.
@@ -574,10 +619,10 @@ public class Time implements Comparable {
      *  (including positive infinity).
      */
     public final boolean isPositive() {
-        if (_timeValue != null) {
-            return _timeValue.signum() == 1;
+        if (isInfinite()) {
+            return _isPositiveInfinite;
         }
-        return _isPositiveInfinite;
+        return _signum() == 1;
     }
 
     /** Return true if the current time value is a positive infinity.
@@ -591,10 +636,10 @@ public class Time implements Comparable {
      *  @return true if the current time value is a zero.
      */
     public final boolean isZero() {
-        if (_timeValue != null) {
-            return _timeValue.signum() == 0;
+        if (isInfinite()) {
+            return false;
         }
-        return false;
+        return _signum() == 0;
     }
 
     /** Return the maximum value of time whose representation as a double
@@ -665,8 +710,11 @@ public class Time implements Comparable {
             return add(POSITIVE_INFINITY);
         } else if (time.isPositiveInfinite()) {
             return add(NEGATIVE_INFINITY);
+        } else if (time._bigTimeValue == null
+                && time._timeValue != Long.MIN_VALUE) {
+            return add(new Time(time._director, -time._timeValue));
         } else {
-            return add(new Time(time._director, time._timeValue.negate()));
+            return add(new Time(time._director, time._bigValue().negate()));
         }
     }
 
@@ -715,7 +763,15 @@ public class Time implements Comparable {
             return( thisValue - thatValue );
         }
 
-        final BigInteger difference = _timeValue.subtract(time._timeValue);
+        if (_bigTimeValue == null && time._bigTimeValue == null) {
+            final long difference = _timeValue - time._timeValue;
+            // The subtraction overflows only if the operands have
+            // different signs and the result has the sign of the subtrahend.
+            if (((_timeValue ^ time._timeValue) & (_timeValue ^ difference)) >= 0) {
+                return( difference * resolution );
+            }
+        }
+        final BigInteger difference = _bigValue().subtract(time._bigValue());
         return( DoubleUtilities.bigToDouble(difference) * resolution );
     }
 
@@ -766,16 +822,47 @@ public class Time implements Comparable {
     ///////////////////////////////////////////////////////////////////
     ////                         private methods                   ////
 
-    /** Given a double, return the BigInteger that represents its
-     *  quantized value. The BigInteger is the rounded result of dividing
+    /** Return a new time object whose time value is the sum of the
+     *  time value of this finite time object and the specified multiple
+     *  of the resolution.  If the sum overflows a long, then the result
+     *  is represented as a BigInteger.
+     *  @param director The director of the new time object.
+     *  @param multiple The multiple of the resolution to add.
+     *  @return A new time object with the incremented time value.
+     */
+    private Time _add(Director director, long multiple) {
+        if (_bigTimeValue == null) {
+            long sum = _timeValue + multiple;
+            // The addition overflows only if both operands have the
+            // same sign and the result has the opposite sign.
+            if (((_timeValue ^ sum) & (multiple ^ sum)) >= 0) {
+                return new Time(director, sum);
+            }
+        }
+        return new Time(director, _bigValue().add(BigInteger.valueOf(multiple)));
+    }
+
+    /** Return the time value of this finite time object, as a multiple
+     *  of the resolution, as a BigInteger.
+     *  @return The time value as a BigInteger.
+     */
+    private BigInteger _bigValue() {
+        if (_bigTimeValue != null) {
+            return _bigTimeValue;
+        }
+        return BigInteger.valueOf(_timeValue);
+    }
+
+    /** Given a double, return the long that represents its
+     *  quantized value. The long is the rounded result of dividing
      *  the double by the time resolution.
      *  @param value The value as a double.
-     *  @return A BigInteger that specifies this double value as a multiple
+     *  @return A long that specifies this double value as a multiple
      *  of the resolution given by the associated director.
      *  @exception IllegalActionException If the given double time value does
      *  not match the time resolution.
      */
-    private BigInteger _doubleToMultiple(double value)
+    private long _doubleToMultiple(double value)
             throws IllegalActionException {
         // NOTE: when the value is too big a multiple of the resolution,
         // the division fails to deliver adequate precision. If this happens,
@@ -815,7 +902,18 @@ public class Time implements Comparable {
                             + multiple * precision);
         }
 
-        return BigInteger.valueOf(multiple);
+        return multiple;
+    }
+
+    /** Return -1, 0 or 1 if the time value of this finite time object is
+     *  negative, zero or positive.
+     *  @return The signum of the time value.
+     */
+    private int _signum() {
+        if (_bigTimeValue != null) {
+            return _bigTimeValue.signum();
+        }
+        return Long.signum(_timeValue);
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -834,6 +932,14 @@ public class Time implements Comparable {
      */
     private boolean _isNegativeInfinite = false;
 
-    /** The time value, as a multiple of the resolution. */
-    private BigInteger _timeValue = null;
+    /** The time value, as a multiple of the resolution, if
+     *  _bigTimeValue is null and the time value is not infinite.
+     */
+    private long _timeValue = 0L;
+
+    /** The time value, as a multiple of the resolution, if it does
+     *  not fit in a long, or null otherwise.  A value that fits in a
+     *  long is never represented as a BigInteger.
+     */
+    private BigInteger _bigTimeValue = null;
 }
@@ -155,3 +155,42 @@ test Time-3.2 {equals a non-time} {
      # e.equals(null) returns false."
      list [$t1 equals [java::new java.util.Date]]
 } {0}
+
+######################################################################
+####
+#
+test Time-4.1 {add and subtract beyond the range of a long} {
+    # Jacl integers are 32 bits, so build large values by doubling.
+    set t62 [java::new {ptolemy.actor.util.Time ptolemy.actor.Director long} $d1 1]
+    for {set i 0} {$i < 62} {incr i} {
+	set t62 [$t62 add $t62]
+    }
+    set t63 [$t62 add $t62]
+    set t64 [$t63 add $t63]
+    set big64 [[java::field java.math.BigInteger ONE] shiftLeft 64]
+    list [$t64 compareTo $t63] [$t63 compareTo $t64] [$t63 compareTo $t62] \
+	[$t64 compareTo $tPositiveInfinity] \
+	[[$t64 subtract $t63] equals $t63] \
+	[[$t63 subtract $t62] equals $t62] \
+	[expr {[$t64 hashCode] == [$big64 hashCode]}] \
+	[$t64 subtractToDouble $t63] [$t64 isPositive] [$t64 isZero]
+} {1 -1 1 -1 1 1 1 922337203.685 1 0}
+
+######################################################################
+####
+#
+test Time-4.2 {subtract below the range of a long} {
+    set tMinusOne [java::new {ptolemy.actor.util.Time ptolemy.actor.Director long} $d1 -1]
+    set tMin $tMinusOne
+    for {set i 0} {$i < 63} {incr i} {
+	set tMin [$tMin add $tMin]
+    }
+    # tMin is now Long.MIN_VALUE, which fits in a long.
+    set tBelow [$tMin add $tMinusOne]
+    set tOne [java::new {ptolemy.actor.util.Time ptolemy.actor.Director long} $d1 1]
+    list [$tBelow compareTo $tMin] [$tBelow isNegative] \
+	[[$tBelow subtract $tMinusOne] equals $tMin] \
+	[[$tMin subtract $tMin] isZero] \
+	[$tOne subtractToDouble $tMin] \
+	[$tMin isNegative]
+} {-1 1 1 1 922337203.685 1}
@@ -163,7 +163,9 @@ public class ArrayToken extends AbstractNotConvertibleToken {
         Token token = evaluator.evaluateParseTree(tree);
 
         if (token instanceof ArrayToken) {
-            _value = ((ArrayToken) token)._value;
+            // The token may be an instance of a subclass that does not
+            // use _value, so copy its elements with arrayValue().
+            _value = ((ArrayToken) token).arrayValue();
             _elementType = ((ArrayToken) token)._elementType;
         } else {
             throw new IllegalActionException("An array token cannot be"
@@ -222,7 +224,7 @@ public class ArrayToken extends AbstractNotConvertibleToken {
         // Disallow addition between arrays and anything greater than or
         // incomparable with String (e.g., Record, Union, etc).
         if ((typeInfo == CPO.INCOMPARABLE || typeInfo == CPO.HIGHER)
-                && getClass() != rightArgument.getClass()) {
+                && !(rightArgument instanceof ArrayToken)) {
             throw new IllegalActionException(
                     notSupportedDifferentClassesMessage("add", this,
                             rightArgument));
@@ -260,7 +262,7 @@ public class ArrayToken extends AbstractNotConvertibleToken {
                 Token[] arr = {leftArgument};
                 return new ArrayToken(arr).add(this);
             }
-            else if (getClass() == leftArgument.getClass()) {
+            else if (leftArgument instanceof ArrayToken) {
                 return ((ArrayToken)leftArgument).add(this);
             } else {
                 throw new IllegalActionException(null, notSupportedMessage(
@@ -796,6 +798,29 @@ public class ArrayToken extends AbstractNotConvertibleToken {
         }
     }
 
+    /** Test for equality of the values of this token and the argument
+     *  token.  This class overrides the superclass to not insist that
+     *  the two array tokens be instances of the same class, but rather
+     *  that they just both be array tokens, and then defers to the
+     *  _isEqualTo() method.
+     *  @param rightArgument The token with which to test equality.
+     *  @return A boolean token that contains the value true if the
+     *   value of this token is equal to that of the argument token.
+     *  @exception IllegalActionException If the argument token is not
+     *   an array token.
+     */
+    @Override
+    public BooleanToken isEqualTo(Token rightArgument)
+            throws IllegalActionException {
+        if (!(rightArgument instanceof ArrayToken)) {
+            throw new IllegalActionException(
+                    notSupportedDifferentClassesMessage("isEqualTo", this,
+                            rightArgument));
+        }
+
+        return _isEqualTo(rightArgument);
+    }
+
     /** Return true if the token is nil, (aka null or missing).
      *  Nil or missing tokens occur when a data source is sparsely populated.
      *  @return True if the token is the {@link #NIL} token.
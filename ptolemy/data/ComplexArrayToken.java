@@ -0,0 +1,151 @@
+/* An array token whose elements are complex numbers.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.data;
+
+import ptolemy.data.type.BaseType;
+import ptolemy.math.Complex;
+
+///////////////////////////////////////////////////////////////////
+//// ComplexArrayToken
+
+/**
+ An array token whose elements are complex numbers.  The elements are
+ stored in an array of Complex objects rather than an array of
+ ComplexTokens, so creating a large array does not create a token for
+ each element, and actors that operate on arrays of complex numbers,
+ such as DotProduct, can use {@link #getComplexElement(int)} to access
+ the elements directly.
+ A ComplexToken is created for an element only when
+ {@link #getElement(int)} or {@link #arrayValue()} is called, and it is
+ then reused by later calls.
+ <p>
+ The type of this token is an array of complex numbers, so it is
+ interchangeable with an ArrayToken that contains ComplexTokens.
+ The elements of this token have no units.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ @see ptolemy.data.DoubleArrayToken
+ @see ptolemy.data.IntArrayToken
+ */
+public class ComplexArrayToken extends ArrayToken {
+    /** Construct a ComplexArrayToken with the specified values.
+     *  This class makes a copy of the given array, so the passed
+     *  array may be reused.
+     *  @param value An array of complex numbers.
+     */
+    public ComplexArrayToken(Complex[] value) {
+        this(value, value.length);
+    }
+
+    /** Construct a ComplexArrayToken with the first <i>length</i>
+     *  values of the specified array.  If <i>length</i> is greater
+     *  than the length of the array, then all the values are used.
+     *  This class makes a copy of the given array, so the passed
+     *  array may be reused.
+     *  @param value An array of complex numbers.
+     *  @param length The number of values to use.
+     */
+    public ComplexArrayToken(Complex[] value, int length) {
+        super(BaseType.COMPLEX);
+        if (length > value.length) {
+            length = value.length;
+        }
+        _complexValue = new Complex[length];
+        System.arraycopy(value, 0, _complexValue, 0, length);
+        _elements = new Token[length];
+        _depth = 1;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    // FindBugs says "Class doesn't override equals in superclass," but
+    // that's ok here, the base class compares the elements.
+
+    /** Return an array of complex numbers populated with the contents
+     *  of this token.  The returned array is a copy so the caller is free to
+     *  modify it.
+     *  @return An array of complex numbers.
+     */
+    public Complex[] complexArrayValue() {
+        Complex[] result = new Complex[_complexValue.length];
+        System.arraycopy(_complexValue, 0, result, 0, _complexValue.length);
+        return result;
+    }
+
+    /** Return the element at the specified index as a Complex number.
+     *  @param index The index of the desired element.
+     *  @return The value of the element at the specified index.
+     *  @exception ArrayIndexOutOfBoundsException If the specified index is
+     *   outside the range of the array.
+     */
+    public Complex getComplexElement(int index) {
+        return _complexValue[index];
+    }
+
+    /** Return the element at the specified index.  The ComplexToken is
+     *  created when this method is first called for the index.
+     *  @param index The index of the desired element.
+     *  @return The token contained in this array token at the
+     *  specified index.
+     *  @exception ArrayIndexOutOfBoundsException If the specified index is
+     *   outside the range of the array.
+     */
+    @Override
+    public Token getElement(int index) {
+        Token result = _elements[index];
+        if (result == null) {
+            result = new ComplexToken(_complexValue[index]);
+            _elements[index] = result;
+        }
+        return result;
+    }
+
+    /** Return the length of the contained array.
+     *  @return The length of the contained array.
+     */
+    @Override
+    public int length() {
+        return _complexValue.length;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The values of the elements. */
+    private Complex[] _complexValue;
+
+    /** The tokens that have been created for the elements, with
+     *  null for elements whose token has not been created.
+     */
+    private Token[] _elements;
+}
@@ -0,0 +1,262 @@
+/* An array token whose elements are doubles.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.data;
+
+import ptolemy.data.type.BaseType;
+import ptolemy.kernel.util.IllegalActionException;
+
+///////////////////////////////////////////////////////////////////
+//// DoubleArrayToken
+
+/**
+ An array token whose elements are doubles.  The elements are stored
+ in an array of doubles rather than an array of DoubleTokens, so
+ creating a large array does not create a token for each element,
+ and actors that operate on arrays of doubles, such as ArraySum, can
+ use {@link #getDoubleElement(int)} to access the elements directly.
+ A DoubleToken is created for an element only when
+ {@link #getElement(int)} or {@link #arrayValue()} is called, and it is
+ then reused by later calls.
+ <p>
+ The type of this token is an array of doubles, so it is
+ interchangeable with an ArrayToken that contains DoubleTokens.
+ The elements of this token have no units.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ @see ptolemy.data.IntArrayToken
+ @see ptolemy.data.ComplexArrayToken
+ */
+public class DoubleArrayToken extends ArrayToken {
+    /** Construct a DoubleArrayToken with the specified values.
+     *  This class makes a copy of the given array, so the passed
+     *  array may be reused.
+     *  @param value An array of doubles.
+     */
+    public DoubleArrayToken(double[] value) {
+        this(value, value.length);
+    }
+
+    /** Construct a DoubleArrayToken with the first <i>length</i>
+     *  values of the specified array.  If <i>length</i> is greater
+     *  than the length of the array, then all the values are used.
+     *  This class makes a copy of the given array, so the passed
+     *  array may be reused.
+     *  @param value An array of doubles.
+     *  @param length The number of values to use.
+     */
+    public DoubleArrayToken(double[] value, int length) {
+        super(BaseType.DOUBLE);
+        if (length > value.length) {
+            length = value.length;
+        }
+        _doubleValue = new double[length];
+        System.arraycopy(value, 0, _doubleValue, 0, length);
+        _elements = new Token[length];
+        _depth = 1;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    // FindBugs says "Class doesn't override equals in superclass," but
+    // that's ok here, the base class compares the elements.
+
+    /** Return an array of doubles populated with the contents of this
+     *  token.  The returned array is a copy so the caller is free to
+     *  modify it.
+     *  @return An array of doubles.
+     */
+    public double[] doubleArrayValue() {
+        double[] result = new double[_doubleValue.length];
+        System.arraycopy(_doubleValue, 0, result, 0, _doubleValue.length);
+        return result;
+    }
+
+    /** Return the element at the specified index as a double.
+     *  @param index The index of the desired element.
+     *  @return The value of the element at the specified index.
+     *  @exception ArrayIndexOutOfBoundsException If the specified index is
+     *   outside the range of the array.
+     */
+    public double getDoubleElement(int index) {
+        return _doubleValue[index];
+    }
+
+    /** Return the element at the specified index.  The DoubleToken is
+     *  created when this method is first called for the index.
+     *  @param index The index of the desired element.
+     *  @return The token contained in this array token at the
+     *  specified index.
+     *  @exception ArrayIndexOutOfBoundsException If the specified index is
+     *   outside the range of the array.
+     */
+    @Override
+    public Token getElement(int index) {
+        Token result = _elements[index];
+        if (result == null) {
+            result = new DoubleToken(_doubleValue[index]);
+            _elements[index] = result;
+        }
+        return result;
+    }
+
+    /** Return the length of the contained array.
+     *  @return The length of the contained array.
+     */
+    @Override
+    public int length() {
+        return _doubleValue.length;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         protected methods                 ////
+
+    /** Return a new token whose value is the value of the argument
+     *  token added to the value of this token.  If the argument is a
+     *  DoubleArrayToken of the same length, or a DoubleToken without
+     *  units, then the result is a DoubleArrayToken.  Otherwise, the
+     *  addition is done by the base class.
+     *  @param rightArgument The token whose value we add to the value
+     *  of this token.
+     *  @return A new array token containing the result.
+     *  @exception IllegalActionException If the base class throws it.
+     */
+    @Override
+    protected Token _add(Token rightArgument) throws IllegalActionException {
+        double[] right = _rightOperand(rightArgument);
+        if (right == null) {
+            return super._add(rightArgument);
+        }
+        double[] result = new double[_doubleValue.length];
+        if (right.length == 1) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = _doubleValue[i] + right[0];
+            }
+        } else {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = _doubleValue[i] + right[i];
+            }
+        }
+        return new DoubleArrayToken(result);
+    }
+
+    /** Return a new token whose value is the value of this token
+     *  multiplied by the value of the argument token.  If the argument
+     *  is a DoubleArrayToken of the same length, or a DoubleToken without
+     *  units, then the result is a DoubleArrayToken.  Otherwise, the
+     *  multiplication is done by the base class.
+     *  @param rightArgument The token to multiply this token by.
+     *  @return A new array token containing the result.
+     *  @exception IllegalActionException If the base class throws it.
+     */
+    @Override
+    protected Token _multiply(Token rightArgument)
+            throws IllegalActionException {
+        double[] right = _rightOperand(rightArgument);
+        if (right == null) {
+            return super._multiply(rightArgument);
+        }
+        double[] result = new double[_doubleValue.length];
+        if (right.length == 1) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = _doubleValue[i] * right[0];
+            }
+        } else {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = _doubleValue[i] * right[i];
+            }
+        }
+        return new DoubleArrayToken(result);
+    }
+
+    /** Return a new token whose value is the value of the argument
+     *  token subtracted from the value of this token.  If the argument
+     *  is a DoubleArrayToken of the same length, or a DoubleToken without
+     *  units, then the result is a DoubleArrayToken.  Otherwise, the
+     *  subtraction is done by the base class.
+     *  @param rightArgument The token to subtract from this token.
+     *  @return A new array token containing the result.
+     *  @exception IllegalActionException If the base class throws it.
+     */
+    @Override
+    protected Token _subtract(Token rightArgument)
+            throws IllegalActionException {
+        double[] right = _rightOperand(rightArgument);
+        if (right == null) {
+            return super._subtract(rightArgument);
+        }
+        double[] result = new double[_doubleValue.length];
+        if (right.length == 1) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = _doubleValue[i] - right[0];
+            }
+        } else {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = _doubleValue[i] - right[i];
+            }
+        }
+        return new DoubleArrayToken(result);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Return the values of the argument if it is a DoubleArrayToken
+     *  of the same length as this token, an array of length one if it
+     *  is a DoubleToken without units, and null otherwise.
+     */
+    private double[] _rightOperand(Token rightArgument) {
+        if (rightArgument instanceof DoubleArrayToken) {
+            double[] right = ((DoubleArrayToken) rightArgument)._doubleValue;
+            if (right.length == _doubleValue.length) {
+                return right;
+            }
+        } else if (rightArgument.getClass() == DoubleToken.class
+                && !rightArgument.isNil()
+                && ((DoubleToken) rightArgument).isUnitless()) {
+            return new double[] { ((DoubleToken) rightArgument)
+                    .doubleValue() };
+        }
+        return null;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The values of the elements. */
+    private double[] _doubleValue;
+
+    /** The tokens that have been created for the elements, with
+     *  null for elements whose token has not been created.
+     */
+    private Token[] _elements;
+}
@@ -0,0 +1,149 @@
+/* An array token whose elements are ints.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.data;
+
+import ptolemy.data.type.BaseType;
+
+///////////////////////////////////////////////////////////////////
+//// IntArrayToken
+
+/**
+ An array token whose elements are ints.  The elements are stored
+ in an array of ints rather than an array of IntTokens, so
+ creating a large array does not create a token for each element,
+ and actors that operate on arrays of ints, such as ArraySum, can
+ use {@link #getIntElement(int)} to access the elements directly.
+ An IntToken is created for an element only when
+ {@link #getElement(int)} or {@link #arrayValue()} is called, and it is
+ then reused by later calls.
+ <p>
+ The type of this token is an array of ints, so it is
+ interchangeable with an ArrayToken that contains IntTokens.
+ The elements of this token have no units.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ @see ptolemy.data.DoubleArrayToken
+ @see ptolemy.data.ComplexArrayToken
+ */
+public class IntArrayToken extends ArrayToken {
+    /** Construct an IntArrayToken with the specified values.
+     *  This class makes a copy of the given array, so the passed
+     *  array may be reused.
+     *  @param value An array of ints.
+     */
+    public IntArrayToken(int[] value) {
+        this(value, value.length);
+    }
+
+    /** Construct an IntArrayToken with the first <i>length</i>
+     *  values of the specified array.  If <i>length</i> is greater
+     *  than the length of the array, then all the values are used.
+     *  This class makes a copy of the given array, so the passed
+     *  array may be reused.
+     *  @param value An array of ints.
+     *  @param length The number of values to use.
+     */
+    public IntArrayToken(int[] value, int length) {
+        super(BaseType.INT);
+        if (length > value.length) {
+            length = value.length;
+        }
+        _intValue = new int[length];
+        System.arraycopy(value, 0, _intValue, 0, length);
+        _elements = new Token[length];
+        _depth = 1;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    // FindBugs says "Class doesn't override equals in superclass," but
+    // that's ok here, the base class compares the elements.
+
+    /** Return an array of ints populated with the contents of this
+     *  token.  The returned array is a copy so the caller is free to
+     *  modify it.
+     *  @return An array of ints.
+     */
+    public int[] intArrayValue() {
+        int[] result = new int[_intValue.length];
+        System.arraycopy(_intValue, 0, result, 0, _intValue.length);
+        return result;
+    }
+
+    /** Return the element at the specified index as an int.
+     *  @param index The index of the desired element.
+     *  @return The value of the element at the specified index.
+     *  @exception ArrayIndexOutOfBoundsException If the specified index is
+     *   outside the range of the array.
+     */
+    public int getIntElement(int index) {
+        return _intValue[index];
+    }
+
+    /** Return the element at the specified index.  The IntToken is
+     *  created when this method is first called for the index.
+     *  @param index The index of the desired element.
+     *  @return The token contained in this array token at the
+     *  specified index.
+     *  @exception ArrayIndexOutOfBoundsException If the specified index is
+     *   outside the range of the array.
+     */
+    @Override
+    public Token getElement(int index) {
+        Token result = _elements[index];
+        if (result == null) {
+            result = new IntToken(_intValue[index]);
+            _elements[index] = result;
+        }
+        return result;
+    }
+
+    /** Return the length of the contained array.
+     *  @return The length of the contained array.
+     */
+    @Override
+    public int length() {
+        return _intValue.length;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The values of the elements. */
+    private int[] _intValue;
+
+    /** The tokens that have been created for the elements, with
+     *  null for elements whose token has not been created.
+     */
+    private Token[] _elements;
+}
@@ -775,6 +775,13 @@ BitwiseOperationToken, PartiallyOrderedToken {
         }
     }
 
+    /** Return true if this token does not have a unit.
+     *  @return True if this token does not have a unit.
+     */
+    public boolean isUnitless() {
+        return _isUnitless();
+    }
+
     /** Returns a token representing the result of shifting the bits
      *  of this token towards the most significant bit, filling the
      *  least significant bits with zeros.
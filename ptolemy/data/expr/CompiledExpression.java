@@ -0,0 +1,211 @@
+/* An expression that has been compiled by ParseTreeCompiler.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.data.expr;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Map;
+
+import ptolemy.data.BooleanToken;
+import ptolemy.data.DoubleToken;
+import ptolemy.data.IntToken;
+import ptolemy.data.ScalarToken;
+import ptolemy.data.type.Type;
+import ptolemy.kernel.util.IllegalActionException;
+
+///////////////////////////////////////////////////////////////////
+//// CompiledExpression
+
+/**
+ An expression that has been compiled by {@link ParseTreeCompiler}.
+
+ <p>If the parse tree could be compiled, then {@link #evaluate(ParserScope)}
+ first gets the values of the variables that the expression refers to
+ from the scope and checks that they are plain IntTokens, DoubleTokens
+ or BooleanTokens, as assumed by the compiled code.  If they are, then the
+ compiled code is invoked.  Otherwise, for example if a value has
+ units, and in all cases where the parse tree could not be compiled,
+ the parse tree is evaluated by a {@link ParseTreeEvaluator}.  Since
+ the values are checked before any part of the expression is
+ evaluated, the expression is never evaluated twice.</p>
+
+ <p>The compiled code assumes the types that the variables had when it
+ was compiled.  The {@link #isValid(ParserScope)} method returns false
+ if any of these types has changed, in which case the parse tree should
+ be compiled again.</p>
+
+ <p>Like ParseTreeEvaluator, this class is not thread safe.</p>
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ @see ptolemy.data.expr.ParseTreeCompiler
+ */
+public class CompiledExpression {
+
+    /** Construct a compiled expression.
+     *  @param root The root of the parse tree.
+     *  @param handle A method handle that takes an array of the values
+     *   of the variables and returns the value of the expression, or null
+     *   if the parse tree could not be compiled.
+     *  @param variableNames The names of the variables whose values are
+     *   passed to the method handle.
+     *  @param variableClasses The classes of the tokens that the method
+     *   handle expects for these variables.
+     *  @param types The types of all the names that the expression refers
+     *   to when it was compiled, with null for names that were not
+     *   defined in the scope.
+     */
+    CompiledExpression(ASTPtRootNode root, MethodHandle handle,
+            String[] variableNames, Class<?>[] variableClasses,
+            Map<String, Type> types) {
+        _root = root;
+        _handle = handle;
+        _variableNames = variableNames;
+        _variableClasses = variableClasses;
+        _types = types;
+        _values = new ptolemy.data.Token[variableNames.length];
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Evaluate the expression using the specified scope to resolve the
+     *  values of variables.
+     *  @param scope The scope for evaluation.
+     *  @return The result of evaluation.
+     *  @exception IllegalActionException If an error occurs during
+     *   evaluation.
+     */
+    public ptolemy.data.Token evaluate(ParserScope scope)
+            throws IllegalActionException {
+        if (_handle != null) {
+            boolean canUnbox = true;
+            for (int i = 0; i < _values.length; i++) {
+                ptolemy.data.Token value = null;
+                if (scope != null) {
+                    value = scope.get(_variableNames[i]);
+                }
+                if (!_canUnbox(value, _variableClasses[i])) {
+                    canUnbox = false;
+                    break;
+                }
+                _values[i] = value;
+            }
+            if (canUnbox) {
+                try {
+                    return (ptolemy.data.Token) _handle.invokeExact(_values);
+                } catch (IllegalActionException | RuntimeException | Error ex) {
+                    throw ex;
+                } catch (Throwable throwable) {
+                    throw new IllegalActionException(null, throwable,
+                            "Failed to evaluate " + _root);
+                }
+            }
+        }
+        if (_evaluator == null) {
+            _evaluator = new ParseTreeEvaluator();
+        }
+        return _evaluator.evaluateParseTree(_root, scope);
+    }
+
+    /** Return true if the parse tree was compiled, and false if it is
+     *  always evaluated by a ParseTreeEvaluator.
+     *  @return True if the parse tree was compiled.
+     */
+    public boolean isCompiled() {
+        return _handle != null;
+    }
+
+    /** Return true if the names that the expression refers to have
+     *  the same types in the specified scope as when the expression
+     *  was compiled.
+     *  @param scope The scope.
+     *  @return True if the compiled code can still be used.
+     *  @exception IllegalActionException If the type of a name cannot
+     *   be determined.
+     */
+    public boolean isValid(ParserScope scope) throws IllegalActionException {
+        for (Map.Entry<String, Type> entry : _types.entrySet()) {
+            Type type = null;
+            if (scope != null) {
+                type = scope.getType(entry.getKey());
+            }
+            Type compiledType = entry.getValue();
+            if (type == null ? compiledType != null : !type
+                    .equals(compiledType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Return true if the token is an instance of exactly the given
+     *  class, is not nil, and has no units, so that the compiled code
+     *  gives the same result for it as the token operations.
+     */
+    private static boolean _canUnbox(ptolemy.data.Token token,
+            Class<?> tokenClass) {
+        if (token == null || token.getClass() != tokenClass
+                || token.isNil()) {
+            return false;
+        }
+        if (tokenClass == DoubleToken.class || tokenClass == IntToken.class) {
+            return ((ScalarToken) token).isUnitless();
+        }
+        return tokenClass == BooleanToken.class;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The evaluator that is used if the compiled code cannot be used. */
+    private ParseTreeEvaluator _evaluator;
+
+    /** The compiled code, or null if there is none. */
+    private MethodHandle _handle;
+
+    /** The root of the parse tree. */
+    private ASTPtRootNode _root;
+
+    /** The types of the names that the expression refers to. */
+    private Map<String, Type> _types;
+
+    /** The values of the variables that are passed to the compiled code. */
+    private ptolemy.data.Token[] _values;
+
+    /** The token classes of the variables. */
+    private Class<?>[] _variableClasses;
+
+    /** The names of the variables. */
+    private String[] _variableNames;
+}
@@ -34,13 +34,16 @@ package ptolemy.data.expr;
 import ptolemy.data.ArrayToken;
 import ptolemy.data.BooleanMatrixToken;
 import ptolemy.data.BooleanToken;
+import ptolemy.data.ComplexArrayToken;
 import ptolemy.data.ComplexMatrixToken;
 import ptolemy.data.ComplexToken;
+import ptolemy.data.DoubleArrayToken;
 import ptolemy.data.DoubleMatrixToken;
 import ptolemy.data.DoubleToken;
 import ptolemy.data.FixMatrixToken;
 import ptolemy.data.FixToken;
 import ptolemy.data.FloatToken;
+import ptolemy.data.IntArrayToken;
 import ptolemy.data.IntMatrixToken;
 import ptolemy.data.IntToken;
 import ptolemy.data.LongMatrixToken;
@@ -101,6 +104,9 @@ import ptolemy.math.FixPoint;
  ---------------------------------------------------
  (*) Only when converting from java to Token types
  </pre>
+ <p>Java arrays of ints, doubles and Complex numbers are converted to an
+ IntArrayToken, a DoubleArrayToken and a ComplexArrayToken, respectively,
+ so no token is created for each element.</p>
 
  @author Neil Smyth, Edward A. Lee, Steve Neuendorffer
  @author Zoltan Kemenczy, Research in Motion Limited
@@ -178,29 +184,11 @@ public class ConversionUtilities {
         } else if (object instanceof FixPoint[][]) {
             returnValue = new FixMatrixToken((FixPoint[][]) object);
         } else if (object instanceof double[]) {
-            DoubleToken[] temp = new DoubleToken[((double[]) object).length];
-
-            for (int j = 0; j < temp.length; j++) {
-                temp[j] = new DoubleToken(((double[]) object)[j]);
-            }
-
-            returnValue = new ArrayToken(temp);
+            returnValue = new DoubleArrayToken((double[]) object);
         } else if (object instanceof Complex[]) {
-            ComplexToken[] temp = new ComplexToken[((Complex[]) object).length];
-
-            for (int j = 0; j < temp.length; j++) {
-                temp[j] = new ComplexToken(((Complex[]) object)[j]);
-            }
-
-            returnValue = new ArrayToken(temp);
+            returnValue = new ComplexArrayToken((Complex[]) object);
         } else if (object instanceof int[]) {
-            IntToken[] temp = new IntToken[((int[]) object).length];
-
-            for (int j = 0; j < temp.length; j++) {
-                temp[j] = new IntToken(((int[]) object)[j]);
-            }
-
-            returnValue = new ArrayToken(temp);
+            returnValue = new IntArrayToken((int[]) object);
         } else if (object instanceof long[]) {
             LongToken[] temp = new LongToken[((long[]) object).length];
 
@@ -413,6 +401,12 @@ public class ConversionUtilities {
             returnValue = ((LongMatrixToken) token).longMatrix();
         } else if (token instanceof BooleanMatrixToken) {
             returnValue = ((BooleanMatrixToken) token).booleanMatrix();
+        } else if (token instanceof DoubleArrayToken) {
+            returnValue = ((DoubleArrayToken) token).doubleArrayValue();
+        } else if (token instanceof IntArrayToken) {
+            returnValue = ((IntArrayToken) token).intArrayValue();
+        } else if (token instanceof ComplexArrayToken) {
+            returnValue = ((ComplexArrayToken) token).complexArrayValue();
         } else if (token instanceof ArrayToken) {
             // This is frustrating... It would be nice if there
             // was a Token.getValue() that would return the
@@ -0,0 +1,910 @@
+/* A visitor that compiles parse trees of the expression language.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.data.expr;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ptolemy.data.BooleanToken;
+import ptolemy.data.DoubleToken;
+import ptolemy.data.IntToken;
+import ptolemy.data.ScalarToken;
+import ptolemy.data.type.BaseType;
+import ptolemy.data.type.ObjectType;
+import ptolemy.data.type.Type;
+import ptolemy.kernel.util.IllegalActionException;
+import ptolemy.kernel.util.InternalErrorException;
+
+///////////////////////////////////////////////////////////////////
+//// ParseTreeCompiler
+
+/**
+ This class visits parse trees and compiles them into method handles
+ that compute the value of the expression on unboxed Java values.
+
+ <p>The types of the nodes of the parse tree are first inferred by a
+ {@link ParseTreeTypeInference}.  If all the nodes have type int,
+ double or boolean, and are constants, variables, arithmetic,
+ relational, logical or unary operators, integer powers, functional
+ ifs, or applications of static Java functions that take and return
+ such values, then each node is compiled into a method handle that
+ operates on int, double or boolean values instead of tokens.  The
+ result only gets converted to a token at the end.  Otherwise, the
+ parse tree is not compiled and is evaluated by a ParseTreeEvaluator.
+ In both cases, the result is a {@link CompiledExpression}.</p>
+
+ <p>The compiled code gives the same results as the token operations
+ that ParseTreeEvaluator uses.  In particular, a sum or product of an
+ int and a double is computed on doubles, but a sum or product of two
+ ints is computed on ints, even if the whole expression is a double.
+ Relational operators on ints and doubles compare the values as
+ doubles.</p>
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ @see ptolemy.data.expr.CompiledExpression
+ @see ptolemy.data.expr.ParseTreeEvaluator
+ */
+public class ParseTreeCompiler extends AbstractParseTreeVisitor {
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Compile the parse tree with the specified root node using the
+     *  specified scope to resolve the types of variables.  If the parse
+     *  tree cannot be compiled, then the returned expression evaluates
+     *  it with a ParseTreeEvaluator.
+     *  @param node The root of the parse tree.
+     *  @param scope The scope for type inference and evaluation.
+     *  @return The compiled expression.
+     */
+    public CompiledExpression compileParseTree(ASTPtRootNode node,
+            ParserScope scope) {
+        _scope = scope;
+        _types = new LinkedHashMap<String, Type>();
+        _variableNames = new ArrayList<String>();
+        _variableClasses = new ArrayList<Class<?>>();
+
+        MethodHandle handle = null;
+        try {
+            if (_typeInference == null) {
+                _typeInference = new ParseTreeTypeInference();
+            }
+            _typeInference.inferTypes(node, scope);
+            Class<?> kind = _kind(node);
+            if (kind != null) {
+                node.visit(this);
+                handle = MethodHandles.filterReturnValue(_handle,
+                        _helper("_toToken", ptolemy.data.Token.class, kind));
+            }
+        } catch (IllegalActionException ex) {
+            // The parse tree cannot be compiled, so it is evaluated
+            // by a ParseTreeEvaluator.
+            handle = null;
+        } finally {
+            _scope = null;
+            _handle = null;
+        }
+
+        return new CompiledExpression(node, handle,
+                _variableNames.toArray(new String[_variableNames.size()]),
+                _variableClasses.toArray(new Class<?>[_variableClasses
+                        .size()]), _types);
+    }
+
+    /** Throw an exception, because array constructs are not compiled.
+     *  @param node The specified node.
+     *  @exception IllegalActionException Always thrown.
+     */
+    @Override
+    public void visitArrayConstructNode(ASTPtArrayConstructNode node)
+            throws IllegalActionException {
+        throw _notCompilable(node);
+    }
+
+    /** Throw an exception, because assignments are not compiled.
+     *  @param node The specified node.
+     *  @exception IllegalActionException Always thrown.
+     */
+    @Override
+    public void visitAssignmentNode(ASTPtAssignmentNode node)
+            throws IllegalActionException {
+        throw _notCompilable(node);
+    }
+
+    /** Throw an exception, because bitwise operators are not compiled.
+     *  @param node The specified node.
+     *  @exception IllegalActionException Always thrown.
+     */
+    @Override
+    public void visitBitwiseNode(ASTPtBitwiseNode node)
+            throws IllegalActionException {
+        throw _notCompilable(node);
+    }
+
+    /** Compile the application of a static Java function.
+     *  @param node The specified node.
+     *  @exception IllegalActionException If the node cannot be compiled.
+     */
+    @Override
+    public void visitFunctionApplicationNode(ASTPtFunctionApplicationNode node)
+            throws IllegalActionException {
+        String functionName = node.getFunctionName();
+        if (functionName == null || functionName.equals("eval")
+                || functionName.equals("matlab")) {
+            throw _notCompilable(node);
+        }
+
+        // If the name refers to a variable, then the node is an array
+        // index or the application of a function token.
+        Type type = _getType(functionName);
+        if (type != null) {
+            throw _notCompilable(node);
+        }
+
+        Class<?> kind = _primitiveKind(node);
+        int argCount = node.jjtGetNumChildren() - 1;
+        Type[] argTypes = new Type[argCount];
+        Class<?>[] argKinds = new Class<?>[argCount];
+        MethodHandle[] arguments = new MethodHandle[argCount];
+        for (int i = 0; i < argCount; i++) {
+            ASTPtRootNode child = (ASTPtRootNode) node.jjtGetChild(i + 1);
+            argKinds[i] = _primitiveKind(child);
+            argTypes[i] = child.getType();
+            arguments[i] = _compileChild(node, i + 1);
+        }
+
+        // Use the same method as the ParseTreeEvaluator would use.
+        CachedMethod cachedMethod = CachedMethod.findMethod(functionName,
+                argTypes, CachedMethod.FUNCTION);
+        if (!cachedMethod.isValid()
+                || cachedMethod.getClass() != CachedMethod.class) {
+            throw _notCompilable(node);
+        }
+        Method method = cachedMethod.getMethod();
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        if (!Modifier.isStatic(method.getModifiers()) || method.isVarArgs()
+                || method.getReturnType() != kind
+                || parameterTypes.length != argCount) {
+            throw _notCompilable(node);
+        }
+        for (int i = 0; i < argCount; i++) {
+            if (parameterTypes[i] != argKinds[i]
+                    && !(parameterTypes[i] == double.class && argKinds[i] == int.class)) {
+                throw _notCompilable(node);
+            }
+            arguments[i] = _convert(arguments[i], parameterTypes[i]);
+        }
+
+        MethodHandle function;
+        try {
+            function = _LOOKUP.unreflect(method);
+        } catch (IllegalAccessException ex) {
+            throw _notCompilable(node);
+        }
+
+        // Like CachedMethod.invoke(), report any exception thrown by the
+        // function as an IllegalActionException.
+        MethodHandle handler = MethodHandles.filterArguments(MethodHandles
+                .throwException(kind, IllegalActionException.class), 0,
+                _FUNCTION_ERROR.bindTo(method));
+        handler = MethodHandles.dropArguments(handler, 1,
+                function.type().parameterList());
+        function = MethodHandles.catchException(function, Throwable.class,
+                handler);
+
+        _handle = _combine(function, arguments);
+    }
+
+    /** Throw an exception, because function definitions are not compiled.
+     *  @param node The specified node.
+     *  @exception IllegalActionException Always thrown.
+     */
+    @Override
+    public void visitFunctionDefinitionNode(ASTPtFunctionDefinitionNode node)
+            throws IllegalActionException {
+        throw _notCompilable(node);
+    }
+
+    /** Compile a functional if.
+     *  @param node The specified node.
+     *  @exception IllegalActionException If the node cannot be compiled.
+     */
+    @Override
+    public void visitFunctionalIfNode(ASTPtFunctionalIfNode node)
+            throws IllegalActionException {
+        Class<?> kind = _primitiveKind(node);
+        if (_primitiveKind((ASTPtRootNode) node.jjtGetChild(0)) != boolean.class) {
+            throw _notCompilable(node);
+        }
+        for (int i = 1; i < 3; i++) {
+            Class<?> branchKind = _primitiveKind((ASTPtRootNode) node
+                    .jjtGetChild(i));
+            if (branchKind != kind
+                    && !(kind == double.class && branchKind == int.class)) {
+                throw _notCompilable(node);
+            }
+        }
+        MethodHandle test = _compileChild(node, 0);
+        MethodHandle target = _convert(_compileChild(node, 1), kind);
+        MethodHandle fallback = _convert(_compileChild(node, 2), kind);
+        _handle = MethodHandles.guardWithTest(test, target, fallback);
+    }
+
+    /** Compile a constant or a reference to a variable.
+     *  @param node The specified node.
+     *  @exception IllegalActionException If the node cannot be compiled.
+     */
+    @Override
+    public void visitLeafNode(ASTPtLeafNode node) throws IllegalActionException {
+        Class<?> kind = _primitiveKind(node);
+        if (node.isConstant() && node.isEvaluated()) {
+            _handle = _constant(node.getToken(), kind, node);
+            return;
+        }
+
+        // Resolve the name in the same way as ParseTreeEvaluator.
+        String name = node.getName();
+        Type type = _getType(name);
+        if (type == null || type instanceof ObjectType) {
+            ptolemy.data.Token constant = Constants.get(name);
+            if (constant == null) {
+                throw _notCompilable(node);
+            }
+            _handle = _constant(constant, kind, node);
+            return;
+        }
+
+        Class<?> tokenClass;
+        String getter;
+        if (kind == double.class) {
+            tokenClass = DoubleToken.class;
+            getter = "_doubleValue";
+        } else if (kind == int.class) {
+            tokenClass = IntToken.class;
+            getter = "_intValue";
+        } else {
+            tokenClass = BooleanToken.class;
+            getter = "_booleanValue";
+        }
+        int index = _variableNames.indexOf(name);
+        if (index < 0) {
+            index = _variableNames.size();
+            _variableNames.add(name);
+            _variableClasses.add(tokenClass);
+        }
+        _handle = MethodHandles.insertArguments(_helper(getter, kind,
+                ptolemy.data.Token[].class, int.class), 1, index);
+    }
+
+    /** Compile a logical AND or OR, which are evaluated with short
+     *  circuits.
+     *  @param node The specified node.
+     *  @exception IllegalActionException If the node cannot be compiled.
+     */
+    @Override
+    public void visitLogicalNode(ASTPtLogicalNode node)
+            throws IllegalActionException {
+        int numChildren = node.jjtGetNumChildren();
+        for (int i = 0; i < numChildren; i++) {
+            if (_primitiveKind((ASTPtRootNode) node.jjtGetChild(i)) != boolean.class) {
+                throw _notCompilable(node);
+            }
+        }
+        // Note that, unlike ParseTreeEvaluator, this evaluates the first
+        // child only once.
+        boolean isAnd = node.isLogicalAnd();
+        MethodHandle result = _compileChild(node, numChildren - 1);
+        for (int i = numChildren - 2; i >= 0; i--) {
+            MethodHandle test = _compileChild(node, i);
+            if (isAnd) {
+                result = MethodHandles.guardWithTest(test, result,
+                        _constant(boolean.class, false));
+            } else {
+                result = MethodHandles.guardWithTest(test,
+                        _constant(boolean.class, true), result);
+            }
+        }
+        _handle = result;
+    }
+
+    /** Throw an exception, because matrix constructs are not compiled.
+     *  @param node The specified node.
+     *  @exception IllegalActionException Always thrown.
+     */
+    @Override
+    public void visitMatrixConstructNode(ASTPtMatrixConstructNode node)
+            throws IllegalActionException {
+        throw _notCompilable(node);
+    }
+
+    /** Throw an exception, because method calls are not compiled.
+     *  @param node The specified node.
+     *  @exception IllegalActionException Always thrown.
+     */
+    @Override
+    public void visitMethodCallNode(ASTPtMethodCallNode node)
+            throws IllegalActionException {
+        throw _notCompilable(node);
+    }
+
+    /** Compile an integer power.
+     *  @param node The specified node.
+     *  @exception IllegalActionException If the node cannot be compiled.
+     */
+    @Override
+    public void visitPowerNode(ASTPtPowerNode node)
+            throws IllegalActionException {
+        Class<?> kind = _numericKind(node);
+        if (_numericKind((ASTPtRootNode) node.jjtGetChild(0)) != kind) {
+            throw _notCompilable(node);
+        }
+        MethodHandle power = _helper("_power", kind, kind, int.class);
+        MethodHandle result = _compileChild(node, 0);
+        for (int i = 1; i < node.jjtGetNumChildren(); i++) {
+            if (_numericKind((ASTPtRootNode) node.jjtGetChild(i)) != int.class) {
+                throw _notCompilable(node);
+            }
+            result = _combine(power, result, _compileChild(node, i));
+        }
+        _handle = result;
+    }
+
+    /** Compile a product.
+     *  @param node The specified node.
+     *  @exception IllegalActionException If the node cannot be compiled.
+     */
+    @Override
+    public void visitProductNode(ASTPtProductNode node)
+            throws IllegalActionException {
+        _compileArithmetic(node, node.getLexicalTokenList());
+    }
+
+    /** Throw an exception, because record constructs are not compiled.
+     *  @param node The specified node.
+     *  @exception IllegalActionException Always thrown.
+     */
+    @Override
+    public void visitRecordConstructNode(ASTPtRecordConstructNode node)
+            throws IllegalActionException {
+        throw _notCompilable(node);
+    }
+
+    /** Compile a comparison of two numbers or two booleans.
+     *  @param node The specified node.
+     *  @exception IllegalActionException If the node cannot be compiled.
+     */
+    @Override
+    public void visitRelationalNode(ASTPtRelationalNode node)
+            throws IllegalActionException {
+        if (_primitiveKind(node) != boolean.class) {
+            throw _notCompilable(node);
+        }
+        Class<?> leftKind = _primitiveKind((ASTPtRootNode) node
+                .jjtGetChild(0));
+        Class<?> rightKind = _primitiveKind((ASTPtRootNode) node
+                .jjtGetChild(1));
+        int kind = node.getOperator().kind;
+
+        Class<?> operandKind;
+        if (leftKind == boolean.class || rightKind == boolean.class) {
+            if (leftKind != rightKind
+                    || kind != PtParserConstants.EQUALS
+                    && kind != PtParserConstants.NOTEQUALS) {
+                throw _notCompilable(node);
+            }
+            operandKind = boolean.class;
+        } else {
+            operandKind = _lub(leftKind, rightKind);
+        }
+
+        String name;
+        if (kind == PtParserConstants.EQUALS) {
+            name = "_isEqualTo";
+        } else if (kind == PtParserConstants.NOTEQUALS) {
+            name = "_isNotEqualTo";
+        } else if (kind == PtParserConstants.GTE) {
+            name = "_isGreaterThanOrEqualTo";
+        } else if (kind == PtParserConstants.GT) {
+            name = "_isGreaterThan";
+        } else if (kind == PtParserConstants.LTE) {
+            name = "_isLessThanOrEqualTo";
+        } else if (kind == PtParserConstants.LT) {
+            name = "_isLessThan";
+        } else {
+            throw _notCompilable(node);
+        }
+
+        _handle = _combine(
+                _helper(name, boolean.class, operandKind, operandKind),
+                _convert(_compileChild(node, 0), operandKind),
+                _convert(_compileChild(node, 1), operandKind));
+    }
+
+    /** Throw an exception, because shifts are not compiled.
+     *  @param node The specified node.
+     *  @exception IllegalActionException Always thrown.
+     */
+    @Override
+    public void visitShiftNode(ASTPtShiftNode node)
+            throws IllegalActionException {
+        throw _notCompilable(node);
+    }
+
+    /** Compile a sum.
+     *  @param node The specified node.
+     *  @exception IllegalActionException If the node cannot be compiled.
+     */
+    @Override
+    public void visitSumNode(ASTPtSumNode node) throws IllegalActionException {
+        _compileArithmetic(node, node.getLexicalTokenList());
+    }
+
+    /** Compile a negation, a logical not or a bitwise not.
+     *  @param node The specified node.
+     *  @exception IllegalActionException If the node cannot be compiled.
+     */
+    @Override
+    public void visitUnaryNode(ASTPtUnaryNode node)
+            throws IllegalActionException {
+        Class<?> kind = _primitiveKind(node);
+        if (_primitiveKind((ASTPtRootNode) node.jjtGetChild(0)) != kind) {
+            throw _notCompilable(node);
+        }
+        String name;
+        if (node.isMinus() && kind != boolean.class) {
+            name = "_negate";
+        } else if (node.isNot() && kind == boolean.class) {
+            name = "_not";
+        } else if (node.isBitwiseNot() && kind == int.class) {
+            name = "_bitwiseNot";
+        } else {
+            throw _notCompilable(node);
+        }
+        _handle = _combine(_helper(name, kind, kind), _compileChild(node, 0));
+    }
+
+    /** Throw an exception, because union constructs are not compiled.
+     *  @param node The specified node.
+     *  @exception IllegalActionException Always thrown.
+     */
+    @Override
+    public void visitUnionConstructNode(ASTPtUnionConstructNode node)
+            throws IllegalActionException {
+        throw _notCompilable(node);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    // The methods below that are named like the token operations are
+    // invoked by the compiled code.  Each one gives the same result as
+    // the corresponding operation of IntToken, DoubleToken or
+    // BooleanToken.
+
+    private static double _add(double left, double right) {
+        return left + right;
+    }
+
+    private static int _add(int left, int right) {
+        return left + right;
+    }
+
+    private static int _bitwiseNot(int value) {
+        return ~value;
+    }
+
+    // The tokens have been checked by CompiledExpression.evaluate().
+    private static boolean _booleanValue(ptolemy.data.Token[] values,
+            int index) {
+        return ((BooleanToken) values[index]).booleanValue();
+    }
+
+    /** Combine the operator with the operands, which all take the array
+     *  of the values of the variables, into a handle that takes that
+     *  array and returns the result of the operator on the results
+     *  of the operands.
+     */
+    private static MethodHandle _combine(MethodHandle operator,
+            MethodHandle... operands) {
+        MethodHandle result = MethodHandles.filterArguments(operator, 0,
+                operands);
+        return MethodHandles.permuteArguments(result, MethodType.methodType(
+                operator.type().returnType(), ptolemy.data.Token[].class),
+                new int[operands.length]);
+    }
+
+    /** Compile a sum or product.  Like the token operations, the
+     *  operators are applied from left to right, and each operation is
+     *  performed on ints if both of its operands are ints.
+     */
+    private void _compileArithmetic(ASTPtRootNode node,
+            List<Token> lexicalTokenList) throws IllegalActionException {
+        Class<?> resultKind = _numericKind((ASTPtRootNode) node
+                .jjtGetChild(0));
+        MethodHandle result = _compileChild(node, 0);
+        for (int i = 1; i < node.jjtGetNumChildren(); i++) {
+            Class<?> nextKind = _numericKind((ASTPtRootNode) node
+                    .jjtGetChild(i));
+            Class<?> kind = _lub(resultKind, nextKind);
+            int operator = lexicalTokenList.get(i - 1).kind;
+            String name;
+            if (operator == PtParserConstants.PLUS) {
+                name = "_add";
+            } else if (operator == PtParserConstants.MINUS) {
+                name = "_subtract";
+            } else if (operator == PtParserConstants.MULTIPLY) {
+                name = "_multiply";
+            } else if (operator == PtParserConstants.DIVIDE) {
+                name = "_divide";
+            } else if (operator == PtParserConstants.MODULO) {
+                name = "_modulo";
+            } else {
+                throw _notCompilable(node);
+            }
+            result = _combine(_helper(name, kind, kind, kind),
+                    _convert(result, kind),
+                    _convert(_compileChild(node, i), kind));
+            resultKind = kind;
+        }
+        if (resultKind != _numericKind(node)) {
+            throw _notCompilable(node);
+        }
+        _handle = result;
+    }
+
+    /** Compile the child with the given index of the given node and
+     *  return its handle.
+     */
+    private MethodHandle _compileChild(ASTPtRootNode node, int i)
+            throws IllegalActionException {
+        ((ASTPtRootNode) node.jjtGetChild(i)).visit(this);
+        return _handle;
+    }
+
+    /** Return a handle that returns the given constant. */
+    private static MethodHandle _constant(Class<?> kind, Object value) {
+        return MethodHandles.dropArguments(
+                MethodHandles.constant(kind, value), 0,
+                ptolemy.data.Token[].class);
+    }
+
+    /** Return a handle that returns the value of the given token, or
+     *  throw an exception if the token cannot be unboxed.
+     */
+    private MethodHandle _constant(ptolemy.data.Token token, Class<?> kind,
+            ASTPtRootNode node) throws IllegalActionException {
+        if (token.isNil()) {
+            throw _notCompilable(node);
+        }
+        if (kind == double.class && token.getClass() == DoubleToken.class
+                && ((ScalarToken) token).isUnitless()) {
+            return _constant(kind, ((DoubleToken) token).doubleValue());
+        } else if (kind == int.class && token.getClass() == IntToken.class
+                && ((ScalarToken) token).isUnitless()) {
+            return _constant(kind, ((IntToken) token).intValue());
+        } else if (kind == boolean.class
+                && token.getClass() == BooleanToken.class) {
+            return _constant(kind, ((BooleanToken) token).booleanValue());
+        }
+        throw _notCompilable(node);
+    }
+
+    /** Convert the result of the handle to the given kind. */
+    private static MethodHandle _convert(MethodHandle handle, Class<?> kind) {
+        return handle.asType(MethodType.methodType(kind,
+                ptolemy.data.Token[].class));
+    }
+
+    private static double _divide(double left, double right) {
+        return left / right;
+    }
+
+    private static int _divide(int left, int right) {
+        return left / right;
+    }
+
+    private static double _doubleValue(ptolemy.data.Token[] values, int index) {
+        return ((DoubleToken) values[index]).doubleValue();
+    }
+
+    /** Return the exception that reports an exception thrown by a
+     *  function in the same way as CachedMethod.invoke().
+     */
+    private static IllegalActionException _functionError(Method method,
+            Throwable throwable) {
+        return new IllegalActionException(null, throwable,
+                "Error invoking function " + method + "\n");
+    }
+
+    /** Return the type of the name in the scope, and record it so that
+     *  the compiled expression can be invalidated if it changes.
+     */
+    private Type _getType(String name) throws IllegalActionException {
+        Type type = null;
+        if (_scope != null) {
+            type = _scope.getType(name);
+        }
+        _types.put(name, type);
+        return type;
+    }
+
+    /** Return a handle on a static method of this class. */
+    private static MethodHandle _helper(String name, Class<?> returnType,
+            Class<?>... parameterTypes) {
+        try {
+            return _LOOKUP.findStatic(ParseTreeCompiler.class, name,
+                    MethodType.methodType(returnType, parameterTypes));
+        } catch (ReflectiveOperationException ex) {
+            throw new InternalErrorException(null, ex, "Failed to find "
+                    + name);
+        }
+    }
+
+    private static int _intValue(ptolemy.data.Token[] values, int index) {
+        return ((IntToken) values[index]).intValue();
+    }
+
+    private static boolean _isEqualTo(boolean left, boolean right) {
+        return left == right;
+    }
+
+    private static boolean _isEqualTo(double left, double right) {
+        return left == right;
+    }
+
+    private static boolean _isEqualTo(int left, int right) {
+        return left == right;
+    }
+
+    private static boolean _isGreaterThan(double left, double right) {
+        return left > right;
+    }
+
+    private static boolean _isGreaterThan(int left, int right) {
+        return left > right;
+    }
+
+    private static boolean _isGreaterThanOrEqualTo(double left, double right) {
+        return left >= right;
+    }
+
+    private static boolean _isGreaterThanOrEqualTo(int left, int right) {
+        return left >= right;
+    }
+
+    private static boolean _isLessThan(double left, double right) {
+        return left < right;
+    }
+
+    private static boolean _isLessThan(int left, int right) {
+        return left < right;
+    }
+
+    private static boolean _isLessThanOrEqualTo(double left, double right) {
+        return left <= right;
+    }
+
+    private static boolean _isLessThanOrEqualTo(int left, int right) {
+        return left <= right;
+    }
+
+    private static boolean _isNotEqualTo(boolean left, boolean right) {
+        return left != right;
+    }
+
+    private static boolean _isNotEqualTo(double left, double right) {
+        return left != right;
+    }
+
+    private static boolean _isNotEqualTo(int left, int right) {
+        return left != right;
+    }
+
+    /** Return the Java class that corresponds to the type of the node,
+     *  or null if there is none.
+     */
+    private static Class<?> _kind(ASTPtRootNode node) {
+        Type type = node.getType();
+        if (BaseType.DOUBLE.equals(type)) {
+            return double.class;
+        } else if (BaseType.INT.equals(type)) {
+            return int.class;
+        } else if (BaseType.BOOLEAN.equals(type)) {
+            return boolean.class;
+        }
+        return null;
+    }
+
+    /** Return the kind on which an operation on the given kinds is
+     *  performed, which is int if both are int, and double otherwise.
+     */
+    private static Class<?> _lub(Class<?> left, Class<?> right) {
+        if (left == int.class && right == int.class) {
+            return int.class;
+        }
+        return double.class;
+    }
+
+    private static double _modulo(double left, double right) {
+        return left % right;
+    }
+
+    private static int _modulo(int left, int right) {
+        return left % right;
+    }
+
+    private static double _multiply(double left, double right) {
+        return left * right;
+    }
+
+    private static int _multiply(int left, int right) {
+        return left * right;
+    }
+
+    // Like the token operations, subtract the value from zero, so
+    // that the negation of 0.0 is 0.0.
+    private static double _negate(double value) {
+        return 0.0 - value;
+    }
+
+    private static int _negate(int value) {
+        return 0 - value;
+    }
+
+    private static boolean _not(boolean value) {
+        return !value;
+    }
+
+    /** Return an exception that reports that the node cannot be
+     *  compiled.  Unlike _unsupportedVisitException(), this does not
+     *  print a stack trace, because the exception only means that the
+     *  parse tree gets evaluated by a ParseTreeEvaluator.
+     */
+    private static IllegalActionException _notCompilable(ASTPtRootNode node) {
+        return new IllegalActionException("Cannot compile " + node);
+    }
+
+    /** Return the kind of the node, which must be int or double. */
+    private Class<?> _numericKind(ASTPtRootNode node)
+            throws IllegalActionException {
+        Class<?> kind = _kind(node);
+        if (kind != int.class && kind != double.class) {
+            throw _notCompilable(node);
+        }
+        return kind;
+    }
+
+    // Like Token.pow(), multiply iteratively.
+    private static double _power(double base, int times) {
+        if (times == 0) {
+            return 1.0;
+        }
+        double result = base;
+        if (times < 0) {
+            for (int k = times; k < -1; k++) {
+                result = result * base;
+            }
+            return 1.0 / result;
+        }
+        for (int k = 0; k < times - 1; k++) {
+            result = result * base;
+        }
+        return result;
+    }
+
+    private static int _power(int base, int times) {
+        if (times == 0) {
+            return 1;
+        }
+        int result = base;
+        if (times < 0) {
+            for (int k = times; k < -1; k++) {
+                result = result * base;
+            }
+            return 1 / result;
+        }
+        for (int k = 0; k < times - 1; k++) {
+            result = result * base;
+        }
+        return result;
+    }
+
+    /** Return the kind of the node, which must be int, double or
+     *  boolean.
+     */
+    private Class<?> _primitiveKind(ASTPtRootNode node)
+            throws IllegalActionException {
+        Class<?> kind = _kind(node);
+        if (kind == null) {
+            throw _notCompilable(node);
+        }
+        return kind;
+    }
+
+    private static double _subtract(double left, double right) {
+        return left - right;
+    }
+
+    private static int _subtract(int left, int right) {
+        return left - right;
+    }
+
+    private static ptolemy.data.Token _toToken(boolean value) {
+        return BooleanToken.getInstance(value);
+    }
+
+    private static ptolemy.data.Token _toToken(double value) {
+        return new DoubleToken(value);
+    }
+
+    private static ptolemy.data.Token _toToken(int value) {
+        return new IntToken(value);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The lookup that is used to find the methods of this class.
+     *  This is initialized before _FUNCTION_ERROR, which uses it.
+     */
+    private static final MethodHandles.Lookup _LOOKUP = MethodHandles
+            .lookup();
+
+    /** The handle on _functionError(). */
+    private static final MethodHandle _FUNCTION_ERROR = _helper(
+            "_functionError", IllegalActionException.class, Method.class,
+            Throwable.class);
+
+    /** The handle that computes the value of the last compiled node. */
+    private MethodHandle _handle;
+
+    /** The scope for type inference. */
+    private ParserScope _scope;
+
+    /** The type inference. */
+    private ParseTreeTypeInference _typeInference;
+
+    /** The types of the names that the expression refers to. */
+    private Map<String, Type> _types;
+
+    /** The token classes of the variables. */
+    private List<Class<?>> _variableClasses;
+
+    /** The names of the variables. */
+    private List<String> _variableNames;
+}
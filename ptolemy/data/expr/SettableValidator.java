@@ -0,0 +1,383 @@
+/* Validate a set of settables in one pass, in the order of their dependencies.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.data.expr;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import ptolemy.kernel.util.IllegalActionException;
+import ptolemy.kernel.util.NamedObj;
+import ptolemy.kernel.util.Settable;
+
+///////////////////////////////////////////////////////////////////
+//// SettableValidator
+
+/**
+ Validate a set of instances of Settable in a single pass, in an order
+ in which each variable is validated after the variables that its
+ expression refers to.
+ <p>
+ Calling validate() on each of a set of variables in an arbitrary
+ order can evaluate the same expression many times.  If a variable is
+ validated before a variable that it depends on, then evaluating it
+ evaluates the other variable, and validating the other variable
+ later invalidates and evaluates both of them again.  This class
+ instead builds the graph of the dependencies among the variables
+ once, by collecting the free variables of each expression and looking
+ them up in the scope of the variable, and then validates the
+ variables in topological order.  Variables that are part of a
+ dependency loop are validated last, in the order in which they were
+ added, so that the loop is reported as before.  Since validating a
+ variable evaluates the variables that depend on it and that have
+ already been evaluated, those variables are not validated again.
+ getEvaluatedCount() and getSkippedCount() report the number of
+ settables that were validated and skipped.</p>
+ <p>
+ The validation of a set of settables can also be deferred with
+ defer(), which is what the MoML parser does if
+ {@link ptolemy.moml.MoMLParser#setDeferParameterEvaluation(boolean)}
+ has been called with <i>true</i>.  The variables are then evaluated
+ when their value is first requested with getToken() or getType(), and
+ validateDeferred(), which the Manager calls before preinitializing
+ the model, validates them in a single pass.  Note that until then the
+ containers of the deferred variables are not notified with
+ attributeChanged(), so actors that initialize their state from their
+ parameters in attributeChanged() do so only when the model is run.
+ Since setting the expression of a variable does not notify the
+ variables that depend on it, a variable that has been evaluated
+ since its validation was deferred is nevertheless validated.</p>
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class SettableValidator {
+
+    /** Construct a validator with no settables.
+     */
+    public SettableValidator() {
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Add a settable to be validated.  If the settable has already
+     *  been added, then do nothing.
+     *  @param settable The settable.
+     */
+    public void add(Settable settable) {
+        if (_settables.add(settable)) {
+            _order = null;
+        }
+    }
+
+    /** Defer the validation of the settables that have been added and
+     *  not validated until validateDeferred() is called with the
+     *  specified top level.  Until then, each variable is evaluated
+     *  when its value is requested.
+     *  If the validation of other settables has already been deferred
+     *  for the same top level, then the settables of this validator are
+     *  validated after those.
+     *  The validator does not prevent the settables or the top level
+     *  from being garbage collected.
+     *  @param toplevel The top level of the model.
+     */
+    public void defer(NamedObj toplevel) {
+        List<Settable> order = sort();
+        List<WeakReference<Settable>> deferred = new ArrayList<WeakReference<Settable>>(
+                order.size());
+        for (Settable settable : order) {
+            if (!_validated.contains(settable)) {
+                deferred.add(new WeakReference<Settable>(settable));
+            }
+        }
+        _settables.clear();
+        _validated.clear();
+        _order = null;
+        synchronized (_DEFERRED) {
+            SettableValidator previous = _DEFERRED.get(toplevel);
+            if (previous != null) {
+                previous._deferredSettables.addAll(deferred);
+            } else {
+                _deferredSettables = deferred;
+                _DEFERRED.put(toplevel, this);
+            }
+        }
+    }
+
+    /** Return the validator whose validation has been deferred for the
+     *  specified top level, or null if there is none.
+     *  @param toplevel The top level of the model.
+     *  @return The validator, or null if there is none.
+     *  @see #defer(NamedObj)
+     */
+    public static SettableValidator getDeferred(NamedObj toplevel) {
+        synchronized (_DEFERRED) {
+            return _DEFERRED.get(toplevel);
+        }
+    }
+
+    /** Return the number of settables on which validate() has been
+     *  called by this validator.
+     *  @return The number of validated settables.
+     */
+    public int getEvaluatedCount() {
+        return _evaluatedCount;
+    }
+
+    /** Return the number of settables that this validator has not
+     *  validated because they were validated as a consequence of the
+     *  validation of another settable.
+     *  @return The number of skipped settables.
+     */
+    public int getSkippedCount() {
+        return _skippedCount;
+    }
+
+    /** Return the settables of this validator in the order in which
+     *  they are validated.  Each variable is after the variables that
+     *  its expression refers to, unless they depend on each other.
+     *  @return A list of settables.
+     */
+    public List<Settable> sort() {
+        if (_order != null) {
+            return _order;
+        }
+        // The variables that depend on each settable.
+        Map<Settable, List<Settable>> dependents = new HashMap<Settable, List<Settable>>();
+        // The number of variables that each settable depends on.
+        Map<Settable, int[]> dependencies = new HashMap<Settable, int[]>();
+        for (Settable settable : _settables) {
+            if (!(settable instanceof Variable)) {
+                continue;
+            }
+            Variable variable = (Variable) settable;
+            for (Variable dependency : _dependencies(variable)) {
+                if (dependency == variable || !_settables.contains(dependency)) {
+                    continue;
+                }
+                List<Settable> list = dependents.get(dependency);
+                if (list == null) {
+                    list = new LinkedList<Settable>();
+                    dependents.put(dependency, list);
+                }
+                list.add(variable);
+                int[] count = dependencies.get(variable);
+                if (count == null) {
+                    count = new int[1];
+                    dependencies.put(variable, count);
+                }
+                count[0]++;
+            }
+        }
+
+        List<Settable> order = new ArrayList<Settable>(_settables.size());
+        for (Settable settable : _settables) {
+            if (!dependencies.containsKey(settable)) {
+                order.add(settable);
+            }
+        }
+        // Append the dependents of each settable once all of their
+        // dependencies are in the list.
+        for (int i = 0; i < order.size(); i++) {
+            List<Settable> list = dependents.get(order.get(i));
+            if (list == null) {
+                continue;
+            }
+            for (Settable dependent : list) {
+                int[] count = dependencies.get(dependent);
+                if (--count[0] == 0) {
+                    order.add(dependent);
+                }
+            }
+        }
+        if (order.size() < _settables.size()) {
+            // The remaining settables depend on each other.
+            for (Settable settable : _settables) {
+                int[] count = dependencies.get(settable);
+                if (count != null && count[0] > 0) {
+                    order.add(settable);
+                }
+            }
+        }
+        _order = order;
+        return order;
+    }
+
+    /** Validate the settables that have been added, in the order
+     *  returned by sort().
+     *  @exception IllegalActionException If a settable cannot be
+     *   validated.
+     */
+    public void validate() throws IllegalActionException {
+        for (Settable settable : sort()) {
+            validate(settable);
+        }
+    }
+
+    /** Validate the specified settable, unless it has already been
+     *  validated as a consequence of the validation of another settable
+     *  by this validator.
+     *  @param settable The settable.
+     *  @exception IllegalActionException If the settable cannot be
+     *   validated.
+     */
+    public void validate(Settable settable) throws IllegalActionException {
+        if (_validated.contains(settable)) {
+            _skippedCount++;
+            return;
+        }
+        Collection<?> validated = settable.validate();
+        _validated.add(settable);
+        _evaluatedCount++;
+        if (validated != null) {
+            for (Object other : validated) {
+                _validated.add((Settable) other);
+            }
+        }
+    }
+
+    /** Validate the settables whose validation was deferred for the
+     *  specified top level, if any, and forget them.
+     *  @param toplevel The top level of the model.
+     *  @return True if the validation of settables had been deferred
+     *   for the top level.
+     *  @exception IllegalActionException If a settable cannot be
+     *   validated.
+     *  @see #defer(NamedObj)
+     */
+    public static boolean validateDeferred(NamedObj toplevel)
+            throws IllegalActionException {
+        SettableValidator validator;
+        synchronized (_DEFERRED) {
+            validator = _DEFERRED.remove(toplevel);
+        }
+        if (validator == null) {
+            return false;
+        }
+        // The deferred settables are already sorted.
+        List<Settable> order = new ArrayList<Settable>(
+                validator._deferredSettables.size());
+        for (WeakReference<Settable> reference : validator._deferredSettables) {
+            Settable settable = reference.get();
+            if (settable != null && validator._settables.add(settable)) {
+                order.add(settable);
+            }
+        }
+        validator._deferredSettables = null;
+        validator._order = order;
+        validator.validate();
+        return true;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Return the variables that the expression of the specified
+     *  variable refers to, without evaluating it.
+     */
+    private Set<Variable> _dependencies(Variable variable) {
+        Set<Variable> result = new HashSet<Variable>();
+        String expression = variable.getExpression();
+        if (expression == null || expression.trim().length() == 0
+                || variable.isStringMode()
+                && (variable.isSuppressVariableSubstitution() || expression
+                        .indexOf('$') < 0)) {
+            return result;
+        }
+        Set<?> freeVariables;
+        try {
+            ASTPtRootNode tree;
+            if (variable.isStringMode()) {
+                tree = _parser.generateStringParseTree(expression);
+            } else {
+                tree = _parser.generateParseTree(expression);
+            }
+            freeVariables = _collector.collectFreeVariables(tree);
+        } catch (IllegalActionException ex) {
+            // Parse errors are reported when the variable is validated.
+            // Expressions that the collector cannot visit are validated
+            // in the order in which they were added.
+            return result;
+        }
+        NamedObj container = variable.getContainer();
+        Iterator<?> names = freeVariables.iterator();
+        while (names.hasNext()) {
+            Variable dependency = ModelScope.getScopedVariable(variable,
+                    container, (String) names.next());
+            if (dependency != null) {
+                result.add(dependency);
+            }
+        }
+        return result;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The collector of the free variables of the expressions. */
+    private ParseTreeFreeVariableCollector _collector = new ParseTreeFreeVariableCollector();
+
+    /** The number of settables that have been validated. */
+    private int _evaluatedCount;
+
+    /** The validators whose validation has been deferred, indexed by
+     *  the top level of their model.
+     */
+    private static final Map<NamedObj, SettableValidator> _DEFERRED = new WeakHashMap<NamedObj, SettableValidator>();
+
+    /** The sorted settables whose validation has been deferred. */
+    private List<WeakReference<Settable>> _deferredSettables;
+
+    /** The sorted settables, or null if they have not been sorted. */
+    private List<Settable> _order;
+
+    /** The parser of the expressions. */
+    private PtParser _parser = new PtParser();
+
+    /** The settables, in the order in which they were added. */
+    private Set<Settable> _settables = new LinkedHashSet<Settable>();
+
+    /** The number of settables that have been skipped. */
+    private int _skippedCount;
+
+    /** The settables that have been validated. */
+    private Set<Settable> _validated = new HashSet<Settable>();
+}
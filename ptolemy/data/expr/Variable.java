@@ -1934,7 +1934,9 @@ public class Variable extends AbstractSettableAttribute implements Typeable,
                         "Empty expression cannot be parsed!");
             }
 
-            PtParser parser = new PtParser();
+            // Constructing a parser allocates its buffers, so reuse
+            // the parser of this thread.
+            PtParser parser = _PARSER.get();
 
             if (isStringMode()) {
                 // Different parse rules for String mode parameters.
@@ -2594,6 +2596,14 @@ public class Variable extends AbstractSettableAttribute implements Typeable,
     //  the parse tree for that expression.
     private ASTPtRootNode _parseTree;
 
+    // The parser of the expressions of the variables, one per thread.
+    private static final ThreadLocal<PtParser> _PARSER = new ThreadLocal<PtParser>() {
+        @Override
+        protected PtParser initialValue() {
+            return new PtParser();
+        }
+    };
+
     // the parse tree evaluator used by this variable.
     private ParseTreeEvaluator _parseTreeEvaluator;
 
@@ -0,0 +1,179 @@
+# Tests for the ParseTreeCompiler class
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2016 The Regents of the University of California.
+# All rights reserved.
+# 
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+# 
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+# 
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+# 
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Ptolemy II test bed, see $PTII/doc/coding/testing.html for more information.
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then { 
+    source testDefs.tcl
+} {}
+
+# Uncomment this to get a full report, or set in your Tcl shell window.
+# set VERBOSE 1
+
+set nl [java::new ptolemy.kernel.util.NamedList]
+foreach {name expression} {
+    d 2.5
+    i 7
+    j -3
+    b true
+    s {"x"}
+    a {{1.0, 2.0}}
+} {
+    set variable [java::new ptolemy.data.expr.Variable]
+    $variable setName $name
+    $variable setExpression $expression
+    $nl prepend $variable
+}
+set scope [java::new ptolemy.data.expr.ExplicitScope $nl]
+
+# Compile and evaluate the expression, and evaluate it with
+# ParseTreeEvaluator.  Return whether it was compiled and the value,
+# or the two values if they differ.
+proc compile {expression} {
+    global scope
+    set parser [java::new ptolemy.data.expr.PtParser]
+    set root [$parser generateParseTree $expression]
+    set compiler [java::new ptolemy.data.expr.ParseTreeCompiler]
+    set compiled [$compiler compileParseTree $root $scope]
+    set value [$compiled evaluate $scope]
+
+    set root [$parser generateParseTree $expression]
+    set evaluator [java::new ptolemy.data.expr.ParseTreeEvaluator]
+    set expected [$evaluator evaluateParseTree $root $scope]
+    if {[$value toString] != [$expected toString] \
+	    || ![[$value getType] equals [$expected getType]]} {
+	return [list [$value toString] != [$expected toString]]
+    }
+    return [list [$compiled isCompiled] [$value toString]]
+}
+
+######################################################################
+####
+#
+test ParseTreeCompiler-1.1 {Integer arithmetic} {
+    list [compile "2 + 3 + 4"] \
+	[compile "2 - 3 - 4"] \
+	[compile "i * 3 % 5"] \
+	[compile "12 / 2 / 3"] \
+	[compile "-(2 + (3) + 4*(3- 4 % 3)*(12/12))"] \
+	[compile "~j"] \
+	[compile "2147483647 + i"]
+} {{1 9} {1 -5} {1 1} {1 2} {1 -13} {1 2} {1 -2147483642}}
+
+test ParseTreeCompiler-1.2 {Double and mixed arithmetic} {
+    list [compile "d + 3.5"] \
+	[compile "i / 2 + d"] \
+	[compile "i / 2 * 1.0"] \
+	[compile "2147483647 + 1 + 1.0"] \
+	[compile "-0.0"] \
+	[compile "7.1 % d"] \
+	[compile "d / 0.0"]
+} {{1 6.0} {1 5.5} {1 3.0} {1 -2.147483647E9} {1 0.0} {1 2.1} {1 Infinity}}
+
+test ParseTreeCompiler-1.3 {Powers} {
+    list [compile "d^2"] \
+	[compile "i^-1"] \
+	[compile "2^10"] \
+	[compile "d^-2"] \
+	[compile "i^0"]
+} {{1 6.25} {1 0} {1 1024} {1 0.16} {1 1}}
+
+test ParseTreeCompiler-1.4 {Relational and logical operators} {
+    list [compile "i > d"] \
+	[compile "i == 7.0"] \
+	[compile "d != 2.5"] \
+	[compile "b && i < 10"] \
+	[compile "!b || d >= 2.5"] \
+	[compile "b == false"] \
+	[compile "i <= 7 && d > 0.0 && j < 0"] \
+	[compile "NaN == NaN"]
+} {{1 true} {1 true} {1 false} {1 true} {1 true} {1 false} {1 true} {1 false}}
+
+test ParseTreeCompiler-1.5 {Functional if} {
+    list [compile "b ? i : d"] \
+	[compile "i > 10 ? 1 : 2"] \
+	[compile "d > 3.0 ? d : i"] \
+	[compile "b ? false : true"]
+} {{1 7.0} {1 2} {1 7.0} {1 false}}
+
+test ParseTreeCompiler-1.6 {Functions and constants} {
+    list [compile "sqrt(i - 3)"] \
+	[compile "abs(j)"] \
+	[compile "max(i, 3)"] \
+	[compile "2 * PI"] \
+	[compile "cos(0)"]
+} {{1 2.0} {1 3} {1 7} {1 6.2831853071796} {1 1.0}}
+
+######################################################################
+####
+#
+test ParseTreeCompiler-2.1 {Expressions that are not compiled} {
+    list [compile "\"a\" + i"] \
+	[compile "a(0) + 1.0"] \
+	[compile "s"] \
+	[compile "{1, 2} + i"] \
+	[compile "eval(\"1 + 2\")"] \
+	[compile "2ub + 3ub"] \
+	[compile "1L + i"]
+} {{0 {"a7"}} {0 2.0} {0 {"x"}} {0 {{8, 9}}} {0 3} {0 5ub} {0 8L}}
+
+test ParseTreeCompiler-2.2 {Errors} {
+    set parser [java::new ptolemy.data.expr.PtParser]
+    set compiler [java::new ptolemy.data.expr.ParseTreeCompiler]
+    set compiled [$compiler compileParseTree \
+	    [$parser generateParseTree "i / (j + 3)"] $scope]
+    catch {$compiled evaluate $scope} message1
+    set compiled [$compiler compileParseTree \
+	    [$parser generateParseTree "i + undefined"] $scope]
+    catch {$compiled evaluate $scope} message2
+    list [$compiled isCompiled] $message1 $message2
+} {0 {java.lang.ArithmeticException: / by zero} {ptolemy.data.expr.UndefinedConstantOrIdentifierException: The ID undefined is undefined.}}
+
+######################################################################
+####
+#
+test ParseTreeCompiler-3.1 {Changing the type of a variable} {
+    set parser [java::new ptolemy.data.expr.PtParser]
+    set compiler [java::new ptolemy.data.expr.ParseTreeCompiler]
+    set compiled [$compiler compileParseTree \
+	    [$parser generateParseTree "d * 2"] $scope]
+    set r1 [[$compiled evaluate $scope] toString]
+    set d [java::cast ptolemy.data.expr.Variable [$nl get d]]
+    set v1 [$compiled isValid $scope]
+    $d setExpression "3"
+    # The compiled code is not used for the int value.
+    set r2 [[$compiled evaluate $scope] toString]
+    set v2 [$compiled isValid $scope]
+    $d setExpression "2.5"
+    list [$compiled isCompiled] $r1 $v1 $r2 $v2 [$compiled isValid $scope]
+} {1 5.0 1 6 0 1}
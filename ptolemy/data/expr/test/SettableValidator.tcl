@@ -0,0 +1,179 @@
+# Tests for the SettableValidator class
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2016 The Regents of the University of California.
+# All rights reserved.
+#
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+#
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+#
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+#
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Ptolemy II test bed, see $PTII/doc/coding/testing.html for more information.
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then {
+    source testDefs.tcl
+} {}
+
+# Uncomment this to get a full report, or set in your Tcl shell window.
+# set VERBOSE 1
+
+# Return the names of the settables of a validator, in order.
+proc sortedNames {validator} {
+    set result {}
+    set settables [$validator sort]
+    for {set i 0} {$i < [$settables size]} {incr i} {
+	lappend result [[java::cast ptolemy.kernel.util.NamedObj \
+		[$settables get $i]] getName]
+    }
+    return $result
+}
+
+######################################################################
+####
+#
+test SettableValidator-1.1 {Variables are sorted after their dependencies} {
+    set e [java::new ptolemy.kernel.util.NamedObj]
+    set d [java::new ptolemy.data.expr.Parameter $e d]
+    set c [java::new ptolemy.data.expr.Parameter $e c]
+    set b [java::new ptolemy.data.expr.Parameter $e b]
+    set a [java::new ptolemy.data.expr.Parameter $e a]
+    $d setExpression "c + b"
+    $c setExpression "b * 2"
+    $b setExpression "a + 1"
+    $a setExpression "1"
+    set validator [java::new ptolemy.data.expr.SettableValidator]
+    foreach variable [list $d $c $b $a] {
+	$validator add $variable
+    }
+    sortedNames $validator
+} {a b c d}
+
+######################################################################
+####
+#
+test SettableValidator-1.2 {Validate the sorted variables} {
+    # Uses $validator from 1.1 above
+    $validator validate
+    list [[$d getToken] toString] [$validator getEvaluatedCount] \
+	[$validator getSkippedCount]
+} {6 4 0}
+
+######################################################################
+####
+#
+test SettableValidator-1.3 {Variables evaluated by propagation are skipped} {
+    # Uses $a, $b, $c and $d from 1.1 above, which are now value
+    # listeners of the variables that they depend on.
+    $a setExpression "2"
+    set validator [java::new ptolemy.data.expr.SettableValidator]
+    foreach variable [list $a $b $c $d] {
+	$validator add $variable
+    }
+    $validator validate
+    list [[$d getToken] toString] [$validator getEvaluatedCount] \
+	[$validator getSkippedCount]
+} {9 2 2}
+
+######################################################################
+####
+#
+test SettableValidator-1.4 {String mode and dependency loops} {
+    set e [java::new ptolemy.kernel.util.NamedObj]
+    set x [java::new ptolemy.data.expr.Parameter $e x]
+    set y [java::new ptolemy.data.expr.Parameter $e y]
+    set s [java::new ptolemy.data.expr.StringParameter $e s]
+    set z [java::new ptolemy.data.expr.Parameter $e z]
+    $x setExpression "y"
+    $y setExpression "x"
+    $s setExpression "z is \$z"
+    $z setExpression "1"
+    set validator [java::new ptolemy.data.expr.SettableValidator]
+    foreach variable [list $x $y $s $z] {
+	$validator add $variable
+    }
+    set names [sortedNames $validator]
+    catch {$validator validate} errMsg
+    list $names [regexp {dependency loop} $errMsg]
+} {{z s x y} 1}
+
+######################################################################
+####
+#
+test SettableValidator-2.1 {Defer the evaluation of the parameters of a model} {
+    set moml {<?xml version="1.0" standalone="no"?>
+<!DOCTYPE entity PUBLIC "-//UC Berkeley//DTD MoML 1//EN"
+    "http://ptolemy.eecs.berkeley.edu/xml/dtd/MoML_1.dtd">
+<entity name="top" class="ptolemy.actor.TypedCompositeActor">
+    <property name="p" class="ptolemy.data.expr.Parameter" value="q + 1"/>
+    <property name="q" class="ptolemy.data.expr.Parameter" value="2"/>
+    <property name="director" class="ptolemy.actor.Director"/>
+    <entity name="ramp" class="ptolemy.actor.lib.Ramp">
+        <property name="firingCountLimit" class="ptolemy.data.expr.Parameter" value="p"/>
+    </entity>
+</entity>
+}
+    java::call ptolemy.moml.MoMLParser setDeferParameterEvaluation true
+    set parser [java::new ptolemy.moml.MoMLParser]
+    set toplevel [java::cast ptolemy.actor.CompositeActor \
+	    [$parser parse $moml]]
+    java::call ptolemy.moml.MoMLParser setDeferParameterEvaluation false
+    set deferred [java::call ptolemy.data.expr.SettableValidator \
+	    getDeferred $toplevel]
+    set p [java::cast ptolemy.data.expr.Parameter [$toplevel getAttribute p]]
+    list [java::isnull $deferred] \
+	[[$parser getSettableValidator] getEvaluatedCount] \
+	[[$p getToken] toString]
+} {0 4 3}
+
+######################################################################
+####
+#
+test SettableValidator-2.2 {The deferred parameters are validated on preinitialize} {
+    # Uses $toplevel and $deferred from 2.1 above
+    set manager [java::new ptolemy.actor.Manager [$toplevel workspace] \
+	    manager]
+    $toplevel setManager $manager
+    $manager preinitializeAndResolveTypes
+    $manager wrapup
+    set limit [java::cast ptolemy.data.expr.Parameter \
+		   [$toplevel getAttribute ramp.firingCountLimit]]
+    list [expr {[$deferred getEvaluatedCount] > 4}] \
+	[java::isnull [java::call ptolemy.data.expr.SettableValidator \
+			   getDeferred $toplevel]] \
+	[[$limit getToken] toString]
+} {1 1 3}
+
+######################################################################
+####
+#
+test SettableValidator-2.3 {The parameters of a model are validated by default} {
+    set parser [java::new ptolemy.moml.MoMLParser]
+    set toplevel [$parser parse $moml]
+    list [java::isnull [java::call ptolemy.data.expr.SettableValidator \
+			    getDeferred $toplevel]] \
+	[[$parser getSettableValidator] getEvaluatedCount] \
+	[[$parser getSettableValidator] getSkippedCount]
+} {1 25 0}
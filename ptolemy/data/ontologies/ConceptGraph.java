@@ -27,6 +27,7 @@ import java.util.Iterator;
 import java.util.Set;
 
 import ptolemy.graph.CPO;
+import ptolemy.graph.MemoizableCPO;
 import ptolemy.graph.NonLatticeCounterExample;
 
 ///////////////////////////////////////////////////////////////////
@@ -54,7 +55,7 @@ import ptolemy.graph.NonLatticeCounterExample;
  *  @Pt.AcceptedRating Red (mankit)
  *  @see ptolemy.graph.CPO
  */
-public abstract class ConceptGraph implements CPO<Concept> {
+public abstract class ConceptGraph implements MemoizableCPO<Concept> {
 
     ///////////////////////////////////////////////////////////////////
     ////                         public methods                    ////
@@ -150,6 +151,19 @@ public abstract class ConceptGraph implements CPO<Concept> {
         return nonLatticeReason() == null;
     }
 
+    /** Return true if the specified element is a finite concept.
+     *  Finite concepts are the entities of an ontology, and they are
+     *  not modified while the ontology is being used, so the results
+     *  of the operations of this concept graph on them may be memoized
+     *  by an inequality solver.
+     *  @param e An Object representing a concept in this concept graph.
+     *  @return True if the element is a finite concept.
+     */
+    @Override
+    public boolean isImmutable(Object e) {
+        return e instanceof FiniteConcept;
+    }
+
     /** Compute the least element of a subset.
      *  The least element of a subset is an element in the
      *  subset that is lower than all the other elements in the
@@ -798,7 +798,7 @@ public class LatticeOntologySolver extends OntologySolver {
                 }
 
                 // Instantiate our own customized version of InequalitySolver.
-                ptolemy.graph.InequalitySolver solver = new ptolemy.graph.InequalitySolver(
+                ptolemy.graph.InequalitySolver solver = new ptolemy.graph.WorklistInequalitySolver(
                         lattice);
                 //InequalitySolver solver = new InequalitySolver(cpo, this);
 
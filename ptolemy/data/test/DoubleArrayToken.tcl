@@ -0,0 +1,161 @@
+# Tests for the DoubleArrayToken, IntArrayToken and ComplexArrayToken classes
+#
+# @Author: Ptolemy II developers
+#
+# @Version $Id$
+#
+# @Copyright (c) 2016 The Regents of the University of California.
+# All rights reserved.
+# 
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+# 
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+# 
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+# 
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Ptolemy II test bed, see $PTII/doc/coding/testing.html for more information.
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then { 
+    source testDefs.tcl
+} {}
+
+# Uncomment this to get a full report, or set in your Tcl shell window.
+# set VERBOSE 1
+
+######################################################################
+####
+# 
+test DoubleArrayToken-1.0 {Create a double array} {
+    set doubles [java::new {double[]} 3 {1.5 2.0 -3.25}]
+    set doubleArrayToken [java::new ptolemy.data.DoubleArrayToken $doubles]
+    list [$doubleArrayToken toString] \
+	[$doubleArrayToken length] \
+	[[$doubleArrayToken getType] toString] \
+	[$doubleArrayToken getDoubleElement 2] \
+	[[$doubleArrayToken getElement 1] toString]
+} {{{1.5, 2.0, -3.25}} 3 arrayType(double,3) -3.25 2.0}
+
+test DoubleArrayToken-1.1 {The constructor copies the array} {
+    $doubles set 0 100.0
+    $doubleArrayToken toString
+} {{1.5, 2.0, -3.25}}
+
+test DoubleArrayToken-1.2 {Elements are only boxed once} {
+    set element [$doubleArrayToken getElement 0]
+    list [java::isnull $element] \
+	[$element equals [$doubleArrayToken getElement 0]] \
+	[[$element getClass] getName]
+} {0 1 ptolemy.data.DoubleToken}
+
+test DoubleArrayToken-2.0 {test equals() and hashCode() against an ArrayToken} {
+    set arrayToken [java::new ptolemy.data.ArrayToken "{1.5, 2.0, -3.25}"]
+    list [$doubleArrayToken equals $arrayToken] \
+	[$arrayToken equals $doubleArrayToken] \
+	[expr {[$doubleArrayToken hashCode] == [$arrayToken hashCode]}]
+} {1 1 1}
+
+test DoubleArrayToken-3.0 {test add, subtract and multiply} {
+    set two [java::new ptolemy.data.DoubleToken 2.0]
+    set sum [$doubleArrayToken add $doubleArrayToken]
+    set difference [$doubleArrayToken subtract $two]
+    set product [$doubleArrayToken multiply $two]
+    list [$sum toString] [[$sum getClass] getName] \
+	[$difference toString] [$product toString] \
+	[[$doubleArrayToken add $arrayToken] toString] \
+	[[$arrayToken add $doubleArrayToken] toString]
+} {{{3.0, 4.0, -6.5}} ptolemy.data.DoubleArrayToken {{-0.5, 0.0, -5.25}} {{3.0, 4.0, -6.5}} {{3.0, 4.0, -6.5}} {{3.0, 4.0, -6.5}}}
+
+test DoubleArrayToken-3.1 {Operations with units are done by the base class} {
+    set meter [java::new ptolemy.data.DoubleToken 2.0]
+    $meter setUnitCategory 0
+    set result [$doubleArrayToken multiply $meter]
+    list [[$result getClass] getName] [$result toString]
+} {ptolemy.data.ArrayToken {{3.0 * unknown, 4.0 * unknown, -6.5 * unknown}}}
+
+test DoubleArrayToken-4.0 {subarray, append and arrayValue} {
+    set tokens [$doubleArrayToken arrayValue]
+    list [[$doubleArrayToken subarray 1] toString] \
+	[[$doubleArrayToken append $arrayToken] toString] \
+	[$tokens length]
+} {{{2.0, -3.25}} {{1.5, 2.0, -3.25, 1.5, 2.0, -3.25}} 3}
+
+test DoubleArrayToken-5.0 {Convert an IntArrayToken to an array of doubles} {
+    set ints [java::new {int[]} 3 {1 2 3}]
+    set intArrayToken [java::new ptolemy.data.IntArrayToken $ints]
+    set doubleArrayType [java::new ptolemy.data.type.ArrayType \
+	[java::field ptolemy.data.type.BaseType DOUBLE]]
+    set converted [$doubleArrayType convert $intArrayToken]
+    list [$intArrayToken toString] [[$converted getClass] getName] \
+	[$converted toString]
+} {{{1, 2, 3}} ptolemy.data.DoubleArrayToken {{1.0, 2.0, 3.0}}}
+
+test DoubleArrayToken-5.1 {Convert to an array of complex numbers} {
+    set complexArrayType [java::new ptolemy.data.type.ArrayType \
+	[java::field ptolemy.data.type.BaseType COMPLEX]]
+    set converted [$complexArrayType convert $doubleArrayToken]
+    list [[$converted getClass] getName] [$converted toString]
+} {ptolemy.data.ComplexArrayToken {{1.5 + 0.0i, 2.0 + 0.0i, -3.25 + 0.0i}}}
+
+test DoubleArrayToken-6.0 {Functions that return arrays of primitives} {
+    set parser [java::new ptolemy.data.expr.PtParser]
+    set evaluator [java::new ptolemy.data.expr.ParseTreeEvaluator]
+    set result1 [$evaluator evaluateParseTree \
+	[$parser generateParseTree "convolve({1.0, 2.0}, {1.0, 1.0})"]]
+    set result2 [$evaluator evaluateParseTree \
+	[$parser generateParseTree "FFTComplexOut({1.0, 1.0})"]]
+    list [[$result1 getClass] getName] [$result1 toString] \
+	[[$result2 getClass] getName] [$result2 toString]
+} {ptolemy.data.DoubleArrayToken {{1.0, 3.0, 2.0}} ptolemy.data.ComplexArrayToken {{2.0 + 0.0i, 0.0 + 0.0i}}}
+
+test DoubleArrayToken-7.0 {isEqualTo with an ArrayToken in either order} {
+    set intArrayToken2 [java::new ptolemy.data.ArrayToken "{1, 2, 3}"]
+    set complexes [java::new {ptolemy.math.Complex[]} 3 [list \
+	[java::new ptolemy.math.Complex 1.5 0.0] \
+	[java::new ptolemy.math.Complex 2.0 0.0] \
+	[java::new ptolemy.math.Complex -3.25 0.0]]]
+    set complexArrayToken [java::new ptolemy.data.ComplexArrayToken $complexes]
+    set complexArrayToken2 [java::new ptolemy.data.ArrayToken \
+	"{1.5 + 0.0i, 2.0 + 0.0i, -3.25 + 0.0i}"]
+    list [[$doubleArrayToken isEqualTo $arrayToken] toString] \
+	[[$arrayToken isEqualTo $doubleArrayToken] toString] \
+	[[$intArrayToken isEqualTo $intArrayToken2] toString] \
+	[[$intArrayToken2 isEqualTo $intArrayToken] toString] \
+	[[$complexArrayToken isEqualTo $complexArrayToken2] toString] \
+	[[$complexArrayToken2 isEqualTo $complexArrayToken] toString] \
+	[[$doubleArrayToken isEqualTo $sum] toString]
+} {true true true true true true false}
+
+test DoubleArrayToken-7.1 {== on function results in either order} {
+    set result1 [$evaluator evaluateParseTree \
+	[$parser generateParseTree "generateRectangularWindow(2) == {1.0, 1.0}"]]
+    set result2 [$evaluator evaluateParseTree \
+	[$parser generateParseTree "{1.0, 1.0} == generateRectangularWindow(2)"]]
+    set result3 [$evaluator evaluateParseTree \
+	[$parser generateParseTree "generateRectangularWindow(2) != {1.0, 2.0}"]]
+    list [$result1 toString] [$result2 toString] [$result3 toString]
+} {true true true}
+
+test DoubleArrayToken-8.0 {Construct an ArrayToken from an expression that returns a subclass} {
+    set arrayToken3 [java::new ptolemy.data.ArrayToken \
+	"generateRectangularWindow(3)"]
+    list [$arrayToken3 length] [$arrayToken3 toString] \
+	[[$arrayToken3 getClass] getName]
+} {3 {{1.0, 1.0, 1.0}} ptolemy.data.ArrayToken}
@@ -28,10 +28,14 @@
 package ptolemy.data.type;
 
 import ptolemy.data.ArrayToken;
+import ptolemy.data.ComplexArrayToken;
+import ptolemy.data.DoubleArrayToken;
+import ptolemy.data.IntArrayToken;
 import ptolemy.data.Token;
 import ptolemy.graph.InequalityTerm;
 import ptolemy.kernel.util.IllegalActionException;
 import ptolemy.kernel.util.InternalErrorException;
+import ptolemy.math.Complex;
 
 /**
 
@@ -188,6 +192,11 @@ public class ArrayType extends StructuredType implements Cloneable {
             return token;
         }
 
+        Token result = _convertPrimitiveArray(argumentArrayToken);
+        if (result != null) {
+            return result;
+        }
+
         Token[] argumentArray = argumentArrayToken.arrayValue();
         Token[] resultArray = new Token[argumentArray.length];
 
@@ -672,6 +681,47 @@ public class ArrayType extends StructuredType implements Cloneable {
         return new ArrayType(elementLUB);
     }
 
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** If the argument is a non-empty IntArrayToken or DoubleArrayToken
+     *  and the element type of this type is double or complex, then
+     *  convert it without creating a token for each element.  Otherwise,
+     *  return null.
+     */
+    private Token _convertPrimitiveArray(ArrayToken token) {
+        if (token.length() == 0) {
+            return null;
+        }
+        Type myElementType = getElementType();
+        if (myElementType.equals(BaseType.DOUBLE)
+                && token instanceof IntArrayToken) {
+            IntArrayToken intArray = (IntArrayToken) token;
+            double[] result = new double[intArray.length()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = intArray.getIntElement(i);
+            }
+            return new DoubleArrayToken(result);
+        } else if (myElementType.equals(BaseType.COMPLEX)) {
+            if (token instanceof IntArrayToken) {
+                IntArrayToken intArray = (IntArrayToken) token;
+                Complex[] result = new Complex[intArray.length()];
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = new Complex(intArray.getIntElement(i));
+                }
+                return new ComplexArrayToken(result);
+            } else if (token instanceof DoubleArrayToken) {
+                DoubleArrayToken doubleArray = (DoubleArrayToken) token;
+                Complex[] result = new Complex[doubleArray.length()];
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = new Complex(doubleArray.getDoubleElement(i));
+                }
+                return new ComplexArrayToken(result);
+            }
+        }
+        return null;
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////                         private variables                 ////
     // the type of array elements.
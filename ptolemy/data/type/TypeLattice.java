@@ -30,11 +30,15 @@ package ptolemy.data.type;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 import ptolemy.data.ActorToken;
 import ptolemy.data.Token;
 import ptolemy.graph.CPO;
 import ptolemy.graph.DirectedAcyclicGraph;
+import ptolemy.graph.MemoizableCPO;
+import ptolemy.kernel.util.InternalErrorException;
 
 ///////////////////////////////////////////////////////////////////
 //// TypeLattice
@@ -43,9 +47,23 @@ import ptolemy.graph.DirectedAcyclicGraph;
  Type hierarchy for token classes.
  <p>
  There is exactly one instance of the type lattice. It is constructed
- once and then does not change during execution. A concurrent hash
- table is used to cache type comparison results to optimize for
- frequently occurring type comparisons.
+ once and then does not change during execution.
+ </p>
+ <p>
+ The results of comparing two types and of finding their least upper
+ bound and greatest lower bound are kept in memos, so that frequently
+ occurring operations are not computed again.  The results are kept
+ only for base types and for constant structured types, because the
+ other structured types may be updated during type resolution.  Equal
+ constant structured types are interned, that is, they are mapped to
+ one shared instance, and the memos are indexed by the identity of
+ the base types and of the shared instances.  Each memo is a fixed
+ size table that can be used by several threads without locking, and
+ the number of shared instances is bounded, so the memory used by the
+ memos does not grow with the number of types that are used.  The
+ number of results found and not found in the memos and the time
+ spent computing the latter can be obtained with {@link #getCacheHits()},
+ {@link #getCacheMisses()} and {@link #getResolutionTime()}.
  </p>
  <p><a href="http://java.sun.com/docs/books/jls/third_edition/html/typesValues.html">The Java Language Spec, 3rd ed.</a>
  says:
@@ -91,6 +109,23 @@ public class TypeLattice {
         return _lattice._basicLattice;
     }
 
+    /** Remove all the results from the memos of the type lattice,
+     *  forget the shared instances of structured types, and reset the
+     *  counts returned by {@link #getCacheHits()},
+     *  {@link #getCacheMisses()} and {@link #getResolutionTime()}.
+     */
+    public static void clearCaches() {
+        for (AtomicReferenceArray<?> memo : TheTypeLattice._memos) {
+            for (int i = 0; i < memo.length(); i++) {
+                memo.set(i, null);
+            }
+        }
+        TheTypeLattice._internedTypes.clear();
+        TheTypeLattice._hits.reset();
+        TheTypeLattice._misses.reset();
+        TheTypeLattice._resolutionTime.reset();
+    }
+
     /** Compare the types of the two specified tokens in the type lattice.
      *  This method returns one of ptolemy.graph.CPO.LOWER,
      *  ptolemy.graph.CPO.SAME, ptolemy.graph.CPO.HIGHER,
@@ -169,6 +204,52 @@ public class TypeLattice {
         return _lattice.compare(type1, type2);
     }
 
+    /** Return the number of comparisons, least upper bounds and
+     *  greatest lower bounds whose results have been found in the
+     *  memos of the type lattice since it was created or since
+     *  {@link #clearCaches()} was last called.
+     *  @return The number of results found in the memos.
+     */
+    public static long getCacheHits() {
+        return TheTypeLattice._hits.sum();
+    }
+
+    /** Return the number of comparisons, least upper bounds and
+     *  greatest lower bounds of base types or constant structured
+     *  types whose results have not been found in the memos of the
+     *  type lattice, and so have been computed, since it was created
+     *  or since {@link #clearCaches()} was last called.
+     *  @return The number of results not found in the memos.
+     */
+    public static long getCacheMisses() {
+        return TheTypeLattice._misses.sum();
+    }
+
+    /** Return the time spent computing the results counted by
+     *  {@link #getCacheMisses()}.  Since the operations on structured
+     *  types are computed from the operations on their components,
+     *  the time spent on a component is also included in the time
+     *  spent on the structured types that contain it.
+     *  @return The time in nanoseconds.
+     */
+    public static long getResolutionTime() {
+        return TheTypeLattice._resolutionTime.sum();
+    }
+
+    /** Return the shared instance of the type if it is a constant
+     *  structured type, and the argument otherwise.  Equal constant
+     *  structured types have the same shared instance, so they can be
+     *  compared with ==.  The shared instance must not be modified.
+     *  If the number of shared instances has reached its bound, then
+     *  the argument is returned.
+     *  @param type The type.
+     *  @return The shared instance of the type, or the argument.
+     */
+    public static Type intern(Type type) {
+        Type result = TheTypeLattice._intern(type);
+        return result == null ? type : result;
+    }
+
     /** Return the an instance of CPO representing the infinite type
      *  lattice.
      *  @return an instance of CPO.
@@ -190,7 +271,7 @@ public class TypeLattice {
     ////                         inner class                       ////
 
     // The infinite type lattice
-    private static class TheTypeLattice implements CPO<Object> {
+    private static class TheTypeLattice implements MemoizableCPO<Object> {
         /** Return the bottom element of the type lattice, which is UNKNOWN.
          *  @return The Type object representing UNKNOWN.
          */
@@ -214,113 +295,7 @@ public class TypeLattice {
          */
         @Override
         public int compare(Object t1, Object t2) {
-            if (!(t1 instanceof Type) || !(t2 instanceof Type)) {
-                throw new IllegalArgumentException("TheTypeLattice.compare: "
-                        + "Arguments are not instances of Type: " + " type1 = "
-                        + t1 + ", type2 = " + t2);
-            }
-            // System.out.println("compare " + type1 + " and " + type2 + " = " + _lattice.compare(type1, type2));
-
-            if (t1 == t2) {
-                return SAME;
-            }
-            Integer val;
-            StringBuilder key = new StringBuilder(((Type) t1).toString());
-            key.append("<");
-            key.append(((Type) t2).toString());
-
-            // Uncommment the false below to measure the impact of
-            // _lattice.compare() on ptolemy.data package performance... Run
-            // ptolemy/data/type/test/performance.xml before and after...(zk)
-            if (//false &&
-                    (val = _getCachedTypeComparisonResult(key.toString())) != null) {
-                return val;
-            }
-
-            Type ct1 = (Type) t1;
-            Type ct2 = (Type) t2;
-
-            Type t1Rep = _toRepresentative(ct1);
-            Type t2Rep = _toRepresentative(ct2);
-
-            int result = INCOMPARABLE;
-            if (t1Rep.equals(t2Rep) && t1Rep instanceof StructuredType) {
-                result = ((StructuredType) t1)._compare((StructuredType) t2);
-            } else if (t1Rep instanceof ArrayType
-                    && !(t2Rep instanceof ArrayType)
-                    && !t2.equals(BaseType.UNKNOWN)
-                    && !t2.equals(BaseType.GENERAL)
-                    && !t2.equals(BaseType.ARRAY_BOTTOM)) {
-                // NOTE: Added by EAL, 7/16/06, to make scalar < {scalar}
-                ArrayType arrayType = (ArrayType) t1;
-                if (arrayType.hasKnownLength() && arrayType.length() != 1) {
-                    // If we have a Const with {1,2,3} -> Display
-                    // then we used to fail here.
-                    result = INCOMPARABLE;
-                } else {
-                    int elementComparison = compare(
-                            ((ArrayType) ct1).getElementType(), t2Rep);
-                    if (elementComparison == SAME
-                            || elementComparison == HIGHER) {
-                        result = HIGHER;
-                    } else {
-                        if (t2Rep == BaseType.GENERAL) {
-                            result = LOWER;
-                        } else {
-                            result = INCOMPARABLE;
-                        }
-                    }
-                }
-            } else if (t2Rep instanceof ArrayType
-                    && !(t1Rep instanceof ArrayType)
-                    && !t1.equals(BaseType.UNKNOWN)
-                    && !t1.equals(BaseType.GENERAL)
-                    && !t1.equals(BaseType.ARRAY_BOTTOM)) {
-                // NOTE: Added by EAL, 7/16/06, to make scalar < {scalar}
-                ArrayType arrayType = (ArrayType) t2;
-                if (arrayType.hasKnownLength() && arrayType.length() != 1
-                        && !t1.equals(BaseType.GENERAL)) {
-                    result = INCOMPARABLE;
-                } else {
-                    int elementComparison = compare(
-                            ((ArrayType) ct2).getElementType(), t1Rep);
-                    if (elementComparison == SAME
-                            || elementComparison == HIGHER) {
-                        result = LOWER;
-                    } else {
-                        if (t1Rep == BaseType.GENERAL) {
-                            result = HIGHER;
-                        } else {
-                            result = INCOMPARABLE;
-                        }
-                    }
-                }
-            } else if (_basicLattice.containsNodeWeight(t1Rep)
-                    && _basicLattice.containsNodeWeight(t2Rep)) {
-                // Both are neither the same structured type, nor an array
-                // and non-array pair, so their type relation is defined
-                // by the basic lattice.
-                result = _basicLattice.compare(t1Rep, t2Rep);
-            } else {
-                // Both arguments are not the same structured type, and
-                // at least one is user defined, so their relation is
-                // rather simple.
-                if (t1Rep.equals(t2Rep)) {
-                    result = SAME;
-                } else if (t1Rep == BaseType.UNKNOWN
-                        || t2Rep == BaseType.GENERAL) {
-                    result = LOWER;
-                } else if (t2Rep == BaseType.UNKNOWN
-                        || t1Rep == BaseType.GENERAL) {
-                    result = HIGHER;
-                } else {
-                    result = INCOMPARABLE;
-                }
-            }
-
-            _setCachedTypeComparisonResult(key.toString(), result);
-
-            return result;
+            return ((Integer) _memoized(_COMPARE, t1, t2)).intValue();
         }
 
         /** Throw an exception. This operation is not supported since the
@@ -343,111 +318,7 @@ public class TypeLattice {
          */
         @Override
         public Object greatestLowerBound(Object t1, Object t2) {
-            if (!(t1 instanceof Type) || !(t2 instanceof Type)) {
-                throw new IllegalArgumentException(
-                        "TheTypeLattice.greatestLowerBound: "
-                                + "Arguments are not instances of Type.");
-            }
-
-            Type ct1 = (Type) t1;
-            Type ct2 = (Type) t2;
-
-            Type t1Rep = _toRepresentative(ct1);
-            Type t2Rep = _toRepresentative(ct2);
-
-            if (t1Rep.equals(t2Rep) && t1Rep instanceof StructuredType) {
-                return ((StructuredType) t1)
-                        ._greatestLowerBound((StructuredType) t2);
-            } else if (t1Rep instanceof ArrayType
-                    && !(t2Rep instanceof ArrayType)
-                    && !t2.equals(BaseType.UNKNOWN)
-                    && !t2.equals(BaseType.ARRAY_BOTTOM)) {
-                // NOTE: Added by EAL, 7/16/06, to make scalar < {scalar}
-                ArrayType arrayType = (ArrayType) t1;
-                int elementComparison = compare(
-                        ((ArrayType) ct1).getElementType(), t2Rep);
-                if (elementComparison == SAME || elementComparison == HIGHER) {
-                    if (arrayType.hasKnownLength() && arrayType.length() != 1) {
-                        return BaseType.UNKNOWN;
-                    } else {
-                        return t2;
-                    }
-                } else {
-                    if (t2Rep == BaseType.GENERAL) {
-                        return t1;
-                    } else {
-                        // INCOMPARABLE
-                        if (_basicLattice.containsNodeWeight(t2Rep)) {
-                            return _basicLattice.greatestLowerBound(t1Rep,
-                                    t2Rep);
-                        } else {
-                            // t2 is a user type (has no representative in the
-                            // basic lattice). Arrays of this type are not supported.
-                            return BaseType.UNKNOWN;
-                        }
-                    }
-                }
-            } else if (t2Rep instanceof ArrayType
-                    && !(t1Rep instanceof ArrayType)
-                    && !t1.equals(BaseType.UNKNOWN)
-                    && !t1.equals(BaseType.ARRAY_BOTTOM)) {
-                // NOTE: Added by EAL, 7/16/06, to make scalar < {scalar}
-                ArrayType arrayType = (ArrayType) t2;
-                int elementComparison = compare(
-                        ((ArrayType) ct2).getElementType(), t1Rep);
-                if (elementComparison == SAME || elementComparison == HIGHER) {
-                    if (arrayType.hasKnownLength() && arrayType.length() != 1) {
-                        return BaseType.UNKNOWN;
-                    } else {
-                        return t1;
-                    }
-                } else {
-                    if (t1Rep == BaseType.GENERAL) {
-                        return t2;
-                    } else {
-                        // INCOMPARABLE
-                        if (_basicLattice.containsNodeWeight(t1Rep)) {
-                            return _basicLattice.greatestLowerBound(t1Rep,
-                                    t2Rep);
-                        } else {
-                            // t1 is a user type (has no representative in the
-                            // basic lattice). Arrays of this type are not supported.
-                            return BaseType.UNKNOWN;
-                        }
-                    }
-                }
-            } else if (_basicLattice.containsNodeWeight(t1Rep)
-                    && _basicLattice.containsNodeWeight(t2Rep)) {
-                // Both are neither the same structured type, nor an array
-                // and non-array pair, so their type relation is defined
-                // by the basic lattice.
-                int relation = _basicLattice.compare(t1Rep, t2Rep);
-
-                if (relation == SAME) {
-                    return t1;
-                } else if (relation == LOWER) {
-                    return t1;
-                } else if (relation == HIGHER) {
-                    return t2;
-                } else { // INCOMPARABLE
-                    return _basicLattice.greatestLowerBound(t1Rep, t2Rep);
-                }
-            } else {
-                // Both arguments are not the same structured type, and
-                // at least one is user defined, so their relation is
-                // rather simple.
-                if (t1Rep.equals(t2Rep)) {
-                    return t1;
-                } else if (t1Rep == BaseType.UNKNOWN
-                        || t2Rep == BaseType.GENERAL) {
-                    return t1;
-                } else if (t2Rep == BaseType.UNKNOWN
-                        || t1Rep == BaseType.GENERAL) {
-                    return t2;
-                } else {
-                    return bottom();
-                }
-            }
+            return _memoized(_GREATEST_LOWER_BOUND, t1, t2);
         }
 
         /** Return the greatest lower bound of a subset.
@@ -508,6 +379,18 @@ public class TypeLattice {
             return null;
         }
 
+        /** Return true if the argument is an instance of BaseType.
+         *  The instances of BaseType are never modified, unlike the
+         *  structured types, whose components may be updated during
+         *  type resolution.
+         *  @param t An instance of Type.
+         *  @return True if the argument is an instance of BaseType.
+         */
+        @Override
+        public boolean isImmutable(Object t) {
+            return t instanceof BaseType;
+        }
+
         /** Return true.
          *  @return true.
          */
@@ -559,176 +442,27 @@ public class TypeLattice {
          */
         @Override
         public Object leastUpperBound(Object t1, Object t2) {
-            if (!(t1 instanceof Type) || !(t2 instanceof Type)) {
-                throw new IllegalArgumentException(
-                        "TheTypeLattice.leastUpperBound: "
-                                + "Arguments are not instances of Type.");
+            return _memoized(_LEAST_UPPER_BOUND, t1, t2);
+        }
+
+        /** Return the least upper bound of a subset.
+         *  @param subset a set of Types.
+         *  @return an instance of Type.
+         */
+        @Override
+        public Object leastUpperBound(Set<Object> subset) {
+            if (subset.size() == 0) {
+                return BaseType.UNKNOWN;
             }
 
-            // System.out.println("LUB of " + t1 + " and " + t2);
-            Type ct1 = (Type) t1;
-            Type ct2 = (Type) t2;
+            Iterator<?> itr = subset.iterator();
+            Object lub = itr.next();
 
-            Type t1Rep = _toRepresentative(ct1);
-            Type t2Rep = _toRepresentative(ct2);
-
-            if (t1Rep.equals(t2Rep) && t1Rep instanceof StructuredType) {
-                return ((StructuredType) t1)
-                        ._leastUpperBound((StructuredType) t2);
-            } else if (t1Rep instanceof ArrayType
-                    && !(t2Rep instanceof ArrayType)
-                    && !t2.equals(BaseType.UNKNOWN)
-                    && !t2.equals(BaseType.GENERAL)
-                    && !t2.equals(BaseType.ARRAY_BOTTOM)) {
-                // NOTE: Added by EAL, 7/16/06, to make scalar < {scalar}
-                ArrayType arrayType = (ArrayType) t1;
-                Type elementType = ((ArrayType) ct1).getElementType();
-                int elementComparison = compare(elementType, t2Rep);
-                if (elementComparison == SAME || elementComparison == HIGHER) {
-                    if (arrayType.hasKnownLength() && arrayType.length() != 1) {
-                        // Least upper bound is unsized type.
-                        return new ArrayType(elementType);
-                    } else {
-                        return t1;
-                    }
-                } else {
-                    if (t2Rep == BaseType.GENERAL) {
-                        return t2;
-                    } else {
-                        // INCOMPARABLE
-                        if (_basicLattice.containsNodeWeight(t2Rep)
-                                && _basicLattice
-                                .containsNodeWeight(elementType)) {
-                            // The least upper bound is an array of the LUB
-                            // of t2Rep and the element type of t1.
-                            return new ArrayType(
-                                    (Type) _basicLattice.leastUpperBound(
-                                            elementType, t2Rep));
-                        } else {
-                            // t2 is a user type (has no representative in the
-                            // basic lattice). Arrays of this type are not supported.
-                            return BaseType.GENERAL;
-                        }
-                    }
-                }
-            } else if (t1.equals(BaseType.ARRAY_BOTTOM)
-                    && !(t2Rep instanceof ArrayType)
-                    && !t2.equals(BaseType.UNKNOWN)
-                    && !t2.equals(BaseType.GENERAL)
-                    && !t2.equals(BaseType.ARRAY_BOTTOM)) {
-                // NOTE: Added by EAL, 10/8/12, to make lub(arrayBottom, double) = {double}
-                // INCOMPARABLE
-                if (_basicLattice.containsNodeWeight(t2Rep)) {
-                    // The least upper bound is an array of t2Rep.
-                    return new ArrayType(t2Rep);
-                } else {
-                    // t2 is a user type (has no representative in the
-                    // basic lattice). Arrays of this type are not supported.
-                    return BaseType.GENERAL;
-                }
-            } else if (t2Rep instanceof ArrayType
-                    && !(t1Rep instanceof ArrayType)
-                    && !t1.equals(BaseType.UNKNOWN)
-                    && !t1.equals(BaseType.GENERAL)
-                    && !t1.equals(BaseType.ARRAY_BOTTOM)) {
-                // NOTE: Added by EAL, 7/16/06, to make scalar < {scalar}
-                ArrayType arrayType = (ArrayType) t2;
-                Type elementType = ((ArrayType) ct2).getElementType();
-                int elementComparison = compare(elementType, t1Rep);
-                if (elementComparison == SAME || elementComparison == HIGHER) {
-                    if (arrayType.hasKnownLength() && arrayType.length() != 1) {
-                        // Least upper bound is unsized type.
-                        return new ArrayType(elementType);
-                    } else {
-                        return t2;
-                    }
-                } else {
-                    if (t1Rep == BaseType.GENERAL) {
-                        return t1;
-                    } else {
-                        // INCOMPARABLE
-                        if (_basicLattice.containsNodeWeight(t1Rep)
-                                && _basicLattice
-                                .containsNodeWeight(elementType)) {
-                            // The least upper bound is an array of the LUB
-                            // of t2Rep and the element type of t1.
-                            return new ArrayType(
-                                    (Type) _basicLattice.leastUpperBound(
-                                            elementType, t1Rep));
-                        } else {
-                            // t1 is a user type (has no representative in the
-                            // basic lattice). Arrays of this type are not supported.
-                            return BaseType.GENERAL;
-                        }
-                    }
-                }
-            } else if (t2.equals(BaseType.ARRAY_BOTTOM)
-                    && !(t1Rep instanceof ArrayType)
-                    && !t1.equals(BaseType.UNKNOWN)
-                    && !t1.equals(BaseType.GENERAL)
-                    && !t1.equals(BaseType.ARRAY_BOTTOM)) {
-                // NOTE: Added by EAL, 10/8/12, to make lub(double, arrayBottom) = {double}
-                // INCOMPARABLE
-                if (_basicLattice.containsNodeWeight(t1Rep)) {
-                    // The least upper bound is an array of t2Rep.
-                    return new ArrayType(t1Rep);
-                } else {
-                    // t2 is a user type (has no representative in the
-                    // basic lattice). Arrays of this type are not supported.
-                    return BaseType.GENERAL;
-                }
-            } else if (_basicLattice.containsNodeWeight(t1Rep)
-                    && _basicLattice.containsNodeWeight(t2Rep)) {
-                // Both are neither the same structured type, nor an array
-                // and non-array pair, so their type relation is defined
-                // by the basic lattice.
-                int relation = _basicLattice.compare(t1Rep, t2Rep);
-
-                if (relation == SAME) {
-                    return t1;
-                } else if (relation == LOWER) {
-                    return t2;
-                } else if (relation == HIGHER) {
-                    return t1;
-                } else { // INCOMPARABLE
-                    return _basicLattice.leastUpperBound(t1Rep, t2Rep);
-                }
-            } else {
-                // Both arguments are not the same structured type, and
-                // at least one is user defined, so their relation is
-                // rather simple.
-                if (t1Rep.equals(t2Rep)) {
-                    return t1;
-                } else if (t1Rep == BaseType.UNKNOWN
-                        || t2Rep == BaseType.GENERAL) {
-                    return t2;
-                } else if (t2Rep == BaseType.UNKNOWN
-                        || t1Rep == BaseType.GENERAL) {
-                    return t1;
-                } else {
-                    return top();
-                }
-            }
-        }
-
-        /** Return the least upper bound of a subset.
-         *  @param subset a set of Types.
-         *  @return an instance of Type.
-         */
-        @Override
-        public Object leastUpperBound(Set<Object> subset) {
-            if (subset.size() == 0) {
-                return BaseType.UNKNOWN;
-            }
-
-            Iterator<?> itr = subset.iterator();
-            Object lub = itr.next();
-
-            // start looping from index 0 so that subset[0] is checked for
-            // possible exception, in case the subset has only one element.
-            while (itr.hasNext()) {
-                lub = leastUpperBound(lub, itr.next());
-            }
+            // start looping from index 0 so that subset[0] is checked for
+            // possible exception, in case the subset has only one element.
+            while (itr.hasNext()) {
+                lub = leastUpperBound(lub, itr.next());
+            }
 
             return lub;
         }
@@ -902,41 +636,537 @@ public class TypeLattice {
         ///////////////////////////////////////////////////////////////
         ////                      private methods                  ////
 
-        /** Return the result for the types that have the given two
-         * indexes as hashes.
-         */
-        private static final Integer _getCachedTypeComparisonResult(String key) {
-            return _compareCache.get(key);
-        }
+        // Compare two types in the type lattice without looking up the
+        // result in the memo.
+        private int _compare(Object t1, Object t2) {
+            if (!(t1 instanceof Type) || !(t2 instanceof Type)) {
+                throw new IllegalArgumentException("TheTypeLattice.compare: "
+                        + "Arguments are not instances of Type: " + " type1 = "
+                        + t1 + ", type2 = " + t2);
+            }
+            // System.out.println("compare " + type1 + " and " + type2 + " = " + _lattice.compare(type1, type2));
 
-        /** Set the result for the types that have the given two
-         *  indexes as hashes.
-         */
-        private static final void _setCachedTypeComparisonResult(String key,
-                int value) {
-            _compareCache.put(key, value);
-        }
+            if (t1 == t2) {
+                return SAME;
+            }
+            Type ct1 = (Type) t1;
+            Type ct2 = (Type) t2;
 
-        // If the argument is a structured type, return its representative;
-        // otherwise, return the argument. In the latter case, the argument
-        // is either a base type or a user defined type that is not a
-        // structured type.
-        private Type _toRepresentative(Type t) {
-            if (t instanceof StructuredType) {
-                return ((StructuredType) t)._getRepresentative();
+            Type t1Rep = _toRepresentative(ct1);
+            Type t2Rep = _toRepresentative(ct2);
+
+            int result = INCOMPARABLE;
+            if (t1Rep.equals(t2Rep) && t1Rep instanceof StructuredType) {
+                result = ((StructuredType) t1)._compare((StructuredType) t2);
+            } else if (t1Rep instanceof ArrayType
+                    && !(t2Rep instanceof ArrayType)
+                    && !t2.equals(BaseType.UNKNOWN)
+                    && !t2.equals(BaseType.GENERAL)
+                    && !t2.equals(BaseType.ARRAY_BOTTOM)) {
+                // NOTE: Added by EAL, 7/16/06, to make scalar < {scalar}
+                ArrayType arrayType = (ArrayType) t1;
+                if (arrayType.hasKnownLength() && arrayType.length() != 1) {
+                    // If we have a Const with {1,2,3} -> Display
+                    // then we used to fail here.
+                    result = INCOMPARABLE;
+                } else {
+                    int elementComparison = compare(
+                            ((ArrayType) ct1).getElementType(), t2Rep);
+                    if (elementComparison == SAME
+                            || elementComparison == HIGHER) {
+                        result = HIGHER;
+                    } else {
+                        if (t2Rep == BaseType.GENERAL) {
+                            result = LOWER;
+                        } else {
+                            result = INCOMPARABLE;
+                        }
+                    }
+                }
+            } else if (t2Rep instanceof ArrayType
+                    && !(t1Rep instanceof ArrayType)
+                    && !t1.equals(BaseType.UNKNOWN)
+                    && !t1.equals(BaseType.GENERAL)
+                    && !t1.equals(BaseType.ARRAY_BOTTOM)) {
+                // NOTE: Added by EAL, 7/16/06, to make scalar < {scalar}
+                ArrayType arrayType = (ArrayType) t2;
+                if (arrayType.hasKnownLength() && arrayType.length() != 1
+                        && !t1.equals(BaseType.GENERAL)) {
+                    result = INCOMPARABLE;
+                } else {
+                    int elementComparison = compare(
+                            ((ArrayType) ct2).getElementType(), t1Rep);
+                    if (elementComparison == SAME
+                            || elementComparison == HIGHER) {
+                        result = LOWER;
+                    } else {
+                        if (t1Rep == BaseType.GENERAL) {
+                            result = HIGHER;
+                        } else {
+                            result = INCOMPARABLE;
+                        }
+                    }
+                }
+            } else if (_basicLattice.containsNodeWeight(t1Rep)
+                    && _basicLattice.containsNodeWeight(t2Rep)) {
+                // Both are neither the same structured type, nor an array
+                // and non-array pair, so their type relation is defined
+                // by the basic lattice.
+                result = _basicLattice.compare(t1Rep, t2Rep);
             } else {
-                return t;
+                // Both arguments are not the same structured type, and
+                // at least one is user defined, so their relation is
+                // rather simple.
+                if (t1Rep.equals(t2Rep)) {
+                    result = SAME;
+                } else if (t1Rep == BaseType.UNKNOWN
+                        || t2Rep == BaseType.GENERAL) {
+                    result = LOWER;
+                } else if (t2Rep == BaseType.UNKNOWN
+                        || t1Rep == BaseType.GENERAL) {
+                    result = HIGHER;
+                } else {
+                    result = INCOMPARABLE;
+                }
             }
+
+            return result;
         }
 
-        ///////////////////////////////////////////////////////////////
-        ////                     private variables                 ////
+        // Return the result of the specified operation on the two types
+        // without looking it up in the memo.
+        private Object _compute(int operation, Object t1, Object t2) {
+            if (operation == _COMPARE) {
+                return Integer.valueOf(_compare(t1, t2));
+            } else if (operation == _GREATEST_LOWER_BOUND) {
+                return _greatestLowerBound(t1, t2);
+            } else {
+                return _leastUpperBound(t1, t2);
+            }
+        }
+
+        // Return a copy of the result of an operation that may be given
+        // to the caller.  Structured types are copied, so that the
+        // result kept in the memo is not modified by the caller.
+        private static Object _copy(Object result) {
+            if (result instanceof StructuredType) {
+                try {
+                    return ((StructuredType) result).clone();
+                } catch (CloneNotSupportedException ex) {
+                    throw new InternalErrorException(null, ex,
+                            "Cannot copy the type " + result);
+                }
+            }
+            return result;
+        }
+
+        // Return the greatest lower bound of two types without looking
+        // up the result in the memo.
+        private Object _greatestLowerBound(Object t1, Object t2) {
+            if (!(t1 instanceof Type) || !(t2 instanceof Type)) {
+                throw new IllegalArgumentException(
+                        "TheTypeLattice.greatestLowerBound: "
+                                + "Arguments are not instances of Type.");
+            }
+
+            Type ct1 = (Type) t1;
+            Type ct2 = (Type) t2;
+
+            Type t1Rep = _toRepresentative(ct1);
+            Type t2Rep = _toRepresentative(ct2);
+
+            if (t1Rep.equals(t2Rep) && t1Rep instanceof StructuredType) {
+                return ((StructuredType) t1)
+                        ._greatestLowerBound((StructuredType) t2);
+            } else if (t1Rep instanceof ArrayType
+                    && !(t2Rep instanceof ArrayType)
+                    && !t2.equals(BaseType.UNKNOWN)
+                    && !t2.equals(BaseType.ARRAY_BOTTOM)) {
+                // NOTE: Added by EAL, 7/16/06, to make scalar < {scalar}
+                ArrayType arrayType = (ArrayType) t1;
+                int elementComparison = compare(
+                        ((ArrayType) ct1).getElementType(), t2Rep);
+                if (elementComparison == SAME || elementComparison == HIGHER) {
+                    if (arrayType.hasKnownLength() && arrayType.length() != 1) {
+                        return BaseType.UNKNOWN;
+                    } else {
+                        return t2;
+                    }
+                } else {
+                    if (t2Rep == BaseType.GENERAL) {
+                        return t1;
+                    } else {
+                        // INCOMPARABLE
+                        if (_basicLattice.containsNodeWeight(t2Rep)) {
+                            return _basicLattice.greatestLowerBound(t1Rep,
+                                    t2Rep);
+                        } else {
+                            // t2 is a user type (has no representative in the
+                            // basic lattice). Arrays of this type are not supported.
+                            return BaseType.UNKNOWN;
+                        }
+                    }
+                }
+            } else if (t2Rep instanceof ArrayType
+                    && !(t1Rep instanceof ArrayType)
+                    && !t1.equals(BaseType.UNKNOWN)
+                    && !t1.equals(BaseType.ARRAY_BOTTOM)) {
+                // NOTE: Added by EAL, 7/16/06, to make scalar < {scalar}
+                ArrayType arrayType = (ArrayType) t2;
+                int elementComparison = compare(
+                        ((ArrayType) ct2).getElementType(), t1Rep);
+                if (elementComparison == SAME || elementComparison == HIGHER) {
+                    if (arrayType.hasKnownLength() && arrayType.length() != 1) {
+                        return BaseType.UNKNOWN;
+                    } else {
+                        return t1;
+                    }
+                } else {
+                    if (t1Rep == BaseType.GENERAL) {
+                        return t2;
+                    } else {
+                        // INCOMPARABLE
+                        if (_basicLattice.containsNodeWeight(t1Rep)) {
+                            return _basicLattice.greatestLowerBound(t1Rep,
+                                    t2Rep);
+                        } else {
+                            // t1 is a user type (has no representative in the
+                            // basic lattice). Arrays of this type are not supported.
+                            return BaseType.UNKNOWN;
+                        }
+                    }
+                }
+            } else if (_basicLattice.containsNodeWeight(t1Rep)
+                    && _basicLattice.containsNodeWeight(t2Rep)) {
+                // Both are neither the same structured type, nor an array
+                // and non-array pair, so their type relation is defined
+                // by the basic lattice.
+                int relation = _basicLattice.compare(t1Rep, t2Rep);
+
+                if (relation == SAME) {
+                    return t1;
+                } else if (relation == LOWER) {
+                    return t1;
+                } else if (relation == HIGHER) {
+                    return t2;
+                } else { // INCOMPARABLE
+                    return _basicLattice.greatestLowerBound(t1Rep, t2Rep);
+                }
+            } else {
+                // Both arguments are not the same structured type, and
+                // at least one is user defined, so their relation is
+                // rather simple.
+                if (t1Rep.equals(t2Rep)) {
+                    return t1;
+                } else if (t1Rep == BaseType.UNKNOWN
+                        || t2Rep == BaseType.GENERAL) {
+                    return t1;
+                } else if (t2Rep == BaseType.UNKNOWN
+                        || t1Rep == BaseType.GENERAL) {
+                    return t2;
+                } else {
+                    return bottom();
+                }
+            }
+        }
+
+        // Return the shared instance of a type that is equal to the
+        // argument, or null if the argument is not a constant structured
+        // type or if the table of shared instances is full.
+        private static Type _intern(Type type) {
+            if (!(type instanceof StructuredType) || !type.isConstant()) {
+                return null;
+            }
+            Type result = _internedTypes.get(type);
+            if (result == null && _internedTypes.size() < _INTERNED_TYPES_LIMIT) {
+                // Keep a copy, because the argument belongs to the caller.
+                result = (Type) _copy(type);
+                Type previous = _internedTypes.putIfAbsent(result, result);
+                if (previous != null) {
+                    result = previous;
+                }
+            }
+            return result;
+        }
+
+        // Return the least upper bound of two types without looking up
+        // the result in the memo.
+        private Object _leastUpperBound(Object t1, Object t2) {
+            if (!(t1 instanceof Type) || !(t2 instanceof Type)) {
+                throw new IllegalArgumentException(
+                        "TheTypeLattice.leastUpperBound: "
+                                + "Arguments are not instances of Type.");
+            }
+
+            // System.out.println("LUB of " + t1 + " and " + t2);
+            Type ct1 = (Type) t1;
+            Type ct2 = (Type) t2;
+
+            Type t1Rep = _toRepresentative(ct1);
+            Type t2Rep = _toRepresentative(ct2);
+
+            if (t1Rep.equals(t2Rep) && t1Rep instanceof StructuredType) {
+                return ((StructuredType) t1)
+                        ._leastUpperBound((StructuredType) t2);
+            } else if (t1Rep instanceof ArrayType
+                    && !(t2Rep instanceof ArrayType)
+                    && !t2.equals(BaseType.UNKNOWN)
+                    && !t2.equals(BaseType.GENERAL)
+                    && !t2.equals(BaseType.ARRAY_BOTTOM)) {
+                // NOTE: Added by EAL, 7/16/06, to make scalar < {scalar}
+                ArrayType arrayType = (ArrayType) t1;
+                Type elementType = ((ArrayType) ct1).getElementType();
+                int elementComparison = compare(elementType, t2Rep);
+                if (elementComparison == SAME || elementComparison == HIGHER) {
+                    if (arrayType.hasKnownLength() && arrayType.length() != 1) {
+                        // Least upper bound is unsized type.
+                        return new ArrayType(elementType);
+                    } else {
+                        return t1;
+                    }
+                } else {
+                    if (t2Rep == BaseType.GENERAL) {
+                        return t2;
+                    } else {
+                        // INCOMPARABLE
+                        if (_basicLattice.containsNodeWeight(t2Rep)
+                                && _basicLattice
+                                .containsNodeWeight(elementType)) {
+                            // The least upper bound is an array of the LUB
+                            // of t2Rep and the element type of t1.
+                            return new ArrayType(
+                                    (Type) _basicLattice.leastUpperBound(
+                                            elementType, t2Rep));
+                        } else {
+                            // t2 is a user type (has no representative in the
+                            // basic lattice). Arrays of this type are not supported.
+                            return BaseType.GENERAL;
+                        }
+                    }
+                }
+            } else if (t1.equals(BaseType.ARRAY_BOTTOM)
+                    && !(t2Rep instanceof ArrayType)
+                    && !t2.equals(BaseType.UNKNOWN)
+                    && !t2.equals(BaseType.GENERAL)
+                    && !t2.equals(BaseType.ARRAY_BOTTOM)) {
+                // NOTE: Added by EAL, 10/8/12, to make lub(arrayBottom, double) = {double}
+                // INCOMPARABLE
+                if (_basicLattice.containsNodeWeight(t2Rep)) {
+                    // The least upper bound is an array of t2Rep.
+                    return new ArrayType(t2Rep);
+                } else {
+                    // t2 is a user type (has no representative in the
+                    // basic lattice). Arrays of this type are not supported.
+                    return BaseType.GENERAL;
+                }
+            } else if (t2Rep instanceof ArrayType
+                    && !(t1Rep instanceof ArrayType)
+                    && !t1.equals(BaseType.UNKNOWN)
+                    && !t1.equals(BaseType.GENERAL)
+                    && !t1.equals(BaseType.ARRAY_BOTTOM)) {
+                // NOTE: Added by EAL, 7/16/06, to make scalar < {scalar}
+                ArrayType arrayType = (ArrayType) t2;
+                Type elementType = ((ArrayType) ct2).getElementType();
+                int elementComparison = compare(elementType, t1Rep);
+                if (elementComparison == SAME || elementComparison == HIGHER) {
+                    if (arrayType.hasKnownLength() && arrayType.length() != 1) {
+                        // Least upper bound is unsized type.
+                        return new ArrayType(elementType);
+                    } else {
+                        return t2;
+                    }
+                } else {
+                    if (t1Rep == BaseType.GENERAL) {
+                        return t1;
+                    } else {
+                        // INCOMPARABLE
+                        if (_basicLattice.containsNodeWeight(t1Rep)
+                                && _basicLattice
+                                .containsNodeWeight(elementType)) {
+                            // The least upper bound is an array of the LUB
+                            // of t2Rep and the element type of t1.
+                            return new ArrayType(
+                                    (Type) _basicLattice.leastUpperBound(
+                                            elementType, t1Rep));
+                        } else {
+                            // t1 is a user type (has no representative in the
+                            // basic lattice). Arrays of this type are not supported.
+                            return BaseType.GENERAL;
+                        }
+                    }
+                }
+            } else if (t2.equals(BaseType.ARRAY_BOTTOM)
+                    && !(t1Rep instanceof ArrayType)
+                    && !t1.equals(BaseType.UNKNOWN)
+                    && !t1.equals(BaseType.GENERAL)
+                    && !t1.equals(BaseType.ARRAY_BOTTOM)) {
+                // NOTE: Added by EAL, 10/8/12, to make lub(double, arrayBottom) = {double}
+                // INCOMPARABLE
+                if (_basicLattice.containsNodeWeight(t1Rep)) {
+                    // The least upper bound is an array of t2Rep.
+                    return new ArrayType(t1Rep);
+                } else {
+                    // t2 is a user type (has no representative in the
+                    // basic lattice). Arrays of this type are not supported.
+                    return BaseType.GENERAL;
+                }
+            } else if (_basicLattice.containsNodeWeight(t1Rep)
+                    && _basicLattice.containsNodeWeight(t2Rep)) {
+                // Both are neither the same structured type, nor an array
+                // and non-array pair, so their type relation is defined
+                // by the basic lattice.
+                int relation = _basicLattice.compare(t1Rep, t2Rep);
+
+                if (relation == SAME) {
+                    return t1;
+                } else if (relation == LOWER) {
+                    return t2;
+                } else if (relation == HIGHER) {
+                    return t1;
+                } else { // INCOMPARABLE
+                    return _basicLattice.leastUpperBound(t1Rep, t2Rep);
+                }
+            } else {
+                // Both arguments are not the same structured type, and
+                // at least one is user defined, so their relation is
+                // rather simple.
+                if (t1Rep.equals(t2Rep)) {
+                    return t1;
+                } else if (t1Rep == BaseType.UNKNOWN
+                        || t2Rep == BaseType.GENERAL) {
+                    return t2;
+                } else if (t2Rep == BaseType.UNKNOWN
+                        || t1Rep == BaseType.GENERAL) {
+                    return t1;
+                } else {
+                    return top();
+                }
+            }
+        }
+
+        // Return the key with which the results of operations on the
+        // type are kept in the memos, which is the type itself for base
+        // types, and its shared instance for constant structured types.
+        // Return null if the results of operations on the type are not
+        // kept, because it is not a type or because it may change.
+        private static Type _memoKey(Object t) {
+            if (t instanceof BaseType) {
+                return (Type) t;
+            } else if (t instanceof Type) {
+                return _intern((Type) t);
+            }
+            return null;
+        }
+
+        // Return the result of the specified operation on the two types,
+        // looking it up in the memo of the operation first if both types
+        // have memo keys.
+        private Object _memoized(int operation, Object t1, Object t2) {
+            Type key1 = _memoKey(t1);
+            Type key2 = key1 == null ? null : _memoKey(t2);
+            if (key2 == null) {
+                return _compute(operation, t1, t2);
+            }
+            AtomicReferenceArray<_MemoEntry> memo = _memos[operation];
+            int slot = (31 * System.identityHashCode(key1) + System
+                    .identityHashCode(key2)) & (_MEMO_SIZE - 1);
+            _MemoEntry entry = memo.get(slot);
+            if (entry != null && entry.type1 == key1 && entry.type2 == key2) {
+                _hits.increment();
+                return _copy(entry.result);
+            }
+            _misses.increment();
+            long start = System.nanoTime();
+            Object result = _compute(operation, t1, t2);
+            _resolutionTime.add(System.nanoTime() - start);
+            if (result != null) {
+                memo.set(slot, new _MemoEntry(key1, key2, _copy(result)));
+            }
+            return result;
+        }
+
+        // If the argument is a structured type, return its representative;
+        // otherwise, return the argument. In the latter case, the argument
+        // is either a base type or a user defined type that is not a
+        // structured type.
+        private Type _toRepresentative(Type t) {
+            if (t instanceof StructuredType) {
+                return ((StructuredType) t)._getRepresentative();
+            } else {
+                return t;
+            }
+        }
+
+        ///////////////////////////////////////////////////////////////
+        ////                     private variables                 ////
 
         private DirectedAcyclicGraph _basicLattice;
 
-        /** The result cache for parts of the type lattice. */
-        private final static ConcurrentHashMap<String, Integer> _compareCache = new ConcurrentHashMap<String, Integer>();
+        // The operations whose results are kept in the memos, used as
+        // indices into _memos.
+        private static final int _COMPARE = 0;
+
+        private static final int _GREATEST_LOWER_BOUND = 1;
+
+        private static final int _LEAST_UPPER_BOUND = 2;
+
+        /** The number of results of operations that have been found in
+         *  the memos.
+         */
+        private static final LongAdder _hits = new LongAdder();
+
+        /** The maximum number of shared instances of structured types. */
+        private static final int _INTERNED_TYPES_LIMIT = 10000;
+
+        /** The shared instances of constant structured types. */
+        private static final ConcurrentHashMap<Type, Type> _internedTypes = new ConcurrentHashMap<Type, Type>();
 
+        /** The number of entries of the memo of each operation, which
+         *  must be a power of two.
+         */
+        private static final int _MEMO_SIZE = 4096;
+
+        /** The memos of the results of comparing two types and of
+         *  finding their greatest lower bound and least upper bound.
+         *  Each memo is a direct-mapped table indexed by a hash of the
+         *  identities of the memo keys of the two types, so its size is
+         *  bounded and an entry is replaced when another pair of types
+         *  hashes to the same slot.
+         */
+        @SuppressWarnings("unchecked")
+        private static final AtomicReferenceArray<_MemoEntry>[] _memos = new AtomicReferenceArray[] {
+                new AtomicReferenceArray<_MemoEntry>(_MEMO_SIZE),
+                new AtomicReferenceArray<_MemoEntry>(_MEMO_SIZE),
+                new AtomicReferenceArray<_MemoEntry>(_MEMO_SIZE) };
+
+        /** The number of results of operations that have not been found
+         *  in the memos.
+         */
+        private static final LongAdder _misses = new LongAdder();
+
+        /** The time in nanoseconds spent computing the results of
+         *  operations that have not been found in the memos.
+         */
+        private static final LongAdder _resolutionTime = new LongAdder();
+
+        ///////////////////////////////////////////////////////////////
+        ////                      inner classes                    ////
+
+        // An entry of a memo, which is immutable, so that it can be
+        // shared between threads without locking.
+        private static class _MemoEntry {
+            _MemoEntry(Type type1, Type type2, Object result) {
+                this.type1 = type1;
+                this.type2 = type2;
+                this.result = result;
+            }
+
+            final Type type1;
+
+            final Type type2;
+
+            final Object result;
+        }
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -516,3 +516,76 @@ test TypeLattice-4.4 {compare boolean and int} {
     set lattice [java::new ptolemy.data.type.TypeLattice]
     list [[java::call ptolemy.data.type.TypeLattice leastUpperBound $int $boolean] toString] [[java::call ptolemy.data.type.TypeLattice leastUpperBound $boolean $int] toString]
 } {scalar scalar}
+
+######################################################################
+####
+#
+# Return 1 if the two arguments refer to the same Java object.
+proc _sameObject {object1 object2} {
+    expr {[java::call System identityHashCode $object1] \
+              == [java::call System identityHashCode $object2]}
+}
+
+test TypeLattice-5.1 {intern} {
+    set int [java::field ptolemy.data.type.BaseType INT]
+    set double [java::field ptolemy.data.type.BaseType DOUBLE]
+    set unknown [java::field ptolemy.data.type.BaseType UNKNOWN]
+    set l [java::new {String[]} {2} {{a} {b}}]
+    set v [java::new {ptolemy.data.type.Type[]} 2 [list $int $double]]
+    set record1 [java::new {ptolemy.data.type.RecordType} $l $v]
+    set record2 [java::new {ptolemy.data.type.RecordType} $l $v]
+    set intArray1 [java::new ptolemy.data.type.ArrayType $int]
+    set intArray2 [java::new ptolemy.data.type.ArrayType $int]
+    set unknownArray [java::new ptolemy.data.type.ArrayType $unknown]
+    set interned1 [java::call ptolemy.data.type.TypeLattice intern $record1]
+    set interned2 [java::call ptolemy.data.type.TypeLattice intern $record2]
+    set internedArray1 [java::call ptolemy.data.type.TypeLattice intern $intArray1]
+    set internedArray2 [java::call ptolemy.data.type.TypeLattice intern $intArray2]
+    list [_sameObject $interned1 $interned2] \
+        [$interned1 equals $record1] \
+        [_sameObject $internedArray1 $internedArray2] \
+        [_sameObject $internedArray1 $intArray1] \
+        [$internedArray1 toString] \
+        [_sameObject \
+             [java::call ptolemy.data.type.TypeLattice intern $unknownArray] \
+             $unknownArray] \
+        [_sameObject \
+             [java::call ptolemy.data.type.TypeLattice intern $int] $int]
+} {1 1 1 0 arrayType(int) 1 1}
+
+test TypeLattice-5.2 {memoized compare and least upper bound} {
+    java::call ptolemy.data.type.TypeLattice clearCaches
+    set r1 [java::call ptolemy.data.type.TypeLattice compare $int $double]
+    set r2 [java::call ptolemy.data.type.TypeLattice compare $int $double]
+    set counts1 [list [java::call ptolemy.data.type.TypeLattice getCacheHits] \
+                     [java::call ptolemy.data.type.TypeLattice getCacheMisses]]
+    set doubleArray [java::new ptolemy.data.type.ArrayType $double]
+    set lub1 [java::call ptolemy.data.type.TypeLattice leastUpperBound \
+                  $intArray1 $doubleArray]
+    set lub2 [java::call ptolemy.data.type.TypeLattice leastUpperBound \
+                  $intArray2 $doubleArray]
+    set hits [java::call ptolemy.data.type.TypeLattice getCacheHits]
+    list $r1 $r2 $counts1 [$lub1 toString] [$lub2 toString] \
+        [_sameObject $lub1 $lub2] \
+        [expr {$hits > [lindex $counts1 0]}] \
+        [expr {[java::call ptolemy.data.type.TypeLattice getResolutionTime] > 0}]
+} {-1 -1 {1 1} arrayType(double) arrayType(double) 0 1 1}
+
+test TypeLattice-5.3 {results are not memoized for types that may change, only the results for their element types} {
+    java::call ptolemy.data.type.TypeLattice clearCaches
+    java::call ptolemy.data.type.TypeLattice compare $unknownArray $intArray1
+    java::call ptolemy.data.type.TypeLattice compare $unknownArray $intArray1
+    list [java::call ptolemy.data.type.TypeLattice getCacheHits] \
+        [java::call ptolemy.data.type.TypeLattice getCacheMisses]
+} {1 1}
+
+test TypeLattice-5.4 {modifying a result does not modify the memo} {
+    set lub1 [java::call ptolemy.data.type.TypeLattice leastUpperBound \
+                  $intArray1 $doubleArray]
+    [java::cast ptolemy.data.type.ArrayType $lub1] setType \
+        [java::new ptolemy.data.type.ArrayType \
+             [java::field ptolemy.data.type.BaseType STRING] 1]
+    set lub2 [java::call ptolemy.data.type.TypeLattice leastUpperBound \
+                  $intArray1 $doubleArray]
+    list [$lub1 toString] [$lub2 toString]
+} {arrayType(string,1) arrayType(double)}
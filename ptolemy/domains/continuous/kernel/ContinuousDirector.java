@@ -153,8 +153,9 @@ import ptolemy.kernel.util.Workspace;
  Implicit solvers, for example, iterate until they converge,
  and this parameter bounds the number of iterations.
  An example of an implicit solver is the BackwardsEuler solver.
- The default value is 20, and the type is int.
- FIXME: Currently, this package implements no implicit solvers.</li>
+ Rounds that a solver uses to estimate a Jacobian, such as
+ those of the RosenbrockStateVectorSolver, are not counted.
+ The default value is 20, and the type is int.</li>
 
  <li> <i>ODESolver</i>:
  The class name of the ODE solver used for integration.
@@ -163,6 +164,11 @@ import ptolemy.kernel.util.Workspace;
  The "ExplicitRK45Solver" may be more efficient in that it can
  use larger step sizes, but the resulting signals when displayed
  may be more jagged in appearance.
+ The "ExplicitRK23StateVectorSolver" and "ExplicitRK45StateVectorSolver"
+ compute the same results as these, but keep the states of all the
+ integrators in one array. The "RosenbrockStateVectorSolver" is a
+ linearly implicit solver for stiff models, where explicit solvers
+ have to take very small steps to remain stable.
  Solvers are all required to be in package
  "ptolemy.domains.continuous.kernel.solver".
  If there is another ContinuousDirector above this one
@@ -473,11 +479,15 @@ ContinuousStatefulDirector, ContinuousStepSizeController {
 
             // Iterate until the solver is done with the integration step
             // or the maximum number of iterations is reached.
+            // Rounds that the solver uses for other purposes than
+            // resolving the states, such as estimating a Jacobian,
+            // are not counted as iterations.
             int iterations = 0;
+            int iterationLimit = _maxIterations;
             try {
                 _isIntermediateStep = true;
                 while (!_ODESolver._isStepFinished()
-                        && iterations < _maxIterations && !_stopRequested) {
+                        && iterations < iterationLimit && !_stopRequested) {
 
                     _resetAllReceivers();
 
@@ -539,6 +549,8 @@ ContinuousStatefulDirector, ContinuousStepSizeController {
                     }
                     // Increase the iteration count.
                     iterations++;
+                    iterationLimit = _maxIterations
+                            + _ODESolver._getAdditionalRounds();
                 }
             } finally {
                 _isIntermediateStep = false;
@@ -547,13 +559,13 @@ ContinuousStatefulDirector, ContinuousStepSizeController {
             // If the step size is accurate and we did not reach the
             // maximum number of iterations then we are done.
             // Otherwise, we have to try again with a smaller step size.
-            if (isStepSizeAccurate() && iterations <= _maxIterations) {
+            if (isStepSizeAccurate() && iterations <= iterationLimit) {
                 // All actors agree with the current step size,
                 // or we have reached the maximum allowed number of iterations.
                 // The integration step is finished.
                 break;
             } else {
-                if (iterations > _maxIterations) {
+                if (iterations > iterationLimit) {
                     // If any step size control actor is unsatisfied with the
                     // current step size, refine the step size to a smaller one.
                     _setCurrentStepSize(_currentStepSize / 2);
@@ -1264,6 +1276,9 @@ ContinuousStatefulDirector, ContinuousStepSizeController {
             ODESolver.setExpression("ExplicitRK23Solver");
             ODESolver.addChoice("ExplicitRK23Solver");
             ODESolver.addChoice("ExplicitRK45Solver");
+            ODESolver.addChoice("ExplicitRK23StateVectorSolver");
+            ODESolver.addChoice("ExplicitRK45StateVectorSolver");
+            ODESolver.addChoice("RosenbrockStateVectorSolver");
             /* FIXME: These solvers are currently not implemented in this package.
              ODESolver.addChoice(new StringToken("BackwardEulerSolver")
              .toString());
@@ -1361,6 +1376,39 @@ ContinuousStatefulDirector, ContinuousStepSizeController {
      */
     protected Time _iterationBeginTime;
 
+    ///////////////////////////////////////////////////////////////////
+    ////                   package friendly methods                ////
+
+    /** Return the enclosing continuous director, or null if there
+     *  is none.  The enclosing continuous director is a director
+     *  above this in the hierarchy, possibly separated by composite
+     *  actors with actors that implement the QuasiTransparentDirector
+     *  interface, such as FSMDirector or CaseDirector.
+     *  @return The enclosing ContinuousDirector, or null if there is none.
+     */
+    ContinuousDirector _enclosingContinuousDirector() {
+        if (_enclosingContinuousDirectorVersion != _workspace.getVersion()) {
+            // Update the cache.
+            _enclosingContinuousDirector = null;
+            NamedObj container = getContainer().getContainer();
+            while (container != null) {
+                if (container instanceof Actor) {
+                    Director director = ((Actor) container).getDirector();
+                    if (director instanceof ContinuousDirector) {
+                        _enclosingContinuousDirector = (ContinuousDirector) director;
+                        break;
+                    }
+                    if (!(director instanceof QuasiTransparentDirector)) {
+                        break;
+                    }
+                }
+                container = container.getContainer();
+            }
+            _enclosingContinuousDirectorVersion = _workspace.getVersion();
+        }
+        return _enclosingContinuousDirector;
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////                         private methods                   ////
 
@@ -1459,36 +1507,6 @@ ContinuousStatefulDirector, ContinuousStepSizeController {
         return _postfireReturns;
     }
 
-    /** Return the enclosing continuous director, or null if there
-     *  is none.  The enclosing continuous director is a director
-     *  above this in the hierarchy, possibly separated by composite
-     *  actors with actors that implement the QuasiTransparentDirector
-     *  interface, such as FSMDirector or CaseDirector.
-     *  @return The enclosing ContinuousDirector, or null if there is none.
-     */
-    private ContinuousDirector _enclosingContinuousDirector() {
-        if (_enclosingContinuousDirectorVersion != _workspace.getVersion()) {
-            // Update the cache.
-            _enclosingContinuousDirector = null;
-            NamedObj container = getContainer().getContainer();
-            while (container != null) {
-                if (container instanceof Actor) {
-                    Director director = ((Actor) container).getDirector();
-                    if (director instanceof ContinuousDirector) {
-                        _enclosingContinuousDirector = (ContinuousDirector) director;
-                        break;
-                    }
-                    if (!(director instanceof QuasiTransparentDirector)) {
-                        break;
-                    }
-                }
-                container = container.getContainer();
-            }
-            _enclosingContinuousDirectorVersion = _workspace.getVersion();
-        }
-        return _enclosingContinuousDirector;
-    }
-
     /** Throw an exception if there are any breakpoints in the breakpoint
      *  table before the specified time.
      *  @param time The time.
@@ -2053,7 +2071,7 @@ ContinuousStatefulDirector, ContinuousStepSizeController {
             // Construct the list.
             _statefulComponents.clear();
             CompositeEntity container = (CompositeEntity) getContainer();
-            Iterator actors = container.deepEntityList().iterator();
+            Iterator actors = container.unmodifiableDeepEntityList().iterator();
             while (actors.hasNext()) {
                 Object actor = actors.next();
                 if (actor instanceof ContinuousStatefulComponent) {
@@ -2080,7 +2098,7 @@ ContinuousStatefulDirector, ContinuousStepSizeController {
             // Construct the list.
             _stepSizeControllers.clear();
             CompositeEntity container = (CompositeEntity) getContainer();
-            Iterator actors = container.deepEntityList().iterator();
+            Iterator actors = container.unmodifiableDeepEntityList().iterator();
             while (actors.hasNext()) {
                 Object actor = actors.next();
                 if (actor instanceof ContinuousStepSizeController) {
@@ -582,6 +582,15 @@ ContinuousStatefulComponent, ContinuousStepSizeController {
         _tentativeState = value;
     }
 
+    ///////////////////////////////////////////////////////////////////
+    ////                package friendly variables                 ////
+
+    /** The position of the state of this integrator in the state vector
+     *  of a {@link ContinuousStateVectorSolver}, or -1 if this integrator
+     *  has not been added to a state vector.
+     */
+    int _stateVectorIndex = -1;
+
     ///////////////////////////////////////////////////////////////////
     ////                         private variables                 ////
 
@@ -114,6 +114,17 @@ public abstract class ContinuousODESolver {
         _director._reportDebugMessage(message);
     }
 
+    /** Return the number of rounds of the current integration step that
+     *  the solver uses for other purposes than resolving the states,
+     *  such as estimating a Jacobian. These rounds are not bounded by
+     *  the <i>maxIterations</i> parameter of the director.
+     *  This base class returns 0.
+     *  @return The number of additional rounds.
+     */
+    protected int _getAdditionalRounds() {
+        return 0;
+    }
+
     /** Get the current round factor. If the rounds are
      *  finished, then return 1.0.
      *  @return The current round factor.
@@ -0,0 +1,391 @@
+/* The abstract base class of the ODE solvers that use a state vector.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.domains.continuous.kernel;
+
+import ptolemy.kernel.util.IllegalActionException;
+
+///////////////////////////////////////////////////////////////////
+//// ContinuousStateVectorSolver
+
+/**
+ Abstract base class for ODE solvers that keep the states of all the
+ integrators in one array.
+ <p>
+ The solvers that extend ContinuousODESolver directly resolve the
+ state of each integrator when that integrator is fired, using
+ the auxiliary variables of the integrator. A solver that extends this
+ class instead only records the derivative of each integrator when it
+ is fired. When the director moves to the next round, the solver
+ computes the tentative states of all the integrators at once from
+ the state vector and the derivative vectors, see
+ {@link #_advance(int, double)}, and the integrators produce these
+ states when they are next fired. The local truncation errors are
+ likewise estimated for all the integrators at once, the first time that
+ an integrator is asked whether the step is accurate.
+ <p>
+ The integrators are added to the state vector when they provide their
+ derivative in the first round of an integration step, in the order in
+ which they are fired. Element <i>i</i> of the state vector
+ {@link #_states} is the committed state of the <i>i</i>-th integrator,
+ and the derivative of that integrator in a round is element
+ <i>row</i>*{@link #_capacity} + <i>i</i> of {@link #_derivatives},
+ where the row is given by {@link #_getDerivativeRow(int)}.
+ <p>
+ If the director of this solver is inside another ContinuousDirector,
+ then the solver of that director is used with the same class, and
+ all the integrators of the model share the state vector of the solver
+ of the outermost director. This allows solvers such as implicit
+ solvers to take the coupling between all the states into account.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public abstract class ContinuousStateVectorSolver extends ContinuousODESolver {
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Return 0, since the intermediate results are kept by this
+     *  solver rather than by the integrators.
+     *  @return 0.
+     */
+    @Override
+    public final int getIntegratorAuxVariableCount() {
+        return 0;
+    }
+
+    /** Record the derivative of the given integrator in the current
+     *  round. If the integrator is not yet in the state vector, then
+     *  add it. The tentative state of the integrator is updated when
+     *  the director moves to the next round.
+     *  @param integrator The integrator that calls this method.
+     *  @exception IllegalActionException If the derivative cannot be read.
+     */
+    @Override
+    public final void integratorIntegrate(ContinuousIntegrator integrator)
+            throws IllegalActionException {
+        ContinuousStateVectorSolver solver = _getOutermostSolver();
+        int index = solver._getIndex(integrator);
+        if (index < 0) {
+            index = solver._add(integrator);
+        }
+        solver._derivatives[solver._getDerivativeRow(solver._round)
+                * solver._capacity + index] = integrator.getDerivative();
+    }
+
+    /** Return true if the local truncation error of the given
+     *  integrator is less than the error tolerance of the director.
+     *  The errors of all the integrators are estimated the first time
+     *  that this method is called after an integration step.
+     *  @param integrator The integrator that calls this method.
+     *  @return True if the integrator finds the step accurate.
+     */
+    @Override
+    public final boolean integratorIsAccurate(ContinuousIntegrator integrator) {
+        ContinuousStateVectorSolver solver = _getOutermostSolver();
+        int index = solver._getIndex(integrator);
+        if (index < 0) {
+            // The integrator did not take part in this step.
+            return true;
+        }
+        if (!solver._errorsEstimated) {
+            solver._estimateErrors(_director.getCurrentStepSize());
+            solver._errorsEstimated = true;
+        }
+        double error = solver._errors[index];
+        boolean accurate = error < _director.getErrorTolerance();
+        if (!accurate) {
+            solver._stepRejected = true;
+        }
+        if (_isDebugging()) {
+            _debug("Integrator: " + integrator.getName()
+                    + " local truncation error = " + error
+                    + (accurate ? ", report a success." : ", reports a failure."));
+        }
+        return accurate;
+    }
+
+    /** Return the next step size suggested by the given integrator,
+     *  based on its local truncation error in the last step.
+     *  @param integrator The integrator that calls this method.
+     *  @return The suggested next step size.
+     */
+    @Override
+    public final double integratorSuggestedStepSize(
+            ContinuousIntegrator integrator) {
+        ContinuousStateVectorSolver solver = _getOutermostSolver();
+        int index = solver._getIndex(integrator);
+        double error = 0.0;
+        if (index >= 0 && solver._errorsEstimated) {
+            error = solver._errors[index];
+        }
+        double result = solver._suggestedStepSize(error,
+                _director.getCurrentStepSize(), _director.getErrorTolerance());
+        if (_isDebugging()) {
+            _debug("integrator: " + integrator.getName()
+                    + " suggests next step size = " + result);
+        }
+        return result;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         protected methods                 ////
+
+    /** Compute the tentative states of the integrators for the given
+     *  round into {@link #_tentativeStates}. This is called when the
+     *  director moves to a round other than 0, after all the
+     *  integrators have provided their derivatives for the previous
+     *  round.
+     *  @param round The round that starts.
+     *  @param stepSize The step size.
+     *  @return True if the tentative states of the integrators are
+     *   to be set, false if they are to be left unchanged.
+     */
+    protected abstract boolean _advance(int round, double stepSize);
+
+    /** Estimate the local truncation errors of the integrators of the
+     *  step that just finished into {@link #_errors}.
+     *  @param stepSize The step size.
+     */
+    protected abstract void _estimateErrors(double stepSize);
+
+    /** Return the row of {@link #_derivatives} where the derivatives
+     *  of the given round are stored.  In this base class, this is
+     *  the round.
+     *  @param round The round.
+     *  @return The row.
+     */
+    protected int _getDerivativeRow(int round) {
+        return round;
+    }
+
+    /** Return the number of rows of {@link #_derivatives}.
+     *  @return The number of rows.
+     */
+    protected abstract int _getDerivativeRowCount();
+
+    /** Return the current round.
+     *  @return The current round.
+     */
+    @Override
+    protected final int _getRound() {
+        return _round;
+    }
+
+    /** Return the number of integrators in the state vector.
+     *  @return The number of integrators.
+     */
+    protected final int _getStateCount() {
+        return _count;
+    }
+
+    /** Return a number that changes whenever an integrator is added
+     *  to the state vector at a position where there was another
+     *  integrator in the previous step.  Together with the number of
+     *  integrators, this tells whether the integrators of the state
+     *  vector are the same as in a previous step.
+     *  @return The version of the state vector.
+     */
+    protected final long _getStateVectorVersion() {
+        return _stateVectorVersion;
+    }
+
+    /** Return true if the last integration step was found inaccurate
+     *  by an integrator since the last call to this method.
+     *  @return True if a step was rejected.
+     */
+    protected final boolean _isStepRejected() {
+        boolean result = _stepRejected;
+        _stepRejected = false;
+        return result;
+    }
+
+    /** Reset the solver, indicating to it that we are starting an
+     *  integration step. This resets the round counter and empties
+     *  the state vector, which the integrators fill again in the
+     *  first round.
+     */
+    @Override
+    protected void _reset() {
+        _round = 0;
+        _count = 0;
+        _errorsEstimated = false;
+    }
+
+    /** Set the round for the next integration step. If this solver
+     *  is the solver of the outermost director, then compute the
+     *  tentative states of the integrators for the round.
+     *  @param round The round for the next integration step.
+     */
+    @Override
+    protected final void _setRound(int round) {
+        if (round == _round) {
+            return;
+        }
+        if (round == 0) {
+            // The enclosing director started a new integration step.
+            _reset();
+            return;
+        }
+        _round = round;
+        _errorsEstimated = false;
+        if (_getOutermostSolver() == this
+                && _advance(round, _director.getCurrentStepSize())) {
+            for (int i = 0; i < _count; i++) {
+                _integrators[i].setTentativeState(_tentativeStates[i]);
+            }
+        }
+    }
+
+    /** Return the next step size for an integrator with the given
+     *  local truncation error.
+     *  @param error The local truncation error, which is 0.0 if
+     *   the integrator did not take part in the last step.
+     *  @param stepSize The step size of the last step.
+     *  @param tolerance The error tolerance.
+     *  @return The suggested next step size.
+     */
+    protected abstract double _suggestedStepSize(double error,
+            double stepSize, double tolerance);
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         protected variables               ////
+
+    /** The number of integrators for which the arrays are allocated,
+     *  which is the length of a row of {@link #_derivatives}.
+     */
+    protected int _capacity;
+
+    /** The derivatives of the integrators, one row of
+     *  {@link #_capacity} elements for each row given by
+     *  {@link #_getDerivativeRow(int)}.
+     */
+    protected double[] _derivatives = new double[0];
+
+    /** The local truncation errors of the integrators. */
+    protected double[] _errors = new double[0];
+
+    /** The committed states of the integrators at the start of the
+     *  integration step.
+     */
+    protected double[] _states = new double[0];
+
+    /** The tentative states of the integrators, which are computed by
+     *  {@link #_advance(int, double)}.
+     */
+    protected double[] _tentativeStates = new double[0];
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Add the integrator to the state vector and return its index. */
+    private int _add(ContinuousIntegrator integrator) {
+        if (_count == _capacity) {
+            int capacity = Math.max(8, 2 * _capacity);
+            int rows = _getDerivativeRowCount();
+            double[] derivatives = new double[rows * capacity];
+            for (int row = 0; row < rows; row++) {
+                System.arraycopy(_derivatives, row * _capacity, derivatives,
+                        row * capacity, _count);
+            }
+            _derivatives = derivatives;
+            _errors = _copyOf(_errors, capacity);
+            _states = _copyOf(_states, capacity);
+            _tentativeStates = _copyOf(_tentativeStates, capacity);
+            ContinuousIntegrator[] integrators = new ContinuousIntegrator[capacity];
+            System.arraycopy(_integrators, 0, integrators, 0, _count);
+            _integrators = integrators;
+            _capacity = capacity;
+        }
+        int index = _count++;
+        if (_integrators[index] != integrator) {
+            _integrators[index] = integrator;
+            _stateVectorVersion++;
+        }
+        integrator._stateVectorIndex = index;
+        _states[index] = integrator.getState();
+        _tentativeStates[index] = _states[index];
+        return index;
+    }
+
+    /** Return a copy of the array with the given length. */
+    private static double[] _copyOf(double[] array, int length) {
+        double[] result = new double[length];
+        System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+        return result;
+    }
+
+    /** Return the index of the integrator in the state vector, or -1
+     *  if it has not been added to it in the current step.
+     */
+    private int _getIndex(ContinuousIntegrator integrator) {
+        int index = integrator._stateVectorIndex;
+        if (index >= 0 && index < _count && _integrators[index] == integrator) {
+            return index;
+        }
+        return -1;
+    }
+
+    /** Return the solver of the outermost enclosing ContinuousDirector
+     *  that has a solver of this kind, or this solver if there is none.
+     */
+    private ContinuousStateVectorSolver _getOutermostSolver() {
+        ContinuousStateVectorSolver result = this;
+        ContinuousDirector enclosing = _director._enclosingContinuousDirector();
+        while (enclosing != null
+                && enclosing._getODESolver() instanceof ContinuousStateVectorSolver) {
+            result = (ContinuousStateVectorSolver) enclosing._getODESolver();
+            enclosing = enclosing._enclosingContinuousDirector();
+        }
+        return result;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The number of integrators in the state vector. */
+    private int _count;
+
+    /** True if the errors of the last step have been estimated. */
+    private boolean _errorsEstimated;
+
+    /** The integrators, in the order of the state vector. */
+    private ContinuousIntegrator[] _integrators = new ContinuousIntegrator[0];
+
+    /** The round counter. */
+    private int _round;
+
+    /** The version of the state vector. */
+    private long _stateVectorVersion;
+
+    /** True if an integrator found a step inaccurate. */
+    private boolean _stepRejected;
+}
@@ -0,0 +1,93 @@
+/* An RK23 solver that uses a state vector.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.domains.continuous.kernel.solver;
+
+///////////////////////////////////////////////////////////////////
+//// ExplicitRK23StateVectorSolver
+
+/**
+ This class implements the same second-order Runge-Kutta method with
+ third-order error control as {@link ExplicitRK23Solver}, but keeps the
+ states of all the integrators in one array and combines the derivatives
+ of all the integrators at once, see {@link ExplicitRKStateVectorSolver}.
+ The results are the same as those of ExplicitRK23Solver.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class ExplicitRK23StateVectorSolver extends ExplicitRKStateVectorSolver {
+
+    /** Construct a solver.
+     */
+    public ExplicitRK23StateVectorSolver() {
+        super(_TIME_INCREMENTS, _B, _E);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         protected methods                 ////
+
+    /** Return the next step size for an integrator with the given
+     *  local truncation error, as ExplicitRK23Solver does.
+     *  @param error The local truncation error.
+     *  @param stepSize The step size of the last step.
+     *  @param tolerance The error tolerance.
+     *  @return The suggested next step size.
+     */
+    @Override
+    protected double _suggestedStepSize(double error, double stepSize,
+            double tolerance) {
+        double newh = 5.0 * stepSize;
+        if (error > tolerance) {
+            newh = 0.8 * Math.pow(tolerance / error, 1.0 / _ORDER);
+            if (newh > stepSize) {
+                newh = 0.5 * stepSize;
+            }
+        }
+        return newh;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The ratio of time increments within one integration step. */
+    private static final double[] _TIME_INCREMENTS = { 0.5, 0.75, 1.0, 1.0 };
+
+    /** B coefficients. */
+    private static final double[][] _B = { { 0.5 }, { 0, 0.75 },
+        { 2.0 / 9.0, 1.0 / 3.0, 4.0 / 9.0 } };
+
+    /** E coefficients. */
+    private static final double[] _E = { -5.0 / 72.0, 1.0 / 12.0, 1.0 / 9.0,
+        -1.0 / 8.0 };
+
+    /** The order of the algorithm. */
+    private static final int _ORDER = 3;
+}
@@ -0,0 +1,98 @@
+/* An RK45 solver that uses a state vector.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.domains.continuous.kernel.solver;
+
+///////////////////////////////////////////////////////////////////
+//// ExplicitRK45StateVectorSolver
+
+/**
+ This class implements the same fourth-order Runge-Kutta method with
+ fifth-order error control as {@link ExplicitRK45Solver}, but keeps the
+ states of all the integrators in one array and combines the derivatives
+ of all the integrators at once, see {@link ExplicitRKStateVectorSolver}.
+ The results are the same as those of ExplicitRK45Solver.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class ExplicitRK45StateVectorSolver extends ExplicitRKStateVectorSolver {
+
+    /** Construct a solver.
+     */
+    public ExplicitRK45StateVectorSolver() {
+        super(_TIME_INCREMENTS, _B, _E);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         protected methods                 ////
+
+    /** Return the next step size for an integrator with the given
+     *  local truncation error, as ExplicitRK45Solver does.
+     *  @param error The local truncation error.
+     *  @param stepSize The step size of the last step.
+     *  @param tolerance The error tolerance.
+     *  @return The suggested next step size.
+     */
+    @Override
+    protected double _suggestedStepSize(double error, double stepSize,
+            double tolerance) {
+        double newh = 5.0 * stepSize;
+        if (error > tolerance) {
+            newh = stepSize * Math.pow(tolerance / error, 1.0 / _ORDER);
+        }
+        return newh;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The ratio of time increments within one integration step. */
+    private static final double[] _TIME_INCREMENTS = { 0.2, 0.3, 0.6, 1.0,
+        0.875, 1.0, 1.0 };
+
+    /** B coefficients */
+    private static final double[][] _B = {
+        { 0.2 },
+        { 3.0 / 40, 9.0 / 40 },
+        { 0.3, -0.9, 1.2 },
+        { -11.0 / 54, 5.0 / 2, -70.0 / 27, 35.0 / 27 },
+        { 1631.0 / 55296, 175.0 / 512, 575.0 / 13824, 44275.0 / 110592,
+            253.0 / 4096 },
+            { 37.0 / 378, 0.0, 250.0 / 621, 125.0 / 594, 0.0, 512.0 / 1771 } };
+
+    /** E coefficients */
+    private static final double[] _E = { 37.0 / 378 - 2825.0 / 27648, 0.0,
+        250.0 / 621 - 18575.0 / 48384, 125.0 / 594 - 13525.0 / 55296,
+        0.0 - 277.0 / 14336, 512.0 / 1771 - 0.25 };
+
+    /** The order of the algorithm. */
+    private static final int _ORDER = 5;
+}
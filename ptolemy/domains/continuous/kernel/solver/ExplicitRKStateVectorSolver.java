@@ -0,0 +1,179 @@
+/* The base class of explicit Runge-Kutta solvers that use a state vector.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.domains.continuous.kernel.solver;
+
+import ptolemy.domains.continuous.kernel.ContinuousStateVectorSolver;
+
+///////////////////////////////////////////////////////////////////
+//// ExplicitRKStateVectorSolver
+
+/**
+ Abstract base class for explicit Runge-Kutta solvers that keep the
+ states of all the integrators in one array. A derived class gives the
+ Butcher tableau of the method: the time increments of the rounds,
+ the coefficients that combine the derivatives of the previous rounds
+ into the states of the next round, and the coefficients that combine
+ the derivatives into the local truncation error.
+ <p>
+ When the director moves to round <i>r</i> &gt; 0, the states of all the
+ integrators are computed as
+ <pre>
+ x(r) = x(n) + h * (B[r-1][0]*K0 + ... + B[r-1][r-1]*K(r-1))
+ </pre>
+ with one loop over the state vector for each derivative vector Ki.
+ The additions are done in the same order as in the solvers that
+ resolve one integrator at a time, so the results are the same.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public abstract class ExplicitRKStateVectorSolver extends
+ContinuousStateVectorSolver {
+
+    /** Construct a solver for the given Butcher tableau.
+     *  @param timeIncrements The ratio of the time increments of the
+     *   rounds to the step size.
+     *  @param b The coefficients of the derivatives in the states of
+     *   each round.
+     *  @param e The coefficients of the derivatives in the local
+     *   truncation error.
+     */
+    protected ExplicitRKStateVectorSolver(double[] timeIncrements,
+            double[][] b, double[] e) {
+        _timeIncrements = timeIncrements;
+        _b = b;
+        _e = e;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         protected methods                 ////
+
+    /** Compute the states of all the integrators for the given round
+     *  from the derivatives of the previous rounds.
+     *  @param round The round that starts.
+     *  @param stepSize The step size.
+     *  @return True if the round has new states, false if it is the
+     *   last round.
+     */
+    @Override
+    protected boolean _advance(int round, double stepSize) {
+        if (round > _b.length) {
+            return false;
+        }
+        _combine(_b[round - 1], stepSize, _tentativeStates);
+        int count = _getStateCount();
+        double[] states = _states;
+        double[] tentativeStates = _tentativeStates;
+        for (int i = 0; i < count; i++) {
+            tentativeStates[i] = states[i] + tentativeStates[i];
+        }
+        return true;
+    }
+
+    /** Estimate the local truncation errors of all the integrators.
+     *  @param stepSize The step size.
+     */
+    @Override
+    protected void _estimateErrors(double stepSize) {
+        _combine(_e, stepSize, _errors);
+        int count = _getStateCount();
+        double[] errors = _errors;
+        for (int i = 0; i < count; i++) {
+            errors[i] = Math.abs(errors[i]);
+        }
+    }
+
+    /** Return the number of time increments, which is the number of
+     *  rounds.
+     *  @return The number of rows of the derivatives.
+     */
+    @Override
+    protected int _getDerivativeRowCount() {
+        return _timeIncrements.length;
+    }
+
+    /** Return the time increment of the next round.
+     *  @return The time increment of the next round.
+     */
+    @Override
+    protected final double _getRoundTimeIncrement() {
+        return _timeIncrements[_getRound()];
+    }
+
+    /** Return true if all the rounds of the step are done.
+     *  @return True if the step is finished.
+     */
+    @Override
+    protected final boolean _isStepFinished() {
+        return _getRound() >= _timeIncrements.length;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Set the result to the step size times the sum of the
+     *  derivative vectors weighted by the coefficients.
+     */
+    private void _combine(double[] coefficients, double stepSize,
+            double[] sum) {
+        int count = _getStateCount();
+        int capacity = _capacity;
+        double[] derivatives = _derivatives;
+        for (int i = 0; i < count; i++) {
+            sum[i] = 0.0;
+        }
+        for (int j = 0; j < coefficients.length; j++) {
+            double coefficient = coefficients[j];
+            if (coefficient == 0.0) {
+                continue;
+            }
+            int offset = j * capacity;
+            for (int i = 0; i < count; i++) {
+                sum[i] += derivatives[offset + i] * coefficient;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            sum[i] = stepSize * sum[i];
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The coefficients of the states of the rounds. */
+    private double[][] _b;
+
+    /** The coefficients of the local truncation error. */
+    private double[] _e;
+
+    /** The ratio of the time increments to the step size. */
+    private double[] _timeIncrements;
+}
@@ -0,0 +1,435 @@
+/* A linearly implicit Rosenbrock solver for stiff models.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.domains.continuous.kernel.solver;
+
+import ptolemy.domains.continuous.kernel.ContinuousStateVectorSolver;
+import ptolemy.kernel.util.InvalidStateException;
+
+///////////////////////////////////////////////////////////////////
+//// RosenbrockStateVectorSolver
+
+/**
+ This class implements the second-order, L-stable, linearly implicit
+ Rosenbrock method ROS2, which is suited to stiff models, such as
+ thermal models with both small and large time constants. Explicit
+ solvers have to take steps of the order of the smallest time constant
+ of such models to remain stable, whereas this solver can take steps
+ that are limited by the accuracy of the slow states only.
+ The method is described in "Linearly Implicit Time Integration of
+ Atmospheric Chemistry Models" by J. G. Verwer, E. J. Spee,
+ J. G. Blom and W. Hundsdorfer, SIAM Journal on Scientific Computing,
+ vol 20, pp. 1456-1480, 1999.
+ <p>
+ For an ODE of the form:
+ <pre>
+ dx(t)/dt = f(x(t), t), x(0) = x0
+ </pre>
+ it does the following, where J is an approximation of the Jacobian
+ df/dx and g = 1 + 1/sqrt(2):
+ <pre>
+ (I - g*h*J) K1 = f(x(n), tn);
+ (I - g*h*J) K2 = f(x(n) + h*K1, tn + h) - 2*K1;
+ x(n+1) = x(n) + h*(1.5*K1 + 0.5*K2);
+ </pre>
+ and error control:
+ <pre>
+ LTE = 0.5*h*|K1 + K2|
+ </pre>
+ The next step size is h' = h * min(5, 0.9*sqrt(ErrorTolerance/LTE)).
+ <p>
+ The method is of second order for any matrix J, so the Jacobian does
+ not have to be exact and is reused from one step to the next. It is
+ estimated with finite differences of the derivatives of the integrators
+ in the first integration step, whenever the integrators change,
+ after a step is found inaccurate, and after every
+ {@value #MAXIMUM_JACOBIAN_AGE} steps. To estimate it, the model is
+ fired once at the start of the step for each integrator, with the state
+ of that integrator slightly perturbed. These rounds are not counted
+ against the <i>maxIterations</i> parameter of the director.
+ The matrix I - g*h*J is factored with Gaussian elimination with
+ partial pivoting when the step size or the Jacobian changes.
+ <p>
+ The states of all the integrators of the model, including those inside
+ modal models, are kept in one array, see
+ {@link ptolemy.domains.continuous.kernel.ContinuousStateVectorSolver}.
+ Without a Jacobian estimate, a step takes 3 rounds. With one, it
+ takes 3 more rounds than the number of integrators, so this solver is
+ best suited to models with tens of integrators rather than thousands.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class RosenbrockStateVectorSolver extends ContinuousStateVectorSolver {
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public variables                  ////
+
+    /** The maximum number of steps for which a Jacobian estimate is
+     *  used.
+     */
+    public static final int MAXIMUM_JACOBIAN_AGE = 20;
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         protected methods                 ////
+
+    /** Compute the states of all the integrators for the given round.
+     *  In the rounds that estimate the Jacobian, only the state of one
+     *  integrator differs from the state at the start of the step.
+     *  @param round The round that starts.
+     *  @param stepSize The step size.
+     *  @return True if the round has new states, false if it is the
+     *   last round.
+     */
+    @Override
+    protected boolean _advance(int round, double stepSize) {
+        int n = _getStateCount();
+        int jacobianRounds = _getJacobianRounds();
+        double[] states = _states;
+        double[] tentativeStates = _tentativeStates;
+        if (round <= jacobianRounds + 1) {
+            if (round >= 2) {
+                // Column round - 2 of the Jacobian from the derivatives
+                // with the state of integrator round - 2 perturbed.
+                int column = round - 2;
+                double[] derivatives = _derivatives;
+                int offset = _capacity;
+                double delta = _delta;
+                for (int i = 0; i < n; i++) {
+                    _jacobian[i * n + column] = (derivatives[offset + i] - derivatives[i])
+                            / delta;
+                }
+                tentativeStates[column] = states[column];
+            }
+            if (round <= jacobianRounds) {
+                // Perturb the state of integrator round - 1.
+                int column = round - 1;
+                double state = states[column];
+                double perturbed = state + _SQRT_EPSILON
+                        * Math.max(Math.abs(state), 1.0);
+                // Use the difference that is actually represented.
+                _delta = perturbed - state;
+                tentativeStates[column] = perturbed;
+                return true;
+            }
+            if (jacobianRounds > 0) {
+                _jacobianAge = 0;
+                _factoredStepSize = Double.NaN;
+            }
+            // K1 from the derivatives at the start of the step.
+            if (stepSize != _factoredStepSize) {
+                _factor(stepSize);
+            }
+            System.arraycopy(_derivatives, 0, _k1, 0, n);
+            _solve(_k1);
+            for (int i = 0; i < n; i++) {
+                tentativeStates[i] = states[i] + stepSize * _k1[i];
+            }
+            return true;
+        } else if (round == jacobianRounds + 2) {
+            // K2 from the derivatives at the end of the step.
+            int offset = 2 * _capacity;
+            for (int i = 0; i < n; i++) {
+                _k2[i] = _derivatives[offset + i] - 2.0 * _k1[i];
+            }
+            _solve(_k2);
+            for (int i = 0; i < n; i++) {
+                tentativeStates[i] = states[i] + stepSize
+                        * (1.5 * _k1[i] + 0.5 * _k2[i]);
+            }
+            _jacobianAge++;
+            return true;
+        }
+        return false;
+    }
+
+    /** Estimate the local truncation errors of all the integrators.
+     *  @param stepSize The step size.
+     */
+    @Override
+    protected void _estimateErrors(double stepSize) {
+        int n = _getStateCount();
+        for (int i = 0; i < n; i++) {
+            _errors[i] = 0.5 * stepSize * Math.abs(_k1[i] + _k2[i]);
+        }
+    }
+
+    /** Return the number of rounds of this step that estimate the
+     *  Jacobian.
+     *  @return The number of rounds that estimate the Jacobian.
+     */
+    @Override
+    protected int _getAdditionalRounds() {
+        if (_getRound() == 0) {
+            return 0;
+        }
+        return _getJacobianRounds();
+    }
+
+    /** Return the row of the derivatives of the given round.
+     *  The derivatives at the start of the step are in row 0,
+     *  those of the rounds that estimate the Jacobian in row 1,
+     *  those at the end of the step in row 2, and those with the
+     *  final states in row 3.
+     *  @param round The round.
+     *  @return The row.
+     */
+    @Override
+    protected int _getDerivativeRow(int round) {
+        if (round == 0) {
+            return 0;
+        }
+        int jacobianRounds = _getJacobianRounds();
+        if (round <= jacobianRounds) {
+            return 1;
+        } else if (round == jacobianRounds + 1) {
+            return 2;
+        }
+        return 3;
+    }
+
+    /** Return 4.
+     *  @return 4.
+     */
+    @Override
+    protected int _getDerivativeRowCount() {
+        return 4;
+    }
+
+    /** Return 0.0 for the rounds that estimate the Jacobian, and 1.0
+     *  for the others.
+     *  @return The time increment of the next round.
+     */
+    @Override
+    protected double _getRoundTimeIncrement() {
+        if (_getRound() < _getJacobianRounds()) {
+            return 0.0;
+        }
+        return 1.0;
+    }
+
+    /** Return true if all the rounds of the step are done.
+     *  @return True if the step is finished.
+     */
+    @Override
+    protected boolean _isStepFinished() {
+        int round = _getRound();
+        if (round == 0) {
+            return false;
+        }
+        return round >= _getJacobianRounds() + 3;
+    }
+
+    /** Reset the solver, indicating to it that we are starting an
+     *  integration step.
+     */
+    @Override
+    protected void _reset() {
+        super._reset();
+        _jacobianRounds = -1;
+        // If the step was rejected with a Jacobian that was estimated
+        // for an earlier step, then estimate it again.
+        if (_isStepRejected() && _jacobianAge > 1) {
+            _jacobianAge = MAXIMUM_JACOBIAN_AGE;
+        }
+    }
+
+    /** Return the next step size for an integrator with the given
+     *  local truncation error.
+     *  @param error The local truncation error.
+     *  @param stepSize The step size of the last step.
+     *  @param tolerance The error tolerance.
+     *  @return The suggested next step size.
+     */
+    @Override
+    protected double _suggestedStepSize(double error, double stepSize,
+            double tolerance) {
+        if (error <= 0.0) {
+            return 5.0 * stepSize;
+        }
+        return stepSize
+                * Math.min(5.0, 0.9 * Math.sqrt(tolerance / error));
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Factor I - g*h*J in place with partial pivoting. */
+    private void _factor(double stepSize) {
+        int n = _getStateCount();
+        if (_lu.length < n * n) {
+            _lu = new double[n * n];
+            _pivots = new int[n];
+        }
+        double[] lu = _lu;
+        double factor = -_GAMMA * stepSize;
+        for (int i = 0; i < n * n; i++) {
+            lu[i] = factor * _jacobian[i];
+        }
+        for (int i = 0; i < n; i++) {
+            lu[i * n + i] += 1.0;
+        }
+        for (int k = 0; k < n; k++) {
+            int pivot = k;
+            double maximum = Math.abs(lu[k * n + k]);
+            for (int i = k + 1; i < n; i++) {
+                double value = Math.abs(lu[i * n + k]);
+                if (value > maximum) {
+                    maximum = value;
+                    pivot = i;
+                }
+            }
+            if (maximum == 0.0) {
+                throw new InvalidStateException(_director,
+                        "The matrix of the Rosenbrock solver is singular "
+                                + "with step size " + stepSize);
+            }
+            _pivots[k] = pivot;
+            if (pivot != k) {
+                for (int j = 0; j < n; j++) {
+                    double swap = lu[k * n + j];
+                    lu[k * n + j] = lu[pivot * n + j];
+                    lu[pivot * n + j] = swap;
+                }
+            }
+            double diagonal = lu[k * n + k];
+            for (int i = k + 1; i < n; i++) {
+                double multiplier = lu[i * n + k] / diagonal;
+                lu[i * n + k] = multiplier;
+                if (multiplier != 0.0) {
+                    for (int j = k + 1; j < n; j++) {
+                        lu[i * n + j] -= multiplier * lu[k * n + j];
+                    }
+                }
+            }
+        }
+        _factoredStepSize = stepSize;
+    }
+
+    /** Return the number of rounds of this step that estimate the
+     *  Jacobian. This is decided after the first round of the step,
+     *  when the integrators are known.
+     */
+    private int _getJacobianRounds() {
+        if (_jacobianRounds < 0) {
+            int n = _getStateCount();
+            if (_k1.length < n) {
+                _k1 = new double[n];
+                _k2 = new double[n];
+            }
+            boolean evaluate = _jacobianAge >= MAXIMUM_JACOBIAN_AGE
+                    || _jacobianIntegrators != n
+                    || _jacobianVersion != _getStateVectorVersion();
+            if (evaluate) {
+                if (_jacobian.length < n * n) {
+                    _jacobian = new double[n * n];
+                }
+                _jacobianIntegrators = n;
+                _jacobianVersion = _getStateVectorVersion();
+                _jacobianRounds = n;
+            } else {
+                _jacobianRounds = 0;
+            }
+        }
+        return _jacobianRounds;
+    }
+
+    /** Solve the factored system in place. */
+    private void _solve(double[] x) {
+        int n = _getStateCount();
+        double[] lu = _lu;
+        for (int k = 0; k < n; k++) {
+            int pivot = _pivots[k];
+            if (pivot != k) {
+                double swap = x[k];
+                x[k] = x[pivot];
+                x[pivot] = swap;
+            }
+        }
+        for (int i = 1; i < n; i++) {
+            double sum = x[i];
+            for (int j = 0; j < i; j++) {
+                sum -= lu[i * n + j] * x[j];
+            }
+            x[i] = sum;
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            double sum = x[i];
+            for (int j = i + 1; j < n; j++) {
+                sum -= lu[i * n + j] * x[j];
+            }
+            x[i] = sum / lu[i * n + i];
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The perturbation of the state in the current Jacobian round. */
+    private double _delta;
+
+    /** The step size for which the matrix is factored. */
+    private double _factoredStepSize = Double.NaN;
+
+    /** The diagonal coefficient of the method. */
+    private static final double _GAMMA = 1.0 + 1.0 / Math.sqrt(2.0);
+
+    /** The estimate of the Jacobian, row by row. */
+    private double[] _jacobian = new double[0];
+
+    /** The number of steps since the Jacobian was estimated. */
+    private int _jacobianAge = MAXIMUM_JACOBIAN_AGE;
+
+    /** The number of integrators when the Jacobian was estimated. */
+    private int _jacobianIntegrators = -1;
+
+    /** The version of the state vector when the Jacobian was estimated. */
+    private long _jacobianVersion = -1;
+
+    /** The number of rounds of this step that estimate the Jacobian,
+     *  or -1 if this has not been decided yet.
+     */
+    private int _jacobianRounds = -1;
+
+    /** The first stage of the method. */
+    private double[] _k1 = new double[0];
+
+    /** The second stage of the method. */
+    private double[] _k2 = new double[0];
+
+    /** The factors of I - g*h*J. */
+    private double[] _lu = new double[0];
+
+    /** The row interchanges of the factorization. */
+    private int[] _pivots = new int[0];
+
+    /** The square root of the machine precision. */
+    private static final double _SQRT_EPSILON = Math.sqrt(Math.ulp(1.0));
+}
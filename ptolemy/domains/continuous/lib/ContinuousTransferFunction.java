@@ -159,8 +159,11 @@ public class ContinuousTransferFunction extends TypedCompositeActor {
     public void attributeChanged(Attribute attribute)
             throws IllegalActionException {
         if (attribute == numerator) {
-            // Set this composite to opaque.
+            // Set this composite to opaque.  This changes the deep
+            // entity lists of the containers, which are cached for the
+            // version of the workspace.
             _opaque = true;
+            _workspace.incrVersion();
 
             // Request for initialization.
             Director dir = getDirector();
@@ -177,8 +180,11 @@ public class ContinuousTransferFunction extends TypedCompositeActor {
                         "The denominator coefficient cannot start with 0.");
             }
 
-            // Set this composite to opaque.
+            // Set this composite to opaque.  This changes the deep
+            // entity lists of the containers, which are cached for the
+            // version of the workspace.
             _opaque = true;
+            _workspace.incrVersion();
 
             // Request for initialization.
             Director dir = getDirector();
@@ -341,6 +347,7 @@ public class ContinuousTransferFunction extends TypedCompositeActor {
     @Override
     public void wrapup() throws IllegalActionException {
         _opaque = true;
+        _workspace.incrVersion();
         super.wrapup();
     }
 
@@ -439,6 +439,7 @@ public class LinearStateSpace extends TypedCompositeActor {
     @Override
     public void wrapup() throws IllegalActionException {
         _opaque = true;
+        _workspace.incrVersion();
         super.wrapup();
     }
 
@@ -562,8 +563,11 @@ public class LinearStateSpace extends TypedCompositeActor {
             dir.requestInitialization(this);
         }
 
-        // Set this composite to opaque.
+        // Set this composite to opaque.  This changes the deep
+        // entity lists of the containers, which are cached for the
+        // version of the workspace.
         _opaque = true;
+        _workspace.incrVersion();
     }
 
     ///////////////////////////////////////////////////////////////////
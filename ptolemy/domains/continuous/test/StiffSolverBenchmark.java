@@ -0,0 +1,172 @@
+/* Compare the ODE solvers of the Continuous domain on a stiff model.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+ */
+package ptolemy.domains.continuous.test;
+
+import ptolemy.actor.Manager;
+import ptolemy.actor.TypedCompositeActor;
+import ptolemy.actor.TypedIOPort;
+import ptolemy.actor.TypedIORelation;
+import ptolemy.actor.lib.Expression;
+import ptolemy.data.DoubleToken;
+import ptolemy.domains.continuous.kernel.ContinuousDirector;
+import ptolemy.domains.continuous.lib.Integrator;
+
+///////////////////////////////////////////////////////////////////
+//// StiffSolverBenchmark
+
+/**
+ Execute a stiff model with each of the ODE solvers of the Continuous
+ domain and report the number of steps, the time and the final state.
+ <p>
+ The model is a chain of thermal masses. The first mass exchanges heat
+ with an ambient temperature of 0, and every other link of the chain
+ conducts heat 1000 times faster than the others, so the model has
+ time constants of about 1/2000 and of about 1. The explicit solvers
+ need steps smaller than the fast time constants during the whole
+ execution, while the step size of RosenbrockStateVectorSolver follows
+ the slow time constants once the fast transients have decayed.
+ <p>
+ To run, use:
+ <pre>
+ java -classpath $PTII ptolemy.domains.continuous.test.StiffSolverBenchmark [-masses n] [-stopTime t]
+ </pre>
+ The number of masses defaults to 10 and the stop time to 10.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class StiffSolverBenchmark {
+
+    /** Execute the model with each solver and print the results.
+     *  @param args Optional "-masses n" and "-stopTime t" arguments.
+     *  @exception Exception If the model cannot be constructed or
+     *   executed.
+     */
+    public static void main(String[] args) throws Exception {
+        int masses = 10;
+        double stopTime = 10.0;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("-masses")) {
+                masses = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-stopTime")) {
+                stopTime = Double.parseDouble(args[i + 1]);
+            } else {
+                System.err.println("Usage: java -classpath $PTII "
+                        + "ptolemy.domains.continuous.test.StiffSolverBenchmark "
+                        + "[-masses n] [-stopTime t]");
+                return;
+            }
+        }
+
+        String[] solvers = { "ExplicitRK23Solver",
+                "ExplicitRK23StateVectorSolver", "ExplicitRK45Solver",
+                "ExplicitRK45StateVectorSolver",
+                "RosenbrockStateVectorSolver" };
+        System.out.println("solver\tsteps\tseconds\tfinal state");
+        for (String solver : solvers) {
+            run(solver, masses, stopTime);
+        }
+    }
+
+    /** Execute the model with the given solver and print the number of
+     *  steps, the elapsed time and the final state of the last mass.
+     *  @param solver The value of the ODESolver parameter of the
+     *   director.
+     *  @param masses The number of masses, which is at least 2.
+     *  @param stopTime The stop time of the model.
+     *  @exception Exception If the model cannot be constructed or
+     *   executed.
+     */
+    public static void run(String solver, int masses, double stopTime)
+            throws Exception {
+        TypedCompositeActor toplevel = new TypedCompositeActor();
+        toplevel.setName("chain");
+        Manager manager = new Manager(toplevel.workspace(), "manager");
+        toplevel.setManager(manager);
+        ContinuousDirector director = new ContinuousDirector(toplevel,
+                "director");
+        director.ODESolver.setExpression(solver);
+        director.stopTime.setToken(new DoubleToken(stopTime));
+
+        Integrator[] integrators = new Integrator[masses];
+        Expression[] expressions = new Expression[masses];
+        for (int i = 0; i < masses; i++) {
+            integrators[i] = new Integrator(toplevel, "integrator" + i);
+            integrators[i].initialState.setExpression(i % 2 == 0 ? "0.0"
+                    : "1.0");
+            expressions[i] = new Expression(toplevel, "expression" + i);
+            new TypedIOPort(expressions[i], "self", true, false);
+            StringBuffer expression = new StringBuffer();
+            if (i == 0) {
+                expression.append("-self");
+            } else {
+                new TypedIOPort(expressions[i], "left", true, false);
+                expression.append(_conductance(i - 1) + "*(left - self)");
+            }
+            if (i < masses - 1) {
+                new TypedIOPort(expressions[i], "right", true, false);
+                expression.append(" + " + _conductance(i)
+                        + "*(right - self)");
+            }
+            expressions[i].expression.setExpression(expression.toString());
+            toplevel.connect(expressions[i].output,
+                    integrators[i].derivative);
+        }
+        for (int i = 0; i < masses; i++) {
+            TypedIORelation relation = new TypedIORelation(toplevel,
+                    "state" + i);
+            integrators[i].state.link(relation);
+            ((TypedIOPort) expressions[i].getPort("self")).link(relation);
+            if (i > 0) {
+                ((TypedIOPort) expressions[i - 1].getPort("right"))
+                .link(relation);
+            }
+            if (i < masses - 1) {
+                ((TypedIOPort) expressions[i + 1].getPort("left"))
+                .link(relation);
+            }
+        }
+
+        long start = System.nanoTime();
+        manager.execute();
+        long elapsed = System.nanoTime() - start;
+        System.out.println(solver + "\t" + manager.getIterationCount() + "\t"
+                + elapsed * 1.0e-9 + "\t"
+                + integrators[masses - 1].getState());
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Return the conductance of the link between mass i and mass i+1. */
+    private static double _conductance(int i) {
+        return i % 2 == 0 ? 1000.0 : 1.0;
+    }
+}
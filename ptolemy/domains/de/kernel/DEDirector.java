@@ -33,6 +33,8 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import ptolemy.actor.Actor;
 import ptolemy.actor.ActorExecutionAspect;
@@ -52,6 +54,7 @@ import ptolemy.data.BooleanToken;
 import ptolemy.data.IntToken;
 import ptolemy.data.Token;
 import ptolemy.data.expr.Parameter;
+import ptolemy.data.expr.StringParameter;
 import ptolemy.data.type.BaseType;
 import ptolemy.kernel.CompositeEntity;
 import ptolemy.kernel.util.Attribute;
@@ -203,6 +206,20 @@ import ptolemy.kernel.util.Workspace;
  Parameters <i>isCQAdaptive</i>, <i>minBinCount</i>, and
  <i>binCountFactor</i>, are used to configure the calendar queue.
  Changes to these parameters are ignored when the model is running.
+ The <i>eventQueueType</i> parameter selects the implementation of the
+ event queue, which is a calendar queue ({@link DECQEventQueue}) by
+ default. Setting it to "heap" selects {@link DEHeapEventQueue}, which
+ dequeues events in the same order but does not allocate memory per
+ event.
+ </p><p>
+ If the <i>parallelFiring</i> parameter is set to <code>true</code>,
+ then actors that have events with the same tag and depth, and that
+ cannot affect each other at that tag, are fired concurrently on a
+ fork-join pool. The tokens that they send and the firings that they
+ request are recorded and applied once all of them have fired, in the
+ order in which the actors would have been fired sequentially, so the
+ results are the same as those of a sequential execution. Actors fired
+ this way must not share state other than through their ports.
  </p><p>
  If the parameter <i>synchronizeToRealTime</i> is set to <code>true</code>,
  then the director will not process events until the real time elapsed
@@ -328,6 +345,16 @@ public class DEDirector extends Director implements SuperdenseTimeDirector {
      */
     public Parameter enforceMicrostepSemantics;
 
+    /** The implementation of the event queue, which is one of
+     *  "calendar", for {@link DECQEventQueue}, or "heap", for
+     *  {@link DEHeapEventQueue}. Both produce the same order of
+     *  events. The heap does not depend on the distribution of
+     *  timestamps and does not allocate memory per event.
+     *  Changes to this parameter are ignored when the model is running.
+     *  The value defaults to "calendar".
+     */
+    public StringParameter eventQueueType;
+
     /** Specify whether the calendar queue adjusts its bin number
      *  at run time. This parameter must contain a BooleanToken.
      *  If this parameter is true, the calendar queue will adapt
@@ -344,6 +371,18 @@ public class DEDirector extends Director implements SuperdenseTimeDirector {
      */
     public Parameter minBinCount;
 
+    /** Specify whether independent actors with events at the same tag
+     *  and depth are fired in parallel. This parameter must contain a
+     *  BooleanToken. An actor is independent if its own depth is
+     *  no less than the depth of its event and no input port has
+     *  a greater depth, so that no other actor fired at the same
+     *  tag and depth can send it a token before it fires. Actors
+     *  are not fired in parallel while debugging or if there are
+     *  execution aspects.
+     *  The value defaults to false.
+     */
+    public Parameter parallelFiring;
+
     /** Specify whether the execution stops when the queue is empty.
      *  This parameter must contain a
      *  BooleanToken. If this parameter is true, the
@@ -400,6 +439,9 @@ public class DEDirector extends Director implements SuperdenseTimeDirector {
         } else if (attribute == enforceMicrostepSemantics) {
             _enforceMicrostepSemantics = ((BooleanToken) enforceMicrostepSemantics
                     .getToken()).booleanValue();
+        } else if (attribute == parallelFiring) {
+            _parallelFiring = ((BooleanToken) parallelFiring.getToken())
+                    .booleanValue();
         } else {
             super.attributeChanged(attribute);
         }
@@ -453,8 +495,11 @@ public class DEDirector extends Director implements SuperdenseTimeDirector {
         DEDirector newObject = (DEDirector) super.clone(workspace);
         newObject._disabledActors = null;
         newObject._eventQueue = null;
+        newObject._deferredActions = new ThreadLocal<List<Object[]>>();
         newObject._eventQueueLock = new Object();
         newObject._exceedStopTime = false;
+        newObject._firingInParallel = false;
+        newObject._forkJoinPool = null;
         newObject._isInitializing = false;
         newObject._microstep = 1;
         newObject._noMoreActorsToFire = false;
@@ -588,6 +633,20 @@ public class DEDirector extends Director implements SuperdenseTimeDirector {
             throw new IllegalActionException(this,
                     "Calling fireAt() before preinitialize().");
         }
+        if (_firingInParallel) {
+            List<Object[]> actions = _deferredActions.get();
+            if (actions != null) {
+                // The actor is being fired in parallel with others.
+                // Record the request, which will be made once all of
+                // them have fired.
+                actions.add(new Object[] { actor, time,
+                        Integer.valueOf(index) });
+                if (time.compareTo(getModelTime()) < 0) {
+                    return getModelTime();
+                }
+                return time;
+            }
+        }
         if (_debugging) {
             _debug("DEDirector: Actor " + actor.getFullName()
                     + " requests refiring at " + time + " with microstep "
@@ -1285,8 +1344,8 @@ public class DEDirector extends Director implements SuperdenseTimeDirector {
      *
      *  @exception IllegalActionException If the preinitialize() method of the
      *  container or one of the deeply contained actors throws it, or the
-     *  parameters, minBinCount, binCountFactor, and isCQAdaptive, do not have
-     *  valid tokens.
+     *  parameters, minBinCount, binCountFactor, isCQAdaptive, and
+     *  eventQueueType, do not have valid tokens.
      */
     @Override
     public void preinitialize() throws IllegalActionException {
@@ -1296,18 +1355,12 @@ public class DEDirector extends Director implements SuperdenseTimeDirector {
             synchronized (_eventQueueLock) {
                 _isInitializing = true;
                 // Initialize an event queue.
-                _eventQueue = new DECQEventQueue(
-                        ((IntToken) minBinCount.getToken()).intValue(),
-                        ((IntToken) binCountFactor.getToken()).intValue(),
-                        ((BooleanToken) isCQAdaptive.getToken()).booleanValue());
+                _eventQueue = _newEventQueue();
             }
         } else {
             _isInitializing = true;
             // Initialize an event queue.
-            _eventQueue = new DECQEventQueue(
-                    ((IntToken) minBinCount.getToken()).intValue(),
-                    ((IntToken) binCountFactor.getToken()).intValue(),
-                    ((BooleanToken) isCQAdaptive.getToken()).booleanValue());
+            _eventQueue = _newEventQueue();
         }
         // Add debug listeners.
         if (_debugListeners != null) {
@@ -1531,6 +1584,10 @@ public class DEDirector extends Director implements SuperdenseTimeDirector {
         }
         _noMoreActorsToFire = false;
         _microstep = 0;
+        if (_forkJoinPool != null) {
+            _forkJoinPool.shutdown();
+            _forkJoinPool = null;
+        }
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -1814,6 +1871,7 @@ public class DEDirector extends Director implements SuperdenseTimeDirector {
      */
     protected int _fire() throws IllegalActionException {
         // Find the next actor to be fired.
+        _lastFoundEventDepth = Integer.MIN_VALUE;
         Actor actorToFire = _getNextActorToFire();
 
         // Check whether the actor to be fired is null.
@@ -1879,6 +1937,17 @@ public class DEDirector extends Director implements SuperdenseTimeDirector {
             return 1;
         }
 
+        if (_parallelFiring && !_debugging && !_aspectsPresent
+                && !_delegateFireAt
+                && _lastFoundEventDepth != Integer.MIN_VALUE) {
+            List<Actor> actors = _takeIndependentActors(actorToFire,
+                    _lastFoundEventDepth);
+            if (actors != null) {
+                _fireInParallel(actors);
+                return 0;
+            }
+        }
+
         if (_debugging) {
             _debug("****** Actor to fire: " + actorToFire.getFullName());
         }
@@ -2418,6 +2487,7 @@ public class DEDirector extends Director implements SuperdenseTimeDirector {
 
                     // Advance the current microstep to the event microstep.
                     _microstep = lastFoundEvent.microstep();
+                    _lastFoundEventDepth = lastFoundEvent.depth();
                     if (_debugging) {
                         _debug("Current time is: (" + currentTime + ", "
                                 + _microstep + ")");
@@ -2575,6 +2645,29 @@ public class DEDirector extends Director implements SuperdenseTimeDirector {
      */
     protected List<Actor> _actorsFinished;
 
+    ///////////////////////////////////////////////////////////////////
+    ////                   package friendly methods                ////
+
+    /** If the calling thread is firing an actor in parallel with
+     *  other actors, record that the specified token is to be put into
+     *  the specified receiver once all of them have fired, and return
+     *  true. Otherwise, return false.
+     *  @param receiver The receiver.
+     *  @param token The token.
+     *  @return True if the put is deferred.
+     */
+    boolean _deferPut(DEReceiver receiver, Token token) {
+        if (!_firingInParallel) {
+            return false;
+        }
+        List<Object[]> actions = _deferredActions.get();
+        if (actions == null) {
+            return false;
+        }
+        actions.add(new Object[] { receiver, token });
+        return true;
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////                         protected variables               ////
 
@@ -2638,6 +2731,96 @@ public class DEDirector extends Director implements SuperdenseTimeDirector {
         return _enclosingSuperdenseTimeDirector;
     }
 
+    /** Fire the specified actor as _fire() does, until it has no
+     *  more input tokens, prefire() returns false, or postfire()
+     *  returns false.
+     *  @param actor The actor.
+     *  @return False if the actor is to be disabled.
+     *  @exception IllegalActionException If the actor throws it.
+     */
+    private boolean _fireIndependentActor(Actor actor)
+            throws IllegalActionException {
+        if (!((CompositeEntity) getContainer())
+                .deepContains((NamedObj) actor)) {
+            return false;
+        }
+        boolean refire;
+        do {
+            refire = false;
+            if (!actor.prefire()) {
+                return true;
+            }
+            actor.fire();
+            if (!actor.postfire()) {
+                return false;
+            }
+            Iterator<?> inputPorts = actor.inputPortList().iterator();
+            while (inputPorts.hasNext() && !refire) {
+                IOPort port = (IOPort) inputPorts.next();
+                for (int i = 0; i < port.getWidth(); i++) {
+                    if (port.hasNewToken(i)) {
+                        refire = true;
+                        break;
+                    }
+                }
+            }
+        } while (refire);
+        return true;
+    }
+
+    /** Fire the specified actors on the fork-join pool, then put
+     *  the tokens that they sent and make the firing requests that
+     *  they made, in the order of the list.
+     *  @param actors The independent actors.
+     *  @exception IllegalActionException If an actor throws it.
+     */
+    private void _fireInParallel(List<Actor> actors)
+            throws IllegalActionException {
+        if (_forkJoinPool == null) {
+            _forkJoinPool = new ForkJoinPool();
+        }
+        ParallelFiringTask task = new ParallelFiringTask(
+                actors.toArray(new Actor[actors.size()]));
+        // Release the read access held by this thread, as when waiting
+        // for real time, so that a thread waiting for write access does
+        // not prevent the actors from getting read access.
+        int depth = _workspace.releaseReadPermission();
+        _firingInParallel = true;
+        try {
+            _forkJoinPool.invoke(task);
+        } finally {
+            _firingInParallel = false;
+            if (depth > 0) {
+                _workspace.reacquireReadPermission(depth);
+            }
+        }
+
+        for (int i = 0; i < task.actors.length; i++) {
+            for (Object[] action : task.actions[i]) {
+                if (action[0] instanceof DEReceiver) {
+                    ((DEReceiver) action[0]).put((Token) action[1]);
+                } else {
+                    fireAt((Actor) action[0], (Time) action[1],
+                            ((Integer) action[2]).intValue());
+                }
+            }
+            Throwable failure = task.failures[i];
+            if (failure instanceof IllegalActionException) {
+                throw (IllegalActionException) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            } else if (failure != null) {
+                throw new IllegalActionException(task.actors[i], failure,
+                        "Failed to fire.");
+            }
+            if (task.disabled[i]) {
+                _disableActor(task.actors[i]);
+            }
+        }
+    }
+
     /** initialize parameters. Set all parameters to their default values.
      */
     private void _initParameters() {
@@ -2667,16 +2850,74 @@ public class DEDirector extends Director implements SuperdenseTimeDirector {
             binCountFactor.setTypeEquals(BaseType.INT);
             binCountFactor.setVisibility(Settable.EXPERT);
 
+            eventQueueType = new StringParameter(this, "eventQueueType");
+            eventQueueType.addChoice("calendar");
+            eventQueueType.addChoice("heap");
+            eventQueueType.setExpression("calendar");
+            eventQueueType.setVisibility(Settable.EXPERT);
+
             enforceMicrostepSemantics = new Parameter(this,
                     "enforceMicrostepSemantics");
             enforceMicrostepSemantics.setExpression("false");
             enforceMicrostepSemantics.setTypeEquals(BaseType.BOOLEAN);
+
+            parallelFiring = new Parameter(this, "parallelFiring");
+            parallelFiring.setExpression("false");
+            parallelFiring.setTypeEquals(BaseType.BOOLEAN);
+            parallelFiring.setVisibility(Settable.EXPERT);
         } catch (KernelException e) {
             throw new InternalErrorException("Cannot set parameter:\n"
                     + e.getMessage());
         }
     }
 
+    /** Return true if the specified actor cannot receive a token
+     *  at the current tag from an actor that has an event with the
+     *  specified depth, and if the tokens that it sends at the
+     *  current tag have greater depths. That is the case if no input
+     *  port has a greater depth and the depth of the actor, which is
+     *  the smallest depth of its output ports, is not smaller.
+     *  @param actor The actor.
+     *  @param depth The depth of the event of the actor.
+     *  @return True if the actor can be fired in parallel with other
+     *   actors that have events with the same tag and depth.
+     *  @exception IllegalActionException If the depths have not
+     *   been computed.
+     */
+    private boolean _isIndependent(Actor actor, int depth)
+            throws IllegalActionException {
+        if (_getDepthOfActor(actor) < depth) {
+            return false;
+        }
+        Iterator<?> inputPorts = actor.inputPortList().iterator();
+        while (inputPorts.hasNext()) {
+            if (_getDepthOfIOPort((IOPort) inputPorts.next()) > depth) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return a new event queue of the type given by the
+     *  <i>eventQueueType</i> parameter.
+     *  @return A new event queue.
+     *  @exception IllegalActionException If the parameters of the
+     *   event queue do not have valid tokens.
+     */
+    private DEEventQueue _newEventQueue() throws IllegalActionException {
+        if (eventQueueType.stringValue().equals("heap")) {
+            return new DEHeapEventQueue();
+        } else if (!eventQueueType.stringValue().equals("calendar")) {
+            throw new IllegalActionException(eventQueueType,
+                    "Unrecognized event queue type: "
+                            + eventQueueType.stringValue());
+        }
+        return new DECQEventQueue(
+                ((IntToken) minBinCount.getToken()).intValue(),
+                ((IntToken) binCountFactor.getToken()).intValue(),
+                ((BooleanToken) isCQAdaptive.getToken()).booleanValue());
+    }
+
     /** Request that the container of this director be refired in some
      *  future time specified by the first event of the local event queue.
      *  This method is used when the director is embedded inside an opaque
@@ -2701,9 +2942,73 @@ public class DEDirector extends Director implements SuperdenseTimeDirector {
         fireContainerAt(nextEvent.timeStamp(), nextEvent.microstep());
     }
 
+    /** If the specified actor, which is to be fired at the current
+     *  tag because of an event with the specified depth, is
+     *  independent, then take from the event queue the events of
+     *  the following independent actors that have the same tag and
+     *  depth, and return all these actors in the order in which
+     *  they would have been fired. Otherwise, or if there are no
+     *  such actors, return null.
+     *  @param actor The actor to be fired.
+     *  @param depth The depth of its event.
+     *  @return A list of at least two actors, or null.
+     *  @exception IllegalActionException If the depths have not
+     *   been computed.
+     */
+    private List<Actor> _takeIndependentActors(Actor actor, int depth)
+            throws IllegalActionException {
+        if (!_isIndependent(actor, depth)) {
+            return null;
+        }
+        List<Actor> result = null;
+        synchronized (_eventQueueLock) {
+            while (!_stopRequested && !_eventQueue.isEmpty()) {
+                DEEvent event = _eventQueue.get();
+                Actor nextActor = event.actor();
+                if (event.depth() != depth || event.microstep() != _microstep
+                        || event.timeStamp().compareTo(getModelTime()) != 0
+                        || nextActor == getContainer() || nextActor == actor) {
+                    break;
+                }
+                if (_disabledActors != null
+                        && _disabledActors.contains(nextActor)) {
+                    _eventQueue.take();
+                    continue;
+                }
+                if (!_isIndependent(nextActor, depth)) {
+                    break;
+                }
+                // As in _getNextActorToFire(), also take the events
+                // with the same tag that go to the same actor.
+                _eventQueue.take();
+                while (!_eventQueue.isEmpty()) {
+                    DEEvent nextEvent = _eventQueue.get();
+                    if (!nextEvent.hasTheSameTagAs(event)
+                            || nextEvent.actor() != nextActor) {
+                        break;
+                    }
+                    _eventQueue.take();
+                }
+                if (result == null) {
+                    result = new ArrayList<Actor>();
+                    result.add(actor);
+                }
+                result.add(nextActor);
+            }
+        }
+        return result;
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////                         private variables                 ////
 
+    /** The tokens to be put and the firings to be requested by the
+     *  actor that the current thread is firing in parallel with
+     *  other actors, or null if there is none.
+     */
+    private ThreadLocal<List<Object[]>> _deferredActions =
+            new ThreadLocal<List<Object[]>>();
+
     /** Indicator that calls to fireAt() should be delegated
      *  to the executive director.
      */
@@ -2723,6 +3028,22 @@ public class DEDirector extends Director implements SuperdenseTimeDirector {
      */
     private boolean _exceedStopTime = false;
 
+    /** True while actors are being fired in parallel. */
+    private volatile boolean _firingInParallel = false;
+
+    /** The pool on which actors are fired in parallel, created
+     *  on demand.
+     */
+    private ForkJoinPool _forkJoinPool;
+
+    /** The depth of the last event found by _getNextActorToFire(),
+     *  or Integer.MIN_VALUE if none was found.
+     */
+    private int _lastFoundEventDepth = Integer.MIN_VALUE;
+
+    /** Cached value of parallelFiring parameter. */
+    private boolean _parallelFiring = false;
+
     /** Decide whether the simulation should be stopped when there's no more
      *  events in the global event queue. By default, its value is 'true',
      *  meaning that the simulation will stop under that circumstances.
@@ -2849,4 +3170,81 @@ public class DEDirector extends Director implements SuperdenseTimeDirector {
             return _defaultDependency.oPlusIdentity();
         }
     }
+
+    /** A fork-join task that fires a range of independent actors,
+     *  recording for each actor the tokens that it sends, the firings
+     *  that it requests, whether it is to be disabled, and the
+     *  exception that it throws, if any.
+     */
+    private class ParallelFiringTask extends RecursiveAction {
+        // This is not a static class because it fires the actors
+        // with methods of the director.
+
+        /** Construct a task that fires all the specified actors.
+         *  @param actors The actors.
+         */
+        @SuppressWarnings("unchecked")
+        public ParallelFiringTask(Actor[] actors) {
+            this.actors = actors;
+            actions = new List[actors.length];
+            disabled = new boolean[actors.length];
+            failures = new Throwable[actors.length];
+            _low = 0;
+            _high = actors.length;
+        }
+
+        /** Construct a task that fires a range of the actors of
+         *  another task.
+         *  @param task The other task.
+         *  @param low The index of the first actor.
+         *  @param high One more than the index of the last actor.
+         */
+        private ParallelFiringTask(ParallelFiringTask task, int low, int high) {
+            actors = task.actors;
+            actions = task.actions;
+            disabled = task.disabled;
+            failures = task.failures;
+            _low = low;
+            _high = high;
+        }
+
+        /** The actions of each actor. */
+        public final List<Object[]>[] actions;
+
+        /** The actors. */
+        public final Actor[] actors;
+
+        /** True for each actor that is to be disabled. */
+        public final boolean[] disabled;
+
+        /** The exception thrown by each actor, or null. */
+        public final Throwable[] failures;
+
+        /** Fire the range of actors, splitting it if it has more
+         *  than one actor.
+         */
+        @Override
+        protected void compute() {
+            if (_high - _low > 1) {
+                int middle = _low + _high >>> 1;
+                invokeAll(new ParallelFiringTask(this, _low, middle),
+                        new ParallelFiringTask(this, middle, _high));
+                return;
+            }
+            List<Object[]> actorActions = new ArrayList<Object[]>();
+            _deferredActions.set(actorActions);
+            try {
+                disabled[_low] = !_fireIndependentActor(actors[_low]);
+            } catch (Throwable throwable) {
+                failures[_low] = throwable;
+            } finally {
+                _deferredActions.remove();
+                actions[_low] = actorActions;
+            }
+        }
+
+        private final int _low;
+
+        private final int _high;
+    }
 }
@@ -333,7 +333,7 @@ public class DEEvent implements Comparable {
         _priority = 0;
         if (_actor != null) {
             List<Priority> priorityList = ((NamedObj) _actor)
-                    .attributeList(Priority.class);
+                    .unmodifiableAttributeList(Priority.class);
             if (!priorityList.isEmpty()) {
                 Priority priority = priorityList.get(0);
                 _priority = ((IntToken) priority.getToken()).intValue();
@@ -0,0 +1,560 @@
+/* A 4-ary heap implementation of the DE event queue.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.domains.de.kernel;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import ptolemy.actor.util.Time;
+import ptolemy.kernel.util.DebugListener;
+import ptolemy.kernel.util.InvalidStateException;
+
+///////////////////////////////////////////////////////////////////
+//// DEHeapEventQueue
+
+/**
+ A 4-ary heap implementation of the DE event queue.
+ This queue stores DE events in the order of their timestamps,
+ microsteps, depths and priorities, which is the order defined by
+ {@link DEEvent#compareTo(DEEvent)}. Events that compare as equal are
+ dequeued in the order in which they were enqueued, so this queue
+ produces exactly the same sequence of events as {@link DECQEventQueue}.
+ <p>
+ The sort keys of each event are stored in a single array of primitive
+ longs next to the heap array of events, so that comparisons do not
+ dereference the events or their timestamps. The timestamp key is the
+ long multiple of the time resolution of the timestamp; timestamps
+ that are infinite or do not fit in a long are mapped to
+ Long.MIN_VALUE or Long.MAX_VALUE and are compared with
+ {@link Time#compareTo(Object)} only when both keys are equal.
+ The microstep and the depth are packed into a second long.
+ Unlike {@link ptolemy.actor.util.CalendarQueue}, no object is
+ allocated when an event is enqueued or dequeued, apart from growing
+ the arrays. The enqueue and dequeue operations are O(log n) and
+ do not depend on the distribution of timestamps.
+ <p>
+ Duplicate events, that is, events that are equal according to
+ {@link DEEvent#equals(Object)}, are detected with an open addressing
+ hash table, so enqueuing an event that is already in the queue does
+ nothing. The remove() method, which is only used to cancel pure
+ events, takes time linear in the size of the queue.
+ <p>
+ This queue is used by {@link DEDirector} if its <i>eventQueueType</i>
+ parameter is set to "heap". All events in the queue are assumed to
+ have timestamps with the same time resolution.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class DEHeapEventQueue implements DEEventQueue {
+    /** Construct an empty event queue.
+     */
+    public DEHeapEventQueue() {
+        this(16);
+    }
+
+    /** Construct an empty event queue that can hold the specified
+     *  number of events before it has to grow.
+     *  @param initialCapacity The initial capacity of the queue.
+     */
+    public DEHeapEventQueue(int initialCapacity) {
+        if (initialCapacity < 1) {
+            initialCapacity = 1;
+        }
+        _events = new DEEvent[initialCapacity];
+        _keys = new long[initialCapacity * _KEYS];
+        int tableSize = Integer.highestOneBit(initialCapacity) << 2;
+        _table = new DEEvent[tableSize];
+        _tableHashes = new int[tableSize];
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Append a listener to the current set of debug listeners.
+     *  If the listener is already in the set, do not add it again.
+     *  @param listener A listener to which to send debug messages.
+     *  @see #removeDebugListener(DebugListener)
+     */
+    @Override
+    public void addDebugListener(DebugListener listener) {
+        if (_debugListeners == null) {
+            _debugListeners = new LinkedList<DebugListener>();
+        } else if (_debugListeners.contains(listener)) {
+            return;
+        }
+        _debugListeners.add(listener);
+        _debugging = true;
+    }
+
+    /** Empty the event queue.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(_events, 0, _size, null);
+        Arrays.fill(_table, null);
+        _size = 0;
+        _sequence = 0L;
+    }
+
+    /** Return the earliest DE event in the queue without removing it
+     *  from the queue.
+     *  @return The earliest DE event in the queue.
+     *  @exception InvalidStateException If the queue is empty.
+     */
+    @Override
+    public final DEEvent get() {
+        if (_size == 0) {
+            throw new InvalidStateException("Queue is empty.");
+        }
+        return _events[0];
+    }
+
+    /** Return true if this event queue is empty.
+     *  @return True if there are no event in the queue.
+     */
+    @Override
+    public final boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /** Put an event into the event queue.
+     *  If the given DE event is not in the event queue, enqueue it
+     *  into the event queue and notify all threads
+     *  that are stalled waiting for a DE event to be put in the queue.
+     *  @param event The event to enqueue.
+     */
+    @Override
+    public synchronized final void put(DEEvent event) {
+        long time = _timeKey(event._timestamp);
+        long tag = _tagKey(event._microstep, event._depth);
+        long priority = event._priority;
+        int hash = _hash(time, tag, priority, event._actor);
+        if (_tableFind(event, hash) >= 0) {
+            return;
+        }
+        if (_debugging) {
+            _debug("+++ putting in queue: " + event);
+        }
+        if (_size == _events.length) {
+            _grow();
+        }
+        _tableInsert(event, hash);
+        _siftUp(_size++, event, time, tag, priority, _sequence++);
+        notifyAll();
+    }
+
+    /** Remove an event from the event queue and return true if
+     *  it was removed, and false if it was not in the queue.
+     *  This should only be used for pure events (consequences of
+     *  fireAt()), not for events carrying payloads, because this
+     *  does not remove the payload from the DEReceiver.
+     *  The event passed is an argument need not be exactly the
+     *  same event in the queue. It just has to match the
+     *  actor, timeStamp, microstep, and depth of the event
+     *  to be removed.
+     *  @param event The event to enqueue.
+     *  @return True If a match is found and the entry is removed.
+     */
+    @Override
+    public synchronized final boolean remove(DEEvent event) {
+        int slot = _tableFind(event, _hash(event));
+        if (slot < 0) {
+            return false;
+        }
+        DEEvent queued = _table[slot];
+        _tableRemove(slot);
+        for (int i = 0; i < _size; i++) {
+            if (_events[i] == queued) {
+                _removeAt(i);
+                return true;
+            }
+        }
+        // Not reached: the table and the heap hold the same events.
+        return true;
+    }
+
+    /** Unregister a debug listener.  If the specified listener has not
+     *  been previously registered, then do nothing.
+     *  @param listener The listener to remove from the list of listeners
+     *   to which debug messages are sent.
+     *  @see #addDebugListener(DebugListener)
+     */
+    @Override
+    public void removeDebugListener(DebugListener listener) {
+        if (_debugListeners == null) {
+            return;
+        }
+        _debugListeners.remove(listener);
+        if (_debugListeners.size() == 0) {
+            _debugListeners = null;
+            _debugging = false;
+        }
+    }
+
+    /** Return the size of the event queue.
+     *  @return The size of the event queue.
+     */
+    @Override
+    public final int size() {
+        return _size;
+    }
+
+    /** Dequeue the earliest DE event in this event queue.
+     *  @return The earliest DE event in the queue.
+     *  @exception InvalidStateException If the queue is empty.
+     */
+    @Override
+    public final DEEvent take() {
+        if (_size == 0) {
+            throw new InvalidStateException("Queue is empty.");
+        }
+        DEEvent result = _events[0];
+        _tableRemove(_tableFindIdentical(result));
+        _removeAt(0);
+        if (_debugging) {
+            _debug("--- taking from queue: " + result);
+        }
+        return result;
+    }
+
+    /** Return the events currently in the queue as an array, in the
+     *  order in which they would be dequeued.
+     *  @return The events currently in the queue.
+     */
+    @Override
+    public final Object[] toArray() {
+        DEHeapEventQueue copy = new DEHeapEventQueue(1);
+        copy._events = Arrays.copyOf(_events, _size);
+        copy._keys = Arrays.copyOf(_keys, _size * _KEYS);
+        copy._size = _size;
+        Object[] result = new Object[_size];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = copy._events[0];
+            copy._removeAt(0);
+        }
+        return result;
+    }
+
+    /** Describe the Contents of the queue as a string.
+     *  @return A string with a comma-separated list of events.
+     */
+    @Override
+    public String toString() {
+        Object[] array = toArray();
+        StringBuffer buffer = new StringBuffer("{");
+        for (int i = 0; i < array.length; i++) {
+            if (i > 0) {
+                buffer.append(", ");
+            }
+            buffer.append(array[i]);
+        }
+        buffer.append("}");
+        return buffer.toString();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Return a negative integer, zero, or a positive integer if the
+     *  entry with the given keys is earlier than, equal to, or later
+     *  than the entry at the given index of the heap.
+     */
+    private int _compare(DEEvent event, long time, long tag, long priority,
+            long sequence, int index) {
+        int offset = index * _KEYS;
+        long otherTime = _keys[offset];
+        if (time != otherTime) {
+            return time < otherTime ? -1 : 1;
+        }
+        if (time == Long.MAX_VALUE || time == Long.MIN_VALUE) {
+            // Infinite or very large timestamps, which do not have
+            // an exact long key.
+            int result = event._timestamp
+                    .compareTo(_events[index]._timestamp);
+            if (result != 0) {
+                return result;
+            }
+        }
+        long otherTag = _keys[offset + 1];
+        if (tag != otherTag) {
+            return tag < otherTag ? -1 : 1;
+        }
+        long otherPriority = _keys[offset + 2];
+        if (priority != otherPriority) {
+            return priority < otherPriority ? -1 : 1;
+        }
+        long otherSequence = _keys[offset + 3];
+        return sequence < otherSequence ? -1 : sequence > otherSequence ? 1
+                : 0;
+    }
+
+    /** Send a debug message to all debug listeners that have registered.
+     */
+    private void _debug(String message) {
+        if (_debugListeners == null || !_debugging) {
+            return;
+        }
+        Iterator<DebugListener> listeners = _debugListeners.iterator();
+        while (listeners.hasNext()) {
+            listeners.next().message(message);
+        }
+    }
+
+    /** Double the capacity of the heap and of the hash table.
+     */
+    private void _grow() {
+        int capacity = _events.length * 2;
+        _events = Arrays.copyOf(_events, capacity);
+        _keys = Arrays.copyOf(_keys, capacity * _KEYS);
+
+        DEEvent[] oldTable = _table;
+        int[] oldHashes = _tableHashes;
+        _table = new DEEvent[oldTable.length * 2];
+        _tableHashes = new int[oldTable.length * 2];
+        for (int i = 0; i < oldTable.length; i++) {
+            if (oldTable[i] != null) {
+                _tableInsert(oldTable[i], oldHashes[i]);
+            }
+        }
+    }
+
+    /** Return the hash of the specified event, which is consistent
+     *  with {@link DEEvent#equals(Object)}.
+     */
+    private static int _hash(DEEvent event) {
+        return _hash(_timeKey(event._timestamp),
+                _tagKey(event._microstep, event._depth), event._priority,
+                event._actor);
+    }
+
+    /** Return the hash of an event with the specified keys and actor.
+     */
+    private static int _hash(long time, long tag, long priority, Object actor) {
+        long hash = time * 0x9E3779B97F4A7C15L + tag;
+        hash = hash * 0x9E3779B97F4A7C15L + priority;
+        hash = hash * 0x9E3779B97F4A7C15L + System.identityHashCode(actor);
+        int result = (int) (hash ^ hash >>> 32);
+        return result ^ result >>> 16;
+    }
+
+    /** Remove the entry at the given index of the heap, without
+     *  updating the hash table.
+     */
+    private void _removeAt(int index) {
+        int last = --_size;
+        if (index != last) {
+            DEEvent event = _events[last];
+            int offset = last * _KEYS;
+            long time = _keys[offset];
+            long tag = _keys[offset + 1];
+            long priority = _keys[offset + 2];
+            long sequence = _keys[offset + 3];
+            _siftDown(index, event, time, tag, priority, sequence);
+            if (_events[index] == event) {
+                _siftUp(index, event, time, tag, priority, sequence);
+            }
+        }
+        _events[last] = null;
+    }
+
+    /** Store the entry at the given index of the heap, and move it
+     *  towards the leaves until the heap property holds.
+     */
+    private void _siftDown(int index, DEEvent event, long time, long tag,
+            long priority, long sequence) {
+        while (true) {
+            int child = (index << 2) + 1;
+            if (child >= _size) {
+                break;
+            }
+            int end = Math.min(child + 4, _size);
+            int least = child;
+            int offset = child * _KEYS;
+            for (int other = child + 1; other < end; other++) {
+                if (_compare(_events[other], _keys[other * _KEYS],
+                        _keys[other * _KEYS + 1], _keys[other * _KEYS + 2],
+                        _keys[other * _KEYS + 3], least) < 0) {
+                    least = other;
+                    offset = other * _KEYS;
+                }
+            }
+            if (_compare(event, time, tag, priority, sequence, least) <= 0) {
+                break;
+            }
+            _events[index] = _events[least];
+            System.arraycopy(_keys, offset, _keys, index * _KEYS, _KEYS);
+            index = least;
+        }
+        _store(index, event, time, tag, priority, sequence);
+    }
+
+    /** Store the entry at the given index of the heap, and move it
+     *  towards the root until the heap property holds.
+     */
+    private void _siftUp(int index, DEEvent event, long time, long tag,
+            long priority, long sequence) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 2;
+            if (_compare(event, time, tag, priority, sequence, parent) >= 0) {
+                break;
+            }
+            _events[index] = _events[parent];
+            System.arraycopy(_keys, parent * _KEYS, _keys, index * _KEYS,
+                    _KEYS);
+            index = parent;
+        }
+        _store(index, event, time, tag, priority, sequence);
+    }
+
+    /** Store an entry at the given index of the heap.
+     */
+    private void _store(int index, DEEvent event, long time, long tag,
+            long priority, long sequence) {
+        int offset = index * _KEYS;
+        _events[index] = event;
+        _keys[offset] = time;
+        _keys[offset + 1] = tag;
+        _keys[offset + 2] = priority;
+        _keys[offset + 3] = sequence;
+    }
+
+    /** Return the slot of the hash table that contains an event equal
+     *  to the specified event, or -1 if there is none.
+     */
+    private int _tableFind(DEEvent event, int hash) {
+        int mask = _table.length - 1;
+        for (int slot = hash & mask; _table[slot] != null; slot = slot + 1
+                & mask) {
+            if (_tableHashes[slot] == hash && _table[slot].equals(event)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /** Return the slot of the hash table that contains the specified
+     *  event, which must be in the table.
+     */
+    private int _tableFindIdentical(DEEvent event) {
+        int mask = _table.length - 1;
+        int slot = _hash(event) & mask;
+        while (_table[slot] != event) {
+            slot = slot + 1 & mask;
+        }
+        return slot;
+    }
+
+    /** Insert an event that is not in the hash table.
+     */
+    private void _tableInsert(DEEvent event, int hash) {
+        int mask = _table.length - 1;
+        int slot = hash & mask;
+        while (_table[slot] != null) {
+            slot = slot + 1 & mask;
+        }
+        _table[slot] = event;
+        _tableHashes[slot] = hash;
+    }
+
+    /** Remove the event in the specified slot of the hash table,
+     *  shifting back the events that follow it so that no tombstones
+     *  are needed.
+     */
+    private void _tableRemove(int slot) {
+        int mask = _table.length - 1;
+        int hole = slot;
+        for (int next = slot + 1 & mask; _table[next] != null; next = next + 1
+                & mask) {
+            int home = _tableHashes[next] & mask;
+            // Move the event to the hole unless its home slot lies
+            // cyclically after the hole.
+            if ((next - home & mask) >= (next - hole & mask)) {
+                _table[hole] = _table[next];
+                _tableHashes[hole] = _tableHashes[next];
+                hole = next;
+            }
+        }
+        _table[hole] = null;
+    }
+
+    /** Return the microstep and depth packed into a long that compares
+     *  in the same order as the pair.
+     */
+    private static long _tagKey(int microstep, int depth) {
+        return (long) microstep << 32 | (depth ^ Integer.MIN_VALUE)
+                & 0xFFFFFFFFL;
+    }
+
+    /** Return the long key of a timestamp.
+     */
+    private static long _timeKey(Time time) {
+        if (time.isLongValueExact()) {
+            return time.getLongValue();
+        }
+        return time.isNegative() ? Long.MIN_VALUE : Long.MAX_VALUE;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The number of keys of each entry: the timestamp, the microstep
+     *  and depth, the priority, and the sequence number.
+     */
+    private static final int _KEYS = 4;
+
+    /** The list of DebugListeners registered with this object. */
+    private LinkedList<DebugListener> _debugListeners = null;
+
+    /** A flag indicating whether there are debug listeners. */
+    private boolean _debugging;
+
+    /** The heap of events. */
+    private DEEvent[] _events;
+
+    /** The keys of the events in the heap, _KEYS per event. */
+    private long[] _keys;
+
+    /** The sequence number of the next event that is enqueued. */
+    private long _sequence = 0L;
+
+    /** The number of events in the queue. */
+    private int _size = 0;
+
+    /** The hash table of the events in the queue, whose length is
+     *  a power of two that is at least twice the heap capacity.
+     */
+    private DEEvent[] _table;
+
+    /** The hashes of the events in the hash table. */
+    private int[] _tableHashes;
+}
@@ -157,7 +157,9 @@ public class DEReceiver extends AbstractReceiver {
      *  The director will be responsible to dequeue the trigger event at
      *  the correct timestamp and microstep and invoke the corresponding actor
      *  whose input port contains this receiver. This receiver may contain
-     *  more than one events.
+     *  more than one events. If the director is firing the sending actor
+     *  in parallel with other actors, then the token is put once all of
+     *  them have fired.
      *  @param token The token to be put, or null to put no token.
      *  @exception IllegalActionException If cannot get the director or if
      *   the current microstep is zero.
@@ -169,6 +171,9 @@ public class DEReceiver extends AbstractReceiver {
             return;
         }
         DEDirector dir = _getDirector();
+        if (dir._deferPut(this, token)) {
+            return;
+        }
         dir._enqueueTriggerEvent(getContainer());
         _tokens.add(token);
     }
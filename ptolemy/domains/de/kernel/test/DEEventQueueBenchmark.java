@@ -0,0 +1,226 @@
+/* Replay an event trace on DE event queues and measure their performance.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+ */
+package ptolemy.domains.de.kernel.test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import ptolemy.actor.Actor;
+import ptolemy.actor.AtomicActor;
+import ptolemy.actor.CompositeActor;
+import ptolemy.actor.util.Time;
+import ptolemy.domains.de.kernel.DECQEventQueue;
+import ptolemy.domains.de.kernel.DEDirector;
+import ptolemy.domains.de.kernel.DEEvent;
+import ptolemy.domains.de.kernel.DEEventQueue;
+import ptolemy.domains.de.kernel.DEHeapEventQueue;
+import ptolemy.kernel.util.IllegalActionException;
+import ptolemy.kernel.util.NameDuplicationException;
+
+///////////////////////////////////////////////////////////////////
+//// DEEventQueueBenchmark
+
+/**
+ Replay a synthetic event trace on the DE event queues and report the
+ execution time, the number of bytes allocated per event, and a checksum
+ of the order in which the events are dequeued.
+ <p>
+ The trace follows the "hold" model that is commonly used to evaluate
+ event queues: the queue is first filled with a number of events, and
+ then each step takes the earliest event and puts a new event at a
+ later time. The time increments are drawn from an exponential
+ distribution, quantized to the time resolution of a DEDirector, and
+ a fraction of them are zero, so that many events share a timestamp
+ and are ordered by microstep, depth and the order of insertion. The
+ trace is generated from a seed, so it is the same for every queue
+ and need not be stored, which makes it possible to replay traces of
+ 10^8 events. Queues that dequeue the events in the same order have the
+ same checksum.
+ <p>
+ To run, use:
+ <pre>
+ java -classpath $PTII ptolemy.domains.de.kernel.test.DEEventQueueBenchmark [-events n] [-size n] [-seed n]
+ </pre>
+ The number of events defaults to 10^6 and the size of the queue
+ defaults to 1000. The event objects are created by the trace and are
+ included in the bytes allocated per event.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class DEEventQueueBenchmark {
+
+    /** Construct a benchmark whose events are sent to a number of
+     *  actors contained by a composite actor with a DEDirector.
+     *  @exception IllegalActionException If the model cannot be
+     *   constructed.
+     *  @exception NameDuplicationException Not thrown in this class.
+     */
+    public DEEventQueueBenchmark() throws IllegalActionException,
+            NameDuplicationException {
+        CompositeActor toplevel = new CompositeActor();
+        _director = new DEDirector(toplevel, "director");
+        _actors = new Actor[16];
+        for (int i = 0; i < _actors.length; i++) {
+            _actors[i] = new AtomicActor(toplevel, "actor" + i);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Replay the trace on the calendar queue and on the heap, and
+     *  print the results.
+     *  @param args Optional "-events n", "-size n" and "-seed n"
+     *   arguments.
+     *  @exception Exception If the trace cannot be replayed.
+     */
+    public static void main(String[] args) throws Exception {
+        long events = 1000000L;
+        int size = 1000;
+        long seed = 1L;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("-events")) {
+                events = Long.parseLong(args[i + 1]);
+            } else if (args[i].equals("-size")) {
+                size = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-seed")) {
+                seed = Long.parseLong(args[i + 1]);
+            } else {
+                System.err.println("Usage: java -classpath $PTII "
+                        + "ptolemy.domains.de.kernel.test.DEEventQueueBenchmark "
+                        + "[-events n] [-size n] [-seed n]");
+                return;
+            }
+        }
+        DEEventQueueBenchmark benchmark = new DEEventQueueBenchmark();
+
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocationBean = null;
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+        }
+        long threadID = Thread.currentThread().getId();
+
+        System.out.println("queue\tns/event\tbytes/event\tchecksum");
+        String[] names = { "calendar", "heap" };
+        for (String name : names) {
+            // Warm up.
+            benchmark.replay(_newQueue(name), Math.min(events, 100000L),
+                    size, seed);
+
+            long before = allocationBean == null ? 0L : allocationBean
+                    .getThreadAllocatedBytes(threadID);
+            long start = System.nanoTime();
+            long checksum = benchmark.replay(_newQueue(name), events, size,
+                    seed);
+            long elapsed = System.nanoTime() - start;
+            long bytes = allocationBean == null ? -1L : allocationBean
+                    .getThreadAllocatedBytes(threadID) - before;
+            System.out.println(name + "\t" + (double) elapsed / events
+                    + "\t" + (bytes < 0 ? -1.0 : (double) bytes / events)
+                    + "\t" + Long.toHexString(checksum));
+        }
+    }
+
+    /** Replay the trace on the specified queue.
+     *  @param queue The event queue, which should be empty.
+     *  @param events The number of events to take from the queue
+     *   after it has been filled.
+     *  @param size The number of events with which the queue is filled.
+     *  @param seed The seed of the trace.
+     *  @return A checksum of the sequence of events taken from the queue.
+     *  @exception IllegalActionException If an event cannot be
+     *   created or enqueued.
+     */
+    public long replay(DEEventQueue queue, long events, int size, long seed)
+            throws IllegalActionException {
+        Random random = new Random(seed);
+        for (int i = 0; i < size; i++) {
+            queue.put(_newEvent(random, 0L, 0));
+        }
+        long checksum = 0L;
+        for (long i = 0; i < events; i++) {
+            DEEvent event = queue.take();
+            long time = event.timeStamp().getLongValue();
+            checksum = checksum * 31L + time;
+            checksum = checksum * 31L + event.microstep();
+            checksum = checksum * 31L + event.depth();
+            queue.put(_newEvent(random, time, event.microstep()));
+        }
+        while (!queue.isEmpty()) {
+            DEEvent event = queue.take();
+            checksum = checksum * 31L + event.timeStamp().getLongValue();
+            checksum = checksum * 31L + event.depth();
+        }
+        return checksum;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Return a new event that is later than the specified time
+     *  and microstep.
+     */
+    private DEEvent _newEvent(Random random, long time, int microstep)
+            throws IllegalActionException {
+        int index = random.nextInt(_actors.length);
+        if (random.nextInt(4) == 0) {
+            // An event at the same time, such as an output of
+            // the actor that was just fired.
+            microstep += random.nextInt(2);
+        } else {
+            time += 1L + (long) (-1000.0 * Math.log(1.0 - random.nextDouble()));
+            microstep = random.nextInt(2);
+        }
+        // The depth of each actor is its index, as in a chain.
+        return new DEEvent(_actors[index], new Time(_director, time),
+                microstep, index);
+    }
+
+    /** Return a new event queue of the specified type.
+     */
+    private static DEEventQueue _newQueue(String name) {
+        if (name.equals("heap")) {
+            return new DEHeapEventQueue();
+        }
+        return new DECQEventQueue();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The actors to which events are sent. */
+    private Actor[] _actors;
+
+    /** The director of the actors, which defines the time resolution. */
+    private DEDirector _director;
+}
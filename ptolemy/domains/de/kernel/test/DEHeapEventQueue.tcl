@@ -0,0 +1,131 @@
+# Tests for the DEHeapEventQueue class
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2016 The Regents of the University of California.
+# All rights reserved.
+#
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+#
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+#
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+#
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Ptolemy II test bed, see $PTII/doc/coding/testing.html for more information.
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then {
+    source testDefs.tcl
+} {}
+
+# Uncomment this to get a full report, or set in your Tcl shell window.
+# set VERBOSE 1
+
+#
+#
+
+set e0 [java::new ptolemy.actor.CompositeActor]
+set director [java::new ptolemy.domains.de.kernel.DEDirector $e0 director]
+set actor1 [java::new ptolemy.actor.AtomicActor $e0 actor1]
+set actor2 [java::new ptolemy.actor.AtomicActor $e0 actor2]
+
+proc makeEvent {actor time microstep depth} {
+    global director
+    set t [java::new \
+	       {ptolemy.actor.util.Time ptolemy.actor.Director double} \
+	       $director $time]
+    return [java::new {ptolemy.domains.de.kernel.DEEvent \
+			   ptolemy.actor.Actor ptolemy.actor.util.Time \
+			   int int} \
+		$actor $t $microstep $depth]
+}
+
+proc takeAll {queue} {
+    set result {}
+    while {![$queue isEmpty]} {
+	set event [$queue take]
+	lappend result [list [[$event actor] getName] \
+			    [[$event timeStamp] toString] \
+			    [$event microstep] [$event depth]]
+    }
+    return $result
+}
+
+######################################################################
+####
+#
+test DEHeapEventQueue-1.1 {Events are ordered by time, microstep and depth} {
+    set queue [java::new ptolemy.domains.de.kernel.DEHeapEventQueue 1]
+    $queue put [makeEvent $actor1 2.0 1 0]
+    $queue put [makeEvent $actor1 1.0 2 0]
+    $queue put [makeEvent $actor2 1.0 1 5]
+    $queue put [makeEvent $actor1 1.0 1 3]
+    $queue put [java::new {ptolemy.domains.de.kernel.DEEvent \
+			   ptolemy.actor.Actor ptolemy.actor.util.Time \
+			   int int} \
+		    $actor2 [java::field ptolemy.actor.util.Time \
+				 POSITIVE_INFINITY] 0 0]
+    list [$queue size] [[[$queue get] timeStamp] toString] [takeAll $queue]
+} {5 1.0 {{actor1 1.0 1 3} {actor2 1.0 1 5} {actor1 1.0 2 0} {actor1 2.0 1 0} {actor2 Infinity 0 0}}}
+
+test DEHeapEventQueue-1.2 {Equal events are ignored, ties are first in first out} {
+    set queue [java::new ptolemy.domains.de.kernel.DEHeapEventQueue]
+    $queue put [makeEvent $actor2 1.0 1 0]
+    $queue put [makeEvent $actor1 1.0 1 0]
+    $queue put [makeEvent $actor2 1.0 1 0]
+    list [$queue size] [takeAll $queue]
+} {2 {{actor2 1.0 1 0} {actor1 1.0 1 0}}}
+
+test DEHeapEventQueue-1.3 {remove and toString} {
+    set queue [java::new ptolemy.domains.de.kernel.DEHeapEventQueue]
+    $queue put [makeEvent $actor1 3.0 1 0]
+    $queue put [makeEvent $actor1 1.0 1 0]
+    $queue put [makeEvent $actor2 2.0 1 0]
+    set r1 [$queue remove [makeEvent $actor1 1.0 1 0]]
+    set r2 [$queue remove [makeEvent $actor1 2.0 1 0]]
+    list $r1 $r2 [$queue size] [$queue toString] [takeAll $queue]
+} {1 0 2 {{DEEvent(time = 2.0, microstep = 1, depth = 0, dest = ..actor2) -- A PURE EVENT., DEEvent(time = 3.0, microstep = 1, depth = 0, dest = ..actor1) -- A PURE EVENT.}} {{actor2 2.0 1 0} {actor1 3.0 1 0}}}
+
+test DEHeapEventQueue-1.4 {take from an empty queue} {
+    set queue [java::new ptolemy.domains.de.kernel.DEHeapEventQueue]
+    catch {$queue take} errMsg
+    list $errMsg
+} {{ptolemy.kernel.util.InvalidStateException: Queue is empty.}}
+
+test DEHeapEventQueue-2.1 {The heap and the calendar queue produce the same order} {
+    set benchmark [java::new ptolemy.domains.de.kernel.test.DEEventQueueBenchmark]
+    set results {}
+    foreach size {1 10 1000} {
+	set cq [$benchmark replay \
+		    [java::new ptolemy.domains.de.kernel.DECQEventQueue] \
+		    20000 $size 1]
+	set heap [$benchmark replay \
+		      [java::new ptolemy.domains.de.kernel.DEHeapEventQueue] \
+		      20000 $size 1]
+	lappend results [expr {$cq == $heap}]
+    }
+    list $results
+} {{1 1 1}}
+
+test DEHeapEventQueue-3.1 {eventQueueType parameter of DEDirector} {
+    list [[java::field $director eventQueueType] getExpression]
+} {calendar}
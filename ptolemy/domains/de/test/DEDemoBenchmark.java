@@ -0,0 +1,141 @@
+/* Measure the execution time and allocation of DE models.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+ */
+package ptolemy.domains.de.test;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import ptolemy.actor.CompositeActor;
+import ptolemy.actor.Manager;
+import ptolemy.kernel.util.Workspace;
+import ptolemy.moml.MoMLParser;
+import ptolemy.moml.filter.BackwardCompatibility;
+import ptolemy.moml.filter.RemoveGraphicalClasses;
+
+///////////////////////////////////////////////////////////////////
+//// DEDemoBenchmark
+
+/**
+ Measure the execution time and the number of bytes allocated while
+ executing DE models, such as the DE demos.  Each model is parsed
+ once, and is then executed a number of times in the calling thread.
+ Graphical actors are removed when the model is parsed.  The first
+ execution is a warm up and is not included in the results.
+ <p>
+ To run, use:
+ <pre>
+ java -classpath $PTII ptolemy.domains.de.test.DEDemoBenchmark [-runs n] model.xml ...
+ </pre>
+ For example,
+ <pre>
+ cd $PTII/ptolemy/domains/de/demo
+ java -classpath $PTII ptolemy.domains.de.test.DEDemoBenchmark \
+     AssemblyLine/AssemblyLine.xml Bus/Bus.xml QueueAndServer/QueueAndServer.xml
+ </pre>
+ The allocation is measured with the com.sun.management extension of
+ ThreadMXBean and is reported as -1 if that is not supported by the JVM.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class DEDemoBenchmark {
+
+    /** Execute each model given as an argument and report the average
+     *  execution time and bytes allocated per execution.
+     *  @param args An optional "-runs n" followed by the model files.
+     *  @exception Exception If a model cannot be parsed or executed.
+     */
+    public static void main(String[] args) throws Exception {
+        int runs = 5;
+        int i = 0;
+        if (args.length > 1 && args[0].equals("-runs")) {
+            runs = Integer.parseInt(args[1]);
+            i = 2;
+        }
+        if (i >= args.length) {
+            System.err.println("Usage: java -classpath $PTII "
+                    + "ptolemy.domains.de.test.DEDemoBenchmark "
+                    + "[-runs n] model.xml ...");
+            return;
+        }
+        System.out.println("model\tms/run\tbytes/run");
+        for (; i < args.length; i++) {
+            long[] result = measure(args[i], runs);
+            System.out.println(args[i] + "\t" + result[0] / 1000000.0 + "\t"
+                    + result[1]);
+        }
+    }
+
+    /** Parse the specified model, execute it once to warm up, then
+     *  execute it the specified number of times.
+     *  @param fileName The name of the MoML file.
+     *  @param runs The number of measured executions.
+     *  @return An array containing the average execution time in
+     *   nanoseconds and the average number of bytes allocated by the
+     *   calling thread, or -1 if allocation cannot be measured.
+     *  @exception Exception If the model cannot be parsed or executed.
+     */
+    public static long[] measure(String fileName, int runs) throws Exception {
+        Workspace workspace = new Workspace("DEDemoBenchmark");
+        MoMLParser parser = new MoMLParser(workspace);
+        MoMLParser.setMoMLFilters(BackwardCompatibility.allFilters(),
+                workspace);
+        MoMLParser.addMoMLFilter(new RemoveGraphicalClasses());
+        CompositeActor toplevel = (CompositeActor) parser.parse(null,
+                new File(fileName).toURI().toURL());
+        Manager manager = new Manager(workspace, "manager");
+        toplevel.setManager(manager);
+
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocationBean = null;
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+        }
+        long threadID = Thread.currentThread().getId();
+
+        manager.execute();
+
+        long bytes = 0L;
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            long before = allocationBean == null ? 0L : allocationBean
+                    .getThreadAllocatedBytes(threadID);
+            manager.execute();
+            if (allocationBean != null) {
+                bytes += allocationBean.getThreadAllocatedBytes(threadID)
+                        - before;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        return new long[] { elapsed / runs,
+                allocationBean == null ? -1L : bytes / runs };
+    }
+}
@@ -0,0 +1,107 @@
+# Tests for the parallelFiring parameter of DEDirector
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2016 The Regents of the University of California.
+# All rights reserved.
+#
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+#
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+#
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+#
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then {
+    source testDefs.tcl
+} {}
+
+# Uncomment this to get a full report, or set in your Tcl shell window.
+# set VERBOSE 1
+
+# Build and execute a model with n clocks and n Scale actors that are
+# fed by one clock, and return the records of the recorders.
+proc parallelModel {parallel n} {
+    set e0 [java::new ptolemy.actor.TypedCompositeActor]
+    $e0 setName top
+    set manager [java::new ptolemy.actor.Manager [$e0 workspace] manager]
+    $e0 setManager $manager
+    set director [java::new ptolemy.domains.de.kernel.DEDirector $e0 director]
+    [java::cast ptolemy.data.expr.Parameter [$director getAttribute stopTime]] \
+	setExpression 6.0
+    [java::field $director parallelFiring] setExpression $parallel
+
+    set clock [java::new ptolemy.actor.lib.Clock $e0 clock]
+    set scaled [java::new ptolemy.actor.lib.Recorder $e0 scaled]
+    set sum [java::new ptolemy.actor.lib.AddSubtract $e0 sum]
+    set summed [java::new ptolemy.actor.lib.Recorder $e0 summed]
+    set clocks [java::new ptolemy.actor.lib.Recorder $e0 clocks]
+    set clockOutput [java::field [java::cast ptolemy.actor.lib.Source $clock] output]
+    set relation [$e0 connect $clockOutput \
+		      [java::field [java::cast ptolemy.actor.lib.Transformer \
+					[java::new ptolemy.actor.lib.Scale $e0 scale0]] \
+			   input]]
+    $e0 connect [java::field $sum output] \
+	[java::field [java::cast ptolemy.actor.lib.Sink $summed] input]
+    for {set i 0} {$i < $n} {incr i} {
+	if {$i > 0} {
+	    set scale [java::new ptolemy.actor.lib.Scale $e0 scale$i]
+	    [java::field [java::cast ptolemy.actor.lib.Transformer $scale] input] \
+		link $relation
+	}
+	set scale [java::cast ptolemy.actor.lib.Scale [$e0 getEntity scale$i]]
+	[java::field $scale factor] setExpression $i
+	set scaleOutput [java::field \
+			     [java::cast ptolemy.actor.lib.Transformer $scale] output]
+	$e0 connect $scaleOutput \
+	    [java::field [java::cast ptolemy.actor.lib.Sink $scaled] input]
+	[java::field $sum plus] link [[$scaleOutput linkedRelationList] get 0]
+
+	set clock$i [java::new ptolemy.actor.lib.Clock $e0 clock$i]
+	$e0 connect \
+	    [java::field [java::cast ptolemy.actor.lib.Source [set clock$i]] output] \
+	    [java::field [java::cast ptolemy.actor.lib.Sink $clocks] input]
+    }
+    $manager execute
+    set result {}
+    foreach recorder [list $scaled $summed $clocks] {
+	set records {}
+	set width [[java::field [java::cast ptolemy.actor.lib.Sink $recorder] input] getWidth]
+	for {set i 0} {$i < $width} {incr i} {
+	    lappend records [enumToTokenValues [$recorder getRecord $i]]
+	}
+	lappend result $records
+    }
+    return $result
+}
+
+######################################################################
+####
+#
+test ParallelFiring-1.0 {Parallel firing gives the same results} {
+    set sequential [parallelModel false 20]
+    set parallel [parallelModel true 20]
+    list [expr {$sequential == $parallel}] \
+	[lindex [lindex $parallel 0] 3] \
+	[lindex $parallel 1] \
+	[lindex [lindex $parallel 2] 19]
+} {1 {3 0 3 0 3 0 3} {{190 0 190 0 190 0 190}} {1 0 1 0 1 0 1}}
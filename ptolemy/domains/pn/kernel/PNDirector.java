@@ -40,12 +40,14 @@ import ptolemy.actor.process.CompositeProcessDirector;
 import ptolemy.actor.process.ProcessReceiver;
 import ptolemy.data.IntToken;
 import ptolemy.data.expr.Parameter;
+import ptolemy.data.expr.StringParameter;
 import ptolemy.data.type.BaseType;
 import ptolemy.domains.pn.kernel.event.PNProcessListener;
 import ptolemy.kernel.CompositeEntity;
 import ptolemy.kernel.util.IllegalActionException;
 import ptolemy.kernel.util.InternalErrorException;
 import ptolemy.kernel.util.NameDuplicationException;
+import ptolemy.kernel.util.Settable;
 import ptolemy.kernel.util.Workspace;
 
 ///////////////////////////////////////////////////////////////////
@@ -96,6 +98,14 @@ import ptolemy.kernel.util.Workspace;
  an exception is thrown.  This can be used to detect erroneous models
  that require unbounded queues.</p>
 
+ <p>The <i>receiverType</i> parameter selects the receivers.  By default,
+ they are instances of {@link PNQueueReceiver}, which synchronize every
+ read and write on this director.  If it is "ring", then they are instances
+ of {@link PNRingReceiver}, in which a process that does not block does
+ not acquire any lock, and a blocked process is woken up by the process
+ on the other side of the channel rather than by notifyAll().
+ The deadlocks are detected and handled in the same way.</p>
+
  <p>There are at least three ways for a PN model to terminate itself:
  <ol>
  <li>Have the model starve itself.  Typically, a boolean switch is used.
@@ -189,6 +199,15 @@ public class PNDirector extends CompositeProcessDirector {
      */
     public Parameter maximumQueueCapacity;
 
+    /** The type of the receivers, which is one of "queue", for
+     *  {@link PNQueueReceiver}, or "ring", for {@link PNRingReceiver}.
+     *  The ring receivers exchange tokens without locks, which scales
+     *  better with the number of processes.  Changes to this parameter
+     *  take effect when the receivers are created, which is in
+     *  preinitialize().  The value defaults to "queue".
+     */
+    public StringParameter receiverType;
+
     ///////////////////////////////////////////////////////////////////
     ////                         public methods                    ////
 
@@ -241,7 +260,8 @@ public class PNDirector extends CompositeProcessDirector {
     }
 
     /** Return a new receiver compatible with this director. The receiver
-     *  is an instance of PNQueueReceiver. Set the initial capacity
+     *  is an instance of PNQueueReceiver, or of PNRingReceiver if the
+     *  <i>receiverType</i> parameter is "ring". Set the initial capacity
      *  of the FIFO queue in the receiver to the value specified by the
      *  director parameter "initialQueueCapacity". The default value
      *  of the parameter is 1.
@@ -249,7 +269,16 @@ public class PNDirector extends CompositeProcessDirector {
      */
     @Override
     public Receiver newReceiver() {
-        PNQueueReceiver receiver = new PNQueueReceiver();
+        PNQueueReceiver receiver;
+        try {
+            if (receiverType.stringValue().equals("ring")) {
+                receiver = new PNRingReceiver();
+            } else {
+                receiver = new PNQueueReceiver();
+            }
+        } catch (IllegalActionException e) {
+            throw new InternalErrorException(e);
+        }
         _receivers.add(new WeakReference(receiver));
 
         // Set the capacity to the default. Note that it will also
@@ -591,6 +620,12 @@ public class PNDirector extends CompositeProcessDirector {
         maximumQueueCapacity = new Parameter(this, "maximumQueueCapacity",
                 new IntToken(65536));
         maximumQueueCapacity.setTypeEquals(BaseType.INT);
+
+        receiverType = new StringParameter(this, "receiverType");
+        receiverType.addChoice("queue");
+        receiverType.addChoice("ring");
+        receiverType.setExpression("queue");
+        receiverType.setVisibility(Settable.EXPERT);
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -544,16 +544,16 @@ public class PNQueueReceiver extends QueueReceiver implements ProcessReceiver {
     protected PNDirector _director;
 
     /** Reference to a thread that is read blocked on this receiver. */
-    protected Thread _readPending = null;
+    protected volatile Thread _readPending = null;
 
     /** Reference to a thread that is write blocked on this receiver. */
-    protected Thread _writePending = null;
+    protected volatile Thread _writePending = null;
 
     ///////////////////////////////////////////////////////////////////
     ////                         private variables                 ////
 
     /** Flag indicating whether finish has been requested. */
-    protected boolean _terminate = false;
+    protected volatile boolean _terminate = false;
 
     /** A BoundaryDetector determines the topological relationship of
      *  a Receiver with respect to boundary ports.
@@ -0,0 +1,583 @@
+/* A PN receiver with a lock-free ring buffer.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+ */
+package ptolemy.domains.pn.kernel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import ptolemy.actor.Actor;
+import ptolemy.actor.IOPort;
+import ptolemy.actor.Manager;
+import ptolemy.actor.NoRoomException;
+import ptolemy.actor.NoTokenException;
+import ptolemy.actor.Receiver;
+import ptolemy.actor.process.TerminateProcessException;
+import ptolemy.data.Token;
+import ptolemy.kernel.util.IllegalActionException;
+import ptolemy.kernel.util.InternalErrorException;
+import ptolemy.kernel.util.Nameable;
+import ptolemy.kernel.util.Workspace;
+
+///////////////////////////////////////////////////////////////////
+//// PNRingReceiver
+
+/**
+ A PN receiver that stores its tokens in a lock-free ring buffer.
+ <p>
+ The base class synchronizes every get() and put() on the director,
+ and wakes up all the blocked threads with notifyAll() whenever a
+ token is exchanged. This receiver uses a ring buffer with one
+ producer and one consumer instead, so a process that reads a token
+ that is available or writes a token into a buffer that has room does
+ not acquire any lock. Only a process that has to block synchronizes
+ on the director, which it informs with threadBlocked() as in the
+ base class, and then parks itself. The process on the other side of
+ the channel calls threadUnblocked() and unparks exactly that thread,
+ so the deadlock detection of {@link PNDirector}, including the
+ increase of the capacity of a queue on an artificial deadlock, works
+ as with the base class.
+ <p>
+ The ring buffer is used after reset(), which is called before the
+ process threads are started, if the receiver has exactly one
+ producer and is not at the boundary of an opaque composite actor,
+ where the tokens may be transferred by the threads of another
+ director, and if its history capacity is zero. Otherwise, this
+ receiver behaves exactly like the base class. The ring buffer grows
+ when the capacity of the receiver is increased, so it takes no more
+ memory than the queue of the base class.
+ <p>
+ This receiver is used by PNDirector if its <i>receiverType</i>
+ parameter is "ring".
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ @see PNQueueReceiver
+ */
+public class PNRingReceiver extends PNQueueReceiver {
+    /** Construct an empty receiver with no container.
+     */
+    public PNRingReceiver() {
+        super();
+    }
+
+    /** Construct an empty receiver with the specified container.
+     *  @param container The container of this receiver.
+     *  @exception IllegalActionException If the container does
+     *   not accept this receiver.
+     */
+    public PNRingReceiver(IOPort container) throws IllegalActionException {
+        super(container);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Clear this receiver of any contained tokens.
+     */
+    @Override
+    public void clear() {
+        if (!_ringMode) {
+            super.clear();
+            return;
+        }
+        Token[] ring = _ring;
+        for (long i = _head; i < _tail; i++) {
+            ring[(int) i & ring.length - 1] = null;
+        }
+        _head = _tail;
+    }
+
+    /** List the tokens in the receiver, beginning with the oldest.
+     *  @return A list of tokens.
+     */
+    @Override
+    public List<Token> elementList() {
+        if (!_ringMode) {
+            return super.elementList();
+        }
+        long head = _head;
+        long tail = _tail;
+        Token[] ring = _ring;
+        List<Token> result = new ArrayList<Token>((int) (tail - head));
+        for (long i = head; i < tail; i++) {
+            result.add(ring[(int) i & ring.length - 1]);
+        }
+        return result;
+    }
+
+    /** Get a token from this receiver. If the receiver is empty then
+     *  block until a token becomes available. If this receiver is
+     *  terminated during the execution of this method, then throw a
+     *  TerminateProcessException.
+     *  @return The token contained by this receiver.
+     */
+    @Override
+    public Token get() {
+        if (!_ringMode) {
+            return super.get();
+        }
+        while (true) {
+            if (_terminate) {
+                throw new TerminateProcessException("");
+            }
+            long head = _head;
+            if (head < _tail) {
+                // Read the ring after the tail, so that it is the
+                // ring into which the producer put the token.
+                Token[] ring = _ring;
+                int index = (int) head & ring.length - 1;
+                Token result = ring[index];
+                ring[index] = null;
+                _head = head + 1;
+                if (_writePending != null) {
+                    _unblockWriter();
+                }
+                return result;
+            }
+            _waitForToken();
+        }
+    }
+
+    /** Return the token at the specified offset from the oldest token
+     *  in the receiver without removing it.
+     *  @param offset The offset from the oldest token in the receiver.
+     *  @return The token at the desired offset in the receiver.
+     *  @exception NoTokenException If the offset is out of range.
+     */
+    @Override
+    public Token get(int offset) {
+        if (!_ringMode) {
+            return super.get(offset);
+        }
+        long head = _head;
+        long size = _tail - head;
+        if (offset < 0 || offset >= size) {
+            throw new NoTokenException(getContainer(), "Offset " + offset
+                    + " out of range with " + size
+                    + " tokens in the receiver.");
+        }
+        Token[] ring = _ring;
+        return ring[(int) (head + offset) & ring.length - 1];
+    }
+
+    /** Return the capacity, or INFINITE_CAPACITY if it is unbounded.
+     *  @return The capacity of the receiver.
+     *  @see #setCapacity(int)
+     */
+    @Override
+    public int getCapacity() {
+        if (!_ringMode) {
+            return super.getCapacity();
+        }
+        return _capacity;
+    }
+
+    /** Put a token into this receiver. If the receiver is full, then
+     *  block until there is room, and inform the director as in the
+     *  base class. If a process is blocked on a read from this
+     *  receiver, then unblock it. If termination is requested, then
+     *  throw a TerminateProcessException.
+     *  @param token The token to be put in the receiver, or null to not
+     *   put anything.
+     *  @exception NoRoomException If during initialization, capacity
+     *   cannot be increased enough to accommodate initial tokens.
+     */
+    @Override
+    public void put(Token token) throws NoRoomException {
+        if (!_ringMode) {
+            super.put(token);
+            return;
+        }
+        if (token == null) {
+            return;
+        }
+        while (true) {
+            if (_terminate) {
+                throw new TerminateProcessException("Process terminated.");
+            }
+            long tail = _tail;
+            long size = tail - _head;
+            int capacity = _capacity;
+            if (capacity == INFINITE_CAPACITY || size < capacity) {
+                Token[] ring = _ring;
+                if (size >= ring.length) {
+                    ring = _grow(ring, tail);
+                }
+                ring[(int) tail & ring.length - 1] = token;
+                _tail = tail + 1;
+                if (_readPending != null) {
+                    _unblockReader();
+                }
+                return;
+            }
+            if (_isInitializing()) {
+                // As in the base class, make room for the initial tokens.
+                synchronized (_director) {
+                    if (_capacity == capacity) {
+                        _capacity = capacity + 1;
+                    }
+                }
+                continue;
+            }
+            _waitForRoom();
+        }
+    }
+
+    /** Reset the state variables in the receiver, and use the ring
+     *  buffer if the receiver has exactly one producer and is not at
+     *  a boundary.
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        _setRingMode(_canUseRing());
+    }
+
+    /** Set a flag in the receiver to indicate the onset of termination,
+     *  and unpark any process that is blocked on this receiver.
+     */
+    @Override
+    public void requestFinish() {
+        super.requestFinish();
+        Thread thread = _readPending;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+        thread = _writePending;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /** Set receiver capacity. If a process is blocked on a write to
+     *  this receiver, as when the director resolves an artificial
+     *  deadlock, then unpark it.
+     *  @param capacity The desired receiver capacity.
+     *  @exception IllegalActionException If the receiver has more tokens
+     *   than the proposed capacity or the proposed capacity is illegal.
+     *  @see #getCapacity()
+     */
+    @Override
+    public void setCapacity(int capacity) throws IllegalActionException {
+        if (!_ringMode) {
+            super.setCapacity(capacity);
+            return;
+        }
+        if (capacity < 0 && capacity != INFINITE_CAPACITY
+                || capacity != INFINITE_CAPACITY && size() > capacity) {
+            throw new IllegalActionException(getContainer(),
+                    "Failed to set capacity to " + capacity);
+        }
+        _capacity = capacity;
+        Thread writer = _writePending;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /** Return the number of tokens in the receiver.
+     *  @return The number of tokens in the receiver.
+     */
+    @Override
+    public int size() {
+        if (!_ringMode) {
+            return super.size();
+        }
+        return (int) (_tail - _head);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Return true if the ring buffer can be used, that is, if the
+     *  receiver has exactly one producer, is not at a boundary and
+     *  has no history.
+     */
+    private boolean _canUseRing() {
+        IOPort port = getContainer();
+        if (port == null || _director == null || getHistoryCapacity() != 0) {
+            return false;
+        }
+        try {
+            if (isProducerReceiver() || isConnectedToBoundary()) {
+                return false;
+            }
+            int producers = 0;
+            for (Object source : port.sourcePortList()) {
+                Receiver[][] receivers = ((IOPort) source)
+                        .getRemoteReceivers();
+                if (receivers == null) {
+                    continue;
+                }
+                for (Receiver[] channel : receivers) {
+                    if (channel == null) {
+                        continue;
+                    }
+                    for (Receiver receiver : channel) {
+                        if (receiver == this) {
+                            producers++;
+                        }
+                    }
+                }
+            }
+            return producers == 1;
+        } catch (IllegalActionException ex) {
+            return false;
+        }
+    }
+
+    /** Replace the ring by one that is twice as long. This is called
+     *  only by the producer, and the consumer may read the tokens from
+     *  either ring.
+     */
+    private Token[] _grow(Token[] ring, long tail) {
+        Token[] result = new Token[ring.length * 2];
+        for (long i = _head; i < tail; i++) {
+            result[(int) i & result.length - 1] = ring[(int) i & ring.length
+                    - 1];
+        }
+        _ring = result;
+        return result;
+    }
+
+    /** Return true if there is room for one more token. */
+    private boolean _hasRoom() {
+        int capacity = _capacity;
+        return capacity == INFINITE_CAPACITY || _tail - _head < capacity;
+    }
+
+    /** Return true if the manager is initializing the model. */
+    private boolean _isInitializing() {
+        Nameable container = getContainer().getContainer();
+        if (!(container instanceof Actor)) {
+            return false;
+        }
+        Manager manager = ((Actor) container).getManager();
+        return manager != null
+                && manager.getState().equals(Manager.INITIALIZING);
+    }
+
+    /** Release the read permission on the workspace and park the
+     *  current thread until it is unblocked, or, if it is blocked on a
+     *  write, until there is room, or until termination is requested.
+     */
+    private void _park(boolean read, Thread current) {
+        Workspace workspace = getContainer().workspace();
+        int depth = workspace.releaseReadPermission();
+        try {
+            while (!_terminate) {
+                if (read) {
+                    if (_readPending != current) {
+                        break;
+                    }
+                } else if (_writePending != current || _hasRoom()) {
+                    break;
+                }
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    _terminate = true;
+                }
+            }
+        } finally {
+            if (depth > 0) {
+                workspace.reacquireReadPermission(depth);
+            }
+        }
+    }
+
+    /** Switch between the ring buffer and the queue of the base class,
+     *  moving the tokens. This is called when no process is running.
+     */
+    private void _setRingMode(boolean ringMode) {
+        if (ringMode == _ringMode) {
+            return;
+        }
+        try {
+            if (ringMode) {
+                List<?> tokens = _queue.elementList();
+                int capacity = _queue.getCapacity();
+                int length = _INITIAL_LENGTH;
+                while (length < tokens.size()
+                        || length < capacity && length < _MAXIMUM_INITIAL_LENGTH) {
+                    length *= 2;
+                }
+                Token[] ring = new Token[length];
+                tokens.toArray(ring);
+                _queue.clear();
+                _ring = ring;
+                _head = 0L;
+                _tail = tokens.size();
+                _capacity = capacity;
+            } else {
+                List<Token> tokens = elementList();
+                _ring = null;
+                _head = 0L;
+                _tail = 0L;
+                _queue.clear();
+                _queue.setCapacity(INFINITE_CAPACITY);
+                for (Token token : tokens) {
+                    _queue.put(token);
+                }
+                _queue.setCapacity(_capacity);
+            }
+        } catch (IllegalActionException ex) {
+            // The ring never contains more tokens than its capacity.
+            throw new InternalErrorException(getContainer(), ex,
+                    "Failed to move the tokens of the receiver.");
+        }
+        _ringMode = ringMode;
+    }
+
+    /** Unblock the process that is blocked on a read from this receiver,
+     *  if there is one.
+     */
+    private void _unblockReader() {
+        synchronized (_director) {
+            Thread reader = _readPending;
+            if (reader != null) {
+                _director.threadUnblocked(reader, this,
+                        PNDirector.READ_BLOCKED);
+                _readPending = null;
+                LockSupport.unpark(reader);
+            }
+        }
+    }
+
+    /** Unblock the process that is blocked on a write to this receiver,
+     *  if there is one.
+     */
+    private void _unblockWriter() {
+        synchronized (_director) {
+            Thread writer = _writePending;
+            if (writer != null) {
+                _director.threadUnblocked(writer, this,
+                        PNDirector.WRITE_BLOCKED);
+                _writePending = null;
+                LockSupport.unpark(writer);
+            }
+        }
+    }
+
+    /** Wait until a token is available or termination is requested.
+     *  The current thread spins briefly, and then informs the director
+     *  that it is blocked and parks until the producer unblocks it.
+     */
+    private void _waitForToken() {
+        for (int i = 0; i < _SPINS; i++) {
+            if (_head < _tail || _terminate) {
+                return;
+            }
+            Thread.onSpinWait();
+        }
+        Thread current = Thread.currentThread();
+        synchronized (_director) {
+            // The producer checks _readPending after updating _tail,
+            // so either it sees the reader or the reader sees the token.
+            _readPending = current;
+            if (_head < _tail || _terminate) {
+                _readPending = null;
+                return;
+            }
+            _director.threadBlocked(current, this, PNDirector.READ_BLOCKED);
+        }
+        _park(true, current);
+    }
+
+    /** Wait until there is room for a token or termination is requested.
+     *  The current thread spins briefly, and then informs the director
+     *  that it is blocked and parks until the consumer or the director
+     *  makes room.
+     */
+    private void _waitForRoom() {
+        for (int i = 0; i < _SPINS; i++) {
+            if (_hasRoom() || _terminate) {
+                return;
+            }
+            Thread.onSpinWait();
+        }
+        Thread current = Thread.currentThread();
+        synchronized (_director) {
+            _writePending = current;
+            if (_hasRoom() || _terminate) {
+                _writePending = null;
+                return;
+            }
+            _director.threadBlocked(current, this, PNDirector.WRITE_BLOCKED);
+        }
+        _park(false, current);
+        if (_writePending == current && !_terminate) {
+            // The director increased the capacity, so nobody else
+            // cleared the reference.
+            synchronized (_director) {
+                if (_writePending == current) {
+                    _director.threadUnblocked(current, this,
+                            PNDirector.WRITE_BLOCKED);
+                    _writePending = null;
+                }
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The initial length of the ring. */
+    private static final int _INITIAL_LENGTH = 16;
+
+    /** The maximum initial length of the ring, which grows later
+     *  if needed.
+     */
+    private static final int _MAXIMUM_INITIAL_LENGTH = 1024;
+
+    /** The number of times that a process checks the ring before
+     *  it blocks.
+     */
+    private static final int _SPINS = 100;
+
+    /** The capacity of the receiver in ring mode. */
+    private volatile int _capacity;
+
+    /** The number of tokens that have been taken, which is written
+     *  only by the consumer.
+     */
+    private volatile long _head;
+
+    /** The ring buffer, whose length is a power of two. */
+    private volatile Token[] _ring;
+
+    /** True if the ring buffer is used. */
+    private boolean _ringMode;
+
+    /** The number of tokens that have been put, which is written
+     *  only by the producer.
+     */
+    private volatile long _tail;
+}
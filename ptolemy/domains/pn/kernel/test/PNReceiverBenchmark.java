@@ -0,0 +1,186 @@
+/* Measure the throughput of PN receivers in pipelines of processes.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+ */
+package ptolemy.domains.pn.kernel.test;
+
+import ptolemy.actor.Manager;
+import ptolemy.actor.TypedAtomicActor;
+import ptolemy.actor.TypedCompositeActor;
+import ptolemy.actor.TypedIOPort;
+import ptolemy.actor.lib.Discard;
+import ptolemy.actor.lib.Ramp;
+import ptolemy.data.IntToken;
+import ptolemy.domains.pn.kernel.PNDirector;
+import ptolemy.kernel.CompositeEntity;
+import ptolemy.kernel.util.IllegalActionException;
+import ptolemy.kernel.util.NameDuplicationException;
+
+///////////////////////////////////////////////////////////////////
+//// PNReceiverBenchmark
+
+/**
+ Execute pipelines of PN processes with each type of receiver of
+ PNDirector and report the number of tokens per second that pass
+ through the pipeline.
+ <p>
+ A pipeline consists of a Ramp, a chain of processes that copy each
+ token from their input to their output, and a Discard, so most of the
+ time is spent in get() and put(). The number of processes, including
+ the Ramp and the Discard, is 2, 4, 8, and so on up to the maximum.
+ Since the processes of a pipeline can only make progress if they
+ exchange tokens, the throughput shows how the cost of a token exchange
+ grows with the number of threads.
+ <p>
+ To run, use:
+ <pre>
+ java -classpath $PTII ptolemy.domains.pn.kernel.test.PNReceiverBenchmark [-tokens n] [-processes n] [-capacity n]
+ </pre>
+ The number of tokens defaults to 100000, the maximum number of
+ processes defaults to 256, and the initial capacity of the queues
+ defaults to 1, which is the default of PNDirector.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class PNReceiverBenchmark {
+
+    /** Execute the pipelines and print the results.
+     *  @param args Optional "-tokens n", "-processes n" and
+     *   "-capacity n" arguments.
+     *  @exception Exception If a pipeline cannot be executed.
+     */
+    public static void main(String[] args) throws Exception {
+        int tokens = 100000;
+        int processes = 256;
+        int capacity = 1;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("-tokens")) {
+                tokens = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-processes")) {
+                processes = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-capacity")) {
+                capacity = Integer.parseInt(args[i + 1]);
+            } else {
+                System.err.println("Usage: java -classpath $PTII "
+                        + "ptolemy.domains.pn.kernel.test.PNReceiverBenchmark "
+                        + "[-tokens n] [-processes n] [-capacity n]");
+                return;
+            }
+        }
+
+        String[] receiverTypes = { "queue", "ring" };
+        // Warm up.
+        for (String receiverType : receiverTypes) {
+            run(receiverType, 8, Math.min(tokens, 10000), capacity);
+        }
+
+        System.out.println("processes\treceiver\ttokens/s");
+        for (int n = 2; n <= processes; n *= 2) {
+            for (String receiverType : receiverTypes) {
+                long elapsed = run(receiverType, n, tokens, capacity);
+                System.out.println(n + "\t" + receiverType + "\t"
+                        + (long) (tokens * 1.0e9 / elapsed));
+            }
+        }
+    }
+
+    /** Execute a pipeline and return the elapsed time.
+     *  @param receiverType The value of the receiverType parameter
+     *   of the director.
+     *  @param processes The number of processes, which is at least 2.
+     *  @param tokens The number of tokens that are produced by the Ramp.
+     *  @param capacity The initial capacity of the queues.
+     *  @return The time it took to execute the model in nanoseconds.
+     *  @exception Exception If the model cannot be constructed or
+     *   executed.
+     */
+    public static long run(String receiverType, int processes, int tokens,
+            int capacity) throws Exception {
+        TypedCompositeActor toplevel = new TypedCompositeActor();
+        toplevel.setName("pipeline");
+        Manager manager = new Manager(toplevel.workspace(), "manager");
+        toplevel.setManager(manager);
+        PNDirector director = new PNDirector(toplevel, "director");
+        director.receiverType.setExpression(receiverType);
+        director.initialQueueCapacity.setToken(new IntToken(capacity));
+
+        Ramp ramp = new Ramp(toplevel, "ramp");
+        ramp.firingCountLimit.setExpression(Integer.toString(tokens));
+        TypedIOPort previous = ramp.output;
+        for (int i = 0; i < processes - 2; i++) {
+            Copy copy = new Copy(toplevel, "copy" + i);
+            toplevel.connect(previous, copy.input);
+            previous = copy.output;
+        }
+        Discard discard = new Discard(toplevel, "discard");
+        toplevel.connect(previous, discard.input);
+
+        long start = System.nanoTime();
+        manager.execute();
+        return System.nanoTime() - start;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         inner classes                     ////
+
+    /** A process that copies each token from its input to its output.
+     */
+    public static class Copy extends TypedAtomicActor {
+        /** Construct an actor with the given container and name.
+         *  @param container The container.
+         *  @param name The name of this actor.
+         *  @exception IllegalActionException If the actor cannot be
+         *   contained by the proposed container.
+         *  @exception NameDuplicationException If the container already
+         *   has an actor with this name.
+         */
+        public Copy(CompositeEntity container, String name)
+                throws IllegalActionException, NameDuplicationException {
+            super(container, name);
+            input = new TypedIOPort(this, "input", true, false);
+            output = new TypedIOPort(this, "output", false, true);
+            output.setTypeSameAs(input);
+        }
+
+        /** The input port. */
+        public TypedIOPort input;
+
+        /** The output port. */
+        public TypedIOPort output;
+
+        /** Copy a token from the input to the output.
+         *  @exception IllegalActionException If there is no director.
+         */
+        @Override
+        public void fire() throws IllegalActionException {
+            super.fire();
+            output.send(0, input.get(0));
+        }
+    }
+}
@@ -0,0 +1,184 @@
+# Tests for PNRingReceiver
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2016 The Regents of the University of California.
+# All rights reserved.
+#
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+#
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+#
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+#
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Ptolemy II test bed, see $PTII/doc/coding/testing.html for more information.
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then {
+    source testDefs.tcl
+} {}
+
+if {[info procs enumToObjects] == "" } then {
+     source enums.tcl
+}
+
+if {[string compare getParameter [info procs getParameter]] != 0} \
+        then {
+    source [file join $PTII util testsuite models.tcl]
+} {}
+
+# Uncomment this to get a full report, or set in your Tcl shell window.
+# set VERBOSE 1
+
+# Create a PN model with no actors in it, whose director uses
+# the specified receiver type, and return it.
+proc pnModel {receiverType} {
+    set e0 [java::new ptolemy.actor.TypedCompositeActor]
+    $e0 setName top
+    $e0 setManager [java::new ptolemy.actor.Manager]
+    set director [java::new ptolemy.domains.pn.kernel.PNDirector $e0 director]
+    [java::field $director receiverType] setExpression $receiverType
+    return $e0
+}
+
+# Build a model with a feedback loop that needs more than the
+# initial queue capacity and a chain of the specified length,
+# execute it, and return the records of the two recorders.
+proc feedbackModel {receiverType length} {
+    set e0 [pnModel $receiverType]
+    set ramp [java::new ptolemy.actor.lib.Ramp $e0 ramp]
+    [getParameter $ramp firingCountLimit] setExpression 20
+    set add [java::new ptolemy.actor.lib.AddSubtract $e0 add]
+    set delay [java::new ptolemy.domains.sdf.lib.SampleDelay $e0 delay]
+    [getParameter $delay initialOutputs] setExpression {{0, 0, 0}}
+    set rec [java::new ptolemy.actor.lib.Recorder $e0 rec]
+    set rec2 [java::new ptolemy.actor.lib.Recorder $e0 rec2]
+
+    set r1 [$e0 connect \
+	    [java::field [java::cast ptolemy.actor.lib.Source $ramp] output] \
+	    [java::field $add plus]]
+    set r2 [$e0 connect \
+	    [java::field $add output] \
+	    [java::field [java::cast ptolemy.domains.sdf.lib.SDFTransformer $delay] input]]
+    [java::field [java::cast ptolemy.actor.lib.Sink $rec] input] link $r2
+    $e0 connect \
+	    [java::field [java::cast ptolemy.domains.sdf.lib.SDFTransformer $delay] output] \
+	    [java::field $add plus]
+
+    set previous $r1
+    for {set i 0} {$i < $length} {incr i} {
+	set scale [java::new ptolemy.actor.lib.Scale $e0 scale$i]
+	[getParameter $scale factor] setExpression 2
+	[java::field [java::cast ptolemy.actor.lib.Transformer $scale] input] link $previous
+	set previous [java::new ptolemy.actor.TypedIORelation $e0 s$i]
+	[java::field [java::cast ptolemy.actor.lib.Transformer $scale] output] link $previous
+    }
+    [java::field [java::cast ptolemy.actor.lib.Sink $rec2] input] link $previous
+
+    [$e0 getManager] execute
+    list [enumToTokenValues [$rec getRecord 0]] \
+	    [enumToTokenValues [$rec2 getRecord 0]]
+}
+
+######################################################################
+####
+#
+test PNRingReceiver-1.1 {Default value of receiverType} {
+    set e0 [pnModel queue]
+    set director [java::cast ptolemy.domains.pn.kernel.PNDirector \
+	    [$e0 getDirector]]
+    set r1 [$director newReceiver]
+    [java::field $director receiverType] setExpression ring
+    set r2 [$director newReceiver]
+    list [[java::field [java::new ptolemy.domains.pn.kernel.PNDirector] \
+	    receiverType] getExpression] \
+	    [java::instanceof $r1 ptolemy.domains.pn.kernel.PNRingReceiver] \
+	    [java::instanceof $r2 ptolemy.domains.pn.kernel.PNRingReceiver]
+} {queue 0 1}
+
+test PNRingReceiver-1.2 {A receiver that has not been reset is a queue} {
+    set sink [java::new ptolemy.actor.lib.Discard $e0 sink]
+    set rec [java::new ptolemy.domains.pn.kernel.PNRingReceiver \
+	    [java::field [java::cast ptolemy.actor.lib.Sink $sink] input]]
+    $rec setCapacity 3
+    $rec put [java::new {ptolemy.data.IntToken int} 4]
+    $rec put [java::new {ptolemy.data.IntToken int} 5]
+    set tok1 [java::cast ptolemy.data.IntToken [$rec get]]
+    set tok2 [java::cast ptolemy.data.IntToken [$rec get 0]]
+    list [$tok1 intValue] [$tok2 intValue] [$rec size] [$rec getCapacity] \
+	    [$rec hasToken] [$rec isReadBlocked] [$rec isWriteBlocked]
+} {4 5 1 3 1 0 0}
+
+######################################################################
+####
+#
+test PNRingReceiver-2.1 {Ring receivers give the same results as queues} {
+    set queue [feedbackModel queue 3]
+    set ring [feedbackModel ring 3]
+    list [expr {$queue == $ring}] [lrange [lindex $ring 0] 0 7] \
+	    [lrange [lindex $ring 1] 0 4]
+} {1 {0 1 2 3 5 7 9 12} {0 8 16 24 32}}
+
+test PNRingReceiver-2.2 {A long chain} {
+    set queue [feedbackModel queue 100]
+    set ring [feedbackModel ring 100]
+    list [expr {$queue == $ring}] [llength [lindex $ring 1]]
+} {1 20}
+
+test PNRingReceiver-2.3 {Run a model with ring receivers twice} {
+    set e0 [pnModel ring]
+    set ramp [java::new ptolemy.actor.lib.Ramp $e0 ramp]
+    [getParameter $ramp firingCountLimit] setExpression 5
+    set rec [java::new ptolemy.actor.lib.Recorder $e0 rec]
+    $e0 connect \
+	    [java::field [java::cast ptolemy.actor.lib.Source $ramp] output] \
+	    [java::field [java::cast ptolemy.actor.lib.Sink $rec] input]
+    [$e0 getManager] execute
+    set first [enumToTokenValues [$rec getRecord 0]]
+    [$e0 getManager] execute
+    list $first [enumToTokenValues [$rec getRecord 0]]
+} {{0 1 2 3 4} {0 1 2 3 4}}
+
+######################################################################
+####
+#
+test PNRingReceiver-3.1 {Artificial deadlocks exceed the maximum capacity} {
+    set e0 [pnModel ring]
+    set director [$e0 getDirector]
+    [getParameter $director maximumQueueCapacity] setExpression 16
+    set ramp [java::new ptolemy.actor.lib.Ramp $e0 ramp]
+    set const [java::new ptolemy.actor.lib.Const $e0 const]
+    [getParameter $const firingCountLimit] setExpression 1
+    set add [java::new ptolemy.actor.lib.AddSubtract $e0 add]
+    set rec [java::new ptolemy.actor.lib.Recorder $e0 rec]
+    $e0 connect \
+	    [java::field [java::cast ptolemy.actor.lib.Source $ramp] output] \
+	    [java::field $add plus]
+    $e0 connect \
+	    [java::field [java::cast ptolemy.actor.lib.Source $const] output] \
+	    [java::field $add plus]
+    $e0 connect \
+	    [java::field $add output] \
+	    [java::field [java::cast ptolemy.actor.lib.Sink $rec] input]
+    catch {[$e0 getManager] execute} msg
+    list [string range $msg 0 85] [enumToTokenValues [$rec getRecord 0]]
+} {{ptolemy.kernel.util.IllegalActionException: Queue size 32 exceeds the maximum capacity} 1}
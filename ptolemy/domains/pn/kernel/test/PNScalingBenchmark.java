@@ -0,0 +1,172 @@
+/* Measure how the execution of PN models scales with the number of processes.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+ */
+package ptolemy.domains.pn.kernel.test;
+
+import ptolemy.actor.Manager;
+import ptolemy.actor.TypedCompositeActor;
+import ptolemy.actor.TypedIOPort;
+import ptolemy.actor.TypedIORelation;
+import ptolemy.actor.lib.Discard;
+import ptolemy.actor.lib.Ramp;
+import ptolemy.data.IntToken;
+import ptolemy.domains.pn.kernel.PNDirector;
+
+///////////////////////////////////////////////////////////////////
+//// PNScalingBenchmark
+
+/**
+ Execute PN models with an increasing number of processes and report
+ the time per process.
+ <p>
+ Each model is a pipeline of a Ramp, a chain of processes that copy
+ each token from their input to their output, and a Discard, through
+ which a few tokens pass, so the time is dominated by the creation,
+ scheduling and termination of the threads that execute the processes.
+ The number of processes, including the Ramp and the Discard, goes
+ from 1000 up to the maximum, by steps of 1, 2 and 5 times a power of
+ 10. If a model cannot be executed, for example because the operating
+ system does not allow that many threads, then the error is reported
+ and the larger models are skipped.
+ <p>
+ To run, use:
+ <pre>
+ java -classpath $PTII ptolemy.domains.pn.kernel.test.PNScalingBenchmark [-processes n] [-tokens n] [-stackSize n] [-receiverType type]
+ </pre>
+ The maximum number of processes defaults to 100000, the number of
+ tokens to 10, the <i>threadStackSize</i> parameter of the director to
+ 65536 and its <i>receiverType</i> parameter to "ring".
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class PNScalingBenchmark {
+
+    /** Execute the models and print the results.
+     *  @param args Optional "-processes n", "-tokens n", "-stackSize n"
+     *   and "-receiverType type" arguments.
+     *  @exception Exception If a model cannot be constructed.
+     */
+    public static void main(String[] args) throws Exception {
+        int processes = 100000;
+        int tokens = 10;
+        int stackSize = 65536;
+        String receiverType = "ring";
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("-processes")) {
+                processes = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-tokens")) {
+                tokens = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-stackSize")) {
+                stackSize = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-receiverType")) {
+                receiverType = args[i + 1];
+            } else {
+                System.err.println("Usage: java -classpath $PTII "
+                        + "ptolemy.domains.pn.kernel.test.PNScalingBenchmark "
+                        + "[-processes n] [-tokens n] [-stackSize n] "
+                        + "[-receiverType type]");
+                return;
+            }
+        }
+
+        System.out.println("processes\tseconds\tmicroseconds/process");
+        int[] steps = { 1, 2, 5 };
+        for (int scale = 1000; scale <= processes; scale *= 10) {
+            for (int step : steps) {
+                int n = step * scale;
+                if (n > processes) {
+                    break;
+                }
+                long elapsed;
+                try {
+                    elapsed = run(n, tokens, stackSize, receiverType);
+                } catch (Throwable throwable) {
+                    System.out.println(n + "\tfailed: " + throwable);
+                    return;
+                }
+                System.out.println(n + "\t" + elapsed * 1.0e-9 + "\t"
+                        + elapsed * 1.0e-3 / n);
+            }
+        }
+    }
+
+    /** Execute a pipeline and return the elapsed time.
+     *  @param processes The number of processes, which is at least 2.
+     *  @param tokens The number of tokens that are produced by the Ramp.
+     *  @param stackSize The stack size of the threads.
+     *  @param receiverType The value of the receiverType parameter
+     *   of the director.
+     *  @return The time it took to execute the model in nanoseconds.
+     *  @exception Exception If the model cannot be constructed or
+     *   executed.
+     */
+    public static long run(int processes, int tokens, int stackSize,
+            String receiverType) throws Exception {
+        TypedCompositeActor toplevel = new TypedCompositeActor();
+        toplevel.setName("pipeline");
+        Manager manager = new Manager(toplevel.workspace(), "manager");
+        toplevel.setManager(manager);
+        PNDirector director = new PNDirector(toplevel, "director");
+        director.receiverType.setExpression(receiverType);
+        director.threadStackSize.setToken(new IntToken(stackSize));
+
+        Ramp ramp = new Ramp(toplevel, "ramp");
+        ramp.firingCountLimit.setExpression(Integer.toString(tokens));
+        TypedIOPort previous = ramp.output;
+        for (int i = 0; i < processes - 2; i++) {
+            PNReceiverBenchmark.Copy copy = new PNReceiverBenchmark.Copy(
+                    toplevel, "copy" + i);
+            _connect(toplevel, previous, copy.input, "relation" + i);
+            previous = copy.output;
+        }
+        Discard discard = new Discard(toplevel, "discard");
+        _connect(toplevel, previous, discard.input, "relation");
+
+        long start = System.nanoTime();
+        manager.execute();
+        return System.nanoTime() - start;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Connect two ports with a new relation with the given name.
+     *  Unlike CompositeEntity.connect(), this does not search for a
+     *  unique name, which takes time proportional to the number of
+     *  relations.
+     */
+    private static void _connect(TypedCompositeActor container,
+            TypedIOPort output, TypedIOPort input, String name)
+            throws Exception {
+        TypedIORelation relation = new TypedIORelation(container, name);
+        output.link(relation);
+        input.link(relation);
+    }
+}
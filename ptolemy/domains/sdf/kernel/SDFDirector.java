@@ -26,7 +26,13 @@
  */
 package ptolemy.domains.sdf.kernel;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 
 import ptolemy.actor.Actor;
 import ptolemy.actor.CompositeActor;
@@ -35,6 +41,7 @@ import ptolemy.actor.NoTokenException;
 import ptolemy.actor.Receiver;
 import ptolemy.actor.TypedCompositeActor;
 import ptolemy.actor.parameters.ParameterPort;
+import ptolemy.actor.sched.Firing;
 import ptolemy.actor.sched.NotSchedulableException;
 import ptolemy.actor.sched.Schedule;
 import ptolemy.actor.sched.StaticSchedulingDirector;
@@ -53,6 +60,7 @@ import ptolemy.kernel.util.Attribute;
 import ptolemy.kernel.util.IllegalActionException;
 import ptolemy.kernel.util.InternalErrorException;
 import ptolemy.kernel.util.NameDuplicationException;
+import ptolemy.kernel.util.PtolemyThread;
 import ptolemy.kernel.util.Settable;
 import ptolemy.kernel.util.Workspace;
 
@@ -151,6 +159,54 @@ import ptolemy.kernel.util.Workspace;
  the iteration count.
  This ensures that the director does not get ahead of real time. However,
  of course, this does not ensure that the director keeps up with real time.
+ </p><p>
+ If the <i>numberOfThreads</i> parameter is greater than one, then
+ this director can execute the model on several threads.  This is
+ done only if the director is at the top level, its container has
+ no input or output ports, the <i>period</i> is
+ 0.0, <i>allowRateChanges</i> is false, the number of iterations is
+ not one, and nobody is listening to the director.  In the
+ first firing, the first iteration of the schedule is executed as
+ usual while measuring the execution time of each actor.  The actors
+ are then partitioned, in the order of their first firing in the
+ schedule, into stages of about equal execution time, and one thread
+ is started per stage.  The threads persist until wrapup(), and each
+ subsequent firing executes one iteration.  Each thread executes the
+ firings of its actors in the order of the schedule, and a stage lags
+ behind the stages before it, typically by one iteration per stage,
+ so while the first stage executes the current iteration, the stages
+ after it complete the previous ones, which pipelines the iterations.
+ The receivers that connect actors in different stages become bounded
+ lock-free ring buffers (see {@link SDFPipelineReceiver}).  Before a
+ stage fires an actor, it waits until the stages that send tokens to
+ the actor have completed the firings that precede it in the
+ schedule, and a stage that puts a token into a full buffer waits
+ until the buffer has room.  Thus each actor receives the same tokens
+ as in the sequential execution, provided that it does not read more
+ tokens than its consumption rates (the stages before it may already
+ have produced tokens of later iterations), and that the actors in
+ different stages do not share state other than through their ports,
+ as in the case of SetVariable.
+ </p><p>
+ The postfire() method waits until the stages have completed the
+ firing, so the stages are idle between iterations, when the manager
+ executes change requests.  If a change request is pending when
+ postfire() is called, or if postfire() returns false, then the
+ stages first complete all the iterations that the first stage has
+ executed (the pipeline is drained), so that a change takes effect in
+ the next iteration of every actor, as in the sequential execution.
+ The pipeline is also drained if a structural change is requested
+ between iterations by the thread that executes the model, and by
+ wrapup(), so that all the iterations that have been fired are
+ completed.  If the schedule becomes invalid, then the threads are
+ stopped after the pipeline is drained, and the execution continues
+ sequentially until the next firing starts a new pipeline.  If an
+ actor in a stage that lags behind the first one requests a change,
+ then the change takes effect that many iterations later than in the
+ sequential execution, and if it returns false in postfire() or calls
+ finish() on this director, then the stages before it may have fired
+ their actors in a few more iterations than the sequential execution
+ would have.
  </p>
  @see ptolemy.domains.sdf.kernel.SDFScheduler
  @see ptolemy.domains.sdf.kernel.SDFReceiver
@@ -280,6 +336,17 @@ PeriodicDirector {
      */
     public Parameter iterations;
 
+    /** The number of threads that execute the schedule.  This is an
+     *  integer that defaults to 1, which means that the schedule is
+     *  executed by the thread that fires this director.  If it is
+     *  greater than one, and this director is at the top level, then
+     *  the actors are partitioned into at most this number of stages,
+     *  and each stage is executed by its own thread.  If it is 0,
+     *  then the number of available processors is used.
+     *  See the class comment for the restrictions of this mode.
+     */
+    public Parameter numberOfThreads;
+
     /** The time period of each iteration.  This parameter has type double
      *  and default value 0.0, which means that this director does not
      *  increment model time and does not request firings by calling
@@ -353,6 +420,17 @@ PeriodicDirector {
                 _allowDisconnectedGraphs = newValue;
                 invalidateSchedule();
             }
+        } else if (attribute == numberOfThreads) {
+            int newValue = ((IntToken) numberOfThreads.getToken()).intValue();
+            if (newValue < 0) {
+                throw new IllegalActionException(this,
+                        "numberOfThreads must not be negative. It was: "
+                                + newValue);
+            }
+            if (newValue == 0) {
+                newValue = Runtime.getRuntime().availableProcessors();
+            }
+            _numberOfThreads = newValue;
         } else if (attribute == vectorizationFactor) {
             Token token = vectorizationFactor.getToken();
             int newValue = ((IntToken) token).intValue();
@@ -375,6 +453,19 @@ PeriodicDirector {
     @Override
     public Object clone(Workspace workspace) throws CloneNotSupportedException {
         SDFDirector newObject = (SDFDirector) super.clone(workspace);
+        newObject._lastPipelineIteration = Long.MAX_VALUE;
+        newObject._pipelineDraining = false;
+        newObject._pipelineException = null;
+        newObject._pipelineFailureIteration = Long.MAX_VALUE;
+        newObject._pipelineFiring = false;
+        newObject._pipelineIteration = 0L;
+        newObject._pipelineReceivers = null;
+        newObject._pipelineRound = 0L;
+        newObject._pipelineStages = null;
+        newObject._pipelineStopped = false;
+        newObject._pipelineThread = null;
+        newObject._pipelineWaiter = null;
+        newObject._stopPipelineIteration = Long.MAX_VALUE;
 
         // Subclasses may set this to null and handle this themselves.
         try {
@@ -492,11 +583,32 @@ PeriodicDirector {
     }
 
     /** Call super.fire() and reset the _prefire flag.
-     *  @exception IllegalActionException Thrown by super class.
+     *  If the <i>numberOfThreads</i> parameter is greater than one and
+     *  the model can be executed by a pipeline, then instead start
+     *  the next iteration of the pipeline, as described in the class
+     *  comment, and return without waiting for it to complete.  If
+     *  the pipeline has not been started, then execute the iteration
+     *  sequentially and start the pipeline.
+     *  @exception IllegalActionException Thrown by super class, or if
+     *   an actor throws it in the pipelined execution.
      */
     @Override
     public void fire() throws IllegalActionException {
         _prefire = false;
+        if (_pipelineStages != null) {
+            if (getScheduler().isValid()) {
+                _pipelineFiring = true;
+                _pipelineIteration++;
+                _startPipelineRound();
+                return;
+            }
+            _drainPipeline();
+            _stopPipeline();
+            _throwPipelineException();
+        } else if (_numberOfThreads > 1 && _canPipeline()) {
+            _fireAndStartPipeline();
+            return;
+        }
         super.fire();
     }
 
@@ -528,6 +640,21 @@ PeriodicDirector {
         return super.fireAt(actor, time);
     }
 
+    /** Request that execution stop at the conclusion of the current
+     *  iteration.  In a pipelined execution, if the calling thread
+     *  executes a stage, then the current iteration is the iteration
+     *  of that stage, and otherwise it is the iteration of the first
+     *  stage.
+     */
+    @Override
+    public void finish() {
+        Thread thread = Thread.currentThread();
+        if (_pipelineStages != null && thread instanceof PipelineStage) {
+            _stopPipelineAfter(((PipelineStage) thread)._iteration);
+        }
+        super.finish();
+    }
+
     /** Initialize the actors associated with this director and then
      *  set the iteration count to zero.  The order in which the
      *  actors are initialized is arbitrary.  In addition, if actors
@@ -585,10 +712,16 @@ PeriodicDirector {
     }
 
     /** Return a new receiver consistent with the SDF domain.
+     *  If the <i>numberOfThreads</i> parameter is greater than one,
+     *  then return an SDFPipelineReceiver, which can become a channel
+     *  between the threads of a pipelined execution.
      *  @return A new SDFReceiver.
      */
     @Override
     public Receiver newReceiver() {
+        if (_numberOfThreads > 1) {
+            return new SDFPipelineReceiver();
+        }
         return new SDFReceiver();
     }
 
@@ -776,13 +909,29 @@ PeriodicDirector {
      *  if this director is at the top level, then increment time
      *  by the specified period, and otherwise request a refiring
      *  at the current time plus the period.
+     *  In a pipelined execution, first wait until the stages have
+     *  completed the firing, and drain the pipeline if a change
+     *  request is pending or if this method returns false.
      *  @return True if the Director wants to be fired again in the
      *  future.
      *  @exception IllegalActionException If the iterations parameter
-     *  does not contain a legal value.
+     *  does not contain a legal value, or if an actor throws it in the
+     *  pipelined execution.
      */
     @Override
     public boolean postfire() throws IllegalActionException {
+        if (_pipelineStages != null) {
+            _awaitPipelineRound();
+            _pipelineFiring = false;
+            if (_pipelineException != null || isChangeRequestPending()) {
+                _drainPipeline();
+                _throwPipelineException();
+            }
+            if (_stopPipelineIteration < Long.MAX_VALUE) {
+                _postfireReturns = false;
+            }
+        }
+
         int iterationsValue = getIterations();
         _iterationCount++;
 
@@ -792,6 +941,8 @@ PeriodicDirector {
                 _debug("Reached specified number of iterations: "
                         + iterationsValue);
             }
+            _drainPipeline();
+            _throwPipelineException();
             return false;
         }
 
@@ -799,9 +950,28 @@ PeriodicDirector {
         if (_periodicDirectorHelper != null) {
             _periodicDirectorHelper.postfire();
         }
+        if (!result) {
+            _drainPipeline();
+            _throwPipelineException();
+        }
         return result;
     }
 
+    /** Call stopFire() of the superclass.  In a pipelined execution,
+     *  if this method is called between iterations by the thread that
+     *  executes the model, as is done when a structural change is
+     *  requested, then first drain the pipeline, so that the change
+     *  takes effect in the next iteration of every actor.
+     */
+    @Override
+    public void stopFire() {
+        if (_pipelineStages != null && !_pipelineFiring
+                && Thread.currentThread() == _pipelineThread) {
+            _drainPipeline();
+        }
+        super.stopFire();
+    }
+
     /** Return an array of suggested ModalModel directors  to use with
      *  SDFDirector. The default director is HDFFSMDirector, which supports
      *  multirate actors and only allows state transitions on each iteration.
@@ -962,6 +1132,53 @@ PeriodicDirector {
         return wasTransferred;
     }
 
+    /** Stop the threads of a pipelined execution and call
+     *  terminate() of the superclass.
+     */
+    @Override
+    public void terminate() {
+        _pipelineStopped = true;
+        PipelineStage[] stages = _pipelineStages;
+        if (stages != null) {
+            for (PipelineStage stage : stages) {
+                LockSupport.unpark(stage);
+            }
+        }
+        super.terminate();
+    }
+
+    /** Drain the pipeline of a pipelined execution, so that the stages
+     *  complete the iterations that have been fired, stop its threads
+     *  and call wrapup() of the superclass.
+     *  @exception IllegalActionException If an actor throws it in the
+     *   pipelined execution, or if the superclass throws it.
+     */
+    @Override
+    public void wrapup() throws IllegalActionException {
+        _drainPipeline();
+        _stopPipeline();
+        super.wrapup();
+        _throwPipelineException();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                   package friendly methods                ////
+
+    /** Return true if the pipelined execution has been stopped, or if
+     *  the calling thread executes a stage of the pipeline and has
+     *  passed the last iteration.  This is called by an
+     *  SDFPipelineReceiver that is waiting for tokens or for room.
+     *  @return True if a waiting thread should stop waiting.
+     */
+    boolean _isPipelineStopped() {
+        if (_pipelineStopped) {
+            return true;
+        }
+        Thread thread = Thread.currentThread();
+        return thread instanceof PipelineStage
+                && ((PipelineStage) thread)._iteration > _lastPipelineIteration;
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////                         protected variables               ////
 
@@ -974,6 +1191,292 @@ PeriodicDirector {
     ///////////////////////////////////////////////////////////////////
     ////                         private methods                   ////
 
+    /** Wait until the stages of the pipeline have completed the
+     *  current round.  The read permission on the workspace is
+     *  released while waiting, so that the threads of the stages are
+     *  not blocked by a thread that is waiting for write access.
+     */
+    private void _awaitPipelineRound() {
+        PipelineStage[] stages = _pipelineStages;
+        long round = _pipelineRound;
+        int depth = _workspace.releaseReadPermission();
+        _pipelineWaiter = Thread.currentThread();
+        try {
+            for (PipelineStage stage : stages) {
+                int spins = 0;
+                while (stage._round < round && stage.isAlive()
+                        && !_pipelineStopped) {
+                    if (spins < _SPINS) {
+                        spins++;
+                        Thread.onSpinWait();
+                        continue;
+                    }
+                    LockSupport.parkNanos(this, _PARK_NANOSECONDS);
+                }
+            }
+        } finally {
+            _pipelineWaiter = null;
+            if (depth > 0) {
+                _workspace.reacquireReadPermission(depth);
+            }
+        }
+    }
+
+    /** Return true if the model can be executed by a pipeline, which
+     *  requires that this director be at the top level, that its
+     *  container have no input or output ports, that the
+     *  <i>period</i> be zero, that the rates do not change, that there
+     *  be no aspects, that nobody is listening to this director,
+     *  that there be more than one iteration, and that the receivers
+     *  of the actors be instances of SDFPipelineReceiver.
+     */
+    private boolean _canPipeline() throws IllegalActionException {
+        if (_debugging || _aspectsPresent || isEmbedded()
+                || periodValue() != 0.0 || getIterations() == 1
+                || ((BooleanToken) allowRateChanges.getToken())
+                .booleanValue()) {
+            return false;
+        }
+        CompositeActor container = (CompositeActor) getContainer();
+        if (!container.inputPortList().isEmpty()
+                || !container.outputPortList().isEmpty()) {
+            return false;
+        }
+        Iterator firings = getScheduler().getSchedule().firingIterator();
+        while (firings.hasNext()) {
+            Actor actor = ((Firing) firings.next()).getActor();
+            for (Object port : actor.inputPortList()) {
+                Receiver[][] receivers = ((IOPort) port).getReceivers();
+                for (Receiver[] channel : receivers) {
+                    if (channel == null) {
+                        continue;
+                    }
+                    for (Receiver receiver : channel) {
+                        if (!(receiver instanceof SDFPipelineReceiver)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Let the stages of the pipeline complete the iterations that the
+     *  first stage has executed, up to the last iteration, and wait
+     *  until they have.  An exception thrown by a stage is recorded,
+     *  see _throwPipelineException().
+     */
+    private void _drainPipeline() {
+        PipelineStage[] stages = _pipelineStages;
+        if (stages == null) {
+            return;
+        }
+        _awaitPipelineRound();
+        long last = Math.min(_pipelineIteration, _lastPipelineIteration);
+        for (PipelineStage stage : stages) {
+            if (stage._completed < last && !_pipelineStopped) {
+                _pipelineDraining = true;
+                try {
+                    _startPipelineRound();
+                    _awaitPipelineRound();
+                } finally {
+                    _pipelineDraining = false;
+                }
+                return;
+            }
+        }
+    }
+
+    /** Execute an iteration of the model sequentially while measuring
+     *  the execution time of each actor, and start a pipeline for the
+     *  subsequent iterations.  The actors are partitioned, in the order
+     *  of their first firing, into stages of about equal cost, and a
+     *  thread is started for each stage, which waits until fire()
+     *  starts the next iteration.  The receivers between stages become
+     *  ring buffers that can hold the tokens of one more iteration
+     *  than there are stages, so a stage can be that many iterations
+     *  ahead of the next one.
+     */
+    private void _fireAndStartPipeline() throws IllegalActionException {
+        Schedule schedule = getScheduler().getSchedule();
+        List<Firing> firings = new ArrayList<Firing>();
+        List<Actor> actors = new ArrayList<Actor>();
+        Map<Actor, long[]> costs = new HashMap<Actor, long[]>();
+        Iterator schedulefirings = schedule.firingIterator();
+        while (schedulefirings.hasNext() && !_stopRequested) {
+            Firing firing = (Firing) schedulefirings.next();
+            Actor actor = firing.getActor();
+            firings.add(firing);
+            long[] cost = costs.get(actor);
+            if (cost == null) {
+                cost = new long[1];
+                costs.put(actor, cost);
+                actors.add(actor);
+            }
+            long start = System.nanoTime();
+            if (!_iterateActor(actor, firing.getIterationCount())) {
+                _postfireReturns = false;
+            }
+            cost[0] += System.nanoTime() - start;
+        }
+        int numberOfStages = Math.min(_numberOfThreads, actors.size());
+        if (_stopRequested || _finishRequested || !_postfireReturns
+                || numberOfStages < 2) {
+            return;
+        }
+
+        // Partition the actors into contiguous stages.
+        long totalCost = 0L;
+        for (Actor actor : actors) {
+            totalCost += Math.max(costs.get(actor)[0], 1L);
+        }
+        Map<Actor, Integer> stageOf = new HashMap<Actor, Integer>();
+        int stage = 0;
+        long cumulativeCost = 0L;
+        for (int i = 0; i < actors.size(); i++) {
+            Actor actor = actors.get(i);
+            stageOf.put(actor, stage);
+            cumulativeCost += Math.max(costs.get(actor)[0], 1L);
+            // Start the next stage if this one has its share of the
+            // cost, or if each remaining actor needs its own stage.
+            if (stage < numberOfStages - 1
+                    && (cumulativeCost >= totalCost / numberOfStages
+                            * (stage + 1) || actors.size() - i - 1 == numberOfStages
+                            - 1 - stage)) {
+                stage++;
+            }
+        }
+
+        // Find the receivers between stages and the stages that
+        // write to them.
+        Map<SDFPipelineReceiver, Integer> producerStages = new HashMap<SDFPipelineReceiver, Integer>();
+        for (Actor actor : actors) {
+            int from = stageOf.get(actor);
+            for (Object port : actor.outputPortList()) {
+                Receiver[][] remoteReceivers = ((IOPort) port)
+                        .getRemoteReceivers();
+                for (Receiver[] channel : remoteReceivers) {
+                    if (channel == null) {
+                        continue;
+                    }
+                    for (Receiver receiver : channel) {
+                        Integer to = stageOf.get(receiver.getContainer()
+                                .getContainer());
+                        if (to != null && to != from) {
+                            producerStages.put(
+                                    (SDFPipelineReceiver) receiver, from);
+                        }
+                    }
+                }
+            }
+        }
+
+        // Collect the firings of each stage.  Before a firing, the
+        // stage waits until each stage that writes to the actor has
+        // completed the firings that precede it in the schedule.
+        Map<Actor, Integer> firingsPerIteration = new HashMap<Actor, Integer>();
+        for (Firing firing : firings) {
+            Integer count = firingsPerIteration.get(firing.getActor());
+            firingsPerIteration.put(firing.getActor(),
+                    (count == null ? 0 : count) + firing.getIterationCount());
+        }
+        Map<SDFPipelineReceiver, Integer> capacities = new HashMap<SDFPipelineReceiver, Integer>();
+        List<List<Object[]>> stageFirings = new ArrayList<List<Object[]>>();
+        for (int i = 0; i < numberOfStages; i++) {
+            stageFirings.add(new ArrayList<Object[]>());
+        }
+        for (Firing firing : firings) {
+            Actor actor = firing.getActor();
+            List<Integer> producers = new ArrayList<Integer>();
+            for (Object port : actor.inputPortList()) {
+                int rate = DFUtilities.getTokenConsumptionRate((IOPort) port);
+                for (Receiver[] channel : ((IOPort) port).getReceivers()) {
+                    if (channel == null) {
+                        continue;
+                    }
+                    for (Receiver receiver : channel) {
+                        Integer producer = producerStages.get(receiver);
+                        if (producer == null) {
+                            continue;
+                        }
+                        SDFPipelineReceiver pipelineReceiver = (SDFPipelineReceiver) receiver;
+                        capacities.put(pipelineReceiver, Math.max(1,
+                                pipelineReceiver.size() + rate
+                                * firingsPerIteration.get(actor)
+                                * (numberOfStages + 1)));
+                        if (!producers.contains(producer)) {
+                            producers.add(producer);
+                        }
+                    }
+                }
+            }
+            int[] producerArray = new int[producers.size()];
+            int[] offsets = new int[producers.size()];
+            for (int i = 0; i < producerArray.length; i++) {
+                producerArray[i] = producers.get(i);
+                offsets[i] = stageFirings.get(producerArray[i]).size();
+            }
+            stageFirings.get(stageOf.get(actor)).add(
+                    new Object[] { actor, firing.getIterationCount(),
+                            producerArray, offsets });
+        }
+
+        // Find the number of iterations by which each stage lags
+        // behind the first one.  A stage is given one iteration per
+        // stage before it, unless it writes to an earlier stage, which
+        // may then have to wait for it within the same iteration.
+        int[] lags = new int[numberOfStages];
+        for (int i = 0; i < numberOfStages; i++) {
+            lags[i] = i;
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < numberOfStages; i++) {
+                for (Object[] firing : stageFirings.get(i)) {
+                    int[] producerArray = (int[]) firing[2];
+                    int[] offsets = (int[]) firing[3];
+                    for (int j = 0; j < producerArray.length; j++) {
+                        // If no firing of the producer precedes this one,
+                        // then only its previous iteration is needed.
+                        int lag = lags[i] + (offsets[j] == 0 ? 1 : 0);
+                        if (lags[producerArray[j]] > lag) {
+                            lags[producerArray[j]] = lag;
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        _lastPipelineIteration = Long.MAX_VALUE;
+        _stopPipelineIteration = Long.MAX_VALUE;
+        _pipelineException = null;
+        _pipelineFailureIteration = Long.MAX_VALUE;
+        _pipelineDraining = false;
+        _pipelineFiring = false;
+        _pipelineIteration = 0L;
+        _pipelineRound = 0L;
+        _pipelineStopped = false;
+        _pipelineThread = Thread.currentThread();
+        PipelineStage[] stages = new PipelineStage[numberOfStages];
+        for (int i = 0; i < numberOfStages; i++) {
+            stages[i] = new PipelineStage(i, lags[i], numberOfStages,
+                    stageFirings.get(i));
+        }
+        _pipelineStages = stages;
+        _pipelineReceivers = new ArrayList<SDFPipelineReceiver>(
+                capacities.keySet());
+        for (Map.Entry<SDFPipelineReceiver, Integer> entry : capacities
+                .entrySet()) {
+            entry.getKey()._startPipeline(this, entry.getValue());
+        }
+        for (PipelineStage pipelineStage : stages) {
+            pipelineStage.start();
+        }
+    }
+
     /** Initialize the object.   In this case, we give the SDFDirector a
      *  default scheduler of the class SDFScheduler, an iterations
      *  parameter and a vectorizationFactor parameter.
@@ -1000,6 +1503,11 @@ PeriodicDirector {
         iterations.addChoice(UNBOUNDED_NAME);
         iterations.setExpression(AUTO_NAME);
 
+        numberOfThreads = new Parameter(this, "numberOfThreads");
+        numberOfThreads.setTypeEquals(BaseType.INT);
+        numberOfThreads.setExpression("1");
+        numberOfThreads.setVisibility(Settable.EXPERT);
+
         vectorizationFactor = new Parameter(this, "vectorizationFactor");
         vectorizationFactor.setTypeEquals(BaseType.INT);
         vectorizationFactor.setExpression("1");
@@ -1035,6 +1543,126 @@ PeriodicDirector {
         _periodicDirectorHelper = new PeriodicDirectorHelper(this);
     }
 
+    /** Iterate the specified actor and return false if it requests
+     *  no more firings.
+     */
+    private boolean _iterateActor(Actor actor, int count)
+            throws IllegalActionException {
+        int returnValue = actor.iterate(count);
+        if (returnValue == STOP_ITERATING) {
+            return false;
+        } else if (returnValue == NOT_READY) {
+            throw new IllegalActionException(this, actor, "Actor "
+                    + "is not ready to fire.  Perhaps " + actor.getName()
+                    + ".prefire() returned false?");
+        }
+        return true;
+    }
+
+    /** Record an exception thrown by a stage of the pipeline in the
+     *  specified iteration, and make the previous iteration the last
+     *  one, so that the other stages can complete the iterations in
+     *  which an actor may request to stop.  Exceptions that are thrown
+     *  after the pipeline has been stopped, or after the last iteration,
+     *  or in a later iteration than a recorded exception, are ignored.
+     */
+    private synchronized void _pipelineFailed(Throwable throwable,
+            long iteration) {
+        if (_pipelineStopped || iteration > _lastPipelineIteration
+                || iteration >= _pipelineFailureIteration) {
+            return;
+        }
+        _pipelineException = throwable;
+        _pipelineFailureIteration = iteration;
+        _lastPipelineIteration = iteration - 1;
+    }
+
+    /** Start a round, in which each stage of the pipeline executes
+     *  the iterations up to the current one minus its lag, or, if the
+     *  pipeline is being drained, up to the current one.
+     */
+    private void _startPipelineRound() {
+        _pipelineRound++;
+        for (PipelineStage stage : _pipelineStages) {
+            LockSupport.unpark(stage);
+        }
+    }
+
+    /** Stop the threads of the pipeline, wait until they terminate,
+     *  and restore the queues of the receivers between stages.
+     */
+    private void _stopPipeline() throws IllegalActionException {
+        PipelineStage[] stages = _pipelineStages;
+        if (stages == null) {
+            return;
+        }
+        _pipelineStopped = true;
+        int depth = _workspace.releaseReadPermission();
+        try {
+            for (PipelineStage stage : stages) {
+                LockSupport.unpark(stage);
+                while (stage.isAlive()) {
+                    try {
+                        stage.join();
+                    } catch (InterruptedException ex) {
+                        // Wait again, since the stage is about to
+                        // terminate.
+                    }
+                }
+            }
+        } finally {
+            _pipelineStages = null;
+            _pipelineThread = null;
+            if (depth > 0) {
+                _workspace.reacquireReadPermission(depth);
+            }
+            List<SDFPipelineReceiver> receivers = _pipelineReceivers;
+            _pipelineReceivers = null;
+            for (SDFPipelineReceiver receiver : receivers) {
+                receiver._stopPipeline();
+            }
+        }
+    }
+
+    /** Make the specified iteration the last iteration of the
+     *  pipeline, unless the last iteration is already earlier.
+     */
+    private synchronized void _stopPipelineAfter(long iteration) {
+        if (iteration < _lastPipelineIteration) {
+            _lastPipelineIteration = iteration;
+        }
+        if (iteration < _stopPipelineIteration) {
+            _stopPipelineIteration = iteration;
+        }
+    }
+
+    /** Throw the exception recorded by a stage of the pipeline, if
+     *  any, and clear it.  An exception is ignored if it was thrown in
+     *  an iteration after the one in which an actor requested to stop,
+     *  because the sequential execution would not have executed that
+     *  iteration.
+     */
+    private void _throwPipelineException() throws IllegalActionException {
+        Throwable throwable;
+        synchronized (this) {
+            throwable = _pipelineException;
+            _pipelineException = null;
+            if (_pipelineFailureIteration > _stopPipelineIteration) {
+                throwable = null;
+            }
+        }
+        if (throwable instanceof IllegalActionException) {
+            throw (IllegalActionException) throwable;
+        } else if (throwable instanceof RuntimeException) {
+            throw (RuntimeException) throwable;
+        } else if (throwable instanceof Error) {
+            throw (Error) throwable;
+        } else if (throwable != null) {
+            throw new IllegalActionException(this, throwable,
+                    "Pipelined execution failed.");
+        }
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////                package friendly variables                 ////
 
@@ -1044,7 +1672,255 @@ PeriodicDirector {
     ///////////////////////////////////////////////////////////////////
     ////                         private variables                 ////
 
+    /** The maximum time that a thread of the pipeline parks before it
+     *  checks again whether it can proceed.
+     */
+    private static final long _PARK_NANOSECONDS = 1000000L;
+
+    /** The number of times that a thread of the pipeline spins before
+     *  it parks.
+     */
+    private static final int _SPINS = 100;
+
+    /** The last iteration of the pipelined execution, which is
+     *  decreased if an actor requests to stop or throws an exception.
+     */
+    private volatile long _lastPipelineIteration = Long.MAX_VALUE;
+
+    /** Cache of the value of numberOfThreads. */
+    private int _numberOfThreads = 1;
+
+    /** True if the stages of the pipeline execute the iterations up
+     *  to the current one in the current round, regardless of their
+     *  lags.
+     */
+    private volatile boolean _pipelineDraining;
+
+    /** The exception thrown by a stage of the pipeline in the
+     *  earliest iteration.
+     */
+    private Throwable _pipelineException;
+
+    /** The iteration in which _pipelineException was thrown. */
+    private long _pipelineFailureIteration = Long.MAX_VALUE;
+
+    /** True between fire() and postfire() of a pipelined iteration. */
+    private volatile boolean _pipelineFiring;
+
+    /** The current iteration of the pipeline, which is the number of
+     *  iterations that have been fired, not counting the first one.
+     */
+    private volatile long _pipelineIteration;
+
+    /** The receivers between the stages of the pipeline. */
+    private List<SDFPipelineReceiver> _pipelineReceivers;
+
+    /** The number of rounds that have been started, see
+     *  _startPipelineRound().
+     */
+    private volatile long _pipelineRound;
+
+    /** The stages of the pipelined execution while it executes. */
+    private volatile PipelineStage[] _pipelineStages;
+
+    /** True if the pipelined execution has been stopped. */
+    private volatile boolean _pipelineStopped;
+
+    /** The thread that started the pipeline. */
+    private volatile Thread _pipelineThread;
+
+    /** The thread that waits for the stages to complete a round. */
+    private volatile Thread _pipelineWaiter;
+
+    /** The last iteration of the pipelined execution, as determined
+     *  by the <i>iterations</i> parameter and the actors that request
+     *  to stop, but not by exceptions.
+     */
+    private long _stopPipelineIteration = Long.MAX_VALUE;
+
     /** Cache of the most recent value of vectorizationFactor. */
     private int _vectorizationFactor = 1;
 
+    ///////////////////////////////////////////////////////////////////
+    ////                         inner classes                     ////
+
+    /** A thread that executes the firings of a stage of the pipeline
+     *  in each iteration.  The thread waits for the director to start
+     *  a round, see _startPipelineRound(), then executes the iterations
+     *  up to the current one minus the lag of the stage, and notifies
+     *  the director.  Before each firing, the thread waits until the
+     *  stages that write to the actor have completed the firings that
+     *  precede it in the schedule, so the actor sees the same tokens
+     *  as in the sequential execution.
+     */
+    private class PipelineStage extends PtolemyThread {
+        /** Create a stage with the specified firings, each of which
+         *  is an array containing the actor, the iteration count, the
+         *  indexes of the stages to wait for and, for each of those
+         *  stages, the number of its firings that precede the firing
+         *  in an iteration.
+         */
+        public PipelineStage(int index, int lag, int numberOfStages,
+                List<Object[]> firings) {
+            super(getFullName() + " stage " + index);
+            int size = firings.size();
+            _index = index;
+            _lag = lag;
+            _waiters = new AtomicReferenceArray<Thread>(numberOfStages);
+            _actors = new Actor[size];
+            _counts = new int[size];
+            _producers = new int[size][];
+            _offsets = new int[size][];
+            for (int i = 0; i < size; i++) {
+                Object[] firing = firings.get(i);
+                _actors[i] = (Actor) firing[0];
+                _counts[i] = (Integer) firing[1];
+                _producers[i] = (int[]) firing[2];
+                _offsets[i] = (int[]) firing[3];
+            }
+            // The first iteration has already been executed.
+            _progress = size;
+        }
+
+        /** Execute the iterations of this stage in each round until
+         *  the pipeline is stopped.
+         */
+        @Override
+        public void run() {
+            PipelineStage[] stages = _pipelineStages;
+            long round = 0L;
+            while (true) {
+                int spins = 0;
+                while (_pipelineRound == round) {
+                    if (_pipelineStopped) {
+                        return;
+                    }
+                    if (spins < _SPINS) {
+                        spins++;
+                        Thread.onSpinWait();
+                        continue;
+                    }
+                    LockSupport.parkNanos(this, _PARK_NANOSECONDS);
+                }
+                round = _pipelineRound;
+                long last = _pipelineIteration;
+                if (!_pipelineDraining) {
+                    last -= _lag;
+                }
+                try {
+                    while (_completed < last
+                            && _completed < _lastPipelineIteration
+                            && !_pipelineStopped) {
+                        _iteration = _completed + 1;
+                        if (!_fireIteration(stages)) {
+                            break;
+                        }
+                        _completed = _iteration;
+                    }
+                } catch (Throwable throwable) {
+                    _pipelineFailed(throwable, _iteration);
+                }
+                _round = round;
+                Thread waiter = _pipelineWaiter;
+                if (waiter != null) {
+                    LockSupport.unpark(waiter);
+                }
+            }
+        }
+
+        /** Execute the firings of this stage in the current iteration,
+         *  and return false if the pipeline is stopped while waiting
+         *  for another stage.
+         */
+        private boolean _fireIteration(PipelineStage[] stages)
+                throws IllegalActionException {
+            for (int i = 0; i < _actors.length; i++) {
+                int[] producers = _producers[i];
+                for (int j = 0; j < producers.length; j++) {
+                    PipelineStage producer = stages[producers[j]];
+                    if (!_waitFor(producer, _iteration
+                            * producer._actors.length + _offsets[i][j])) {
+                        return false;
+                    }
+                }
+                if (!_iterateActor(_actors[i], _counts[i])) {
+                    _stopPipelineAfter(_iteration);
+                }
+                _progress++;
+                for (int j = 0; j < _waiters.length(); j++) {
+                    Thread waiter = _waiters.get(j);
+                    if (waiter != null) {
+                        LockSupport.unpark(waiter);
+                    }
+                }
+            }
+            return true;
+        }
+
+        /** Wait until the specified stage has completed the specified
+         *  number of firings, and return false if the pipeline is
+         *  stopped while waiting.
+         */
+        private boolean _waitFor(PipelineStage producer, long progress) {
+            int spins = 0;
+            while (producer._progress < progress) {
+                if (spins < _SPINS) {
+                    spins++;
+                    Thread.onSpinWait();
+                    continue;
+                }
+                if (_isPipelineStopped()) {
+                    return false;
+                }
+                AtomicReferenceArray<Thread> waiters = producer._waiters;
+                waiters.set(_index, this);
+                if (producer._progress < progress) {
+                    LockSupport.parkNanos(this, _PARK_NANOSECONDS);
+                }
+                waiters.set(_index, null);
+            }
+            return true;
+        }
+
+        /** The actors of the firings. */
+        private Actor[] _actors;
+
+        /** The number of completed iterations, including the first one. */
+        private volatile long _completed;
+
+        /** The iteration counts of the firings. */
+        private int[] _counts;
+
+        /** The index of this stage. */
+        private int _index;
+
+        /** The iteration that is being executed. */
+        private volatile long _iteration;
+
+        /** The number of iterations by which this stage lags behind
+         *  the first one.
+         */
+        private int _lag;
+
+        /** The number of firings of the stages to wait for that
+         *  precede each firing in an iteration.
+         */
+        private int[][] _offsets;
+
+        /** The number of completed firings, including those of the
+         *  first iteration.
+         */
+        private volatile long _progress;
+
+        /** The indexes of the stages to wait for before each firing. */
+        private int[][] _producers;
+
+        /** The last round that this stage has completed. */
+        private volatile long _round;
+
+        /** The threads that wait for the progress of this stage,
+         *  indexed by their stage.
+         */
+        private AtomicReferenceArray<Thread> _waiters;
+    }
 }
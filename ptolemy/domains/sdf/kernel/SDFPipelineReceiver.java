@@ -0,0 +1,435 @@
+/* A receiver that can become a bounded lock-free channel between threads.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+ */
+package ptolemy.domains.sdf.kernel;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import ptolemy.actor.IOPort;
+import ptolemy.actor.NoRoomException;
+import ptolemy.actor.NoTokenException;
+import ptolemy.data.Token;
+import ptolemy.kernel.util.IllegalActionException;
+
+///////////////////////////////////////////////////////////////////
+//// SDFPipelineReceiver
+
+/**
+ A receiver for the SDF domain that can be turned into a bounded
+ channel between two threads.  This receiver is created by an
+ SDFDirector whose <i>numberOfThreads</i> parameter is greater than one.
+ Until the director starts a pipelined execution, it behaves exactly
+ like an SDFReceiver.  If the producer and the consumer of the tokens
+ of this receiver are executed by different threads, then the director
+ replaces the queue of the receiver by a ring buffer whose capacity is
+ a power of two.
+ <p>
+ The ring buffer has a single producer and a single consumer, so it
+ needs no locks: the producer publishes a token by writing the volatile
+ index of the tail after storing the token, and the consumer frees a
+ slot by writing the volatile index of the head.  A put() into a full
+ buffer waits, first by spinning briefly, and then by parking the
+ thread until the consumer unparks it.  A waiting thread also wakes up
+ periodically, and if the director has stopped the pipelined
+ execution, then put() throws a NoRoomException.  The director fires
+ the consumer only after the producer has completed the firings that
+ precede it in the schedule, so get() does not wait, and throws a
+ NoTokenException if there is no token, like the base class.
+ <p>
+ The history of the receiver is not supported while it is a ring buffer.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ @see SDFDirector
+ */
+public class SDFPipelineReceiver extends SDFReceiver {
+    /** Construct an empty receiver with no container.
+     */
+    public SDFPipelineReceiver() {
+        super();
+    }
+
+    /** Construct an empty receiver with the specified container.
+     *  @param container The container of the receiver.
+     *  @exception IllegalActionException If the container does
+     *   not accept this receiver.
+     */
+    public SDFPipelineReceiver(IOPort container)
+            throws IllegalActionException {
+        super(container);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Clear this receiver of any contained tokens.
+     */
+    @Override
+    public void clear() {
+        Token[] ring = _ring;
+        if (ring == null) {
+            super.clear();
+            return;
+        }
+        while (_head != _tail) {
+            ring[(int) _head & _mask] = null;
+            _head = _head + 1;
+        }
+        _waitingTokens = 0;
+    }
+
+    /** Return a list with the tokens currently in the receiver, or
+     *  an empty list if there are no such tokens.
+     *  @return A list of instances of Token.
+     */
+    @Override
+    public List<Token> elementList() {
+        Token[] ring = _ring;
+        if (ring == null) {
+            return super.elementList();
+        }
+        List<Token> result = new LinkedList<Token>();
+        for (long i = _head; i < _tail; i++) {
+            result.add(ring[(int) i & _mask]);
+        }
+        return result;
+    }
+
+    /** Remove the oldest token from the receiver and return it.
+     *  @return The oldest token in the receiver.
+     *  @exception NoTokenException If there is no token.
+     */
+    @Override
+    public Token get() {
+        Token[] ring = _ring;
+        if (ring == null) {
+            return super.get();
+        }
+        long head = _head;
+        if (_tail == head) {
+            throw new NoTokenException(getContainer(),
+                    "Attempt to get token from an empty QueueReceiver.");
+        }
+        int index = (int) head & _mask;
+        Token token = ring[index];
+        ring[index] = null;
+        _head = head + 1;
+        Thread producer = _waitingProducer;
+        if (producer != null) {
+            LockSupport.unpark(producer);
+        }
+        return token;
+    }
+
+    /** Return a token in the receiver.  If the receiver is not a
+     *  ring buffer, then this method is the same as in the base class.
+     *  Otherwise, the offset must be between zero and the number
+     *  of tokens in the receiver, and the token is not removed.
+     *  @param offset The offset from the oldest token in the receiver.
+     *  @return The token at the specified offset.
+     *  @exception NoTokenException If the offset is out of range.
+     */
+    @Override
+    public Token get(int offset) {
+        Token[] ring = _ring;
+        if (ring == null) {
+            return super.get(offset);
+        }
+        long head = _head;
+        if (offset < 0 || head + offset >= _tail) {
+            throw new NoTokenException(getContainer(), "Offset " + offset
+                    + " out of range with " + (_tail - head)
+                    + " tokens in the receiver.");
+        }
+        return ring[(int) (head + offset) & _mask];
+    }
+
+    /** Get an array of tokens from this receiver.
+     *  @param count The number of tokens to get.
+     *  @return An array containing <i>count</i> tokens from the
+     *   receiver.
+     *  @exception NoTokenException If there are not <i>count</i> tokens.
+     */
+    @Override
+    public Token[] getArray(int count) {
+        Token[] ring = _ring;
+        if (ring == null) {
+            return super.getArray(count);
+        }
+        if (_tokenArray == null || count != _tokenArray.length) {
+            _tokenArray = new Token[count];
+        }
+        long head = _head;
+        if (_tail - head < count) {
+            throw new NoTokenException(getContainer(), "Attempt to get "
+                    + count + " tokens from a receiver with "
+                    + (_tail - head) + " tokens.");
+        }
+        for (int i = 0; i < count; i++) {
+            int index = (int) (head + i) & _mask;
+            _tokenArray[i] = ring[index];
+            ring[index] = null;
+        }
+        _head = head + count;
+        Thread producer = _waitingProducer;
+        if (producer != null) {
+            LockSupport.unpark(producer);
+        }
+        return _tokenArray;
+    }
+
+    /** Return the capacity, or INFINITE_CAPACITY if it is unbounded.
+     *  The capacity of a ring buffer is the length of the buffer.
+     *  @return The capacity of the receiver.
+     *  @see #setCapacity(int)
+     */
+    @Override
+    public int getCapacity() {
+        Token[] ring = _ring;
+        if (ring == null) {
+            return super.getCapacity();
+        }
+        return ring.length;
+    }
+
+    /** Return true if put() will succeed in accepting a token
+     *  without waiting.
+     *  @return True if there is room for a token.
+     */
+    @Override
+    public boolean hasRoom() {
+        return hasRoom(1);
+    }
+
+    /** Return true if put() will succeed in accepting the specified
+     *  number of tokens without waiting.
+     *  @param tokens The number of tokens.
+     *  @return True if there is room for the tokens.
+     *  @exception IllegalArgumentException If the argument is less
+     *   than one.
+     */
+    @Override
+    public boolean hasRoom(int tokens) throws IllegalArgumentException {
+        Token[] ring = _ring;
+        if (ring == null) {
+            return super.hasRoom(tokens);
+        }
+        if (tokens < 1) {
+            throw new IllegalArgumentException("The argument "
+                    + "must not be negative. It was: " + tokens);
+        }
+        return _tail - _head + tokens <= ring.length;
+    }
+
+    /** Return true if get() will succeed in returning a token
+     *  without waiting.
+     *  @return True if there is a token.
+     */
+    @Override
+    public boolean hasToken() {
+        if (_ring == null) {
+            return super.hasToken();
+        }
+        return _tail != _head;
+    }
+
+    /** Return true if there are at least the specified number of
+     *  tokens in the receiver.
+     *  @param tokens The number of tokens.
+     *  @return True if there are the specified number of tokens.
+     *  @exception IllegalArgumentException If the argument is negative.
+     */
+    @Override
+    public boolean hasToken(int tokens) throws IllegalArgumentException {
+        if (_ring == null) {
+            return super.hasToken(tokens);
+        }
+        if (tokens < 0) {
+            throw new IllegalArgumentException("The argument "
+                    + "must not be negative. It was: " + tokens);
+        }
+        return _tail - _head >= tokens;
+    }
+
+    /** Put a token into the receiver.  If the receiver is a ring
+     *  buffer, then wait until there is room for the token.
+     *  @param token The token to be put to the receiver, or null to
+     *   not put any token.
+     *  @exception NoRoomException If the receiver is not a ring buffer
+     *   and it is full, or if the pipelined execution is stopped while
+     *   waiting.
+     */
+    @Override
+    public void put(Token token) {
+        Token[] ring = _ring;
+        if (ring == null) {
+            super.put(token);
+            return;
+        }
+        if (token == null) {
+            return;
+        }
+        long tail = _tail;
+        if (tail - _head >= ring.length) {
+            _waitForRoom();
+        }
+        ring[(int) tail & _mask] = token;
+        _tail = tail + 1;
+    }
+
+    /** Return the number of tokens in the receiver.
+     *  @return The number of tokens in the receiver.
+     */
+    @Override
+    public int size() {
+        if (_ring == null) {
+            return super.size();
+        }
+        return (int) (_tail - _head);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                   package friendly methods                ////
+
+    /** Replace the queue of this receiver by a ring buffer with at
+     *  least the specified capacity, and move the tokens in the queue
+     *  to the ring buffer.  This method must be called before the
+     *  threads of the pipelined execution are started.
+     *  @param director The director, which is asked whether the
+     *   pipelined execution is stopped.
+     *  @param capacity The minimum capacity.
+     */
+    void _startPipeline(SDFDirector director, int capacity) {
+        int length = 1;
+        while (length < capacity || length < super.size()) {
+            length <<= 1;
+        }
+        _capacity = getCapacity();
+        Token[] ring = new Token[length];
+        int size = 0;
+        while (super.hasToken()) {
+            ring[size++] = super.get();
+        }
+        _director = director;
+        _mask = length - 1;
+        _head = 0L;
+        _tail = size;
+        _ring = ring;
+    }
+
+    /** Move the tokens in the ring buffer back to the queue of this
+     *  receiver, remove the ring buffer and restore the capacity that
+     *  the queue had when the pipeline was started.  If a pipelined
+     *  execution that was stopped early leaves more tokens in the
+     *  receiver than that capacity, then the capacity is left
+     *  unbounded.  This method must be called after the threads of
+     *  the pipelined execution have terminated.
+     *  @exception IllegalActionException If the capacity of the
+     *   queue cannot be changed.
+     */
+    void _stopPipeline() throws IllegalActionException {
+        Token[] ring = _ring;
+        if (ring == null) {
+            return;
+        }
+        _ring = null;
+        _director = null;
+        setCapacity(INFINITE_CAPACITY);
+        for (long i = _head; i < _tail; i++) {
+            super.put(ring[(int) i & _mask]);
+        }
+        if (_capacity == INFINITE_CAPACITY || super.size() <= _capacity) {
+            setCapacity(_capacity);
+        }
+        _waitingProducer = null;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Wait until there is room for a token in the ring buffer.
+     */
+    private void _waitForRoom() {
+        int spins = 0;
+        int length = _ring.length;
+        while (_tail - _head >= length) {
+            if (spins < _SPINS) {
+                spins++;
+                Thread.onSpinWait();
+                continue;
+            }
+            if (_director._isPipelineStopped()) {
+                throw new NoRoomException(getContainer(),
+                        "Pipelined execution was stopped.");
+            }
+            _waitingProducer = Thread.currentThread();
+            if (_tail - _head >= length) {
+                LockSupport.parkNanos(this, _PARK_NANOSECONDS);
+            }
+            _waitingProducer = null;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The number of times that a thread spins before it parks. */
+    private static final int _SPINS = 100;
+
+    /** The maximum time that a thread parks before it checks
+     *  whether the pipelined execution is stopped.
+     */
+    private static final long _PARK_NANOSECONDS = 1000000L;
+
+    /** The capacity of the queue when the pipeline was started. */
+    private int _capacity = INFINITE_CAPACITY;
+
+    /** The director that executes the pipeline. */
+    private SDFDirector _director;
+
+    /** The index of the next token to get, written only by the consumer. */
+    private volatile long _head;
+
+    /** The length of the ring buffer minus one. */
+    private int _mask;
+
+    /** The ring buffer, or null if the queue of the base class is used. */
+    private volatile Token[] _ring;
+
+    /** The index of the next token to put, written only by the producer. */
+    private volatile long _tail;
+
+    /** The token array returned by getArray(). */
+    private Token[] _tokenArray;
+
+    /** The producer thread if it is parked, or null. */
+    private volatile Thread _waitingProducer;
+}
@@ -291,8 +291,8 @@ public class SDFScheduler extends BaseSDFScheduler implements ValueListener {
         oldList.addAll(rateVariables);
 
         LinkedList newList = new LinkedList();
-        for (Iterator entities = model.deepEntityList().iterator(); entities
-                .hasNext();) {
+        for (Iterator entities = model.unmodifiableDeepEntityList()
+                .iterator(); entities.hasNext();) {
             Entity entity = (Entity) entities.next();
 
             for (Iterator ports = entity.portList().iterator(); ports.hasNext();) {
@@ -0,0 +1,250 @@
+# Tests for the pipelined execution of the SDFDirector
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2016 The Regents of the University of California.
+# All rights reserved.
+#
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+#
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+#
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+#
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Ptolemy II bed, see $PTII/doc/coding/testing.html for more information.
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then {
+    source testDefs.tcl
+} {}
+
+if {[info procs enumToObjects] == "" } then {
+     source enums.tcl
+}
+
+if {[string compare sdfModel [info procs sdfModel]] != 0} \
+        then {
+    source [file join $PTII util testsuite models.tcl]
+} {}
+
+# Uncomment this to get a full report, or set in your Tcl shell window.
+# set VERBOSE 1
+
+# Build a multirate model with a feedback loop, execute it with the
+# specified number of threads, and return the last value of the
+# iteration count and the records of the two recorders.
+# If limit is greater than zero, then the ramp stops after that
+# many firings.
+proc pipelineModel {threads iterations {limit 0}} {
+    set e0 [sdfModel $iterations]
+    set director [java::cast ptolemy.domains.sdf.kernel.SDFDirector \
+	    [$e0 getDirector]]
+    [java::field $director numberOfThreads] setExpression $threads
+
+    set ramp [java::new ptolemy.actor.lib.Ramp $e0 ramp]
+    [getParameter $ramp firingCountLimit] setExpression $limit
+    set fir [java::new ptolemy.domains.sdf.lib.FIR $e0 fir]
+    [getParameter $fir taps] setExpression {{1, 2, 3}}
+    set down [java::new ptolemy.domains.sdf.lib.DownSample $e0 down]
+    set add [java::new ptolemy.actor.lib.AddSubtract $e0 add]
+    set delay [java::new ptolemy.domains.sdf.lib.SampleDelay $e0 delay]
+    [getParameter $delay initialOutputs] setExpression {{0}}
+    set rec [java::new ptolemy.actor.lib.Recorder $e0 rec]
+    set repeat [java::new ptolemy.domains.sdf.lib.Repeat $e0 repeat]
+    [getParameter $repeat numberOfTimes] setExpression 3
+    set scale [java::new ptolemy.actor.lib.Scale $e0 scale]
+    [getParameter $scale factor] setExpression 2
+    set rec2 [java::new ptolemy.actor.lib.Recorder $e0 rec2]
+
+    set r1 [$e0 connect \
+	    [java::field [java::cast ptolemy.actor.lib.Source $ramp] output] \
+	    [java::field [java::cast ptolemy.domains.sdf.lib.SDFTransformer $fir] input]]
+    [java::field [java::cast ptolemy.domains.sdf.lib.SDFTransformer $repeat] input] link $r1
+    $e0 connect \
+	    [java::field [java::cast ptolemy.domains.sdf.lib.SDFTransformer $fir] output] \
+	    [java::field [java::cast ptolemy.domains.sdf.lib.SDFTransformer $down] input]
+    $e0 connect \
+	    [java::field [java::cast ptolemy.domains.sdf.lib.SDFTransformer $down] output] \
+	    [java::field $add plus]
+    set r2 [$e0 connect \
+	    [java::field $add output] \
+	    [java::field [java::cast ptolemy.domains.sdf.lib.SDFTransformer $delay] input]]
+    [java::field [java::cast ptolemy.actor.lib.Sink $rec] input] link $r2
+    $e0 connect \
+	    [java::field [java::cast ptolemy.domains.sdf.lib.SDFTransformer $delay] output] \
+	    [java::field $add plus]
+    $e0 connect \
+	    [java::field [java::cast ptolemy.domains.sdf.lib.SDFTransformer $repeat] output] \
+	    [java::field [java::cast ptolemy.actor.lib.Transformer $scale] input]
+    $e0 connect \
+	    [java::field [java::cast ptolemy.actor.lib.Transformer $scale] output] \
+	    [java::field [java::cast ptolemy.actor.lib.Sink $rec2] input]
+
+    [$e0 getManager] execute
+    list [enumToTokenValues [$rec getRecord 0]] \
+	    [enumToTokenValues [$rec2 getRecord 0]]
+}
+
+# Build a model in which a ramp drives two scales in a chain, whose
+# output is recorded, and initialize it with the specified number of
+# threads, so that it can be iterated.
+proc changeModel {threads} {
+    set e0 [sdfModel 0]
+    set director [java::cast ptolemy.domains.sdf.kernel.SDFDirector \
+	    [$e0 getDirector]]
+    [java::field $director numberOfThreads] setExpression $threads
+
+    set ramp [java::new ptolemy.actor.lib.Ramp $e0 ramp]
+    set scale [java::new ptolemy.actor.lib.Scale $e0 scale]
+    [getParameter $scale factor] setExpression 2
+    set scale2 [java::new ptolemy.actor.lib.Scale $e0 scale2]
+    set rec [java::new ptolemy.actor.lib.Recorder $e0 rec]
+    $e0 connect \
+	    [java::field [java::cast ptolemy.actor.lib.Source $ramp] output] \
+	    [java::field [java::cast ptolemy.actor.lib.Transformer $scale] input]
+    $e0 connect \
+	    [java::field [java::cast ptolemy.actor.lib.Transformer $scale] output] \
+	    [java::field [java::cast ptolemy.actor.lib.Transformer $scale2] input]
+    $e0 connect \
+	    [java::field [java::cast ptolemy.actor.lib.Transformer $scale2] output] \
+	    [java::field [java::cast ptolemy.actor.lib.Sink $rec] input]
+
+    [$e0 getManager] initialize
+    return $e0
+}
+
+# Iterate the model the specified number of times.
+proc iterateModel {e0 count} {
+    for {set i 0} {$i < $count} {incr i} {
+	[$e0 getManager] iterate
+    }
+}
+
+# Return the record of the recorder of a model built by changeModel.
+proc changeModelRecord {e0} {
+    enumToTokenValues [[java::cast ptolemy.actor.lib.Recorder \
+	    [$e0 getEntity rec]] getRecord 0]
+}
+
+# Return the number of live threads that execute a stage of a pipeline.
+proc pipelineThreads {} {
+    set count 0
+    set threads [[java::call Thread getAllStackTraces] keySet]
+    for {set i [$threads iterator]} {[$i hasNext] == 1} {} {
+	set thread [java::cast Thread [$i next]]
+	if {[string match {* stage *} [$thread getName]] \
+		&& [$thread isAlive]} {
+	    incr count
+	}
+    }
+    return $count
+}
+
+######################################################################
+####
+#
+test SDFPipeline-1.1 {Default value of numberOfThreads} {
+    set e0 [sdfModel]
+    set director [java::cast ptolemy.domains.sdf.kernel.SDFDirector \
+	    [$e0 getDirector]]
+    set receiver [$director newReceiver]
+    list [[java::field $director numberOfThreads] getExpression] \
+	    [java::instanceof $receiver ptolemy.domains.sdf.kernel.SDFPipelineReceiver]
+} {1 0}
+
+test SDFPipeline-1.2 {An SDFPipelineReceiver is a queue until it is started} {
+    [java::field $director numberOfThreads] setExpression 4
+    [java::field $director numberOfThreads] validate
+    set receiver [java::cast ptolemy.domains.sdf.kernel.SDFReceiver \
+	    [$director newReceiver]]
+    $receiver put [java::new ptolemy.data.IntToken 1]
+    $receiver put [java::new ptolemy.data.IntToken 2]
+    list [java::instanceof $receiver ptolemy.domains.sdf.kernel.SDFPipelineReceiver] \
+	    [$receiver size] [[$receiver get] toString] \
+	    [$receiver hasToken 1] [$receiver hasToken 2]
+} {1 2 1 1 0}
+
+######################################################################
+####
+#
+test SDFPipeline-2.1 {Pipelined execution gives the sequential results} {
+    set sequential [pipelineModel 1 30]
+    set pipelined [pipelineModel 4 30]
+    list [expr {$sequential == $pipelined}] \
+	    [llength [lindex $pipelined 0]] [llength [lindex $pipelined 1]] \
+	    [lrange [lindex $pipelined 0] 0 4] [lrange [lindex $pipelined 1] 0 6]
+} {1 30 180 {1 11 33 67 113} {0 0 0 2 2 2 4}}
+
+test SDFPipeline-2.2 {More threads than actors} {
+    set pipelined [pipelineModel 64 30]
+    expr {$sequential == $pipelined}
+} {1}
+
+test SDFPipeline-2.3 {An actor that returns false in postfire ends the execution} {
+    set sequential [pipelineModel 1 0 17]
+    set pipelined [pipelineModel 4 0 17]
+    list [expr {$sequential == $pipelined}] \
+	    [llength [lindex $pipelined 0]] [llength [lindex $pipelined 1]]
+} {1 9 54}
+
+######################################################################
+####
+#
+test SDFPipeline-3.1 {The stages persist across iterations and are drained and stopped by wrapup} {
+    set e0 [changeModel 4]
+    iterateModel $e0 1
+    set afterFirst [pipelineThreads]
+    iterateModel $e0 3
+    set running [pipelineThreads]
+    [$e0 getManager] wrapup
+    list $afterFirst $running [pipelineThreads] [changeModelRecord $e0]
+} {4 4 0 {0 2 4 6}}
+
+test SDFPipeline-3.2 {A parameter changed by a change request between iterations} {
+    set results {}
+    foreach threads {1 4} {
+	set e0 [changeModel $threads]
+	iterateModel $e0 5
+	$e0 requestChange [java::new ptolemy.moml.MoMLChangeRequest $e0 $e0 \
+		{<entity name="scale"><property name="factor" value="10"/></entity>}]
+	iterateModel $e0 5
+	[$e0 getManager] wrapup
+	lappend results [changeModelRecord $e0]
+    }
+    list [expr {[lindex $results 0] == [lindex $results 1]}] \
+	    [lindex $results 1] [pipelineThreads]
+} {1 {0 2 4 6 8 50 60 70 80 90} 0}
+
+test SDFPipeline-3.3 {wrapup restores the capacity that the scheduler set} {
+    set results {}
+    foreach threads {1 4} {
+	set e0 [changeModel $threads]
+	iterateModel $e0 3
+	set receivers [[java::field [java::cast ptolemy.actor.lib.Transformer \
+		[$e0 getEntity scale2]] input] getReceivers]
+	set receiver [java::cast ptolemy.domains.sdf.kernel.SDFReceiver \
+		[[$receivers get 0] get 0]]
+	[$e0 getManager] wrapup
+	lappend results [$receiver getCapacity]
+    }
+    set results
+} {1 1}
@@ -30,6 +30,12 @@ package ptolemy.domains.sdf.lib;
 import ptolemy.actor.TypedAtomicActor;
 import ptolemy.actor.TypedIOPort;
 import ptolemy.data.ArrayToken;
+import ptolemy.data.ComplexArrayToken;
+import ptolemy.data.ComplexToken;
+import ptolemy.data.DoubleArrayToken;
+import ptolemy.data.DoubleToken;
+import ptolemy.data.IntArrayToken;
+import ptolemy.data.IntToken;
 import ptolemy.data.MatrixToken;
 import ptolemy.data.ScalarToken;
 import ptolemy.data.Token;
@@ -45,6 +51,7 @@ import ptolemy.kernel.CompositeEntity;
 import ptolemy.kernel.util.IllegalActionException;
 import ptolemy.kernel.util.NameDuplicationException;
 import ptolemy.kernel.util.Workspace;
+import ptolemy.math.Complex;
 
 ///////////////////////////////////////////////////////////////////
 //// DotProduct
@@ -188,20 +195,60 @@ public class DotProduct extends TypedAtomicActor {
         ArrayToken token1 = (ArrayToken) input1.get(0);
         ArrayToken token2 = (ArrayToken) input2.get(0);
 
-        Token[] array1 = token1.arrayValue();
-        Token[] array2 = token2.arrayValue();
-
-        if (array1.length != array2.length) {
+        if (token1.length() != token2.length()) {
             throw new IllegalActionException("Inputs to DotProduct have "
-                    + "unequal lengths: " + array1.length + " and "
-                    + array2.length + ".");
+                    + "unequal lengths: " + token1.length() + " and "
+                    + token2.length() + ".");
         }
 
-        if (array1.length < 1) {
+        if (token1.length() < 1) {
             throw new IllegalActionException("Inputs to DotProduct have "
                     + "no elements.");
         }
 
+        // Arrays of doubles, ints and complex numbers can be multiplied
+        // without creating a token for each element.
+        if (token1 instanceof DoubleArrayToken
+                && token2 instanceof DoubleArrayToken) {
+            DoubleArrayToken doubleArray1 = (DoubleArrayToken) token1;
+            DoubleArrayToken doubleArray2 = (DoubleArrayToken) token2;
+            double dotProd = doubleArray1.getDoubleElement(0)
+                    * doubleArray2.getDoubleElement(0);
+            for (int i = 1; i < doubleArray1.length(); i++) {
+                dotProd += doubleArray1.getDoubleElement(i)
+                        * doubleArray2.getDoubleElement(i);
+            }
+            output.broadcast(new DoubleToken(dotProd));
+            return;
+        } else if (token1 instanceof IntArrayToken
+                && token2 instanceof IntArrayToken) {
+            IntArrayToken intArray1 = (IntArrayToken) token1;
+            IntArrayToken intArray2 = (IntArrayToken) token2;
+            int dotProd = intArray1.getIntElement(0)
+                    * intArray2.getIntElement(0);
+            for (int i = 1; i < intArray1.length(); i++) {
+                dotProd += intArray1.getIntElement(i)
+                        * intArray2.getIntElement(i);
+            }
+            output.broadcast(new IntToken(dotProd));
+            return;
+        } else if (token1 instanceof ComplexArrayToken
+                && token2 instanceof ComplexArrayToken) {
+            ComplexArrayToken complexArray1 = (ComplexArrayToken) token1;
+            ComplexArrayToken complexArray2 = (ComplexArrayToken) token2;
+            Complex dotProd = complexArray1.getComplexElement(0).multiply(
+                    complexArray2.getComplexElement(0));
+            for (int i = 1; i < complexArray1.length(); i++) {
+                dotProd = dotProd.add(complexArray1.getComplexElement(i)
+                        .multiply(complexArray2.getComplexElement(i)));
+            }
+            output.broadcast(new ComplexToken(dotProd));
+            return;
+        }
+
+        Token[] array1 = token1.arrayValue();
+        Token[] array2 = token2.arrayValue();
+
         Token dotProd = null;
         ScalarToken currentTerm;
 
@@ -31,8 +31,13 @@ import ptolemy.actor.parameters.PortParameter;
 import ptolemy.actor.util.ActorTypeUtil;
 import ptolemy.actor.util.ArrayElementTypeFunction;
 import ptolemy.data.ArrayToken;
+import ptolemy.data.DoubleArrayToken;
+import ptolemy.data.DoubleToken;
+import ptolemy.data.IntArrayToken;
 import ptolemy.data.IntToken;
+import ptolemy.data.ScalarToken;
 import ptolemy.data.Token;
+import ptolemy.data.type.BaseType;
 import ptolemy.kernel.CompositeEntity;
 import ptolemy.kernel.util.Attribute;
 import ptolemy.kernel.util.IllegalActionException;
@@ -163,7 +168,11 @@ public class SequenceToArray extends SDFTransformer {
         Token[] valueArray = new Token[length];
         System.arraycopy(input.get(0, length), 0, valueArray, 0, length);
 
-        output.broadcast(new ArrayToken(input.getType(), valueArray));
+        ArrayToken result = _primitiveArray(valueArray);
+        if (result == null) {
+            result = new ArrayToken(input.getType(), valueArray);
+        }
+        output.broadcast(result);
     }
 
     /** Return true if the input port has enough tokens for this actor to
@@ -190,4 +199,46 @@ public class SequenceToArray extends SDFTransformer {
             return super.prefire();
         }
     }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** If the input type is double or int and the tokens are all
+     *  DoubleTokens or IntTokens without units, then return an array
+     *  token that stores them as primitive values.  Otherwise, return
+     *  null.
+     */
+    private ArrayToken _primitiveArray(Token[] tokens) {
+        if (tokens.length == 0) {
+            return null;
+        }
+        if (input.getType().equals(BaseType.DOUBLE)) {
+            double[] values = new double[tokens.length];
+            for (int i = 0; i < tokens.length; i++) {
+                if (!_isPlain(tokens[i], DoubleToken.class)) {
+                    return null;
+                }
+                values[i] = ((DoubleToken) tokens[i]).doubleValue();
+            }
+            return new DoubleArrayToken(values);
+        } else if (input.getType().equals(BaseType.INT)) {
+            int[] values = new int[tokens.length];
+            for (int i = 0; i < tokens.length; i++) {
+                if (!_isPlain(tokens[i], IntToken.class)) {
+                    return null;
+                }
+                values[i] = ((IntToken) tokens[i]).intValue();
+            }
+            return new IntArrayToken(values);
+        }
+        return null;
+    }
+
+    /** Return true if the token is an instance of exactly the given
+     *  class, is not nil, and has no units.
+     */
+    private static boolean _isPlain(Token token, Class<?> tokenClass) {
+        return token.getClass() == tokenClass && !token.isNil()
+                && ((ScalarToken) token).isUnitless();
+    }
 }
@@ -0,0 +1,61 @@
+/* A CPO whose operations on some of its elements may be memoized.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.graph;
+
+///////////////////////////////////////////////////////////////////
+//// MemoizableCPO
+
+/**
+ A CPO that identifies the elements that are never modified.
+ The result of {@link #compare(Object, Object)},
+ {@link #leastUpperBound(Object, Object)} and
+ {@link #greatestLowerBound(Object, Object)} on two such elements
+ depends only on the identity of the elements, so a client such as
+ {@link WorklistInequalitySolver} may remember it instead of asking
+ the CPO again.  Elements that may be modified in place, such as
+ structured types with variable components, must not be reported
+ as immutable.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public interface MemoizableCPO<T extends Object> extends CPO<T> {
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Return true if the specified element of this CPO is never
+     *  modified, so that the results of the operations of this CPO on
+     *  it may be memoized.
+     *  @param e An Object representing an element of this CPO.
+     *  @return True if the element is immutable.
+     */
+    public boolean isImmutable(Object e);
+}
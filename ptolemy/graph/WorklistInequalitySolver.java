@@ -0,0 +1,567 @@
+/* An inequality solver that visits the variables in dependency order.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.graph;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ptolemy.kernel.util.IllegalActionException;
+import ptolemy.kernel.util.InvalidStateException;
+
+///////////////////////////////////////////////////////////////////
+//// WorklistInequalitySolver
+
+/**
+ An inequality solver that updates the variables in the order of their
+ dependencies.
+ <p>
+ This solver finds the same solutions as its base class, but it
+ chooses the next inequality to update differently.  Before solving,
+ it builds a graph with an edge from each variable of the term that
+ is read by an inequality to the variable that is updated by the
+ inequality.  When solving for the least solution, the lesser terms
+ are read and the greater terms are updated, and when solving for the
+ greatest solution, it is the other way around.  The strongly connected
+ components of this graph are numbered in topological order, and the
+ unsatisfied inequalities are kept in a priority queue ordered by the
+ component of the variable that they update.  Thus, the variables of a
+ component are updated only after the values of all the components
+ that they depend on have been found, and on an acyclic set of
+ inequalities, such as the type constraints of a long chain of actors,
+ each inequality is updated once, whatever the order in which the
+ inequalities were added.  The base class, in contrast, may update
+ the variables at the end of a chain many times.
+ <p>
+ Inequalities are checked lazily: an inequality is queued whenever a
+ variable that it reads is updated, and it is checked when it is
+ removed from the queue.  As in the base class, all the inequalities
+ are checked again once the queue is empty, because some terms do not
+ report all the variables that they depend on, and the solver stops
+ with an exception if the inequalities are still not satisfied after
+ 1000 rounds.
+ <p>
+ If the CPO is a {@link MemoizableCPO}, the results of comparing,
+ and of finding the least upper bound or the greatest lower bound
+ of, two elements that the CPO reports as immutable are remembered
+ by the solver, so the CPO is asked only once for each pair of such
+ elements.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class WorklistInequalitySolver extends InequalitySolver {
+    /** Construct an inequality solver.
+     *  @param cpo The CPO over which the inequalities are defined.
+     */
+    // The solver only passes elements of the CPO back to it, so
+    // the CPO can be viewed as a CPO of Objects.
+    @SuppressWarnings("unchecked")
+    public WorklistInequalitySolver(CPO<?> cpo) {
+        super(cpo);
+        _cpo = (CPO<Object>) cpo;
+        if (cpo instanceof MemoizableCPO) {
+            _memoizableCPO = (MemoizableCPO<Object>) cpo;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Add an <code>Inequality</code> to the set of constraints.
+     *  @param ineq An <code>Inequality</code>.
+     */
+    @Override
+    public void addInequality(Inequality ineq) {
+        super.addInequality(ineq);
+        _inequalities.add(ineq);
+    }
+
+    /** Solve the set of inequalities for the greatest solution.
+     *  See {@link InequalitySolver#solveGreatest()} for the meaning
+     *  of the result.
+     *  @return True if a solution for the inequalities is found,
+     *  false otherwise.
+     *  @exception IllegalActionException If testing any one of the
+     *  inequalities throws an exception.
+     */
+    @Override
+    public boolean solveGreatest() throws IllegalActionException {
+        return _solve(false);
+    }
+
+    /** Solve the set of inequalities for the least solution.
+     *  See {@link InequalitySolver#solveLeast()} for the meaning
+     *  of the result.
+     *  @return True if a solution for the inequalities is found,
+     *   <code>false</code> otherwise.
+     *  @exception IllegalActionException If testing any one of the
+     *  inequalities throws an exception.
+     */
+    @Override
+    public boolean solveLeast() throws IllegalActionException {
+        return _solve(true);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    // Return the least upper bound of the two elements if least is true,
+    // and their greatest lower bound otherwise.
+    private Object _bound(boolean least, Object e1, Object e2) {
+        if (_memoizableCPO == null || !_memoizableCPO.isImmutable(e1)
+                || !_memoizableCPO.isImmutable(e2)) {
+            return least ? _cpo.leastUpperBound(e1, e2) : _cpo
+                    .greatestLowerBound(e1, e2);
+        }
+        Object[] memo = least ? _leastUpperBounds : _greatestLowerBounds;
+        int slot = _slot(e1, e2);
+        if (memo[slot] == e1 && memo[slot + 1] == e2) {
+            return memo[slot + 2];
+        }
+        Object result = least ? _cpo.leastUpperBound(e1, e2) : _cpo
+                .greatestLowerBound(e1, e2);
+        if (result != null) {
+            memo[slot] = e1;
+            memo[slot + 1] = e2;
+            memo[slot + 2] = result;
+        }
+        return result;
+    }
+
+    // Return the result of comparing the two elements.
+    private int _compare(Object e1, Object e2) {
+        if (_memoizableCPO == null || !_memoizableCPO.isImmutable(e1)
+                || !_memoizableCPO.isImmutable(e2)) {
+            return _cpo.compare(e1, e2);
+        }
+        int slot = _slot(e1, e2);
+        if (_comparisons[slot] == e1 && _comparisons[slot + 1] == e2) {
+            return ((Integer) _comparisons[slot + 2]).intValue();
+        }
+        int result = _cpo.compare(e1, e2);
+        _comparisons[slot] = e1;
+        _comparisons[slot + 1] = e2;
+        _comparisons[slot + 2] = Integer.valueOf(result);
+        return result;
+    }
+
+    // Return the index of the variable, numbering it if it has not
+    // been numbered yet.
+    private int _index(InequalityTerm variable) {
+        Integer index = _variableIndices.get(variable);
+        if (index == null) {
+            index = Integer.valueOf(_variables.size());
+            _variableIndices.put(variable, index);
+            _variables.add(variable);
+        }
+        return index.intValue();
+    }
+
+    // Return the indices of the variables in the specified array.
+    private int[] _indices(InequalityTerm[] variables) {
+        int[] result = new int[variables.length];
+        for (int i = 0; i < variables.length; i++) {
+            result[i] = _index(variables[i]);
+        }
+        return result;
+    }
+
+    // Return true if the inequality is satisfied. This is the same
+    // as Inequality.isSatisfied(), but it uses the memoized comparisons.
+    private boolean _isSatisfied(Inequality inequality)
+            throws IllegalActionException {
+        int result = _compare(inequality.getLesserTerm().getValue(),
+                inequality.getGreaterTerm().getValue());
+        return result == CPO.LOWER || result == CPO.SAME;
+    }
+
+    // Number the strongly connected components of the dependency graph
+    // of the variables in topological order and return the number of
+    // the component of each variable. The successors of a variable are
+    // the variables updated by the inequalities that read it.
+    // This is Tarjan's algorithm, without recursion so that long chains
+    // do not overflow the stack.
+    private int[] _rankComponents(int[] readersStart, int[] readers,
+            int[] updated) {
+        int count = _variables.size();
+        int[] index = new int[count];
+        int[] low = new int[count];
+        int[] component = new int[count];
+        int[] cursor = new int[count];
+        boolean[] onStack = new boolean[count];
+        int[] stack = new int[count];
+        int[] callStack = new int[count];
+        int stackSize = 0;
+        int callStackSize = 0;
+        int nextIndex = 1;
+        int components = 0;
+
+        for (int root = 0; root < count; root++) {
+            if (index[root] != 0) {
+                continue;
+            }
+            index[root] = low[root] = nextIndex++;
+            cursor[root] = readersStart[root];
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            callStack[callStackSize++] = root;
+
+            while (callStackSize > 0) {
+                int variable = callStack[callStackSize - 1];
+                if (cursor[variable] < readersStart[variable + 1]) {
+                    int successor = updated[readers[cursor[variable]++]];
+                    if (index[successor] == 0) {
+                        index[successor] = low[successor] = nextIndex++;
+                        cursor[successor] = readersStart[successor];
+                        stack[stackSize++] = successor;
+                        onStack[successor] = true;
+                        callStack[callStackSize++] = successor;
+                    } else if (onStack[successor]
+                            && index[successor] < low[variable]) {
+                        low[variable] = index[successor];
+                    }
+                } else {
+                    callStackSize--;
+                    if (low[variable] == index[variable]) {
+                        int member;
+                        do {
+                            member = stack[--stackSize];
+                            onStack[member] = false;
+                            component[member] = components;
+                        } while (member != variable);
+                        components++;
+                    }
+                    if (callStackSize > 0) {
+                        int caller = callStack[callStackSize - 1];
+                        if (low[variable] < low[caller]) {
+                            low[caller] = low[variable];
+                        }
+                    }
+                }
+            }
+        }
+
+        // Tarjan's algorithm finds a component after all the components
+        // that it reaches, so reverse the numbering.
+        for (int i = 0; i < count; i++) {
+            component[i] = components - 1 - component[i];
+        }
+        return component;
+    }
+
+    // Return the index in a memo of the entry for the two elements.
+    // Each entry has three slots: the two elements and the result.
+    private static int _slot(Object e1, Object e2) {
+        int hash = 31 * System.identityHashCode(e1)
+                + System.identityHashCode(e2);
+        hash ^= hash >>> 16;
+        return (hash & (_MEMO_SIZE - 1)) * 3;
+    }
+
+    // The solver used by solveLeast() and solveGreatest().
+    // If the argument is true, solve for the least solution;
+    // otherwise, solve for the greatest solution.
+    private boolean _solve(boolean least) throws IllegalActionException {
+        Object init = least ? _cpo.bottom() : _cpo.top();
+
+        if (init == null) {
+            throw new InvalidStateException(
+                    "The underlying CPO is not a lattice because "
+                            + "the CPO has no " + (least ? "bottom" : "top")
+                            + ". The CPO was a " + _cpo.getClass().getName());
+        }
+
+        // Number the variables, and find the variables read and the
+        // variable updated by each inequality. Only the variables
+        // reported by the terms are initialized, as in the base class.
+        int size = _inequalities.size();
+        int[][] read = new int[size][];
+        int[] updated = new int[size];
+        _variableIndices = new HashMap<InequalityTerm, Integer>();
+        _variables = new ArrayList<InequalityTerm>();
+        for (int i = 0; i < size; i++) {
+            Inequality inequality = _inequalities.get(i);
+            int[] lesser = _indices(inequality.getLesserTerm().getVariables());
+            int[] greater = _indices(inequality.getGreaterTerm()
+                    .getVariables());
+            read[i] = least ? lesser : greater;
+        }
+        int initializedCount = _variables.size();
+        for (int i = 0; i < size; i++) {
+            Inequality inequality = _inequalities.get(i);
+            InequalityTerm updateTerm = least ? inequality.getGreaterTerm()
+                    : inequality.getLesserTerm();
+            // An inequality whose updated term is not settable is in the
+            // "Ccnst" set of the Rehof paper, and is only checked at the end.
+            updated[i] = updateTerm.isSettable() ? _index(updateTerm) : -1;
+        }
+
+        for (int i = 0; i < initializedCount; i++) {
+            try {
+                _variables.get(i).initialize(init);
+            } catch (IllegalActionException ex) {
+                throw new InvalidStateException(null, null, ex,
+                        "Cannot initialize variable.");
+            }
+        }
+
+        // For each variable, list the inequalities that read it and
+        // update a variable.
+        int count = _variables.size();
+        int[] readersStart = new int[count + 1];
+        for (int i = 0; i < size; i++) {
+            if (updated[i] >= 0) {
+                for (int variable : read[i]) {
+                    readersStart[variable + 1]++;
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            readersStart[i + 1] += readersStart[i];
+        }
+        int[] readers = new int[readersStart[count]];
+        int[] next = readersStart.clone();
+        for (int i = 0; i < size; i++) {
+            if (updated[i] >= 0) {
+                for (int variable : read[i]) {
+                    readers[next[variable]++] = i;
+                }
+            }
+        }
+
+        int[] component = _rankComponents(readersStart, readers,
+                updated);
+        int[] priority = new int[size];
+        for (int i = 0; i < size; i++) {
+            if (updated[i] >= 0) {
+                priority[i] = component[updated[i]];
+            }
+        }
+        _Worklist worklist = new _Worklist(priority);
+        boolean[] inserted = new boolean[size];
+
+        for (int i = 0; i < size; i++) {
+            if (updated[i] >= 0 && !_isSatisfied(_inequalities.get(i))) {
+                worklist.add(i);
+                inserted[i] = true;
+            }
+        }
+
+        int loopCount = 0;
+        while (!worklist.isEmpty()) {
+            while (!worklist.isEmpty()) {
+                int index = worklist.poll();
+                inserted[index] = false;
+                Inequality inequality = _inequalities.get(index);
+
+                if (_isSatisfied(inequality)) {
+                    continue;
+                }
+
+                Object value = null;
+                InequalityTerm updateTerm = null;
+
+                if (least) {
+                    updateTerm = inequality.getGreaterTerm();
+                    value = _bound(true, inequality.getLesserTerm()
+                            .getValue(), updateTerm.getValue());
+                } else {
+                    updateTerm = inequality.getLesserTerm();
+                    value = _bound(false, updateTerm.getValue(), inequality
+                            .getGreaterTerm().getValue());
+                }
+
+                if (value == null) {
+                    throw new InvalidStateException("The CPO over which "
+                            + "the inequalities are defined is not a lattice.");
+                }
+
+                try {
+                    updateTerm.setValue(value);
+                } catch (IllegalActionException ex) {
+                    throw new InvalidStateException(null, null, ex,
+                            "Can't update variable.\n");
+                }
+
+                int variable = updated[index];
+                for (int i = readersStart[variable]; i < readersStart[variable + 1]; i++) {
+                    int reader = readers[i];
+                    if (reader != index && !inserted[reader]) {
+                        worklist.add(reader);
+                        inserted[reader] = true;
+                    }
+                }
+            }
+
+            // Some terms do not report all the variables they depend on,
+            // for example the element types of structured types, so check
+            // all the inequalities again. See InequalitySolver._solve().
+            StringBuffer errorMessage = null;
+            for (int i = 0; i < size; i++) {
+                Inequality inequality = _inequalities.get(i);
+                if (updated[i] >= 0 && !_isSatisfied(inequality)) {
+                    worklist.add(i);
+                    inserted[i] = true;
+                    if (loopCount > _DEPTH_LIMIT) {
+                        if (errorMessage == null) {
+                            errorMessage = new StringBuffer();
+                        }
+                        errorMessage.append(" ("
+                                + inequality.getGreaterTerm() + " >= "
+                                + inequality.getLesserTerm() + ") ");
+                    }
+                }
+            }
+
+            // Avoid infinite loops with arrays of arrays in feedback loops.
+            if (errorMessage != null) {
+                throw new IllegalActionException(
+                        "Cannot resolve types. Unsatisfied constraints: "
+                                + errorMessage);
+            }
+            loopCount++;
+        }
+        _variableIndices = null;
+        _variables = null;
+
+        // Check the inequalities not involved in the above iteration.
+        // These inequalities are the ones in the "Ccnst" set in the
+        // Rehof paper.
+        for (int i = 0; i < size; i++) {
+            if (updated[i] < 0 && !_isSatisfied(_inequalities.get(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    // The CPO over which the inequalities are defined.
+    private CPO<Object> _cpo;
+
+    // The number of rounds after which the solver gives up.
+    // This is the same limit as in the base class.
+    private static final int _DEPTH_LIMIT = 1000;
+
+    // The memoized comparisons of immutable elements. The memos
+    // are direct mapped: an entry is replaced by a later entry for
+    // another pair of elements that has the same slot.
+    private Object[] _comparisons = new Object[_MEMO_SIZE * 3];
+
+    // The memoized greatest lower bounds of immutable elements.
+    private Object[] _greatestLowerBounds = new Object[_MEMO_SIZE * 3];
+
+    // The inequalities, in the order in which they were added.
+    private List<Inequality> _inequalities = new ArrayList<Inequality>();
+
+    // The memoized least upper bounds of immutable elements.
+    private Object[] _leastUpperBounds = new Object[_MEMO_SIZE * 3];
+
+    // The number of entries of each memo, which is a power of two.
+    private static final int _MEMO_SIZE = 1024;
+
+    // The CPO, if it can identify its immutable elements, or null.
+    private MemoizableCPO<Object> _memoizableCPO;
+
+    // The indices of the variables, while solving.
+    private Map<InequalityTerm, Integer> _variableIndices;
+
+    // The variables, in the order of their indices, while solving.
+    private List<InequalityTerm> _variables;
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         inner class                       ////
+
+    // A priority queue of the indices of the inequalities, which are
+    // removed in the order of the priorities of the inequalities, and
+    // then in the order in which the inequalities were added.
+    // This is a binary heap of keys that combine the priority and
+    // the index, so that no objects are created.
+    private static class _Worklist {
+        private _Worklist(int[] priority) {
+            _priority = priority;
+            _keys = new long[Math.max(1, priority.length)];
+        }
+
+        // Add the index of an inequality, which is not in the queue.
+        private void add(int index) {
+            long key = (long) _priority[index] << 32 | index;
+            int i = _size++;
+            while (i > 0) {
+                int parent = i - 1 >>> 1;
+                if (_keys[parent] <= key) {
+                    break;
+                }
+                _keys[i] = _keys[parent];
+                i = parent;
+            }
+            _keys[i] = key;
+        }
+
+        private boolean isEmpty() {
+            return _size == 0;
+        }
+
+        // Remove and return the index with the least key.
+        private int poll() {
+            int result = (int) _keys[0];
+            long last = _keys[--_size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= _size) {
+                    break;
+                }
+                if (child + 1 < _size && _keys[child + 1] < _keys[child]) {
+                    child++;
+                }
+                if (last <= _keys[child]) {
+                    break;
+                }
+                _keys[i] = _keys[child];
+                i = child;
+            }
+            _keys[i] = last;
+            return result;
+        }
+
+        private long[] _keys;
+
+        private int[] _priority;
+
+        private int _size;
+    }
+}
@@ -0,0 +1,263 @@
+/* Compare the inequality solvers on type and ontology problems.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+ */
+package ptolemy.graph.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import ptolemy.actor.TypedIOPort;
+import ptolemy.data.ontologies.ConceptRelation;
+import ptolemy.data.ontologies.FiniteConcept;
+import ptolemy.data.ontologies.Ontology;
+import ptolemy.data.type.BaseType;
+import ptolemy.data.type.TypeConstant;
+import ptolemy.data.type.TypeLattice;
+import ptolemy.graph.CPO;
+import ptolemy.graph.Inequality;
+import ptolemy.graph.InequalitySolver;
+import ptolemy.graph.InequalityTerm;
+import ptolemy.graph.WorklistInequalitySolver;
+import ptolemy.kernel.util.IllegalActionException;
+import ptolemy.kernel.util.Workspace;
+
+///////////////////////////////////////////////////////////////////
+//// InequalitySolverBenchmark
+
+/**
+ Solve the same inequalities with {@link InequalitySolver} and with
+ {@link WorklistInequalitySolver}, and report the time taken by each.
+ <p>
+ Two problems are solved.  The first is over the type lattice, with
+ the type terms of ports as variables, and the second is over the
+ concept graph of a small ontology with the concepts Unknown, Zero,
+ Positive, Negative and Conflict.  Both have the shape of the
+ constraints of models: chains of variables, each with a constant at
+ its start, the least constant below each of its other variables, as
+ for the parameters of actors, a feedback loop from its end to its
+ middle, and an inequality from the middle of the previous chain to
+ its middle.
+ The inequalities are added in a random order, because the order of
+ the constraints collected from a model does not follow the data
+ flow.  The solutions found by the two solvers are compared.
+ <p>
+ To run, use:
+ <pre>
+ java -classpath $PTII ptolemy.graph.test.InequalitySolverBenchmark [-chains n] [-length n] [-runs n]
+ </pre>
+ The number of chains defaults to 1000, the number of variables of
+ each chain to 20 and the number of runs of each solver to 5.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class InequalitySolverBenchmark {
+
+    /** Run the benchmark and print the results.
+     *  @param args Optional "-chains n", "-length n" and "-runs n"
+     *   arguments.
+     *  @exception Exception If the problems cannot be constructed or
+     *   solved, or if the solvers find different solutions.
+     */
+    public static void main(String[] args) throws Exception {
+        int chains = 1000;
+        int length = 20;
+        int runs = 5;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("-chains")) {
+                chains = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-length")) {
+                length = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-runs")) {
+                runs = Integer.parseInt(args[i + 1]);
+            } else {
+                System.err.println("Usage: java -classpath $PTII "
+                        + "ptolemy.graph.test.InequalitySolverBenchmark "
+                        + "[-chains n] [-length n] [-runs n]");
+                return;
+            }
+        }
+
+        // The type problem.
+        List<InequalityTerm> variables = new ArrayList<InequalityTerm>();
+        for (int i = 0; i < chains * length; i++) {
+            variables.add(new TypedIOPort().getTypeTerm());
+        }
+        List<InequalityTerm> constants = new ArrayList<InequalityTerm>();
+        constants.add(new TypeConstant(BaseType.INT));
+        constants.add(new TypeConstant(BaseType.DOUBLE));
+        constants.add(new TypeConstant(BaseType.COMPLEX));
+        _run("type", TypeLattice.lattice(), _inequalities(variables,
+                constants, chains, length), variables, runs);
+
+        // The ontology problem.
+        Ontology ontology = new Ontology(new Workspace("ontology"));
+        FiniteConcept unknown = new FiniteConcept(ontology, "Unknown");
+        FiniteConcept conflict = new FiniteConcept(ontology, "Conflict");
+        constants.clear();
+        for (String name : new String[] { "Zero", "Positive", "Negative" }) {
+            FiniteConcept concept = new FiniteConcept(ontology, name);
+            _relate(ontology, unknown, concept);
+            _relate(ontology, concept, conflict);
+            constants.add(concept);
+        }
+        variables.clear();
+        for (int i = 0; i < chains * length; i++) {
+            variables.add(new _Variable());
+        }
+        _run("ontology", ontology.getConceptGraph(), _inequalities(
+                variables, constants, chains, length), variables, runs);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Return the inequalities of a problem, in a random order. */
+    private static List<Inequality> _inequalities(
+            List<InequalityTerm> variables, List<InequalityTerm> constants,
+            int chains, int length) {
+        List<Inequality> result = new ArrayList<Inequality>();
+        for (int chain = 0; chain < chains; chain++) {
+            int start = chain * length;
+            result.add(new Inequality(constants.get(chain % constants.size()),
+                    variables.get(start)));
+            for (int i = 1; i < length; i++) {
+                result.add(new Inequality(variables.get(start + i - 1),
+                        variables.get(start + i)));
+                result.add(new Inequality(constants.get(0), variables
+                        .get(start + i)));
+            }
+            result.add(new Inequality(variables.get(start + length - 1),
+                    variables.get(start + length / 2)));
+            if (chain > 0) {
+                result.add(new Inequality(variables.get(start - length
+                        + length / 2), variables.get(start + length / 2)));
+            }
+        }
+        Collections.shuffle(result, new Random(0));
+        return result;
+    }
+
+    /** Relate two concepts of an ontology. */
+    private static void _relate(Ontology ontology, FiniteConcept lower,
+            FiniteConcept higher) throws Exception {
+        ConceptRelation relation = new ConceptRelation(ontology,
+                lower.getName() + "_" + higher.getName());
+        lower.abovePort.link(relation);
+        higher.belowPort.link(relation);
+    }
+
+    /** Solve the inequalities with each solver, compare the solutions
+     *  and print the best times.
+     */
+    private static void _run(String problem, CPO cpo,
+            List<Inequality> inequalities, List<InequalityTerm> variables,
+            int runs) throws Exception {
+        Object[] solution = null;
+        long[] best = { Long.MAX_VALUE, Long.MAX_VALUE };
+        for (int run = 0; run < runs; run++) {
+            for (int solverIndex = 0; solverIndex < 2; solverIndex++) {
+                InequalitySolver solver = solverIndex == 0 ? new InequalitySolver(
+                        cpo) : new WorklistInequalitySolver(cpo);
+                long start = System.nanoTime();
+                solver.addInequalities(inequalities.iterator());
+                boolean satisfied = solver.solveLeast();
+                long elapsed = System.nanoTime() - start;
+                best[solverIndex] = Math.min(best[solverIndex], elapsed);
+
+                Object[] values = new Object[variables.size() + 1];
+                for (int i = 0; i < variables.size(); i++) {
+                    values[i] = variables.get(i).getValue();
+                }
+                values[variables.size()] = Boolean.valueOf(satisfied);
+                if (solution == null) {
+                    solution = values;
+                } else {
+                    for (int i = 0; i < values.length; i++) {
+                        if (!values[i].equals(solution[i])) {
+                            throw new Exception("The solvers found different "
+                                    + "solutions for the " + problem
+                                    + " problem: " + values[i] + " and "
+                                    + solution[i]);
+                        }
+                    }
+                }
+            }
+        }
+        System.out.println(problem + ": " + inequalities.size()
+                + " inequalities, InequalitySolver: " + best[0] / 1000000
+                + " ms, WorklistInequalitySolver: " + best[1] / 1000000
+                + " ms");
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         inner classes                     ////
+
+    /** A variable whose value is an element of any CPO. */
+    private static class _Variable implements InequalityTerm {
+        @Override
+        public Object getAssociatedObject() {
+            return null;
+        }
+
+        @Override
+        public Object getValue() {
+            return _value;
+        }
+
+        @Override
+        public InequalityTerm[] getVariables() {
+            return new InequalityTerm[] { this };
+        }
+
+        @Override
+        public void initialize(Object value) {
+            _value = value;
+        }
+
+        @Override
+        public boolean isSettable() {
+            return true;
+        }
+
+        @Override
+        public boolean isValueAcceptable() {
+            return true;
+        }
+
+        @Override
+        public void setValue(Object value) throws IllegalActionException {
+            _value = value;
+        }
+
+        private Object _value;
+    }
+}
@@ -0,0 +1,206 @@
+# Tests for the WorklistInequalitySolver class
+#
+# @Author: Ptolemy II developers
+#
+# $Id$
+#
+# @Copyright (c) 2016 The Regents of the University of California.
+# All rights reserved.
+# 
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+# 
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+# 
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+# 
+#                       PT_COPYRIGHT_VERSION_2
+#                       COPYRIGHTENDKEY
+#######################################################################
+
+# Ptolemy II test bed, see $PTII/doc/coding/testing.html for more information.
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then { 
+    source testDefs.tcl
+}
+
+
+# Uncomment this to get a full report, or set in your Tcl shell window.
+# set VERBOSE 1
+
+######################################################################
+#### unsatisfied
+# Return the lesser and greater values of the inequalities that the
+# solver reports as not satisfied.
+#
+proc unsatisfied {solver} {
+    set result {}
+    set iter [$solver unsatisfiedInequalities]
+    while {[$iter hasNext] == 1} {
+        set ineq [java::cast ptolemy.graph.Inequality [$iter next]]
+        lappend result [list [[$ineq getLesserTerm] getValue] \
+                [[$ineq getGreaterTerm] getValue]]
+    }
+    return $result
+}
+
+######################################################################
+####
+#
+test WorklistInequalitySolver-1.1 {solve for the least solution} {
+    # The 4-point CPO in the design doc, see InequalitySolver.tcl.
+    set cpo [java::new ptolemy.graph.DirectedAcyclicGraph]
+    set w [java::new {java.lang.String String} w]
+    set x [java::new {java.lang.String String} x]
+    set y [java::new {java.lang.String String} y]
+    set z [java::new {java.lang.String String} z]
+    $cpo addNodeWeight $w
+    $cpo addNodeWeight $x
+    $cpo addNodeWeight $y
+    $cpo addNodeWeight $z
+    $cpo addEdge $x $w
+    $cpo addEdge $y $w
+    $cpo addEdge $z $x
+    $cpo addEdge $z $y
+
+    set tw [java::new ptolemy.graph.test.TestConstant $w]
+    set tx [java::new ptolemy.graph.test.TestConstant $x]
+    set ta [java::new ptolemy.graph.test.TestVariable]
+    set tb [java::new ptolemy.graph.test.TestVariable]
+
+    set s [java::new ptolemy.graph.WorklistInequalitySolver $cpo]
+    $s addInequality [java::new ptolemy.graph.Inequality $ta $tw]
+    $s addInequality [java::new ptolemy.graph.Inequality $tb $tx]
+    $s addInequality [java::new ptolemy.graph.Inequality $tb $ta]
+    $s addInequality [java::new ptolemy.graph.Inequality $ta $tb]
+
+    set sat [$s solveLeast]
+    list $sat [$ta getValue] [$tb getValue] [unsatisfied $s]
+} {1 z z {}}
+
+######################################################################
+####
+#
+test WorklistInequalitySolver-1.2 {solve for the greatest solution} {
+    # Uses the setup above.
+    set sat [$s solveGreatest]
+    list $sat [$ta getValue] [$tb getValue] [unsatisfied $s]
+} {1 x x {}}
+
+######################################################################
+####
+#
+test WorklistInequalitySolver-1.3 {constraints with no solution} {
+    # Uses the CPO above.
+    set ty [java::new ptolemy.graph.test.TestConstant $y]
+    set tz [java::new ptolemy.graph.test.TestConstant $z]
+
+    set s1 [java::new ptolemy.graph.WorklistInequalitySolver $cpo]
+    $s1 addInequality [java::new ptolemy.graph.Inequality $ta $tw]
+    $s1 addInequality [java::new ptolemy.graph.Inequality $tw $ta]
+    $s1 addInequality [java::new ptolemy.graph.Inequality $tb $tz]
+    $s1 addInequality [java::new ptolemy.graph.Inequality $ty $tb]
+
+    set least [list [$s1 solveLeast] [$ta getValue] [$tb getValue] \
+	    [unsatisfied $s1]]
+    set greatest [list [$s1 solveGreatest] [$ta getValue] [$tb getValue] \
+	    [unsatisfied $s1]]
+    list $least $greatest
+} {{0 w y {{y z}}} {0 w z {{y z}}}}
+
+######################################################################
+####
+#
+test WorklistInequalitySolver-2.1 {a long chain with a cycle, added backwards} {
+    # Uses the CPO above.  The chain is v0 <= v1 <= ... <= v199,
+    # with x <= v0, y <= v150 and v199 <= v100, so v0 to v99 are x,
+    # and v100 to v199 are w.
+    set s2 [java::new ptolemy.graph.WorklistInequalitySolver $cpo]
+    set variables {}
+    for {set i 0} {$i < 200} {incr i} {
+	lappend variables [java::new ptolemy.graph.test.TestVariable]
+    }
+    for {set i 198} {$i >= 0} {incr i -1} {
+	$s2 addInequality [java::new ptolemy.graph.Inequality \
+		[lindex $variables $i] [lindex $variables [expr {$i + 1}]]]
+    }
+    $s2 addInequality [java::new ptolemy.graph.Inequality \
+	    [lindex $variables 199] [lindex $variables 100]]
+    $s2 addInequality [java::new ptolemy.graph.Inequality \
+	    $ty [lindex $variables 150]]
+    $s2 addInequality [java::new ptolemy.graph.Inequality \
+	    $tx [lindex $variables 0]]
+    set sat [$s2 solveLeast]
+    set values {}
+    foreach i {0 99 100 150 199} {
+	lappend values [[lindex $variables $i] getValue]
+    }
+    list $sat $values [unsatisfied $s2]
+} {1 {x x w w w} {}}
+
+######################################################################
+####
+#
+test WorklistInequalitySolver-3.1 {solve constraints on TypeLattice} {
+    # The same constraints as InequalitySolver-3.1, which come from
+    # a real topology in DE SamplerSystem.
+    set lattice [java::call ptolemy.data.type.TypeLattice lattice]
+
+    set pDouble [java::new ptolemy.actor.TypedIOPort]
+    $pDouble setTypeEquals [java::field ptolemy.data.type.BaseType DOUBLE]
+    set tDouble [$pDouble getTypeTerm]
+
+    set ports {}
+    foreach name {s1c s1d s1o s2c s2d s2o} {
+	set port [java::new ptolemy.actor.TypedIOPort]
+	lappend ports $port
+	set term($name) [$port getTypeTerm]
+    }
+
+    set s3 [java::new ptolemy.graph.WorklistInequalitySolver $lattice]
+    foreach {lesser greater} [list \
+	    $tDouble $term(s1c) $tDouble $term(s2c) \
+	    $term(s1d) $term(s1o) $term(s1c) $term(s1o) $term(s1o) $tDouble \
+	    $term(s2d) $term(s2o) $term(s2c) $term(s2o) $term(s2o) $tDouble \
+	    $tDouble $term(s1d) $tDouble $term(s2d)] {
+	$s3 addInequality [java::new ptolemy.graph.Inequality $lesser $greater]
+    }
+
+    set sat [$s3 solveLeast]
+    set types {}
+    foreach port $ports {
+	lappend types [[$port getType] toString]
+    }
+    list $sat $types
+} {1 {double double double double double double}}
+
+######################################################################
+####
+#
+test WorklistInequalitySolver-3.2 {solve again, with memoized results} {
+    # Uses the setup above.  The results of the type lattice on the
+    # base types are memoized by the solver.
+    set sat [$s3 solveLeast]
+    set types {}
+    foreach port $ports {
+	lappend types [[$port getType] toString]
+    }
+    set memoizable [java::cast ptolemy.graph.MemoizableCPO $lattice]
+    list $sat $types [$memoizable isImmutable $tDouble] \
+	    [$memoizable isImmutable [$pDouble getType]] \
+	    [$memoizable isImmutable [java::new ptolemy.data.type.ArrayType \
+	    [java::field ptolemy.data.type.BaseType UNKNOWN]]]
+} {1 {double double double double double double} 0 1 0}
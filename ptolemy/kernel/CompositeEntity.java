@@ -174,37 +174,16 @@ public class CompositeEntity extends ComponentEntity {
      *  this method looks inside opaque entities, whereas deepEntityList()
      *  does not. The returned list does not include any entities that
      *  are class definitions.
-     *  @return a List of all atomic entities in the model.
+     *  The returned list is a new list that the caller may modify.
+     *  Callers that only read the list, such as directors that call
+     *  this method on every iteration, should call
+     *  {@link #unmodifiableAllAtomicEntityList()} instead.
+     *  This method is read-synchronized on the workspace.
+     *  @return A new list of all atomic entities in the model.
      */
     public List allAtomicEntityList() {
-        // We don't use an Iterator here so that we can modify the list
-        // rather than having both an Iterator and a result list.
-        //
-        // Note:
-        // deepEntityList() should be renamed to deepOpaqueEntityList()
-        // allAtomicEntityList() to deepAtomicEntityList()
-        // However, the change would require a fair amount of work.
-        //LinkedList entities = (LinkedList) deepEntityList();
-        List entities = deepEntityList();
-
-        for (int i = 0; i < entities.size(); i++) {
-            Object entity = entities.get(i);
-
-            if (entity instanceof CompositeEntity) {
-                // Remove the composite actor and add its containees.
-                entities.remove(i);
-
-                // Note that removing an element from the list causes
-                // the indices of later elements to shift forward by 1.
-                // We reduce the index i by one to match the index in
-                // the list.
-                i--;
-                entities.addAll(((CompositeEntity) entity)
-                        .allAtomicEntityList());
-            }
-        }
-
-        return entities;
+        List<?> entities = unmodifiableAllAtomicEntityList();
+        return new LinkedList<Object>(entities);
     }
 
     /** Allow or disallow connections that are created using the connect()
@@ -291,6 +270,9 @@ public class CompositeEntity extends ComponentEntity {
 
             newEntity._containedEntities = new NamedList(newEntity);
             newEntity._containedRelations = new NamedList(newEntity);
+            newEntity._allAtomicEntityListVersion = -1L;
+            newEntity._deepEntityListVersion = -1L;
+            newEntity._deepOpaqueEntityListVersion = -1L;
 
             // Clone the contained relations.
             Iterator relations = relationList().iterator();
@@ -668,59 +650,35 @@ public class CompositeEntity extends ComponentEntity {
      *  contained by this entity.  The list will be empty if there
      *  are no such contained entities. This list does not include
      *  class definitions nor anything contained by them.
+     *  The returned list is a new list that the caller may modify.
+     *  Callers that only read the list should call
+     *  {@link #unmodifiableDeepOpaqueEntityList()} instead.
      *  This method is read-synchronized on the workspace.
-     *  @return A list of opaque ComponentEntity objects.
+     *  @return A new list of opaque ComponentEntity objects.
      *  @see #classDefinitionList()
      *  @see #allAtomicEntityList()
      */
     public List deepOpaqueEntityList() {
-        try {
-            _workspace.getReadAccess();
-            List results = new ArrayList();
-            _deepOpaqueEntityList(results);
-            return results;
-        } finally {
-            _workspace.doneReading();
-        }
+        List<?> entities = unmodifiableDeepOpaqueEntityList();
+        return new ArrayList<Object>(entities);
     }
 
     /** List the opaque entities that are directly or indirectly
      *  contained by this entity.  The list will be empty if there
      *  are no such contained entities. This list does not include
      *  class definitions nor anything contained by them.
+     *  The returned list is a new list that the caller may modify.
+     *  Callers that only read the list, such as directors that call
+     *  this method on every iteration, should call
+     *  {@link #unmodifiableDeepEntityList()} instead.
      *  This method is read-synchronized on the workspace.
-     *  @return A list of opaque ComponentEntity objects.
+     *  @return A new list of opaque ComponentEntity objects.
      *  @see #classDefinitionList()
      *  @see #allAtomicEntityList()
      */
     public List deepEntityList() {
-        try {
-            _workspace.getReadAccess();
-
-            LinkedList result = new LinkedList();
-
-            // This might be called from within a superclass constructor,
-            // in which case there are no contained entities yet.
-            if (_containedEntities != null) {
-                Iterator entities = _containedEntities.elementList().iterator();
-                while (entities.hasNext()) {
-                    ComponentEntity entity = (ComponentEntity) entities.next();
-
-                    if (!entity.isClassDefinition()) {
-                        if (entity.isOpaque()) {
-                            result.add(entity);
-                        } else {
-                            result.addAll(((CompositeEntity) entity)
-                                    .deepEntityList());
-                        }
-                    }
-                }
-            }
-
-            return result;
-        } finally {
-            _workspace.doneReading();
-        }
+        List<?> entities = unmodifiableDeepEntityList();
+        return new LinkedList<Object>(entities);
     }
 
     /** List the NamedObjs that are directly or indirectly
@@ -2124,6 +2082,138 @@ public class CompositeEntity extends ComponentEntity {
         return candidate;
     }
 
+    /** Return an unmodifiable list that consists of all the atomic
+     *  entities in a model.  This method returns the same elements as
+     *  {@link #allAtomicEntityList()}, but the list is cached until the
+     *  version of the workspace changes, so calling this method
+     *  repeatedly on a model that does not change does not construct
+     *  new lists.  The caller must not modify the list, and should not
+     *  keep it after the model changes.
+     *  This method is read-synchronized on the workspace.
+     *  @return An unmodifiable list of all atomic entities in the model.
+     */
+    public List unmodifiableAllAtomicEntityList() {
+        try {
+            _workspace.getReadAccess();
+
+            long version = _workspace.getVersion();
+            if (version == _allAtomicEntityListVersion) {
+                return _allAtomicEntityListCache;
+            }
+
+            // Note:
+            // deepEntityList() should be renamed to deepOpaqueEntityList()
+            // allAtomicEntityList() to deepAtomicEntityList()
+            // However, the change would require a fair amount of work.
+            List<?> entities = unmodifiableDeepEntityList();
+            List<ComponentEntity> result = new ArrayList<ComponentEntity>(
+                    entities.size());
+            List<CompositeEntity> composites = new LinkedList<CompositeEntity>();
+
+            for (Object entity : entities) {
+                if (entity instanceof CompositeEntity) {
+                    composites.add((CompositeEntity) entity);
+                } else {
+                    result.add((ComponentEntity) entity);
+                }
+            }
+
+            // Replace each composite actor with its containees, which
+            // are added at the end of the list.
+            for (CompositeEntity composite : composites) {
+                for (Object entity : composite
+                        .unmodifiableAllAtomicEntityList()) {
+                    result.add((ComponentEntity) entity);
+                }
+            }
+
+            _allAtomicEntityListCache = Collections.unmodifiableList(result);
+            _allAtomicEntityListVersion = version;
+            return _allAtomicEntityListCache;
+        } finally {
+            _workspace.doneReading();
+        }
+    }
+
+    /** Return an unmodifiable list of the opaque entities that are
+     *  directly or indirectly contained by this entity.  This method
+     *  returns the same elements as {@link #deepEntityList()}, but the
+     *  list is cached until the version of the workspace changes.
+     *  The caller must not modify the list, and should not keep it
+     *  after the model changes.
+     *  This method is read-synchronized on the workspace.
+     *  @return An unmodifiable list of opaque ComponentEntity objects.
+     */
+    public List unmodifiableDeepEntityList() {
+        try {
+            _workspace.getReadAccess();
+
+            // The version is read first, so that if populating a lazy
+            // composite below changes it, the result is not reused.
+            long version = _workspace.getVersion();
+            if (version == _deepEntityListVersion) {
+                return _deepEntityListCache;
+            }
+
+            List<ComponentEntity> result = new ArrayList<ComponentEntity>();
+
+            // This might be called from within a superclass constructor,
+            // in which case there are no contained entities yet.
+            if (_containedEntities != null) {
+                Iterator entities = _containedEntities.elementList().iterator();
+                while (entities.hasNext()) {
+                    ComponentEntity entity = (ComponentEntity) entities.next();
+
+                    if (!entity.isClassDefinition()) {
+                        if (entity.isOpaque()) {
+                            result.add(entity);
+                        } else {
+                            for (Object deepEntity : ((CompositeEntity) entity)
+                                    .unmodifiableDeepEntityList()) {
+                                result.add((ComponentEntity) deepEntity);
+                            }
+                        }
+                    }
+                }
+            }
+
+            _deepEntityListCache = Collections.unmodifiableList(result);
+            _deepEntityListVersion = version;
+            return _deepEntityListCache;
+        } finally {
+            _workspace.doneReading();
+        }
+    }
+
+    /** Return an unmodifiable list of the opaque entities that are
+     *  directly or indirectly contained by this entity.  This method
+     *  returns the same elements as {@link #deepOpaqueEntityList()}, but
+     *  the list is cached until the version of the workspace changes.
+     *  The caller must not modify the list, and should not keep it
+     *  after the model changes.
+     *  This method is read-synchronized on the workspace.
+     *  @return An unmodifiable list of opaque ComponentEntity objects.
+     */
+    public List unmodifiableDeepOpaqueEntityList() {
+        try {
+            _workspace.getReadAccess();
+
+            long version = _workspace.getVersion();
+            if (version == _deepOpaqueEntityListVersion) {
+                return _deepOpaqueEntityListCache;
+            }
+
+            List<ComponentEntity> results = new ArrayList<ComponentEntity>();
+            _deepOpaqueEntityList(results);
+
+            _deepOpaqueEntityListCache = Collections.unmodifiableList(results);
+            _deepOpaqueEntityListVersion = version;
+            return _deepOpaqueEntityListCache;
+        } finally {
+            _workspace.doneReading();
+        }
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////                         protected methods                 ////
 
@@ -2810,12 +2900,30 @@ public class CompositeEntity extends ComponentEntity {
     ///////////////////////////////////////////////////////////////////
     ////                         private variables                 ////
 
+    /** Cache of the list of all atomic entities. */
+    private transient List<ComponentEntity> _allAtomicEntityListCache;
+
+    /** Workspace version for cache. */
+    private transient long _allAtomicEntityListVersion = -1L;
+
     /** Cache of class definition list. */
     private transient List _classDefinitionListCache;
 
     /** Workspace version for cache. */
     private transient long _classDefinitionListVersion = -1L;
 
+    /** Cache of the deep entity list. */
+    private transient List<ComponentEntity> _deepEntityListCache;
+
+    /** Workspace version for cache. */
+    private transient long _deepEntityListVersion = -1L;
+
+    /** Cache of the deep opaque entity list. */
+    private transient List<ComponentEntity> _deepOpaqueEntityListCache;
+
+    /** Workspace version for cache. */
+    private transient long _deepOpaqueEntityListVersion = -1L;
+
     /** The default value icon.  This is static so that we avoid doing
      *  string concatenation each time we construct this object.
      */
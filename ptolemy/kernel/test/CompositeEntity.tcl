@@ -1621,3 +1621,60 @@ test CompositeEntity-24.3 {Test exportMoML with level-crossing links} {
     <link relation1="C.R" relation2="R"/>
 </entity>
 }
+
+######################################################################
+####
+#
+test CompositeEntity-25.1 {unmodifiableDeepEntityList is cached until the workspace changes} {
+    set w [java::new ptolemy.kernel.util.Workspace W]
+    set a [java::new ptolemy.kernel.CompositeEntity $w]
+    $a setName A
+    set b [java::new ptolemy.kernel.CompositeEntity $a B]
+    set c [java::new ptolemy.kernel.ComponentEntity $b C]
+    set l1 [$a unmodifiableDeepEntityList]
+    set l2 [$a unmodifiableDeepEntityList]
+    set identical [expr {[java::call System identityHashCode $l1] == \
+			     [java::call System identityHashCode $l2]}]
+    set d [java::new ptolemy.kernel.ComponentEntity $b D]
+    set l3 [$a unmodifiableDeepEntityList]
+    catch {$l3 clear} errMsg
+    list $identical [listToNames $l3] \
+	[listToNames [$a unmodifiableAllAtomicEntityList]] \
+	[listToNames [$a unmodifiableDeepOpaqueEntityList]] \
+	[regexp {UnsupportedOperationException} $errMsg]
+} {1 {C D} {C D} {C D} 1}
+
+######################################################################
+####
+#
+test CompositeEntity-25.1.1 {deepEntityList returns a new list that may be modified} {
+    # Uses $a from 25.1 above
+    set l1 [$a deepEntityList]
+    set l2 [$a deepEntityList]
+    set identical [expr {[java::call System identityHashCode $l1] == \
+			     [java::call System identityHashCode $l2]}]
+    $l1 clear
+    set atomic [$a allAtomicEntityList]
+    $atomic {remove int} 0
+    set opaque [$a deepOpaqueEntityList]
+    $opaque clear
+    list $identical [$l1 size] [listToNames $l2] [listToNames $atomic] \
+	[listToNames [$a unmodifiableDeepEntityList]]
+} {0 0 {C D} D {C D}}
+
+######################################################################
+####
+#
+test CompositeEntity-25.2 {attributeList(Class) is cached until the workspace changes} {
+    # Uses $a from 25.1 above
+    set p1 [java::new ptolemy.kernel.util.StringAttribute $a p1]
+    set attributeClass [$p1 getClass]
+    set l1 [$a attributeList $attributeClass]
+    set p2 [java::new ptolemy.kernel.util.StringAttribute $a p2]
+    set l2 [$a attributeList $attributeClass]
+    $p1 setContainer [java::null]
+    set l3 [$a attributeList $attributeClass]
+    $l3 clear
+    list [listToNames $l1] [listToNames $l2] [listToNames $l3] \
+	[listToNames [$a attributeList $attributeClass]]
+} {p1 {p1 p2} {} p2}
@@ -119,6 +119,9 @@ public class Attribute extends NamedObj {
                     container._attributes = new NamedList();
                 }
                 container._attributes.append(this);
+                // The version does not change, so clear the lists
+                // cached by attributeList(Class).
+                container._attributeLists = null;
 
                 _container = container;
                 // Make sure even the debugging messages are unchanged.
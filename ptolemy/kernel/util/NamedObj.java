@@ -392,36 +392,20 @@ DebugListener, Derivable, MoMLExportable, ModelErrorHandler, Moveable {
     /** Return a list of the attributes contained by this object that
      *  are instances of the specified class.  If there are no such
      *  instances, then return an empty list.
+     *  The attributes are indexed by class until the version of the
+     *  workspace changes, so calling this method repeatedly on a model
+     *  that does not change does not search all the attributes again.
+     *  The returned list is a new list that the caller may modify.
+     *  Callers that only read the list, such as directors that call
+     *  this method on every iteration, should call
+     *  {@link #unmodifiableAttributeList(Class)} instead.
      *  This method is read-synchronized on the workspace.
      *  @param filter The class of attribute of interest.
      *  @param <T> The type of that class.
-     *  @return A list of instances of specified class.
+     *  @return A new list of instances of specified class.
      */
     public <T> List<T> attributeList(Class<T> filter) {
-        try {
-            _workspace.getReadAccess();
-
-            if (_attributes == null) {
-                _attributes = new NamedList();
-            }
-
-            List<T> result = new LinkedList<T>();
-            Iterator<?> attributes = _attributes.elementList().iterator();
-
-            while (attributes.hasNext()) {
-                Object attribute = attributes.next();
-
-                if (filter.isInstance(attribute)) {
-                    @SuppressWarnings("unchecked")
-                    T tAttribute = (T) attribute;
-                    result.add(tAttribute);
-                }
-            }
-
-            return result;
-        } finally {
-            _workspace.doneReading();
-        }
+        return new LinkedList<T>(unmodifiableAttributeList(filter));
     }
 
     /** React to a change in the type of an attribute.  This method is
@@ -512,6 +496,7 @@ DebugListener, Derivable, MoMLExportable, ModelErrorHandler, Moveable {
             // workspace because this only affects its directory, and methods
             // to access the directory are synchronized.
             newObject._attributes = null;
+            newObject._attributeLists = null;
 
             newObject._decoratorAttributes = new HashMap<Decorator, DecoratorAttributes>();
             newObject._decoratorAttributesVersion = -1L;
@@ -1461,6 +1446,25 @@ DebugListener, Derivable, MoMLExportable, ModelErrorHandler, Moveable {
         return false;
     }
 
+    /** Return true if there are change requests that have been
+     *  requested but not yet executed. If there is a container, this
+     *  delegates to the container.
+     *  @return True if change requests are pending.
+     *  @see #executeChangeRequests()
+     *  @see #requestChange(ChangeRequest)
+     */
+    public boolean isChangeRequestPending() {
+        NamedObj container = getContainer();
+
+        if (container != null) {
+            return container.isChangeRequestPending();
+        }
+
+        synchronized (_changeLock) {
+            return _changeRequests != null && _changeRequests.size() > 0;
+        }
+    }
+
     /** Return true if setDeferringChangeRequests(true) has been called
      *  to specify that change requests should be deferred. If there
      *  is a container, this delegates to the container.
@@ -2138,6 +2142,63 @@ DebugListener, Derivable, MoMLExportable, ModelErrorHandler, Moveable {
         return candidate;
     }
 
+    /** Return an unmodifiable list of the attributes contained by this
+     *  object that are instances of the specified class.  This method
+     *  returns the same elements as {@link #attributeList(Class)}, but
+     *  the list is cached until the version of the workspace changes,
+     *  so calling this method repeatedly on a model that does not
+     *  change does not construct new lists.  The caller must not modify
+     *  the list, and should not keep it after the model changes.
+     *  This method is read-synchronized on the workspace.
+     *  @param filter The class of attribute of interest.
+     *  @param <T> The type of that class.
+     *  @return An unmodifiable list of instances of specified class.
+     */
+    public <T> List<T> unmodifiableAttributeList(Class<T> filter) {
+        try {
+            _workspace.getReadAccess();
+
+            if (_attributes == null) {
+                _attributes = new NamedList();
+            }
+
+            long version = _workspace.getVersion();
+            AttributeLists attributeLists = _attributeLists;
+            if (attributeLists == null || attributeLists.version != version) {
+                attributeLists = new AttributeLists(version);
+                _attributeLists = attributeLists;
+            }
+
+            // Several threads may have read access at once.
+            synchronized (attributeLists) {
+                @SuppressWarnings("unchecked")
+                List<T> result = (List<T>) attributeLists.lists.get(filter);
+                if (result != null) {
+                    return result;
+                }
+
+                List<T> list = new ArrayList<T>();
+                Iterator<?> attributes = _attributes.elementList().iterator();
+
+                while (attributes.hasNext()) {
+                    Object attribute = attributes.next();
+
+                    if (filter.isInstance(attribute)) {
+                        @SuppressWarnings("unchecked")
+                        T tAttribute = (T) attribute;
+                        list.add(tAttribute);
+                    }
+                }
+
+                result = Collections.unmodifiableList(list);
+                attributeLists.lists.put(filter, result);
+                return result;
+            }
+        } finally {
+            _workspace.doneReading();
+        }
+    }
+
     /** Validate attributes deeply contained by this object if they
      *  implement the Settable interface by calling their validate() method.
      *  Errors that are triggered by this validation are handled by calling
@@ -3468,6 +3529,13 @@ DebugListener, Derivable, MoMLExportable, ModelErrorHandler, Moveable {
     /** The Attributes attached to this object. */
     NamedList _attributes;
 
+    /** The lists copied by attributeList(Class) for a version of
+     *  the workspace, or null if there are none.  Attribute sets this
+     *  to null when it adds itself to this object without incrementing
+     *  the version of the workspace.
+     */
+    transient AttributeLists _attributeLists;
+
     ///////////////////////////////////////////////////////////////////
     ////                         private variables                 ////
 
@@ -3574,6 +3642,25 @@ DebugListener, Derivable, MoMLExportable, ModelErrorHandler, Moveable {
         private Iterator<?> _attributeListIterator = null;
     }
 
+    /** The lists copied by attributeList(Class) for a version of the
+     *  workspace, indexed by the class of the attributes.  Accesses to
+     *  the lists must be synchronized on this object.
+     */
+    static class AttributeLists {
+        /** Create an empty index for the specified workspace version.
+         *  @param version The version of the workspace.
+         */
+        AttributeLists(long version) {
+            this.version = version;
+        }
+
+        /** The lists of attributes, indexed by class. */
+        final Map<Class<?>, List<?>> lists = new HashMap<Class<?>, List<?>>();
+
+        /** The version of the workspace for which the lists are valid. */
+        final long version;
+    }
+
     /** Serializable version of the Java Object class. */
     @SuppressWarnings("serial")
     private static class SerializableObject extends Object implements
@@ -108,6 +108,21 @@ public class PtolemyThread extends Thread implements Debuggable {
         super(group, target, name);
     }
 
+    /** Construct a new PtolemyThread object with the specified stack
+     *  size. This constructor has the same effect as the
+     *  corresponding constructor of Thread.
+     *  @param group The thread group.
+     *  @param target The object whose run method is called.
+     *  @param name The name of the new thread.
+     *  @param stackSize The desired stack size in bytes, or zero to
+     *   use the default of the virtual machine.
+     *  @exception SecurityException If the superclass constructor throws it.
+     */
+    public PtolemyThread(ThreadGroup group, Runnable target, String name,
+            long stackSize) {
+        super(group, target, name, stackSize);
+    }
+
     /** Construct a new PtolemyThread object. This constructor has the same
      *  effect as PtolemyThread(group, null, name).
      *  @param group The thread group.
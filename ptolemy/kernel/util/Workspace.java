@@ -130,6 +130,27 @@ import java.util.WeakHashMap;
   to avoid invoking them within blocks that hold read access. Note that
   there is no difficulty acquiring read access from within a block
   holding write access.
+  <p>
+  For very frequently executed code that only reads cached state that is
+  invalidated by the version number, such as the receiver caches in
+  IOPort, acquiring read access can become a bottleneck when many threads
+  use the same workspace, because getReadAccess() and doneReading()
+  synchronize on the workspace.  If optimistic reads have been enabled
+  with setOptimisticReadsEnabled(true), such code can instead use the
+  following pattern, which acquires no lock when no thread is writing:
+  <pre>
+     long stamp = _workspace.tryOptimisticRead();
+     if (stamp &gt;= 0L) {
+        ... read cached state that is valid for version stamp ...
+        if (_workspace.validateOptimisticRead(stamp)) {
+           ... the state that was read is consistent ...
+        }
+     }
+     ... otherwise fall back to getReadAccess() and doneReading() ...
+  </pre>
+  Code in such a block must not modify anything and must be prepared to
+  read inconsistent state that is subsequently discarded because the
+  validation fails.
 
  @author Edward A. Lee, Mudit Goel, Lukito Muliadi, Xiaojun Liu
  @version $Id$
@@ -591,6 +612,14 @@ public final class Workspace implements Nameable {
         _version++;
     }
 
+    /** Return true if optimistic reads are enabled in this workspace.
+     *  @return True if tryOptimisticRead() may return a valid stamp.
+     *  @see #setOptimisticReadsEnabled(boolean)
+     */
+    public final boolean isOptimisticReadsEnabled() {
+        return _optimisticReadsEnabled;
+    }
+
     /** Reacquire read permission on the workspace for
      *  the current thread. Call this after a call to
      *  releaseReadPermissions().
@@ -667,6 +696,20 @@ public final class Workspace implements Nameable {
         incrVersion();
     }
 
+    /** Enable or disable optimistic reads.  If optimistic reads are
+     *  disabled, which is the default, then tryOptimisticRead() always
+     *  returns -1, so callers always fall back to getReadAccess().
+     *  Enabling optimistic reads is useful when many threads, such
+     *  as those of a process-oriented director, send and receive
+     *  tokens in the same workspace.
+     *  @param enabled True to enable optimistic reads.
+     *  @see #isOptimisticReadsEnabled()
+     *  @see #tryOptimisticRead()
+     */
+    public final void setOptimisticReadsEnabled(boolean enabled) {
+        _optimisticReadsEnabled = enabled;
+    }
+
     /** Return a concise description of the object.
      *  @return The class name and name.
      */
@@ -675,6 +718,48 @@ public final class Workspace implements Nameable {
         return getClass().getName() + " {" + getFullName() + "}";
     }
 
+    /** Return a stamp for an optimistic read of the workspace, or -1
+     *  if an optimistic read is not possible because optimistic reads
+     *  are disabled, because a thread has write access, or because a
+     *  thread is waiting for write access.  The stamp is the current
+     *  version number.  This method does not synchronize on the
+     *  workspace, and the calling thread does not acquire read access,
+     *  so there is no need to call doneReading().  Instead, any state that
+     *  is read after this method returns may be used only if
+     *  validateOptimisticRead() subsequently returns true when given the
+     *  returned stamp.  Note that a thread that holds write access always
+     *  gets -1, so it uses the normal read access.
+     *  @return A non-negative stamp, or -1 if an optimistic read is not
+     *   possible.
+     *  @see #validateOptimisticRead(long)
+     */
+    public final long tryOptimisticRead() {
+        if (!_optimisticReadsEnabled || _writer != null
+                || _waitingWriteRequests != 0) {
+            return -1L;
+        }
+        return _version;
+    }
+
+    /** Return true if no thread has acquired write access and the version
+     *  number has not changed since the specified stamp was obtained from
+     *  tryOptimisticRead().  If this returns true, then the state read
+     *  since the stamp was obtained is consistent with the version
+     *  given by the stamp, just as if it had been read while holding
+     *  read access.  Changes made while holding write access and released
+     *  with doneTemporaryWriting() do not increment the version, so such
+     *  changes are not detected once write access has been released.
+     *  This method does not synchronize on the workspace.
+     *  @param stamp A stamp returned by tryOptimisticRead().
+     *  @return True if the stamp is still valid.
+     *  @see #tryOptimisticRead()
+     */
+    public final boolean validateOptimisticRead(long stamp) {
+        // Check the writer before the version: _doneWriting() increments
+        // the version before it clears _writer.
+        return stamp >= 0L && _writer == null && _version == stamp;
+    }
+
     /** Release all the read accesses held by the current thread and suspend
      *  the thread by calling Object.wait() on the specified object. When the
      *  call returns, re-acquire all the read accesses held earlier by the
@@ -1056,15 +1141,21 @@ public final class Workspace implements Nameable {
     /** @serial The name. */
     private String _name;
 
-    /** @serial Version number. */
-    private long _version = 0;
+    /** Indicator that tryOptimisticRead() may return a valid stamp. */
+    private volatile boolean _optimisticReadsEnabled = false;
+
+    /** @serial Version number.  This is volatile so that
+     *  tryOptimisticRead() and validateOptimisticRead() can read it
+     *  without synchronizing on the workspace.
+     */
+    private volatile long _version = 0;
 
     /** @serial The currently writing thread (if any). */
-    private transient Thread _writer;
+    private transient volatile Thread _writer;
 
     /** @serial The number of pending write requests.
      */
-    private int _waitingWriteRequests = 0;
+    private volatile int _waitingWriteRequests = 0;
 
     /** @serial The number of active write permissions
      *  (all to the same thread).
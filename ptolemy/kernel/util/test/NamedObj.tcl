@@ -663,6 +663,26 @@ test NamedObj-13.2 {Test attributeList with filter} {
     listToNames [$a attributeList [$a1 getClass]]
 } {A0 A2}
 
+test NamedObj-13.3 {Test unmodifiableAttributeList} {
+    set n [java::new ptolemy.kernel.util.Workspace]
+    set a [java::new ptolemy.kernel.util.NamedObj $n "A"]
+    set a1 [java::new ptolemy.kernel.util.Attribute $a "A0"]
+    set a2 [java::new ptolemy.kernel.util.Attribute $a "A2"]
+    set class [$a1 getClass]
+    set list1 [$a unmodifiableAttributeList $class]
+    set list2 [$a unmodifiableAttributeList $class]
+    catch {$list1 clear} errMsg
+    # attributeList() returns a new list that may be modified.
+    set copy [$a attributeList $class]
+    $copy clear
+    set a3 [java::new ptolemy.kernel.util.Attribute $a "A3"]
+    set list3 [$a unmodifiableAttributeList $class]
+    list [listToNames $list1] \
+	    [expr {[java::call System identityHashCode $list1] \
+		       == [java::call System identityHashCode $list2]}] \
+	    $errMsg [$copy size] [listToNames $list3]
+} {{A0 A2} 1 java.lang.UnsupportedOperationException 0 {A0 A2 A3}}
+
 test NamedObj-13.4 {Test getAttributes, which is deprecated } {
     set n [java::new ptolemy.kernel.util.Workspace]
     set a [java::new ptolemy.kernel.util.NamedObj $n "A"]
@@ -730,6 +750,19 @@ test NamedObj-15.1 {Test addChangeListener, removeChangeListener } {
     list $output 
 } {{}}
 
+test NamedObj-15.2 {Test isChangeRequestPending} {
+    set n [java::new ptolemy.kernel.util.Workspace "N"]
+    set a [java::new ptolemy.kernel.util.NamedObj $n "A"]
+    set b [java::new ptolemy.kernel.util.Attribute $a "B"]
+    set r1 [$b isChangeRequestPending]
+    $a setDeferringChangeRequests true
+    $b requestChange [java::new ptolemy.kernel.undo.RedoChangeRequest $a $a]
+    set r2 [$a isChangeRequestPending]
+    set r3 [$b isChangeRequestPending]
+    $a executeChangeRequests
+    list $r1 $r2 $r3 [$b isChangeRequestPending]
+} {0 1 1 0}
+
 ######################################################################
 ####
 #
@@ -404,3 +404,33 @@ test Workspace-9.1 {Test handleModelError} {
     list $errMsg
 } {{ptolemy.kernel.util.IllegalActionException: myException
   in .n1 and .n2}}
+
+######################################################################
+#### 
+test Workspace-10.1 {Test optimistic reads} {
+    set w [java::new ptolemy.kernel.util.Workspace W]
+    set disabled [$w tryOptimisticRead]
+    $w setOptimisticReadsEnabled true
+    set stamp [$w tryOptimisticRead]
+    set valid [$w validateOptimisticRead $stamp]
+    $w incrVersion
+    set invalid [$w validateOptimisticRead $stamp]
+    list $disabled [$w isOptimisticReadsEnabled] \
+	    [expr {$stamp == [$w getVersion] - 1}] $valid $invalid
+} {-1 1 1 1 0}
+
+######################################################################
+#### 
+test Workspace-10.2 {Test optimistic reads while writing} {
+    set w [java::new ptolemy.kernel.util.Workspace W]
+    $w setOptimisticReadsEnabled true
+    set stamp [$w tryOptimisticRead]
+    $w getWriteAccess
+    set whileWriting [$w tryOptimisticRead]
+    set validWhileWriting [$w validateOptimisticRead $stamp]
+    $w doneWriting
+    set stamp2 [$w tryOptimisticRead]
+    list $whileWriting $validWhileWriting \
+	    [$w validateOptimisticRead $stamp] \
+	    [$w validateOptimisticRead $stamp2]
+} {-1 0 0 1}
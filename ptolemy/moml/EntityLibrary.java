@@ -576,6 +576,35 @@ Librariable {
         }
     }
 
+    /** Return an unmodifiable list of the attributes contained by this
+     *  object that are instances of the specified class.  This overrides
+     *  the base class to first populate the library, if necessary, by
+     *  calling populate().
+     *  This method is read-synchronized on the workspace.
+     *  @param filter The class of attribute of interest.
+     *  @param <T> The type of that class.
+     *  @return An unmodifiable list of instances of specified class.
+     */
+    @Override
+    public <T> List<T> unmodifiableAttributeList(Class<T> filter) {
+        populate();
+        return super.unmodifiableAttributeList(filter);
+    }
+
+    /** Return an unmodifiable list of the opaque entities that are
+     *  directly or indirectly contained by this entity.  This overrides
+     *  the base class to first populate the library, if necessary, by
+     *  calling populate().  Note that this may result in a runtime
+     *  exception being thrown (if there is an error evaluating the MoML).
+     *  This method is read-synchronized on the workspace.
+     *  @return An unmodifiable list of opaque ComponentEntity objects.
+     */
+    @Override
+    public List unmodifiableDeepEntityList() {
+        populate();
+        return super.unmodifiableDeepEntityList();
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////                         protected methods                 ////
 
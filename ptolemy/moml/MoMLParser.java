@@ -28,6 +28,7 @@
 package ptolemy.moml;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -42,7 +43,9 @@ import java.lang.reflect.InvocationTargetException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EmptyStackException;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -53,6 +56,11 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.ptolemy.classloading.ClassLoadingStrategy;
 import org.ptolemy.classloading.SimpleClassLoadingStrategy;
@@ -64,7 +72,9 @@ import com.microstar.xml.XmlParser;
 
 import ptolemy.actor.CompositeActor;
 import ptolemy.actor.IOPort;
-import ptolemy.actor.parameters.SharedParameter;
+import ptolemy.actor.LazyTypedCompositeActor;
+import ptolemy.data.expr.SettableValidator;
+import ptolemy.data.expr.Variable;
 import ptolemy.kernel.ComponentEntity;
 import ptolemy.kernel.ComponentPort;
 import ptolemy.kernel.ComponentRelation;
@@ -584,7 +594,8 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
         // Apply MoMLFilters here.
         // Filters can filter out graphical classes, or change
         // the names of ports to handle backward compatibility.
-        if (_filterList != null) {
+        // A snapshot records MoML that has already been filtered.
+        if (_filterList != null && !_replayingSnapshot) {
             // FIXME: There is a slight risk of xmlParser being null here.
             if (_xmlParser == null) {
                 throw new InternalErrorException(
@@ -838,20 +849,41 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
 
             // Force evaluation of parameters so that any listeners are notified.
             // This will also force evaluation of any parameter that this variable
-            // depends on.
-            Iterator parameters = _paramsToParse.iterator();
-
+            // depends on.  The parameters are validated in the order of their
+            // dependencies, so that each is evaluated once.
             // As an optimization, if there are multiple instances of
             // SharedParameter in the list that are shared, we only
             // validate the first of these. This prevents a square-law
             // increase in complexity, because each validation of an
             // instance of SharedParameter causes validation of all
             // its shared instances. EAL 9/10/06.
-            HashSet parametersValidated = new HashSet();
-            while (parameters.hasNext()) {
-                Settable param = (Settable) parameters.next();
-
-                if (parametersValidated.contains(param)) {
+            // The validator does this by skipping the settables returned
+            // by validate().
+            _validator = new SettableValidator();
+            for (Settable param : _paramsToParse) {
+                _validator.add(param);
+
+                // Also validate derived objects.
+                Iterator derivedParams = ((NamedObj) param).getDerivedList()
+                        .iterator();
+
+                while (derivedParams.hasNext()) {
+                    _validator.add((Settable) derivedParams.next());
+                }
+            }
+            // If the model is new and the evaluation of parameters is
+            // deferred, then only validate the settables that are not
+            // variables, and defer the rest until the model is run.
+            // Class definitions are not run, but cloned, so their
+            // parameters are always validated.
+            boolean newModel = _newToplevel
+                    && _toplevel != null
+                    && !(_toplevel instanceof Instantiable && ((Instantiable) _toplevel)
+                            .isClassDefinition());
+            boolean defer = _deferParameterEvaluation && newModel;
+
+            for (Settable param : _validator.sort()) {
+                if (defer && param instanceof Variable) {
                     continue;
                 }
 
@@ -860,22 +892,7 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
                 // the mechanism in PtolemyQuery that carefully prompts
                 // the user for corrected parameter values.
                 try {
-                    param.validate();
-
-                    // Also validate derived objects.
-                    Iterator derivedParams = ((NamedObj) param)
-                            .getDerivedList().iterator();
-
-                    while (derivedParams.hasNext()) {
-                        Settable derivedParam = (Settable) derivedParams.next();
-                        derivedParam.validate();
-                        parametersValidated.add(derivedParam);
-                    }
-
-                    if (param instanceof SharedParameter) {
-                        parametersValidated.addAll(((SharedParameter) param)
-                                .sharedParameterSet());
-                    }
+                    _validator.validate(param);
                 } catch (Exception ex) {
                     if (_handler != null) {
                         int reply = _handler.handleError(
@@ -892,6 +909,15 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
                     throw ex;
                 }
             }
+            if (defer) {
+                _validator.defer(_toplevel);
+            }
+
+            // Populate the lazy composites of a new model in the
+            // background, so that they are ready when it is run.
+            if (newModel && LazyTypedCompositeActor.isPrefetching()) {
+                LazyTypedCompositeActor.prefetch(_toplevel);
+            }
         } finally {
             if (_handler != null) {
                 _handler.enableErrorSkipping(false);
@@ -912,7 +938,7 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
         // Apply MoMLFilters here.
         // FIXME: Why is this done first?  Perhaps it should be
         // done last?
-        if (_filterList != null) {
+        if (_filterList != null && !_replayingSnapshot) {
             Iterator filters = _filterList.iterator();
 
             while (filters.hasNext()) {
@@ -1436,6 +1462,35 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
         return _filterList;
     }
 
+    /** Return true if the evaluation of the parameters of new models
+     *  is deferred.
+     *  @return True if the evaluation of parameters is deferred.
+     *  @see #setDeferParameterEvaluation(boolean)
+     */
+    public static boolean isDeferringParameterEvaluation() {
+        return _deferParameterEvaluation;
+    }
+
+    /** Return the directory in which snapshots of parsed models are
+     *  kept, or null if snapshots are not used.
+     *  @return The snapshot directory, or null.
+     *  @see #setSnapshotDirectory(File)
+     */
+    public static File getSnapshotDirectory() {
+        return _snapshotDirectory;
+    }
+
+    /** Return the validator that validated the parameters at the
+     *  end of the last document that this parser parsed, or null if
+     *  there is none.  The validator reports the number of parameters
+     *  that were evaluated and skipped.
+     *  @return The validator, or null.
+     *  @see #setDeferParameterEvaluation(boolean)
+     */
+    public SettableValidator getSettableValidator() {
+        return _validator;
+    }
+
     /** Get the top-level entity associated with this parser, or null if none.
      *  @return The top-level associated with this parser.
      *  @see #setToplevel(NamedObj)
@@ -1516,9 +1571,20 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
                         throw ex;
                     }
                 }
+                byte[] content = _readBytes(inputStream);
+                String moml = new String(content, Charset.defaultCharset());
+                _preloadClasses(moml);
+
                 // Pass the input URL in case we need it for an error message.
                 // See test MoMLParser-31.1
-                NamedObj result = parse(base, input.toString(), inputStream);
+                NamedObj result;
+                if (_snapshotDirectory != null) {
+                    result = _parseWithSnapshot(base, input.toString(),
+                            content, moml);
+                } else {
+                    result = parse(base, input.toString(),
+                            new StringReader(moml));
+                }
                 // Note that the parse()  call above can parse a model that
                 // call parseMoML() in the expression language which calls
                 // resetAll(), which sets _imports to null.
@@ -1615,125 +1681,7 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
      */
     public NamedObj parse(URL base, String systemID, Reader reader)
             throws Exception {
-        _base = base;
-
-        // Invoking a Vertx demo and then a Nashorn demo can result in
-        // Ptolemy classes not being found.  In particular, exporting
-        // two models in a row by editing
-        // $PTII/ptolemy/configs/models.txt so that it contains:
-        // $CLASSPATH/ptolemy/actor/lib/vertx/demo/TokenTransmissionTime/Receiver.xml
-        // $CLASSPATH/ptolemy/demo/Robot/RandomWalkIntruder.xml
-        // and then running cd $PTII/ptolemy/vergil/basic/export/test/junit; make long_test
-        // resulted in the second model failing to find Ptolemy classes from within Nashorn
-        // See https://chess.eecs.berkeley.edu/ptexternal/wiki/Main/JSClassLoaderProblem
-        if (Thread.currentThread().getContextClassLoader() == null) {
-            Thread.currentThread().setContextClassLoader(ClassLoader.getSystemClassLoader());
-        }
-
-        Reader buffered = new BufferedReader(reader);
-
-        try {
-            // We allocate a new XmlParser each time so as to avoid leaks.
-            _xmlParser = new XmlParser();
-            _xmlParser.setHandler(this);
-            if (base == null) {
-                _xmlParser.parse(systemID, null, buffered);
-            } else {
-                // If we have tmp.moml and tmp/tmp2.moml and tmp.moml
-                // contains     <entity name="tmp2" class="tmp.tmp2">
-                // then we want to be sure that we set _xmlFile properly
-                // NOTE: I'm not sure if it is necessary to check to
-                // see if _xmlFile is null before hand, but it seems
-                // like it is safer to check before resetting it to null.
-                boolean xmlFileWasNull = false;
-
-                if (_xmlFile == null) {
-                    xmlFileWasNull = true;
-                    _setXmlFile(new URL(base.toExternalForm()));
-                }
-
-                try {
-                    _xmlParser.parse(base.toExternalForm(), null, buffered);
-                } finally {
-                    if (xmlFileWasNull) {
-                        _setXmlFile(null);
-                    }
-                }
-            }
-        } catch (CancelException ex) {
-            // Parse operation cancelled.
-            return null;
-        } catch (Exception ex) {
-            // If you change this code, try running
-            // ptolemy.moml.test.MoMLParserLeak with the heap profiler
-            // and look for leaks.
-            if (_toplevel != null && _toplevel instanceof ComponentEntity) {
-                try {
-                    ((ComponentEntity) _toplevel).setContainer(null);
-                } catch (Throwable throwable2) {
-                    // Ignore.  setContainer(null) might throw an exception
-                    // if there are deferrables, but we don't want to hide
-                    // the original exception.
-                    // This problem comes up with tests in
-                    // actor/gui/test/UserActorLibrary.tcl.
-                }
-                // Since the container is probably already null, then
-                // the setContainer(null) call probably did not do anything.
-                // so, we remove the object from the workspace so it
-                // can get gc'd.
-                // FIXME: perhaps we should do more of what
-                // ComponentEntity.setContainer() does and remove the ports?
-                try {
-                    _workspace.getWriteAccess();
-                    _workspace.remove(_toplevel);
-                } finally {
-                    _workspace.doneWriting();
-                }
-                _toplevel = null;
-            }
-
-            _paramsToParse.clear();
-            if (_scopeExtenders != null) {
-                _scopeExtenders.clear();
-            }
-            reset();
-            if (base != null) {
-                purgeModelRecord(base);
-            }
-            throw ex;
-        } finally {
-            // Avoid memory leaks
-            _xmlParser = null;
-            buffered.close();
-        }
-
-        if (_toplevel == null) {
-            // If we try to read a HSIF file but Ptolemy is not properly
-            // configured, then we may end up here.
-            throw new Exception(
-                    "Toplevel was null?  Perhaps the xml does not contain "
-                            + "a Ptolemy model?\n base ='" + base
-                            + "',\n reader = '" + reader + "'");
-        }
-
-        // Add a parser attribute to the toplevel to indicate a parser
-        // responsible for handling changes, unless there already is a
-        // parser, in which case we just set the parser to this one.
-        MoMLParser parser = ParserAttribute.getParser(_toplevel);
-
-        if (parser != this) {
-            // Force the parser to be this one.
-            ParserAttribute parserAttribute = (ParserAttribute) _toplevel
-                    .getAttribute("_parser", ParserAttribute.class);
-
-            if (parserAttribute == null) {
-                parserAttribute = new ParserAttribute(_toplevel, "_parser");
-            }
-
-            parserAttribute.setParser(this);
-        }
-
-        return _toplevel;
+        return _parse(base, systemID, reader, null);
     }
 
     /** Parse the given string, which contains MoML.
@@ -1841,12 +1789,15 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
     }
 
     /** Purge all records of models opened. This is here
-     *  for testing only.
+     *  for testing only.  This also purges the caches of the Java
+     *  classes and the files of MoML classes that have been found,
+     *  and of the Java classes that have not been found.
      *  @see #purgeModelRecord(URL)
      *  @see #resetAll()
      */
     public static void purgeAllModelRecords() {
         _imports = null;
+        _purgeClassCaches();
     }
 
     /** Purge any record of a model opened from the specified
@@ -2105,6 +2056,7 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
      */
     public static void setDefaultClassLoadingStrategy(ClassLoadingStrategy classLoadingStrategy) {
       _defaultClassLoadingStrategy = classLoadingStrategy;
+      _purgeClassCaches();
     }
 
     /** Get the the current static _defaultClassLoadingStrategy instance.
@@ -2218,6 +2170,47 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
         _modified = modified;
     }
 
+    /** Specify whether to defer the evaluation of the parameters of
+     *  new models.  At the end of a document, the parser validates the
+     *  parameters that the document set in the order of their
+     *  dependencies, see {@link SettableValidator}.  If the evaluation
+     *  is deferred and the document creates a new model that is not a
+     *  class definition, rather than modifying an existing one, then
+     *  the parameters that are instances of Variable are not validated.
+     *  Instead, each is evaluated when its value is first requested,
+     *  and they are validated by the Manager before preinitialize.
+     *  Until then, their containers are not notified with
+     *  attributeChanged(), and errors in their expressions are not
+     *  reported.
+     *  The initial value is given by the
+     *  <code>ptolemy.moml.deferParameterEvaluation</code> property, and is
+     *  false if the property is not set.
+     *  @param defer True to defer the evaluation of parameters.
+     *  @see #isDeferringParameterEvaluation()
+     */
+    public static void setDeferParameterEvaluation(boolean defer) {
+        _deferParameterEvaluation = defer;
+    }
+
+    /** Set the directory in which snapshots of parsed models are kept.
+     *  If the directory is not null, then parse(URL, URL) looks in it
+     *  for a snapshot of the MoML it reads, see {@link MoMLSnapshot}.
+     *  If there is one, and it is not stale, then the model is built by
+     *  replaying the snapshot, which avoids parsing the XML and applying
+     *  the MoMLFilters.  Otherwise, the MoML is parsed, and a snapshot
+     *  is written to the directory.  MoML that contains input elements
+     *  or source attributes is always parsed.
+     *  The initial value is given by the
+     *  <code>ptolemy.moml.snapshotDirectory</code> property, and is
+     *  null if the property is not set.
+     *  @param directory The directory, which must exist, or null to
+     *   not use snapshots.
+     *  @see #getSnapshotDirectory()
+     */
+    public static void setSnapshotDirectory(File directory) {
+        _snapshotDirectory = directory;
+    }
+
     /** Set the top-level entity.  This can be used to associate this
      *  parser with a pre-existing model, which can then be modified
      *  via incremental parsing.  This calls reset().
@@ -2253,6 +2246,7 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
     @Override
     public void startDocument() {
         _paramsToParse.clear();
+        _newToplevel = _toplevel == null;
         _missingClasses = null;
         if (_scopeExtenders != null) {
             _scopeExtenders.clear();
@@ -4011,7 +4005,7 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
         // First check to see whether the object has been previously loaded.
         URL url = null;
         try {
-            url = fileNameToURL(classAsFile, _base);
+            url = _classURL(classAsFile);
             if (_imports != null) {
                 WeakReference possiblePrevious = (WeakReference) _imports
                         .get(url);
@@ -4050,7 +4044,7 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
             // Try the alternate file, if it's not null.
             if (altClassAsFile != null) {
                 try {
-                    url = fileNameToURL(altClassAsFile, _base);
+                    url = _classURL(altClassAsFile);
                 } catch (Exception ex) {
                     // Throw the original exception, which is likely to have
                     // the real reason that the file is missing.
@@ -4206,6 +4200,21 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
         }
     }
 
+    /** Return the URL of the file of a MoML class, caching the URLs
+     *  that are found, because fileNameToURL() opens the file to
+     *  check that it exists.
+     */
+    private URL _classURL(String classAsFile) throws Exception {
+        String key = _base + " " + classAsFile;
+        ResolvedClasses resolved = _resolvedClasses();
+        URL url = resolved.classURLs.get(key);
+        if (url == null) {
+            url = fileNameToURL(classAsFile, _base);
+            resolved.classURLs.put(key, url);
+        }
+        return url;
+    }
+
     /** Create a new entity from the specified class name, give
      *  it the specified entity name, and specify that its container
      *  is the current container object.  If the current container
@@ -4659,7 +4668,7 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
      */
     private NamedObj _createInstance(Class newClass, Object[] arguments)
             throws Exception {
-        Constructor[] constructors = newClass.getConstructors();
+        Constructor[] constructors = _CONSTRUCTORS.get(newClass);
 
         for (Constructor constructor : constructors) {
             Class[] parameterTypes = constructor.getParameterTypes();
@@ -6350,18 +6359,44 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
         return false;
     }
 
+    /** Load the Java class with the specified name, first with the
+     *  default class loading strategy, and then with the class loader
+     *  of this parser.  Classes found by the strategy are cached, as
+     *  are the names that neither finds, so that a MoML class that is
+     *  instantiated many times does not search the class path each time.
+     *  The names that are not found are forgotten when the next parse
+     *  that is not nested in another one starts, so that a class that is
+     *  compiled later is found.  See {@link #purgeAllModelRecords()}.
+     */
     private Class _loadClass(String className, VersionSpecification versionSpec) throws ClassNotFoundException {
       // If no specific version info was in the model's MOML, and a default version spec was set, we need to use that one.
       // This is especially important for submodels based on actor-oriented-classes, where we want to maintain some consistency
       // between a related "group" of MOMLs (the parent models and their submodels).
       VersionSpecification _vSpec = versionSpec != null ? versionSpec : _defaultVersionSpecification;
+      String key = _vSpec == null ? className : className + "@" + _vSpec;
+      Class result = _javaClasses.get(key);
+      if (result != null) {
+          return result;
+      }
+      ResolvedClasses resolved = _resolvedClasses();
+      if (resolved.missingJavaClasses.contains(key)) {
+          throw new ClassNotFoundException(className);
+      }
       try {
-        return _defaultClassLoadingStrategy.loadJavaClass(className, _vSpec);
+        result = _defaultClassLoadingStrategy.loadJavaClass(className, _vSpec);
+        _javaClasses.put(key, result);
+        return result;
       } catch (ClassNotFoundException e) {
   //      System.out.println("Did not find "+className+" "+_vSpec + " via " + _defaultClassLoadingStrategy);
         if(_classLoader!=null) {
-          return _classLoader.loadClass(className);
+          try {
+              return _classLoader.loadClass(className);
+          } catch (ClassNotFoundException ex) {
+              resolved.missingJavaClasses.add(key);
+              throw ex;
+          }
         } else {
+          resolved.missingJavaClasses.add(key);
           throw e;
         }
       }
@@ -6387,13 +6422,30 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
                             + "Check Run -> Run Configurations... -> Classpath and be sure that the ptII project "
                             + "is not in the Bootstrap Entries section.");
         }
-        URL xmlFile = _classLoader.getResource(fileName);
-
-        if (xmlFile == null) {
+        // Files such as icons are looked for each time an object is
+        // created, so cache whether they exist and their contents
+        // until the next parse that is not nested in another one.
+        ResolvedClasses resolved = _resolvedClasses();
+        if (resolved.missingResources.contains(fileName)) {
             return false;
         }
+        String moml = resolved.resources.get(fileName);
+        if (moml == null) {
+            URL xmlFile = _classLoader.getResource(fileName);
 
-        InputStream input = xmlFile.openStream();
+            if (xmlFile == null) {
+                resolved.missingResources.add(fileName);
+                return false;
+            }
+
+            InputStream input = xmlFile.openStream();
+            try {
+                moml = new String(_readBytes(input), Charset.defaultCharset());
+            } finally {
+                input.close();
+            }
+            resolved.resources.put(fileName, moml);
+        }
 
         // Read the external file in the current context, but with
         // a new parser.  I'm not sure why the new parser is needed,
@@ -6417,7 +6469,8 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
         // We don't need the results of the parse because
         // the context for the parser has been set so the
         // objects are already in the hierarchy.
-        /*NamedObj result = */newParser.parse(_base, input);
+        /*NamedObj result = */newParser.parse(_base, null,
+                new StringReader(moml));
 
         // Have to mark the contents derived objects, so that
         // the icon is not exported with the MoML export.
@@ -6562,6 +6615,297 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
         }
     }
 
+    /** Parse the given reader, or replay the given snapshot, using
+     *  the specified url as the base.
+     *  @param base The base URL for relative references, or null if
+     *   not known.
+     *  @param systemID The URI of the document.
+     *  @param reader The reader from which to read XML, which is ignored
+     *   if the snapshot is not null.
+     *  @param snapshot The snapshot to replay, or null to parse the reader.
+     *  @return The top-level composite entity of the Ptolemy II model, or
+     *   null if the file is not recognized as a MoML file.
+     *  @exception Exception If the parser fails.
+     */
+    private NamedObj _parse(URL base, String systemID, Reader reader,
+            MoMLSnapshot snapshot) throws Exception {
+        _base = base;
+
+        // Invoking a Vertx demo and then a Nashorn demo can result in
+        // Ptolemy classes not being found.  In particular, exporting
+        // two models in a row by editing
+        // $PTII/ptolemy/configs/models.txt so that it contains:
+        // $CLASSPATH/ptolemy/actor/lib/vertx/demo/TokenTransmissionTime/Receiver.xml
+        // $CLASSPATH/ptolemy/demo/Robot/RandomWalkIntruder.xml
+        // and then running cd $PTII/ptolemy/vergil/basic/export/test/junit; make long_test
+        // resulted in the second model failing to find Ptolemy classes from within Nashorn
+        // See https://chess.eecs.berkeley.edu/ptexternal/wiki/Main/JSClassLoaderProblem
+        if (Thread.currentThread().getContextClassLoader() == null) {
+            Thread.currentThread().setContextClassLoader(ClassLoader.getSystemClassLoader());
+        }
+
+        Reader buffered = null;
+        if (snapshot == null) {
+            buffered = new BufferedReader(reader);
+        }
+        boolean previousReplaying = _replayingSnapshot;
+        _replayingSnapshot = snapshot != null;
+
+        int depth = _PARSE_DEPTH.get().intValue();
+        if (depth == 0) {
+            // This parse is not nested in another one, so forget the
+            // classes and files that were not found, and the contents of
+            // the files that were found, which may have changed since the
+            // last parse.
+            _purgeMissingClassCaches();
+        }
+        _PARSE_DEPTH.set(Integer.valueOf(depth + 1));
+
+        try {
+            // We allocate a new XmlParser each time so as to avoid leaks.
+            _xmlParser = new XmlParser();
+            _xmlParser.setHandler(this);
+            if (base == null) {
+                _parseOrReplay(systemID, buffered, snapshot);
+            } else {
+                // If we have tmp.moml and tmp/tmp2.moml and tmp.moml
+                // contains     <entity name="tmp2" class="tmp.tmp2">
+                // then we want to be sure that we set _xmlFile properly
+                // NOTE: I'm not sure if it is necessary to check to
+                // see if _xmlFile is null before hand, but it seems
+                // like it is safer to check before resetting it to null.
+                boolean xmlFileWasNull = false;
+
+                if (_xmlFile == null) {
+                    xmlFileWasNull = true;
+                    _setXmlFile(new URL(base.toExternalForm()));
+                }
+
+                try {
+                    _parseOrReplay(base.toExternalForm(), buffered, snapshot);
+                } finally {
+                    if (xmlFileWasNull) {
+                        _setXmlFile(null);
+                    }
+                }
+            }
+        } catch (CancelException ex) {
+            // Parse operation cancelled.
+            return null;
+        } catch (Exception ex) {
+            // If you change this code, try running
+            // ptolemy.moml.test.MoMLParserLeak with the heap profiler
+            // and look for leaks.
+            if (_toplevel != null && _toplevel instanceof ComponentEntity) {
+                try {
+                    ((ComponentEntity) _toplevel).setContainer(null);
+                } catch (Throwable throwable2) {
+                    // Ignore.  setContainer(null) might throw an exception
+                    // if there are deferrables, but we don't want to hide
+                    // the original exception.
+                    // This problem comes up with tests in
+                    // actor/gui/test/UserActorLibrary.tcl.
+                }
+                // Since the container is probably already null, then
+                // the setContainer(null) call probably did not do anything.
+                // so, we remove the object from the workspace so it
+                // can get gc'd.
+                // FIXME: perhaps we should do more of what
+                // ComponentEntity.setContainer() does and remove the ports?
+                try {
+                    _workspace.getWriteAccess();
+                    _workspace.remove(_toplevel);
+                } finally {
+                    _workspace.doneWriting();
+                }
+                _toplevel = null;
+            }
+
+            _paramsToParse.clear();
+            _validator = null;
+            if (_scopeExtenders != null) {
+                _scopeExtenders.clear();
+            }
+            reset();
+            if (base != null) {
+                purgeModelRecord(base);
+            }
+            throw ex;
+        } finally {
+            _PARSE_DEPTH.set(Integer.valueOf(depth));
+            // Avoid memory leaks
+            _xmlParser = null;
+            _replayingSnapshot = previousReplaying;
+            if (buffered != null) {
+                buffered.close();
+            }
+        }
+
+        if (_toplevel == null) {
+            // If we try to read a HSIF file but Ptolemy is not properly
+            // configured, then we may end up here.
+            throw new Exception(
+                    "Toplevel was null?  Perhaps the xml does not contain "
+                            + "a Ptolemy model?\n base ='" + base
+                            + "',\n reader = '" + reader + "'");
+        }
+
+        // Add a parser attribute to the toplevel to indicate a parser
+        // responsible for handling changes, unless there already is a
+        // parser, in which case we just set the parser to this one.
+        MoMLParser parser = ParserAttribute.getParser(_toplevel);
+
+        if (parser != this) {
+            // Force the parser to be this one.
+            ParserAttribute parserAttribute = (ParserAttribute) _toplevel
+                    .getAttribute("_parser", ParserAttribute.class);
+
+            if (parserAttribute == null) {
+                parserAttribute = new ParserAttribute(_toplevel, "_parser");
+            }
+
+            parserAttribute.setParser(this);
+        }
+
+        return _toplevel;
+    }
+
+    /** Parse the reader with the XmlParser, or, if the snapshot is not
+     *  null, replay the snapshot.
+     */
+    private void _parseOrReplay(String systemID, Reader buffered,
+            MoMLSnapshot snapshot) throws Exception {
+        if (snapshot == null) {
+            _xmlParser.parse(systemID, null, buffered);
+        } else {
+            snapshot.replay(this, systemID);
+        }
+    }
+
+    /** Parse the given stream using a snapshot in the snapshot
+     *  directory, if there is one that is not stale, and otherwise
+     *  parse the MoML and write a snapshot.  If the snapshot cannot
+     *  be replayed, then it is deleted and the MoML is parsed.
+     *  @param base The base URL for relative references, or null if
+     *   not known.
+     *  @param systemID The URI of the document.
+     *  @param content The bytes of the MoML.
+     *  @param moml The MoML.
+     *  @return The top-level composite entity of the Ptolemy II model, or
+     *   null if the file is not recognized as a MoML file.
+     *  @exception Exception If the parser fails.
+     */
+    private NamedObj _parseWithSnapshot(URL base, String systemID,
+            byte[] content, String moml) throws Exception {
+        if (!MoMLSnapshot.canSnapshot(moml)) {
+            return parse(base, systemID, new StringReader(moml));
+        }
+
+        String key = MoMLSnapshot.key(content, systemID, _filterList);
+        File file = new File(_snapshotDirectory, key + ".ptms");
+        if (file.isFile()) {
+            MoMLSnapshot snapshot = null;
+            try {
+                snapshot = MoMLSnapshot.read(file, key);
+            } catch (IOException ex) {
+                // A corrupt snapshot is replaced below.
+            }
+            if (snapshot != null) {
+                try {
+                    NamedObj result = _parse(base, systemID, null, snapshot);
+                    if (result != null) {
+                        if (snapshot.isModified()) {
+                            setModified(true);
+                        }
+                        return result;
+                    }
+                } catch (Exception ex) {
+                    // Parse the MoML, which reports the error if there
+                    // is one in the model, and replace the snapshot.
+                }
+            }
+            if (!file.delete()) {
+                return parse(base, systemID, new StringReader(moml));
+            }
+        }
+
+        // If the model was already marked as modified, then we cannot
+        // tell whether the filters modify this model.
+        boolean modified = isModified();
+        NamedObj result = parse(base, systemID, new StringReader(moml));
+        if (result != null && !modified) {
+            try {
+                MoMLSnapshot.record(result, key, isModified()).write(file);
+            } catch (Exception ex) {
+                // The snapshot is only an optimization, so ignore
+                // failures to write it.
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Start loading the Java classes named by the class attributes
+     *  of the specified MoML in the threads of a pool, so that the
+     *  classes are loaded in parallel while the MoML is parsed.  The
+     *  classes are loaded with the class loader of this parser and are
+     *  not initialized, so static initializers are still run in the
+     *  thread that builds the model.  Names that are not Java classes,
+     *  such as those of MoML classes, are ignored.
+     */
+    private void _preloadClasses(String moml) {
+        if (_classLoader == null || _PRELOAD_THREADS < 2) {
+            return;
+        }
+        final Set<String> names = new HashSet<String>();
+        int index = moml.indexOf(" class=\"");
+        while (index >= 0) {
+            int start = index + 8;
+            int end = moml.indexOf('"', start);
+            if (end < 0) {
+                break;
+            }
+            String name = moml.substring(start, end);
+            if (!_javaClasses.containsKey(name)) {
+                names.add(name);
+            }
+            index = moml.indexOf(" class=\"", end);
+        }
+        if (names.size() < _PRELOAD_THREADS) {
+            return;
+        }
+        final ClassLoader loader = _classLoader;
+        synchronized (MoMLParser.class) {
+            if (_preloader == null) {
+                _preloader = Executors.newFixedThreadPool(_PRELOAD_THREADS,
+                        new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable,
+                                "MoMLParser class preloader");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+        }
+        for (final String name : names) {
+            _preloader.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Class.forName(name, false, loader);
+                    } catch (Throwable throwable) {
+                        // Not a Java class, or one that cannot be loaded,
+                        // which is reported when the model is built.
+                    }
+                }
+            });
+        }
+    }
+
     /** Process a link command between two relations.
      *  @param relation1Name The first relation name.
      *  @param relation2Name The second relation name.
@@ -7200,6 +7544,29 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
         }
     }
 
+    /** Purge the caches of class resolution. */
+    private static void _purgeClassCaches() {
+        _javaClasses.clear();
+        synchronized (_RESOLVED_CLASSES) {
+            _RESOLVED_CLASSES.clear();
+        }
+    }
+
+    /** Purge the names of the Java classes and of the files that were
+     *  not found, and the contents of the files that were found, so
+     *  that a class that is compiled or a file that is edited after
+     *  a parse is seen by the next one.
+     */
+    private static void _purgeMissingClassCaches() {
+        synchronized (_RESOLVED_CLASSES) {
+            for (ResolvedClasses resolved : _RESOLVED_CLASSES.values()) {
+                resolved.missingJavaClasses.clear();
+                resolved.missingResources.clear();
+                resolved.resources.clear();
+            }
+        }
+    }
+
     /** Push the current context.
      */
     private void _pushContext() {
@@ -7211,6 +7578,17 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
         _namespacesPushed = true;
     }
 
+    /** Read all the bytes of the specified stream. */
+    private static byte[] _readBytes(InputStream input) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int length;
+        while ((length = input.read(buffer)) > 0) {
+            bytes.write(buffer, 0, length);
+        }
+        return bytes.toByteArray();
+    }
+
     /** Reset the undo information to give a fresh setup for the next
      *  incremental change. NOTE: this resets all the undo information except
      *  for the UndoStackAttribute which is associated with the model.
@@ -7222,6 +7600,20 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
         _undoForOverrides.clear();
     }
 
+    /** Return the cached results of class resolution with the class
+     *  loader of this parser.
+     */
+    private ResolvedClasses _resolvedClasses() {
+        synchronized (_RESOLVED_CLASSES) {
+            ResolvedClasses resolved = _RESOLVED_CLASSES.get(_classLoader);
+            if (resolved == null) {
+                resolved = new ResolvedClasses();
+                _RESOLVED_CLASSES.put(_classLoader, resolved);
+            }
+            return resolved;
+        }
+    }
+
     /** Given a name that is either absolute (with a leading period)
      *  or relative to _current, find an attribute with that name.
      *  The attribute is required to
@@ -7555,6 +7947,16 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
     // Attributes associated with an entity.
     private Map _attributes = new HashMap();
 
+    // The public constructors of the classes of the objects that
+    // have been created.  A ClassValue does not prevent a class
+    // from being unloaded.
+    private static final ClassValue<Constructor[]> _CONSTRUCTORS = new ClassValue<Constructor[]>() {
+        @Override
+        protected Constructor[] computeValue(Class type) {
+            return type.getConstructors();
+        }
+    };
+
     // The list of attribute names, in the order they were parsed.
     private List _attributeNameList = new ArrayList(0);
 
@@ -7567,6 +7969,10 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
     // The class loader that will be used to instantiate objects.
     private ClassLoader _classLoader = getClass().getClassLoader();
 
+    // The Java classes that the default class loading strategy has found,
+    // indexed by the class name and the version specification.
+    private static Map<String, Class> _javaClasses = new ConcurrentHashMap<String, Class>();
+
     // The default class loading strategy that can be adjusted for specific runtime requirements,
     // e.g. it can be modified for OSGi-based runtimes.
     private static ClassLoadingStrategy _defaultClassLoadingStrategy = new SimpleClassLoadingStrategy(MoMLParser.class.getClassLoader());
@@ -7578,6 +7984,11 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
     // Count of configure tags so that they can nest.
     private int _configureNesting = 0;
 
+    // True to defer the evaluation of the parameters of new models.
+    private static boolean _deferParameterEvaluation = Boolean
+            .parseBoolean(StringUtilities
+                    .getProperty("ptolemy.moml.deferParameterEvaluation"));
+
     // The source attribute specified by the configure element.
     private String _configureSource;
 
@@ -7671,6 +8082,9 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
     // The stack of maps for name translations.
     private Stack _namespaceTranslations = new Stack();
 
+    // True if the document being parsed creates a new top level.
+    private boolean _newToplevel = false;
+
     // The original context set by setContext().
     private NamedObj _originalContext = null;
 
@@ -7682,15 +8096,39 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
     // A set of settable parameters specified in property tags.
     private Set<Settable> _paramsToParse = new HashSet<Settable>();
 
+    // True if a snapshot is being replayed rather than MoML parsed.
+    private boolean _replayingSnapshot = false;
+
     /** A list of scope extenders encountered while parsing. */
     private List<ScopeExtender> _scopeExtenders;
 
     /** The XmlParser. */
     private XmlParser _xmlParser;
 
+    // The number of threads that load classes before they are needed.
+    private static final int _PRELOAD_THREADS = Math.min(4, Runtime
+            .getRuntime().availableProcessors() - 1);
+
+    // The threads that load classes before they are needed.
+    private static ExecutorService _preloader;
+
+    // The depth of the parses in progress in each thread, which is zero
+    // outside of a parse and greater than one in a nested parse, such as
+    // that of an icon file.
+    private static final ThreadLocal<Integer> _PARSE_DEPTH = new ThreadLocal<Integer>() {
+        @Override
+        protected Integer initialValue() {
+            return Integer.valueOf(0);
+        }
+    };
+
     // Status of the deferral of the top-level.
     private boolean _previousDeferStatus = false;
 
+    // The results of class resolution, indexed by the class loader
+    // with which the classes were resolved.
+    private static final Map<ClassLoader, ResolvedClasses> _RESOLVED_CLASSES = new WeakHashMap<ClassLoader, ResolvedClasses>();
+
     // The stack of integers that represent the state of <if> elements. The top
     // integer always represent the state of the last <if> element, or the
     // initial state if no <if> element has been reached. If it is > 1, then the
@@ -7708,6 +8146,18 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
     // If greater than zero, skipping an element.
     private int _skipElement = 0;
 
+    // The directory of snapshots of parsed models, or null to not
+    // use snapshots.
+    private static File _snapshotDirectory;
+
+    static {
+        String directory = StringUtilities
+                .getProperty("ptolemy.moml.snapshotDirectory");
+        if (directory.length() > 0) {
+            _snapshotDirectory = new File(directory);
+        }
+    }
+
     // If attribute() found an element to skip, then
     // the first time we startElement(), we do not
     // want to increment _skipElement again in
@@ -7750,6 +8200,9 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
     // different context.
     private List<UndoAction> _undoForOverrides = new LinkedList<UndoAction>();
 
+    // The validator of the settables of the last document, or null.
+    private SettableValidator _validator;
+
     // List of unrecognized elements.
     private List _unrecognized;
 
@@ -7874,6 +8327,24 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
         }
     }
 
+    // The results of resolving classes and files with a class loader:
+    // the names of the Java classes and of the files, such as icons,
+    // that were not found, the contents of the files that were found,
+    // and the URLs of the files of MoML classes, which are indexed by
+    // the base URL and the file name.  All but the URLs are only kept
+    // until the next parse that is not nested in another one starts.
+    private static class ResolvedClasses {
+        public Map<String, URL> classURLs = new ConcurrentHashMap<String, URL>();
+
+        public Set<String> missingJavaClasses = Collections
+                .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        public Set<String> missingResources = Collections
+                .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        public Map<String, String> resources = new ConcurrentHashMap<String, String>();
+    }
+
     // Under Mac OS X, skip backtrack.xml.  See
     // http://chess.eecs.berkeley.edu/ptexternal/wiki/Main/Mac2008 and
     // follow the 'Problems with Eclipse and Ptolemy on the Mac' link.
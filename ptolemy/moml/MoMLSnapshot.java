@@ -0,0 +1,521 @@
+/* A binary snapshot of the parsing of a MoML model.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.moml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.microstar.xml.HandlerBase;
+import com.microstar.xml.XmlHandler;
+import com.microstar.xml.XmlParser;
+
+import ptolemy.kernel.attributes.VersionAttribute;
+import ptolemy.kernel.util.InternalErrorException;
+import ptolemy.kernel.util.NamedObj;
+
+///////////////////////////////////////////////////////////////////
+//// MoMLSnapshot
+
+/**
+ A binary snapshot of the parsing of a MoML model, which can rebuild
+ the model without parsing XML and without applying MoML filters.
+ <p>
+ A snapshot is recorded from a model that has just been parsed.  The
+ model is exported with exportMoML(), which gives MoML that has already
+ been transformed by the filters, such as those of BackwardCompatibility.
+ That MoML is parsed once, and the calls that the XML parser makes to
+ its handler, that is, the elements, the attributes, the character
+ data and the processing instructions, are recorded.  The strings of
+ these calls are stored once in a table, and the calls refer to them
+ by index.  {@link #replay(XmlHandler, String)} makes the same calls
+ on a MoMLParser, which builds the same model, including the links and
+ the expressions of the attributes, without lexing XML, reading the
+ DTD or running the filters.  The classes of the objects are still
+ resolved, and the parameters are still evaluated, by the MoMLParser.
+ <p>
+ A snapshot is identified by a key, see
+ {@link #key(byte[], String, List)}, which is a hash of the MoML text, the
+ Ptolemy II version and the classes of the filters.  If any of these
+ changes, the snapshot is stale, and {@link #read(File, String)}
+ returns null.  MoMLParser uses snapshots when a snapshot directory is
+ set, see {@link MoMLParser#setSnapshotDirectory(File)}.
+
+ @see MoMLParser
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class MoMLSnapshot {
+
+    /** Construct an empty snapshot. */
+    private MoMLSnapshot(String key, boolean modified) {
+        _key = key;
+        _modified = modified;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Return true if the MoML text may be snapshot.  MoML that reads
+     *  other files with an input element or a source attribute
+     *  cannot be snapshot, because the key of the snapshot covers only
+     *  the text of the model.
+     *  @param content The MoML text.
+     *  @return True if the MoML text may be snapshot.
+     */
+    public static boolean canSnapshot(String content) {
+        return content.indexOf("<input") < 0
+                && content.indexOf("source=") < 0;
+    }
+
+    /** Return the key of this snapshot.
+     *  @return The key.
+     *  @see #key(byte[], String, List)
+     */
+    public String getKey() {
+        return _key;
+    }
+
+    /** Return true if the filters modified the model when it was
+     *  parsed from MoML.
+     *  @return True if the model was modified by the filters.
+     *  @see MoMLParser#isModified()
+     */
+    public boolean isModified() {
+        return _modified;
+    }
+
+    /** Return the key of a snapshot of the specified MoML text, which
+     *  is a hexadecimal SHA-256 hash of the text, its URI, the current
+     *  Ptolemy II version and the names of the classes of the filters.
+     *  The URI is included because the filters are given the name of
+     *  the file that they filter.
+     *  @param content The MoML text.
+     *  @param systemID The URI of the MoML text, or null if it is not
+     *   known.
+     *  @param filters The MoML filters, or null if there are none.
+     *  @return The key.
+     */
+    public static String key(byte[] content, String systemID,
+            List<?> filters) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new InternalErrorException(null, ex,
+                    "SHA-256 is not available.");
+        }
+        digest.update(content);
+        digest.update((byte) 0);
+        if (systemID != null) {
+            digest.update(systemID.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) 0);
+        digest.update(VersionAttribute.CURRENT_VERSION.getExpression()
+                .getBytes(StandardCharsets.UTF_8));
+        if (filters != null) {
+            for (Object filter : filters) {
+                digest.update((byte) 0);
+                digest.update(filter.getClass().getName()
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        StringBuffer result = new StringBuffer();
+        for (byte value : digest.digest()) {
+            result.append(Character.forDigit((value >> 4) & 0xf, 16));
+            result.append(Character.forDigit(value & 0xf, 16));
+        }
+        return result.toString();
+    }
+
+    /** Read a snapshot from the specified file.
+     *  @param file The file.
+     *  @param key The expected key.
+     *  @return The snapshot, or null if the file was written by another
+     *   version of Ptolemy II or its key is not the expected key.
+     *  @exception IOException If the file cannot be read or is corrupt.
+     */
+    public static MoMLSnapshot read(File file, String key) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(
+                Files.readAllBytes(file.toPath())));
+        if (input.readInt() != _MAGIC || input.readShort() != _FORMAT
+                || !input.readUTF().equals(
+                        VersionAttribute.CURRENT_VERSION.getExpression())
+                || !input.readUTF().equals(key)) {
+            return null;
+        }
+        MoMLSnapshot snapshot = new MoMLSnapshot(key, input.readBoolean());
+        int count = input.readInt();
+        snapshot._strings = new String[count];
+        byte[] buffer = new byte[256];
+        for (int i = 0; i < count; i++) {
+            int length = input.readInt();
+            if (buffer.length < length) {
+                buffer = new byte[length];
+            }
+            input.readFully(buffer, 0, length);
+            snapshot._strings[i] = new String(buffer, 0, length,
+                    StandardCharsets.UTF_8);
+        }
+        int length = input.readInt();
+        snapshot._events = new int[length];
+        for (int i = 0; i < length; i++) {
+            snapshot._events[i] = input.readInt();
+        }
+        snapshot._length = length;
+        return snapshot;
+    }
+
+    /** Record a snapshot of the specified model, which has just been
+     *  parsed.
+     *  @param toplevel The model.
+     *  @param key The key of the snapshot.
+     *  @param modified True if the filters modified the model.
+     *  @return The snapshot.
+     *  @exception Exception If the exported MoML of the model cannot
+     *   be parsed.
+     */
+    public static MoMLSnapshot record(NamedObj toplevel, String key,
+            boolean modified) throws Exception {
+        MoMLSnapshot snapshot = new MoMLSnapshot(key, modified);
+        Recorder recorder = snapshot.new Recorder();
+        XmlParser parser = new XmlParser();
+        parser.setHandler(recorder);
+        parser.parse(_DOCUMENT, null, new StringReader(toplevel.exportMoML()));
+        snapshot._strings = recorder.strings.toArray(new String[recorder.strings
+                                                                .size()]);
+        return snapshot;
+    }
+
+    /** Make the recorded calls on the specified handler.
+     *  @param handler The handler, which is normally a MoMLParser.
+     *  @param systemID The URI of the document, which is given to the
+     *   handler in place of the URI of the recorded document, or null
+     *   if it is not known.
+     *  @exception Exception If the handler throws it.
+     */
+    public void replay(XmlHandler handler, String systemID) throws Exception {
+        int[] events = _events;
+        String[] strings = _strings;
+        int i = 0;
+        while (i < _length) {
+            switch (events[i++]) {
+            case _ATTRIBUTE:
+                handler.attribute(strings[events[i]],
+                        _string(events[i + 1], systemID),
+                        events[i + 2] != 0);
+                i += 3;
+                break;
+            case _CHAR_DATA:
+                char[] chars = strings[events[i++]].toCharArray();
+                handler.charData(chars, 0, chars.length);
+                break;
+            case _DOCTYPE_DECL:
+                handler.doctypeDecl(_string(events[i], systemID),
+                        _string(events[i + 1], systemID),
+                        _string(events[i + 2], systemID));
+                i += 3;
+                break;
+            case _END_DOCUMENT:
+                handler.endDocument();
+                break;
+            case _END_ELEMENT:
+                handler.endElement(strings[events[i++]]);
+                break;
+            case _END_EXTERNAL_ENTITY:
+                handler.endExternalEntity(_string(events[i++], systemID));
+                break;
+            case _PROCESSING_INSTRUCTION:
+                handler.processingInstruction(strings[events[i]],
+                        _string(events[i + 1], systemID));
+                i += 2;
+                break;
+            case _START_DOCUMENT:
+                handler.startDocument();
+                break;
+            case _START_ELEMENT:
+                handler.startElement(strings[events[i++]]);
+                break;
+            case _START_EXTERNAL_ENTITY:
+                handler.startExternalEntity(_string(events[i++], systemID));
+                break;
+            default:
+                throw new IOException("Corrupt snapshot at event " + (i - 1)
+                        + ".");
+            }
+        }
+    }
+
+    /** Write this snapshot to the specified file.  The snapshot is
+     *  written to a temporary file that is then renamed, so that
+     *  another process never reads a partially written snapshot.
+     *  @param file The file.
+     *  @exception IOException If the file cannot be written.
+     */
+    public void write(File file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(_MAGIC);
+        output.writeShort(_FORMAT);
+        output.writeUTF(VersionAttribute.CURRENT_VERSION.getExpression());
+        output.writeUTF(_key);
+        output.writeBoolean(_modified);
+        output.writeInt(_strings.length);
+        for (String string : _strings) {
+            byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(encoded.length);
+            output.write(encoded);
+        }
+        output.writeInt(_length);
+        for (int i = 0; i < _length; i++) {
+            output.writeInt(_events[i]);
+        }
+        output.flush();
+
+        File temporary = File.createTempFile(file.getName(), ".tmp",
+                file.getParentFile());
+        OutputStream stream = new FileOutputStream(temporary);
+        try {
+            bytes.writeTo(stream);
+        } finally {
+            stream.close();
+        }
+        if (!temporary.renameTo(file)) {
+            // On some platforms, renameTo() fails if the file exists.
+            if (!file.delete() || !temporary.renameTo(file)) {
+                if (!temporary.delete()) {
+                    temporary.deleteOnExit();
+                }
+                throw new IOException("Failed to rename " + temporary
+                        + " to " + file);
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Append an event to the list of events. */
+    private void _add(int event) {
+        if (_events == null) {
+            _events = new int[1024];
+        } else if (_length == _events.length) {
+            int[] events = new int[_events.length * 2];
+            System.arraycopy(_events, 0, events, 0, _length);
+            _events = events;
+        }
+        _events[_length++] = event;
+    }
+
+    /** Return the string with the specified index, or null if the index
+     *  is _NULL, or the system ID if the index is _DOCUMENT_ID.
+     */
+    private String _string(int index, String systemID) {
+        if (index == _NULL) {
+            return null;
+        } else if (index == _DOCUMENT_ID) {
+            return systemID;
+        }
+        return _strings[index];
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The system ID of the recorded document. */
+    private static final String _DOCUMENT = "snapshot:document";
+
+    /** The index of the system ID of the document. */
+    private static final int _DOCUMENT_ID = -2;
+
+    /** The version of the snapshot format. */
+    private static final short _FORMAT = 1;
+
+    /** The magic number at the start of a snapshot file, "PTMS". */
+    private static final int _MAGIC = 0x50544d53;
+
+    /** The index of a null string. */
+    private static final int _NULL = -1;
+
+    // The codes of the recorded calls.
+    private static final int _ATTRIBUTE = 0;
+
+    private static final int _CHAR_DATA = 1;
+
+    private static final int _DOCTYPE_DECL = 2;
+
+    private static final int _END_DOCUMENT = 3;
+
+    private static final int _END_ELEMENT = 4;
+
+    private static final int _END_EXTERNAL_ENTITY = 5;
+
+    private static final int _PROCESSING_INSTRUCTION = 6;
+
+    private static final int _START_DOCUMENT = 7;
+
+    private static final int _START_ELEMENT = 8;
+
+    private static final int _START_EXTERNAL_ENTITY = 9;
+
+    /** The recorded calls, each a code followed by its arguments. */
+    private int[] _events;
+
+    /** The key of this snapshot. */
+    private String _key;
+
+    /** The number of elements of _events that are used. */
+    private int _length;
+
+    /** True if the filters modified the model. */
+    private boolean _modified;
+
+    /** The strings that the recorded calls refer to. */
+    private String[] _strings;
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         inner classes                     ////
+
+    /** A handler that records the calls of the XML parser. */
+    private class Recorder extends HandlerBase {
+        @Override
+        public void attribute(String name, String value, boolean specified) {
+            _add(_ATTRIBUTE);
+            _add(_index(name));
+            _add(_index(value));
+            _add(specified ? 1 : 0);
+        }
+
+        @Override
+        public void charData(char[] chars, int offset, int length) {
+            _add(_CHAR_DATA);
+            _add(_index(new String(chars, offset, length)));
+        }
+
+        @Override
+        public void doctypeDecl(String name, String publicID,
+                String systemID) {
+            _add(_DOCTYPE_DECL);
+            _add(_index(name));
+            _add(_index(publicID));
+            _add(_index(systemID));
+        }
+
+        @Override
+        public void endDocument() {
+            _add(_END_DOCUMENT);
+        }
+
+        @Override
+        public void endElement(String name) {
+            _add(_END_ELEMENT);
+            _add(_index(name));
+        }
+
+        @Override
+        public void endExternalEntity(String systemID) {
+            _add(_END_EXTERNAL_ENTITY);
+            _add(_index(systemID));
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) {
+            _add(_PROCESSING_INSTRUCTION);
+            _add(_index(target));
+            _add(_index(data));
+        }
+
+        /** Resolve the MoML DTD as MoMLParser does. */
+        @Override
+        public Object resolveEntity(String publicID, String systemID) {
+            if (publicID != null
+                    && publicID.equals(MoMLParser.MoML_PUBLIC_ID_1)) {
+                return new StringReader(MoMLParser.MoML_DTD_1);
+            }
+            return null;
+        }
+
+        @Override
+        public void startDocument() {
+            _add(_START_DOCUMENT);
+        }
+
+        @Override
+        public void startElement(String name) {
+            _add(_START_ELEMENT);
+            _add(_index(name));
+        }
+
+        @Override
+        public void startExternalEntity(String systemID) {
+            _add(_START_EXTERNAL_ENTITY);
+            _add(_index(systemID));
+        }
+
+        /** Return the index of the specified string in the table of
+         *  strings, adding it if necessary.
+         */
+        private int _index(String string) {
+            if (string == null) {
+                return _NULL;
+            } else if (string.equals(_DOCUMENT)) {
+                return _DOCUMENT_ID;
+            }
+            Integer index = _indexes.get(string);
+            if (index == null) {
+                index = strings.size();
+                _indexes.put(string, index);
+                strings.add(string);
+            }
+            return index;
+        }
+
+        /** The strings, in the order of their indexes. */
+        public List<String> strings = new ArrayList<String>();
+
+        /** The indexes of the strings. */
+        private Map<String, Integer> _indexes = new HashMap<String, Integer>();
+    }
+}
@@ -0,0 +1,144 @@
+/* Measure the time to build models with many instances of a few classes.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+ */
+package ptolemy.moml.test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+
+import ptolemy.kernel.util.Workspace;
+import ptolemy.moml.MoMLParser;
+import ptolemy.moml.filter.BackwardCompatibility;
+import ptolemy.moml.filter.RemoveGraphicalClasses;
+
+///////////////////////////////////////////////////////////////////
+//// MoMLClassResolutionBenchmark
+
+/**
+ Build a model that has many instances of a few classes, and print the
+ time of the first build, which loads the classes, and the average time
+ of the following builds.  The classes are Ramp and Scale, which are Java
+ classes, AbsoluteValue, which is a Java class with an icon file, and
+ Sinewave, which is a MoML class.  The models are parsed with the
+ MoMLFilters that MoMLSimpleApplication uses.
+ <p>
+ To run, use:
+ <pre>
+ java -classpath $PTII ptolemy.moml.test.MoMLClassResolutionBenchmark [-instances n] [-runs n]
+ </pre>
+ The number of instances of each class defaults to 250, and the number
+ of runs defaults to 20.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class MoMLClassResolutionBenchmark {
+
+    /** Run the benchmark and print the results.
+     *  @param args Optional "-instances n" and "-runs n" arguments.
+     *  @exception Exception If the model cannot be built.
+     */
+    public static void main(String[] args) throws Exception {
+        int instances = 250;
+        int runs = 20;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("-instances")) {
+                instances = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-runs")) {
+                runs = Integer.parseInt(args[i + 1]);
+            } else {
+                System.err.println("Usage: java -classpath $PTII "
+                        + "ptolemy.moml.test.MoMLClassResolutionBenchmark "
+                        + "[-instances n] [-runs n]");
+                return;
+            }
+        }
+
+        MoMLParser.setMoMLFilters(BackwardCompatibility.allFilters());
+        MoMLParser.addMoMLFilter(new RemoveGraphicalClasses());
+
+        StringBuffer moml = new StringBuffer(
+                "<entity name=\"top\" "
+                        + "class=\"ptolemy.actor.TypedCompositeActor\">\n");
+        for (int i = 0; i < instances; i++) {
+            for (String className : _CLASSES) {
+                String name = className.substring(className
+                        .lastIndexOf('.') + 1) + i;
+                moml.append("<entity name=\"" + name + "\" class=\""
+                        + className + "\"/>\n");
+            }
+        }
+        moml.append("</entity>\n");
+        File file = File.createTempFile("MoMLClassResolution", ".xml");
+        file.deleteOnExit();
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write(moml.toString());
+        } finally {
+            writer.close();
+        }
+
+        System.out.println("entities: " + instances * _CLASSES.length);
+        long elapsed = _build(file);
+        System.out.println("first build (ms): " + elapsed / 1000000);
+        for (int i = 0; i < runs; i++) {
+            _build(file);
+        }
+        elapsed = 0;
+        for (int i = 0; i < runs; i++) {
+            elapsed += _build(file);
+        }
+        System.out.println("later builds (ms): " + elapsed / runs / 1000000);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Build the model with a new parser and return the time it took
+     *  in nanoseconds.
+     */
+    private static long _build(File file) throws Exception {
+        // Do not call purgeAllModelRecords(), which would also purge the
+        // records of the MoML classes.
+        MoMLParser.purgeModelRecord(file.toURI().toURL());
+        MoMLParser parser = new MoMLParser(new Workspace());
+        long startTime = System.nanoTime();
+        parser.parse(null, file.toURI().toURL());
+        return System.nanoTime() - startTime;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The classes of the entities. */
+    private static final String[] _CLASSES = { "ptolemy.actor.lib.Ramp",
+            "ptolemy.actor.lib.Scale", "ptolemy.actor.lib.AbsoluteValue",
+            "ptolemy.actor.lib.Sinewave" };
+}
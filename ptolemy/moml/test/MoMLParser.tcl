@@ -4722,3 +4722,89 @@ test MoMLParser-35.1 {test missing classes } {
 <entity name="C1" class="NotAClassC1">
 ptolemy.kernel.util.IllegalActionException: Cann}}
 
+
+######################################################################
+####
+#
+test MoMLParser-36.1 {Instantiate a MoML class repeatedly} {
+    set parser36 [java::new ptolemy.moml.MoMLParser]
+    set toplevel [java::cast ptolemy.kernel.CompositeEntity \
+	    [$parser36 parse {<entity name="top" class="ptolemy.kernel.CompositeEntity">
+    <entity name="b1" class="ptolemy.moml.test.testClass"/>
+    <entity name="b2" class="ptolemy.moml.test.testClass"/>
+    <entity name="b3" class="ptolemy.moml.test.testClass"/>
+</entity>}]]
+    set result {}
+    foreach name {b1 b2 b3} {
+	set b [java::cast ptolemy.kernel.CompositeEntity \
+		[$toplevel getEntity $name]]
+	lappend result [[$b getEntity c] getFullName] \
+	    [java::isnull [$b getAttribute testClassIcon]]
+    }
+    set result
+} {.top.b1.c 0 .top.b2.c 0 .top.b3.c 0}
+
+######################################################################
+####
+#
+set compiledLaterMoML {<entity name="top" class="ptolemy.kernel.CompositeEntity">
+    <entity name="a" class="ptolemy.moml.test.CompiledLater"/>
+</entity>}
+
+# Write the icon of ptolemy.moml.test.CompiledLater with the specified value.
+proc writeCompiledLaterIcon {value} {
+    set fd [open CompiledLaterIcon.xml w]
+    puts $fd "<?xml version=\"1.0\" standalone=\"no\"?>
+<!DOCTYPE entity PUBLIC \"-//UC Berkeley//DTD MoML 1//EN\"
+    \"http://ptolemy.eecs.berkeley.edu/xml/dtd/MoML_1.dtd\">
+<property name=\"iconVersion\" class=\"ptolemy.kernel.util.StringAttribute\" value=\"$value\"/>"
+    close $fd
+}
+
+# Return the value of the icon of the entity a in the specified MoML.
+proc compiledLaterIconValue {moml} {
+    set parser [java::new ptolemy.moml.MoMLParser]
+    set toplevel [java::cast ptolemy.kernel.CompositeEntity \
+	    [$parser parse $moml]]
+    set a [$toplevel getEntity a]
+    return [[java::cast ptolemy.kernel.util.StringAttribute \
+		 [$a getAttribute iconVersion]] getExpression]
+}
+
+test MoMLParser-36.2 {A Java class that is compiled after it was not found is found} {
+    set parser36 [java::new ptolemy.moml.MoMLParser]
+    set missing [catch {$parser36 parse $compiledLaterMoML} errMsg]
+    set fd [open CompiledLater.java w]
+    puts $fd "package ptolemy.moml.test;
+public class CompiledLater extends ptolemy.kernel.ComponentEntity {
+    public CompiledLater(ptolemy.kernel.CompositeEntity container, String name)
+            throws ptolemy.kernel.util.IllegalActionException,
+            ptolemy.kernel.util.NameDuplicationException {
+        super(container, name);
+    }
+}"
+    close $fd
+    set compiler [java::call javax.tools.ToolProvider getSystemJavaCompiler]
+    set arguments [java::new {String[]} 4 \
+	    [list -nowarn -d $PTII CompiledLater.java]]
+    set status [$compiler run [java::null] [java::null] [java::null] \
+	    $arguments]
+    writeCompiledLaterIcon first
+    list $missing [regexp {CompiledLater} $errMsg] $status \
+	[compiledLaterIconValue $compiledLaterMoML]
+} {1 1 0 first}
+
+######################################################################
+####
+#
+test MoMLParser-36.3 {An icon that is edited between parses is read again} {
+    # Uses CompiledLater from 36.2 above.
+    writeCompiledLaterIcon second
+    set second [compiledLaterIconValue $compiledLaterMoML]
+    java::call ptolemy.moml.MoMLParser purgeAllModelRecords
+    writeCompiledLaterIcon third
+    set third [compiledLaterIconValue $compiledLaterMoML]
+    file delete -force CompiledLater.java CompiledLaterIcon.xml \
+	[file join $PTII ptolemy moml test CompiledLater.class]
+    list $second $third
+} {second third}
@@ -0,0 +1,164 @@
+# Tests for the MoMLSnapshot class
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2016 The Regents of the University of California.
+# All rights reserved.
+#
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+#
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+#
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+#
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Load the test definitions.
+if {[string compare test [info procs test]] == 1} then {
+    source testDefs.tcl
+} {}
+
+# Uncomment this to get a full report, or set in your Tcl shell window.
+#set VERBOSE 1
+
+set header {<?xml version="1.0" standalone="no"?>
+<!DOCTYPE entity PUBLIC "-//UC Berkeley//DTD MoML 1//EN"
+    "http://ptolemy.eecs.berkeley.edu/xml/dtd/MoML_1.dtd">}
+
+# Create an empty snapshot directory.
+set snapshotDirectory [java::call java.io.File createTempFile snapshots ""]
+$snapshotDirectory delete
+$snapshotDirectory mkdir
+
+# Return the number of snapshots in the snapshot directory.
+proc snapshotCount {} {
+    global snapshotDirectory
+    return [[$snapshotDirectory list] length]
+}
+
+# Parse the file with a new parser and return the exported MoML.
+proc parseFile {file} {
+    java::call ptolemy.moml.MoMLParser purgeAllModelRecords
+    set parser [java::new ptolemy.moml.MoMLParser \
+	    [java::new ptolemy.kernel.util.Workspace]]
+    set url [[java::new java.io.File $file] toURL]
+    set toplevel [$parser {parse java.net.URL java.net.URL} [java::null] $url]
+    set moml [$toplevel exportMoML]
+    return $moml
+}
+
+######################################################################
+####
+#
+test MoMLSnapshot-1.1 {Write a snapshot and build the model from it} {
+    java::call ptolemy.moml.MoMLParser setSnapshotDirectory $snapshotDirectory
+    set model [file join $PTII ptolemy domains sdf demo Butterfly Butterfly.xml]
+    set moml_1 [parseFile $model]
+    set count_1 [snapshotCount]
+    set moml_2 [parseFile $model]
+    list $count_1 [snapshotCount] [string compare $moml_1 $moml_2]
+} {1 1 0}
+
+######################################################################
+####
+#
+test MoMLSnapshot-1.2 {A snapshot records the filtered MoML} {
+    java::call ptolemy.moml.MoMLParser setMoMLFilters \
+	[java::call ptolemy.moml.filter.BackwardCompatibility allFilters]
+    java::call ptolemy.moml.MoMLParser setModified false
+    set moml_1 [parseFile $model]
+    set count_1 [snapshotCount]
+    java::call ptolemy.moml.MoMLParser setModified false
+    set moml_2 [parseFile $model]
+    java::call ptolemy.moml.MoMLParser setMoMLFilters [java::null]
+    # The filters are part of the key, so there is a second snapshot.
+    list $count_1 [snapshotCount] [string compare $moml_1 $moml_2]
+} {2 2 0}
+
+######################################################################
+####
+#
+set testModel [file join [$snapshotDirectory getParent] MoMLSnapshotTest.xml]
+
+proc writeTestModel {value} {
+    global header testModel
+    set fd [open $testModel w]
+    puts $fd "$header
+<entity name=\"top\" class=\"ptolemy.actor.TypedCompositeActor\">
+    <property name=\"p\" class=\"ptolemy.data.expr.Parameter\" value=\"$value\"/>
+    <property name=\"q\" class=\"ptolemy.data.expr.Parameter\" value=\"p + 1\"/>
+    <entity name=\"ramp\" class=\"ptolemy.actor.lib.Ramp\">
+        <property name=\"step\" value=\"q\"/>
+        <port name=\"output\"><property name=\"_showName\" class=\"ptolemy.data.expr.SingletonParameter\" value=\"true\"/></port>
+    </entity>
+    <entity name=\"recorder\" class=\"ptolemy.actor.lib.Recorder\"/>
+    <relation name=\"r\" class=\"ptolemy.actor.TypedIORelation\"/>
+    <link port=\"ramp.output\" relation=\"r\"/>
+    <link port=\"recorder.input\" relation=\"r\"/>
+</entity>"
+    close $fd
+}
+
+test MoMLSnapshot-2.1 {A changed model does not use the stale snapshot} {
+    writeTestModel 1
+    set moml_1 [parseFile $testModel]
+    set count_1 [snapshotCount]
+    writeTestModel 2
+    set moml_2 [parseFile $testModel]
+    set moml_3 [parseFile $testModel]
+    list $count_1 [snapshotCount] [regexp {value="1"} $moml_1] \
+	[regexp {value="2"} $moml_2] [string compare $moml_2 $moml_3]
+} {3 4 1 1 0}
+
+######################################################################
+####
+#
+test MoMLSnapshot-2.2 {A corrupt snapshot is replaced} {
+    foreach name [[$snapshotDirectory list] getrange] {
+	set fd [open [file join [$snapshotDirectory getPath] $name] w]
+	puts $fd "Not a snapshot"
+	close $fd
+    }
+    set moml_4 [parseFile $testModel]
+    set moml_5 [parseFile $testModel]
+    list [snapshotCount] [string compare $moml_2 $moml_4] \
+	[string compare $moml_2 $moml_5]
+} {4 0 0}
+
+######################################################################
+####
+#
+test MoMLSnapshot-2.3 {MoML that reads other files is not snapshot} {
+    set fd [open $testModel w]
+    puts $fd "$header
+<entity name=\"top\" class=\"ptolemy.actor.TypedCompositeActor\">
+    <input source=\"[file join $PTII ptolemy moml test inputTestB.xml]\"/>
+</entity>"
+    close $fd
+    catch {parseFile $testModel}
+    set count [snapshotCount]
+    java::call ptolemy.moml.MoMLParser setSnapshotDirectory [java::null]
+    foreach name [[$snapshotDirectory list] getrange] {
+	file delete [file join [$snapshotDirectory getPath] $name]
+    }
+    $snapshotDirectory delete
+    file delete $testModel
+    list $count
+} {4}
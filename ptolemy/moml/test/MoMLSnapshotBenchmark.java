@@ -0,0 +1,148 @@
+/* Compare the time to build models from MoML and from snapshots.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+ */
+package ptolemy.moml.test;
+
+import java.io.File;
+import java.net.URL;
+
+import ptolemy.kernel.util.NamedObj;
+import ptolemy.kernel.util.Workspace;
+import ptolemy.moml.MoMLParser;
+import ptolemy.moml.filter.BackwardCompatibility;
+import ptolemy.moml.filter.RemoveGraphicalClasses;
+
+///////////////////////////////////////////////////////////////////
+//// MoMLSnapshotBenchmark
+
+/**
+ Build each of the specified models repeatedly, first by parsing its
+ MoML with the BackwardCompatibility and RemoveGraphicalClasses
+ filters, as MoMLSimpleApplication does, and then from a snapshot,
+ see {@link ptolemy.moml.MoMLSnapshot}, and print the average time of
+ each.  The benchmark fails if a model built from a snapshot does not
+ export the same MoML as the model built from MoML.
+ <p>
+ To run, use:
+ <pre>
+ java -classpath $PTII ptolemy.moml.test.MoMLSnapshotBenchmark [-runs n] model.xml ...
+ </pre>
+ The number of runs defaults to 20.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class MoMLSnapshotBenchmark {
+
+    /** Run the benchmark and print the results.
+     *  @param args Optional "-runs n" arguments followed by the models.
+     *  @exception Exception If a model cannot be built.
+     */
+    public static void main(String[] args) throws Exception {
+        int runs = 20;
+        int first = 0;
+        if (args.length > 1 && args[0].equals("-runs")) {
+            runs = Integer.parseInt(args[1]);
+            first = 2;
+        }
+        if (first >= args.length) {
+            System.err.println("Usage: java -classpath $PTII "
+                    + "ptolemy.moml.test.MoMLSnapshotBenchmark "
+                    + "[-runs n] model.xml ...");
+            return;
+        }
+        MoMLParser.setMoMLFilters(BackwardCompatibility.allFilters());
+        MoMLParser.addMoMLFilter(new RemoveGraphicalClasses());
+
+        File directory = File.createTempFile("snapshots", "");
+        if (!directory.delete() || !directory.mkdir()) {
+            throw new Exception("Failed to create " + directory);
+        }
+        try {
+            System.out.println("model\tMoML (ms)\tsnapshot (ms)\tspeedup");
+            for (int i = first; i < args.length; i++) {
+                URL url = new File(args[i]).toURI().toURL();
+
+                MoMLParser.setSnapshotDirectory(null);
+                String moml = _build(url);
+                long parseTime = _time(url, runs);
+
+                MoMLParser.setSnapshotDirectory(directory);
+                // Write the snapshot.
+                _build(url);
+                if (!_build(url).equals(moml)) {
+                    throw new Exception("The model built from the snapshot "
+                            + "of " + url + " differs from the model.");
+                }
+                long snapshotTime = _time(url, runs);
+
+                System.out.println(new File(args[i]).getName() + "\t"
+                        + parseTime / 1000000.0 + "\t"
+                        + snapshotTime / 1000000.0 + "\t"
+                        + (double) parseTime / snapshotTime);
+            }
+        } finally {
+            MoMLParser.setSnapshotDirectory(null);
+            for (File file : directory.listFiles()) {
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+            if (!directory.delete()) {
+                directory.deleteOnExit();
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Build the model with a new parser and return its MoML. */
+    private static String _build(URL url) throws Exception {
+        MoMLParser.purgeAllModelRecords();
+        MoMLParser parser = new MoMLParser(new Workspace());
+        NamedObj toplevel = parser.parse(null, url);
+        return toplevel.exportMoML();
+    }
+
+    /** Return the average time in nanoseconds to build the model,
+     *  after building it as many times to warm up.
+     */
+    private static long _time(URL url, int runs) throws Exception {
+        for (int i = 0; i < runs; i++) {
+            _build(url);
+        }
+        long startTime = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            MoMLParser.purgeAllModelRecords();
+            new MoMLParser(new Workspace()).parse(null, url);
+        }
+        return (System.nanoTime() - startTime) / runs;
+    }
+}
@@ -0,0 +1,155 @@
+/* Measure the validation of the parameters of a model when it is loaded.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+ */
+package ptolemy.moml.test;
+
+import ptolemy.data.expr.SettableValidator;
+import ptolemy.kernel.util.NamedObj;
+import ptolemy.kernel.util.Workspace;
+import ptolemy.moml.MoMLParser;
+
+///////////////////////////////////////////////////////////////////
+//// ParameterValidationBenchmark
+
+/**
+ Build a model with many parameters that depend on each other, and print
+ the time it takes to parse it when the parameters are validated at the
+ end of the document, and when their evaluation is deferred, together
+ with the numbers of evaluated and skipped parameters.  For comparison,
+ the time of validateSettables() on the model is also printed.
+ <p>
+ The model has a number of composite entities, each with a chain of
+ parameters, where each parameter refers to the previous one and
+ to a parameter of the top level.
+ <p>
+ To run, use:
+ <pre>
+ java -classpath $PTII ptolemy.moml.test.ParameterValidationBenchmark [-entities n] [-parameters n] [-runs n]
+ </pre>
+ The number of entities defaults to 200, the number of parameters of
+ each entity to 50, and the number of runs to 10.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class ParameterValidationBenchmark {
+
+    /** Run the benchmark and print the results.
+     *  @param args Optional "-entities n", "-parameters n" and "-runs n"
+     *   arguments.
+     *  @exception Exception If the model cannot be built.
+     */
+    public static void main(String[] args) throws Exception {
+        int entities = 200;
+        int parameters = 50;
+        int runs = 10;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("-entities")) {
+                entities = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-parameters")) {
+                parameters = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-runs")) {
+                runs = Integer.parseInt(args[i + 1]);
+            } else {
+                System.err.println("Usage: java -classpath $PTII "
+                        + "ptolemy.moml.test.ParameterValidationBenchmark "
+                        + "[-entities n] [-parameters n] [-runs n]");
+                return;
+            }
+        }
+
+        StringBuffer moml = new StringBuffer(
+                "<entity name=\"top\" "
+                        + "class=\"ptolemy.actor.TypedCompositeActor\">\n"
+                        + "<property name=\"scale\" "
+                        + "class=\"ptolemy.data.expr.Parameter\" "
+                        + "value=\"2.0\"/>\n");
+        for (int i = 0; i < entities; i++) {
+            moml.append("<entity name=\"e" + i + "\" "
+                    + "class=\"ptolemy.actor.TypedCompositeActor\">\n");
+            // Write the parameters in the reverse order of their
+            // dependencies.
+            for (int j = parameters - 1; j >= 0; j--) {
+                String value = j == 0 ? Integer.toString(i) : "p" + (j - 1)
+                        + " + scale";
+                moml.append("<property name=\"p" + j + "\" "
+                        + "class=\"ptolemy.data.expr.Parameter\" "
+                        + "value=\"" + value + "\"/>\n");
+            }
+            moml.append("</entity>\n");
+        }
+        moml.append("</entity>\n");
+        String text = moml.toString();
+
+        System.out.println("parameters: " + entities * parameters);
+        System.out.println("mode\tparse (ms)\tvalidate (ms)\tevaluated\tskipped");
+        // Run each mode once before measuring, so that the classes are
+        // loaded and compiled.
+        for (int run = 0; run <= runs; run++) {
+            boolean report = run == runs;
+            _build(text, false, report);
+            _build(text, true, report);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Build the model with a new parser, validate its parameters,
+     *  and print the times if report is true.
+     */
+    private static void _build(String moml, boolean defer, boolean report)
+            throws Exception {
+        MoMLParser.setDeferParameterEvaluation(defer);
+        try {
+            MoMLParser parser = new MoMLParser(new Workspace());
+            long startTime = System.nanoTime();
+            NamedObj toplevel = parser.parse(moml);
+            long parseTime = System.nanoTime() - startTime;
+
+            SettableValidator validator = parser.getSettableValidator();
+            startTime = System.nanoTime();
+            if (defer) {
+                // This is what the Manager does before preinitialize().
+                SettableValidator.validateDeferred(toplevel);
+            } else {
+                toplevel.validateSettables();
+            }
+            long validateTime = System.nanoTime() - startTime;
+            if (report) {
+                System.out.println((defer ? "deferred" : "eager") + "\t"
+                        + parseTime / 1000000 + "\t" + validateTime / 1000000
+                        + "\t" + validator.getEvaluatedCount() + "\t"
+                        + validator.getSkippedCount());
+            }
+        } finally {
+            MoMLParser.setDeferParameterEvaluation(false);
+        }
+    }
+}
@@ -338,6 +338,18 @@ public class ProxyModelInfrastructure {
         return _topLevelActor;
     }
 
+    /** Return true if BINARY_TOKEN_CODEC is true in
+     *  PtolemyServerConfig.properties, that is, if this side can
+     *  publish its tokens with a {@link ptserver.data.BinaryTokenCodec}.
+     *  The server reports this value to the client in its
+     *  {@link ProxyModelResponse}.
+     *  @return True if the binary token codec may be used.
+     *  @see #useBinaryTokenCodec()
+     */
+    public static boolean isBinaryTokenCodecEnabled() {
+        return _BINARY_TOKEN_CODEC;
+    }
+
     /** Return true if the model is stopped, otherwise return false.
      *  @return the stopped state of the model.
      *  @see #setStopped(boolean)
@@ -432,6 +444,23 @@ public class ProxyModelInfrastructure {
         return _topLevelActor.getManager();
     }
 
+    /** Publish the tokens with a {@link ptserver.data.BinaryTokenCodec}
+     *  from the next batch on, if BINARY_TOKEN_CODEC is true in
+     *  PtolemyServerConfig.properties.  The tokens are first published in
+     *  the layout of the {@link ptserver.data.TokenParser}, which every
+     *  remote model can read.  A client calls this method if the
+     *  {@link ProxyModelResponse} of the server reports that the server
+     *  can read binary batches.  The {@link TokenListener} calls it when a
+     *  binary batch arrives, which shows that the remote model can read
+     *  them as well.
+     *  @see #isBinaryTokenCodecEnabled()
+     */
+    public void useBinaryTokenCodec() {
+        if (_BINARY_TOKEN_CODEC) {
+            _tokenPublisher.setBinaryCodec(true);
+        }
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////                         protected methods                 ////
 
@@ -801,6 +830,10 @@ public class ProxyModelInfrastructure {
      */
     private static final int _PERIOD;
 
+    /** True if the tokens may be published with a BinaryTokenCodec.
+     */
+    private static final boolean _BINARY_TOKEN_CODEC;
+
     /** The maximum latency before forcing the proxy sinks to sleepl.
      */
     private int _maxLatency = 500;
@@ -841,5 +874,14 @@ public class ProxyModelInfrastructure {
             val = 100;
         }
         _PERIOD = val;
+
+        boolean binaryTokenCodec;
+        try {
+            binaryTokenCodec = Boolean.parseBoolean(config.getString(
+                    "BINARY_TOKEN_CODEC").trim());
+        } catch (Throwable e) {
+            binaryTokenCodec = false;
+        }
+        _BINARY_TOKEN_CODEC = binaryTokenCodec;
     }
 }
@@ -56,6 +56,17 @@ public class ProxyModelResponse implements Serializable {
         return _brokerUrl;
     }
 
+    /** Return true if the server can read token batches that are written
+     *  by a {@link ptserver.data.BinaryTokenCodec}.  A server that predates
+     *  the binary codec never sets this, so the client keeps the layout of
+     *  the TokenParser.
+     *  @return True if the client may publish binary batches.
+     *  @see #setBinaryTokenCodec(boolean)
+     */
+    public boolean isBinaryTokenCodec() {
+        return _binaryTokenCodec;
+    }
+
     /** Get the model image (PNG) byte array.
      *  @return The image of the model.
      *  @see #setModelImage(byte[])
@@ -99,6 +110,15 @@ public class ProxyModelResponse implements Serializable {
         _brokerUrl = brokerUrl;
     }
 
+    /** Set whether the server can read token batches that are written by
+     *  a {@link ptserver.data.BinaryTokenCodec}.
+     *  @param binaryTokenCodec True if the client may publish binary batches.
+     *  @see #isBinaryTokenCodec()
+     */
+    public void setBinaryTokenCodec(boolean binaryTokenCodec) {
+        _binaryTokenCodec = binaryTokenCodec;
+    }
+
     /** Set the model image (PNG) byte array.
      *  @param modelImage The byte array of the model image.
      *  @see #getModelImage()
@@ -136,6 +156,10 @@ public class ProxyModelResponse implements Serializable {
     ///////////////////////////////////////////////////////////////////
     ////                         private variables                 ////
 
+    /** True if the server can read binary token batches.
+     */
+    private boolean _binaryTokenCodec;
+
     /** The URL of the server's message broker.
      */
     private String _brokerUrl;
@@ -35,6 +35,7 @@ import com.ibm.mqtt.MqttSimpleCallback;
 import ptolemy.data.Token;
 import ptolemy.kernel.util.Settable;
 import ptserver.data.AttributeChangeToken;
+import ptserver.data.BinaryTokenCodec;
 import ptserver.data.CommunicationToken;
 import ptserver.data.PingToken;
 import ptserver.data.PongToken;
@@ -89,6 +90,10 @@ public class TokenListener implements MqttSimpleCallback {
     @Override
     public void publishArrived(String topicName, byte[] payload, int qos,
             boolean retained) throws Exception {
+        if (BinaryTokenCodec.isBatch(payload)) {
+            // The remote model can read binary batches, so answer in kind.
+            _proxyModelInfrastructure.useBinaryTokenCodec();
+        }
         Tokenizer tokenizer = new Tokenizer(payload);
         Token token = null;
         // TODO remove this or change to proper logging
@@ -43,6 +43,7 @@ import ptolemy.data.Token;
 import ptolemy.kernel.util.IllegalActionException;
 import ptserver.actor.ProxySink;
 import ptserver.control.Ticket;
+import ptserver.data.BinaryTokenCodec;
 import ptserver.data.TokenParser;
 
 ///////////////////////////////////////////////////////////////////
@@ -65,8 +66,26 @@ public class TokenPublisher {
      */
     public TokenPublisher(long period,
             ProxyModelInfrastructure proxyModelInfrastructure) {
+        this(period, proxyModelInfrastructure, false);
+    }
+
+    /** Create instance of the TokenPublisher with specified period that
+     *  converts tokens either with the TokenParser or with a BinaryTokenCodec.
+     *  @param period The period in milliseconds between batches
+     *  @param proxyModelInfrastructure The infrastructure that created this listener and controls the state of the execution.
+     *  @param binaryCodec True if the tokens are converted with a
+     *  {@link BinaryTokenCodec}, which writes them more compactly into a pooled buffer.
+     *  The batches can be read by a {@link ptserver.data.Tokenizer} in either case.
+     */
+    public TokenPublisher(long period,
+            ProxyModelInfrastructure proxyModelInfrastructure,
+            boolean binaryCodec) {
         _period = period;
         _proxyModelInfrastructure = proxyModelInfrastructure;
+        _binaryCodec = binaryCodec;
+        if (binaryCodec) {
+            _codec = new BinaryTokenCodec();
+        }
     }
 
     /** Start the timer that sends token batches.
@@ -110,6 +129,8 @@ public class TokenPublisher {
                 _publisherFuture.cancel(true);
             }
         }
+        _binaryCodec = false;
+        _updateCodec();
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -131,6 +152,15 @@ public class TokenPublisher {
         return _topic;
     }
 
+    /** Return true if the tokens of the next batches are converted with
+     *  a {@link BinaryTokenCodec}.
+     *  @return True if the binary codec is used.
+     *  @see #setBinaryCodec(boolean)
+     */
+    public synchronized boolean isBinaryCodec() {
+        return _binaryCodec;
+    }
+
     /** Send the token via MQTT protocol.
      *  <p>The token will not be sent out immediately but would be batched for the specified period.</p>
      *  @param token The token to send
@@ -143,7 +173,12 @@ public class TokenPublisher {
         try {
             final int currentTokenCount;
             synchronized (this) {
-                TokenParser.getInstance().convertToBytes(token, _outputStream);
+                if (_codec != null) {
+                    _codec.encode(token);
+                } else {
+                    TokenParser.getInstance().convertToBytes(token,
+                            _outputStream);
+                }
                 _tokenCount++;
                 currentTokenCount = _tokenCount;
             }
@@ -160,6 +195,21 @@ public class TokenPublisher {
         }
     }
 
+    /** Set whether the tokens are converted with a {@link BinaryTokenCodec}
+     *  or with the TokenParser.  If tokens are waiting to be sent, then the
+     *  change takes effect with the next batch, so that a batch is always
+     *  written in one layout.
+     *  @param binaryCodec True if the tokens are converted with a
+     *  BinaryTokenCodec.
+     *  @see #isBinaryCodec()
+     */
+    public synchronized void setBinaryCodec(boolean binaryCodec) {
+        _binaryCodec = binaryCodec;
+        if (_tokenCount == 0) {
+            _updateCodec();
+        }
+    }
+
     /** Set the mqttClient to be used to publish the tokens.
      *  @param mqttClient the mqttClient to be used to publish the tokens.
      *  @see #getMqttClient()
@@ -179,13 +229,35 @@ public class TokenPublisher {
     private synchronized void _sendBatch() throws MqttNotConnectedException,
     MqttPersistenceException, IllegalArgumentException, MqttException {
         if (_tokenCount > 0) {
-            byte[] batch = _outputStream.toByteArray();
+            byte[] batch;
+            if (_codec != null) {
+                batch = _codec.toByteArray();
+            } else {
+                batch = _outputStream.toByteArray();
+            }
             _mqttClient.publish(getTopic(), batch,
                     ProxyModelInfrastructure.QOS_LEVEL, false);
             _LOGGER.fine("publishing batch " + _batchCount++ + " batch size "
                     + batch.length + " token count " + _tokenCount);
-            _outputStream.reset();
+            if (_codec != null) {
+                _codec.reset();
+            } else {
+                _outputStream.reset();
+            }
             _tokenCount = 0;
+            _updateCodec();
+        }
+    }
+
+    /** Create or release the codec so that it matches _binaryCodec.
+     *  This is called when the batch is empty.
+     */
+    private void _updateCodec() {
+        if (_binaryCodec && _codec == null) {
+            _codec = new BinaryTokenCodec();
+        } else if (!_binaryCodec && _codec != null) {
+            _codec.release();
+            _codec = null;
         }
     }
 
@@ -198,6 +270,16 @@ public class TokenPublisher {
      */
     private int _batchCount;
 
+    /** True if the tokens of the next batches are converted with a
+     *  BinaryTokenCodec.
+     */
+    private boolean _binaryCodec;
+
+    /** The codec that converts the tokens of the batch, or null if
+     *  the TokenParser is used.
+     */
+    private BinaryTokenCodec _codec;
+
     /** The mqtt client instance used to send messages.
      */
     private IMqttClient _mqttClient;
@@ -500,6 +500,8 @@ public final class PtolemyServer implements IServerManager {
                     downloadModel(ticket.getLayoutUrl())));
             response.setModelImage(_getModelImage(new URL(modelUrl)));
             response.setBrokerUrl(_brokerUrl);
+            response.setBinaryTokenCodec(ProxyModelInfrastructure
+                    .isBinaryTokenCodecEnabled());
 
             _requests.put(ticket, simulationTask);
         } catch (Exception e) {
@@ -0,0 +1,728 @@
+/* Convert batches of tokens to and from a compact binary layout.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+ */
+
+package ptserver.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Map.Entry;
+
+import ptolemy.data.ArrayToken;
+import ptolemy.data.BooleanToken;
+import ptolemy.data.ComplexArrayToken;
+import ptolemy.data.ComplexMatrixToken;
+import ptolemy.data.ComplexToken;
+import ptolemy.data.DoubleArrayToken;
+import ptolemy.data.DoubleMatrixToken;
+import ptolemy.data.DoubleToken;
+import ptolemy.data.FloatToken;
+import ptolemy.data.IntArrayToken;
+import ptolemy.data.IntMatrixToken;
+import ptolemy.data.IntToken;
+import ptolemy.data.LongMatrixToken;
+import ptolemy.data.LongToken;
+import ptolemy.data.MatrixToken;
+import ptolemy.data.RecordToken;
+import ptolemy.data.ShortToken;
+import ptolemy.data.StringToken;
+import ptolemy.data.Token;
+import ptolemy.data.UnsignedByteToken;
+import ptolemy.data.type.BaseType;
+import ptolemy.kernel.util.IllegalActionException;
+import ptolemy.math.Complex;
+
+///////////////////////////////////////////////////////////////////
+//// BinaryTokenCodec
+
+/** <p>Convert batches of tokens to and from a compact binary layout.
+ *  An instance of this class encodes tokens one after another into a
+ *  direct ByteBuffer that is taken from a pool shared by all instances,
+ *  so that sending a batch of tokens does not allocate a new buffer or
+ *  go through a chain of streams.  The static
+ *  {@link #decodeToken(ByteBuffer)} method reads the tokens back.</p>
+ *
+ *  <p>A batch starts with {@link #BATCH_MARKER} and a version byte.
+ *  A batch produced by {@link TokenParser} always starts with a
+ *  zero byte, so {@link #isBatch(byte[])} can tell the two formats
+ *  apart and {@link Tokenizer} reads both.  Each token is a one byte tag
+ *  followed by its value in little endian byte order.  Arrays of
+ *  doubles, ints and complex numbers, and double, int, long and
+ *  complex matrices, are written as a length followed by the primitive
+ *  values, without a tag for each element.  Arrays of doubles and ints
+ *  are read back as a {@link DoubleArrayToken} or an
+ *  {@link IntArrayToken}.  Records and arrays of other tokens are
+ *  written as their labels and elements, and the CommunicationTokens
+ *  that carry the tokens of the proxy sinks are written as their ports
+ *  and channels.  Tokens of any other class are written by the
+ *  TokenParser.</p>
+ *
+ *  <p>This class is not thread safe.  TokenPublisher synchronizes
+ *  access to its instance.</p>
+ *
+ *  @author Ptolemy II developers
+ *  @version $Id$
+ *  @since Ptolemy II 11.0
+ *  @Pt.ProposedRating Red (cxh)
+ *  @Pt.AcceptedRating Red (cxh)
+ *  @see ptserver.data.TokenParser
+ */
+public class BinaryTokenCodec {
+
+    /** Create a new codec with an empty batch.
+     */
+    public BinaryTokenCodec() {
+        _buffer = _acquireBuffer(_INITIAL_CAPACITY);
+        reset();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Decode the next token of a batch.
+     *  @param buffer The buffer positioned at the start of the token.
+     *  The buffer must be in little endian byte order, as returned by
+     *  {@link #wrapBatch(byte[])}.
+     *  @return The token.
+     *  @exception IllegalActionException If the buffer does not contain
+     *  a valid token.
+     */
+    public static Token decodeToken(ByteBuffer buffer)
+            throws IllegalActionException {
+        try {
+            return _decode(buffer);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalActionException(null, e,
+                    "The token batch ends in the middle of a token.");
+        } catch (IOException e) {
+            throw new IllegalActionException(null, e,
+                    "Problem reading a token written by the TokenParser.");
+        }
+    }
+
+    /** Append the token to the batch.
+     *  @param token The token to encode.
+     *  @exception IllegalActionException If the token is not supported
+     *  by this class or by the TokenParser.
+     */
+    public void encode(Token token) throws IllegalActionException {
+        // If the token cannot be encoded, then remove the part of it
+        // that was written so that the batch stays readable.
+        int start = _buffer.position();
+        try {
+            _encode(token);
+        } catch (IOException e) {
+            _buffer.position(start);
+            throw new IllegalActionException(null, e,
+                    "Problem converting " + token + " with the TokenParser.");
+        } catch (IllegalActionException | RuntimeException e) {
+            _buffer.position(start);
+            throw e;
+        }
+        _tokenCount++;
+    }
+
+    /** Return the number of tokens in the batch.
+     *  @return The number of tokens in the batch.
+     */
+    public int getTokenCount() {
+        return _tokenCount;
+    }
+
+    /** Return true if the payload is a batch written by this class, and
+     *  false if it was written by the TokenParser.
+     *  @param payload The payload of a message.
+     *  @return True if the payload starts with the batch marker.
+     */
+    public static boolean isBatch(byte[] payload) {
+        return payload.length >= _HEADER_SIZE && payload[0] == BATCH_MARKER;
+    }
+
+    /** Return the buffer of this codec to the pool.
+     *  The codec may not be used after this method has been called.
+     */
+    public void release() {
+        if (_buffer != null) {
+            _releaseBuffer(_buffer);
+            _buffer = null;
+        }
+    }
+
+    /** Discard the tokens in the batch.
+     */
+    public void reset() {
+        _buffer.clear();
+        _buffer.put(BATCH_MARKER);
+        _buffer.put(_VERSION);
+        _tokenCount = 0;
+    }
+
+    /** Return the number of bytes in the batch, including the header.
+     *  @return The number of bytes in the batch.
+     */
+    public int size() {
+        return _buffer.position();
+    }
+
+    /** Return the batch as a byte array.  This copies the batch out of
+     *  the pooled buffer because the MQTT client only publishes byte
+     *  arrays.
+     *  @return The batch.
+     */
+    public byte[] toByteArray() {
+        byte[] result = new byte[_buffer.position()];
+        ByteBuffer view = _buffer.duplicate();
+        view.flip();
+        view.get(result);
+        return result;
+    }
+
+    /** Wrap the payload of a batch in a buffer positioned at the first
+     *  token.  The payload is not copied.
+     *  @param payload The payload of a batch.
+     *  @return The buffer.
+     *  @exception IllegalActionException If the payload is not a batch
+     *  written by a supported version of this class.
+     */
+    public static ByteBuffer wrapBatch(byte[] payload)
+            throws IllegalActionException {
+        if (!isBatch(payload)) {
+            throw new IllegalActionException(
+                    "The payload is not a binary token batch.");
+        }
+        if (payload[1] != _VERSION) {
+            throw new IllegalActionException(
+                    "Unsupported binary token batch version " + payload[1]
+                            + ".");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(_HEADER_SIZE);
+        return buffer;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public variables                  ////
+
+    /** The first byte of a batch.  A batch written by the TokenParser
+     *  starts with the high byte of a handler position, which is zero.
+     */
+    public static final byte BATCH_MARKER = (byte) 0xFF;
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Return a buffer with at least the specified capacity from the
+     *  pool, or allocate a new one if there is none.
+     */
+    private static ByteBuffer _acquireBuffer(int capacity) {
+        synchronized (_POOL) {
+            for (ByteBuffer buffer : _POOL) {
+                if (buffer.capacity() >= capacity) {
+                    _POOL.remove(buffer);
+                    buffer.clear();
+                    return buffer;
+                }
+            }
+        }
+        int size = _INITIAL_CAPACITY;
+        while (size < capacity) {
+            size *= 2;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    /** Read a token from the buffer.
+     */
+    private static Token _decode(ByteBuffer buffer)
+            throws IllegalActionException, IOException {
+        byte tag = buffer.get();
+        switch (tag) {
+        case _DOUBLE:
+            return new DoubleToken(buffer.getDouble());
+        case _INT:
+            return new IntToken(buffer.getInt());
+        case _LONG:
+            return new LongToken(buffer.getLong());
+        case _BOOLEAN:
+            return BooleanToken.getInstance(buffer.get() != 0);
+        case _STRING:
+            return new StringToken(_getString(buffer));
+        case _FLOAT:
+            return new FloatToken(buffer.getFloat());
+        case _SHORT:
+            return new ShortToken(buffer.getShort());
+        case _UNSIGNED_BYTE:
+            return new UnsignedByteToken(buffer.get());
+        case _COMPLEX:
+            return new ComplexToken(_getComplex(buffer));
+        case _DOUBLE_ARRAY: {
+            double[] values = new double[buffer.getInt()];
+            buffer.asDoubleBuffer().get(values);
+            buffer.position(buffer.position() + values.length * 8);
+            return new DoubleArrayToken(values);
+        }
+        case _INT_ARRAY: {
+            int[] values = new int[buffer.getInt()];
+            buffer.asIntBuffer().get(values);
+            buffer.position(buffer.position() + values.length * 4);
+            return new IntArrayToken(values);
+        }
+        case _COMPLEX_ARRAY: {
+            Complex[] values = new Complex[buffer.getInt()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = _getComplex(buffer);
+            }
+            return new ComplexArrayToken(values);
+        }
+        case _ARRAY: {
+            Token[] tokens = new Token[buffer.getInt()];
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = _decode(buffer);
+            }
+            return new ArrayToken(tokens);
+        }
+        case _DOUBLE_MATRIX: {
+            int rows = buffer.getInt();
+            int columns = buffer.getInt();
+            double[] values = new double[rows * columns];
+            buffer.asDoubleBuffer().get(values);
+            buffer.position(buffer.position() + values.length * 8);
+            return new DoubleMatrixToken(values, rows, columns,
+                    MatrixToken.DO_NOT_COPY);
+        }
+        case _INT_MATRIX: {
+            int rows = buffer.getInt();
+            int columns = buffer.getInt();
+            int[] values = new int[rows * columns];
+            buffer.asIntBuffer().get(values);
+            buffer.position(buffer.position() + values.length * 4);
+            return new IntMatrixToken(values, rows, columns,
+                    MatrixToken.DO_NOT_COPY);
+        }
+        case _LONG_MATRIX: {
+            int rows = buffer.getInt();
+            int columns = buffer.getInt();
+            long[] values = new long[rows * columns];
+            buffer.asLongBuffer().get(values);
+            buffer.position(buffer.position() + values.length * 8);
+            return new LongMatrixToken(values, rows, columns,
+                    MatrixToken.DO_NOT_COPY);
+        }
+        case _COMPLEX_MATRIX: {
+            Complex[][] values = new Complex[buffer.getInt()][buffer
+                                                               .getInt()];
+            for (Complex[] row : values) {
+                for (int column = 0; column < row.length; column++) {
+                    row[column] = _getComplex(buffer);
+                }
+            }
+            return new ComplexMatrixToken(values, MatrixToken.DO_NOT_COPY);
+        }
+        case _RECORD: {
+            String[] labels = new String[buffer.getInt()];
+            Token[] values = new Token[labels.length];
+            for (int i = 0; i < labels.length; i++) {
+                labels[i] = _getString(buffer);
+                values[i] = _decode(buffer);
+            }
+            return new RecordToken(labels, values);
+        }
+        case _COMMUNICATION: {
+            CommunicationToken token = new CommunicationToken(
+                    _getString(buffer));
+            int portCount = buffer.getInt();
+            for (int portIndex = 0; portIndex < portCount; portIndex++) {
+                String port = _getString(buffer);
+                int channelCount = buffer.getInt();
+                token.addPort(port, channelCount);
+                for (int channel = 0; channel < channelCount; channel++) {
+                    Token[] tokens = new Token[buffer.getInt()];
+                    for (int i = 0; i < tokens.length; i++) {
+                        tokens[i] = _decode(buffer);
+                    }
+                    token.putTokens(port, channel, tokens);
+                }
+            }
+            return token;
+        }
+        case _TOKEN_PARSER: {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            return TokenParser.getInstance().convertToToken(
+                    new DataInputStream(new ByteArrayInputStream(bytes)));
+        }
+        default:
+            throw new IllegalActionException("Unknown token tag " + tag
+                    + " at position " + (buffer.position() - 1) + ".");
+        }
+    }
+
+    /** Append the token to the buffer.
+     */
+    private void _encode(Token token) throws IllegalActionException,
+    IOException {
+        Class<?> tokenClass = token.getClass();
+        if (tokenClass == DoubleToken.class) {
+            _ensureCapacity(9);
+            _buffer.put(_DOUBLE);
+            _buffer.putDouble(((DoubleToken) token).doubleValue());
+        } else if (tokenClass == IntToken.class) {
+            _ensureCapacity(5);
+            _buffer.put(_INT);
+            _buffer.putInt(((IntToken) token).intValue());
+        } else if (tokenClass == LongToken.class) {
+            _ensureCapacity(9);
+            _buffer.put(_LONG);
+            _buffer.putLong(((LongToken) token).longValue());
+        } else if (tokenClass == BooleanToken.class) {
+            _ensureCapacity(2);
+            _buffer.put(_BOOLEAN);
+            _buffer.put(((BooleanToken) token).booleanValue() ? (byte) 1
+                    : (byte) 0);
+        } else if (tokenClass == StringToken.class) {
+            _putTag(_STRING);
+            _putString(((StringToken) token).stringValue());
+        } else if (tokenClass == FloatToken.class) {
+            _ensureCapacity(5);
+            _buffer.put(_FLOAT);
+            _buffer.putFloat(((FloatToken) token).floatValue());
+        } else if (tokenClass == ShortToken.class) {
+            _ensureCapacity(3);
+            _buffer.put(_SHORT);
+            _buffer.putShort(((ShortToken) token).shortValue());
+        } else if (tokenClass == UnsignedByteToken.class) {
+            _ensureCapacity(2);
+            _buffer.put(_UNSIGNED_BYTE);
+            _buffer.put(((UnsignedByteToken) token).byteValue());
+        } else if (tokenClass == ComplexToken.class) {
+            _ensureCapacity(17);
+            _buffer.put(_COMPLEX);
+            _putComplex(((ComplexToken) token).complexValue());
+        } else if (token instanceof ArrayToken
+                && ((ArrayToken) token).length() > 0) {
+            _encodeArray((ArrayToken) token);
+        } else if (tokenClass == DoubleMatrixToken.class) {
+            DoubleMatrixToken matrix = (DoubleMatrixToken) token;
+            int rows = matrix.getRowCount();
+            int columns = matrix.getColumnCount();
+            _ensureCapacity(9 + rows * columns * 8);
+            _buffer.put(_DOUBLE_MATRIX);
+            _buffer.putInt(rows);
+            _buffer.putInt(columns);
+            for (int row = 0; row < rows; row++) {
+                for (int column = 0; column < columns; column++) {
+                    _buffer.putDouble(matrix.getElementAt(row, column));
+                }
+            }
+        } else if (tokenClass == IntMatrixToken.class) {
+            IntMatrixToken matrix = (IntMatrixToken) token;
+            int rows = matrix.getRowCount();
+            int columns = matrix.getColumnCount();
+            _ensureCapacity(9 + rows * columns * 4);
+            _buffer.put(_INT_MATRIX);
+            _buffer.putInt(rows);
+            _buffer.putInt(columns);
+            for (int row = 0; row < rows; row++) {
+                for (int column = 0; column < columns; column++) {
+                    _buffer.putInt(matrix.getElementAt(row, column));
+                }
+            }
+        } else if (tokenClass == LongMatrixToken.class) {
+            LongMatrixToken matrix = (LongMatrixToken) token;
+            int rows = matrix.getRowCount();
+            int columns = matrix.getColumnCount();
+            _ensureCapacity(9 + rows * columns * 8);
+            _buffer.put(_LONG_MATRIX);
+            _buffer.putInt(rows);
+            _buffer.putInt(columns);
+            for (int row = 0; row < rows; row++) {
+                for (int column = 0; column < columns; column++) {
+                    _buffer.putLong(matrix.getElementAt(row, column));
+                }
+            }
+        } else if (tokenClass == ComplexMatrixToken.class) {
+            ComplexMatrixToken matrix = (ComplexMatrixToken) token;
+            int rows = matrix.getRowCount();
+            int columns = matrix.getColumnCount();
+            _ensureCapacity(9 + rows * columns * 16);
+            _buffer.put(_COMPLEX_MATRIX);
+            _buffer.putInt(rows);
+            _buffer.putInt(columns);
+            for (int row = 0; row < rows; row++) {
+                for (int column = 0; column < columns; column++) {
+                    _putComplex(matrix.getElementAt(row, column));
+                }
+            }
+        } else if (tokenClass == RecordToken.class) {
+            RecordToken record = (RecordToken) token;
+            _putTag(_RECORD);
+            _putInt(record.length());
+            for (String label : record.labelSet()) {
+                _putString(label);
+                _encode(record.get(label));
+            }
+        } else if (tokenClass == CommunicationToken.class) {
+            CommunicationToken communicationToken = (CommunicationToken) token;
+            _putTag(_COMMUNICATION);
+            _putString(communicationToken.getTargetActorName());
+            _putInt(communicationToken.getPortChannelTokenMap().size());
+            for (Entry<String, ArrayList<Token[]>> entry : communicationToken
+                    .getPortChannelTokenMap().entrySet()) {
+                _putString(entry.getKey());
+                _putInt(entry.getValue().size());
+                for (Token[] tokens : entry.getValue()) {
+                    _putInt(tokens.length);
+                    for (Token innerToken : tokens) {
+                        _encode(innerToken);
+                    }
+                }
+            }
+        } else {
+            if (_tokenParserStream == null) {
+                _tokenParserStream = new ByteArrayOutputStream();
+            }
+            _tokenParserStream.reset();
+            TokenParser.getInstance().convertToBytes(token,
+                    _tokenParserStream);
+            _ensureCapacity(5 + _tokenParserStream.size());
+            _buffer.put(_TOKEN_PARSER);
+            _buffer.putInt(_tokenParserStream.size());
+            _buffer.put(_tokenParserStream.toByteArray());
+        }
+    }
+
+    /** Append a non-empty array token to the buffer.  Arrays of doubles,
+     *  ints and complex numbers are written without a tag for each
+     *  element.
+     */
+    private void _encodeArray(ArrayToken array) throws IllegalActionException,
+    IOException {
+        int length = array.length();
+        if (array instanceof DoubleArrayToken) {
+            DoubleArrayToken doubleArray = (DoubleArrayToken) array;
+            _ensureCapacity(5 + length * 8);
+            _buffer.put(_DOUBLE_ARRAY);
+            _buffer.putInt(length);
+            for (int i = 0; i < length; i++) {
+                _buffer.putDouble(doubleArray.getDoubleElement(i));
+            }
+        } else if (array instanceof IntArrayToken) {
+            IntArrayToken intArray = (IntArrayToken) array;
+            _ensureCapacity(5 + length * 4);
+            _buffer.put(_INT_ARRAY);
+            _buffer.putInt(length);
+            for (int i = 0; i < length; i++) {
+                _buffer.putInt(intArray.getIntElement(i));
+            }
+        } else if (array instanceof ComplexArrayToken) {
+            ComplexArrayToken complexArray = (ComplexArrayToken) array;
+            _ensureCapacity(5 + length * 16);
+            _buffer.put(_COMPLEX_ARRAY);
+            _buffer.putInt(length);
+            for (int i = 0; i < length; i++) {
+                _putComplex(complexArray.getComplexElement(i));
+            }
+        } else if (array.getElementType().equals(BaseType.DOUBLE)
+                && _hasElementsOfClass(array, DoubleToken.class)) {
+            _ensureCapacity(5 + length * 8);
+            _buffer.put(_DOUBLE_ARRAY);
+            _buffer.putInt(length);
+            for (int i = 0; i < length; i++) {
+                _buffer.putDouble(((DoubleToken) array.getElement(i))
+                        .doubleValue());
+            }
+        } else if (array.getElementType().equals(BaseType.INT)
+                && _hasElementsOfClass(array, IntToken.class)) {
+            _ensureCapacity(5 + length * 4);
+            _buffer.put(_INT_ARRAY);
+            _buffer.putInt(length);
+            for (int i = 0; i < length; i++) {
+                _buffer.putInt(((IntToken) array.getElement(i)).intValue());
+            }
+        } else {
+            _putTag(_ARRAY);
+            _putInt(length);
+            for (int i = 0; i < length; i++) {
+                _encode(array.getElement(i));
+            }
+        }
+    }
+
+    /** Make sure that the specified number of bytes can be put into the
+     *  buffer, replacing it with a larger buffer from the pool if
+     *  necessary.
+     */
+    private void _ensureCapacity(int bytes) {
+        if (_buffer.remaining() < bytes) {
+            ByteBuffer larger = _acquireBuffer(Math.max(
+                    _buffer.capacity() * 2, _buffer.position() + bytes));
+            _buffer.flip();
+            larger.put(_buffer);
+            _releaseBuffer(_buffer);
+            _buffer = larger;
+        }
+    }
+
+    /** Read a complex number from the buffer.
+     */
+    private static Complex _getComplex(ByteBuffer buffer) {
+        double real = buffer.getDouble();
+        return new Complex(real, buffer.getDouble());
+    }
+
+    /** Read a string written by _putString() from the buffer.
+     */
+    private static String _getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, _UTF8);
+    }
+
+    /** Return true if all the elements of the array are instances of
+     *  exactly the given class.
+     */
+    private static boolean _hasElementsOfClass(ArrayToken array,
+            Class<?> tokenClass) {
+        for (int i = 0; i < array.length(); i++) {
+            if (array.getElement(i).getClass() != tokenClass) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Put a complex number into the buffer, which must have room for it.
+     */
+    private void _putComplex(Complex value) {
+        _buffer.putDouble(value.real);
+        _buffer.putDouble(value.imag);
+    }
+
+    /** Put an int into the buffer.
+     */
+    private void _putInt(int value) {
+        _ensureCapacity(4);
+        _buffer.putInt(value);
+    }
+
+    /** Put a string into the buffer as its length followed by its UTF-8
+     *  bytes.  A null string is written as a length of -1.
+     */
+    private void _putString(String value) {
+        if (value == null) {
+            _putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(_UTF8);
+        _ensureCapacity(4 + bytes.length);
+        _buffer.putInt(bytes.length);
+        _buffer.put(bytes);
+    }
+
+    /** Put a tag into the buffer.
+     */
+    private void _putTag(byte tag) {
+        _ensureCapacity(1);
+        _buffer.put(tag);
+    }
+
+    /** Return a buffer to the pool, unless the pool is full.
+     */
+    private static void _releaseBuffer(ByteBuffer buffer) {
+        synchronized (_POOL) {
+            if (_POOL.size() < _MAXIMUM_POOL_SIZE) {
+                _POOL.add(buffer);
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The buffer holding the batch. */
+    private ByteBuffer _buffer;
+
+    /** The number of tokens in the batch. */
+    private int _tokenCount;
+
+    /** The stream used to write tokens with the TokenParser. */
+    private ByteArrayOutputStream _tokenParserStream;
+
+    /** The size of the batch header. */
+    private static final int _HEADER_SIZE = 2;
+
+    /** The capacity of a new buffer. */
+    private static final int _INITIAL_CAPACITY = 16384;
+
+    /** The maximum number of buffers kept in the pool. */
+    private static final int _MAXIMUM_POOL_SIZE = 8;
+
+    /** The buffers that are not in use. */
+    private static final ArrayDeque<ByteBuffer> _POOL = new ArrayDeque<ByteBuffer>();
+
+    /** The character set used for strings. */
+    private static final Charset _UTF8 = Charset.forName("UTF-8");
+
+    /** The version of the layout. */
+    private static final byte _VERSION = 1;
+
+    // Tags of the tokens.
+    private static final byte _DOUBLE = 1;
+    private static final byte _INT = 2;
+    private static final byte _LONG = 3;
+    private static final byte _BOOLEAN = 4;
+    private static final byte _STRING = 5;
+    private static final byte _FLOAT = 6;
+    private static final byte _SHORT = 7;
+    private static final byte _UNSIGNED_BYTE = 8;
+    private static final byte _COMPLEX = 9;
+    private static final byte _DOUBLE_ARRAY = 10;
+    private static final byte _INT_ARRAY = 11;
+    private static final byte _COMPLEX_ARRAY = 12;
+    private static final byte _ARRAY = 13;
+    private static final byte _DOUBLE_MATRIX = 14;
+    private static final byte _INT_MATRIX = 15;
+    private static final byte _LONG_MATRIX = 16;
+    private static final byte _COMPLEX_MATRIX = 17;
+    private static final byte _RECORD = 18;
+    private static final byte _COMMUNICATION = 19;
+    private static final byte _TOKEN_PARSER = 20;
+}
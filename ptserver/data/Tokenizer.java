@@ -30,6 +30,7 @@ package ptserver.data;
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import ptolemy.data.Token;
 import ptolemy.kernel.util.IllegalActionException;
@@ -38,6 +39,8 @@ import ptolemy.kernel.util.IllegalActionException;
 //// Tokenizer
 
 /** Tokenizer reads out tokens from the byte array.
+ *  The byte array may have been written either by the {@link TokenParser}
+ *  or by a {@link BinaryTokenCodec}.
  *  @author Anar Huseynov
  *  @version $Id$
  *  @since Ptolemy II 10.0
@@ -53,8 +56,14 @@ public class Tokenizer {
      *  @param payload the byte payload received from the MQTT broker.
      */
     public Tokenizer(byte[] payload) {
-        // There is no need to close the ByteArrayInputStream since it just wraps a byte array.
-        _inputStream = new DataInputStream(new ByteArrayInputStream(payload));
+        if (BinaryTokenCodec.isBatch(payload)) {
+            _payload = payload;
+            _inputStream = null;
+        } else {
+            // There is no need to close the ByteArrayInputStream since it just wraps a byte array.
+            _inputStream = new DataInputStream(
+                    new ByteArrayInputStream(payload));
+        }
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -66,6 +75,15 @@ public class Tokenizer {
      *  @exception IllegalActionException if there is a problem loading a token handler
      */
     public Token getNextToken() throws IOException, IllegalActionException {
+        if (_payload != null) {
+            if (_buffer == null) {
+                _buffer = BinaryTokenCodec.wrapBatch(_payload);
+            }
+            if (_buffer.hasRemaining()) {
+                return BinaryTokenCodec.decodeToken(_buffer);
+            }
+            return null;
+        }
         if (_inputStream.available() > 0) {
             return TokenParser.getInstance().convertToToken(_inputStream);
         }
@@ -76,7 +94,17 @@ public class Tokenizer {
     ///////////////////////////////////////////////////////////////////
     ////                         private variables                 ////
 
-    /** The input stream that wrapped the byte array.
+    /** The buffer that wraps the byte array if it was written by a
+     *  BinaryTokenCodec.
+     */
+    private ByteBuffer _buffer;
+
+    /** The input stream that wrapped the byte array if it was written
+     *  by the TokenParser.
      */
     private final DataInputStream _inputStream;
+
+    /** The byte array if it was written by a BinaryTokenCodec.
+     */
+    private byte[] _payload;
 }
@@ -0,0 +1,186 @@
+/* Compare the speed of the TokenParser and BinaryTokenCodec formats.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptserver.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+
+import ptolemy.data.DoubleArrayToken;
+import ptolemy.data.DoubleToken;
+import ptolemy.data.IntToken;
+import ptolemy.data.Token;
+import ptserver.data.BinaryTokenCodec;
+import ptserver.data.TokenParser;
+import ptserver.data.Tokenizer;
+
+///////////////////////////////////////////////////////////////////
+//// TokenCodecBenchmark
+
+/**
+ Encode and decode batches of tokens with the TokenParser format and
+ with the BinaryTokenCodec format and report the number of tokens per
+ second and the number of bytes per token.
+ <p>
+ Two workloads are measured: batches of scalar tokens, alternating
+ DoubleTokens and IntTokens, as sent by actors that produce a sample
+ per firing, and batches of DoubleArrayTokens, as sent by actors that
+ produce a frame of samples per firing.  Each workload is repeated
+ a few times so that the last rounds measure compiled code.
+ <p>
+ To run, use:
+ <pre>
+ java -classpath $PTII:$PTII/lib/* ptserver.test.TokenCodecBenchmark [-batches n] [-batchSize n] [-arrayLength n]
+ </pre>
+ The number of batches defaults to 1000, the number of tokens per
+ batch to 100 and the length of the arrays to 1000.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class TokenCodecBenchmark {
+
+    /** Run the benchmark and print the results.
+     *  @param args Optional "-batches n", "-batchSize n" and
+     *   "-arrayLength n" arguments.
+     *  @exception Exception If a token cannot be encoded or decoded.
+     */
+    public static void main(String[] args) throws Exception {
+        int batches = 1000;
+        int batchSize = 100;
+        int arrayLength = 1000;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("-batches")) {
+                batches = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-batchSize")) {
+                batchSize = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-arrayLength")) {
+                arrayLength = Integer.parseInt(args[i + 1]);
+            } else {
+                System.err.println("Usage: java -classpath $PTII "
+                        + "ptserver.test.TokenCodecBenchmark "
+                        + "[-batches n] [-batchSize n] [-arrayLength n]");
+                return;
+            }
+        }
+
+        Token[] scalars = new Token[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            if (i % 2 == 0) {
+                scalars[i] = new DoubleToken(i * 0.5);
+            } else {
+                scalars[i] = new IntToken(i);
+            }
+        }
+        Token[] arrays = new Token[batchSize];
+        double[] samples = new double[arrayLength];
+        for (int i = 0; i < batchSize; i++) {
+            for (int j = 0; j < arrayLength; j++) {
+                samples[j] = Math.sin(i + j * 0.01);
+            }
+            arrays[i] = new DoubleArrayToken(samples);
+        }
+
+        System.out.println("workload\tformat\ttokens/second\tbytes/token");
+        for (int round = 0; round < 3; round++) {
+            _report("scalars", scalars, batches);
+            _report("arrays", arrays,
+                    Math.max(1, batches * 100 / Math.max(100, arrayLength)));
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Encode and decode the tokens the given number of times with
+     *  each format and print the results.
+     */
+    private static void _report(String workload, Token[] tokens, int batches)
+            throws Exception {
+        TokenParser parser = TokenParser.getInstance();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(10000);
+        long bytes = 0;
+        long start = System.nanoTime();
+        for (int batch = 0; batch < batches; batch++) {
+            outputStream.reset();
+            DataOutputStream dataOutputStream = new DataOutputStream(
+                    outputStream);
+            for (Token token : tokens) {
+                parser.convertToBytes(token, dataOutputStream);
+            }
+            byte[] payload = outputStream.toByteArray();
+            bytes += payload.length;
+            _decode(payload, tokens.length);
+        }
+        _print(workload, "TokenParser", tokens.length, batches, bytes,
+                System.nanoTime() - start);
+
+        BinaryTokenCodec codec = new BinaryTokenCodec();
+        bytes = 0;
+        start = System.nanoTime();
+        try {
+            for (int batch = 0; batch < batches; batch++) {
+                codec.reset();
+                for (Token token : tokens) {
+                    codec.encode(token);
+                }
+                byte[] payload = codec.toByteArray();
+                bytes += payload.length;
+                _decode(payload, tokens.length);
+            }
+        } finally {
+            codec.release();
+        }
+        _print(workload, "BinaryTokenCodec", tokens.length, batches, bytes,
+                System.nanoTime() - start);
+    }
+
+    /** Decode a batch and check the number of tokens. */
+    private static void _decode(byte[] payload, int count) throws Exception {
+        Tokenizer tokenizer = new Tokenizer(payload);
+        int decoded = 0;
+        while (tokenizer.getNextToken() != null) {
+            decoded++;
+        }
+        if (decoded != count) {
+            throw new Exception("Decoded " + decoded + " tokens instead of "
+                    + count);
+        }
+    }
+
+    /** Print a line of results. */
+    private static void _print(String workload, String format,
+            int batchSize, int batches, long bytes, long elapsed) {
+        double tokens = (double) batchSize * batches;
+        System.out.println(workload + "\t" + format + "\t"
+                + Math.round(tokens / (elapsed * 1.0e-9)) + "\t"
+                + bytes / tokens);
+    }
+}
@@ -51,9 +51,9 @@ import ptolemy.util.StreamExec;
  * @Pt.AcceptedRating Red (ahuseyno)
  */
 @RunWith(Suite.class)
-@Suite.SuiteClasses({ TokenParserTest.class, ServletTest.class,
-    RemoteModelTest.class, FileDownloadTest.class, TypeParserTest.class,
-    RESTGetHandlerTest.class })
+@Suite.SuiteClasses({ TokenParserTest.class, BinaryTokenCodecTest.class,
+    TokenPublisherTest.class, ServletTest.class, RemoteModelTest.class,
+    FileDownloadTest.class, TypeParserTest.class, RESTGetHandlerTest.class })
 public class AllTests {
 
     /** Copy ptserver/PtolemyServerConfig.properties.default and start
@@ -0,0 +1,253 @@
+/* Test the BinaryTokenCodec.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+ */
+
+package ptserver.test.junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import ptolemy.data.ArrayToken;
+import ptolemy.data.BooleanToken;
+import ptolemy.data.ComplexMatrixToken;
+import ptolemy.data.ComplexToken;
+import ptolemy.data.DoubleArrayToken;
+import ptolemy.data.DoubleMatrixToken;
+import ptolemy.data.DoubleToken;
+import ptolemy.data.FloatToken;
+import ptolemy.data.IntArrayToken;
+import ptolemy.data.IntMatrixToken;
+import ptolemy.data.IntToken;
+import ptolemy.data.LongMatrixToken;
+import ptolemy.data.LongToken;
+import ptolemy.data.RecordToken;
+import ptolemy.data.ShortToken;
+import ptolemy.data.StringToken;
+import ptolemy.data.Token;
+import ptolemy.data.UnionToken;
+import ptolemy.data.UnsignedByteToken;
+import ptolemy.kernel.util.IllegalActionException;
+import ptolemy.math.Complex;
+import ptserver.data.BinaryTokenCodec;
+import ptserver.data.CommunicationToken;
+import ptserver.data.PingToken;
+import ptserver.data.TokenParser;
+import ptserver.data.Tokenizer;
+
+/**
+ * Test that tokens written by a BinaryTokenCodec are read back unchanged
+ * by a Tokenizer.
+ *
+ * @author Ptolemy II developers
+ * @version $Id$
+ * @since Ptolemy II 11.0
+ * @Pt.ProposedRating Red (cxh)
+ * @Pt.AcceptedRating Red (cxh)
+ */
+public class BinaryTokenCodecTest {
+
+    @Test
+    public void testScalarTokens() throws IOException, IllegalActionException {
+        _assertRoundTrip(new DoubleToken(123455.123), new IntToken(-42),
+                new LongToken(12345566L), BooleanToken.TRUE,
+                BooleanToken.FALSE, new StringToken("testing é"),
+                new FloatToken(123), new ShortToken(1234),
+                new UnsignedByteToken(220), new ComplexToken(new Complex(
+                        234.34, 3432.324)));
+    }
+
+    @Test
+    public void testArrayTokens() throws IOException, IllegalActionException {
+        Token[] mixed = new Token[] { new FloatToken(123),
+                new StringToken("Strinttesting") };
+        Token[] doubles = new Token[] { new DoubleToken(1.5),
+                new DoubleToken(-2.5) };
+        _assertRoundTrip(new ArrayToken(mixed), new ArrayToken(doubles),
+                new DoubleArrayToken(new double[] { 1.0, 2.0, 3.0 }),
+                new IntArrayToken(new int[] { 4, 5, 6 }), new ArrayToken(
+                        new Token[] { new ArrayToken(doubles) }));
+    }
+
+    @Test
+    public void testArrayTokensAreEqual() throws IOException,
+    IllegalActionException {
+        // Plain arrays of doubles, ints and complex numbers are read back
+        // as DoubleArrayToken, IntArrayToken and ComplexArrayToken, which
+        // must still compare equal to the originals with isEqualTo().
+        Token[] tokens = new Token[] {
+                new ArrayToken(new Token[] { new DoubleToken(1.5),
+                        new DoubleToken(-2.5) }),
+                new ArrayToken(new Token[] { new IntToken(4),
+                        new IntToken(5) }),
+                new ArrayToken(new Token[] {
+                        new ComplexToken(new Complex(1.0, 2.0)),
+                        new ComplexToken(new Complex(-3.0, 0.5)) }) };
+        BinaryTokenCodec codec = new BinaryTokenCodec();
+        try {
+            for (Token token : tokens) {
+                codec.encode(token);
+            }
+            Tokenizer tokenizer = new Tokenizer(codec.toByteArray());
+            for (Token token : tokens) {
+                Token decoded = tokenizer.getNextToken();
+                assertTrue(token.isEqualTo(decoded).booleanValue());
+                assertTrue(decoded.isEqualTo(token).booleanValue());
+            }
+            assertNull(tokenizer.getNextToken());
+        } finally {
+            codec.release();
+        }
+    }
+
+    @Test
+    public void testMatrixTokens() throws IOException, IllegalActionException {
+        double[][] doubles = new double[3][4];
+        int[][] ints = new int[3][4];
+        long[][] longs = new long[3][4];
+        Complex[][] complexes = new Complex[3][4];
+
+        for (int row = 0; row < 3; row++) {
+            for (int column = 0; column < 4; column++) {
+                doubles[row][column] = row * column * 2.34;
+                ints[row][column] = row * column;
+                longs[row][column] = row * column * 12232233L;
+                complexes[row][column] = new Complex(row * 2.34, column * 12.5);
+            }
+        }
+        _assertRoundTrip(new DoubleMatrixToken(doubles), new IntMatrixToken(
+                ints), new LongMatrixToken(longs), new ComplexMatrixToken(
+                        complexes));
+    }
+
+    @Test
+    public void testRecordAndUnionTokens() throws IOException,
+    IllegalActionException {
+        RecordToken record = new RecordToken(new String[] { "float", "long" },
+                new Token[] { new FloatToken(123), new DoubleToken(123.234) });
+        UnionToken union = new UnionToken("unionlabel", new ComplexToken(
+                new Complex(234.34, 3432.324)));
+        _assertRoundTrip(record, union);
+    }
+
+    @Test
+    public void testPingToken() throws IOException, IllegalActionException {
+        BinaryTokenCodec codec = new BinaryTokenCodec();
+        try {
+            codec.encode(new PingToken(1234567L));
+            Tokenizer tokenizer = new Tokenizer(codec.toByteArray());
+            // PingToken does not override equals(), so compare timestamps.
+            Token token = tokenizer.getNextToken();
+            assertTrue(token instanceof PingToken);
+            assertEquals(1234567L, ((PingToken) token).getTimestamp());
+            assertNull(tokenizer.getNextToken());
+        } finally {
+            codec.release();
+        }
+    }
+
+    @Test
+    public void testCommunicationToken() throws IOException,
+    IllegalActionException {
+        CommunicationToken token = new CommunicationToken("targetActor");
+
+        token.addPort("testPort1", 1);
+        token.putTokens("testPort1", 0, new Token[] { new LongToken(1),
+                new LongToken(2) });
+
+        token.addPort("testPort2", 2);
+        Token[] tokens = new Token[] { new DoubleToken(1.04),
+                new DoubleToken(2.04), new DoubleToken(3.04) };
+        token.putTokens("testPort2", 0, tokens);
+        token.putTokens("testPort2", 1, tokens);
+
+        _assertRoundTrip(token);
+    }
+
+    @Test
+    public void testTokenParserBatch() throws IOException,
+    IllegalActionException {
+        // A Tokenizer still reads batches written by the TokenParser.
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        TokenParser.getInstance().convertToBytes(new IntToken(7),
+                outputStream);
+        TokenParser.getInstance().convertToBytes(new StringToken("seven"),
+                outputStream);
+        byte[] payload = outputStream.toByteArray();
+        assertTrue(!BinaryTokenCodec.isBatch(payload));
+
+        Tokenizer tokenizer = new Tokenizer(payload);
+        assertEquals(new IntToken(7), tokenizer.getNextToken());
+        assertEquals(new StringToken("seven"), tokenizer.getNextToken());
+        assertNull(tokenizer.getNextToken());
+    }
+
+    @Test
+    public void testLargeBatch() throws IOException, IllegalActionException {
+        // The batch grows beyond the initial capacity of the pooled buffer.
+        double[] values = new double[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i / 3.0;
+        }
+        Token[] tokens = new Token[5];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = new DoubleArrayToken(values);
+        }
+        _assertRoundTrip(tokens);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Encode the tokens in one batch and check that a Tokenizer reads
+     *  the same tokens back.
+     */
+    private void _assertRoundTrip(Token... tokens) throws IOException,
+    IllegalActionException {
+        BinaryTokenCodec codec = new BinaryTokenCodec();
+        try {
+            for (Token token : tokens) {
+                codec.encode(token);
+            }
+            assertEquals(tokens.length, codec.getTokenCount());
+            byte[] payload = codec.toByteArray();
+            assertTrue(BinaryTokenCodec.isBatch(payload));
+
+            Tokenizer tokenizer = new Tokenizer(payload);
+            for (Token token : tokens) {
+                assertEquals(token, tokenizer.getNextToken());
+            }
+            assertNull(tokenizer.getNextToken());
+        } finally {
+            codec.release();
+        }
+    }
+}
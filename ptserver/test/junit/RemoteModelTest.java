@@ -220,6 +220,9 @@ public class RemoteModelTest {
                         .createMoMLParser().parse(response.getModelXML()),
                 response.getModelTypes());
         model.setUpInfrastructure(ticket, _server.getBrokerUrl());
+        if (response.isBinaryTokenCodec()) {
+            model.useBinaryTokenCodec();
+        }
 
         CompositeActor topLevelActor = model.getTopLevelActor();
         assertNotNull(topLevelActor);
@@ -0,0 +1,134 @@
+/* Test the negotiation of the binary token codec.
+
+ Copyright (c) 2016 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+ */
+package ptserver.test.junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ibm.mqtt.IMqttClient;
+
+import ptolemy.data.Token;
+import ptserver.communication.ProxyModelInfrastructure;
+import ptserver.communication.ProxyModelResponse;
+import ptserver.communication.TokenPublisher;
+import ptserver.data.BinaryTokenCodec;
+import ptserver.data.PingToken;
+import ptserver.data.Tokenizer;
+
+/**
+ * Test that the binary token codec is off unless it is negotiated, and
+ * that a TokenPublisher only changes the layout between batches.
+ *
+ * @author Ptolemy II developers
+ * @version $Id$
+ * @since Ptolemy II 11.0
+ * @Pt.ProposedRating Red (cxh)
+ * @Pt.AcceptedRating Red (cxh)
+ */
+public class TokenPublisherTest {
+
+    @Test
+    public void testBinaryCodecIsOffByDefault() {
+        assertFalse(ProxyModelInfrastructure.isBinaryTokenCodecEnabled());
+        assertFalse(new ProxyModelResponse().isBinaryTokenCodec());
+        assertFalse(new TokenPublisher(100, null).isBinaryCodec());
+    }
+
+    @Test(timeout = 5000)
+    public void testSwitchBetweenBatches() throws Exception {
+        final List<byte[]> batches = new ArrayList<byte[]>();
+        IMqttClient client = (IMqttClient) Proxy.newProxyInstance(
+                IMqttClient.class.getClassLoader(),
+                new Class<?>[] { IMqttClient.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method,
+                            Object[] args) {
+                        if (method.getName().equals("publish")) {
+                            synchronized (batches) {
+                                batches.add((byte[]) args[1]);
+                                batches.notifyAll();
+                            }
+                            // The message ID.
+                            return Integer.valueOf(batches.size());
+                        }
+                        return null;
+                    }
+                });
+        TokenPublisher publisher = new TokenPublisher(10, null);
+        publisher.setMqttClient(client);
+        publisher.setTopic("test");
+        try {
+            // The pending token is sent in the legacy layout even though
+            // the binary codec is requested before the batch is sent.
+            publisher.sendToken(new PingToken(1), null);
+            publisher.setBinaryCodec(true);
+            assertTrue(publisher.isBinaryCodec());
+            publisher.startTimer(null);
+            _waitForBatches(batches, 1);
+            publisher.sendToken(new PingToken(2), null);
+            _waitForBatches(batches, 2);
+        } finally {
+            publisher.cancel();
+        }
+        synchronized (batches) {
+            assertFalse(BinaryTokenCodec.isBatch(batches.get(0)));
+            assertEquals(1, _readPing(batches.get(0)));
+            assertTrue(BinaryTokenCodec.isBatch(batches.get(1)));
+            assertEquals(2, _readPing(batches.get(1)));
+        }
+    }
+
+    /** Return the timestamp of the only token of the batch.
+     */
+    private long _readPing(byte[] batch) throws Exception {
+        Tokenizer tokenizer = new Tokenizer(batch);
+        Token token = tokenizer.getNextToken();
+        assertNull(tokenizer.getNextToken());
+        return ((PingToken) token).getTimestamp();
+    }
+
+    /** Wait until the specified number of batches has been published.
+     */
+    private void _waitForBatches(List<byte[]> batches, int count)
+            throws InterruptedException {
+        synchronized (batches) {
+            while (batches.size() < count) {
+                batches.wait();
+            }
+        }
+    }
+}